@@ -73,6 +73,8 @@ package </xsl:text>
 
 import com.steelcandy.common.debug.Assert;
 
+import com.steelcandy.common.chars.CharacterClassTable;
+
 /**
     The class that contains character classes-related information for the
     </xsl:text>
@@ -101,7 +103,9 @@ public final class </xsl:text>
     </xsl:template>
 
     <!-- Outputs the definitions of the Java constants whose values are
-         all of the characters in the character class.
+         all of the characters in the character class, followed by the
+         definitions of the lookup tables built from those constants and the
+         methods that use those tables to classify characters.
 
          Note: the constant definitions have to be ordered so that constants
          used in calculating the value of another constant must all have been
@@ -129,16 +133,37 @@ public final class </xsl:text>
         <xsl:call-template name="constant-definitions">
             <xsl:with-param name="names" select="$ordered-names"/>
         </xsl:call-template>
+
+        <xsl:text>
+
+    // Lookup tables
+</xsl:text>
+        <xsl:call-template name="constant-definitions">
+            <xsl:with-param name="names" select="$ordered-names"/>
+            <xsl:with-param name="kind" select="'table'"/>
+        </xsl:call-template>
+
+        <xsl:text>
+
+    // Public static methods
+</xsl:text>
+        <xsl:call-template name="constant-definitions">
+            <xsl:with-param name="names" select="$ordered-names"/>
+            <xsl:with-param name="kind" select="'method'"/>
+        </xsl:call-template>
     </xsl:template>
 
     <!-- Outputs definitions of all of the character class constants whose
          names are in the specified list, in the order that the names appear
-         in the list.
+         in the list. If 'kind' is 'table' then the definitions of the
+         classes' lookup tables are output instead, and if it's 'method'
+         then the definitions of the methods that use those tables are.
 
          The list is assumed to be in the same form as lists created using
          the 'make-list' template with the default separator. -->
     <xsl:template name="constant-definitions">
         <xsl:param name="names"/>
+        <xsl:param name="kind" select="'constant'"/>
 
         <xsl:variable name="num-names">
             <xsl:call-template name="list-size">
@@ -158,13 +183,30 @@ public final class </xsl:text>
                 </xsl:call-template>
             </xsl:variable>
 
-            <!-- Output a constant for the character class named $first. -->
-            <xsl:apply-templates select="$character-classes[@name = $first]"
-                mode="character-class-constant"/>
+            <!-- Output a constant, table or method for the character class
+                 named $first. -->
+            <xsl:choose>
+                <xsl:when test="$kind = 'table'">
+                    <xsl:apply-templates
+                        select="$character-classes[@name = $first]"
+                        mode="character-class-table"/>
+                </xsl:when>
+                <xsl:when test="$kind = 'method'">
+                    <xsl:apply-templates
+                        select="$character-classes[@name = $first]"
+                        mode="character-class-method"/>
+                </xsl:when>
+                <xsl:otherwise>
+                    <xsl:apply-templates
+                        select="$character-classes[@name = $first]"
+                        mode="character-class-constant"/>
+                </xsl:otherwise>
+            </xsl:choose>
 
             <!-- Process $rest. -->
             <xsl:call-template name="constant-definitions">
                 <xsl:with-param name="names" select="$rest"/>
+                <xsl:with-param name="kind" select="$kind"/>
             </xsl:call-template>
         </xsl:if>
     </xsl:template>
@@ -190,6 +232,55 @@ public final class </xsl:text>
     </xsl:template>
 
 
+    <!-- Outputs the definition of a single character class' lookup
+         table. -->
+    <xsl:template match="character-class" mode="character-class-table">
+        <xsl:variable name="constant-name">
+            <xsl:call-template name="to-constant-name">
+                <xsl:with-param name="name" select="@name"/>
+            </xsl:call-template>
+        </xsl:variable>
+
+        <xsl:text>
+    /**
+        The table used to determine whether a character is in the
+        </xsl:text>
+        <xsl:value-of select="@name"/>
+        <xsl:text> character class.
+    */
+    public static final CharacterClassTable </xsl:text>
+        <xsl:value-of select="$constant-name"/>
+        <xsl:text>_TABLE =
+        new CharacterClassTable(</xsl:text>
+        <xsl:value-of select="$constant-name"/>
+        <xsl:text>);
+</xsl:text>
+    </xsl:template>
+
+    <!-- Outputs the definition of the method that indicates whether a
+         character is in a single character class. -->
+    <xsl:template match="character-class" mode="character-class-method">
+        <xsl:text>
+    /**
+        @param ch the character to test
+        @return true iff 'ch' is in the </xsl:text>
+        <xsl:value-of select="@name"/>
+        <xsl:text> character class
+    */
+    public static boolean is</xsl:text>
+        <xsl:value-of select="@name"/>
+        <xsl:text>(char ch)
+    {
+        return </xsl:text>
+        <xsl:call-template name="to-constant-name">
+            <xsl:with-param name="name" select="@name"/>
+        </xsl:call-template>
+        <xsl:text>_TABLE.contains(ch);
+    }
+</xsl:text>
+    </xsl:template>
+
+
     <xsl:template match="char-from-class" mode="class-contents">
         <xsl:call-template name="to-constant-name">
             <xsl:with-param name="name" select="@name"/>
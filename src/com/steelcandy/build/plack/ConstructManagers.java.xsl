@@ -39,6 +39,17 @@
     <xsl:variable name="class-implementation"
         select="$implementation/construct-manager-base-class"/>
 
+    <!-- Indicates whether the construct classes are to be generated so
+         that they use as little memory as possible: their attribute
+         objects are created only when they're first accessed, and their
+         lists of subconstructs start out small. -->
+    <xsl:variable name="compact-constructs"
+        select="$class-implementation/@compact = 'true'"/>
+
+    <!-- The initial capacity of the lists of subconstructs created by
+         compact construct classes. -->
+    <xsl:variable name="compact-subconstruct-list-capacity" select="4"/>
+
     <xsl:variable name="construct-flags"
         select="$top/construct-flags/section/flag-definition"/>
     <xsl:variable name="number-of-construct-flags"
@@ -379,6 +390,20 @@ public abstract class </xsl:text>
             <xsl:text>    /** The token ID to construct flag map. */
     private static final IntMap
         _tokenIdMap = createTokenIdToConstructFlagMap();
+</xsl:text>
+        </xsl:if>
+        <xsl:if test="$compact-constructs">
+            <xsl:text>
+
+    // Construct class constants
+
+    /**
+        The initial capacity of the lists of subconstructs that construct
+        classes create for themselves.
+    */
+    private static final int SUBCONSTRUCT_LIST_CAPACITY = </xsl:text>
+            <xsl:value-of select="$compact-subconstruct-list-capacity"/>
+            <xsl:text>;
 </xsl:text>
         </xsl:if>
         <xsl:text>
@@ -1373,6 +1398,7 @@ public abstract class </xsl:text>
         </xsl:call-template>
         <xsl:call-template name="construct-attribute-fields-and-methods"/>
         <xsl:apply-templates select="." mode="cloning-methods"/>
+        <xsl:call-template name="trim-method"/>
         <xsl:text>
     }
 </xsl:text>
@@ -1532,6 +1558,7 @@ public abstract class </xsl:text>
         </xsl:call-template>
         <xsl:call-template name="construct-attribute-fields-and-methods"/>
         <xsl:apply-templates select="." mode="cloning-methods"/>
+        <xsl:call-template name="trim-method"/>
         <xsl:text>
     }
 </xsl:text>
@@ -1953,6 +1980,61 @@ description document.
     </xsl:template>
 
     <xsl:template match="attribute" mode="deep-clone-method-part">
+        <xsl:variable name="is-primitive">
+            <xsl:call-template name="is-primitive-field-attribute"/>
+        </xsl:variable>
+        <xsl:choose>
+            <xsl:when test="$is-primitive = 'true'">
+                <xsl:call-template name="clone-primitive-attribute"/>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:call-template name="deep-clone-attribute"/>
+            </xsl:otherwise>
+        </xsl:choose>
+    </xsl:template>
+
+    <!-- Outputs the part of a construct's cloning methods that copy the
+         value of the primitive construct attribute described by the
+         current node to the clone: deep and shallow clones are the same
+         since there's no attribute object to share. -->
+    <xsl:template name="clone-primitive-attribute">
+        <xsl:variable name="name">
+            <xsl:call-template name="construct-attribute-name"/>
+        </xsl:variable>
+        <xsl:variable name="is-set-name">
+            <xsl:call-template name="primitive-attribute-method-name">
+                <xsl:with-param name="name" select="$name"/>
+                <xsl:with-param name="kind" select="'is-set'"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="getter-name">
+            <xsl:call-template name="primitive-attribute-method-name">
+                <xsl:with-param name="name" select="$name"/>
+                <xsl:with-param name="kind" select="'getter'"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="setter-name">
+            <xsl:call-template name="primitive-attribute-method-name">
+                <xsl:with-param name="name" select="$name"/>
+                <xsl:with-param name="kind" select="'setter'"/>
+            </xsl:call-template>
+        </xsl:variable>
+
+        <xsl:text>
+            if (</xsl:text>
+        <xsl:value-of select="$is-set-name"/>
+        <xsl:text>())
+            {
+                result.</xsl:text>
+        <xsl:value-of select="concat($setter-name, '(', $getter-name, '());')"/>
+        <xsl:text>
+            }
+</xsl:text>
+    </xsl:template>
+
+    <!-- Outputs the part of a construct's deep clone method that deep
+         clones the construct attribute described by the current node. -->
+    <xsl:template name="deep-clone-attribute">
         <xsl:variable name="name">
             <xsl:call-template name="construct-attribute-name"/>
         </xsl:variable>
@@ -1979,6 +2061,23 @@ description document.
     </xsl:template>
 
     <xsl:template match="attribute" mode="shallow-clone-method-part">
+        <xsl:variable name="is-primitive">
+            <xsl:call-template name="is-primitive-field-attribute"/>
+        </xsl:variable>
+        <xsl:choose>
+            <xsl:when test="$is-primitive = 'true'">
+                <xsl:call-template name="clone-primitive-attribute"/>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:call-template name="shallow-clone-attribute"/>
+            </xsl:otherwise>
+        </xsl:choose>
+    </xsl:template>
+
+    <!-- Outputs the part of a construct's shallow clone method that
+         shallow clones the construct attribute described by the current
+         node. -->
+    <xsl:template name="shallow-clone-attribute">
         <xsl:variable name="name">
             <xsl:call-template name="construct-attribute-name"/>
         </xsl:variable>
@@ -1999,6 +2098,88 @@ description document.
     </xsl:template>
 
 
+    <!-- Templates that generate a construct's trim() method -->
+
+    <!-- Outputs the definition of the trim() method for the construct
+         described by the current node iff it has any subconstructs:
+         constructs without subconstructs just inherit it. The method
+         replaces each of the construct's lists of subconstructs with a
+         frozen copy of it, whose subconstructs are stored in an array of
+         exactly the right size. -->
+    <xsl:template name="trim-method">
+        <xsl:if test=".//subconstruct">
+            <xsl:text>
+
+        // Memory-related methods
+
+        /**
+            @see Construct#trim
+        */
+        public void trim()
+        {
+            super.trim();
+</xsl:text>
+            <xsl:apply-templates select="*" mode="trim-method-part"/>
+            <xsl:text>        }
+</xsl:text>
+        </xsl:if>
+    </xsl:template>
+
+    <!-- Trim the subconstructs of multiline constructs. -->
+    <xsl:template match="first-line | indented-subconstructs"
+                  mode="trim-method-part">
+        <xsl:apply-templates select="*" mode="trim-method-part"/>
+    </xsl:template>
+
+    <!-- Only subconstructs need to be trimmed. -->
+    <xsl:template match="*" mode="trim-method-part"/>
+
+    <xsl:template match="subconstruct" mode="trim-method-part">
+        <xsl:variable name="name">
+            <xsl:call-template name="subconstruct-name"/>
+        </xsl:variable>
+        <xsl:variable name="field-name">
+            <xsl:call-template name="subconstruct-field-name">
+                <xsl:with-param name="name" select="$name"/>
+                <xsl:with-param name="number" select="@number"/>
+            </xsl:call-template>
+        </xsl:variable>
+
+        <!-- Note: we assume that the 'number' attribute's value is valid. -->
+        <xsl:text>
+            if (</xsl:text>
+        <xsl:value-of select="$field-name"/>
+        <xsl:text> != null)
+            {
+</xsl:text>
+        <xsl:choose>
+            <xsl:when test="@number='zero-or-more' or @number='one-or-more'">
+                <xsl:text>                </xsl:text>
+                <xsl:value-of select="concat($field-name, ' = ',
+                                             $field-name, '.freeze();')"/>
+                <xsl:text>
+
+                ConstructIterator iter = </xsl:text>
+                <xsl:value-of select="$field-name"/>
+                <xsl:text>.iterator();
+                while (iter.hasNext())
+                {
+                    iter.next().trim();
+                }
+</xsl:text>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:text>                </xsl:text>
+                <xsl:value-of select="$field-name"/>
+                <xsl:text>.trim();
+</xsl:text>
+            </xsl:otherwise>
+        </xsl:choose>
+        <xsl:text>            }
+</xsl:text>
+    </xsl:template>
+
+
     <!-- Templates that generate parts of a construct's write() method -->
 
     <!-- Ignore 'space' elements. -->
@@ -2085,8 +2266,30 @@ Found a subconstruct named "<xsl:value-of select="$name"/>" whose 'number' attri
         <xsl:text>
 
         // Attribute fields and methods</xsl:text>
+        <xsl:if test="$compact-constructs and
+                      $node/attribute[@type = 'Int' or @type = 'Boolean']">
+            <xsl:text>
+
+        /**
+            The flags that indicate which of our primitive attributes are
+            set, along with the values of our Boolean attributes.
+        */
+        private int _attributeFlags = 0;</xsl:text>
+        </xsl:if>
         <xsl:for-each select="$node/attribute">
-            <xsl:call-template name="one-attribute-fields-and-methods"/>
+            <xsl:variable name="is-primitive">
+                <xsl:call-template name="is-primitive-field-attribute"/>
+            </xsl:variable>
+            <xsl:choose>
+                <xsl:when test="$is-primitive = 'true'">
+                    <xsl:call-template
+                        name="primitive-attribute-fields-and-methods"/>
+                </xsl:when>
+                <xsl:otherwise>
+                    <xsl:call-template
+                        name="one-attribute-fields-and-methods"/>
+                </xsl:otherwise>
+            </xsl:choose>
         </xsl:for-each>
         <xsl:call-template name="inherited-attribute-parts"/>
     </xsl:template>
@@ -2138,8 +2341,10 @@ Found a subconstruct named "<xsl:value-of select="$name"/>" whose 'number' attri
         <xsl:value-of select="$type-name"/>
         <xsl:text>
             </xsl:text>
-        <xsl:value-of
-            select="concat($field-name, ' = new ', $type-name, '();')"/>
+        <xsl:call-template name="attribute-field-initializer">
+            <xsl:with-param name="field-name" select="$field-name"/>
+            <xsl:with-param name="type-name" select="$type-name"/>
+        </xsl:call-template>
         <xsl:text>
 
         /**
@@ -2170,7 +2375,12 @@ Found a subconstruct named "<xsl:value-of select="$name"/>" whose 'number' attri
         public </xsl:text>
         <xsl:value-of select="concat($type-name, ' ', $getter-name, '()')"/>
         <xsl:text>
-        {
+        {</xsl:text>
+        <xsl:call-template name="lazy-attribute-creation-code">
+            <xsl:with-param name="field-name" select="$field-name"/>
+            <xsl:with-param name="type-name" select="$type-name"/>
+        </xsl:call-template>
+        <xsl:text>
             </xsl:text>
             <xsl:value-of select="concat('Assert.ensure(',
                                          $field-name, ' != null);')"/>
@@ -2181,6 +2391,396 @@ Found a subconstruct named "<xsl:value-of select="$name"/>" whose 'number' attri
         }</xsl:text>
     </xsl:template>
 
+    <!-- Outputs 'true' iff the construct attribute described by the
+         specified node (which is expected to be an 'attribute' element)
+         is stored in a primitive field of the construct class that it's
+         defined on, rather than in an attribute object.
+
+         Only compact construct classes store their own Int and Boolean
+         attributes in primitive fields: inherited attributes are always
+         stored in attribute objects since the choice construct interfaces
+         that declare them return attribute objects. -->
+    <xsl:template name="is-primitive-field-attribute">
+        <xsl:param name="node" select="."/>
+
+        <xsl:if test="$compact-constructs and
+                      ($node/@type = 'Int' or $node/@type = 'Boolean') and
+                      count($node/.. | $inheritable-constructs) !=
+                        count($inheritable-constructs)">
+            <xsl:text>true</xsl:text>
+        </xsl:if>
+    </xsl:template>
+
+    <!-- Outputs the name of the method of compact construct classes that
+         accesses the primitive construct attribute with the specified
+         name in the specified way: 'is-set' for the method that indicates
+         whether it's set, 'setter' for the method that sets its value and
+         'getter' for the method that returns its value. -->
+    <xsl:template name="primitive-attribute-method-name">
+        <xsl:param name="name"/>
+        <xsl:param name="kind"/>
+
+        <xsl:choose>
+            <xsl:when test="$kind = 'is-set'">
+                <xsl:value-of select="concat('is', $name, 'AttributeSet')"/>
+            </xsl:when>
+            <xsl:when test="$kind = 'setter'">
+                <xsl:value-of
+                    select="concat('set', $name, 'AttributeValue')"/>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:call-template name="to-method-name">
+                    <xsl:with-param name="name"
+                        select="concat($name, 'AttributeValue')"/>
+                </xsl:call-template>
+            </xsl:otherwise>
+        </xsl:choose>
+    </xsl:template>
+
+    <!-- Outputs the constants, fields and methods for storing and
+         accessing the Int or Boolean construct attribute described by the
+         specified node (which is expected to be an 'attribute' element) in
+         a compact construct class.
+
+         Whether the attribute is set - and the value of a Boolean
+         attribute - is stored as a bit in the construct's _attributeFlags
+         field, and the value of an Int attribute is stored in an int
+         field, so no attribute object is ever created for it.
+
+         @see one-attribute-fields-and-methods -->
+    <xsl:template name="primitive-attribute-fields-and-methods">
+        <xsl:param name="node" select="."/>
+
+        <xsl:variable name="name">
+            <xsl:call-template name="construct-attribute-name">
+                <xsl:with-param name="node" select="$node"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="is-boolean" select="$node/@type = 'Boolean'"/>
+        <xsl:variable name="java-type">
+            <xsl:choose>
+                <xsl:when test="$is-boolean">boolean</xsl:when>
+                <xsl:otherwise>int</xsl:otherwise>
+            </xsl:choose>
+        </xsl:variable>
+        <xsl:variable name="constant-prefix">
+            <xsl:call-template name="to-constant-name">
+                <xsl:with-param name="name"
+                    select="concat($name, 'Attribute')"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="set-flag"
+            select="concat($constant-prefix, '_SET_FLAG')"/>
+        <xsl:variable name="value-flag"
+            select="concat($constant-prefix, '_VALUE_FLAG')"/>
+        <xsl:variable name="bit"
+            select="2 * count($node/preceding-sibling::attribute[
+                                @type = 'Int' or @type = 'Boolean'])"/>
+        <xsl:variable name="field-name">
+            <xsl:call-template name="to-field-name">
+                <xsl:with-param name="name"
+                    select="concat($name, 'AttributeValue')"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="is-set-name">
+            <xsl:call-template name="primitive-attribute-method-name">
+                <xsl:with-param name="name" select="$name"/>
+                <xsl:with-param name="kind" select="'is-set'"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="getter-name">
+            <xsl:call-template name="primitive-attribute-method-name">
+                <xsl:with-param name="name" select="$name"/>
+                <xsl:with-param name="kind" select="'getter'"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="setter-name">
+            <xsl:call-template name="primitive-attribute-method-name">
+                <xsl:with-param name="name" select="$name"/>
+                <xsl:with-param name="kind" select="'setter'"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="desc">
+            <xsl:call-template name="construct-attribute-description"/>
+        </xsl:variable>
+
+        <xsl:if test="$bit &gt; 30">
+            <xsl:message terminate="yes">
+A compact construct has too many Int and Boolean attributes for all of
+their flags to fit in an int.
+            </xsl:message>
+        </xsl:if>
+
+        <xsl:text>
+
+        /**
+            The flag that indicates whether our </xsl:text>
+        <xsl:value-of select="$name"/>
+        <xsl:text> attribute is set.
+        */
+        private static final int
+            </xsl:text>
+        <xsl:value-of select="concat($set-flag, ' = 1 &lt;&lt; ', $bit, ';')"/>
+        <xsl:choose>
+            <xsl:when test="$is-boolean">
+                <xsl:text>
+
+        /**
+            The flag that indicates whether the value of our </xsl:text>
+                <xsl:value-of select="$name"/>
+                <xsl:text>
+            attribute is true.
+        */
+        private static final int
+            </xsl:text>
+                <xsl:value-of
+                    select="concat($value-flag, ' = 1 &lt;&lt; ', $bit + 1, ';')"/>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:text>
+
+        /**
+            The value of our </xsl:text>
+                <xsl:value-of select="$name"/>
+                <xsl:text> attribute, if it's set: </xsl:text>
+                <xsl:value-of select="$desc"/>
+                <xsl:text>.
+        */
+        private int </xsl:text>
+                <xsl:value-of select="$field-name"/>
+                <xsl:text>;</xsl:text>
+            </xsl:otherwise>
+        </xsl:choose>
+        <xsl:text>
+
+        /**
+            @return true iff our </xsl:text>
+        <xsl:value-of select="$name"/>
+        <xsl:text> attribute is set
+        */
+        public boolean </xsl:text>
+        <xsl:value-of select="$is-set-name"/>
+        <xsl:text>()
+        {
+            return ((_attributeFlags &amp; </xsl:text>
+        <xsl:value-of select="$set-flag"/>
+        <xsl:text>) != 0);
+        }
+
+        /**
+            @return the value of our </xsl:text>
+        <xsl:value-of select="$name"/>
+        <xsl:text> attribute: </xsl:text>
+        <xsl:value-of select="$desc"/>
+        <xsl:text>
+        */
+        public </xsl:text>
+        <xsl:value-of select="concat($java-type, ' ', $getter-name, '()')"/>
+        <xsl:text>
+        {
+            Assert.require(</xsl:text>
+        <xsl:value-of select="$is-set-name"/>
+        <xsl:text>());
+
+            return </xsl:text>
+        <xsl:choose>
+            <xsl:when test="$is-boolean">
+                <xsl:text>((_attributeFlags &amp; </xsl:text>
+                <xsl:value-of select="$value-flag"/>
+                <xsl:text>) != 0)</xsl:text>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:value-of select="$field-name"/>
+            </xsl:otherwise>
+        </xsl:choose>
+        <xsl:text>;
+        }
+
+        /**
+            Sets the value of our </xsl:text>
+        <xsl:value-of select="$name"/>
+        <xsl:text> attribute, which also sets the
+            attribute.
+
+            @param value the attribute's new value
+        */
+        public void </xsl:text>
+        <xsl:value-of select="concat($setter-name, '(', $java-type, ' value)')"/>
+        <xsl:text>
+        {
+</xsl:text>
+        <xsl:choose>
+            <xsl:when test="$is-boolean">
+                <xsl:text>            if (value)
+            {
+                _attributeFlags |= </xsl:text>
+                <xsl:value-of select="$value-flag"/>
+                <xsl:text>;
+            }
+            else
+            {
+                _attributeFlags &amp;= ~</xsl:text>
+                <xsl:value-of select="$value-flag"/>
+                <xsl:text>;
+            }
+</xsl:text>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:text>            </xsl:text>
+                <xsl:value-of select="$field-name"/>
+                <xsl:text> = value;
+</xsl:text>
+            </xsl:otherwise>
+        </xsl:choose>
+        <xsl:text>            _attributeFlags |= </xsl:text>
+        <xsl:value-of select="$set-flag"/>
+        <xsl:text>;
+
+            Assert.ensure(</xsl:text>
+        <xsl:value-of select="$is-set-name"/>
+        <xsl:text>());
+        }</xsl:text>
+        <xsl:call-template name="primitive-attribute-view-method">
+            <xsl:with-param name="node" select="$node"/>
+            <xsl:with-param name="name" select="$name"/>
+            <xsl:with-param name="java-type" select="$java-type"/>
+            <xsl:with-param name="is-set-name" select="$is-set-name"/>
+            <xsl:with-param name="getter-name" select="$getter-name"/>
+            <xsl:with-param name="setter-name" select="$setter-name"/>
+        </xsl:call-template>
+    </xsl:template>
+
+    <!-- Outputs the method of a compact construct class that returns an
+         attribute object that is a view of the primitive construct
+         attribute described by the specified node, so that the class has
+         the same attribute accessor as it would have if the attribute
+         was stored in an attribute object. A new view is created each
+         time the method is called: the views don't store the attribute's
+         value themselves, so they take up no space in the construct. -->
+    <xsl:template name="primitive-attribute-view-method">
+        <xsl:param name="node"/>
+        <xsl:param name="name"/>
+        <xsl:param name="java-type"/>
+        <xsl:param name="is-set-name"/>
+        <xsl:param name="getter-name"/>
+        <xsl:param name="setter-name"/>
+
+        <xsl:variable name="type-name">
+            <xsl:call-template name="attribute-type-name">
+                <xsl:with-param name="type" select="$node/@type"/>
+            </xsl:call-template>
+        </xsl:variable>
+        <xsl:variable name="view-getter-name">
+            <xsl:call-template name="to-method-name">
+                <xsl:with-param name="name"
+                    select="concat($name, 'Attribute')"/>
+            </xsl:call-template>
+        </xsl:variable>
+
+        <xsl:text>
+
+        /**
+            @return an attribute that is a view of our </xsl:text>
+        <xsl:value-of select="$name"/>
+        <xsl:text> attribute:
+            its value is always our attribute's value, and setting its
+            value sets our attribute's value
+        */
+        public </xsl:text>
+        <xsl:value-of
+            select="concat($type-name, ' ', $view-getter-name, '()')"/>
+        <xsl:text>
+        {
+            </xsl:text>
+        <xsl:value-of
+            select="concat($type-name, ' result = new ', $type-name, '()')"/>
+        <xsl:text>
+            {
+                /**
+                    @see </xsl:text>
+        <xsl:value-of select="$type-name"/>
+        <xsl:text>#value
+                */
+                public </xsl:text>
+        <xsl:value-of select="$java-type"/>
+        <xsl:text> value()
+                {
+                    return </xsl:text>
+        <xsl:value-of select="$getter-name"/>
+        <xsl:text>();
+                }
+
+                /**
+                    @see </xsl:text>
+        <xsl:value-of
+            select="concat($type-name, '#setValue(', $java-type, ')')"/>
+        <xsl:text>
+                */
+                public void setValue(</xsl:text>
+        <xsl:value-of select="$java-type"/>
+        <xsl:text> newValue)
+                {
+                    </xsl:text>
+        <xsl:value-of select="$setter-name"/>
+        <xsl:text>(newValue);
+                }
+
+                /**
+                    @see Attribute#isSet
+                */
+                public boolean isSet()
+                {
+                    return </xsl:text>
+        <xsl:value-of select="$is-set-name"/>
+        <xsl:text>();
+                }
+            };
+
+            Assert.ensure(result != null);
+            return result;
+        }</xsl:text>
+    </xsl:template>
+
+    <!-- Outputs the initializer part of the declaration of the field with
+         the specified name that stores a construct attribute of the
+         specified type. -->
+    <xsl:template name="attribute-field-initializer">
+        <xsl:param name="field-name"/>
+        <xsl:param name="type-name"/>
+
+        <xsl:choose>
+            <xsl:when test="$compact-constructs">
+                <xsl:value-of select="concat($field-name, ' = null;')"/>
+            </xsl:when>
+            <xsl:otherwise>
+                <xsl:value-of
+                    select="concat($field-name, ' = new ', $type-name, '();')"/>
+            </xsl:otherwise>
+        </xsl:choose>
+    </xsl:template>
+
+    <!-- Outputs the code at the start of a construct attribute's getter
+         method that creates the attribute the first time that it's
+         accessed, if construct attributes are created lazily. -->
+    <xsl:template name="lazy-attribute-creation-code">
+        <xsl:param name="field-name"/>
+        <xsl:param name="type-name"/>
+
+        <xsl:if test="$compact-constructs">
+            <xsl:text>
+            if (</xsl:text>
+            <xsl:value-of select="$field-name"/>
+            <xsl:text> == null)
+            {
+                </xsl:text>
+            <xsl:value-of
+                select="concat($field-name, ' = new ', $type-name, '();')"/>
+            <xsl:text>
+            }
+</xsl:text>
+        </xsl:if>
+    </xsl:template>
+
     <!-- Outputs the fields and methods for storing and accessing each of the
          attributes inherited by the construct described by the specified
          node (which is expected to be a construct definition element). -->
@@ -2262,8 +2862,10 @@ Found a subconstruct named "<xsl:value-of select="$name"/>" whose 'number' attri
         <xsl:value-of select="$type-name"/>
         <xsl:text>
             </xsl:text>
-        <xsl:value-of
-            select="concat($field-name, ' = new ', $type-name, '();')"/>
+        <xsl:call-template name="attribute-field-initializer">
+            <xsl:with-param name="field-name" select="$field-name"/>
+            <xsl:with-param name="type-name" select="$type-name"/>
+        </xsl:call-template>
         <xsl:text>
 
         /**
@@ -2290,7 +2892,12 @@ Found a subconstruct named "<xsl:value-of select="$name"/>" whose 'number' attri
         public </xsl:text>
         <xsl:value-of select="concat($type-name, ' ', $getter-name, '()')"/>
         <xsl:text>
-        {
+        {</xsl:text>
+        <xsl:call-template name="lazy-attribute-creation-code">
+            <xsl:with-param name="field-name" select="$field-name"/>
+            <xsl:with-param name="type-name" select="$type-name"/>
+        </xsl:call-template>
+        <xsl:text>
             </xsl:text>
             <xsl:value-of select="concat('Assert.ensure(',
                                          $field-name, ' != null);')"/>
@@ -2790,7 +3397,11 @@ Found a subconstruct named "<xsl:value-of select="$name"/>" whose 'number' attri
                     </xsl:text>
         <xsl:value-of select="$field-name"/>
         <xsl:text> =
-                        ConstructList.createArrayList();
+                        ConstructList.createArrayList(</xsl:text>
+        <xsl:if test="$compact-constructs">
+            <xsl:text>SUBCONSTRUCT_LIST_CAPACITY</xsl:text>
+        </xsl:if>
+        <xsl:text>);
                 }
                 </xsl:text>
         <xsl:value-of select="$field-name"/>
@@ -165,7 +165,7 @@ public abstract class </xsl:text>
         <xsl:value-of select="$class-name"/>
         <xsl:text> createArrayList(int initialCapacity)
     {
-        return new ArrayTypedList(initialCapacity);
+        return new DirectArrayTypedList(initialCapacity);
     }
 
     /**
@@ -739,6 +739,45 @@ public abstract class </xsl:text>
         <xsl:value-of select="$item-name"/>
         <xsl:text>[]) toObjectArray(array);
     }
+</xsl:text>
+        <xsl:text>
+    /**
+        Returns an unmodifiable copy of this list whose items are stored
+        directly in an array, which makes indexing into and iterating over
+        it as cheap as possible. Since a frozen list can't be modified it
+        can safely be shared, and freezing one just returns it.
+        &lt;p&gt;
+        Changes made to this list after this method returns will not be
+        reflected in the returned list.
+
+        @return a frozen copy of this list
+        @see #isFrozen
+    */
+    public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> freeze()
+    {
+        </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> result = new FrozenTypedList(toArray());
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.isFrozen());
+        Assert.ensure(result.size() == size());
+        return result;
+    }
+
+    /**
+        @return true iff this list is a frozen list: that is, iff it was
+        returned by a call to freeze()
+        @see #freeze
+    */
+    public boolean isFrozen()
+    {
+        return false;
+    }
+</xsl:text>
+        <xsl:text>
 
 
     // Private static methods
@@ -818,7 +857,143 @@ public abstract class </xsl:text>
 
     // Inner classes
 
-    /**
+</xsl:text>
+        <xsl:text>    /**
+        A cursor over the </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> items in a(n)
+        </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>.
+        &lt;p&gt;
+        A cursor can be reset to the start of the same list or of another
+        one, so a single cursor can be used to iterate over any number of
+        lists without any further objects being allocated. It accesses items
+        by their indices, which is cheapest for lists created by
+        createArrayList() or freeze().
+    */
+    public static class Cursor
+</xsl:text>
+        <xsl:if test="not($top/@iterator-class-name)">
+            <xsl:text>        implements </xsl:text>
+            <xsl:value-of select="$item-name"/>
+            <xsl:text>Iterator
+</xsl:text>
+        </xsl:if>
+        <xsl:text>    {
+        // Private fields
+
+        /** The list whose items we iterate over. */
+        private </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> _list;
+
+        /** The index in '_list' of the item that next() will return. */
+        private int _nextIndex;
+
+
+        // Constructors
+
+        /**
+            Constructs a Cursor that is positioned at the start of the
+            specified list.
+
+            @param list the list whose items the cursor is to iterate over
+        */
+        public Cursor(</xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> list)
+        {
+            reset(list);
+        }
+
+
+        // Public methods
+
+        /**
+            Repositions this cursor at the start of the specified list.
+
+            @param list the list whose items this cursor is to iterate over
+            @return this cursor
+        */
+        public Cursor reset(</xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> list)
+        {
+            Assert.require(list != null);
+
+            _list = list;
+            _nextIndex = 0;
+
+            return this;
+        }
+
+        /**
+            Repositions this cursor at the start of the list that it
+            iterates over.
+
+            @return this cursor
+        */
+        public Cursor reset()
+        {
+            _nextIndex = 0;
+
+            return this;
+        }
+
+        /**
+            @return the index in our list of the item that the next call to
+            our next() method will return
+        */
+        public int index()
+        {
+            return _nextIndex;
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>Iterator#hasNext
+        */
+        public boolean hasNext()
+        {
+            return (_nextIndex &lt; _list.size());
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>Iterator#next
+        */
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> next()
+            throws NoSuchItemException
+        {
+            </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> result = _list.get(_nextIndex);
+
+            _nextIndex += 1;
+            return result;
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>Iterator#peek
+        */
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> peek()
+            throws NoSuchItemException
+        {
+            return _list.get(_nextIndex);
+        }
+    }
+
+</xsl:text>
+        <xsl:text>    /**
         An array-backed </xsl:text>
         <xsl:value-of select="$class-name"/>
         <xsl:text>.
@@ -911,124 +1086,175 @@ public abstract class </xsl:text>
         }
     }
 
-    /**
-        An unmodifiable single-item list-backed </xsl:text>
+</xsl:text>
+        <xsl:text>    /**
+        A(n) </xsl:text>
         <xsl:value-of select="$class-name"/>
-        <xsl:text>.
+        <xsl:text> whose items are stored directly in an
+        array of </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> items rather than in a general-purpose
+        backing list, so that the operations that are performed on it most
+        often needn't go through a List or cast their results.
     */
-    private static class SingleItemTypedList
+    private static class DirectArrayTypedList
         extends </xsl:text>
         <xsl:value-of select="$class-name"/>
         <xsl:text>
     {
+        // Private fields
+
+        /** The store that holds our items: it's also our backing list. */
+        private final ArrayStore _store;
+
+
         // Constructors
 
         /**
-            Constructs a SingleItemTypedList.
+            Constructs a DirectArrayTypedList.
 
-            @param item the list's single item
+            @param initialCapacity the list's initial capacity
         */
-        public SingleItemTypedList(</xsl:text>
-        <xsl:value-of select="$item-name"/>
-        <xsl:text> item)
+        public DirectArrayTypedList(int initialCapacity)
         {
-            super(Collections.singletonList(item));
+            super(initialCapacity);
+
+            _store = (ArrayStore) asUntypedList();
         }
 
 
         // Public methods
-
-        /**
+</xsl:text>
+        <xsl:if test="not($top/@iterator-class-name)">
+            <xsl:text>        /**
             @see </xsl:text>
-        <xsl:value-of select="$class-name"/>
-        <xsl:text>#cloneList
+            <xsl:value-of select="$class-name"/>
+            <xsl:text>#iterator
         */
         public </xsl:text>
-        <xsl:value-of select="$class-name"/>
-        <xsl:text> cloneList()
+            <xsl:value-of select="$item-name"/>
+            <xsl:text>Iterator iterator()
         {
-            </xsl:text>
+            return new Cursor(this);
+        }
+</xsl:text>
+        </xsl:if>
+        <xsl:text>        /**
+            @see </xsl:text>
         <xsl:value-of select="$class-name"/>
-        <xsl:text> result = new SingleItemTypedList(get(0));
+        <xsl:text>#contains(</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>)
+        */
+        public boolean contains(</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> item)
+        {
+            // 'item' can be null
 
-            Assert.ensure(result != null);
-            Assert.ensure(result.size() == size());
-            return result;
+            return (_store.indexOf(item) &gt;= 0);
         }
 
         /**
             @see </xsl:text>
         <xsl:value-of select="$class-name"/>
-        <xsl:text>#subList(int)
+        <xsl:text>#get(int)
         */
         public </xsl:text>
-        <xsl:value-of select="$class-name"/>
-        <xsl:text> subList(int startIndex)
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> get(int index)
+            throws NoSuchItemException
         {
-            return new ArrayTypedList(subBackingList(startIndex));
+            return _store.item(index);
         }
 
         /**
             @see </xsl:text>
         <xsl:value-of select="$class-name"/>
-        <xsl:text>#subList(int, int)
+        <xsl:text>#getLast
         */
         public </xsl:text>
-        <xsl:value-of select="$class-name"/>
-        <xsl:text>
-            subList(int startIndex, int pastEndIndex)
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> getLast()
+            throws NoSuchItemException
         {
-            return new ArrayTypedList(subBackingList(startIndex,
-                                                     pastEndIndex));
+            return _store.item(_store.size() - 1);
         }
 
-
-        // Protected methods
-
         /**
-            @see TypedList#createBackingList(int)
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#add(</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>)
         */
-        protected List createBackingList(int initialCapacity)
+        public void add(</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> newItem)
         {
-            // This method should never get called.
-            throw new UnsupportedOperationException();
+            _store.append(newItem);
         }
-    }
 
-    /**
-        A linked list-backed </xsl:text>
+        /**
+            Adds all of the items in the specified list in order to the end
+            of this list. The items are copied directly from the other
+            list's array if it has one.
+
+            @see </xsl:text>
         <xsl:value-of select="$class-name"/>
-        <xsl:text>.
-    */
-    private static class LinkedTypedList
-        extends </xsl:text>
+        <xsl:text>#addAll(</xsl:text>
         <xsl:value-of select="$class-name"/>
-        <xsl:text>
-    {
-        // Constructors
+        <xsl:text>)
+        */
+        public void addAll(</xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> list)
+        {
+            Assert.require(list != null);
+
+            if (list instanceof DirectArrayTypedList)
+            {
+                ArrayStore src = ((DirectArrayTypedList) list)._store;
+                _store.append(src.items(), src.size());
+            }
+            else if (list instanceof FrozenTypedList)
+            {
+                </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] items = ((FrozenTypedList) list)._items;
+                _store.append(items, items.length);
+            }
+            else
+            {
+                // Note: 'list' may be a sublist of this list, so we don't
+                // add its items while iterating over them.
+                </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] items = list.toArray();
+                _store.append(items, items.length);
+            }
+        }
 
         /**
-            Constructs a LinkedTypedList.
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#toArray
         */
-        public LinkedTypedList()
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] toArray()
         {
-            // The initial capacity will be ignored.
-            super(1);
+            return _store.toTypedArray();
         }
 
         /**
-            Constructs a LinkedTypedList.
-
-            @param backingList the list's backing list
+            @see TypedList#trimToSize
         */
-        protected LinkedTypedList(List backingList)
+        public void trimToSize()
         {
-            super(backingList);
+            _store.trimToSize();
         }
 
-
-        // Public methods
-
         /**
             @see </xsl:text>
         <xsl:value-of select="$class-name"/>
@@ -1040,7 +1266,7 @@ public abstract class </xsl:text>
         {
             </xsl:text>
         <xsl:value-of select="$class-name"/>
-        <xsl:text> result = new LinkedTypedList();
+        <xsl:text> result = new DirectArrayTypedList(size());
 
             result.addAll(this);
 
@@ -1058,7 +1284,7 @@ public abstract class </xsl:text>
         <xsl:value-of select="$class-name"/>
         <xsl:text> subList(int startIndex)
         {
-            return new LinkedTypedList(subBackingList(startIndex));
+            return new ArrayTypedList(subBackingList(startIndex));
         }
 
         /**
@@ -1071,8 +1297,8 @@ public abstract class </xsl:text>
         <xsl:text>
             subList(int startIndex, int pastEndIndex)
         {
-            return new LinkedTypedList(subBackingList(startIndex,
-                                                      pastEndIndex));
+            return new ArrayTypedList(subBackingList(startIndex,
+                                                     pastEndIndex));
         }
 
 
@@ -1083,11 +1309,694 @@ public abstract class </xsl:text>
         */
         protected List createBackingList(int initialCapacity)
         {
-            // The initial capacity of a LinkedList cannot be set.
-            return new LinkedList();
+            return new ArrayStore(initialCapacity);
         }
     }
-</xsl:text>
+
+    /**
+        The backing list of a DirectArrayTypedList, which stores its
+        </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> items directly in an array.
+        &lt;p&gt;
+        It provides typed versions of the operations that a
+        DirectArrayTypedList performs most often: the rest of the TypedList
+        methods access it through the List interface.
+    */
+    private static class ArrayStore
+        extends AbstractList
+        implements RandomAccess
+    {
+        // Private fields
+
+        /**
+            The array containing our items: only its first '_size' elements
+            are items.
+        */
+        private </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] _items;
+
+        /** The number of items in this list. */
+        private int _size;
+
+
+        // Constructors
+
+        /**
+            Constructs an empty ArrayStore.
+
+            @param initialCapacity the store's initial capacity
+        */
+        public ArrayStore(int initialCapacity)
+        {
+            Assert.require(initialCapacity &gt;= 0);
+
+            _items = new </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[initialCapacity];
+            _size = 0;
+        }
+
+
+        // Public methods
+
+        /**
+            @param index the index of the item to return
+            @return the item in this list at index 'index'
+            @exception NoSuchItemException thrown if this list doesn't have
+            an item at index 'index'
+        */
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> item(int index)
+            throws NoSuchItemException
+        {
+            if (index &gt;= 0 &amp;&amp; index &lt; _size)
+            {
+                return _items[index];
+            }
+            else
+            {
+                throw new NoSuchItemException();
+            }
+        }
+
+        /**
+            Note: only the first size() elements of the returned array are
+            items in this list, and the array mustn't be modified.
+
+            @return the array that contains our items
+        */
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] items()
+        {
+            return _items;
+        }
+
+        /**
+            Adds the specified item to the end of this list.
+
+            @param newItem the item to add
+        */
+        public void append(</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> newItem)
+        {
+            ensureCapacity(_size + 1);
+            _items[_size] = newItem;
+            _size += 1;
+            modCount += 1;
+        }
+
+        /**
+            Adds the first 'count' items in the specified array to the end
+            of this list.
+
+            @param items the array containing the items to add
+            @param count the number of items in 'items' to add
+        */
+        public void append(</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] items, int count)
+        {
+            Assert.require(items != null);
+            Assert.require(count &gt;= 0);
+            Assert.require(count &lt;= items.length);
+
+            ensureCapacity(_size + count);
+            System.arraycopy(items, 0, _items, _size, count);
+            _size += count;
+            modCount += 1;
+        }
+
+        /**
+            Ensures that this list can hold at least the specified number of
+            items without having to grow its array.
+
+            @param minCapacity the minimum capacity
+        */
+        public void ensureCapacity(int minCapacity)
+        {
+            if (minCapacity &gt; _items.length)
+            {
+                int newCapacity =
+                    Math.max(minCapacity, (_items.length * 3) / 2 + 1);
+                </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] newItems =
+                    new </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[newCapacity];
+                System.arraycopy(_items, 0, newItems, 0, _size);
+                _items = newItems;
+            }
+        }
+
+        /**
+            Reduces this list's capacity to its size.
+        */
+        public void trimToSize()
+        {
+            if (_size &lt; _items.length)
+            {
+                _items = toTypedArray();
+            }
+            modCount += 1;
+        }
+
+        /**
+            @return a new array containing all of our items in order
+        */
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] toTypedArray()
+        {
+            </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] result = new </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[_size];
+
+            System.arraycopy(_items, 0, result, 0, _size);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see List#size
+        */
+        public int size()
+        {
+            return _size;
+        }
+
+        /**
+            @see List#get(int)
+        */
+        public Object get(int index)
+        {
+            checkIndex(index, _size);
+
+            return _items[index];
+        }
+
+        /**
+            @see List#set(int, Object)
+        */
+        public Object set(int index, Object newItem)
+        {
+            checkIndex(index, _size);
+
+            Object result = _items[index];
+            _items[index] = (</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>) newItem;
+
+            return result;
+        }
+
+        /**
+            @see List#add(int, Object)
+        */
+        public void add(int index, Object newItem)
+        {
+            checkIndex(index, _size + 1);
+
+            ensureCapacity(_size + 1);
+            System.arraycopy(_items, index, _items, index + 1,
+                             _size - index);
+            _items[index] = (</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>) newItem;
+            _size += 1;
+            modCount += 1;
+        }
+
+        /**
+            @see List#remove(int)
+        */
+        public Object remove(int index)
+        {
+            checkIndex(index, _size);
+
+            Object result = _items[index];
+            System.arraycopy(_items, index + 1, _items, index,
+                             _size - index - 1);
+            _size -= 1;
+            _items[_size] = null;
+            modCount += 1;
+
+            return result;
+        }
+
+        /**
+            @see List#clear
+        */
+        public void clear()
+        {
+            Arrays.fill(_items, 0, _size, null);
+            _size = 0;
+            modCount += 1;
+        }
+
+        /**
+            @see List#indexOf(Object)
+        */
+        public int indexOf(Object obj)
+        {
+            // 'obj' can be null
+
+            int result = -1;
+
+            for (int i = 0; result &lt; 0 &amp;&amp; i &lt; _size; i++)
+            {
+                Object item = _items[i];
+                if (obj == null ? item == null : obj.equals(item))
+                {
+                    result = i;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            @see List#contains(Object)
+        */
+        public boolean contains(Object obj)
+        {
+            return (indexOf(obj) &gt;= 0);
+        }
+
+
+        // Private static methods
+
+        /**
+            Checks that the specified index is at least zero and less than
+            the specified limit.
+
+            @param index the index to check
+            @param limit the index's upper bound (exclusive)
+            @exception IndexOutOfBoundsException thrown if 'index' isn't in
+            range
+        */
+        private static void checkIndex(int index, int limit)
+            throws IndexOutOfBoundsException
+        {
+            if (index &lt; 0 || index &gt;= limit)
+            {
+                throw new IndexOutOfBoundsException("index = " + index +
+                    ", limit = " + limit);
+            }
+        }
+    }
+
+</xsl:text>
+        <xsl:text>    /**
+        An unmodifiable single-item list-backed </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>.
+    */
+    private static class SingleItemTypedList
+        extends </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>
+    {
+        // Constructors
+
+        /**
+            Constructs a SingleItemTypedList.
+
+            @param item the list's single item
+        */
+        public SingleItemTypedList(</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> item)
+        {
+            super(Collections.singletonList(item));
+        }
+
+
+        // Public methods
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#cloneList
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> cloneList()
+        {
+            </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> result = new SingleItemTypedList(get(0));
+
+            Assert.ensure(result != null);
+            Assert.ensure(result.size() == size());
+            return result;
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#subList(int)
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> subList(int startIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex));
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#subList(int, int)
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>
+            subList(int startIndex, int pastEndIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex,
+                                                     pastEndIndex));
+        }
+
+
+        // Protected methods
+
+        /**
+            @see TypedList#createBackingList(int)
+        */
+        protected List createBackingList(int initialCapacity)
+        {
+            // This method should never get called.
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+        A linked list-backed </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>.
+    */
+    private static class LinkedTypedList
+        extends </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>
+    {
+        // Constructors
+
+        /**
+            Constructs a LinkedTypedList.
+        */
+        public LinkedTypedList()
+        {
+            // The initial capacity will be ignored.
+            super(1);
+        }
+
+        /**
+            Constructs a LinkedTypedList.
+
+            @param backingList the list's backing list
+        */
+        protected LinkedTypedList(List backingList)
+        {
+            super(backingList);
+        }
+
+
+        // Public methods
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#cloneList
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> cloneList()
+        {
+            </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> result = new LinkedTypedList();
+
+            result.addAll(this);
+
+            Assert.ensure(result != null);
+            Assert.ensure(result.size() == size());
+            return result;
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#subList(int)
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> subList(int startIndex)
+        {
+            return new LinkedTypedList(subBackingList(startIndex));
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#subList(int, int)
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>
+            subList(int startIndex, int pastEndIndex)
+        {
+            return new LinkedTypedList(subBackingList(startIndex,
+                                                      pastEndIndex));
+        }
+
+
+        // Protected methods
+
+        /**
+            @see TypedList#createBackingList(int)
+        */
+        protected List createBackingList(int initialCapacity)
+        {
+            // The initial capacity of a LinkedList cannot be set.
+            return new LinkedList();
+        }
+    }
+</xsl:text>
+        <xsl:text>
+    /**
+        An unmodifiable </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> whose items are stored directly
+        in an array. Instances of this class are returned by freeze().
+    */
+    private static class FrozenTypedList
+        extends </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>
+    {
+        // Private fields
+
+        /** The items in this list, in order. */
+        private final </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] _items;
+
+
+        // Constructors
+
+        /**
+            Constructs a FrozenTypedList.
+            &lt;p&gt;
+            Note: the list takes ownership of 'items', which mustn't be
+            modified after this constructor is called.
+
+            @param items the list's items, in order
+        */
+        public FrozenTypedList(</xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] items)
+        {
+            super(Collections.unmodifiableList(Arrays.asList(items)));
+
+            _items = items;
+        }
+
+
+        // Public methods
+</xsl:text>
+        <xsl:if test="not($top/@iterator-class-name)">
+            <xsl:text>        /**
+            @see </xsl:text>
+            <xsl:value-of select="$class-name"/>
+            <xsl:text>#iterator
+        */
+        public </xsl:text>
+            <xsl:value-of select="$item-name"/>
+            <xsl:text>Iterator iterator()
+        {
+            return new </xsl:text>
+            <xsl:value-of select="$item-name"/>
+            <xsl:text>ArrayIterator(_items);
+        }
+</xsl:text>
+        </xsl:if>
+        <xsl:text>        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#get(int)
+        */
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> get(int index)
+            throws NoSuchItemException
+        {
+            if (index &gt;= 0 &amp;&amp; index &lt; _items.length)
+            {
+                return _items[index];
+            }
+            else
+            {
+                throw new NoSuchItemException();
+            }
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#getLast
+        */
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text> getLast()
+            throws NoSuchItemException
+        {
+            return get(_items.length - 1);
+        }
+
+        /**
+            @see TypedList#size
+        */
+        public int size()
+        {
+            return _items.length;
+        }
+
+        /**
+            @see TypedList#isEmpty
+        */
+        public boolean isEmpty()
+        {
+            return (_items.length == 0);
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#toArray
+        */
+        public </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] toArray()
+        {
+            </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[] result =
+                new </xsl:text>
+        <xsl:value-of select="$item-name"/>
+        <xsl:text>[_items.length];
+
+            System.arraycopy(_items, 0, result, 0, _items.length);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#freeze
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> freeze()
+        {
+            return this;
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#isFrozen
+        */
+        public boolean isFrozen()
+        {
+            return true;
+        }
+
+        /**
+            Since a frozen list can't be modified, it is its own clone.
+
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#cloneList
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> cloneList()
+        {
+            return this;
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#subList(int)
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text> subList(int startIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex));
+        }
+
+        /**
+            @see </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>#subList(int, int)
+        */
+        public </xsl:text>
+        <xsl:value-of select="$class-name"/>
+        <xsl:text>
+            subList(int startIndex, int pastEndIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex,
+                                                     pastEndIndex));
+        }
+
+
+        // Protected methods
+
+        /**
+            @see TypedList#createBackingList(int)
+        */
+        protected List createBackingList(int initialCapacity)
+        {
+            // This method should never get called.
+            throw new UnsupportedOperationException();
+        }
+    }
+</xsl:text>
+
         <xsl:if test="not($top/@iterator-class-name)">
             <xsl:text>
 </xsl:text>
@@ -0,0 +1,121 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common;
+
+import com.steelcandy.common.debug.Assert;
+
+/**
+    Represents a message that is constructed from a message format in a
+    Resources object and some message arguments, but only when the
+    message's text is first needed.
+    <p>
+    This allows code to describe a message that may never be seen - for
+    example, the description of an error that is only going to be counted
+    - without paying the cost of formatting it.
+    <p>
+    Instances can safely be used concurrently, provided that the message
+    arguments aren't modified.
+
+    @author James MacKay
+    @see Resources#getDeferredMessage(String, Object[])
+*/
+public class DeferredMessage
+{
+    // Private fields
+
+    /** The resources containing the message's format. */
+    private Resources _resources;
+
+    /** The resource key of the message's format. */
+    private String _formatKey;
+
+    /**
+        The arguments to substitute into the message format, or null once
+        the message's text has been constructed.
+    */
+    private Object[] _msgArgs;
+
+    /**
+        The message's text, or null if it hasn't been constructed yet.
+    */
+    private String _text;
+
+
+    // Constructors
+
+    /**
+        Constructs a DeferredMessage.
+
+        @param resources the resources containing the message's format
+        @param formatKey the resource key of the message's format
+        @param msgArgs the arguments to substitute into the message format
+        @see Resources#getDeferredMessage(String, Object[])
+    */
+    public DeferredMessage(Resources resources, String formatKey,
+                           Object[] msgArgs)
+    {
+        Assert.require(resources != null);
+        Assert.require(formatKey != null);
+        Assert.require(msgArgs != null);
+
+        _resources = resources;
+        _formatKey = formatKey;
+        _msgArgs = msgArgs;
+        _text = null;
+    }
+
+
+    // Public methods
+
+    /**
+        @return the resource key of this message's format
+    */
+    public String formatKey()
+    {
+        Assert.ensure(_formatKey != null);
+        return _formatKey;
+    }
+
+    /**
+        Returns this message's text, constructing it if it hasn't already
+        been constructed.
+
+        @return this message's text
+        @see Resources#getMessage(String, Object[])
+    */
+    public synchronized String text()
+    {
+        if (_text == null)
+        {
+            _text = _resources.getMessage(_formatKey, _msgArgs);
+            _msgArgs = null;  // since they're no longer needed
+        }
+
+        Assert.ensure(_text != null);
+        return _text;
+    }
+
+    /**
+        @see Object#toString
+        @see #text
+    */
+    public String toString()
+    {
+        return text();
+    }
+}
@@ -26,6 +26,7 @@ import java.util.ResourceBundle;
 
 import java.util.Enumeration;
 import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
     A class analogous to ResourceBundle, except that instead of throwing a
@@ -36,6 +37,10 @@ import java.util.Locale;
     <p>
     This new class is used instead of subclassing ResourceBundle since the
     latter has several final methods.
+    <p>
+    The MessageFormats used to construct messages are cached, so that each
+    message format is only parsed once. Instances can safely be used
+    concurrently.
 
     @author James MacKay
     @see ResourceBundle
@@ -56,6 +61,16 @@ public class Resources
     */
     private ResourceBundle _bundle;
 
+    /**
+        A map from each message format resource key that has been used to
+        construct a message to the MessageFormat created from the message
+        format. The keys are Strings and the values are MessageFormats.
+        <p>
+        Since MessageFormats aren't thread-safe all uses of a MessageFormat
+        in this map are synchronized on the MessageFormat.
+    */
+    private ConcurrentHashMap _formats;
+
 
     // Constructors
 
@@ -107,6 +122,7 @@ public class Resources
         Assert.require(bundle != null);
 
         _bundle = bundle;
+        _formats = new ConcurrentHashMap();
     }
 
 
@@ -244,8 +260,11 @@ public class Resources
     {
         Assert.require(msgArgs != null);
 
-        String fmt = getString(formatKey);
-        return MessageFormat.format(fmt, msgArgs);
+        MessageFormat fmt = getMessageFormat(formatKey);
+        synchronized (fmt)
+        {
+            return fmt.format(msgArgs);
+        }
     }
 
     /**
@@ -365,6 +384,82 @@ public class Resources
     }
 
 
+    /**
+        Returns a DeferredMessage that will construct - when it's needed -
+        the message whose format is obtained from these resources using the
+        specified resource key, and using the specified arguments.
+        <p>
+        The arguments shouldn't be modified after this method is called.
+
+        @param formatKey the resource key of the String resource that is used
+        to find the message's format in these resources
+        @param msgArgs the arguments to substitute into the message format
+        @return a DeferredMessage that constructs the message
+        @see #getMessage(String, Object[])
+    */
+    public DeferredMessage
+        getDeferredMessage(String formatKey, Object[] msgArgs)
+    {
+        Assert.require(formatKey != null);
+        Assert.require(msgArgs != null);
+
+        return new DeferredMessage(this, formatKey, msgArgs);
+    }
+
+    /**
+        A convenience version of getDeferredMessage() that constructs the
+        message using the three specified arguments.
+
+        @param formatKey the resource key of the String resource that is
+        used to find the message's format in these resources
+        @param msgArg1 the first message argument
+        @param msgArg2 the second message argument
+        @param msgArg3 the third message argument
+        @return a DeferredMessage that constructs the message
+        @see #getDeferredMessage(String, Object[])
+    */
+    public DeferredMessage getDeferredMessage(String formatKey,
+                            Object msgArg1, Object msgArg2, Object msgArg3)
+    {
+        return getDeferredMessage(formatKey,
+                        new Object[] { msgArg1, msgArg2, msgArg3 });
+    }
+
+    /**
+        A convenience version of getDeferredMessage() that constructs the
+        message using the two specified arguments.
+
+        @param formatKey the resource key of the String resource that is
+        used to find the message's format in these resources
+        @param msgArg1 the first message argument
+        @param msgArg2 the second message argument
+        @return a DeferredMessage that constructs the message
+        @see #getDeferredMessage(String, Object[])
+    */
+    public DeferredMessage getDeferredMessage(String formatKey,
+                                            Object msgArg1, Object msgArg2)
+    {
+        return getDeferredMessage(formatKey,
+                                  new Object[] { msgArg1, msgArg2 });
+    }
+
+    /**
+        A convenience version of getDeferredMessage() that constructs the
+        message using the specified argument.
+
+        @param formatKey the resource key of the String resource that is
+        used to find the message's format in these resources
+        @param msgArg the sole message argument
+        @return a DeferredMessage that constructs the message
+        @see #getDeferredMessage(String, Object[])
+    */
+    public DeferredMessage getDeferredMessage(String formatKey,
+                                              Object msgArg)
+    {
+        return getDeferredMessage(formatKey, new Object[] { msgArg });
+    }
+
+
     /**
         @return an enumeration of the resource keys
         @see ResourceBundle#getKeys
@@ -375,6 +470,41 @@ public class Resources
     }
 
 
+    // Protected methods
+
+    /**
+        Returns the MessageFormat created from the message format obtained
+        from these resources using the specified resource key, creating and
+        caching it if necessary.
+        <p>
+        If the message format resource can't be found then the resource key
+        itself is used as the message format.
+
+        @param formatKey the resource key of the String resource that is used
+        to find the message format in these resources
+        @return the MessageFormat created from the message format
+    */
+    protected MessageFormat getMessageFormat(String formatKey)
+    {
+        Assert.require(formatKey != null);
+
+        MessageFormat result = (MessageFormat) _formats.get(formatKey);
+        if (result == null)
+        {
+            result = new MessageFormat(getString(formatKey));
+            MessageFormat old =
+                (MessageFormat) _formats.putIfAbsent(formatKey, result);
+            if (old != null)
+            {
+                result = old;
+            }
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
     // Public static methods
 
     /**
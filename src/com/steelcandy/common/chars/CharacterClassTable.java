@@ -0,0 +1,263 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common.chars;
+
+import com.steelcandy.common.debug.Assert;
+
+/**
+    Represents a class of characters using a lookup table.
+    <p>
+    Membership of characters in the Latin-1 range (that is, characters
+    whose integral values are less than TABLE_SIZE) is determined using
+    a bitmask, which requires no comparisons or searching. Membership of
+    all other characters is determined by searching the string of all of
+    the characters in the class, unless all characters at or after a
+    specified character are members of the class.
+    <p>
+    Instances are immutable, and so can safely be shared between threads.
+
+    @author James MacKay
+*/
+public final class CharacterClassTable
+    implements UnaryCharacterPredicate
+{
+    // Constants
+
+    /**
+        The number of characters whose membership in a class is determined
+        solely using its table.
+    */
+    public static final int TABLE_SIZE = 256;
+
+    /** The number of bits in each element of an instance's table. */
+    private static final int BITS_PER_ELEMENT = 64;
+
+    /**
+        The number of bits that a character's integral value has to be
+        shifted right to get the index of the table element that contains
+        its bit.
+    */
+    private static final int ELEMENT_INDEX_SHIFT = 6;
+
+
+    // Private fields
+
+    /**
+        The bitmask indicating which of the characters with integral values
+        less than TABLE_SIZE are in this class: the character with integral
+        value n is in this class iff bit (n % BITS_PER_ELEMENT) of element
+        (n / BITS_PER_ELEMENT) is set.
+    */
+    private final long[] _table;
+
+    /**
+        All of the characters in this class, except possibly those that are
+        at or after _firstAllMembersChar. It's only used to determine the
+        membership of characters that aren't in our table.
+    */
+    private final String _chars;
+
+    /**
+        The first of the characters that are all members of this class
+        regardless of whether they're in _chars.
+    */
+    private final int _firstAllMembersChar;
+
+
+    // Constructors
+
+    /**
+        Constructs a CharacterClassTable representing the class consisting
+        of exactly the characters in the specified string.
+
+        @param chars the characters in the class
+    */
+    public CharacterClassTable(String chars)
+    {
+        this(chars, Character.MAX_VALUE + 1);
+        Assert.require(chars != null);
+    }
+
+    /**
+        Constructs a CharacterClassTable representing the class consisting of
+        the characters in the specified string as well as all of the
+        characters whose integral values are greater than or equal to
+        'firstAllMembersChar'.
+
+        @param chars the characters in the class that are before
+        'firstAllMembersChar'
+        @param firstAllMembersChar the integral value of the first of the
+        characters that are all in the class
+    */
+    public CharacterClassTable(String chars, int firstAllMembersChar)
+    {
+        Assert.require(chars != null);
+        Assert.require(firstAllMembersChar >= 0);
+
+        _chars = chars;
+        _firstAllMembersChar = firstAllMembersChar;
+        _table = new long[TABLE_SIZE / BITS_PER_ELEMENT];
+
+        int len = chars.length();
+        for (int i = 0; i < len; i++)
+        {
+            char ch = chars.charAt(i);
+            if (ch < TABLE_SIZE)
+            {
+                setBit(ch);
+            }
+        }
+        for (int ch = firstAllMembersChar; ch < TABLE_SIZE; ch++)
+        {
+            setBit((char) ch);
+        }
+    }
+
+
+    // Public methods
+
+    /**
+        @param ch a character
+        @return true iff 'ch' is in this class
+    */
+    public boolean contains(char ch)
+    {
+        boolean result;
+
+        if (ch < TABLE_SIZE)
+        {
+            result = ((_table[ch >>> ELEMENT_INDEX_SHIFT] & (1L << ch)) != 0);
+                // Note: the shift operator only uses the low 6 bits of 'ch'.
+        }
+        else
+        {
+            result = (ch >= _firstAllMembersChar) ||
+                        (_chars.indexOf(ch) >= 0);
+        }
+
+        return result;
+    }
+
+    /**
+        @see UnaryCharacterPredicate#isSatisfied(char)
+    */
+    public boolean isSatisfied(char ch)
+    {
+        return contains(ch);
+    }
+
+    /**
+        Returns the index of the first character in the specified part of
+        the specified sequence of characters that is not in this class.
+
+        @param chars the sequence of characters to scan
+        @param start the index in 'chars' of the first character to check
+        @param end the index in 'chars' immediately after the last
+        character to check
+        @return the index of the first character at or after 'start' in
+        'chars' that isn't in this class, or 'end' if all of the characters
+        in the range are in this class
+    */
+    public int skip(char[] chars, int start, int end)
+    {
+        Assert.require(chars != null);
+        Assert.require(start >= 0);
+        Assert.require(end <= chars.length);
+
+        int result = start;
+        while (result < end && contains(chars[result]))
+        {
+            result += 1;
+        }
+
+        Assert.ensure(result >= start);
+        Assert.ensure(result <= end || start > end);
+        return result;
+    }
+
+    /**
+        Returns the index of the first character in the specified part of
+        the specified sequence of characters that is in this class.
+
+        @param chars the sequence of characters to scan
+        @param start the index in 'chars' of the first character to check
+        @param end the index in 'chars' immediately after the last
+        character to check
+        @return the index of the first character at or after 'start' in
+        'chars' that is in this class, or 'end' if none of the characters
+        in the range are in this class
+    */
+    public int skipNonMembers(char[] chars, int start, int end)
+    {
+        Assert.require(chars != null);
+        Assert.require(start >= 0);
+        Assert.require(end <= chars.length);
+
+        int result = start;
+        while (result < end && contains(chars[result]) == false)
+        {
+            result += 1;
+        }
+
+        Assert.ensure(result >= start);
+        Assert.ensure(result <= end || start > end);
+        return result;
+    }
+
+    /**
+        Returns the index of the first character at or after the specified
+        index in the specified string that is not in this class.
+
+        @param str the string to scan
+        @param start the index in 'str' of the first character to check
+        @return the index of the first character at or after 'start' in
+        'str' that isn't in this class, or the length of 'str' if there's
+        no such character
+    */
+    public int skip(String str, int start)
+    {
+        Assert.require(str != null);
+        Assert.require(start >= 0);
+
+        int len = str.length();
+        int result = start;
+        while (result < len && contains(str.charAt(result)))
+        {
+            result += 1;
+        }
+
+        Assert.ensure(result >= start);
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        Sets the bit in our table that corresponds to the specified
+        character, thus indicating that it is in this class.
+
+        @param ch the character to add to this class
+    */
+    private void setBit(char ch)
+    {
+        Assert.require(ch < TABLE_SIZE);
+
+        _table[ch >>> ELEMENT_INDEX_SHIFT] |= (1L << ch);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common.containers;
+
+import com.steelcandy.common.SteelCandyRuntimeException;
+
+/**
+    The class of exception thrown when a ConcurrentCache's loader fails to
+    load the value for a key, or a thread is interrupted while waiting
+    for another thread to load one.
+
+    @author James MacKay
+    @see ConcurrentCache
+*/
+public class CacheLoadingException
+    extends SteelCandyRuntimeException
+{
+    // Constructors
+
+    /**
+        Constructs a CacheLoadingException.
+
+        @param msg a message describing why the exception was thrown
+    */
+    public CacheLoadingException(String msg)
+    {
+        super(msg);
+    }
+
+    /**
+        Constructs a CacheLoadingException.
+
+        @param ex the exception from which to construct the exception
+    */
+    public CacheLoadingException(Throwable ex)
+    {
+        super(ex);
+    }
+
+    /**
+        Constructs an exception from a message describing why it
+        occurred and another exception.
+
+        @param msg the message describing why the exception was
+        thrown
+        @param ex the exception from which to construct the
+        CacheLoadingException
+    */
+    public CacheLoadingException(String msg, Throwable ex)
+    {
+        super(msg, ex);
+    }
+}
@@ -0,0 +1,1471 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common.containers;
+
+import com.steelcandy.common.debug.Assert;
+
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+    A bounded cache that can safely be used by any number of threads at
+    once.
+    <p>
+    The cache's capacity is a maximum total weight rather than a maximum
+    number of entries: each entry's weight is determined by the cache's
+    Weigher when the entry is added. Which entries are kept when the
+    cache is full is decided by a W-TinyLFU policy: new entries go into a
+    small 'window' that's ordered by recency, and an entry leaving the
+    window is only admitted to the main part of the cache if it's been
+    used more often than the entry that it would displace there. How often
+    entries have been used is estimated using a small count-min sketch
+    that includes keys that are no longer (or were never) in the cache,
+    and which periodically ages all of its counts. So unlike a
+    MostRecentlyUsedCacheMap, a single scan through many keys that are
+    only used once can't evict the cache's frequently used entries.
+    <p>
+    The sketch is sized for the estimated maximum number of entries in the
+    cache rather than for its maximum weight (which for a weighted cache
+    can be far larger), and grows if the cache ends up containing more
+    entries than were estimated.
+    <p>
+    Lookups don't block. The uses of the entries that they find are
+    recorded in a set of lock-free striped buffers, and applied to the
+    eviction policy in batches by whichever thread next manages to acquire
+    the policy's lock. (If a buffer is full then a use is just dropped,
+    which only makes the policy slightly less accurate.) Additions and
+    removals update the policy immediately, under its lock.
+    <p>
+    get(Object, Loader) loads and adds the value for a key that's missing
+    from the cache: if several threads ask for the same missing key at
+    once then only one of them loads its value, and the others wait for
+    and share the result.
+    <p>
+    Neither keys nor values can be null.
+
+    @author James MacKay
+    @see MostRecentlyUsedCacheMap
+*/
+public class ConcurrentCache
+{
+    // Constants
+
+    /** The Weigher that gives every entry a weight of 1. */
+    public static final Weigher UNIT_WEIGHER = new UnitWeigher();
+
+    /** The percentage of the maximum weight used for the window. */
+    private static final int WINDOW_PERCENTAGE = 1;
+
+    /**
+        The percentage of the main part of the cache's weight used for the
+        protected queue.
+    */
+    private static final int PROTECTED_PERCENTAGE = 80;
+
+    /**
+        The values of a node's queue field that indicate which queue, if
+        any, the node is in.
+    */
+    private static final int
+        NEW_NODE = 0,
+        WINDOW_QUEUE = 1,
+        PROBATION_QUEUE = 2,
+        PROTECTED_QUEUE = 3,
+        DEAD_NODE = 4;
+
+    /** The maximum number of read buffers. */
+    private static final int MAXIMUM_READ_BUFFER_COUNT = 64;
+
+    /** The number of uses that each read buffer can hold. */
+    private static final int READ_BUFFER_SIZE = 32;
+
+    /**
+        The number of uses in a read buffer at which an attempt is made to
+        drain the read buffers.
+    */
+    private static final int READ_BUFFER_DRAIN_THRESHOLD =
+        READ_BUFFER_SIZE / 2;
+
+
+    // Private fields
+
+    /** The map from each key in this cache to the Node containing it. */
+    private ConcurrentHashMap _map;
+
+    /**
+        The map from each key whose value is being loaded to the
+        FutureTask that's loading it.
+    */
+    private ConcurrentHashMap _loads;
+
+    /** The Weigher used to determine the weights of our entries. */
+    private Weigher _weigher;
+
+    /**
+        The lock that must be held to access any of the fields below, and
+        the queue and links of any Node.
+    */
+    private ReentrantLock _policyLock;
+
+    /** The buffers that the uses of entries are recorded in. */
+    private ReadBuffer[] _readBuffers;
+
+    /** The queues that every live Node is in exactly one of. */
+    private AccessQueue _window;
+    private AccessQueue _probation;
+    private AccessQueue _protected;
+
+    /** The estimates of how often each key's been used. */
+    private FrequencySketch _sketch;
+
+    /** The maximum total weight of all of our entries. */
+    private long _maximumWeight;
+
+    /** The maximum total weight of the entries in the window. */
+    private long _windowMaximumWeight;
+
+    /** The maximum total weight of the entries in the protected queue. */
+    private long _protectedMaximumWeight;
+
+    /** The total weight of all of our entries. */
+    private long _weightedSize;
+
+    /** The total weight of the entries in the window. */
+    private long _windowWeight;
+
+    /** The total weight of the entries in the protected queue. */
+    private long _protectedWeight;
+
+    /** Our statistics. */
+    private AtomicLong _hitCount;
+    private AtomicLong _missCount;
+    private AtomicLong _loadCount;
+    private AtomicLong _loadFailureCount;
+    private AtomicLong _evictionCount;
+    private AtomicLong _evictionWeight;
+
+
+    // Constructors
+
+    /**
+        Constructs a ConcurrentCache that can contain at most
+        'maximumSize' entries.
+
+        @param maximumSize the maximum number of entries that the cache can
+        contain
+    */
+    public ConcurrentCache(long maximumSize)
+    {
+        this(maximumSize, UNIT_WEIGHER);
+        Assert.require(maximumSize > 0);
+    }
+
+    /**
+        Constructs a ConcurrentCache whose entries can have a total weight
+        of at most 'maximumWeight'.
+        <p>
+        Unless 'weigher' is UNIT_WEIGHER the number of entries that the
+        cache will contain isn't known, so its frequency sketch starts out
+        small and grows as entries are added to it.
+
+        @param maximumWeight the maximum total weight of the entries that
+        the cache can contain
+        @param weigher the Weigher used to determine the weights of the
+        entries added to the cache
+        @see #ConcurrentCache(long, Weigher, long)
+    */
+    public ConcurrentCache(long maximumWeight, Weigher weigher)
+    {
+        this(maximumWeight, weigher,
+             (weigher == UNIT_WEIGHER) ? maximumWeight : 1L);
+        Assert.require(maximumWeight > 0);
+        Assert.require(weigher != null);
+    }
+
+    /**
+        Constructs a ConcurrentCache whose entries can have a total weight
+        of at most 'maximumWeight', and that is expected to contain at most
+        about 'estimatedMaximumSize' entries.
+
+        @param maximumWeight the maximum total weight of the entries that
+        the cache can contain
+        @param weigher the Weigher used to determine the weights of the
+        entries added to the cache
+        @param estimatedMaximumSize an estimate of the maximum number of
+        entries that the cache will contain, which is used to size its
+        frequency sketch
+    */
+    public ConcurrentCache(long maximumWeight, Weigher weigher,
+                           long estimatedMaximumSize)
+    {
+        Assert.require(maximumWeight > 0);
+        Assert.require(weigher != null);
+        Assert.require(estimatedMaximumSize > 0);
+
+        _map = new ConcurrentHashMap();
+        _loads = new ConcurrentHashMap();
+        _weigher = weigher;
+
+        _policyLock = new ReentrantLock();
+        int numBuffers = 1;
+        int maxBuffers = Math.min(MAXIMUM_READ_BUFFER_COUNT,
+                    2 * Runtime.getRuntime().availableProcessors());
+        while (numBuffers < maxBuffers)
+        {
+            numBuffers *= 2;
+        }
+        _readBuffers = new ReadBuffer[numBuffers];
+        for (int i = 0; i < numBuffers; i++)
+        {
+            _readBuffers[i] = new ReadBuffer();
+        }
+        _window = new AccessQueue();
+        _probation = new AccessQueue();
+        _protected = new AccessQueue();
+        _sketch = new FrequencySketch(estimatedMaximumSize);
+
+        _maximumWeight = maximumWeight;
+        long mainMax = maximumWeight -
+            (maximumWeight * WINDOW_PERCENTAGE) / 100;
+        _windowMaximumWeight = maximumWeight - mainMax;
+        _protectedMaximumWeight = (mainMax * PROTECTED_PERCENTAGE) / 100;
+        _weightedSize = 0L;
+        _windowWeight = 0L;
+        _protectedWeight = 0L;
+
+        _hitCount = new AtomicLong();
+        _missCount = new AtomicLong();
+        _loadCount = new AtomicLong();
+        _loadFailureCount = new AtomicLong();
+        _evictionCount = new AtomicLong();
+        _evictionWeight = new AtomicLong();
+    }
+
+
+    // Public methods
+
+    /**
+        @param key a key
+        @return the value that 'key' maps to in this cache, or null if
+        there's no entry for 'key' in this cache
+    */
+    public Object get(Object key)
+    {
+        Assert.require(key != null);
+
+        Object result = null;
+
+        Node node = (Node) _map.get(key);
+        if (node != null)
+        {
+            _hitCount.incrementAndGet();
+            recordUse(node);
+            result = node._value;
+        }
+        else
+        {
+            _missCount.incrementAndGet();
+        }
+
+        return result;  // may be null
+    }
+
+    /**
+        Returns the value that 'key' maps to in this cache, first using
+        'loader' to load the value and adding it to this cache if it isn't
+        already in it.
+        <p>
+        If another thread is already loading the value for 'key' then this
+        method waits until it's done and then returns the value that it
+        loaded (or throws the exception that its load threw).
+        <p>
+        A loaded value is added to this cache before the load is removed
+        from the loads in progress, so a thread that doesn't find a load
+        in progress for 'key' will find its value in this cache (unless
+        it's since been removed or evicted) and won't load it again.
+
+        @param key a key
+        @param loader the loader to use to load the value for 'key' if it
+        isn't in this cache
+        @return the value that 'key' maps to, or null if it isn't in this
+        cache and 'loader' returned null (in which case nothing is added to
+        this cache)
+        @exception CacheLoadingException thrown if 'loader' threw a checked
+        exception, or if the current thread was interrupted while waiting
+        for another thread to load the value for 'key'
+    */
+    public Object get(Object key, Loader loader)
+        throws CacheLoadingException
+    {
+        Assert.require(key != null);
+        Assert.require(loader != null);
+
+        Object result;
+
+        Node node = (Node) _map.get(key);
+        if (node != null)
+        {
+            _hitCount.incrementAndGet();
+            recordUse(node);
+            result = node._value;
+        }
+        else
+        {
+            _missCount.incrementAndGet();
+            Load load = new Load(key, loader);
+            FutureTask task = new FutureTask(load);
+            FutureTask existing = (FutureTask) _loads.putIfAbsent(key, task);
+            if (existing == null)
+            {
+                try
+                {
+                    task.run();
+                    result = waitFor(task);  // doesn't block: 'task' is done
+                    if (result != null && load.wasLoaded())
+                    {
+                        put(key, result);
+                    }
+                }
+                finally
+                {
+                    _loads.remove(key, task);
+                }
+            }
+            else
+            {
+                result = waitFor(existing);
+            }
+        }
+
+        return result;  // may be null
+    }
+
+    /**
+        Adds an entry that maps 'key' to 'value' to this cache, replacing
+        any existing entry for 'key'.
+
+        @param key the entry's key
+        @param value the entry's value
+    */
+    public void put(Object key, Object value)
+    {
+        Assert.require(key != null);
+        Assert.require(value != null);
+
+        int weight = _weigher.weigh(key, value);
+        Assert.check(weight >= 0);
+
+        Node node = new Node(key, value, weight);
+        Node old = (Node) _map.put(key, node);
+
+        _policyLock.lock();
+        try
+        {
+            drainReadBuffers();
+            if (old != null)
+            {
+                unlink(old);
+            }
+            if (node._queue == NEW_NODE)
+            {
+                node._queue = WINDOW_QUEUE;
+                _window.addLast(node);
+                _windowWeight += weight;
+                _weightedSize += weight;
+            }
+            _sketch.increment(key.hashCode());
+            _sketch.ensureCapacity(_map.size());
+            evictEntries();
+        }
+        finally
+        {
+            _policyLock.unlock();
+        }
+    }
+
+    /**
+        Removes the entry for 'key' from this cache if there is one.
+
+        @param key the key of the entry to remove
+        @return the value of the removed entry, or null if there was no
+        entry for 'key'
+    */
+    public Object remove(Object key)
+    {
+        Assert.require(key != null);
+
+        Object result = null;
+
+        Node node = (Node) _map.remove(key);
+        if (node != null)
+        {
+            result = node._value;
+            _policyLock.lock();
+            try
+            {
+                unlink(node);
+            }
+            finally
+            {
+                _policyLock.unlock();
+            }
+        }
+
+        return result;  // may be null
+    }
+
+    /**
+        Removes all of the entries from this cache. The estimates of how
+        often keys have been used are retained.
+    */
+    public void clear()
+    {
+        _policyLock.lock();
+        try
+        {
+            drainReadBuffers();
+            Iterator iter = _map.values().iterator();
+            while (iter.hasNext())
+            {
+                Node node = (Node) iter.next();
+                if (_map.remove(node._key, node))
+                {
+                    unlink(node);
+                }
+            }
+        }
+        finally
+        {
+            _policyLock.unlock();
+        }
+    }
+
+    /**
+        Applies all of the uses of entries that have been recorded but not
+        yet applied to this cache's eviction policy.
+        <p>
+        This happens automatically as this cache is used, so this method
+        usually only needs to be called to get an accurate weightedSize().
+    */
+    public void cleanUp()
+    {
+        _policyLock.lock();
+        try
+        {
+            drainReadBuffers();
+            evictEntries();
+        }
+        finally
+        {
+            _policyLock.unlock();
+        }
+    }
+
+    /**
+        @return the number of entries in this cache
+    */
+    public int size()
+    {
+        int result = _map.size();
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        @return the total weight of the entries in this cache
+    */
+    public long weightedSize()
+    {
+        long result;
+
+        _policyLock.lock();
+        try
+        {
+            result = _weightedSize;
+        }
+        finally
+        {
+            _policyLock.unlock();
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        @return the maximum total weight of the entries in this cache
+    */
+    public long maximumWeight()
+    {
+        Assert.ensure(_maximumWeight > 0);
+        return _maximumWeight;
+    }
+
+    /**
+        @return the number of lookups that found an entry in this cache
+    */
+    public long hitCount()
+    {
+        return _hitCount.get();
+    }
+
+    /**
+        @return the number of lookups that didn't find an entry in this
+        cache
+    */
+    public long missCount()
+    {
+        return _missCount.get();
+    }
+
+    /**
+        @return the fraction of lookups that found an entry in this cache,
+        or 1 if there haven't been any lookups
+    */
+    public double hitRate()
+    {
+        long hits = hitCount();
+        long total = hits + missCount();
+
+        double result = 1.0;
+        if (total > 0)
+        {
+            result = (double) hits / total;
+        }
+
+        Assert.ensure(result >= 0.0 && result <= 1.0);
+        return result;
+    }
+
+    /**
+        @return the number of values that have been loaded successfully
+        by the loaders passed to get(Object, Loader)
+    */
+    public long loadCount()
+    {
+        return _loadCount.get();
+    }
+
+    /**
+        @return the number of times that a loader passed to
+        get(Object, Loader) threw an exception
+    */
+    public long loadFailureCount()
+    {
+        return _loadFailureCount.get();
+    }
+
+    /**
+        @return the number of entries that have been evicted from this
+        cache to keep its weighted size within its maximum weight (which
+        doesn't include entries that were removed or replaced)
+    */
+    public long evictionCount()
+    {
+        return _evictionCount.get();
+    }
+
+    /**
+        @return the total weight of all of the entries that have been
+        evicted from this cache
+        @see #evictionCount
+    */
+    public long evictionWeight()
+    {
+        return _evictionWeight.get();
+    }
+
+
+    // Private methods
+
+    /**
+        Records a use of the entry in the specified node, and drains the
+        read buffers if the one the use was recorded in is getting full
+        and no other thread is currently updating the eviction policy.
+
+        @param node the node containing the entry that was used
+    */
+    private void recordUse(Node node)
+    {
+        Assert.require(node != null);
+
+        int index = (int) (Thread.currentThread().getId() * 0x9e3779b9L);
+        ReadBuffer buf = _readBuffers[(index >>> 16) &
+                                      (_readBuffers.length - 1)];
+        int pending = buf.offer(node);
+        if (pending >= READ_BUFFER_DRAIN_THRESHOLD &&
+            _policyLock.tryLock())
+        {
+            try
+            {
+                drainReadBuffers();
+            }
+            finally
+            {
+                _policyLock.unlock();
+            }
+        }
+    }
+
+    /**
+        Applies all of the uses recorded in our read buffers to our
+        eviction policy.
+        <p>
+        Note: the policy lock must be held when this method is called.
+    */
+    private void drainReadBuffers()
+    {
+        Assert.require(_policyLock.isHeldByCurrentThread());
+
+        for (int i = 0; i < _readBuffers.length; i++)
+        {
+            ReadBuffer buf = _readBuffers[i];
+            Node node = buf.poll();
+            while (node != null)
+            {
+                applyUse(node);
+                node = buf.poll();
+            }
+        }
+    }
+
+    /**
+        Applies a use of the entry in the specified node to our eviction
+        policy.
+        <p>
+        Note: the policy lock must be held when this method is called.
+
+        @param node the node containing the entry that was used
+    */
+    private void applyUse(Node node)
+    {
+        Assert.require(node != null);
+        Assert.require(_policyLock.isHeldByCurrentThread());
+
+        _sketch.increment(node._key.hashCode());
+        if (node._queue == WINDOW_QUEUE)
+        {
+            _window.moveToLast(node);
+        }
+        else if (node._queue == PROBATION_QUEUE)
+        {
+            _probation.remove(node);
+            node._queue = PROTECTED_QUEUE;
+            _protected.addLast(node);
+            _protectedWeight += node._weight;
+            while (_protectedWeight > _protectedMaximumWeight)
+            {
+                Node demoted = _protected.first();
+                _protected.remove(demoted);
+                _protectedWeight -= demoted._weight;
+                demoted._queue = PROBATION_QUEUE;
+                _probation.addLast(demoted);
+            }
+        }
+        else if (node._queue == PROTECTED_QUEUE)
+        {
+            _protected.moveToLast(node);
+        }
+        // otherwise the node's entry has been removed from the cache, or
+        // hasn't been added to the policy yet
+    }
+
+    /**
+        Moves the entries that no longer fit in the window to the
+        probation queue, and then evicts entries until the total weight
+        of our entries is no more than our maximum weight.
+        <p>
+        Each entry moved out of the window is a candidate for admission to
+        the main part of the cache, and is compared with the probation
+        queue's least recently used entry: whichever of the two has been
+        used less often (according to our sketch) is evicted.
+        <p>
+        Note: the policy lock must be held when this method is called.
+    */
+    private void evictEntries()
+    {
+        Assert.require(_policyLock.isHeldByCurrentThread());
+
+        Node candidate = null;
+        while (_windowWeight > _windowMaximumWeight &&
+               _window.isEmpty() == false)
+        {
+            Node node = _window.first();
+            _window.remove(node);
+            _windowWeight -= node._weight;
+            node._queue = PROBATION_QUEUE;
+            _probation.addLast(node);
+            if (candidate == null)
+            {
+                candidate = node;
+            }
+        }
+
+        while (_weightedSize > _maximumWeight)
+        {
+            Node victim = _probation.first();
+            if (victim == null)
+            {
+                victim = _protected.first();
+                if (victim == null)
+                {
+                    victim = _window.first();
+                }
+                evict(victim);
+            }
+            else if (candidate == null)
+            {
+                evict(victim);
+            }
+            else if (victim == candidate)
+            {
+                candidate = _probation.next(candidate);
+                evict(victim);
+            }
+            else
+            {
+                Node next = _probation.next(candidate);
+                if (candidate._weight > _maximumWeight ||
+                    _sketch.frequency(candidate._key.hashCode()) <=
+                        _sketch.frequency(victim._key.hashCode()))
+                {
+                    evict(candidate);
+                    candidate = next;
+                }
+                else
+                {
+                    evict(victim);
+                }
+            }
+        }
+    }
+
+    /**
+        Evicts the entry in the specified node from this cache.
+        <p>
+        Note: the policy lock must be held when this method is called.
+
+        @param node the node containing the entry to evict
+    */
+    private void evict(Node node)
+    {
+        Assert.require(node != null);
+        Assert.require(_policyLock.isHeldByCurrentThread());
+
+        _map.remove(node._key, node);
+            // which fails if the entry's already been replaced, in which
+            // case the replacement's put() will unlink it, which is
+            // harmless since it's already dead
+        unlink(node);
+        _evictionCount.incrementAndGet();
+        _evictionWeight.addAndGet(node._weight);
+    }
+
+    /**
+        Removes the specified node from whichever queue it's in, if any,
+        and marks it as dead.
+        <p>
+        Note: the policy lock must be held when this method is called.
+
+        @param node the node to unlink
+    */
+    private void unlink(Node node)
+    {
+        Assert.require(node != null);
+        Assert.require(_policyLock.isHeldByCurrentThread());
+
+        int queue = node._queue;
+        if (queue == WINDOW_QUEUE)
+        {
+            _window.remove(node);
+            _windowWeight -= node._weight;
+        }
+        else if (queue == PROBATION_QUEUE)
+        {
+            _probation.remove(node);
+        }
+        else if (queue == PROTECTED_QUEUE)
+        {
+            _protected.remove(node);
+            _protectedWeight -= node._weight;
+        }
+        if (queue != NEW_NODE && queue != DEAD_NODE)
+        {
+            _weightedSize -= node._weight;
+        }
+        node._queue = DEAD_NODE;
+            // so that, if it hasn't been added to a queue yet, it won't be
+
+        Assert.ensure(node._queue == DEAD_NODE);
+    }
+
+    /**
+        Waits for the specified task that's loading a value to finish, and
+        then returns the value that it loaded.
+
+        @param task the task that's loading the value
+        @return the value that 'task' loaded, which may be null
+        @exception CacheLoadingException thrown if 'task' failed with a
+        checked exception, or if the current thread is interrupted while
+        waiting for it
+    */
+    private Object waitFor(FutureTask task)
+        throws CacheLoadingException
+    {
+        Assert.require(task != null);
+
+        Object result;
+
+        try
+        {
+            result = task.get();
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new CacheLoadingException(ex);
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new CacheLoadingException(cause);
+        }
+
+        return result;  // may be null
+    }
+
+
+    // Inner classes
+
+    /**
+        The interface implemented by classes that load the values for keys
+        that aren't in a ConcurrentCache.
+    */
+    public static interface Loader
+    {
+        /**
+            Loads and returns the value for the specified key.
+
+            @param key the key whose value is to be loaded
+            @return the value for 'key', or null if there isn't one
+            @exception Exception thrown if the value couldn't be loaded
+        */
+        public Object load(Object key)
+            throws Exception;
+    }
+
+    /**
+        The interface implemented by classes that determine the weights of
+        the entries in a ConcurrentCache.
+    */
+    public static interface Weigher
+    {
+        /**
+            @param key an entry's key
+            @param value the entry's value
+            @return the weight of the entry: it must be non-negative
+        */
+        public int weigh(Object key, Object value);
+    }
+
+    /**
+        The Weigher that gives every entry a weight of 1.
+    */
+    private static class UnitWeigher
+        implements Weigher
+    {
+        /**
+            @see Weigher#weigh(Object, Object)
+        */
+        public int weigh(Object key, Object value)
+        {
+            return 1;
+        }
+    }
+
+    /**
+        The Callable that a thread runs to load the value of a key that's
+        missing from the cache. (The thread adds the loaded value to the
+        cache itself.)
+    */
+    private class Load
+        implements Callable
+    {
+        // Private fields
+
+        /** The key whose value is to be loaded. */
+        private Object _key;
+
+        /** The loader to use to load the value. */
+        private Loader _loader;
+
+        /**
+            Indicates whether the value was loaded by our loader (rather
+            than being found in the cache).
+        */
+        private boolean _wasLoaded;
+
+
+        // Constructors
+
+        /**
+            Constructs a Load.
+
+            @param key the key whose value is to be loaded
+            @param loader the loader to use to load the value
+        */
+        public Load(Object key, Loader loader)
+        {
+            Assert.require(key != null);
+            Assert.require(loader != null);
+
+            _key = key;
+            _loader = loader;
+            _wasLoaded = false;
+        }
+
+
+        // Public methods
+
+        /**
+            Note: this should only be called by the thread that called
+            call(), after it returned.
+
+            @return true iff the value that call() returned was loaded by
+            our loader, and so isn't in the cache yet
+        */
+        public boolean wasLoaded()
+        {
+            return _wasLoaded;
+        }
+
+        /**
+            Note: if the key's value was added to the cache between it
+            being found to be missing and this load starting then that
+            value is returned rather than loading it again.
+
+            @see Callable#call
+        */
+        public Object call()
+            throws Exception
+        {
+            Object result;
+
+            Node node = (Node) _map.get(_key);
+            if (node != null)
+            {
+                result = node._value;
+            }
+            else
+            {
+                try
+                {
+                    result = _loader.load(_key);
+                }
+                catch (Exception ex)
+                {
+                    _loadFailureCount.incrementAndGet();
+                    throw ex;
+                }
+                catch (Error ex)
+                {
+                    _loadFailureCount.incrementAndGet();
+                    throw ex;
+                }
+                if (result != null)
+                {
+                    _loadCount.incrementAndGet();
+                    _wasLoaded = true;
+                }
+            }
+
+            return result;  // may be null
+        }
+    }
+
+    /**
+        The nodes that contain the cache's entries, and that are linked
+        together into the eviction policy's queues.
+    */
+    private static class Node
+    {
+        // Private fields
+
+        /** The entry's key and value. */
+        private Object _key;
+        private Object _value;
+
+        /** The entry's weight. */
+        private int _weight;
+
+        /**
+            The queue that this node is in: one of our outer class'
+            *_QUEUE constants, or NEW_NODE or DEAD_NODE if it isn't in
+            any queue.
+        */
+        private int _queue;
+
+        /** The previous and next nodes in this node's queue. */
+        private Node _previous;
+        private Node _next;
+
+
+        // Constructors
+
+        /**
+            Constructs a Node.
+
+            @param key the entry's key
+            @param value the entry's value
+            @param weight the entry's weight
+        */
+        public Node(Object key, Object value, int weight)
+        {
+            // 'key' and 'value' are null in queues' sentinel nodes
+            Assert.require(weight >= 0);
+
+            _key = key;
+            _value = value;
+            _weight = weight;
+            _queue = NEW_NODE;
+            _previous = null;
+            _next = null;
+        }
+    }
+
+    /**
+        A doubly-linked queue of Nodes in order of last use, from least to
+        most recently used.
+    */
+    private static class AccessQueue
+    {
+        // Private fields
+
+        /**
+            The sentinel node that precedes the first node and follows
+            the last node in this queue.
+        */
+        private Node _sentinel;
+
+
+        // Constructors
+
+        /**
+            Constructs an empty AccessQueue.
+        */
+        public AccessQueue()
+        {
+            _sentinel = new Node(null, null, 0);
+            _sentinel._previous = _sentinel;
+            _sentinel._next = _sentinel;
+        }
+
+
+        // Public methods
+
+        /**
+            @return true iff this queue is empty
+        */
+        public boolean isEmpty()
+        {
+            return (_sentinel._next == _sentinel);
+        }
+
+        /**
+            @return the least recently used node in this queue, or null
+            if it's empty
+        */
+        public Node first()
+        {
+            Node result = _sentinel._next;
+            if (result == _sentinel)
+            {
+                result = null;
+            }
+
+            return result;  // may be null
+        }
+
+        /**
+            @param node a node in this queue
+            @return the node after 'node' in this queue, or null if
+            'node' is the last node
+        */
+        public Node next(Node node)
+        {
+            Assert.require(node != null);
+
+            Node result = node._next;
+            if (result == _sentinel)
+            {
+                result = null;
+            }
+
+            return result;  // may be null
+        }
+
+        /**
+            Adds the specified node to the end of this queue.
+
+            @param node the node to add: it must not be in any queue
+        */
+        public void addLast(Node node)
+        {
+            Assert.require(node != null);
+
+            Node last = _sentinel._previous;
+            node._previous = last;
+            node._next = _sentinel;
+            last._next = node;
+            _sentinel._previous = node;
+        }
+
+        /**
+            Removes the specified node from this queue.
+
+            @param node the node to remove: it must be in this queue
+        */
+        public void remove(Node node)
+        {
+            Assert.require(node != null);
+
+            node._previous._next = node._next;
+            node._next._previous = node._previous;
+            node._previous = null;
+            node._next = null;
+        }
+
+        /**
+            Moves the specified node to the end of this queue.
+
+            @param node the node to move: it must be in this queue
+        */
+        public void moveToLast(Node node)
+        {
+            Assert.require(node != null);
+
+            if (_sentinel._previous != node)
+            {
+                remove(node);
+                addLast(node);
+            }
+        }
+    }
+
+    /**
+        A bounded, lossy buffer of the nodes whose entries have been used,
+        that any number of threads can add to concurrently and that is
+        drained by the thread holding the policy lock.
+    */
+    private static class ReadBuffer
+    {
+        // Private fields
+
+        /** The buffer's slots. */
+        private AtomicReferenceArray _slots;
+
+        /** The number of nodes that have ever been added to the buffer. */
+        private AtomicLong _writeCount;
+
+        /**
+            The number of nodes that have ever been removed from the
+            buffer.
+        */
+        private volatile long _readCount;
+
+
+        // Constructors
+
+        /**
+            Constructs an empty ReadBuffer.
+        */
+        public ReadBuffer()
+        {
+            _slots = new AtomicReferenceArray(READ_BUFFER_SIZE);
+            _writeCount = new AtomicLong();
+            _readCount = 0L;
+        }
+
+
+        // Public methods
+
+        /**
+            Adds the specified node to this buffer, unless it's full.
+
+            @param node the node to add
+            @return the number of nodes in this buffer that haven't been
+            removed yet (which includes 'node' if it was added)
+        */
+        public int offer(Node node)
+        {
+            Assert.require(node != null);
+
+            long writes = _writeCount.get();
+            int result = (int) (writes - _readCount);
+            if (result < READ_BUFFER_SIZE &&
+                _writeCount.compareAndSet(writes, writes + 1))
+            {
+                _slots.lazySet((int) (writes % READ_BUFFER_SIZE), node);
+                result += 1;
+            }
+            // otherwise the buffer's full or another thread has just
+            // added a node, so the use is dropped
+
+            Assert.ensure(result >= 0);
+            return result;
+        }
+
+        /**
+            Removes and returns the next node from this buffer.
+            <p>
+            Note: this method must only be called by the thread holding
+            the policy lock.
+
+            @return the next node, or null if there isn't one (or it
+            hasn't quite finished being added yet)
+        */
+        public Node poll()
+        {
+            Node result = null;
+
+            long reads = _readCount;
+            if (reads < _writeCount.get())
+            {
+                int index = (int) (reads % READ_BUFFER_SIZE);
+                result = (Node) _slots.get(index);
+                if (result != null)
+                {
+                    _slots.lazySet(index, null);
+                    _readCount = reads + 1;
+                }
+            }
+
+            return result;  // may be null
+        }
+    }
+
+    /**
+        A count-min sketch of 4-bit counters that estimates how often each
+        key has been used. Once the counters have been incremented a
+        number of times proportional to the cache's size all of them are
+        halved, so that the estimates favour recent uses.
+        <p>
+        Note: instances aren't thread-safe: they're only used by the
+        thread holding the policy lock.
+    */
+    private static class FrequencySketch
+    {
+        // Constants
+
+        /** The seeds of the sketch's hash functions. */
+        private static final long[] SEEDS =
+        {
+            0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+            0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+        };
+
+        /** The maximum counter value, which is also a counter's mask. */
+        private static final long MAXIMUM_COUNT = 0xfL;
+
+        /**
+            The mask that clears the high bit of every counter after they
+            have all been shifted right by one bit.
+        */
+        private static final long RESET_MASK = 0x7777777777777777L;
+
+        /** The minimum and maximum number of longs in a sketch. */
+        private static final int
+            MINIMUM_TABLE_LENGTH = 16,
+            MAXIMUM_TABLE_LENGTH = 1 << 22;
+
+
+        // Private fields
+
+        /** The counters, 16 to a long. */
+        private long[] _table;
+
+        /**
+            The number of increments since the counters were last halved.
+        */
+        private int _size;
+
+        /** The number of increments at which the counters are halved. */
+        private int _sampleSize;
+
+
+        // Constructors
+
+        /**
+            Constructs a FrequencySketch.
+
+            @param maximumSize the (estimated) maximum number of entries
+            in the cache that the sketch is for
+        */
+        public FrequencySketch(long maximumSize)
+        {
+            Assert.require(maximumSize > 0);
+
+            _table = null;
+            ensureCapacity(maximumSize);
+        }
+
+
+        // Public methods
+
+        /**
+            Makes this sketch large enough for a cache containing the
+            specified number of entries, if it isn't already. All of the
+            estimates are lost if it's made larger.
+
+            @param maximumSize the (estimated) maximum number of entries
+            in the cache that the sketch is for
+        */
+        public void ensureCapacity(long maximumSize)
+        {
+            Assert.require(maximumSize >= 0);
+
+            long length = Math.max(MINIMUM_TABLE_LENGTH,
+                        Math.min(maximumSize, MAXIMUM_TABLE_LENGTH));
+            if (_table == null || _table.length < length)
+            {
+                int tableLength = 1;
+                while (tableLength < length)
+                {
+                    tableLength *= 2;
+                }
+                _table = new long[tableLength];
+                _size = 0;
+                _sampleSize = 10 * tableLength;
+            }
+        }
+
+        /**
+            @param hashCode a key's hash code
+            @return the estimated number of times that the key has been
+            used recently, which is at most 15
+        */
+        public int frequency(int hashCode)
+        {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            long result = MAXIMUM_COUNT;
+            for (int i = 0; i < SEEDS.length; i++)
+            {
+                int shift = (start + i) << 2;
+                long count = (_table[indexOf(hash, i)] >>> shift) &
+                                MAXIMUM_COUNT;
+                result = Math.min(result, count);
+            }
+
+            Assert.ensure(result >= 0 && result <= MAXIMUM_COUNT);
+            return (int) result;
+        }
+
+        /**
+            Increments the estimated number of times that a key has been
+            used recently.
+
+            @param hashCode the key's hash code
+        */
+        public void increment(int hashCode)
+        {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            boolean wasIncremented = false;
+            for (int i = 0; i < SEEDS.length; i++)
+            {
+                int index = indexOf(hash, i);
+                int shift = (start + i) << 2;
+                long mask = MAXIMUM_COUNT << shift;
+                if ((_table[index] & mask) != mask)
+                {
+                    _table[index] += 1L << shift;
+                    wasIncremented = true;
+                }
+            }
+
+            if (wasIncremented)
+            {
+                _size += 1;
+                if (_size >= _sampleSize)
+                {
+                    reset();
+                }
+            }
+        }
+
+
+        // Private methods
+
+        /**
+            Halves all of the counters.
+        */
+        private void reset()
+        {
+            for (int i = 0; i < _table.length; i++)
+            {
+                _table[i] = (_table[i] >>> 1) & RESET_MASK;
+            }
+            _size /= 2;
+        }
+
+        /**
+            @param hash a spread hash code
+            @param i the index of one of the sketch's hash functions
+            @return the index in our table of the long containing the
+            counter for 'hash' in the hash function with index 'i'
+        */
+        private int indexOf(int hash, int i)
+        {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += (h >>> 32);
+
+            return ((int) h) & (_table.length - 1);
+        }
+
+        /**
+            @param hashCode a key's hash code
+            @return 'hashCode' with its bits mixed so that keys whose hash
+            codes differ in only a few bits are spread across the sketch
+        */
+        private static int spread(int hashCode)
+        {
+            int result = hashCode * 0x9e3779b9;
+            result ^= (result >>> 16);
+            result *= 0x85ebca6b;
+            result ^= (result >>> 13);
+
+            return result;
+        }
+    }
+}
@@ -24,8 +24,13 @@ import java.util.*;
 /**
     Represents Maps that keep only the most recently used items, discarding
     the oldest ones.
+    <p>
+    Instances of this class aren't thread-safe, and a single scan through
+    many keys that are each used only once will evict all of the items
+    that are used often: a ConcurrentCache has neither problem.
 
     @author James MacKay
+    @see ConcurrentCache
 */
 public class MostRecentlyUsedCacheMap
     extends LinkedHashMap
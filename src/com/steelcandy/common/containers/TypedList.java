@@ -23,6 +23,7 @@ import com.steelcandy.common.NoSuchItemException;
 
 import com.steelcandy.common.text.TextUtilities;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -43,7 +44,7 @@ public abstract class TypedList
     // Private fields
 
     /** The items in this list, in order. */
-    private List _items;
+    private final List _items;
 
 
     // Constructors
@@ -162,6 +163,22 @@ public abstract class TypedList
         }
     }
 
+    /**
+        Releases any capacity in this list's backing list that is in excess
+        of the number of items currently in this list. This is useful in
+        reducing the memory used by lists that will not have any more items
+        added to them.
+        <p>
+        Lists whose backing lists aren't backed by arrays are unaffected.
+    */
+    public void trimToSize()
+    {
+        if (_items instanceof ArrayList)
+        {
+            ((ArrayList) _items).trimToSize();
+        }
+    }
+
     /**
         Removes the (index + 1)th item from this list.
 
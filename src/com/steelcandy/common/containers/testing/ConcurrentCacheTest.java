@@ -0,0 +1,449 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common.containers.testing;
+
+import com.steelcandy.common.containers.ConcurrentCache;
+
+import com.steelcandy.testing.*;
+
+import com.steelcandy.common.debug.Assert;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+    Tests a ConcurrentCache: that entries are evicted in the order that
+    its eviction policy says they should be, that when several threads
+    ask for the same missing keys at once each key's value is only loaded
+    once, and that its size and weighted size stay consistent when
+    several threads add, find and remove entries at once.
+
+    @author James MacKay
+    @see ConcurrentCache
+*/
+public class ConcurrentCacheTest
+    extends SingleTest
+{
+    // Constants
+
+    /** The maximum size of the cache used in the eviction order test. */
+    private static final int EVICTION_CACHE_SIZE = 100;
+
+    /**
+        The number of keys that are loaded in the concurrent loading test,
+        and the number of times that each thread gets each of them.
+    */
+    private static final int LOADED_KEY_COUNT = 200;
+    private static final int LOAD_ROUNDS = 3;
+
+    /**
+        The maximum size of the cache used in the concurrent update test,
+        the number of different keys used in it, and the number of
+        operations that each thread performs.
+    */
+    private static final int UPDATE_CACHE_SIZE = 100;
+    private static final int UPDATE_KEY_COUNT = 500;
+    private static final int UPDATE_OPERATIONS_PER_THREAD = 20000;
+
+    /** The number of threads used in the concurrent tests. */
+    private static final int THREAD_COUNT = 8;
+
+    /**
+        The seed used to generate the random operations, so that any
+        failure can be reproduced (as far as the threads' scheduling
+        allows).
+    */
+    private static final long RANDOM_SEED = 20230422L;
+
+
+    // Overridden methods
+
+    /**
+        @see Test#description
+    */
+    public String description()
+    {
+        return "tests a ConcurrentCache's eviction order, and that it " +
+               "loads each missing value once and stays consistent when " +
+               "it's used by several threads at once";
+    }
+
+    /**
+        @see AbstractTest#runTest
+    */
+    protected void runTest()
+        throws Throwable
+    {
+        boolean ok = true;
+
+        ok &= checkEvictionOrder();
+        ok &= checkConcurrentLoads();
+        ok &= checkConcurrentUpdates();
+
+        setSucceeded(ok);
+    }
+
+
+    // Private methods
+
+    /**
+        Checks that a cache evicts the entries that its eviction policy
+        says it should: a new entry that isn't used again is evicted rather
+        than an older entry that's been used as often, an entry that's
+        used more often than the least recently used entry in the main
+        part of the cache replaces it, and an entry that's used again is
+        protected from eviction.
+
+        @return true iff the check succeeded
+    */
+    private boolean checkEvictionOrder()
+    {
+        ConcurrentCache cache = new ConcurrentCache(EVICTION_CACHE_SIZE);
+        int n = EVICTION_CACHE_SIZE;
+
+        // Fill the cache: only the last key added is in the window.
+        for (int i = 0; i < n; i++)
+        {
+            cache.put(key(i), value(i));
+        }
+
+        // Key n - 1 is pushed out of the window and isn't admitted since
+        // it's been used no more often than key 0.
+        cache.put(key(n), value(n));
+
+        // Key n has been used more often than key 0, so it replaces it.
+        useRepeatedly(cache, n, 3);
+        cache.put(key(n + 1), value(n + 1));
+
+        // Key 1 is used again, so key 2 is the least recently used entry
+        // that's replaced by key n + 1.
+        useRepeatedly(cache, n + 1, 3);
+        useRepeatedly(cache, 1, 1);
+        cache.put(key(n + 2), value(n + 2));
+
+        int[] evicted = new int[] { n - 1, 0, 2 };
+        boolean result = true;
+        if (cache.evictionCount() != evicted.length ||
+            cache.size() != n || cache.weightedSize() != n)
+        {
+            result = fail("after the eviction order test the cache's " +
+                "eviction count was " + cache.evictionCount() +
+                ", its size was " + cache.size() + " and its weighted " +
+                "size was " + cache.weightedSize() + " rather than " +
+                evicted.length + ", " + n + " and " + n);
+        }
+        for (int i = 0; result && i < evicted.length; i++)
+        {
+            if (cache.get(key(evicted[i])) != null)
+            {
+                result = fail("the key " + evicted[i] + " wasn't " +
+                              "evicted from the cache");
+            }
+        }
+        for (int i = 0; result && i <= n + 2; i++)
+        {
+            if (i != evicted[0] && i != evicted[1] && i != evicted[2] &&
+                value(i).equals(cache.get(key(i))) == false)
+            {
+                result = fail("the key " + i + " was evicted from the " +
+                              "cache or had the wrong value");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        Checks that when several threads get the same missing keys from a
+        cache at once, each key's value is loaded exactly once and every
+        thread gets the loaded value.
+
+        @return true iff the check succeeded
+    */
+    private boolean checkConcurrentLoads()
+        throws Throwable
+    {
+        final ConcurrentCache cache =
+            new ConcurrentCache(2 * LOADED_KEY_COUNT);
+        final AtomicIntegerArray loads =
+            new AtomicIntegerArray(LOADED_KEY_COUNT);
+        final ConcurrentCache.Loader loader = new ConcurrentCache.Loader()
+        {
+            public Object load(Object key)
+            {
+                int i = ((Integer) key).intValue();
+                loads.incrementAndGet(i);
+                Thread.yield();  // give other threads a chance to miss
+                return value(i);
+            }
+        };
+        final boolean[] isWrong = new boolean[THREAD_COUNT];
+
+        Runnable[] tasks = new Runnable[THREAD_COUNT];
+        for (int t = 0; t < THREAD_COUNT; t++)
+        {
+            final int threadIndex = t;
+            final List keys = new ArrayList(LOADED_KEY_COUNT);
+            for (int i = 0; i < LOADED_KEY_COUNT; i++)
+            {
+                keys.add(key(i));
+            }
+            Collections.shuffle(keys, new Random(RANDOM_SEED + t));
+            tasks[t] = new Runnable()
+            {
+                public void run()
+                {
+                    for (int r = 0; r < LOAD_ROUNDS; r++)
+                    {
+                        Iterator iter = keys.iterator();
+                        while (iter.hasNext())
+                        {
+                            Integer k = (Integer) iter.next();
+                            Object v = cache.get(k, loader);
+                            if (value(k.intValue()).equals(v) == false)
+                            {
+                                isWrong[threadIndex] = true;
+                            }
+                        }
+                    }
+                }
+            };
+        }
+        runConcurrently(tasks);
+
+        boolean result = true;
+        for (int t = 0; result && t < THREAD_COUNT; t++)
+        {
+            if (isWrong[t])
+            {
+                result = fail("a thread got the wrong value for a key " +
+                              "from the cache");
+            }
+        }
+        for (int i = 0; result && i < LOADED_KEY_COUNT; i++)
+        {
+            if (loads.get(i) != 1)
+            {
+                result = fail("the value of the key " + i + " was " +
+                              "loaded " + loads.get(i) + " times");
+            }
+        }
+        if (result && (cache.loadCount() != LOADED_KEY_COUNT ||
+                       cache.size() != LOADED_KEY_COUNT))
+        {
+            result = fail("after the concurrent loads the cache's load " +
+                "count was " + cache.loadCount() + " and its size was " +
+                cache.size() + " rather than " + LOADED_KEY_COUNT);
+        }
+
+        return result;
+    }
+
+    /**
+        Checks that when several threads add, find and remove entries in a
+        small cache at once, the cache never contains more than its maximum
+        size and its size and weighted size agree once they're done.
+
+        @return true iff the check succeeded
+    */
+    private boolean checkConcurrentUpdates()
+        throws Throwable
+    {
+        final ConcurrentCache cache = new ConcurrentCache(UPDATE_CACHE_SIZE);
+        final boolean[] isWrong = new boolean[THREAD_COUNT];
+
+        Runnable[] tasks = new Runnable[THREAD_COUNT];
+        for (int t = 0; t < THREAD_COUNT; t++)
+        {
+            final int threadIndex = t;
+            final Random random = new Random(RANDOM_SEED + t);
+            tasks[t] = new Runnable()
+            {
+                public void run()
+                {
+                    for (int j = 0; j < UPDATE_OPERATIONS_PER_THREAD; j++)
+                    {
+                        int i = random.nextInt(UPDATE_KEY_COUNT);
+                        int op = random.nextInt(10);
+                        if (op < 5)
+                        {
+                            Object v = cache.get(key(i));
+                            if (v != null && value(i).equals(v) == false)
+                            {
+                                isWrong[threadIndex] = true;
+                            }
+                        }
+                        else if (op < 9)
+                        {
+                            cache.put(key(i), value(i));
+                        }
+                        else
+                        {
+                            cache.remove(key(i));
+                        }
+                    }
+                }
+            };
+        }
+        runConcurrently(tasks);
+        cache.cleanUp();
+
+        boolean result = true;
+        for (int t = 0; result && t < THREAD_COUNT; t++)
+        {
+            if (isWrong[t])
+            {
+                result = fail("a thread got the wrong value for a key " +
+                              "from the cache");
+            }
+        }
+        if (result && (cache.size() != cache.weightedSize() ||
+                       cache.size() > UPDATE_CACHE_SIZE))
+        {
+            result = fail("after the concurrent updates the cache's " +
+                "size was " + cache.size() + " and its weighted size " +
+                "was " + cache.weightedSize() + ": they should be equal " +
+                "and no more than " + UPDATE_CACHE_SIZE);
+        }
+
+        return result;
+    }
+
+    /**
+        Writes the specified message describing a failure.
+
+        @param msg the message describing the failure
+        @return false
+    */
+    private boolean fail(String msg)
+    {
+        Assert.require(msg != null);
+
+        writer().writeLine(TestWriter.DEBUG, msg);
+        return false;
+    }
+
+
+    // Private static methods
+
+    /**
+        Gets the entry for the specified key from the specified cache the
+        specified number of times.
+
+        @param cache the cache to get the entry from
+        @param i the index of the entry's key
+        @param count the number of times to get the entry
+    */
+    private static void useRepeatedly(ConcurrentCache cache, int i,
+                                      int count)
+    {
+        Assert.require(cache != null);
+        Assert.require(count >= 0);
+
+        for (int j = 0; j < count; j++)
+        {
+            cache.get(key(i));
+        }
+    }
+
+    /**
+        Runs each of the specified tasks in its own thread, and waits for
+        them all to finish.
+
+        @param tasks the tasks to run
+        @exception Throwable thrown if one of the tasks threw it, or if the
+        current thread was interrupted while waiting for them
+    */
+    private static void runConcurrently(Runnable[] tasks)
+        throws Throwable
+    {
+        Assert.require(tasks != null);
+
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[tasks.length];
+        for (int t = 0; t < tasks.length; t++)
+        {
+            final Runnable task = tasks[t];
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        task.run();
+                    }
+                    catch (Throwable ex)
+                    {
+                        synchronized (failure)
+                        {
+                            failure[0] = ex;
+                        }
+                    }
+                }
+            };
+        }
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t].start();
+        }
+        for (int t = 0; t < threads.length; t++)
+        {
+            threads[t].join();
+        }
+
+        synchronized (failure)
+        {
+            if (failure[0] != null)
+            {
+                throw failure[0];
+            }
+        }
+    }
+
+    /**
+        @param i an index
+        @return the key with index 'i'
+    */
+    private static Integer key(int i)
+    {
+        return new Integer(i);
+    }
+
+    /**
+        @param i an index
+        @return the value that the key with index 'i' maps to
+    */
+    private static String value(int i)
+    {
+        return "value " + i;
+    }
+
+
+    // Main method
+
+    /**
+        Runs this test.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        ConcurrentCacheTest t = new ConcurrentCacheTest();
+        EXECUTOR.executeAndExit(t, args);
+    }
+}
@@ -30,11 +30,16 @@ public final class Assert
 
     /**
         Constants that control which types of assertions are actually
-        checked.
+        checked. The assertions checked by this class's methods are cheap
+        ones, so they're all checked unless the default contract level is
+        set below ContractTier.CHEAP.
+
+        @see ContractTier
     */
-    public static final boolean preconds  = true;
-    public static final boolean checks    = true;
-    public static final boolean postconds = true;
+    public static final boolean preconds  =
+        (ContractTier.defaultLevel() >= ContractTier.CHEAP);
+    public static final boolean checks    = preconds;
+    public static final boolean postconds = preconds;
 
     /**
         Alternate names for the above constants - don't modify the
@@ -80,6 +85,25 @@ public final class Assert
         }
     }
 
+    /**
+        Throws a PreconditionFailedException constructed from the message
+        supplied by theMessage if and only if theCondition is false.
+
+        @param theCondition the (value of the) condition to test
+        @param theMessage supplies the message to report if 'theCondition'
+        is false: it's only asked for the message if 'theCondition' is
+        false
+        @exception PreconditionFailedException thrown iff
+        'theCondition' is false
+    */
+    public static final void require(boolean theCondition, Message theMessage)
+    {
+        if (preconds && !theCondition)
+        {
+            throw new PreconditionFailedException(theMessage.text());
+        }
+    }
+
     /**
         Throws an AssertionFailedException if and only if theCondition
         is false.
@@ -114,6 +138,25 @@ public final class Assert
         }
     }
 
+    /**
+        Throws an AssertionFailedException constructed from the message
+        supplied by theMessage if and only if theCondition is false.
+
+        @param theCondition the (value of the) condition to test
+        @param theMessage supplies the message to report if 'theCondition'
+        is false: it's only asked for the message if 'theCondition' is
+        false
+        @exception AssertionFailedException thrown iff
+        'theCondition' is false
+    */
+    public static final void check(boolean theCondition, Message theMessage)
+    {
+        if (checks && !theCondition)
+        {
+            throw new AssertionFailedException(theMessage.text());
+        }
+    }
+
      /**
         Throws a PostconditionFailedException if and only if theCondition
         is false.
@@ -148,6 +191,25 @@ public final class Assert
         }
     }
 
+    /**
+        Throws a PostconditionFailedException constructed from the message
+        supplied by theMessage if and only if theCondition is false.
+
+        @param theCondition the (value of the) condition to test
+        @param theMessage supplies the message to report if 'theCondition'
+        is false: it's only asked for the message if 'theCondition' is
+        false
+        @exception PostconditionFailedException thrown iff
+        'theCondition' is false
+    */
+    public static final void ensure(boolean theCondition, Message theMessage)
+    {
+        if (postconds && !theCondition)
+        {
+            throw new PostconditionFailedException(theMessage.text());
+        }
+    }
+
 
     /**
         Place a call to this method just before any code that should
@@ -158,4 +220,34 @@ public final class Assert
     {
         throw new UnreachableCodeReachedException();
     }
+
+
+    // Inner interfaces
+
+    /**
+        The interface implemented by conditions that are only to be
+        evaluated if they're going to be checked.
+
+        @see ContractTier
+    */
+    public static interface Condition
+    {
+        /**
+            @return true iff this condition holds
+        */
+        public boolean holds();
+    }
+
+    /**
+        The interface implemented by suppliers of the messages that are
+        reported when assertions fail, so that the messages are only built
+        when they're going to be reported.
+    */
+    public static interface Message
+    {
+        /**
+            @return the message
+        */
+        public String text();
+    }
 }
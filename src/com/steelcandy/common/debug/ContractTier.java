@@ -0,0 +1,560 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common.debug;
+
+import com.steelcandy.common.Resources;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+    A tier of contract checks - that is, of preconditions, postconditions
+    and other assertions - whose checks are only done if the contract
+    level selected for the class that uses the tier is at least as high as
+    the tier.
+    <p>
+    Contract levels are selected at startup using the system property
+    named by LEVELS_PROPERTY, whose value is a comma-separated list of
+    settings. Each setting is either just the name of a level, which sets
+    the default level, or a package or class name followed by '=' and the
+    name of a level, which sets the level for that package or class and
+    everything in it: the setting with the longest matching name applies.
+    The level names are 'none', 'cheap', 'standard' and 'expensive'. For
+    example
+    <pre>
+        -Dcom.steelcandy.contracts=cheap,com.steelcandy.common.ints=expensive
+    </pre>
+    does only cheap checks except in the com.steelcandy.common.ints
+    package, where all checks are done. Only cheap checks are done if the
+    property isn't set, so expensive checks have to be selected
+    explicitly (usually only when testing).
+    <p>
+    The checks done by Assert's methods are all cheap ones, and since
+    Assert doesn't know which class is calling it they're governed by the
+    default level.
+    <p>
+    A class usually creates the tiers that it uses once, as constants:
+    <pre>
+        private static final ContractTier EXPENSIVE =
+            ContractTier.expensive(MyClass.class);
+    </pre>
+    Whether a tier is enabled never changes after it's created, so once a
+    check on a disabled tier has been inlined it costs no more than a test
+    of a final field, and any Condition or Message passed to it is never
+    evaluated. (Code in which even that is too much can guard its checks
+    using a static final boolean initialized from isEnabled().)
+
+    @author James MacKay
+    @see Assert
+*/
+public final class ContractTier
+{
+    // Constants
+
+    /** Resource identifiers. */
+    private static final String
+        IGNORED_SETTING_MSG = "IGNORED_SETTING_MSG";
+
+    /** The contract level at which no checks are done. */
+    public static final int NONE = 0;
+
+    /** The tier of checks that are cheap enough to do in production. */
+    public static final int CHEAP = 1;
+
+    /** The tier of checks that are moderately expensive to do. */
+    public static final int STANDARD = 2;
+
+    /**
+        The tier of checks that are expensive enough to noticeably slow down
+        the code that does them: they usually only get done in testing.
+    */
+    public static final int EXPENSIVE = 3;
+
+    /** The names of the levels, indexed by level. */
+    private static final String[] LEVEL_NAMES =
+        { "none", "cheap", "standard", "expensive" };
+
+    /**
+        The name of the system property whose value selects the contract
+        levels.
+    */
+    public static final String
+        LEVELS_PROPERTY = "com.steelcandy.contracts";
+
+    /**
+        The contract level that applies to everything that no level was
+        selected for by LEVELS_PROPERTY.
+    */
+    private static final int UNSELECTED_LEVEL = CHEAP;
+
+    /**
+        The key in _levels under which the default level is stored.
+    */
+    private static final String DEFAULT_LEVEL_KEY = "";
+
+    /**
+        The settings in the value of LEVELS_PROPERTY that were ignored
+        because they don't end with a valid level name: each item is a
+        String.
+    */
+    private static final List _ignoredSettings = new ArrayList();
+
+    /**
+        A map from each package or class name whose level was set by
+        LEVELS_PROPERTY to its level, as an Integer.
+    */
+    private static final Map _levels =
+        parseLevels(levelsPropertyValue(), _ignoredSettings);
+
+    /** The default contract level. */
+    private static final int _defaultLevel =
+        levelFor(DEFAULT_LEVEL_KEY);
+
+    // Note: this must come after the initialization of _defaultLevel
+    // since reporting uses Resources, which use Assert, which uses the
+    // default level.
+    static
+    {
+        reportIgnoredSettings();
+    }
+
+
+    // Private fields
+
+    /** This tier. */
+    private final int _tier;
+
+    /** Indicates whether our checks are done. */
+    private final boolean _isEnabled;
+
+
+    // Constructors
+
+    /**
+        Constructs a ContractTier.
+
+        @param tier the tier
+        @param isEnabled true iff the tier's checks are to be done
+    */
+    private ContractTier(int tier, boolean isEnabled)
+    {
+        _tier = tier;
+        _isEnabled = isEnabled;
+    }
+
+
+    // Public static methods
+
+    /**
+        @param c the class that is to use the tier
+        @return the tier of cheap checks for 'c'
+    */
+    public static ContractTier cheap(Class c)
+    {
+        return create(CHEAP, c);
+    }
+
+    /**
+        @param c the class that is to use the tier
+        @return the tier of standard checks for 'c'
+    */
+    public static ContractTier standard(Class c)
+    {
+        return create(STANDARD, c);
+    }
+
+    /**
+        @param c the class that is to use the tier
+        @return the tier of expensive checks for 'c'
+    */
+    public static ContractTier expensive(Class c)
+    {
+        return create(EXPENSIVE, c);
+    }
+
+    /**
+        @param tier the tier to create: CHEAP, STANDARD or EXPENSIVE
+        @param c the class that is to use the tier
+        @return the specified tier of checks for 'c'
+    */
+    public static ContractTier create(int tier, Class c)
+    {
+        Assert.require(tier >= CHEAP && tier <= EXPENSIVE);
+        Assert.require(c != null);
+
+        return new ContractTier(tier, levelFor(c.getName()) >= tier);
+    }
+
+    /**
+        @return the default contract level: the level that applies to
+        everything that no more specific level was selected for
+    */
+    public static int defaultLevel()
+    {
+        return _defaultLevel;
+    }
+
+    /**
+        @param name the fully-qualified name of a class or package
+        @return the contract level selected for the class or package
+    */
+    public static int levelFor(String name)
+    {
+        Integer level = (Integer) _levels.get(name);
+        String n = name;
+        while (level == null && n.length() > 0)
+        {
+            int index = Math.max(n.lastIndexOf('.'), n.lastIndexOf('$'));
+            n = (index >= 0) ? n.substring(0, index) : DEFAULT_LEVEL_KEY;
+            level = (Integer) _levels.get(n);
+        }
+
+        int result = (level != null) ? level.intValue() : UNSELECTED_LEVEL;
+
+        return result;
+    }
+
+    /**
+        @param level a contract level
+        @return the name of 'level'
+    */
+    public static String levelName(int level)
+    {
+        Assert.require(level >= NONE && level <= EXPENSIVE);
+
+        return LEVEL_NAMES[level];
+    }
+
+
+    // Public methods
+
+    /**
+        @return this tier: CHEAP, STANDARD or EXPENSIVE
+    */
+    public int tier()
+    {
+        return _tier;
+    }
+
+    /**
+        @return true iff this tier's checks are done
+    */
+    public boolean isEnabled()
+    {
+        return _isEnabled;
+    }
+
+    /**
+        @see Assert#require(boolean)
+    */
+    public void require(boolean theCondition)
+    {
+        if (_isEnabled && !theCondition)
+        {
+            throw new PreconditionFailedException();
+        }
+    }
+
+    /**
+        @see Assert#require(boolean, Assert.Message)
+    */
+    public void require(boolean theCondition, Assert.Message theMessage)
+    {
+        if (_isEnabled && !theCondition)
+        {
+            throw new PreconditionFailedException(theMessage.text());
+        }
+    }
+
+    /**
+        Throws a PreconditionFailedException iff this tier is enabled and
+        the specified condition doesn't hold.
+
+        @param theCondition the condition to test: it's only evaluated if
+        this tier is enabled
+        @exception PreconditionFailedException thrown iff this tier is
+        enabled and 'theCondition' doesn't hold
+    */
+    public void require(Assert.Condition theCondition)
+    {
+        if (_isEnabled && !theCondition.holds())
+        {
+            throw new PreconditionFailedException();
+        }
+    }
+
+    /**
+        Throws a PreconditionFailedException constructed from the specified
+        message iff this tier is enabled and the specified condition
+        doesn't hold.
+
+        @param theCondition the condition to test: it's only evaluated if
+        this tier is enabled
+        @param theMessage the message to report if 'theCondition' doesn't
+        hold: it's only evaluated if it doesn't
+        @exception PreconditionFailedException thrown iff this tier is
+        enabled and 'theCondition' doesn't hold
+    */
+    public void require(Assert.Condition theCondition,
+                        Assert.Message theMessage)
+    {
+        if (_isEnabled && !theCondition.holds())
+        {
+            throw new PreconditionFailedException(theMessage.text());
+        }
+    }
+
+    /**
+        @see Assert#check(boolean)
+    */
+    public void check(boolean theCondition)
+    {
+        if (_isEnabled && !theCondition)
+        {
+            throw new AssertionFailedException();
+        }
+    }
+
+    /**
+        @see Assert#check(boolean, Assert.Message)
+    */
+    public void check(boolean theCondition, Assert.Message theMessage)
+    {
+        if (_isEnabled && !theCondition)
+        {
+            throw new AssertionFailedException(theMessage.text());
+        }
+    }
+
+    /**
+        Throws an AssertionFailedException iff this tier is enabled and the
+        specified condition doesn't hold.
+
+        @param theCondition the condition to test: it's only evaluated if
+        this tier is enabled
+        @exception AssertionFailedException thrown iff this tier is enabled
+        and 'theCondition' doesn't hold
+    */
+    public void check(Assert.Condition theCondition)
+    {
+        if (_isEnabled && !theCondition.holds())
+        {
+            throw new AssertionFailedException();
+        }
+    }
+
+    /**
+        Throws an AssertionFailedException constructed from the specified
+        message iff this tier is enabled and the specified condition
+        doesn't hold.
+
+        @param theCondition the condition to test: it's only evaluated if
+        this tier is enabled
+        @param theMessage the message to report if 'theCondition' doesn't
+        hold: it's only evaluated if it doesn't
+        @exception AssertionFailedException thrown iff this tier is enabled
+        and 'theCondition' doesn't hold
+    */
+    public void check(Assert.Condition theCondition,
+                      Assert.Message theMessage)
+    {
+        if (_isEnabled && !theCondition.holds())
+        {
+            throw new AssertionFailedException(theMessage.text());
+        }
+    }
+
+    /**
+        @see Assert#ensure(boolean)
+    */
+    public void ensure(boolean theCondition)
+    {
+        if (_isEnabled && !theCondition)
+        {
+            throw new PostconditionFailedException();
+        }
+    }
+
+    /**
+        @see Assert#ensure(boolean, Assert.Message)
+    */
+    public void ensure(boolean theCondition, Assert.Message theMessage)
+    {
+        if (_isEnabled && !theCondition)
+        {
+            throw new PostconditionFailedException(theMessage.text());
+        }
+    }
+
+    /**
+        Throws a PostconditionFailedException iff this tier is enabled and
+        the specified condition doesn't hold.
+
+        @param theCondition the condition to test: it's only evaluated if
+        this tier is enabled
+        @exception PostconditionFailedException thrown iff this tier is
+        enabled and 'theCondition' doesn't hold
+    */
+    public void ensure(Assert.Condition theCondition)
+    {
+        if (_isEnabled && !theCondition.holds())
+        {
+            throw new PostconditionFailedException();
+        }
+    }
+
+    /**
+        Throws a PostconditionFailedException constructed from the
+        specified message iff this tier is enabled and the specified
+        condition doesn't hold.
+
+        @param theCondition the condition to test: it's only evaluated if
+        this tier is enabled
+        @param theMessage the message to report if 'theCondition' doesn't
+        hold: it's only evaluated if it doesn't
+        @exception PostconditionFailedException thrown iff this tier is
+        enabled and 'theCondition' doesn't hold
+    */
+    public void ensure(Assert.Condition theCondition,
+                       Assert.Message theMessage)
+    {
+        if (_isEnabled && !theCondition.holds())
+        {
+            throw new PostconditionFailedException(theMessage.text());
+        }
+    }
+
+
+    // Private static methods
+
+    /**
+        Note: this method is called while this class is being initialized,
+        so it mustn't use Assert (which uses this class).
+
+        @return the value of the system property that selects the contract
+        levels, or null if it isn't set or can't be read
+    */
+    private static String levelsPropertyValue()
+    {
+        String result;
+
+        try
+        {
+            result = System.getProperty(LEVELS_PROPERTY);
+        }
+        catch (SecurityException ex)
+        {
+            result = null;
+        }
+
+        return result;
+    }
+
+    /**
+        Parses a value of the system property that selects the contract
+        levels. Settings that name an unknown level are ignored.
+        <p>
+        Note: this method is called while this class is being initialized,
+        so it mustn't use Assert (which uses this class).
+
+        @param value the property's value, or null if it isn't set
+        @param ignoredSettings the list to add each of the settings in
+        'value' that are ignored to
+        @return a map from each name in 'value' to its level, as an
+        Integer: the default level's name is DEFAULT_LEVEL_KEY
+    */
+    private static Map parseLevels(String value, List ignoredSettings)
+    {
+        Map result = new HashMap();
+
+        if (value != null)
+        {
+            StringTokenizer settings = new StringTokenizer(value, ",");
+            while (settings.hasMoreTokens())
+            {
+                String setting = settings.nextToken().trim();
+                String name = DEFAULT_LEVEL_KEY;
+                String levelName = setting;
+                int index = setting.indexOf('=');
+                if (index >= 0)
+                {
+                    name = setting.substring(0, index).trim();
+                    levelName = setting.substring(index + 1).trim();
+                }
+
+                int level = parseLevelName(levelName);
+                if (level >= 0)
+                {
+                    result.put(name, new Integer(level));
+                }
+                else if (setting.length() > 0)
+                {
+                    ignoredSettings.add(setting);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        Reports each of the settings in the value of the system property
+        that selects the contract levels that were ignored, on standard
+        error.
+        <p>
+        Note: the resources are only obtained here (rather than when this
+        class is initialized) so that Assert isn't initialized before the
+        default level is.
+    */
+    private static void reportIgnoredSettings()
+    {
+        Iterator iter = _ignoredSettings.iterator();
+        while (iter.hasNext())
+        {
+            Resources resources = DebugResourcesLocator.resources;
+            String setting = (String) iter.next();
+            String msg = resources.getMessage(IGNORED_SETTING_MSG,
+                                              setting, LEVELS_PROPERTY);
+            System.err.println(msg);
+        }
+    }
+
+    /**
+        @param name the name of a contract level
+        @return the level named 'name', or -1 if 'name' isn't the name of
+        a level
+    */
+    private static int parseLevelName(String name)
+    {
+        int result = -1;
+
+        for (int i = 0; i < LEVEL_NAMES.length; i++)
+        {
+            if (LEVEL_NAMES[i].equalsIgnoreCase(name))
+            {
+                result = i;
+            }
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,2007 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common.ints;
+
+import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.debug.ContractTier;
+
+import com.steelcandy.common.NoSuchItemException;
+
+import java.util.Arrays;
+
+/**
+    An IntSortedSet that divides the ints into chunks of 64K consecutive
+    values and represents the members of each chunk in whichever of three
+    ways suits them: as a sorted array of their low 16 bits when they're
+    sparse, as a bitmap when they're dense, or as a list of runs of
+    consecutive values when they're mostly ranges.
+    <p>
+    Chunks that contain no members take up no space at all, and no member
+    is ever boxed, so instances typically take up a small fraction of the
+    space that an IntTreeSet with the same members would, and iterating
+    over their members or finding their first and last members doesn't
+    involve following any pointers.
+    <p>
+    Instances switch a chunk between an array and a bitmap as it is added
+    to and removed from, but only switch a chunk to a list of runs when
+    one of its ranges is added using addRange() or when optimize() is
+    called: a set that is built using add() should have optimize() called
+    on it once it's built if it's likely to contain long runs of
+    consecutive ints.
+    <p>
+    Instances are not thread-safe.
+
+    @author  James MacKay
+    @see IntTreeSet
+*/
+public class IntChunkedSet
+    extends AbstractIntCollection
+    implements IntSortedSet
+{
+    // Constants
+
+    /** The number of bits in the part of an int that selects its chunk. */
+    private static final int CHUNK_BITS = 16;
+
+    /** The number of ints in a chunk. */
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /** The mask that selects the low (within-chunk) part of an int. */
+    private static final int LOW_MASK = CHUNK_SIZE - 1;
+
+    /**
+        The value that is XORed with the high part of an int to obtain its
+        chunk key, so that the keys of negative ints sort before those of
+        non-negative ones.
+    */
+    private static final int KEY_FLIP = 1 << (CHUNK_BITS - 1);
+
+    /**
+        The maximum number of members of a chunk that is represented as an
+        array: at this size an array takes up as much space as a bitmap.
+    */
+    private static final int MAX_ARRAY_SIZE = CHUNK_SIZE / 16;
+
+    /** The number of longs in a chunk's bitmap. */
+    private static final int BITMAP_WORDS = CHUNK_SIZE / 64;
+
+    /** The number of bytes that a chunk's bitmap takes up. */
+    private static final int BITMAP_BYTES = CHUNK_SIZE / 8;
+
+    /** The initial capacity of our chunk arrays. */
+    private static final int INITIAL_CHUNK_CAPACITY = 4;
+
+    /** The tier of expensive contract checks used by this class. */
+    private static final ContractTier EXPENSIVE =
+        ContractTier.expensive(IntChunkedSet.class);
+
+
+    // Private fields
+
+    /**
+        The keys of the chunks in this set that contain at least one of
+        its members, in ascending order: only the first '_chunkCount'
+        elements are keys.
+    */
+    private int[] _keys;
+
+    /**
+        The containers holding the members of this set: the container at
+        index i holds the members in the chunk whose key is _keys[i].
+    */
+    private Container[] _containers;
+
+    /** The number of chunks in this set that contain members. */
+    private int _chunkCount;
+
+    /** The number of members of this set. */
+    private int _size;
+
+
+    // Constructors
+
+    /**
+        Constructs an empty IntChunkedSet.
+    */
+    public IntChunkedSet()
+    {
+        _keys = new int[INITIAL_CHUNK_CAPACITY];
+        _containers = new Container[INITIAL_CHUNK_CAPACITY];
+        _chunkCount = 0;
+        _size = 0;
+
+        Assert.ensure(isEmpty());
+    }
+
+    /**
+        Constructs an IntChunkedSet that contains the same ints as the
+        specified set.
+
+        @param values the set whose ints the new set is to contain
+    */
+    public IntChunkedSet(IntSet values)
+    {
+        this();
+        Assert.require(values != null);
+
+        addAll(values);
+
+        Assert.ensure(size() == values.size());
+    }
+
+
+    // Public methods
+
+    /**
+        @see IntCollection#size
+    */
+    public int size()
+    {
+        Assert.ensure(_size >= 0);
+        return _size;
+    }
+
+    /**
+        @see IntSet#has(int)
+    */
+    public boolean has(int value)
+    {
+        boolean result = false;
+
+        int i = chunkIndex(keyOf(value));
+        if (i >= 0)
+        {
+            result = _containers[i].has(value & LOW_MASK);
+        }
+
+        return result;
+    }
+
+    /**
+        @see IntSet#add(int)
+    */
+    public boolean add(int value)
+    {
+        boolean result;
+
+        int key = keyOf(value);
+        int low = value & LOW_MASK;
+        int i = chunkIndex(key);
+        if (i >= 0)
+        {
+            Container c = _containers[i];
+            int oldCount = c.cardinality();
+            c = c.add(low);
+            _containers[i] = c;
+            result = (c.cardinality() > oldCount);
+        }
+        else
+        {
+            ArrayContainer c = new ArrayContainer(1);
+            c.add(low);
+            insertChunk(-(i + 1), key, c);
+            result = true;
+        }
+
+        if (result)
+        {
+            _size += 1;
+        }
+
+        Assert.ensure(has(value));
+        return result;
+    }
+
+    /**
+        Adds all of the ints from 'first' through 'last', inclusive, that
+        aren't already in this set to this set.
+        <p>
+        Chunks that are entirely covered by the range end up represented
+        by a single run, and any other chunk that the range overlaps ends
+        up represented in whichever way takes up the least space.
+
+        @param first the first int in the range of ints to add
+        @param last the last int in the range of ints to add
+    */
+    public void addRange(int first, int last)
+    {
+        Assert.require(first <= last);
+
+        int firstKey = keyOf(first);
+        int lastKey = keyOf(last);
+        for (int key = firstKey; key <= lastKey; key++)
+        {
+            int lowFirst = (key == firstKey) ? (first & LOW_MASK) : 0;
+            int lowLast = (key == lastKey) ? (last & LOW_MASK) : LOW_MASK;
+
+            int i = chunkIndex(key);
+            if (i >= 0)
+            {
+                Container c = _containers[i];
+                _size -= c.cardinality();
+                c = c.addRange(lowFirst, lowLast);
+                _containers[i] = c;
+                _size += c.cardinality();
+            }
+            else
+            {
+                Container c = new RunContainer(lowFirst, lowLast);
+                insertChunk(-(i + 1), key, c);
+                _size += c.cardinality();
+            }
+        }
+
+        Assert.ensure(has(first));
+        Assert.ensure(has(last));
+    }
+
+    /**
+        @see IntSet#addAll(IntSet)
+    */
+    public void addAll(IntSet values)
+    {
+        Assert.require(values != null);
+
+        if (values instanceof IntChunkedSet)
+        {
+            IntChunkedSet u = union(this, (IntChunkedSet) values);
+            _keys = u._keys;
+            _containers = u._containers;
+            _chunkCount = u._chunkCount;
+            _size = u._size;
+        }
+        else
+        {
+            IntIterator iter = values.iterator();
+            while (iter.hasNext())
+            {
+                add(iter.next());
+            }
+        }
+
+        Assert.ensure(size() >= values.size());
+    }
+
+    /**
+        @see IntSet#remove(int)
+    */
+    public boolean remove(int value)
+    {
+        boolean result = false;
+
+        int i = chunkIndex(keyOf(value));
+        if (i >= 0)
+        {
+            Container c = _containers[i];
+            int oldCount = c.cardinality();
+            c = c.remove(value & LOW_MASK);
+            result = (c.cardinality() < oldCount);
+            if (c.cardinality() == 0)
+            {
+                removeChunk(i);
+            }
+            else
+            {
+                _containers[i] = c;
+            }
+        }
+
+        if (result)
+        {
+            _size -= 1;
+        }
+
+        Assert.ensure(has(value) == false);
+        return result;
+    }
+
+    /**
+        Removes all of the ints from this set.
+    */
+    public void removeAll()
+    {
+        Arrays.fill(_containers, 0, _chunkCount, null);
+        _chunkCount = 0;
+        _size = 0;
+
+        Assert.ensure(isEmpty());
+    }
+
+    /**
+        @see IntSortedSet#first
+    */
+    public int first()
+    {
+        Assert.require(isEmpty() == false);
+
+        return valueOf(_keys[0], _containers[0].first());
+    }
+
+    /**
+        @see IntSortedSet#last
+    */
+    public int last()
+    {
+        Assert.require(isEmpty() == false);
+
+        int i = _chunkCount - 1;
+        return valueOf(_keys[i], _containers[i].last());
+    }
+
+    /**
+        @param value an int
+        @return the number of ints in this set that are less than or equal
+        to 'value'
+    */
+    public int rank(int value)
+    {
+        int result = 0;
+
+        int key = keyOf(value);
+        for (int i = 0; i < _chunkCount && _keys[i] <= key; i++)
+        {
+            if (_keys[i] < key)
+            {
+                result += _containers[i].cardinality();
+            }
+            else
+            {
+                result += _containers[i].rank(value & LOW_MASK);
+            }
+        }
+
+        Assert.ensure(result >= 0);
+        Assert.ensure(result <= size());
+        return result;
+    }
+
+    /**
+        @param index the index of an int in this set when its ints are in
+        ascending order
+        @return the int in this set with the specified index: that is, the
+        int in this set that's greater than exactly 'index' other ints in
+        this set
+        @see #rank(int)
+    */
+    public int select(int index)
+    {
+        Assert.require(index >= 0);
+        Assert.require(index < size());
+
+        int i = 0;
+        int remaining = index;
+        while (remaining >= _containers[i].cardinality())
+        {
+            remaining -= _containers[i].cardinality();
+            i += 1;
+        }
+
+        int result = valueOf(_keys[i], _containers[i].select(remaining));
+
+        if (EXPENSIVE.isEnabled())
+        {
+            EXPENSIVE.ensure(rank(result) == index + 1);
+        }
+        return result;
+    }
+
+    /**
+        Changes how each chunk of this set is represented to whichever way
+        takes up the least space. This is most worthwhile once a set that
+        contains long runs of consecutive ints has been built up using
+        add().
+    */
+    public void optimize()
+    {
+        for (int i = 0; i < _chunkCount; i++)
+        {
+            _containers[i] = _containers[i].optimize();
+        }
+    }
+
+    /**
+        @return a new set that contains all of the ints that are in this
+        set, in 'other', or in both
+        @param other the set to form the union of with this set
+    */
+    public IntChunkedSet union(IntChunkedSet other)
+    {
+        Assert.require(other != null);
+
+        IntChunkedSet result = union(this, other);
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.size() >= size());
+        Assert.ensure(result.size() >= other.size());
+        return result;
+    }
+
+    /**
+        @return a new set that contains all of the ints that are in both
+        this set and 'other'
+        @param other the set to form the intersection of with this set
+    */
+    public IntChunkedSet intersection(IntChunkedSet other)
+    {
+        Assert.require(other != null);
+
+        IntChunkedSet result = new IntChunkedSet();
+
+        int i = 0;
+        int j = 0;
+        while (i < _chunkCount && j < other._chunkCount)
+        {
+            int key = _keys[i];
+            int otherKey = other._keys[j];
+            if (key < otherKey)
+            {
+                i += 1;
+            }
+            else if (key > otherKey)
+            {
+                j += 1;
+            }
+            else
+            {
+                Container c = _containers[i].and(other._containers[j]);
+                if (c.cardinality() > 0)
+                {
+                    result.appendChunk(key, c);
+                }
+                i += 1;
+                j += 1;
+            }
+        }
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.size() <= size());
+        Assert.ensure(result.size() <= other.size());
+        return result;
+    }
+
+    /**
+        Note: the iterator returns this set's ints in ascending order, a
+        chunk at a time, and shouldn't be used after this set is modified.
+
+        @see IntSet#iterator
+    */
+    public IntIterator iterator()
+    {
+        IntIterator result = new ChunkedSetIterator();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see IntSet#toArray
+    */
+    public int[] toArray()
+    {
+        int[] result = new int[_size];
+
+        int offset = 0;
+        for (int i = 0; i < _chunkCount; i++)
+        {
+            offset = _containers[i].copyValues(result, offset,
+                                               highOf(_keys[i]));
+        }
+        Assert.check(offset == _size);
+
+        Assert.ensure(result.length == size());
+        return result;
+    }
+
+    /**
+        @see Object#toString
+    */
+    public String toString()
+    {
+        return toString(this);
+    }
+
+
+    // Private methods
+
+    /**
+        @param key a chunk key
+        @return the index in '_keys' of 'key' if it's there, and
+        -(i + 1) otherwise, where i is the index at which it would have to
+        be inserted
+    */
+    private int chunkIndex(int key)
+    {
+        int result;
+
+        if (_chunkCount > 0 && _keys[_chunkCount - 1] == key)
+        {
+            // Appending to a set is the common case.
+            result = _chunkCount - 1;
+        }
+        else
+        {
+            result = Arrays.binarySearch(_keys, 0, _chunkCount, key);
+        }
+
+        return result;
+    }
+
+    /**
+        Inserts a chunk at the specified index.
+
+        @param index the index at which to insert the chunk
+        @param key the chunk's key
+        @param c the container holding the chunk's members
+    */
+    private void insertChunk(int index, int key, Container c)
+    {
+        Assert.require(index >= 0);
+        Assert.require(index <= _chunkCount);
+        Assert.require(c != null);
+
+        ensureChunkCapacity(_chunkCount + 1);
+        int n = _chunkCount - index;
+        System.arraycopy(_keys, index, _keys, index + 1, n);
+        System.arraycopy(_containers, index, _containers, index + 1, n);
+        _keys[index] = key;
+        _containers[index] = c;
+        _chunkCount += 1;
+    }
+
+    /**
+        Adds a chunk after all of our existing chunks, and adds its
+        members to our size.
+
+        @param key the chunk's key: it must be greater than those of all
+        of our existing chunks
+        @param c the container holding the chunk's members
+    */
+    private void appendChunk(int key, Container c)
+    {
+        Assert.require(_chunkCount == 0 || key > _keys[_chunkCount - 1]);
+        Assert.require(c != null);
+
+        ensureChunkCapacity(_chunkCount + 1);
+        _keys[_chunkCount] = key;
+        _containers[_chunkCount] = c;
+        _chunkCount += 1;
+        _size += c.cardinality();
+    }
+
+    /**
+        Removes the chunk at the specified index.
+
+        @param index the index of the chunk to remove
+    */
+    private void removeChunk(int index)
+    {
+        Assert.require(index >= 0);
+        Assert.require(index < _chunkCount);
+
+        int n = _chunkCount - index - 1;
+        System.arraycopy(_keys, index + 1, _keys, index, n);
+        System.arraycopy(_containers, index + 1, _containers, index, n);
+        _chunkCount -= 1;
+        _containers[_chunkCount] = null;
+    }
+
+    /**
+        Ensures that our chunk arrays can hold at least the specified number
+        of chunks.
+
+        @param minCapacity the minimum number of chunks
+    */
+    private void ensureChunkCapacity(int minCapacity)
+    {
+        if (minCapacity > _keys.length)
+        {
+            int newCapacity = Math.max(minCapacity, 2 * _keys.length);
+
+            int[] newKeys = new int[newCapacity];
+            System.arraycopy(_keys, 0, newKeys, 0, _chunkCount);
+            _keys = newKeys;
+
+            Container[] newContainers = new Container[newCapacity];
+            System.arraycopy(_containers, 0, newContainers, 0, _chunkCount);
+            _containers = newContainers;
+        }
+    }
+
+
+    // Private static methods
+
+    /**
+        @param s1 a set
+        @param s2 another set
+        @return a new set that contains all of the ints that are in 's1',
+        's2' or both
+    */
+    private static IntChunkedSet union(IntChunkedSet s1, IntChunkedSet s2)
+    {
+        Assert.require(s1 != null);
+        Assert.require(s2 != null);
+
+        IntChunkedSet result = new IntChunkedSet();
+        result.ensureChunkCapacity(s1._chunkCount + s2._chunkCount);
+
+        int i = 0;
+        int j = 0;
+        while (i < s1._chunkCount || j < s2._chunkCount)
+        {
+            if (j >= s2._chunkCount ||
+                (i < s1._chunkCount && s1._keys[i] < s2._keys[j]))
+            {
+                result.appendChunk(s1._keys[i], s1._containers[i].copy());
+                i += 1;
+            }
+            else if (i >= s1._chunkCount || s2._keys[j] < s1._keys[i])
+            {
+                result.appendChunk(s2._keys[j], s2._containers[j].copy());
+                j += 1;
+            }
+            else
+            {
+                result.appendChunk(s1._keys[i],
+                            s1._containers[i].or(s2._containers[j]));
+                i += 1;
+                j += 1;
+            }
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param value an int
+        @return the key of the chunk that 'value' is in
+    */
+    private static int keyOf(int value)
+    {
+        return (value >>> CHUNK_BITS) ^ KEY_FLIP;
+    }
+
+    /**
+        @param key a chunk key
+        @return the high bits that all of the ints in the chunk with key
+        'key' have in common
+    */
+    private static int highOf(int key)
+    {
+        return (key ^ KEY_FLIP) << CHUNK_BITS;
+    }
+
+    /**
+        @param key a chunk key
+        @param low the low bits of an int in the chunk
+        @return the int with low bits 'low' in the chunk with key 'key'
+    */
+    private static int valueOf(int key, int low)
+    {
+        return highOf(key) | low;
+    }
+
+    /**
+        Sets the bits in the specified bitmap from 'first' through 'last',
+        inclusive.
+
+        @param words the bitmap
+        @param first the index of the first bit to set
+        @param last the index of the last bit to set
+    */
+    private static void setBits(long[] words, int first, int last)
+    {
+        Assert.require(words != null);
+        Assert.require(first <= last);
+
+        int firstWord = first >>> 6;
+        int lastWord = last >>> 6;
+        long firstMask = -1L << first;
+        long lastMask = -1L >>> (63 - (last & 63));
+        if (firstWord == lastWord)
+        {
+            words[firstWord] |= (firstMask & lastMask);
+        }
+        else
+        {
+            words[firstWord] |= firstMask;
+            for (int i = firstWord + 1; i < lastWord; i++)
+            {
+                words[i] = -1L;
+            }
+            words[lastWord] |= lastMask;
+        }
+    }
+
+    /**
+        @param words a chunk's bitmap
+        @return the container that represents the members whose bits are
+        set in 'words' in the way that takes up the least space
+    */
+    private static Container containerFromBitmap(long[] words)
+    {
+        Assert.require(words != null);
+        Assert.require(words.length == BITMAP_WORDS);
+
+        int count = 0;
+        int runs = 0;
+        long previous = 0L;
+        for (int i = 0; i < BITMAP_WORDS; i++)
+        {
+            long w = words[i];
+            count += Long.bitCount(w);
+
+            // A run starts at each set bit whose preceding bit isn't set.
+            runs += Long.bitCount(w & ~((w << 1) | (previous >>> 63)));
+            previous = w;
+        }
+
+        Container result;
+        int arrayBytes = 2 * count;
+        int runBytes = RunContainer.sizeInBytes(runs);
+        if (runBytes < BITMAP_BYTES && runBytes < arrayBytes)
+        {
+            result = RunContainer.fromBitmap(words, runs);
+        }
+        else if (count <= MAX_ARRAY_SIZE)
+        {
+            result = ArrayContainer.fromBitmap(words, count);
+        }
+        else
+        {
+            result = new BitmapContainer(words, count);
+        }
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.cardinality() == count);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        The base class for classes that hold the members of a single chunk
+        of an IntChunkedSet. Members are represented by their low 16 bits.
+        <p>
+        The methods that change a container return the container that holds
+        its members afterwards, which may be a different one if the change
+        made it worthwhile to represent them differently.
+    */
+    private static abstract class Container
+    {
+        // Abstract methods
+
+        /**
+            @return the number of members in this container
+        */
+        public abstract int cardinality();
+
+        /**
+            @param low the low bits of an int
+            @return true iff the int is in this container
+        */
+        public abstract boolean has(int low);
+
+        /**
+            @param low the low bits of the int to add
+            @return the container holding this container's members and the
+            int
+        */
+        public abstract Container add(int low);
+
+        /**
+            @param low the low bits of the int to remove
+            @return the container holding this container's members other
+            than the int
+        */
+        public abstract Container remove(int low);
+
+        /**
+            @return the low bits of the smallest member of this container
+        */
+        public abstract int first();
+
+        /**
+            @return the low bits of the largest member of this container
+        */
+        public abstract int last();
+
+        /**
+            @param low the low bits of an int
+            @return the number of members of this container that are less
+            than or equal to the int
+        */
+        public abstract int rank(int low);
+
+        /**
+            @param index the index of a member of this container
+            @return the low bits of the member with index 'index'
+        */
+        public abstract int select(int index);
+
+        /**
+            Sets the bits in 'words' that correspond to our members.
+
+            @param words a bitmap with one bit per int in a chunk
+        */
+        public abstract void orInto(long[] words);
+
+        /**
+            Stores our members in the specified array.
+
+            @param dest the array to store our members in
+            @param offset the index in 'dest' at which to store our first
+            member
+            @param high the high bits of the ints in our chunk
+            @return the index in 'dest' after that of our last member
+        */
+        public abstract int copyValues(int[] dest, int offset, int high);
+
+        /**
+            @return a copy of this container
+        */
+        public abstract Container copy();
+
+
+        // Public methods
+
+        /**
+            @param first the low bits of the first int to add
+            @param last the low bits of the last int to add
+            @return the container holding this container's members and the
+            ints from 'first' through 'last', inclusive
+        */
+        public Container addRange(int first, int last)
+        {
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words);
+            setBits(words, first, last);
+
+            return containerFromBitmap(words);
+        }
+
+        /**
+            @param other another container
+            @return a new container holding the members of both this and
+            'other'
+        */
+        public Container or(Container other)
+        {
+            Assert.require(other != null);
+
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words);
+            other.orInto(words);
+
+            return containerFromBitmap(words);
+        }
+
+        /**
+            @param other another container
+            @return a new container holding the ints that are members of
+            both this container and 'other'
+        */
+        public Container and(Container other)
+        {
+            Assert.require(other != null);
+
+            Container result;
+            if (other instanceof ArrayContainer)
+            {
+                result = other.and(this);
+            }
+            else
+            {
+                long[] words = new long[BITMAP_WORDS];
+                orInto(words);
+                long[] otherWords = new long[BITMAP_WORDS];
+                other.orInto(otherWords);
+                for (int i = 0; i < BITMAP_WORDS; i++)
+                {
+                    words[i] &= otherWords[i];
+                }
+                result = containerFromBitmap(words);
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @return a container holding our members in the way that takes
+            up the least space
+        */
+        public Container optimize()
+        {
+            long[] words = new long[BITMAP_WORDS];
+            orInto(words);
+
+            return containerFromBitmap(words);
+        }
+    }
+
+    /**
+        A container that holds its members in a sorted array.
+    */
+    private static class ArrayContainer
+        extends Container
+    {
+        // Private fields
+
+        /**
+            Our members in ascending order: only the first '_count'
+            elements are members.
+        */
+        private char[] _values;
+
+        /** The number of our members. */
+        private int _count;
+
+
+        // Constructors
+
+        /**
+            Constructs an empty ArrayContainer.
+
+            @param initialCapacity the container's initial capacity
+        */
+        public ArrayContainer(int initialCapacity)
+        {
+            Assert.require(initialCapacity > 0);
+
+            _values = new char[initialCapacity];
+            _count = 0;
+        }
+
+
+        // Public static methods
+
+        /**
+            @param words a bitmap
+            @param count the number of bits set in 'words'
+            @return an ArrayContainer holding the members whose bits are
+            set in 'words'
+        */
+        public static ArrayContainer fromBitmap(long[] words, int count)
+        {
+            ArrayContainer result = new ArrayContainer(Math.max(count, 1));
+
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                long w = words[i];
+                while (w != 0L)
+                {
+                    result._values[result._count] =
+                        (char) ((i << 6) + Long.numberOfTrailingZeros(w));
+                    result._count += 1;
+                    w &= (w - 1);
+                }
+            }
+
+            Assert.ensure(result.cardinality() == count);
+            return result;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Container#cardinality
+        */
+        public int cardinality()
+        {
+            return _count;
+        }
+
+        /**
+            @see Container#has(int)
+        */
+        public boolean has(int low)
+        {
+            return (Arrays.binarySearch(_values, 0, _count, (char) low) >= 0);
+        }
+
+        /**
+            @see Container#add(int)
+        */
+        public Container add(int low)
+        {
+            Container result = this;
+
+            int i = Arrays.binarySearch(_values, 0, _count, (char) low);
+            if (i < 0)
+            {
+                if (_count >= MAX_ARRAY_SIZE)
+                {
+                    long[] words = new long[BITMAP_WORDS];
+                    orInto(words);
+                    result = new BitmapContainer(words, _count).add(low);
+                }
+                else
+                {
+                    i = -(i + 1);
+                    if (_count == _values.length)
+                    {
+                        char[] newValues = new char[Math.min(MAX_ARRAY_SIZE,
+                                                         2 * _count)];
+                        System.arraycopy(_values, 0, newValues, 0, _count);
+                        _values = newValues;
+                    }
+                    System.arraycopy(_values, i, _values, i + 1,
+                                     _count - i);
+                    _values[i] = (char) low;
+                    _count += 1;
+                }
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see Container#remove(int)
+        */
+        public Container remove(int low)
+        {
+            int i = Arrays.binarySearch(_values, 0, _count, (char) low);
+            if (i >= 0)
+            {
+                System.arraycopy(_values, i + 1, _values, i,
+                                 _count - i - 1);
+                _count -= 1;
+            }
+
+            return this;
+        }
+
+        /**
+            @see Container#first
+        */
+        public int first()
+        {
+            return _values[0];
+        }
+
+        /**
+            @see Container#last
+        */
+        public int last()
+        {
+            return _values[_count - 1];
+        }
+
+        /**
+            @see Container#rank(int)
+        */
+        public int rank(int low)
+        {
+            int result = Arrays.binarySearch(_values, 0, _count, (char) low);
+            if (result >= 0)
+            {
+                result += 1;
+            }
+            else
+            {
+                result = -(result + 1);
+            }
+
+            return result;
+        }
+
+        /**
+            @see Container#select(int)
+        */
+        public int select(int index)
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < _count);
+
+            return _values[index];
+        }
+
+        /**
+            @see Container#orInto(long[])
+        */
+        public void orInto(long[] words)
+        {
+            for (int i = 0; i < _count; i++)
+            {
+                int low = _values[i];
+                words[low >>> 6] |= (1L << low);
+            }
+        }
+
+        /**
+            @see Container#copyValues(int[], int, int)
+        */
+        public int copyValues(int[] dest, int offset, int high)
+        {
+            for (int i = 0; i < _count; i++)
+            {
+                dest[offset + i] = high | _values[i];
+            }
+
+            return offset + _count;
+        }
+
+        /**
+            @see Container#copy
+        */
+        public Container copy()
+        {
+            ArrayContainer result = new ArrayContainer(Math.max(_count, 1));
+
+            System.arraycopy(_values, 0, result._values, 0, _count);
+            result._count = _count;
+
+            return result;
+        }
+
+        /**
+            Merges our members with those of 'other' if it's also an
+            ArrayContainer and the result will fit in one.
+
+            @see Container#or(Container)
+        */
+        public Container or(Container other)
+        {
+            Assert.require(other != null);
+
+            Container result;
+            if (other instanceof ArrayContainer &&
+                _count + other.cardinality() <= MAX_ARRAY_SIZE)
+            {
+                result = merge((ArrayContainer) other);
+            }
+            else
+            {
+                result = super.or(other);
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            Filters our members by membership of 'other' rather than
+            building two bitmaps.
+
+            @see Container#and(Container)
+        */
+        public Container and(Container other)
+        {
+            Assert.require(other != null);
+
+            ArrayContainer result = new ArrayContainer(Math.max(_count, 1));
+
+            for (int i = 0; i < _count; i++)
+            {
+                char low = _values[i];
+                if (other.has(low))
+                {
+                    result._values[result._count] = low;
+                    result._count += 1;
+                }
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+
+        // Private methods
+
+        /**
+            @param other another ArrayContainer
+            @return a new ArrayContainer holding the members of both this
+            container and 'other'
+        */
+        private ArrayContainer merge(ArrayContainer other)
+        {
+            Assert.require(other != null);
+
+            ArrayContainer result =
+                new ArrayContainer(Math.max(_count + other._count, 1));
+
+            char[] values = result._values;
+            int n = 0;
+            int i = 0;
+            int j = 0;
+            while (i < _count && j < other._count)
+            {
+                char v = _values[i];
+                char w = other._values[j];
+                if (v <= w)
+                {
+                    values[n] = v;
+                    i += 1;
+                    if (v == w)
+                    {
+                        j += 1;
+                    }
+                }
+                else
+                {
+                    values[n] = w;
+                    j += 1;
+                }
+                n += 1;
+            }
+            System.arraycopy(_values, i, values, n, _count - i);
+            n += _count - i;
+            System.arraycopy(other._values, j, values, n, other._count - j);
+            n += other._count - j;
+            result._count = n;
+
+            Assert.ensure(result != null);
+            return result;
+        }
+    }
+
+    /**
+        A container that holds its members in a bitmap.
+    */
+    private static class BitmapContainer
+        extends Container
+    {
+        // Private fields
+
+        /** Our bitmap, with one bit per int in our chunk. */
+        private long[] _words;
+
+        /** The number of our members: that is, of bits set in '_words'. */
+        private int _count;
+
+
+        // Constructors
+
+        /**
+            Constructs a BitmapContainer.
+            <p>
+            Note: the container takes ownership of 'words'.
+
+            @param words the container's bitmap
+            @param count the number of bits set in 'words'
+        */
+        public BitmapContainer(long[] words, int count)
+        {
+            Assert.require(words != null);
+            Assert.require(words.length == BITMAP_WORDS);
+            Assert.require(count >= 0);
+
+            _words = words;
+            _count = count;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Container#cardinality
+        */
+        public int cardinality()
+        {
+            return _count;
+        }
+
+        /**
+            @see Container#has(int)
+        */
+        public boolean has(int low)
+        {
+            return ((_words[low >>> 6] & (1L << low)) != 0L);
+        }
+
+        /**
+            @see Container#add(int)
+        */
+        public Container add(int low)
+        {
+            long bit = 1L << low;
+            int i = low >>> 6;
+            if ((_words[i] & bit) == 0L)
+            {
+                _words[i] |= bit;
+                _count += 1;
+            }
+
+            return this;
+        }
+
+        /**
+            @see Container#remove(int)
+        */
+        public Container remove(int low)
+        {
+            Container result = this;
+
+            long bit = 1L << low;
+            int i = low >>> 6;
+            if ((_words[i] & bit) != 0L)
+            {
+                _words[i] &= ~bit;
+                _count -= 1;
+                if (_count <= MAX_ARRAY_SIZE)
+                {
+                    result = ArrayContainer.fromBitmap(_words, _count);
+                }
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see Container#first
+        */
+        public int first()
+        {
+            int i = 0;
+            while (_words[i] == 0L)
+            {
+                i += 1;
+            }
+
+            return (i << 6) + Long.numberOfTrailingZeros(_words[i]);
+        }
+
+        /**
+            @see Container#last
+        */
+        public int last()
+        {
+            int i = BITMAP_WORDS - 1;
+            while (_words[i] == 0L)
+            {
+                i -= 1;
+            }
+
+            return (i << 6) + 63 - Long.numberOfLeadingZeros(_words[i]);
+        }
+
+        /**
+            @see Container#rank(int)
+        */
+        public int rank(int low)
+        {
+            int result = 0;
+
+            int last = low >>> 6;
+            for (int i = 0; i < last; i++)
+            {
+                result += Long.bitCount(_words[i]);
+            }
+            result += Long.bitCount(_words[last] & (-1L >>> (63 - low)));
+
+            return result;
+        }
+
+        /**
+            @see Container#select(int)
+        */
+        public int select(int index)
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < _count);
+
+            int i = 0;
+            int remaining = index;
+            int n = Long.bitCount(_words[i]);
+            while (remaining >= n)
+            {
+                remaining -= n;
+                i += 1;
+                n = Long.bitCount(_words[i]);
+            }
+
+            long w = _words[i];
+            for (int j = 0; j < remaining; j++)
+            {
+                w &= (w - 1);
+            }
+
+            return (i << 6) + Long.numberOfTrailingZeros(w);
+        }
+
+        /**
+            @see Container#orInto(long[])
+        */
+        public void orInto(long[] words)
+        {
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                words[i] |= _words[i];
+            }
+        }
+
+        /**
+            @see Container#copyValues(int[], int, int)
+        */
+        public int copyValues(int[] dest, int offset, int high)
+        {
+            int result = offset;
+
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                long w = _words[i];
+                int base = high | (i << 6);
+                while (w != 0L)
+                {
+                    dest[result] = base + Long.numberOfTrailingZeros(w);
+                    result += 1;
+                    w &= (w - 1);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            @see Container#copy
+        */
+        public Container copy()
+        {
+            return new BitmapContainer((long[]) _words.clone(), _count);
+        }
+
+        /**
+            Adds the range to our bitmap in place.
+
+            @see Container#addRange(int, int)
+        */
+        public Container addRange(int first, int last)
+        {
+            setBits(_words, first, last);
+
+            _count = 0;
+            for (int i = 0; i < BITMAP_WORDS; i++)
+            {
+                _count += Long.bitCount(_words[i]);
+            }
+
+            return this;
+        }
+    }
+
+    /**
+        A container that holds its members as a list of runs of consecutive
+        ints, each of which is stored as its first and last ints.
+    */
+    private static class RunContainer
+        extends Container
+    {
+        // Private fields
+
+        /**
+            The first and last ints in each of our runs, in ascending order:
+            the first and last ints in run i are at indices 2i and 2i + 1
+            respectively. Runs never overlap or abut one another.
+        */
+        private char[] _bounds;
+
+        /** The number of our runs. */
+        private int _runCount;
+
+        /** The number of our members. */
+        private int _count;
+
+
+        // Constructors
+
+        /**
+            Constructs a RunContainer that holds a single run.
+
+            @param first the first int in the run
+            @param last the last int in the run
+        */
+        public RunContainer(int first, int last)
+        {
+            this(1);
+            Assert.require(first <= last);
+
+            _bounds[0] = (char) first;
+            _bounds[1] = (char) last;
+            _runCount = 1;
+            _count = last - first + 1;
+        }
+
+        /**
+            Constructs an empty RunContainer.
+
+            @param initialCapacity the number of runs that the container
+            can hold initially
+        */
+        private RunContainer(int initialCapacity)
+        {
+            Assert.require(initialCapacity > 0);
+
+            _bounds = new char[2 * initialCapacity];
+            _runCount = 0;
+            _count = 0;
+        }
+
+
+        // Public static methods
+
+        /**
+            @param runCount a number of runs
+            @return the number of bytes that a RunContainer with 'runCount'
+            runs takes up
+        */
+        public static int sizeInBytes(int runCount)
+        {
+            return 4 * runCount + 2;
+        }
+
+        /**
+            @param words a bitmap
+            @param runCount the number of runs of set bits in 'words'
+            @return a RunContainer holding the members whose bits are set in
+            'words'
+        */
+        public static RunContainer fromBitmap(long[] words, int runCount)
+        {
+            RunContainer result = new RunContainer(Math.max(runCount, 1));
+
+            int low = 0;
+            while (low < CHUNK_SIZE)
+            {
+                int first = nextBit(words, low, true);
+                if (first < CHUNK_SIZE)
+                {
+                    int pastLast = nextBit(words, first, false);
+                    result.appendRun(first, pastLast - 1);
+                    low = pastLast;
+                }
+                else
+                {
+                    low = CHUNK_SIZE;
+                }
+            }
+
+            Assert.ensure(result._runCount == runCount);
+            return result;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Container#cardinality
+        */
+        public int cardinality()
+        {
+            return _count;
+        }
+
+        /**
+            @see Container#has(int)
+        */
+        public boolean has(int low)
+        {
+            int i = runIndex(low);
+            return (i >= 0 && low <= lastOf(i));
+        }
+
+        /**
+            @see Container#add(int)
+        */
+        public Container add(int low)
+        {
+            Container result = this;
+
+            int i = runIndex(low);
+            if (i < 0 || low > lastOf(i))
+            {
+                boolean joinsPrevious = (i >= 0 && lastOf(i) + 1 == low);
+                boolean joinsNext = (i + 1 < _runCount &&
+                                     firstOf(i + 1) == low + 1);
+                if (joinsPrevious && joinsNext)
+                {
+                    _bounds[2 * i + 1] = _bounds[2 * i + 3];
+                    removeRun(i + 1);
+                }
+                else if (joinsPrevious)
+                {
+                    _bounds[2 * i + 1] = (char) low;
+                }
+                else if (joinsNext)
+                {
+                    _bounds[2 * (i + 1)] = (char) low;
+                }
+                else
+                {
+                    insertRun(i + 1, low, low);
+                }
+                _count += 1;
+
+                if (sizeInBytes(_runCount) > BITMAP_BYTES)
+                {
+                    result = optimize();
+                }
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see Container#remove(int)
+        */
+        public Container remove(int low)
+        {
+            Container result = this;
+
+            int i = runIndex(low);
+            if (i >= 0 && low <= lastOf(i))
+            {
+                int first = firstOf(i);
+                int last = lastOf(i);
+                if (first == last)
+                {
+                    removeRun(i);
+                }
+                else if (low == first)
+                {
+                    _bounds[2 * i] = (char) (low + 1);
+                }
+                else if (low == last)
+                {
+                    _bounds[2 * i + 1] = (char) (low - 1);
+                }
+                else
+                {
+                    _bounds[2 * i + 1] = (char) (low - 1);
+                    insertRun(i + 1, low + 1, last);
+                }
+                _count -= 1;
+
+                if (sizeInBytes(_runCount) > BITMAP_BYTES)
+                {
+                    result = optimize();
+                }
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see Container#first
+        */
+        public int first()
+        {
+            return firstOf(0);
+        }
+
+        /**
+            @see Container#last
+        */
+        public int last()
+        {
+            return lastOf(_runCount - 1);
+        }
+
+        /**
+            @see Container#rank(int)
+        */
+        public int rank(int low)
+        {
+            int result = 0;
+
+            for (int i = 0; i < _runCount && firstOf(i) <= low; i++)
+            {
+                result += Math.min(low, lastOf(i)) - firstOf(i) + 1;
+            }
+
+            return result;
+        }
+
+        /**
+            @see Container#select(int)
+        */
+        public int select(int index)
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < _count);
+
+            int i = 0;
+            int remaining = index;
+            int n = lastOf(i) - firstOf(i) + 1;
+            while (remaining >= n)
+            {
+                remaining -= n;
+                i += 1;
+                n = lastOf(i) - firstOf(i) + 1;
+            }
+
+            return firstOf(i) + remaining;
+        }
+
+        /**
+            @see Container#orInto(long[])
+        */
+        public void orInto(long[] words)
+        {
+            for (int i = 0; i < _runCount; i++)
+            {
+                setBits(words, firstOf(i), lastOf(i));
+            }
+        }
+
+        /**
+            @see Container#copyValues(int[], int, int)
+        */
+        public int copyValues(int[] dest, int offset, int high)
+        {
+            int result = offset;
+
+            for (int i = 0; i < _runCount; i++)
+            {
+                // We loop over the low bits since 'high | lastOf(i)' can
+                // be Integer.MAX_VALUE, which no int is greater than.
+                int last = lastOf(i);
+                for (int low = firstOf(i); low <= last; low++)
+                {
+                    dest[result] = high | low;
+                    result += 1;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            @see Container#copy
+        */
+        public Container copy()
+        {
+            RunContainer result = new RunContainer(Math.max(_runCount, 1));
+
+            System.arraycopy(_bounds, 0, result._bounds, 0, 2 * _runCount);
+            result._runCount = _runCount;
+            result._count = _count;
+
+            return result;
+        }
+
+
+        // Private methods
+
+        /**
+            @param i the index of one of our runs
+            @return the first int in our (i + 1)th run
+        */
+        private int firstOf(int i)
+        {
+            return _bounds[2 * i];
+        }
+
+        /**
+            @param i the index of one of our runs
+            @return the last int in our (i + 1)th run
+        */
+        private int lastOf(int i)
+        {
+            return _bounds[2 * i + 1];
+        }
+
+        /**
+            @param low the low bits of an int
+            @return the index of the last of our runs whose first int is
+            less than or equal to the int, or -1 if there's no such run
+        */
+        private int runIndex(int low)
+        {
+            int lo = 0;
+            int hi = _runCount - 1;
+            while (lo <= hi)
+            {
+                int mid = (lo + hi) >>> 1;
+                if (firstOf(mid) <= low)
+                {
+                    lo = mid + 1;
+                }
+                else
+                {
+                    hi = mid - 1;
+                }
+            }
+
+            return hi;
+        }
+
+        /**
+            Adds a run after all of our existing runs.
+
+            @param first the first int in the run
+            @param last the last int in the run
+        */
+        private void appendRun(int first, int last)
+        {
+            insertRun(_runCount, first, last);
+            _count += last - first + 1;
+        }
+
+        /**
+            Inserts a run at the specified index, without changing our
+            count of members.
+
+            @param index the index at which to insert the run
+            @param first the first int in the run
+            @param last the last int in the run
+        */
+        private void insertRun(int index, int first, int last)
+        {
+            Assert.require(index >= 0);
+            Assert.require(index <= _runCount);
+
+            if (2 * (_runCount + 1) > _bounds.length)
+            {
+                char[] newBounds = new char[2 * _bounds.length];
+                System.arraycopy(_bounds, 0, newBounds, 0, 2 * _runCount);
+                _bounds = newBounds;
+            }
+            System.arraycopy(_bounds, 2 * index, _bounds, 2 * index + 2,
+                             2 * (_runCount - index));
+            _bounds[2 * index] = (char) first;
+            _bounds[2 * index + 1] = (char) last;
+            _runCount += 1;
+        }
+
+        /**
+            Removes the run at the specified index, without changing our
+            count of members.
+
+            @param index the index of the run to remove
+        */
+        private void removeRun(int index)
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < _runCount);
+
+            System.arraycopy(_bounds, 2 * index + 2, _bounds, 2 * index,
+                             2 * (_runCount - index - 1));
+            _runCount -= 1;
+        }
+
+
+        // Private static methods
+
+        /**
+            @param words a bitmap
+            @param from the index of the first bit to consider
+            @param isSet true if the index of the next set bit is to be
+            returned, and false if that of the next clear bit is
+            @return the index of the first bit in 'words' at or after 'from'
+            that is set iff 'isSet' is true, or CHUNK_SIZE if there's no
+            such bit
+        */
+        private static int nextBit(long[] words, int from, boolean isSet)
+        {
+            int result = CHUNK_SIZE;
+
+            int i = from >>> 6;
+            if (i < BITMAP_WORDS)
+            {
+                long w = (isSet ? words[i] : ~words[i]) & (-1L << from);
+                while (w == 0L && i + 1 < BITMAP_WORDS)
+                {
+                    i += 1;
+                    w = isSet ? words[i] : ~words[i];
+                }
+                if (w != 0L)
+                {
+                    result = (i << 6) + Long.numberOfTrailingZeros(w);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+        The class of iterator over the ints in an IntChunkedSet.
+        <p>
+        It copies the members of one chunk at a time into a buffer and
+        returns them from there.
+    */
+    private class ChunkedSetIterator
+        implements IntIterator
+    {
+        // Private fields
+
+        /** The buffer containing the ints in the current chunk. */
+        private int[] _buffer;
+
+        /** The number of ints in '_buffer'. */
+        private int _bufferCount;
+
+        /** The index in '_buffer' of the next int to return. */
+        private int _nextIndex;
+
+        /** The index of the next chunk to copy into '_buffer'. */
+        private int _nextChunk;
+
+
+        // Constructors
+
+        /**
+            Constructs a ChunkedSetIterator.
+        */
+        public ChunkedSetIterator()
+        {
+            int capacity = 0;
+            for (int i = 0; i < _chunkCount; i++)
+            {
+                capacity = Math.max(capacity, _containers[i].cardinality());
+            }
+
+            _buffer = new int[capacity];
+            _bufferCount = 0;
+            _nextIndex = 0;
+            _nextChunk = 0;
+        }
+
+
+        // Public methods
+
+        /**
+            @see IntIterator#hasNext
+        */
+        public boolean hasNext()
+        {
+            if (_nextIndex >= _bufferCount && _nextChunk < _chunkCount)
+            {
+                _bufferCount = _containers[_nextChunk].
+                    copyValues(_buffer, 0, highOf(_keys[_nextChunk]));
+                _nextIndex = 0;
+                _nextChunk += 1;
+            }
+
+            return (_nextIndex < _bufferCount);
+        }
+
+        /**
+            @see IntIterator#next
+        */
+        public int next()
+        {
+            int result = peek();
+
+            _nextIndex += 1;
+            return result;
+        }
+
+        /**
+            @see IntIterator#peek
+        */
+        public int peek()
+        {
+            if (hasNext())
+            {
+                return _buffer[_nextIndex];
+            }
+            else
+            {
+                throw new NoSuchItemException();
+            }
+        }
+    }
+}
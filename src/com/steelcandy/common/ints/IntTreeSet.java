@@ -24,8 +24,12 @@ import java.util.TreeSet;
 
 /**
     An IntSet implemented using a (binary) tree.
+    <p>
+    Note: an IntChunkedSet is usually a much more compact and faster
+    alternative, especially for sets that contain runs of consecutive ints.
 
     @author  James MacKay
+    @see IntChunkedSet
 */
 public class IntTreeSet
     extends AbstractIntSet
@@ -0,0 +1,387 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common.ints.testing;
+
+import com.steelcandy.common.ints.IntChunkedSet;
+import com.steelcandy.common.ints.IntIterator;
+
+import com.steelcandy.testing.*;
+
+import com.steelcandy.common.debug.Assert;
+
+import java.util.*;
+
+/**
+    Tests that an IntChunkedSet always contains the same ints as a
+    java.util.TreeSet that the same random sequence of operations is
+    applied to. The operations are concentrated around zero and the first
+    and last chunks of ints - that is, around Integer.MIN_VALUE and
+    Integer.MAX_VALUE - and include adding ranges and dense groups of ints
+    so that chunks are represented in all of the ways that an
+    IntChunkedSet can represent them.
+
+    @author James MacKay
+    @see IntChunkedSet
+*/
+public class IntChunkedSetTest
+    extends SingleTest
+{
+    // Constants
+
+    /** The number of ints in a chunk of an IntChunkedSet. */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    /**
+        The ints around which the ints that operations are applied to are
+        concentrated.
+    */
+    private static final int[] CENTRES = new int[]
+    {
+        Integer.MIN_VALUE, 0, Integer.MAX_VALUE
+    };
+
+    /**
+        The largest distance from its centre of an int that an operation
+        is applied to: it's large enough that operations span more than one
+        chunk.
+    */
+    private static final int MAXIMUM_DISTANCE = CHUNK_SIZE + CHUNK_SIZE / 2;
+
+    /** The largest number of ints in a randomly generated range. */
+    private static final int MAXIMUM_RANGE_SIZE = 3 * CHUNK_SIZE / 2;
+
+    /**
+        The number of ints added in a dense group, and the width of the
+        range of ints that they're chosen from.
+    */
+    private static final int DENSE_GROUP_SIZE = 1500;
+    private static final int DENSE_GROUP_WIDTH = 8000;
+
+    /** The number of sets that random operations are applied to. */
+    private static final int RANDOM_SET_COUNT = 20;
+
+    /** The number of random operations that are applied to each set. */
+    private static final int OPERATIONS_PER_SET = 30;
+
+    /**
+        The seed used to generate the random operations, so that any
+        failure can be reproduced.
+    */
+    private static final long RANDOM_SEED = 20230415L;
+
+
+    // Overridden methods
+
+    /**
+        @see Test#description
+    */
+    public String description()
+    {
+        return "tests that an IntChunkedSet always contains the same ints " +
+               "as a TreeSet that the same random operations are " +
+               "applied to";
+    }
+
+    /**
+        @see AbstractTest#runTest
+    */
+    protected void runTest()
+        throws Throwable
+    {
+        boolean ok = true;
+
+        ok &= checkRange(Integer.MAX_VALUE - 3, Integer.MAX_VALUE);
+        ok &= checkRange(Integer.MIN_VALUE, Integer.MIN_VALUE + 3);
+        ok &= checkRange(Integer.MAX_VALUE - CHUNK_SIZE - 10,
+                         Integer.MAX_VALUE);
+        ok &= checkRange(Integer.MIN_VALUE,
+                         Integer.MIN_VALUE + CHUNK_SIZE + 10);
+        ok &= checkRange(-5, 5);
+
+        Random random = new Random(RANDOM_SEED);
+        for (int i = 0; ok && i < RANDOM_SET_COUNT; i++)
+        {
+            ok &= checkRandomOperations(random);
+        }
+
+        setSucceeded(ok);
+    }
+
+
+    // Private methods
+
+    /**
+        Checks that an IntChunkedSet that the range of ints from 'first'
+        through 'last' is added to contains the same ints as a TreeSet
+        that they're all added to, both before and after it's optimized.
+
+        @param first the first int in the range
+        @param last the last int in the range
+        @return true iff the check succeeded
+    */
+    private boolean checkRange(int first, int last)
+    {
+        Assert.require(first <= last);
+
+        IntChunkedSet set = new IntChunkedSet();
+        TreeSet expected = new TreeSet();
+
+        set.addRange(first, last);
+        for (long value = first; value <= last; value++)
+        {
+            expected.add(new Integer((int) value));
+        }
+
+        String context = "the range " + first + " through " + last;
+        boolean result = checkSame(set, expected, context);
+        if (result)
+        {
+            set.optimize();
+            result = checkSame(set, expected, context + " (optimized)");
+        }
+
+        return result;
+    }
+
+    /**
+        Applies the same random sequence of operations to an IntChunkedSet
+        and a TreeSet, and checks that they always contain the same ints.
+
+        @param random the random number generator to use
+        @return true iff the check succeeded
+    */
+    private boolean checkRandomOperations(Random random)
+    {
+        Assert.require(random != null);
+
+        boolean result = true;
+
+        IntChunkedSet set = new IntChunkedSet();
+        TreeSet expected = new TreeSet();
+        for (int i = 0; result && i < OPERATIONS_PER_SET; i++)
+        {
+            int centre = CENTRES[random.nextInt(CENTRES.length)];
+            int value = randomValue(random, centre, MAXIMUM_DISTANCE);
+            String op;
+            switch (random.nextInt(6))
+            {
+            case 0:
+                op = "add(" + value + ")";
+                if (set.add(value) !=
+                    expected.add(new Integer(value)))
+                {
+                    result = fail(op + " returned the wrong result");
+                }
+                break;
+
+            case 1:
+                op = "remove(" + value + ")";
+                if (set.remove(value) !=
+                    expected.remove(new Integer(value)))
+                {
+                    result = fail(op + " returned the wrong result");
+                }
+                break;
+
+            case 2:
+                int last = (int) Math.min((long) value +
+                                    random.nextInt(MAXIMUM_RANGE_SIZE),
+                                Integer.MAX_VALUE);
+                op = "addRange(" + value + ", " + last + ")";
+                set.addRange(value, last);
+                for (long v = value; v <= last; v++)
+                {
+                    expected.add(new Integer((int) v));
+                }
+                break;
+
+            case 3:
+                op = "a dense group of ints around " + value;
+                for (int j = 0; j < DENSE_GROUP_SIZE; j++)
+                {
+                    int v = randomValue(random, value,
+                                        DENSE_GROUP_WIDTH / 2);
+                    set.add(v);
+                    expected.add(new Integer(v));
+                }
+                break;
+
+            case 4:
+                op = "optimize()";
+                set.optimize();
+                break;
+
+            default:
+                IntChunkedSet other = new IntChunkedSet();
+                TreeSet otherExpected = new TreeSet();
+                int n = random.nextInt(DENSE_GROUP_SIZE);
+                for (int j = 0; j < n; j++)
+                {
+                    int v = randomValue(random, value,
+                                        DENSE_GROUP_WIDTH / 2);
+                    other.add(v);
+                    otherExpected.add(new Integer(v));
+                }
+                if (random.nextBoolean())
+                {
+                    op = "union() with " + n + " ints around " + value;
+                    set = set.union(other);
+                    expected.addAll(otherExpected);
+                }
+                else
+                {
+                    op = "intersection() with " + n + " ints around " +
+                         value;
+                    set = set.intersection(other);
+                    expected.retainAll(otherExpected);
+                }
+                break;
+            }
+
+            if (result)
+            {
+                result = checkSame(set, expected, "applying " + op);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        Checks that the specified IntChunkedSet contains exactly the same
+        ints as the specified TreeSet.
+
+        @param set the IntChunkedSet to check
+        @param expected the TreeSet containing the ints that 'set' should
+        contain: each of its items is an Integer
+        @param context a description of how the sets were built, for use in
+        error messages
+        @return true iff 'set' and 'expected' contain the same ints
+    */
+    private boolean checkSame(IntChunkedSet set, TreeSet expected,
+                              String context)
+    {
+        Assert.require(set != null);
+        Assert.require(expected != null);
+        Assert.require(context != null);
+
+        boolean result = true;
+
+        int sz = expected.size();
+        int[] values = set.toArray();
+        if (set.size() != sz || values.length != sz)
+        {
+            result = fail("after " + context + " the set's size was " +
+                          set.size() + " and its array's length was " +
+                          values.length + " rather than " + sz);
+        }
+
+        Iterator iter = expected.iterator();
+        IntIterator setIter = set.iterator();
+        for (int i = 0; result && i < sz; i++)
+        {
+            int value = ((Integer) iter.next()).intValue();
+            if (values[i] != value || setIter.hasNext() == false ||
+                setIter.next() != value)
+            {
+                result = fail("after " + context + " the set's int at " +
+                              "index " + i + " wasn't " + value);
+            }
+            else if (set.has(value) == false)
+            {
+                result = fail("after " + context + " the set didn't " +
+                              "have " + value);
+            }
+        }
+        if (result && setIter.hasNext())
+        {
+            result = fail("after " + context + " the set's iterator " +
+                          "returned too many ints");
+        }
+
+        if (result && sz > 0)
+        {
+            int first = ((Integer) expected.first()).intValue();
+            int last = ((Integer) expected.last()).intValue();
+            int index = sz / 2;
+            if (set.first() != first || set.last() != last ||
+                set.select(index) != values[index] ||
+                set.rank(values[index]) != index + 1 ||
+                set.rank(last) != sz)
+            {
+                result = fail("after " + context + " the set's first, " +
+                              "last, rank or select result was wrong");
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        Writes the specified message describing a failure.
+
+        @param msg the message describing the failure
+        @return false
+    */
+    private boolean fail(String msg)
+    {
+        Assert.require(msg != null);
+
+        writer().writeLine(TestWriter.DEBUG, msg);
+        return false;
+    }
+
+
+    // Private static methods
+
+    /**
+        @param random the random number generator to use
+        @param centre the int that the generated int is to be near
+        @param maximumDistance the largest distance between 'centre' and
+        the generated int
+        @return a random int no more than 'maximumDistance' from 'centre'
+        (and which is always a valid int)
+    */
+    private static int randomValue(Random random, int centre,
+                                   int maximumDistance)
+    {
+        Assert.require(random != null);
+        Assert.require(maximumDistance >= 0);
+
+        long result = (long) centre +
+            random.nextInt(2 * maximumDistance + 1) - maximumDistance;
+        result = Math.max(result, Integer.MIN_VALUE);
+        result = Math.min(result, Integer.MAX_VALUE);
+
+        return (int) result;
+    }
+
+
+    // Main method
+
+    /**
+        Runs this test.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        IntChunkedSetTest t = new IntChunkedSetTest();
+        EXECUTOR.executeAndExit(t, args);
+    }
+}
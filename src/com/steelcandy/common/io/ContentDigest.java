@@ -0,0 +1,296 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.common.io;
+
+import com.steelcandy.common.debug.Assert;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+    Computes a SHA-256 digest of some content, such as the contents of
+    files, byte arrays and strings. Such digests are used as the keys of
+    content-addressed caches and to check that cached data hasn't been
+    corrupted.
+    <p>
+    Each string that's added to a digest is followed by a zero byte so that
+    consecutive strings can't run into each other: for example, adding "ab"
+    and then "c" results in a different digest than adding "a" and then
+    "bc".
+    <p>
+    Instances are not thread-safe.
+
+    @author James MacKay
+*/
+public class ContentDigest
+{
+    // Constants
+
+    /** The length of a digest's value, in bytes. */
+    public static final int LENGTH = 32;
+
+    /** The name of the algorithm used to compute digests. */
+    private static final String ALGORITHM_NAME = "SHA-256";
+
+    /** The radix used to represent digests as strings. */
+    private static final int RADIX = 16;
+
+    /** The character encoding used to add strings to digests. */
+    private static final String ENCODING = "UTF-8";
+
+    /** The size of the buffer used in reading files. */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+
+    // Private fields
+
+    /** The digest that does all of our work. */
+    private MessageDigest _digest;
+
+
+    // Constructors
+
+    /**
+        @param f the pathname of a file
+        @return the string representation of the digest of the contents
+        of 'f'
+        @exception IOException thrown if 'f' couldn't be read
+        @see #add(File)
+        @see #stringValue
+    */
+    public static String of(File f)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        ContentDigest d = new ContentDigest();
+        d.add(f);
+
+        String result = d.stringValue();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param data a buffer containing some bytes
+        @param start the index in 'data' of the first byte
+        @param length the number of bytes
+        @return the value of the digest of the 'length' bytes starting at
+        'start' in 'data'
+        @see #value
+    */
+    public static byte[] of(byte[] data, int start, int length)
+    {
+        Assert.require(data != null);
+        Assert.require(start >= 0);
+        Assert.require(length >= 0);
+        Assert.require(start + length <= data.length);
+
+        ContentDigest d = new ContentDigest();
+        d.add(data, start, length);
+
+        byte[] result = d.value();
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.length == LENGTH);
+        return result;
+    }
+
+    /**
+        Constructs a ContentDigest of no content.
+    */
+    public ContentDigest()
+    {
+        try
+        {
+            _digest = MessageDigest.getInstance(ALGORITHM_NAME);
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // This shouldn't happen since every Java platform must support
+            // our digest algorithm.
+            throw new IllegalStateException(ex.getLocalizedMessage());
+        }
+    }
+
+
+    // Public methods
+
+    /**
+        Adds the specified string - followed by a zero byte - to the
+        content that this is a digest of.
+
+        @param str the string to add
+    */
+    public void add(String str)
+    {
+        Assert.require(str != null);
+
+        try
+        {
+            _digest.update(str.getBytes(ENCODING));
+            _digest.update((byte) 0);
+        }
+        catch (UnsupportedEncodingException ex)
+        {
+            // This shouldn't happen since every Java platform must support
+            // our encoding.
+            throw new IllegalStateException(ex.getLocalizedMessage());
+        }
+    }
+
+    /**
+        Adds the specified bytes to the content that this is a digest of.
+
+        @param data a buffer containing the bytes to add
+        @param start the index in 'data' of the first byte to add
+        @param length the number of bytes to add
+    */
+    public void add(byte[] data, int start, int length)
+    {
+        Assert.require(data != null);
+        Assert.require(start >= 0);
+        Assert.require(length >= 0);
+        Assert.require(start + length <= data.length);
+
+        _digest.update(data, start, length);
+    }
+
+    /**
+        Adds the bytes remaining in the specified buffer to the content that
+        this is a digest of. The buffer's position isn't changed.
+
+        @param data the buffer containing the bytes to add
+    */
+    public void add(ByteBuffer data)
+    {
+        Assert.require(data != null);
+
+        _digest.update(data.duplicate());
+    }
+
+    /**
+        Adds the contents of the specified file to the content that this
+        is a digest of.
+
+        @param f the pathname of the file whose contents are to be added
+        @exception IOException thrown if 'f' couldn't be read
+    */
+    public void add(File f)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        InputStream in = new FileInputStream(f);
+        try
+        {
+            byte[] buf = new byte[READ_BUFFER_SIZE];
+            int numRead;
+            while ((numRead = in.read(buf)) >= 0)
+            {
+                _digest.update(buf, 0, numRead);
+            }
+        }
+        finally
+        {
+            Io.tryToClose(in);
+        }
+    }
+
+    /**
+        Returns the value of this digest. This digest is reset to be a
+        digest of no content afterwards.
+
+        @return the value of this digest
+    */
+    public byte[] value()
+    {
+        byte[] result = _digest.digest();
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.length == LENGTH);
+        return result;
+    }
+
+    /**
+        Returns the string representation of the value of this digest, as
+        is used as a key in content-addressed caches. This digest is reset
+        to be a digest of no content afterwards.
+
+        @return the string representation of this digest's value
+        @see #value
+    */
+    public String stringValue()
+    {
+        String result = new BigInteger(1, value()).toString(RADIX);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Public static methods
+
+    /**
+        Indicates whether the specified digest value is the same as the
+        value of the digest of some bytes.
+
+        @param digest a digest value
+        @param data a buffer containing the bytes to check
+        @param start the index in 'data' of the first byte to check
+        @param length the number of bytes to check
+        @return true iff 'digest' is the value of the digest of the
+        'length' bytes starting at 'start' in 'data'
+    */
+    public static boolean matches(byte[] digest,
+                                  byte[] data, int start, int length)
+    {
+        Assert.require(digest != null);
+        Assert.require(data != null);
+        Assert.require(start >= 0);
+        Assert.require(length >= 0);
+        Assert.require(start + length <= data.length);
+
+        return MessageDigest.isEqual(digest, of(data, start, length));
+    }
+
+    /**
+        Indicates whether the specified digest value is the same as the
+        value of the digest of the bytes remaining in a buffer.
+
+        @param digest a digest value
+        @param data the buffer containing the bytes to check: its position
+        isn't changed
+        @return true iff 'digest' is the value of the digest of the bytes
+        remaining in 'data'
+    */
+    public static boolean matches(byte[] digest, ByteBuffer data)
+    {
+        Assert.require(digest != null);
+        Assert.require(data != null);
+
+        ContentDigest d = new ContentDigest();
+        d.add(data);
+
+        return MessageDigest.isEqual(digest, d.value());
+    }
+}
@@ -80,7 +80,7 @@ public abstract class FileList
     */
     public static FileList createArrayList(int initialCapacity)
     {
-        return new ArrayTypedList(initialCapacity);
+        return new DirectArrayTypedList(initialCapacity);
     }
 
     /**
@@ -491,6 +491,39 @@ public abstract class FileList
         return (File[]) toObjectArray(array);
     }
 
+    /**
+        Returns an unmodifiable copy of this list whose items are stored
+        directly in an array, which makes indexing into and iterating over
+        it as cheap as possible. Since a frozen list can't be modified it
+        can safely be shared, and freezing one just returns it.
+        <p>
+        Changes made to this list after this method returns will not be
+        reflected in the returned list.
+
+        @return a frozen copy of this list
+        @see #isFrozen
+    */
+    public FileList freeze()
+    {
+        FileList result = new FrozenTypedList(toArray());
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.isFrozen());
+        Assert.ensure(result.size() == size());
+        return result;
+    }
+
+    /**
+        @return true iff this list is a frozen list: that is, iff it was
+        returned by a call to freeze()
+        @see #freeze
+    */
+    public boolean isFrozen()
+    {
+        return false;
+    }
+
+
 
     // Private static methods
 
@@ -557,6 +590,112 @@ public abstract class FileList
 
     // Inner classes
 
+    /**
+        A cursor over the File items in a(n)
+        FileList.
+        <p>
+        A cursor can be reset to the start of the same list or of another
+        one, so a single cursor can be used to iterate over any number of
+        lists without any further objects being allocated. It accesses items
+        by their indices, which is cheapest for lists created by
+        createArrayList() or freeze().
+    */
+    public static class Cursor
+        implements FileIterator
+    {
+        // Private fields
+
+        /** The list whose items we iterate over. */
+        private FileList _list;
+
+        /** The index in '_list' of the item that next() will return. */
+        private int _nextIndex;
+
+
+        // Constructors
+
+        /**
+            Constructs a Cursor that is positioned at the start of the
+            specified list.
+
+            @param list the list whose items the cursor is to iterate over
+        */
+        public Cursor(FileList list)
+        {
+            reset(list);
+        }
+
+
+        // Public methods
+
+        /**
+            Repositions this cursor at the start of the specified list.
+
+            @param list the list whose items this cursor is to iterate over
+            @return this cursor
+        */
+        public Cursor reset(FileList list)
+        {
+            Assert.require(list != null);
+
+            _list = list;
+            _nextIndex = 0;
+
+            return this;
+        }
+
+        /**
+            Repositions this cursor at the start of the list that it
+            iterates over.
+
+            @return this cursor
+        */
+        public Cursor reset()
+        {
+            _nextIndex = 0;
+
+            return this;
+        }
+
+        /**
+            @return the index in our list of the item that the next call to
+            our next() method will return
+        */
+        public int index()
+        {
+            return _nextIndex;
+        }
+
+        /**
+            @see FileIterator#hasNext
+        */
+        public boolean hasNext()
+        {
+            return (_nextIndex < _list.size());
+        }
+
+        /**
+            @see FileIterator#next
+        */
+        public File next()
+            throws NoSuchItemException
+        {
+            File result = _list.get(_nextIndex);
+
+            _nextIndex += 1;
+            return result;
+        }
+
+        /**
+            @see FileIterator#peek
+        */
+        public File peek()
+            throws NoSuchItemException
+        {
+            return _list.get(_nextIndex);
+        }
+    }
+
     /**
         An array-backed FileList.
     */
@@ -632,6 +771,443 @@ public abstract class FileList
         }
     }
 
+    /**
+        A(n) FileList whose items are stored directly in an
+        array of File items rather than in a general-purpose
+        backing list, so that the operations that are performed on it most
+        often needn't go through a List or cast their results.
+    */
+    private static class DirectArrayTypedList
+        extends FileList
+    {
+        // Private fields
+
+        /** The store that holds our items: it's also our backing list. */
+        private final ArrayStore _store;
+
+
+        // Constructors
+
+        /**
+            Constructs a DirectArrayTypedList.
+
+            @param initialCapacity the list's initial capacity
+        */
+        public DirectArrayTypedList(int initialCapacity)
+        {
+            super(initialCapacity);
+
+            _store = (ArrayStore) asUntypedList();
+        }
+
+
+        // Public methods
+        /**
+            @see FileList#iterator
+        */
+        public FileIterator iterator()
+        {
+            return new Cursor(this);
+        }
+        /**
+            @see FileList#contains(File)
+        */
+        public boolean contains(File item)
+        {
+            // 'item' can be null
+
+            return (_store.indexOf(item) >= 0);
+        }
+
+        /**
+            @see FileList#get(int)
+        */
+        public File get(int index)
+            throws NoSuchItemException
+        {
+            return _store.item(index);
+        }
+
+        /**
+            @see FileList#getLast
+        */
+        public File getLast()
+            throws NoSuchItemException
+        {
+            return _store.item(_store.size() - 1);
+        }
+
+        /**
+            @see FileList#add(File)
+        */
+        public void add(File newItem)
+        {
+            _store.append(newItem);
+        }
+
+        /**
+            Adds all of the items in the specified list in order to the end
+            of this list. The items are copied directly from the other
+            list's array if it has one.
+
+            @see FileList#addAll(FileList)
+        */
+        public void addAll(FileList list)
+        {
+            Assert.require(list != null);
+
+            if (list instanceof DirectArrayTypedList)
+            {
+                ArrayStore src = ((DirectArrayTypedList) list)._store;
+                _store.append(src.items(), src.size());
+            }
+            else if (list instanceof FrozenTypedList)
+            {
+                File[] items = ((FrozenTypedList) list)._items;
+                _store.append(items, items.length);
+            }
+            else
+            {
+                // Note: 'list' may be a sublist of this list, so we don't
+                // add its items while iterating over them.
+                File[] items = list.toArray();
+                _store.append(items, items.length);
+            }
+        }
+
+        /**
+            @see FileList#toArray
+        */
+        public File[] toArray()
+        {
+            return _store.toTypedArray();
+        }
+
+        /**
+            @see TypedList#trimToSize
+        */
+        public void trimToSize()
+        {
+            _store.trimToSize();
+        }
+
+        /**
+            @see FileList#cloneList
+        */
+        public FileList cloneList()
+        {
+            FileList result = new DirectArrayTypedList(size());
+
+            result.addAll(this);
+
+            Assert.ensure(result != null);
+            Assert.ensure(result.size() == size());
+            return result;
+        }
+
+        /**
+            @see FileList#subList(int)
+        */
+        public FileList subList(int startIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex));
+        }
+
+        /**
+            @see FileList#subList(int, int)
+        */
+        public FileList
+            subList(int startIndex, int pastEndIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex,
+                                                     pastEndIndex));
+        }
+
+
+        // Protected methods
+
+        /**
+            @see TypedList#createBackingList(int)
+        */
+        protected List createBackingList(int initialCapacity)
+        {
+            return new ArrayStore(initialCapacity);
+        }
+    }
+
+    /**
+        The backing list of a DirectArrayTypedList, which stores its
+        File items directly in an array.
+        <p>
+        It provides typed versions of the operations that a
+        DirectArrayTypedList performs most often: the rest of the TypedList
+        methods access it through the List interface.
+    */
+    private static class ArrayStore
+        extends AbstractList
+        implements RandomAccess
+    {
+        // Private fields
+
+        /**
+            The array containing our items: only its first '_size' elements
+            are items.
+        */
+        private File[] _items;
+
+        /** The number of items in this list. */
+        private int _size;
+
+
+        // Constructors
+
+        /**
+            Constructs an empty ArrayStore.
+
+            @param initialCapacity the store's initial capacity
+        */
+        public ArrayStore(int initialCapacity)
+        {
+            Assert.require(initialCapacity >= 0);
+
+            _items = new File[initialCapacity];
+            _size = 0;
+        }
+
+
+        // Public methods
+
+        /**
+            @param index the index of the item to return
+            @return the item in this list at index 'index'
+            @exception NoSuchItemException thrown if this list doesn't have
+            an item at index 'index'
+        */
+        public File item(int index)
+            throws NoSuchItemException
+        {
+            if (index >= 0 && index < _size)
+            {
+                return _items[index];
+            }
+            else
+            {
+                throw new NoSuchItemException();
+            }
+        }
+
+        /**
+            Note: only the first size() elements of the returned array are
+            items in this list, and the array mustn't be modified.
+
+            @return the array that contains our items
+        */
+        public File[] items()
+        {
+            return _items;
+        }
+
+        /**
+            Adds the specified item to the end of this list.
+
+            @param newItem the item to add
+        */
+        public void append(File newItem)
+        {
+            ensureCapacity(_size + 1);
+            _items[_size] = newItem;
+            _size += 1;
+            modCount += 1;
+        }
+
+        /**
+            Adds the first 'count' items in the specified array to the end
+            of this list.
+
+            @param items the array containing the items to add
+            @param count the number of items in 'items' to add
+        */
+        public void append(File[] items, int count)
+        {
+            Assert.require(items != null);
+            Assert.require(count >= 0);
+            Assert.require(count <= items.length);
+
+            ensureCapacity(_size + count);
+            System.arraycopy(items, 0, _items, _size, count);
+            _size += count;
+            modCount += 1;
+        }
+
+        /**
+            Ensures that this list can hold at least the specified number of
+            items without having to grow its array.
+
+            @param minCapacity the minimum capacity
+        */
+        public void ensureCapacity(int minCapacity)
+        {
+            if (minCapacity > _items.length)
+            {
+                int newCapacity =
+                    Math.max(minCapacity, (_items.length * 3) / 2 + 1);
+                File[] newItems =
+                    new File[newCapacity];
+                System.arraycopy(_items, 0, newItems, 0, _size);
+                _items = newItems;
+            }
+        }
+
+        /**
+            Reduces this list's capacity to its size.
+        */
+        public void trimToSize()
+        {
+            if (_size < _items.length)
+            {
+                _items = toTypedArray();
+            }
+            modCount += 1;
+        }
+
+        /**
+            @return a new array containing all of our items in order
+        */
+        public File[] toTypedArray()
+        {
+            File[] result = new File[_size];
+
+            System.arraycopy(_items, 0, result, 0, _size);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see List#size
+        */
+        public int size()
+        {
+            return _size;
+        }
+
+        /**
+            @see List#get(int)
+        */
+        public Object get(int index)
+        {
+            checkIndex(index, _size);
+
+            return _items[index];
+        }
+
+        /**
+            @see List#set(int, Object)
+        */
+        public Object set(int index, Object newItem)
+        {
+            checkIndex(index, _size);
+
+            Object result = _items[index];
+            _items[index] = (File) newItem;
+
+            return result;
+        }
+
+        /**
+            @see List#add(int, Object)
+        */
+        public void add(int index, Object newItem)
+        {
+            checkIndex(index, _size + 1);
+
+            ensureCapacity(_size + 1);
+            System.arraycopy(_items, index, _items, index + 1,
+                             _size - index);
+            _items[index] = (File) newItem;
+            _size += 1;
+            modCount += 1;
+        }
+
+        /**
+            @see List#remove(int)
+        */
+        public Object remove(int index)
+        {
+            checkIndex(index, _size);
+
+            Object result = _items[index];
+            System.arraycopy(_items, index + 1, _items, index,
+                             _size - index - 1);
+            _size -= 1;
+            _items[_size] = null;
+            modCount += 1;
+
+            return result;
+        }
+
+        /**
+            @see List#clear
+        */
+        public void clear()
+        {
+            Arrays.fill(_items, 0, _size, null);
+            _size = 0;
+            modCount += 1;
+        }
+
+        /**
+            @see List#indexOf(Object)
+        */
+        public int indexOf(Object obj)
+        {
+            // 'obj' can be null
+
+            int result = -1;
+
+            for (int i = 0; result < 0 && i < _size; i++)
+            {
+                Object item = _items[i];
+                if (obj == null ? item == null : obj.equals(item))
+                {
+                    result = i;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            @see List#contains(Object)
+        */
+        public boolean contains(Object obj)
+        {
+            return (indexOf(obj) >= 0);
+        }
+
+
+        // Private static methods
+
+        /**
+            Checks that the specified index is at least zero and less than
+            the specified limit.
+
+            @param index the index to check
+            @param limit the index's upper bound (exclusive)
+            @exception IndexOutOfBoundsException thrown if 'index' isn't in
+            range
+        */
+        private static void checkIndex(int index, int limit)
+            throws IndexOutOfBoundsException
+        {
+            if (index < 0 || index >= limit)
+            {
+                throw new IndexOutOfBoundsException("index = " + index +
+                    ", limit = " + limit);
+            }
+        }
+    }
+
     /**
         An unmodifiable single-item list-backed FileList.
     */
@@ -771,6 +1347,157 @@ public abstract class FileList
         }
     }
 
+    /**
+        An unmodifiable FileList whose items are stored directly
+        in an array. Instances of this class are returned by freeze().
+    */
+    private static class FrozenTypedList
+        extends FileList
+    {
+        // Private fields
+
+        /** The items in this list, in order. */
+        private final File[] _items;
+
+
+        // Constructors
+
+        /**
+            Constructs a FrozenTypedList.
+            <p>
+            Note: the list takes ownership of 'items', which mustn't be
+            modified after this constructor is called.
+
+            @param items the list's items, in order
+        */
+        public FrozenTypedList(File[] items)
+        {
+            super(Collections.unmodifiableList(Arrays.asList(items)));
+
+            _items = items;
+        }
+
+
+        // Public methods
+        /**
+            @see FileList#iterator
+        */
+        public FileIterator iterator()
+        {
+            return new FileArrayIterator(_items);
+        }
+        /**
+            @see FileList#get(int)
+        */
+        public File get(int index)
+            throws NoSuchItemException
+        {
+            if (index >= 0 && index < _items.length)
+            {
+                return _items[index];
+            }
+            else
+            {
+                throw new NoSuchItemException();
+            }
+        }
+
+        /**
+            @see FileList#getLast
+        */
+        public File getLast()
+            throws NoSuchItemException
+        {
+            return get(_items.length - 1);
+        }
+
+        /**
+            @see TypedList#size
+        */
+        public int size()
+        {
+            return _items.length;
+        }
+
+        /**
+            @see TypedList#isEmpty
+        */
+        public boolean isEmpty()
+        {
+            return (_items.length == 0);
+        }
+
+        /**
+            @see FileList#toArray
+        */
+        public File[] toArray()
+        {
+            File[] result =
+                new File[_items.length];
+
+            System.arraycopy(_items, 0, result, 0, _items.length);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see FileList#freeze
+        */
+        public FileList freeze()
+        {
+            return this;
+        }
+
+        /**
+            @see FileList#isFrozen
+        */
+        public boolean isFrozen()
+        {
+            return true;
+        }
+
+        /**
+            Since a frozen list can't be modified, it is its own clone.
+
+            @see FileList#cloneList
+        */
+        public FileList cloneList()
+        {
+            return this;
+        }
+
+        /**
+            @see FileList#subList(int)
+        */
+        public FileList subList(int startIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex));
+        }
+
+        /**
+            @see FileList#subList(int, int)
+        */
+        public FileList
+            subList(int startIndex, int pastEndIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex,
+                                                     pastEndIndex));
+        }
+
+
+        // Protected methods
+
+        /**
+            @see TypedList#createBackingList(int)
+        */
+        protected List createBackingList(int initialCapacity)
+        {
+            // This method should never get called.
+            throw new UnsupportedOperationException();
+        }
+    }
+
 
     // Built-in iterator inner class
 
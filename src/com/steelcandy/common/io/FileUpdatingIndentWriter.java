@@ -19,10 +19,11 @@ package com.steelcandy.common.io;
 
 import com.steelcandy.common.debug.Assert;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.Writer;  // javadocs
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
     An IndentWriter that updates the file that it writes to: it initially
@@ -31,6 +32,17 @@ import java.io.Writer;  // javadocs
     either its file doesn't exist, or its file exists the the temporary
     file's contents are different from its file's contents. Otherwise its
     file is left unchanged and the temporary file is deleted.
+    <p>
+    A writer can instead be created in compare-while-writing mode, in
+    which what's written is compared with its file's current contents as
+    it's written, and nothing is written anywhere until the first
+    difference is found. Only then is a temporary file created: it's
+    given the part of its file's contents that matched, and everything
+    from the first difference onwards is written to it. When the writer
+    is closed the temporary file (if there is one) atomically replaces
+    its file. So when the writer's output is the same as its file's
+    current contents - which is usually the case when regenerating files
+    - its file is just read once and nothing at all is written.
 
     @author James MacKay
 */
@@ -60,15 +72,36 @@ public class FileUpdatingIndentWriter
     private static final String
         TEMP_FILE_PREFIX_TERMINATOR = "-";
 
+    /**
+        The size of the buffers used to read a file's current contents and
+        to write to a temporary file in compare-while-writing mode.
+    */
+    private static final int COMPARISON_BUFFER_SIZE = 8192;
+
 
     // Private fields
 
     /** The pathname of the file we're to update. */
     private File _file;
 
-    /** The pathname of our temporary file. */
+    /**
+        The pathname of our temporary file, or null if we're in
+        compare-while-writing mode.
+    */
     private File _tempFile;
 
+    /**
+        The stream that compares what we write with our file's current
+        contents, or null if we're not in compare-while-writing mode.
+    */
+    private ComparingOutputStream _comparer;
+
+    /**
+        True iff we've been closed or abandoned, in which case closing or
+        abandoning us again has no effect.
+    */
+    private boolean _isFinished;
+
 
     // Constructors
 
@@ -107,6 +140,38 @@ public class FileUpdatingIndentWriter
         return result;
     }
 
+    /**
+        @param f the pathname of a (possibly nonexistent) file
+        @param doCompareWhileWriting true if the writer is to be in
+        compare-while-writing mode, and false if it's to write everything
+        to a temporary file first
+        @return a FileUpdatingIndentWriter that will update 'f' with what
+        is written using it
+        @exception IOException thrown if creating the writer fails
+        @see #create(File)
+    */
+    public static FileUpdatingIndentWriter
+        create(File f, boolean doCompareWhileWriting)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        FileUpdatingIndentWriter result;
+
+        if (doCompareWhileWriting)
+        {
+            result = new FileUpdatingIndentWriter(f,
+                                        new ComparingOutputStream(f));
+        }
+        else
+        {
+            result = create(f);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
     /**
         Constructs a FileUpdatingIndentWriter.
 
@@ -123,6 +188,32 @@ public class FileUpdatingIndentWriter
 
         _file = f;
         _tempFile = tf;
+        _comparer = null;
+        _isFinished = false;
+    }
+
+    /**
+        Constructs a FileUpdatingIndentWriter in compare-while-writing
+        mode.
+        <p>
+        Note: what's written is encoded using the platform's default
+        character encoding, just as it is when it's written to a temporary
+        file.
+
+        @param f the pathname of the file to be updated
+        @param comparer the stream that compares what's written with the
+        current contents of 'f'
+    */
+    private FileUpdatingIndentWriter(File f, ComparingOutputStream comparer)
+    {
+        super(new OutputStreamWriter(comparer), true);
+        Assert.require(f != null);
+        Assert.require(comparer != null);
+
+        _file = f;
+        _tempFile = null;
+        _comparer = comparer;
+        _isFinished = false;
     }
 
 
@@ -134,14 +225,56 @@ public class FileUpdatingIndentWriter
     public void close()
         throws IOException
     {
-        try
+        if (_isFinished == false)
         {
-            super.close();
-            Io.updateFirst(_file, _tempFile);
+            _isFinished = true;
+            if (_comparer != null)
+            {
+                super.close();  // which updates our file
+            }
+            else
+            {
+                try
+                {
+                    super.close();
+                    Io.updateFirst(_file, _tempFile);
+                }
+                finally
+                {
+                    Io.tryToDelete(_tempFile);
+                }
+            }
         }
-        finally
+    }
+
+    /**
+        Closes this writer without updating our file, so that everything
+        that was written using this writer is discarded and our file is left
+        exactly as it was before this writer was created.
+        <p>
+        Closing or abandoning this writer after it has been abandoned has no
+        effect.
+
+        @exception IOException thrown if closing this writer fails
+    */
+    public void abandon()
+        throws IOException
+    {
+        if (_isFinished == false)
         {
-            Io.tryToDelete(_tempFile);
+            _isFinished = true;
+            if (_comparer != null)
+            {
+                _comparer.abandon();
+            }
+            try
+            {
+                super.close();
+            }
+            finally
+            {
+                Io.tryToDelete(_tempFile);
+            }
         }
     }
 
@@ -177,4 +310,340 @@ public class FileUpdatingIndentWriter
         Assert.ensure(result != null);
         return result;
     }
+
+
+    // Inner classes
+
+    /**
+        The OutputStream that compares the bytes written to it with the
+        current contents of a file, and that updates the file with them
+        when it's closed iff they differ.
+    */
+    private static class ComparingOutputStream
+        extends OutputStream
+    {
+        // Private fields
+
+        /** The pathname of the file we're to update. */
+        private File _file;
+
+        /**
+            The channel used to read our file's current contents, or null
+            if our file doesn't exist or we've found a difference.
+        */
+        private FileChannel _existing;
+
+        /**
+            The buffer containing the next part of our file's current
+            contents that haven't been compared yet.
+        */
+        private ByteBuffer _existingBuffer;
+
+        /**
+            The number of bytes at the start of our file that have been
+            found to be the same as the bytes written to us.
+        */
+        private long _matchedLength;
+
+        /**
+            The pathname of the temporary file that will replace our file,
+            or null if we haven't found a difference yet.
+        */
+        private File _tempFile;
+
+        /**
+            The stream that writes to '_tempFile', or null if we haven't
+            found a difference yet.
+        */
+        private OutputStream _tempOut;
+
+        /** True iff our file existed when we were constructed. */
+        private boolean _didFileExist;
+
+        /**
+            True iff we've been closed or abandoned, in which case
+            closing or abandoning us again has no effect.
+        */
+        private boolean _isFinished;
+
+        /**
+            True iff we've been abandoned, in which case anything written
+            to us is discarded.
+        */
+        private boolean _isAbandoned;
+
+
+        // Constructors
+
+        /**
+            Constructs a ComparingOutputStream.
+
+            @param f the pathname of the file to be updated
+            @exception IOException thrown if 'f' exists but couldn't be
+            opened for reading
+        */
+        public ComparingOutputStream(File f)
+            throws IOException
+        {
+            Assert.require(f != null);
+
+            _file = f;
+            _existing = null;
+            _didFileExist = f.isFile();
+            if (_didFileExist)
+            {
+                _existing = new FileInputStream(f).getChannel();
+                _existingBuffer =
+                    ByteBuffer.allocate(COMPARISON_BUFFER_SIZE);
+                _existingBuffer.flip();  // so that it starts out empty
+            }
+            _matchedLength = 0;
+            _tempFile = null;
+            _tempOut = null;
+            _isFinished = false;
+            _isAbandoned = false;
+        }
+
+
+        // Public methods
+
+        /**
+            @see OutputStream#write(int)
+        */
+        public void write(int b)
+            throws IOException
+        {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        /**
+            @see OutputStream#write(byte[], int, int)
+        */
+        public void write(byte[] b, int off, int len)
+            throws IOException
+        {
+            Assert.require(b != null);
+            Assert.require(off >= 0 && len >= 0);
+            Assert.require(off + len <= b.length);
+            Assert.require(_isFinished == false || _isAbandoned);
+
+            if (_isAbandoned == false)
+            {
+                int numMatched = 0;
+                if (_tempOut == null)
+                {
+                    numMatched = compare(b, off, len);
+                }
+                if (numMatched < len)
+                {
+                    if (_tempOut == null)
+                    {
+                        startTemporaryFile();
+                    }
+                    _tempOut.write(b, off + numMatched, len - numMatched);
+                }
+            }
+        }
+
+        /**
+            Replaces our file with what was written to us iff it differs
+            from our file's current contents.
+
+            @see OutputStream#close
+        */
+        public void close()
+            throws IOException
+        {
+            if (_isFinished == false)
+            {
+                _isFinished = true;
+                try
+                {
+                    if (_tempOut == null &&
+                        (_didFileExist == false || hasMoreExisting()))
+                    {
+                        // Either nothing was written and our file doesn't
+                        // exist, or everything written matched but it was
+                        // only a prefix of our file's contents.
+                        startTemporaryFile();
+                    }
+                    closeExisting();
+                    if (_tempOut != null)
+                    {
+                        _tempOut.close();
+                        _tempOut = null;
+                        Files.move(_tempFile.toPath(), _file.toPath(),
+                                   StandardCopyOption.ATOMIC_MOVE,
+                                   StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+                finally
+                {
+                    discard();
+                }
+            }
+        }
+
+        /**
+            Closes this stream without updating our file. Anything written
+            to it after it's been abandoned is discarded.
+            <p>
+            Closing or abandoning this stream after it has been abandoned
+            has no effect.
+
+            @exception IOException thrown if closing this stream fails
+        */
+        public void abandon()
+            throws IOException
+        {
+            if (_isFinished == false)
+            {
+                _isFinished = true;
+                _isAbandoned = true;
+                discard();
+            }
+        }
+
+
+        // Private methods
+
+        /**
+            Compares the specified bytes with the next bytes of our file's
+            current contents.
+
+            @param b the array containing the bytes to compare
+            @param off the index in 'b' of the first byte to compare
+            @param len the number of bytes to compare
+            @return the number of bytes at the start of the bytes being
+            compared that are the same as our file's next bytes
+            @exception IOException thrown if our file couldn't be read
+        */
+        private int compare(byte[] b, int off, int len)
+            throws IOException
+        {
+            Assert.require(b != null);
+            Assert.require(_tempOut == null);
+
+            int result = 0;
+
+            boolean isSame = true;
+            while (isSame && result < len && hasMoreExisting())
+            {
+                if (_existingBuffer.get() == b[off + result])
+                {
+                    result += 1;
+                }
+                else
+                {
+                    isSame = false;
+                }
+            }
+            _matchedLength += result;
+
+            Assert.ensure(result >= 0 && result <= len);
+            return result;
+        }
+
+        /**
+            @return true iff there are more bytes of our file's current
+            contents that haven't been compared yet
+            @exception IOException thrown if our file couldn't be read
+        */
+        private boolean hasMoreExisting()
+            throws IOException
+        {
+            boolean result = false;
+
+            if (_existing != null)
+            {
+                result = _existingBuffer.hasRemaining();
+                if (result == false)
+                {
+                    _existingBuffer.clear();
+                    int numRead = 0;
+                    while (numRead == 0)
+                    {
+                        numRead = _existing.read(_existingBuffer);
+                    }
+                    _existingBuffer.flip();
+                    result = (numRead > 0);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            Creates our temporary file and gives it the part of our file's
+            current contents that matched what was written to us.
+
+            @exception IOException thrown if the temporary file couldn't be
+            created or written to
+        */
+        private void startTemporaryFile()
+            throws IOException
+        {
+            Assert.require(_tempOut == null);
+
+            _tempFile = createTemporaryFile(_file);
+            _tempFile.deleteOnExit();
+                // though hopefully it'll be gone before that
+            FileOutputStream out = new FileOutputStream(_tempFile);
+            _tempOut = new BufferedOutputStream(out, COMPARISON_BUFFER_SIZE);
+            if (_matchedLength > 0)
+            {
+                FileChannel ch = out.getChannel();
+                long pos = 0;
+                while (pos < _matchedLength)
+                {
+                    pos += _existing.transferTo(pos, _matchedLength - pos,
+                                                ch);
+                }
+            }
+            closeExisting();
+        }
+
+        /**
+            Closes the channel used to read our file's current contents,
+            if it's open.
+
+            @exception IOException thrown if the channel couldn't be closed
+        */
+        private void closeExisting()
+            throws IOException
+        {
+            if (_existing != null)
+            {
+                FileChannel ch = _existing;
+                _existing = null;
+                _existingBuffer = null;
+                ch.close();
+            }
+        }
+
+        /**
+            Closes everything that we have open and deletes our temporary
+            file, if we have one.
+        */
+        private void discard()
+        {
+            if (_existing != null)
+            {
+                try
+                {
+                    closeExisting();
+                }
+                catch (IOException ex)
+                {
+                    // ignore it
+                }
+            }
+            if (_tempOut != null)
+            {
+                Io.tryToClose(_tempOut);
+                _tempOut = null;
+            }
+            Io.tryToDelete(_tempFile);
+        }
+    }
 }
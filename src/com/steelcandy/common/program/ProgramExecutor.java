@@ -142,6 +142,25 @@ public class ProgramExecutor
     {
         Assert.require(p != null);
 
+        return execute(p, args, new PrintWriter(System.err, true));
+    }
+
+    /**
+        Executes the specified program and returns an exit code that
+        indicates whether it successfully completed or not, reporting why
+        it didn't using the specified writer rather than standard error.
+
+        @param p the program to execute
+        @param args the program's command line arguments
+        @param err the writer to use to report why the program failed
+        @return zero if the program completed successfully, and non-zero if
+        it didn't
+    */
+    public int execute(Program p, String[] args, PrintWriter err)
+    {
+        Assert.require(p != null);
+        Assert.require(err != null);
+
         int result = 0;
 
         try
@@ -154,23 +173,24 @@ public class ProgramExecutor
         catch (BadProgramUsageException ex)
         {
 // System.err.println("PROGRAM FAILED due to a BadProgramUsageException of class " + ex.getClass().getName() + ": [" + ex.getLocalizedMessage() + "]");
-            reportAsErrorInformation(ex.getLocalizedMessage());
+            err.println(ex.getLocalizedMessage());
             result = 2;
         }
         catch (ProgramException ex)
         {
 // System.err.println("PROGRAM FAILED due to a ProgramException of class " + ex.getClass().getName() + ": [" + ex.getLocalizedMessage() + "]");
-            reportAsErrorInformation(ex.getLocalizedMessage());
+            err.println(ex.getLocalizedMessage());
 //            reportExceptionAsErrorInformation(ex);
             result = 1;
         }
         catch (Throwable ex)
         {
-            reportAsErrorInformation("PROGRAM FAILED due to an UNEXPECTED " +
-                                     "exception:");
-            ex.printStackTrace();  // this includes the exception class and message
+            err.println("PROGRAM FAILED due to an UNEXPECTED exception:");
+            ex.printStackTrace(err);
+                // this includes the exception class and message
             result = 3;
         }
+        err.flush();
 
 // System.err.println("program exiting with exit code " + result);
         return result;
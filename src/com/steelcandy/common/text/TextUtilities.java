@@ -18,6 +18,7 @@
 package com.steelcandy.common.text;
 
 import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.debug.ContractTier;
 
 import com.steelcandy.common.Resources;
 import com.steelcandy.common.compare.*;
@@ -39,6 +40,10 @@ public class TextUtilities
     private static final Resources _resources =
         TextResourcesLocator.resources;
 
+    /** The tier of expensive contract checks used by this class. */
+    private static final ContractTier EXPENSIVE =
+        ContractTier.expensive(TextUtilities.class);
+
     /** Resource identifiers. */
     private static final String
         NON_FINAL_LIST_SEPARATOR =
@@ -243,7 +248,8 @@ public class TextUtilities
         @see DefaultStringComparator
         @see #sortedStringKeys(Map, Comparator)
     */
-    public static StringList sortedStringKeys(Map m, Comparator keyComp)
+    public static StringList
+        sortedStringKeys(Map m, final Comparator keyComp)
     {
         Assert.require(m != null);
         Assert.require(keyComp != null);
@@ -267,7 +273,21 @@ public class TextUtilities
 
         Assert.ensure(result != null);
         Assert.ensure(result.size() == m.size());
-        //Assert.ensure("'result' is sorted according to 'keyComp'");
+        final StringList sortedKeys = result;
+        EXPENSIVE.ensure(new Assert.Condition()
+        {
+            public boolean holds()
+            {
+                // Is 'result' sorted according to 'keyComp'?
+                boolean isSorted = true;
+                for (int i = 1; isSorted && i < sortedKeys.size(); i++)
+                {
+                    isSorted = (keyComp.compare(sortedKeys.get(i - 1),
+                                                sortedKeys.get(i)) <= 0);
+                }
+                return isSorted;
+            }
+        });
         return result;
     }
 
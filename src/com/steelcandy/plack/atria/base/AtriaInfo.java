@@ -19,6 +19,7 @@ package com.steelcandy.plack.atria.base;
 
 import com.steelcandy.common.debug.Assert;
 
+import com.steelcandy.common.chars.CharacterClassTable;
 import com.steelcandy.common.text.TextUtilities;
 
 import java.util.*;
@@ -169,15 +170,69 @@ public class AtriaInfo
         TEXT_CHARS = AtriaCharacterClasses.TEXT_CHARACTER;
 
 
+    // Character classes (as lookup tables)
+
+    /** The table of all of the Atria Name characters. */
+    public static final CharacterClassTable
+        NAME_CHARS_TABLE = AtriaCharacterClasses.NAME_CHARACTER_TABLE;
+
+    /**
+        The table of all of the Atria literal text characters, including
+        all of those that aren't 7-bit ASCII characters.
+    */
+    public static final CharacterClassTable
+        TEXT_CHARS_TABLE = new CharacterClassTable(TEXT_CHARS,
+                                    FIRST_NON_ASCII_UNICODE_CODEPOINT);
+
+    /** The table of all of the characters that can start a newline. */
+    public static final CharacterClassTable
+        NEWLINE_START_CHARS_TABLE =
+            new CharacterClassTable(TextUtilities.NEWLINE_START_CHARS);
+
+    /** The table of all of the space characters. */
+    public static final CharacterClassTable
+        SPACE_CHARS_TABLE = AtriaCharacterClasses.SPACE_TABLE;
+
+
     // Miscellaneous constants
 
     /** The number of spaces per level of indentation. */
     public static final int
         SPACES_PER_INDENT_LEVEL = 4;
 
+    /**
+        The version of the toolkit used when the Atria classes weren't
+        loaded from a jar file with an implementation version.
+    */
+    public static final String
+        UNPACKAGED_VERSION = "unpackaged";
+
 
     // Public static methods
 
+    /**
+        @return the version of the toolkit that the Atria classes are
+        part of, as included in the keys of caches whose entries must not
+        outlive the code that created them
+        @see #UNPACKAGED_VERSION
+    */
+    public static String toolkitVersion()
+    {
+        String result = null;
+        Package p = AtriaInfo.class.getPackage();
+        if (p != null)
+        {
+            result = p.getImplementationVersion();
+        }
+        if (result == null)
+        {
+            result = UNPACKAGED_VERSION;
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
     /**
         Returns the specified pathname with the full Atria source file
         extension removed from it.
@@ -205,7 +260,7 @@ public class AtriaInfo
     */
     public static boolean isNewlineStart(char ch)
     {
-        return TextUtilities.isNewlineStart(ch);
+        return NEWLINE_START_CHARS_TABLE.contains(ch);
     }
 
     /**
@@ -214,7 +269,7 @@ public class AtriaInfo
     */
     public static boolean isNameCharacter(char ch)
     {
-        return (NAME_CHARS.indexOf(ch) >= 0);
+        return NAME_CHARS_TABLE.contains(ch);
     }
 
     /**
@@ -223,7 +278,6 @@ public class AtriaInfo
     */
     public static boolean isTextCharacter(char ch)
     {
-        return (((int) ch) >= FIRST_NON_ASCII_UNICODE_CODEPOINT) ||
-                (TEXT_CHARS.indexOf(ch) >= 0);
+        return TEXT_CHARS_TABLE.contains(ch);
     }
 }
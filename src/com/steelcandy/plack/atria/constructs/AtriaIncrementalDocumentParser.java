@@ -0,0 +1,193 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.constructs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.errors.*;
+import com.steelcandy.plack.common.source.*;
+import com.steelcandy.plack.common.tokens.*;
+import com.steelcandy.plack.common.constructs.*;
+
+/**
+    A Document parser that can parse the individual sections of a piece of
+    Atria source code - as split up by an AtriaSourceSplitter - one at a
+    time, and assemble a Document from the results of parsing them. This
+    allows a Document to be parsed again after its source code has been
+    edited by only parsing the sections that the edit affected.
+    <p>
+    As with an AtriaParallelDocumentParser, a section is only considered to
+    have been parsed successfully if the result of parsing it is the same
+    as the result of parsing it as part of all of the source code would
+    be: otherwise all of the source code must be parsed again
+    sequentially.
+
+    @author James MacKay
+    @see com.steelcandy.plack.atria.source.AtriaSourceSplitter
+*/
+public class AtriaIncrementalDocumentParser
+    extends AtriaParallelDocumentParser
+{
+    // Constructors
+
+    /**
+        Constructs an AtriaIncrementalDocumentParser.
+    */
+    public AtriaIncrementalDocumentParser()
+    {
+        // empty
+    }
+
+
+    // Public methods
+
+    /**
+        Tokenizes and parses the specified section, which is the first
+        section of a piece of source code and so is expected to represent
+        the start of a top-level Document.
+
+        @param section the first section of a piece of source code
+        @param creator used to create the tokenizer to use to tokenize
+        'section'
+        @param handler the error handler to use to handle any errors that
+        occur in tokenizing and parsing 'section'
+        @return the (start of the) Document that 'section' represents, or
+        null if 'section' couldn't be parsed successfully on its own
+    */
+    public AtriaConstructManager.Document
+        parseHeadSection(SourceCodeSection section,
+                         TokenizerCreator creator, ErrorHandler handler)
+    {
+        Assert.require(section != null);
+        Assert.require(creator != null);
+        Assert.require(handler != null);
+
+        AtriaConstructManager.Document result = null;
+
+        int oldFatalCount = handler.fatalErrorAndAboveCount();
+        SourceCodeTokenizer t = null;
+        try
+        {
+            t = creator.create(section, handler);
+            result = parseFirstSection(t, handler);
+            if (t.hasNext() ||
+                handler.fatalErrorAndAboveCount() != oldFatalCount)
+            {
+                result = null;
+            }
+        }
+        catch (FatalErrorException ex)
+        {
+            result = null;
+        }
+        finally
+        {
+            if (t != null)
+            {
+                t.close();
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Tokenizes and parses the specified section, which is a section of a
+        piece of source code other than its first section and so is
+        expected to consist of one or more top-level Elements, and adds
+        the Elements to the specified list.
+
+        @param section a section of a piece of source code that isn't its
+        first section
+        @param creator used to create the tokenizer to use to tokenize
+        'section'
+        @param elements the list to add the top-level Elements to
+        @param handler the error handler to use to handle any errors that
+        occur in tokenizing and parsing 'section'
+        @return true iff 'section' was parsed successfully on its own
+    */
+    public boolean parseElementsSection(SourceCodeSection section,
+                    TokenizerCreator creator, ConstructList elements,
+                    ErrorHandler handler)
+    {
+        Assert.require(section != null);
+        Assert.require(creator != null);
+        Assert.require(elements != null);
+        Assert.require(handler != null);
+
+        boolean result = false;
+
+        int oldFatalCount = handler.fatalErrorAndAboveCount();
+        SourceCodeTokenizer t = null;
+        try
+        {
+            t = creator.create(section, handler);
+            parseElements(t, elements, handler);
+            result = (t.hasNext() == false) &&
+                (handler.fatalErrorAndAboveCount() == oldFatalCount);
+        }
+        catch (FatalErrorException ex)
+        {
+            result = false;
+        }
+        finally
+        {
+            if (t != null)
+            {
+                t.close();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        Creates and returns a Document with the specified Prologue and
+        top-level Elements.
+
+        @param prologue the Document's Prologue, or null if it doesn't have
+        one
+        @param elements the Document's top-level Elements
+        @param code the source code that the Document was parsed from
+        @return a Document consisting of 'prologue' and 'elements'
+    */
+    public AtriaConstructManager.Document
+        createDocument(AtriaConstructManager.Prologue prologue,
+                       ConstructList elements, SourceCode code)
+    {
+        Assert.require(elements != null);
+        Assert.require(code != null);
+
+        AtriaConstructManager.Document result = MANAGER.createDocument();
+        if (prologue != null)
+        {
+            result.setPrologue(prologue);
+        }
+        ConstructIterator iter = elements.iterator();
+        while (iter.hasNext())
+        {
+            result.addElement((AtriaConstructManager.Element) iter.next());
+        }
+        result.setSourceCode(code);
+        setDocumentLocation(result);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+}
@@ -0,0 +1,531 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.constructs;
+
+import com.steelcandy.plack.atria.source.AtriaSourceSplitter;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.errors.*;
+import com.steelcandy.plack.common.source.*;
+import com.steelcandy.plack.common.tokens.*;
+import com.steelcandy.plack.common.constructs.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+    A Document parser that splits a piece of Atria source code into
+    sections at the starts of top-level Elements and then tokenizes and
+    parses the sections concurrently.
+    <p>
+    The errors that occur in tokenizing and parsing each section are
+    recorded and then passed on - section by section, in the order in which
+    the sections appear in the source code - to the error handler passed to
+    parseTopLevel(SourceCode, TokenizerCreator, ErrorHandler), so that the
+    result of parsing a piece of source code using this parser is the same
+    as the result of parsing it sequentially. If there is any indication
+    that that wouldn't be the case (for example, if a section doesn't end
+    with the end of a top-level Element, or there are any fatal errors)
+    then the whole piece of source code is just parsed again sequentially.
+
+    @author James MacKay
+    @see AtriaSourceSplitter
+*/
+public class AtriaParallelDocumentParser
+    extends DefaultAtriaDocumentParser
+{
+    // Private fields
+
+    /** The splitter we use to split source code into sections. */
+    private AtriaSourceSplitter _splitter;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaParallelDocumentParser that splits source code
+        into sections of at least the default minimum size.
+
+        @see AtriaSourceSplitter#DEFAULT_MINIMUM_SECTION_SIZE
+    */
+    public AtriaParallelDocumentParser()
+    {
+        this(AtriaSourceSplitter.DEFAULT_MINIMUM_SECTION_SIZE);
+    }
+
+    /**
+        Constructs an AtriaParallelDocumentParser.
+
+        @param minimumSectionSize the minimum number of characters in each
+        section (except possibly the last) of the source code that the
+        parser is to parse concurrently
+    */
+    public AtriaParallelDocumentParser(int minimumSectionSize)
+    {
+        Assert.require(minimumSectionSize > 0);
+
+        _splitter = new AtriaSourceSplitter(minimumSectionSize);
+    }
+
+
+    // Public methods
+
+    /**
+        Parses the specified source code, which is expected to represent
+        a top-level Document, and returns the result.
+        <p>
+        The tokenizers used to tokenize the source code (or sections of it)
+        will all be closed before this method returns.
+
+        @param code the source code to parse
+        @param creator used to create the tokenizers to use to tokenize
+        'code' or sections of it
+        @param handler the error handler to use to handle any errors that
+        occur in tokenizing and parsing 'code'
+        @return the Document that 'code' represents, or null if there's
+        no such Document
+        @see #parseTopLevel(Tokenizer, ErrorHandler)
+    */
+    public AtriaConstructManager.Document
+        parseTopLevel(SourceCode code, TokenizerCreator creator,
+                      ErrorHandler handler)
+    {
+        Assert.require(code != null);
+        Assert.require(creator != null);
+        Assert.require(handler != null);
+
+        AtriaConstructManager.Document result = null;
+
+        List sections = null;
+        try
+        {
+            sections = _splitter.split(code);
+        }
+        catch (IOException ex)
+        {
+            // The error will be reported when we parse 'code' sequentially.
+            sections = null;
+        }
+
+        if (sections != null && sections.size() > 1)
+        {
+            result = parseSections(sections, creator, handler);
+        }
+        else
+        {
+            result = parseSequentially(code, creator, handler);
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+
+    // Protected methods
+
+    /**
+        Parses the specified sections of a piece of source code
+        concurrently.
+
+        @param sections the SourceCodeSections to parse: there must be at
+        least two of them
+        @param creator used to create the tokenizers to use to tokenize the
+        sections (or all of the source code)
+        @param handler the error handler to use to handle any errors that
+        occur in tokenizing and parsing the sections
+        @return the Document that the sections represent, or null if there's
+        no such Document
+    */
+    protected AtriaConstructManager.Document
+        parseSections(List sections, TokenizerCreator creator,
+                      ErrorHandler handler)
+    {
+        Assert.require(sections != null);
+        Assert.require(sections.size() >= 2);
+        Assert.require(creator != null);
+        Assert.require(handler != null);
+
+        AtriaConstructManager.Document result = null;
+
+        int numSections = sections.size();
+        SectionParsingTask[] tasks = new SectionParsingTask[numSections];
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        for (int i = 0; i < numSections; i++)
+        {
+            SourceCodeSection section = (SourceCodeSection) sections.get(i);
+            tasks[i] = new SectionParsingTask(section, (i == 0), creator);
+            pool.execute(tasks[i]);
+        }
+
+        boolean wereAllParsed = true;
+        for (int i = 0; i < numSections; i++)
+        {
+            tasks[i].join();
+            wereAllParsed = wereAllParsed && tasks[i].wasParsed();
+        }
+
+        if (wereAllParsed)
+        {
+            result = tasks[0].document();
+            for (int i = 1; i < numSections; i++)
+            {
+                ConstructIterator iter = tasks[i].elements().iterator();
+                while (iter.hasNext())
+                {
+                    result.addElement((AtriaConstructManager.Element)
+                                        iter.next());
+                }
+            }
+            setDocumentLocation(result);
+
+            for (int i = 0; i < numSections; i++)
+            {
+                tasks[i].errorRecorder().transferErrorsTo(handler);
+            }
+        }
+        else
+        {
+            SourceCodeSection first = (SourceCodeSection) sections.get(0);
+            result = parseSequentially(first.whole(), creator, handler);
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Parses the specified source code sequentially.
+
+        @param code the source code to parse
+        @param creator used to create the tokenizer to use to tokenize 'code'
+        @param handler the error handler to use to handle any errors that
+        occur in tokenizing and parsing 'code'
+        @return the Document that 'code' represents, or null if there's
+        no such Document
+    */
+    protected AtriaConstructManager.Document
+        parseSequentially(SourceCode code, TokenizerCreator creator,
+                          ErrorHandler handler)
+    {
+        Assert.require(code != null);
+        Assert.require(creator != null);
+        Assert.require(handler != null);
+
+        AtriaConstructManager.Document result;
+
+        SourceCodeTokenizer t = creator.create(code, handler);
+        try
+        {
+            result = parseTopLevel(t, handler);
+        }
+        finally
+        {
+            t.close();
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Parses the first section of a piece of source code, which is
+        expected to represent the start of a top-level Document.
+
+        @param t the tokenizer to use to tokenize the first section
+        @param handler the error handler to use to handle any errors
+        @return the start of the Document, or null if the section doesn't
+        start with the start of a top-level Document at the outermost level
+        of indentation
+    */
+    protected AtriaConstructManager.Document
+        parseFirstSection(Tokenizer t, ErrorHandler handler)
+    {
+        Assert.require(t != null);
+        Assert.require(handler != null);
+
+        AtriaConstructManager.Document result = null;
+
+        TrackedTokenList line = nextLine(t);
+        if (isEmptyLine(line) == false &&
+            TOKEN_MANAGER.firstLineIndentLevels(line.get(0)) == 0)
+        {
+            Token tok = firstNonIndentToken(line);
+            if (tok != null && canStartConstruct(tok))
+            {
+                result = parse(line, t, createParsingData(), handler);
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Parses the top-level Elements in a section of a piece of source
+        code that isn't the first section, and adds them to the specified
+        list.
+
+        @param t the tokenizer to use to tokenize the section
+        @param elements the list to add the Elements to
+        @param handler the error handler to use to handle any errors
+    */
+    protected void parseElements(Tokenizer t, ConstructList elements,
+                                 ErrorHandler handler)
+    {
+        Assert.require(t != null);
+        Assert.require(elements != null);
+        Assert.require(handler != null);
+
+        SubconstructParsingData data = createParsingData();
+        while (t.hasTokenAfterNext() &&
+               TOKEN_MANAGER.firstLineIndentLevels(t.peek()) == 0 &&
+               isStartOfElement(t.peekTokenAfterNext().id()))
+        {
+            Assert.check(TOKEN_MANAGER.isIndentToken(t.peek()));
+            TrackedTokenList nextLine = nextLine(t);
+
+            AtriaElementParser p = PARSER_FACTORY.createElementParser();
+            AtriaConstructManager.Element
+                subconstruct = p.parse(nextLine, t, data, handler);
+            if (subconstruct != null)
+            {
+                elements.add(subconstruct);
+            }
+        }
+    }
+
+    /**
+        Sets the location of the specified Document, which has had
+        Elements added to it after it was parsed, to encompass all of its
+        subconstructs' locations.
+
+        @param doc the Document whose location is to be set
+    */
+    protected void setDocumentLocation(AtriaConstructManager.Document doc)
+    {
+        Assert.require(doc != null);
+
+        SourceLocationList subLocations =
+            SourceLocationList.createArrayList();
+        if (doc.prologue() != null)
+        {
+            subLocations.add(doc.prologue().location());
+        }
+        ConstructIterator iter = doc.elementList().iterator();
+        while (iter.hasNext())
+        {
+            subLocations.add(iter.next().location());
+        }
+
+        SourceLocation loc = locationFactory().create(subLocations);
+        if (loc != null && doc.canSetLocation())
+        {
+            doc.setLocation(loc);
+        }
+    }
+
+
+    // Inner interfaces
+
+    /**
+        The interface implemented by classes that create the tokenizers
+        used to tokenize the source code (or sections of it) that an
+        AtriaParallelDocumentParser parses.
+        <p>
+        Implementations' create() methods must be able to be called
+        concurrently from multiple threads.
+    */
+    public static interface TokenizerCreator
+    {
+        /**
+            Creates and returns a tokenizer that has been initialized to
+            tokenize the specified source code.
+
+            @param code the source code that the tokenizer is to tokenize
+            @param handler the error handler that the tokenizer is to use
+            to handle any errors that occur in tokenizing 'code'
+            @return a tokenizer that tokenizes 'code'
+        */
+        public SourceCodeTokenizer
+            create(SourceCode code, ErrorHandler handler);
+            // Assert.require(code != null);
+            // Assert.require(handler != null);
+            // Assert.ensure(result != null);
+    }
+
+
+    // Inner classes
+
+    /**
+        The class of task that tokenizes and parses one section of a piece
+        of source code, recording any errors that occur in doing so.
+    */
+    private class SectionParsingTask
+        extends RecursiveAction
+    {
+        // Private fields
+
+        /** The section of source code that we tokenize and parse. */
+        private SourceCodeSection _section;
+
+        /** Indicates whether our section is the first section. */
+        private boolean _isFirstSection;
+
+        /** Creates the tokenizer we use to tokenize our section. */
+        private TokenizerCreator _creator;
+
+        /** Records the errors that occur in parsing our section. */
+        private RecordingErrorHandler _recorder;
+
+        /**
+            The (start of the) Document that our section represents if
+            it's the first section, and null otherwise.
+        */
+        private AtriaConstructManager.Document _document;
+
+        /**
+            The top-level Elements that our section represents if it isn't
+            the first section.
+        */
+        private ConstructList _elements;
+
+        /**
+            Indicates whether our section was parsed in a way that is
+            consistent with it being parsed as part of all of the source
+            code.
+        */
+        private boolean _wasParsed;
+
+
+        // Constructors
+
+        /**
+            Constructs a SectionParsingTask.
+
+            @param section the section of source code that the task is to
+            tokenize and parse
+            @param isFirstSection true iff 'section' is the first section of
+            the source code
+            @param creator used to create the tokenizer to use to tokenize
+            'section'
+        */
+        public SectionParsingTask(SourceCodeSection section,
+                        boolean isFirstSection, TokenizerCreator creator)
+        {
+            Assert.require(section != null);
+            Assert.require(creator != null);
+
+            _section = section;
+            _isFirstSection = isFirstSection;
+            _creator = creator;
+            _recorder = new RecordingErrorHandler();
+            _document = null;
+            _elements = ConstructList.createArrayList();
+            _wasParsed = false;
+        }
+
+
+        // Public methods
+
+        /**
+            Note: this method must only be called after this task has
+            completed.
+
+            @return true iff our section was parsed in a way that is
+            consistent with it being parsed as part of the whole of the
+            source code that it's a section of
+        */
+        public boolean wasParsed()
+        {
+            return _wasParsed;
+        }
+
+        /**
+            @return the (start of the) Document that our section represents
+        */
+        public AtriaConstructManager.Document document()
+        {
+            Assert.require(wasParsed());
+            Assert.require(_isFirstSection);
+
+            return _document;
+        }
+
+        /**
+            @return the top-level Elements that our section represents
+        */
+        public ConstructList elements()
+        {
+            Assert.require(wasParsed());
+
+            Assert.ensure(_elements != null);
+            return _elements;
+        }
+
+        /**
+            @return the error handler that recorded all of the errors that
+            occurred in parsing our section
+        */
+        public RecordingErrorHandler errorRecorder()
+        {
+            Assert.ensure(_recorder != null);
+            return _recorder;
+        }
+
+
+        // Protected methods
+
+        /**
+            @see RecursiveAction#compute
+        */
+        protected void compute()
+        {
+            SourceCodeTokenizer t = null;
+            try
+            {
+                t = _creator.create(_section, _recorder);
+                if (_isFirstSection)
+                {
+                    _document = parseFirstSection(t, _recorder);
+                    _wasParsed = (_document != null);
+                }
+                else
+                {
+                    parseElements(t, _elements, _recorder);
+                    _wasParsed = true;
+                }
+                _wasParsed = _wasParsed && (t.hasNext() == false) &&
+                    (_recorder.fatalErrorAndAboveCount() == 0);
+            }
+            catch (FatalErrorException ex)
+            {
+                _wasParsed = false;
+            }
+            finally
+            {
+                if (t != null)
+                {
+                    t.close();
+                }
+            }
+        }
+    }
+}
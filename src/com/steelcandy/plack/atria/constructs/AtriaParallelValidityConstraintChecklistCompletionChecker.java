@@ -0,0 +1,113 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.constructs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.errors.ErrorHandler;
+import com.steelcandy.plack.common.constructs.*;
+
+/**
+    The class of object that checks that an Atria document and all of its
+    subconstructs have had all of their validity constraints properly
+    checked, checking the document's top-level Elements concurrently.
+    <p>
+    Any unchecked validity constraints are reported in the same order in
+    which an AtriaValidityConstraintChecklistCompletionChecker would report
+    them.
+
+    @author James MacKay
+*/
+public class AtriaParallelValidityConstraintChecklistCompletionChecker
+    extends AtriaValidityConstraintChecklistCompletionChecker
+{
+    // Constructors
+
+    /**
+        Constructs an
+        AtriaParallelValidityConstraintChecklistCompletionChecker.
+    */
+    public AtriaParallelValidityConstraintChecklistCompletionChecker()
+    {
+        // empty
+    }
+
+
+    // Public methods
+
+    /**
+        @see AtriaValidityConstraintChecklistCompletionChecker#check(AtriaConstructManagerBase.Document, ErrorHandler)
+    */
+    public void check(AtriaConstructManager.Document c,
+                      ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        if (areChecking())
+        {
+            // The constructs are checked in preorder, so we check 'c'
+            // itself, then its Prologue and then its Elements.
+            checkOwnConstraints(c, handler);
+            if (c.hasPrologue())
+            {
+                check(c.prologue(), handler);
+            }
+            if (c.elementCount() > 0)
+            {
+                new ElementsChecker().process(c.elementList(), handler);
+            }
+        }
+    }
+
+
+    // Inner classes
+
+    /**
+        The class of object that checks a list of top-level Elements
+        concurrently.
+    */
+    private class ElementsChecker
+        extends ConcurrentConstructListProcessor
+    {
+        // Protected methods
+
+        /**
+            @see ConcurrentConstructListProcessor#processChunk(ConstructList, int, int, ErrorHandler)
+        */
+        protected void processChunk(ConstructList constructs,
+                                int start, int end, ErrorHandler handler)
+        {
+            Assert.require(constructs != null);
+            Assert.require(start >= 0);
+            Assert.require(end > start);
+            Assert.require(end <= constructs.size());
+            Assert.require(handler != null);
+
+            AtriaChecklistCompletionConstructVisitor v = createVisitor();
+            for (int i = start;
+                 i < end && handler.isCancelled() == false; i++)
+            {
+                AtriaConstructManager.Element e =
+                    (AtriaConstructManager.Element) constructs.get(i);
+                e.accept(v, handler);
+            }
+            reportUncheckedConstraints(v, handler);
+        }
+    }
+}
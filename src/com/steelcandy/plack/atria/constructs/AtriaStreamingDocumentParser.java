@@ -0,0 +1,188 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.constructs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.errors.ErrorHandler;
+import com.steelcandy.plack.common.source.*;
+import com.steelcandy.plack.common.tokens.*;
+import com.steelcandy.plack.common.constructs.*;
+
+/**
+    A Document parser that passes a Document's Prologue and each of its
+    top-level Elements to a SubconstructConsumer as soon as it has been
+    parsed, rather than adding the Elements to the Document.
+    <p>
+    This allows a document to be processed one top-level Element at a
+    time, so that the constructs representing the whole document never
+    have to be in memory all at once. Apart from the Document not
+    containing any Elements, the results of parsing - including any errors
+    - are the same as those of a DefaultAtriaDocumentParser. (In
+    particular, the Document's location includes its Elements' locations.)
+    <p>
+    Unlike most parsers an instance of this class can't be shared, since
+    each instance has its own consumer.
+
+    @author James MacKay
+*/
+public class AtriaStreamingDocumentParser
+    extends DefaultAtriaDocumentParser
+{
+    // Private fields
+
+    /** The consumer that we pass subconstructs to as they're parsed. */
+    private SubconstructConsumer _consumer;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaStreamingDocumentParser.
+
+        @param consumer the consumer that the parser is to pass Documents'
+        Prologues and top-level Elements to as they're parsed
+    */
+    public AtriaStreamingDocumentParser(SubconstructConsumer consumer)
+    {
+        Assert.require(consumer != null);
+
+        _consumer = consumer;
+    }
+
+
+    // Public methods
+
+    /**
+        Note: this implementation passes the Document's Prologue and
+        top-level Elements to our consumer as they're parsed, and doesn't
+        add the Elements to the Document.
+
+        @see DefaultAtriaDocumentParser#parse(TrackedTokenList, Tokenizer, SubconstructParsingData, AtriaDocumentParser.ConstructCreator, ErrorHandler)
+    */
+    public AtriaConstructManager.Document
+        parse(TrackedTokenList line, Tokenizer t,
+              SubconstructParsingData data, ConstructCreator creator,
+              ErrorHandler handler)
+    {
+        Assert.require(line != null);
+        Assert.require(isEmptyLine(line) == false);
+        Assert.require(t != null);
+        Assert.require(data != null);
+        Assert.require(creator != null);
+        Assert.require(handler != null);
+
+        AtriaConstructManager.Document result = creator.createConstruct();
+
+        Token indentTok = line.get(0);
+        Assert.check(TOKEN_MANAGER.isIndentToken(indentTok));
+        int indentLevels = TOKEN_MANAGER.firstLineIndentLevels(indentTok);
+        data.setPreviousPart(indentTok);
+
+        // Only the first and last subconstructs' locations affect the
+        // Document's location.
+        SourceLocation prologueLocation = null;
+        SourceLocation firstElementLocation = null;
+        SourceLocation lastElementLocation = null;
+
+        Assert.check(line.size() >= 2);
+            // since otherwise it represents a blank line
+        Assert.check(isStartOfPrologue(line.get(1).id()));
+        AtriaConstructManager.Prologue prologue =
+            PARSER_FACTORY.createPrologueParser().
+                parse(line, t, data, handler);
+        if (prologue != null)
+        {
+            result.setPrologue(prologue);
+            prologueLocation = prologue.location();
+            _consumer.consumePrologue(prologue, handler);
+        }
+
+        while (t.hasTokenAfterNext() &&
+               TOKEN_MANAGER.firstLineIndentLevels(t.peek()) ==
+                    indentLevels &&
+               isStartOfElement(t.peekTokenAfterNext().id()))
+        {
+            Assert.check(TOKEN_MANAGER.isIndentToken(t.peek()));
+            TrackedTokenList nextLine = nextLine(t);
+
+            AtriaConstructManager.Element e = PARSER_FACTORY.
+                createElementParser().parse(nextLine, t, data, handler);
+            if (e != null)
+            {
+                SourceLocation loc = e.location();
+                if (loc != null)
+                {
+                    if (firstElementLocation == null)
+                    {
+                        firstElementLocation = loc;
+                    }
+                    lastElementLocation = loc;
+                }
+                _consumer.consumeElement(e, handler);
+            }
+        }
+
+        SourceLocationList subLocations =
+            SourceLocationList.createArrayList();
+        subLocations.add(prologueLocation);
+        subLocations.add(firstElementLocation);
+        subLocations.add(lastElementLocation);
+        finishConstruct(result, t, data,
+                        locationFactory().create(subLocations), handler);
+
+        return result;
+    }
+
+
+    // Inner interfaces
+
+    /**
+        The interface implemented by classes that an
+        AtriaStreamingDocumentParser passes the subconstructs of the
+        Documents it parses to.
+    */
+    public static interface SubconstructConsumer
+    {
+        /**
+            Consumes the specified Prologue, which has just been parsed.
+            It will be consumed before any of its Document's Elements.
+
+            @param p the Prologue to consume
+            @param handler the error handler being used to handle parsing
+            errors
+        */
+        public void consumePrologue(AtriaConstructManager.Prologue p,
+                                    ErrorHandler handler);
+            // Assert.require(p != null);
+            // Assert.require(handler != null);
+
+        /**
+            Consumes the specified top-level Element, which has just been
+            parsed. The Element won't be added to its Document.
+
+            @param e the Element to consume
+            @param handler the error handler being used to handle parsing
+            errors
+        */
+        public void consumeElement(AtriaConstructManager.Element e,
+                                   ErrorHandler handler);
+            // Assert.require(e != null);
+            // Assert.require(handler != null);
+    }
+}
@@ -74,6 +74,49 @@ public class AtriaValidityConstraintChecklistCompletionChecker
         }
     }
 
+    /**
+        Checks that the specified document itself - but NOT any of its
+        subconstructs - has had all of its validity constraints correctly
+        checked.
+
+        @param c the document construct to check
+        @param handler the error handler to use to report any constraints
+        that have been improperly checked or not checked at all
+    */
+    public void checkOwnConstraints(AtriaConstructManager.Document c,
+                                    ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        if (areChecking())
+        {
+            reportOwnUncheckedConstraints(c, handler);
+        }
+    }
+
+    /**
+        Checks that the specified prologue and all of its subconstructs have
+        had all of their validity constraints correctly checked.
+
+        @param c the prologue construct to check
+        @param handler the error handler to use to report any constraints
+        that have been improperly checked or not checked at all
+    */
+    public void check(AtriaConstructManager.Prologue c,
+                      ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        if (areChecking())
+        {
+            AtriaChecklistCompletionConstructVisitor v = createVisitor();
+            c.accept(v, handler);
+            reportUncheckedConstraints(v, handler);
+        }
+    }
+
     /**
         Checks that the specified element and all of its subconstructs have
         had all of their validity constraints correctly checked.
@@ -72,9 +72,9 @@ public class DefaultAtriaConstructManager
     */
     public boolean isRootElement(AtriaConstructManager.Element c)
     {
-        Assert.require(c.depthAttribute().isSet());
+        Assert.require(c.isDepthAttributeSet());
 
-        return (c.depthAttribute().value() == 0);
+        return (c.depthAttributeValue() == 0);
     }
 
     /**
@@ -31,9 +31,12 @@ import com.steelcandy.plack.common.semantic.*;
 
 import com.steelcandy.common.Resources;
 import com.steelcandy.common.containers.Containers;
+import com.steelcandy.common.io.Io;
 import com.steelcandy.common.xml.XmlUtilities;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.*;
 
 /**
@@ -63,7 +66,9 @@ public abstract class AtriaAbstractInterpreter
         VARIABLE_ALREADY_SET_MSG =
             "VARIABLE_ALREADY_SET_MSG",
         UNSET_VARIABLE_USED_MSG =
-            "UNSET_VARIABLE_USED_MSG";
+            "UNSET_VARIABLE_USED_MSG",
+        CANCELLED_DOCUMENT_MSG =
+            "CANCELLED_DOCUMENT_MSG";
 
 
     /** The single parser factory instance. */
@@ -82,6 +87,53 @@ public abstract class AtriaAbstractInterpreter
     */
     private Map _variablePool;
 
+    /**
+        Indicates whether we are to parse Atria documents in parallel.
+
+        @see AtriaParallelDocumentParser
+    */
+    private boolean _doParseInParallel;
+
+    /**
+        Indicates whether we are to semantically analyze Atria documents'
+        top-level elements in parallel.
+
+        @see AtriaParallelSemanticAnalyzer
+    */
+    private boolean _doAnalyzeInParallel;
+
+    /**
+        The maximum number of errors that can occur in processing a
+        document before its processing is stopped, or ErrorBudget.UNLIMITED.
+    */
+    private int _maxDocumentErrors;
+
+    /**
+        The budget that the errors in all of the documents we process are
+        also to be spent from, or null if there isn't one.
+    */
+    private ErrorBudget _batchErrorBudget;
+
+    /**
+        The cache that validated documents are to be read from and added
+        to, or null if documents aren't to be cached.
+    */
+    private AtriaDocumentCache _documentCache;
+
+    /**
+        A map from the name of each of the initial variables set by
+        addInitialVariables() to its value, sorted by name.
+
+        @see #addInitialVariables
+    */
+    private SortedMap _initialVariables;
+
+    /**
+        The writer that the error handlers created by createErrorHandler()
+        write error information to.
+    */
+    private Writer _errorWriter;
+
 
     // Constructors
 
@@ -91,10 +143,121 @@ public abstract class AtriaAbstractInterpreter
     public AtriaAbstractInterpreter()
     {
         _variablePool = Containers.createHashMap(INITIAL_VARIABLE_POOL_SIZE);
+        _doParseInParallel = false;
+        _doAnalyzeInParallel = false;
+        _maxDocumentErrors = ErrorBudget.UNLIMITED;
+        _batchErrorBudget = null;
+        _documentCache = null;
+        _errorWriter = Io.err;
+        _initialVariables = new TreeMap();
         addInitialVariables();
     }
 
 
+    // Public methods
+
+    /**
+        Sets whether this interpreter is to parse Atria documents in
+        parallel: that is, whether it's to split documents into sections
+        and then tokenize and parse the sections concurrently.
+        <p>
+        By default documents are parsed sequentially.
+
+        @param value true if this interpreter is to parse documents in
+        parallel, and false if it's to parse them sequentially
+    */
+    public void setDoParseInParallel(boolean value)
+    {
+        _doParseInParallel = value;
+    }
+
+    /**
+        Sets whether this interpreter is to semantically analyze (and
+        check the validity constraint checklists of) the top-level elements
+        of Atria documents in parallel.
+        <p>
+        By default documents are analyzed sequentially.
+
+        @param value true if this interpreter is to analyze documents'
+        top-level elements in parallel, and false if it's to analyze them
+        sequentially
+    */
+    public void setDoAnalyzeInParallel(boolean value)
+    {
+        _doAnalyzeInParallel = value;
+    }
+
+    /**
+        Sets the maximum number of (non-fatal and fatal) errors that can
+        occur in processing an Atria document before its processing is
+        stopped and a "too many errors" error is reported.
+        <p>
+        By default there's no maximum.
+
+        @param max the maximum number of errors per document, or
+        ErrorBudget.UNLIMITED if there's to be no maximum
+    */
+    public void setMaximumDocumentErrorCount(int max)
+    {
+        Assert.require(max > 0 || max == ErrorBudget.UNLIMITED);
+
+        _maxDocumentErrors = max;
+    }
+
+    /**
+        Sets the budget that the errors that occur in processing all of
+        the Atria documents that this interpreter processes are to be spent
+        from, in addition to each document's own budget. Once it's
+        exhausted no more documents will be processed.
+        <p>
+        By default there's no such budget.
+
+        @param budget the budget for the whole batch of documents that
+        this interpreter processes, or null if there's to be no such
+        budget
+        @see #setMaximumDocumentErrorCount(int)
+    */
+    public void setBatchErrorBudget(ErrorBudget budget)
+    {
+        // 'budget' may be null
+        _batchErrorBudget = budget;
+    }
+
+    /**
+        Sets the cache that validated Atria documents are to be read from
+        (rather than being tokenized, parsed and semantically analyzed
+        again) if their source files haven't changed, and that they're to
+        be added to otherwise.
+        <p>
+        By default documents aren't cached.
+
+        @param cache the cache to use, or null if documents aren't to be
+        cached
+        @see #toValidatedDocument(File, ErrorHandler)
+    */
+    public void setDocumentCache(AtriaDocumentCache cache)
+    {
+        // 'cache' may be null
+        _documentCache = cache;
+    }
+
+    /**
+        Sets the writer that the error handlers we create are to write
+        error information to.
+        <p>
+        By default error information is written to standard error.
+
+        @param w the writer that error information is to be written to
+        @see #createErrorHandler
+    */
+    public void setErrorWriter(Writer w)
+    {
+        Assert.require(w != null);
+
+        _errorWriter = w;
+    }
+
+
     // Visitor methods
 
     /**
@@ -260,6 +423,7 @@ public abstract class AtriaAbstractInterpreter
         Assert.require(value != null);
 
         _variablePool.put(name, value);
+        _initialVariables.put(name, value);
     }
 
 
@@ -269,14 +433,28 @@ public abstract class AtriaAbstractInterpreter
         Creates and returns an error handler.
         <p>
         This implementation returns an error handler that outputs error
-        information to standard error.
+        information to our error writer (which is standard error by
+        default), and that stops the processing of the
+        document once too many errors have occurred in it or in the batch
+        of documents it's part of (if there are limits on either).
 
         @return an error handler to use to handle any errors that occur in
         interpreting a new Atria document
+        @see #setMaximumDocumentErrorCount(int)
+        @see #setBatchErrorBudget(ErrorBudget)
+        @see #setErrorWriter(Writer)
     */
     protected ErrorHandler createErrorHandler()
     {
-        ErrorHandler result = WriterErrorHandler.createForStandardError();
+        ErrorHandler result = new WriterErrorHandler(_errorWriter);
+
+        if (_maxDocumentErrors != ErrorBudget.UNLIMITED ||
+            _batchErrorBudget != null)
+        {
+            ErrorBudget budget = new ErrorBudget(_maxDocumentErrors,
+                            ErrorBudget.UNLIMITED, _batchErrorBudget);
+            result = new ErrorBudgetErrorHandler(result, budget);
+        }
 
         Assert.ensure(result != null);
         return result;
@@ -285,12 +463,17 @@ public abstract class AtriaAbstractInterpreter
     /**
         Converts the contents of the specified file into an Atria document
         by tokenizing it, parsing it and then semantically analyzing it.
+        <p>
+        If we have a document cache then the document will be read from
+        it instead if it's there, and otherwise will be added to it if it
+        was validated without any errors or warnings being reported.
 
         @param f the pathname of the Atria source file to be processed
         @param handler the error handler to use to handle any errors that
         occur in processing 'f'
         @return the Atria document that the contents of 'f' represent, or
         null if the contents of 'f' do not represent an Atria document
+        @see #setDocumentCache(AtriaDocumentCache)
     */
     protected AtriaConstructManager.Document
         toValidatedDocument(File f, ErrorHandler handler)
@@ -298,21 +481,81 @@ public abstract class AtriaAbstractInterpreter
         Assert.require(f != null);
         Assert.require(handler != null);
 
+        AtriaConstructManager.Document result = null;
+
+        SourceCode code = new SourceCodeFile(f);
+        String key = null;
+        if (_documentCache != null && handler.isCancelled() == false)
+        {
+            try
+            {
+                key = _documentCache.key(documentCacheConfiguration(), f);
+                result = _documentCache.load(key, code);
+            }
+            catch (IOException ex)
+            {
+                // Leave it to the tokenizer to report that 'f' couldn't
+                // be read.
+                key = null;
+            }
+        }
+
+        if (result == null)
+        {
+            int oldErrorCount = handler.errorCount();
+            result = toValidatedDocument(code, handler);
+            if (key != null && result != null &&
+                handler.errorCount() == oldErrorCount)
+            {
+                tryToCacheDocument(key, result);
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Converts the specified source code into an Atria document by
+        tokenizing it, parsing it and then semantically analyzing it.
+
+        @param code the Atria source code to be processed
+        @param handler the error handler to use to handle any errors that
+        occur in processing 'code'
+        @return the Atria document that 'code' represents, or null if
+        'code' doesn't represent an Atria document
+    */
+    protected AtriaConstructManager.Document
+        toValidatedDocument(SourceCode code, ErrorHandler handler)
+    {
+        Assert.require(code != null);
+        Assert.require(handler != null);
+
         AtriaConstructManager.Document result;
         SourceCodeTokenizer t = null;
         try
         {
-            t = createTokenizer(f, handler);
-            AtriaDocumentParser p = createDocumentParser();
+            checkNotCancelled(code, handler);
+
+            if (_doParseInParallel)
+            {
+                result = parseInParallel(code, handler);
+            }
+            else
+            {
+                t = createTokenizer(code, handler);
+                AtriaDocumentParser p = createDocumentParser();
+
+                result = p.parseTopLevel(t, handler);
+            }
 
-            result = p.parseTopLevel(t, handler);
             if (result != null)
             {
                 AtriaSemanticAnalyzer a = createSemanticAnalyzer();
                 a.analyze(result, handler);
 
                 AtriaValidityConstraintChecklistCompletionChecker checker =
-                    new AtriaValidityConstraintChecklistCompletionChecker();
+                    createChecklistCompletionChecker();
                 checker.check(result, handler);
             }
         }
@@ -333,13 +576,140 @@ public abstract class AtriaAbstractInterpreter
         return result;
     }
 
+    /**
+        Returns a string representing everything about this interpreter
+        that can affect the result of validating a document, as is
+        included in the keys of the documents in our document cache.
+        <p>
+        This implementation's result includes the classes of this
+        interpreter and of the semantic analyzer and checklist completion
+        checker that it creates, as well as the names and values of all
+        of the initial variables. Subclasses that can validate documents
+        differently in other ways should override this method and include
+        those ways in the result too.
+
+        @return a string representing this interpreter's configuration
+        @see #setDocumentCache(AtriaDocumentCache)
+        @see #addInitialVariables
+    */
+    protected String documentCacheConfiguration()
+    {
+        StringBuffer result = new StringBuffer();
+
+        result.append(getClass().getName()).append(" ").
+            append(createSemanticAnalyzer().getClass().getName()).
+            append(" ").
+            append(createChecklistCompletionChecker().getClass().getName());
+
+        Iterator iter = _initialVariables.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            Map.Entry e = (Map.Entry) iter.next();
+            result.append(" ").append(e.getKey()).append("=").
+                append(e.getValue());
+        }
+
+        Assert.ensure(result != null);
+        return result.toString();
+    }
+
+    /**
+        Tries to add the specified validated document to our document
+        cache under the specified key. Failing to add it isn't considered
+        to be an error since it only means that the document will have to
+        be validated again the next time it's processed.
+
+        @param key the key under which to cache the document
+        @param doc the document to try to add to our document cache
+        @see AtriaDocumentCache#key(String, File)
+    */
+    protected void
+        tryToCacheDocument(String key, AtriaConstructManager.Document doc)
+    {
+        Assert.require(key != null);
+        Assert.require(doc != null);
+        Assert.require(_documentCache != null);
+
+        try
+        {
+            _documentCache.store(key, doc);
+        }
+        catch (IOException ex)
+        {
+            // Ignore it: see above.
+        }
+    }
+
+    /**
+        Tokenizes and parses the specified source code in parallel.
+
+        @param code the source code to parse
+        @param handler the error handler to use to handle any errors that
+        occur in tokenizing and parsing 'code'
+        @return the Atria document that 'code' represents, or null if it
+        doesn't represent an Atria document
+        @see #setDoParseInParallel(boolean)
+    */
+    protected AtriaConstructManager.Document
+        parseInParallel(SourceCode code, ErrorHandler handler)
+    {
+        Assert.require(code != null);
+        Assert.require(handler != null);
+
+        AtriaParallelDocumentParser p = new AtriaParallelDocumentParser();
+        AtriaParallelDocumentParser.TokenizerCreator creator =
+            new AtriaParallelDocumentParser.TokenizerCreator()
+        {
+            public SourceCodeTokenizer
+                create(SourceCode sourceCode, ErrorHandler h)
+            {
+                return createTokenizer(sourceCode, h);
+            }
+        };
+
+        return p.parseTopLevel(code, creator, handler);
+            // may be null
+    }
+
     /**
         @return the semantic analyzer to use to analyze a new Atria
         document
     */
     protected AtriaSemanticAnalyzer createSemanticAnalyzer()
     {
-        AtriaSemanticAnalyzer result = new AtriaSemanticAnalyzer();
+        AtriaSemanticAnalyzer result;
+
+        if (_doAnalyzeInParallel)
+        {
+            result = new AtriaParallelSemanticAnalyzer();
+        }
+        else
+        {
+            result = new AtriaSemanticAnalyzer();
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @return the checker to use to check that all of the validity
+        constraints on a new Atria document have been checked
+    */
+    protected AtriaValidityConstraintChecklistCompletionChecker
+        createChecklistCompletionChecker()
+    {
+        AtriaValidityConstraintChecklistCompletionChecker result;
+
+        if (_doAnalyzeInParallel)
+        {
+            result = new
+                AtriaParallelValidityConstraintChecklistCompletionChecker();
+        }
+        else
+        {
+            result = new AtriaValidityConstraintChecklistCompletionChecker();
+        }
 
         Assert.ensure(result != null);
         return result;
@@ -369,15 +739,63 @@ public abstract class AtriaAbstractInterpreter
         Assert.require(f != null);
         Assert.require(handler != null);
 
+        return createTokenizer(new SourceCodeFile(f), handler);
+    }
+
+    /**
+        Note: this method may be called concurrently from multiple threads
+        if this interpreter parses documents in parallel.
+
+        @param code a piece of Atria source code
+        @param handler the error handler that the tokenizer is to use to
+        handle any errors that occur in tokenizing 'code'
+        @return the tokenizer that this interpreter will use to tokenize
+        'code'
+        @see #setDoParseInParallel(boolean)
+    */
+    protected SourceCodeTokenizer
+        createTokenizer(SourceCode code, ErrorHandler handler)
+    {
+        Assert.require(code != null);
+        Assert.require(handler != null);
+
         AtriaDefaultTokenizer result = new AtriaDefaultTokenizer(handler);
 
-        result.initialize(new SourceCodeFile(f));
+        result.initialize(code);
 
         Assert.ensure(result != null);
         return result;
     }
 
 
+    /**
+        Stops the processing of the specified source code - by handling a
+        fatal error using the specified error handler and then throwing a
+        FatalErrorException - if the handler has already been cancelled:
+        for example, because the error budget for the batch of documents
+        that the source code is part of has been exhausted.
+
+        @param code the source code that is about to be processed
+        @param handler the error handler that is to be used to handle any
+        errors that occur in processing 'code'
+        @exception FatalErrorException thrown iff 'handler' has been
+        cancelled
+        @see ErrorHandler#isCancelled
+    */
+    protected void checkNotCancelled(SourceCode code, ErrorHandler handler)
+        throws FatalErrorException
+    {
+        Assert.require(code != null);
+        Assert.require(handler != null);
+
+        if (handler.isCancelled())
+        {
+            String msg = _resources.getMessage(CANCELLED_DOCUMENT_MSG);
+            handler.handle(new TooManyErrorsError(msg, code));
+            throw FatalErrorException.instance();
+        }
+    }
+
     /**
         Note: this implementation doesn't consider warnings or lesser
         "errors" to be errors.
@@ -27,16 +27,23 @@ import com.steelcandy.plack.common.constructs.*;
 import com.steelcandy.plack.common.semantic.*;
 
 import com.steelcandy.common.Resources;
-import com.steelcandy.common.io.Io;
+import com.steelcandy.common.io.*;
 import com.steelcandy.common.text.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
     An abstract base class that builds/generates a file - usually a source
     code file in an executable language - from specially formatted Atria
     documents that represent a message catalog.
+    <p>
+    The output file built from a catalog is only updated once the whole
+    file has been successfully built, and then only if its contents have
+    changed. Catalogs can be built concurrently - each by its own builder
+    - and a manifest can be used to avoid rebuilding catalogs that haven't
+    changed since they were last built.
 
     @author  James MacKay
 */
@@ -52,7 +59,27 @@ public abstract class AtriaAbstractMessageCatalogBuilder
     /** Resource identifiers. */
     private static final String
         MESSAGE_CATALOG_BUILDER_USAGE_MSG =
-            "MESSAGE_CATALOG_BUILDER_USAGE_MSG";
+            "MESSAGE_CATALOG_BUILDER_USAGE_MSG",
+        OUTPUT_FILE_UPDATE_FAILED_MSG =
+            "OUTPUT_FILE_UPDATE_FAILED_MSG",
+        MANIFEST_SAVE_FAILED_MSG =
+            "MANIFEST_SAVE_FAILED_MSG";
+
+
+    /** The prefix that all command line options start with. */
+    private static final String OPTION_PREFIX = "-";
+
+    /**
+        The command line option that specifies the number of catalogs to
+        build concurrently.
+    */
+    private static final String THREADS_OPTION = "-j";
+
+    /**
+        The command line option that specifies the pathname of the manifest
+        file to use to avoid rebuilding unchanged catalogs.
+    */
+    private static final String MANIFEST_OPTION = "-m";
 
 
     /** The message catalog namespace URI. */
@@ -107,6 +134,13 @@ public abstract class AtriaAbstractMessageCatalogBuilder
     */
     private ErrorHandler _handler;
 
+    /**
+        The writer that writes the output file that we're currently
+        generating, or null if we're not currently generating one or
+        haven't started writing it yet.
+    */
+    private FileUpdatingIndentWriter _outputWriter;
+
 
     // Constructors
 
@@ -124,6 +158,7 @@ public abstract class AtriaAbstractMessageCatalogBuilder
         _inputPathname = null;
         _outputPathname = null;
         _handler = null;
+        _outputWriter = null;
     }
 
 
@@ -146,14 +181,65 @@ public abstract class AtriaAbstractMessageCatalogBuilder
     {
         int result = 0;
 
-        int numCatalogs = args.length;
-        if (args.length > 0)
+        int numArgs = args.length;
+        int numThreads = 1;
+        File manifestFile = null;
+        boolean isBadUsage = false;
+        int start = 0;
+        while (isBadUsage == false && start < numArgs &&
+               args[start].startsWith(OPTION_PREFIX))
         {
+            String opt = args[start];
+            if (start + 1 >= numArgs)
+            {
+                isBadUsage = true;
+            }
+            else if (opt.equals(THREADS_OPTION))
+            {
+                numThreads = parseThreadCount(args[start + 1]);
+                isBadUsage = (numThreads <= 0);
+            }
+            else if (opt.equals(MANIFEST_OPTION))
+            {
+                manifestFile = new File(args[start + 1]);
+            }
+            else
+            {
+                isBadUsage = true;
+            }
+            start += 2;
+        }
+
+        int numCatalogs = numArgs - start;
+        if (isBadUsage == false && numCatalogs > 0)
+        {
+            File[] catalogs = new File[numCatalogs];
             for (int i = 0; i < numCatalogs; i++)
             {
-                if (build(new File(args[i])) == false)
+                catalogs[i] = new File(args[start + i]);
+            }
+
+            MessageCatalogBuildManifest manifest = null;
+            if (manifestFile != null)
+            {
+                manifest = MessageCatalogBuildManifest.load(manifestFile);
+            }
+
+            result = buildAll(catalogs, numThreads, manifest);
+
+            if (manifest != null)
+            {
+                try
                 {
-                    // Building the message catalog failed.
+                    manifest.save();
+                }
+                catch (IOException ex)
+                {
+                    String msg = _resources.
+                        getMessage(MANIFEST_SAVE_FAILED_MSG,
+                                   manifestFile.getPath(),
+                                   ex.getLocalizedMessage());
+                    System.err.println(msg);
                     result += 1;
                 }
             }
@@ -164,6 +250,153 @@ public abstract class AtriaAbstractMessageCatalogBuilder
                 getMessage(MESSAGE_CATALOG_BUILDER_USAGE_MSG,
                            getClass().getName());
             System.err.println(msg);
+            if (isBadUsage)
+            {
+                result = 1;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        Generates the output files from all of the specified message
+        catalogs, building up to the specified number of them concurrently.
+        <p>
+        When more than one thread is used each catalog is built by a new
+        builder obtained from createBuilder(), and the errors that occur in
+        building it are reported once it has been built, in the order in
+        which the catalogs are specified.
+
+        @param catalogs the pathnames of the files containing the Atria
+        source code that describe the message catalogs
+        @param numThreads the maximum number of catalogs to build
+        concurrently
+        @param manifest the manifest to use to avoid building catalogs that
+        haven't changed since they were last built, or null if all of the
+        catalogs are to be built
+        @return the number of catalogs whose output files couldn't be built
+        @see #createBuilder
+    */
+    public int buildAll(File[] catalogs, int numThreads,
+                        MessageCatalogBuildManifest manifest)
+    {
+        Assert.require(catalogs != null);
+        Assert.require(numThreads > 0);
+        // 'manifest' may be null
+
+        int result = 0;
+
+        int numCatalogs = catalogs.length;
+        if (numThreads == 1 || numCatalogs <= 1)
+        {
+            for (int i = 0; i < numCatalogs; i++)
+            {
+                if (buildIfChanged(catalogs[i], createErrorHandler(),
+                                   manifest) == false)
+                {
+                    // Building the message catalog failed.
+                    result += 1;
+                }
+            }
+        }
+        else
+        {
+            ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+            try
+            {
+                Future[] futures = new Future[numCatalogs];
+                RecordingErrorHandler[] recorders =
+                    new RecordingErrorHandler[numCatalogs];
+                for (int i = 0; i < numCatalogs; i++)
+                {
+                    recorders[i] = new RecordingErrorHandler();
+                    futures[i] = pool.submit(new CatalogBuildTask(
+                        createBuilder(), catalogs[i], recorders[i],
+                        manifest));
+                }
+
+                for (int i = 0; i < numCatalogs; i++)
+                {
+                    if (waitForBuild(futures[i]) == false)
+                    {
+                        result += 1;
+                    }
+                    recorders[i].transferErrorsTo(createErrorHandler());
+                }
+            }
+            finally
+            {
+                pool.shutdownNow();
+            }
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        Generates the output file from the message catalog defined by the
+        Atria source code in the specified file iff the catalog has changed
+        since its output file was last generated.
+
+        @param f the file containing the Atria source code that describes the
+        message catalog
+        @param handler the error handler to use to handle any errors that
+        occur in building the output file
+        @param manifest the manifest that records the catalogs that were
+        previously built, or null if the output file is to be built
+        regardless
+        @return true iff the output file is up to date or was successfully
+        built/generated
+    */
+    public boolean buildIfChanged(File f, ErrorHandler handler,
+                                  MessageCatalogBuildManifest manifest)
+    {
+        Assert.require(f != null);
+        Assert.require(Io.hasExtension(f));
+        Assert.require(handler != null);
+        // 'manifest' may be null
+
+        boolean result;
+
+        if (manifest == null)
+        {
+            result = build(f, handler);
+        }
+        else
+        {
+            String hash = null;
+            try
+            {
+                hash = MessageCatalogBuildManifest.sourceHash(f);
+            }
+            catch (IOException ex)
+            {
+                // The catalog will be built, and so the failure to read
+                // it will be reported then.
+                hash = null;
+            }
+
+            String version = builderVersion();
+            if (hash != null &&
+                manifest.isUpToDate(f, hash, version,
+                                    createOutputPathname(f)))
+            {
+                result = true;
+            }
+            else
+            {
+                result = build(f, handler);
+                if (result && hash != null)
+                {
+                    manifest.recordBuilt(f, hash, version);
+                }
+                else
+                {
+                    manifest.forget(f);
+                }
+            }
         }
 
         return result;
@@ -182,6 +415,28 @@ public abstract class AtriaAbstractMessageCatalogBuilder
         Assert.require(f != null);
         Assert.require(Io.hasExtension(f));
 
+        return build(f, createErrorHandler());
+    }
+
+    /**
+        Generates the output file from the message catalog defined by the
+        Atria source code in the specified file.
+        <p>
+        The output file is only updated if it's built successfully, in which
+        case it's updated atomically: otherwise it's left unchanged.
+
+        @param f the file containing the Atria source code that describes the
+        message catalog
+        @param handler the error handler to use to handle any errors that
+        occur in building the output file
+        @return true iff the output file was successfully built/generated
+    */
+    public boolean build(File f, ErrorHandler handler)
+    {
+        Assert.require(f != null);
+        Assert.require(Io.hasExtension(f));
+        Assert.require(handler != null);
+
         boolean result = false;
 
         try
@@ -190,7 +445,7 @@ public abstract class AtriaAbstractMessageCatalogBuilder
             _data = new AtriaMessageCatalogData();
             _inputPathname = f;
             _outputPathname = createOutputPathname(f);
-            _handler = createErrorHandler();
+            _handler = handler;
             _document = toValidatedDocument(_inputPathname, _handler);
             if (_document != null && haveBeenErrors(_handler) == false)
             {
@@ -198,7 +453,8 @@ public abstract class AtriaAbstractMessageCatalogBuilder
                 _document.accept(this, _handler);
                 if (haveBeenErrors(_handler) == false)
                 {
-                    result = true;
+                    updateOutputFile();
+                    result = (haveBeenErrors(_handler) == false);
                 }
             }
         }
@@ -208,6 +464,20 @@ public abstract class AtriaAbstractMessageCatalogBuilder
         }
         finally
         {
+            if (_outputWriter != null)
+            {
+                // Discard the output since it wasn't successfully built.
+                try
+                {
+                    _outputWriter.abandon();
+                }
+                catch (IOException ex)
+                {
+                    // empty - there's nothing more that we can do
+                }
+                _outputWriter = null;
+            }
+
             _document = null;
             _handler = null;
             _outputPathname = null;
@@ -269,7 +539,7 @@ public abstract class AtriaAbstractMessageCatalogBuilder
         Assert.require(c != null);
         Assert.require(handler != null);
 
-        int depth = c.depthAttribute().value();
+        int depth = c.depthAttributeValue();
         Assert.check(depth >= 0);
 
         if (depth == 0)  // root element
@@ -552,6 +822,144 @@ public abstract class AtriaAbstractMessageCatalogBuilder
         return _data.isQuotedArgumentElementName(name);
     }
 
+    /**
+        @see AtriaAbstractWritingInterpreter#openBaseWriter(File)
+    */
+    protected IndentWriter openBaseWriter(File f)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        FileUpdatingIndentWriter result =
+            FileUpdatingIndentWriter.create(f, true);
+        _outputWriter = result;
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Updates the output file that we're currently generating with
+        everything that has been written to it, and then closes it.
+        <p>
+        Note: this method should only be called once the whole output file
+        has been successfully written.
+    */
+    protected void updateOutputFile()
+    {
+        Assert.require(_outputWriter != null);
+
+        FileUpdatingIndentWriter w = _outputWriter;
+        _outputWriter = null;
+        try
+        {
+            w.close();
+        }
+        catch (IOException ex)
+        {
+            String msg = _resources.
+                getMessage(OUTPUT_FILE_UPDATE_FAILED_MSG,
+                           _outputPathname.getPath(),
+                           ex.getLocalizedMessage());
+            handleRuntimeError(FATAL_ERROR_LEVEL, msg, _document, _handler);
+        }
+    }
+
+    /**
+        Returns the version of this builder. A catalog whose output file
+        was built by a builder with a different version is always rebuilt,
+        so subclasses should override this method to return a different
+        version whenever they change what they generate.
+        <p>
+        This implementation returns the fully-qualified name of this
+        builder's class.
+
+        @return this builder's version
+    */
+    protected String builderVersion()
+    {
+        String result = getClass().getName();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Parses the specified argument to the option that specifies the
+        number of catalogs to build concurrently.
+
+        @param arg the option argument to parse
+        @return the number of catalogs that 'arg' represents, or -1 if 'arg'
+        doesn't represent a positive integer
+    */
+    protected int parseThreadCount(String arg)
+    {
+        Assert.require(arg != null);
+
+        int result;
+
+        try
+        {
+            result = Integer.parseInt(arg);
+        }
+        catch (NumberFormatException ex)
+        {
+            result = -1;
+        }
+        if (result <= 0)
+        {
+            result = -1;
+        }
+
+        Assert.ensure(result > 0 || result == -1);
+        return result;
+    }
+
+    /**
+        Waits for the build represented by the specified Future to finish.
+
+        @param f the Future representing the building of a catalog
+        @return true iff the catalog's output file is up to date or was
+        successfully built
+    */
+    protected boolean waitForBuild(Future f)
+    {
+        Assert.require(f != null);
+
+        boolean result = false;
+
+        try
+        {
+            result = ((Boolean) f.get()).booleanValue();
+        }
+        catch (InterruptedException ex)
+        {
+            // Preserve the interrupt, and treat the build as having failed.
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            else
+            {
+                IllegalStateException newEx =
+                    new IllegalStateException(cause.getLocalizedMessage());
+                newEx.initCause(cause);
+                throw newEx;
+            }
+        }
+
+        return result;
+    }
+
     /**
         @param f the pathname of an Atria source file that describes a
         message catalog
@@ -631,6 +1039,13 @@ public abstract class AtriaAbstractMessageCatalogBuilder
 
     // Abstract methods
 
+    /**
+        @return a new builder of the same kind as this one, to use to build
+        a catalog concurrently with other catalogs
+    */
+    protected abstract AtriaAbstractMessageCatalogBuilder createBuilder();
+        // Assert.ensure(result != null);
+
     /**
         Writes out the contents of the output file that we're currently
         building/generating.
@@ -753,4 +1168,70 @@ public abstract class AtriaAbstractMessageCatalogBuilder
     */
     protected abstract String outputFileExtension();
         // Assert,ensure(result != null);
+
+
+    // Inner classes
+
+    /**
+        The class of task that builds one message catalog using its own
+        builder.
+    */
+    private static class CatalogBuildTask
+        implements Callable
+    {
+        // Private fields
+
+        /** The builder to use to build the catalog. */
+        private AtriaAbstractMessageCatalogBuilder _builder;
+
+        /** The pathname of the catalog's source file. */
+        private File _catalog;
+
+        /** The error handler to use in building the catalog. */
+        private ErrorHandler _handler;
+
+        /** The build manifest, or null if there isn't one. */
+        private MessageCatalogBuildManifest _manifest;
+
+
+        // Constructors
+
+        /**
+            Constructs a CatalogBuildTask.
+
+            @param builder the builder to use to build the catalog
+            @param catalog the pathname of the catalog's source file
+            @param handler the error handler to use to handle any errors
+            that occur in building the catalog
+            @param manifest the build manifest, or null if there isn't one
+        */
+        public CatalogBuildTask(AtriaAbstractMessageCatalogBuilder builder,
+                                File catalog, ErrorHandler handler,
+                                MessageCatalogBuildManifest manifest)
+        {
+            Assert.require(builder != null);
+            Assert.require(catalog != null);
+            Assert.require(handler != null);
+            // 'manifest' may be null
+
+            _builder = builder;
+            _catalog = catalog;
+            _handler = handler;
+            _manifest = manifest;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Callable#call
+        */
+        public Object call()
+        {
+            boolean isBuilt =
+                _builder.buildIfChanged(_catalog, _handler, _manifest);
+
+            return Boolean.valueOf(isBuilt);
+        }
+    }
 }
@@ -253,10 +253,10 @@ public abstract class AtriaAbstractWritingInterpreter
     {
         Assert.require(f != null);
 
-        FileWriter fw = null;
+        IndentWriter result = null;
         try
         {
-            fw = new FileWriter(f);
+            result = openBaseWriter(f);
         }
         catch (IOException ex)
         {
@@ -273,7 +273,29 @@ public abstract class AtriaAbstractWritingInterpreter
                 // since this is a fatal error
         }
 
-        IndentWriter result = IndentWriter.createClosing(fw);
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Opens and returns a writer that writes to the file with the
+        specified pathname, for use as this interpreter's base writer.
+        <p>
+        This implementation returns a writer that overwrites 'f' as it's
+        written to: subclasses can override it to return another kind of
+        writer (such as a FileUpdatingIndentWriter).
+
+        @param f the pathname of the file that the writer is to write to
+        @return a writer that writes to 'f'
+        @exception IOException thrown if the writer couldn't be opened
+        @see #createBaseWriter(File)
+    */
+    protected IndentWriter openBaseWriter(File f)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        IndentWriter result = IndentWriter.createClosing(new FileWriter(f));
 
         Assert.ensure(result != null);
         return result;
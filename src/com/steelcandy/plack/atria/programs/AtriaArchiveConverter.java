@@ -0,0 +1,848 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.atria.base.AtriaInfo;
+
+import com.steelcandy.plack.common.errors.*;
+import com.steelcandy.plack.common.source.SourceCodeString;
+
+import com.steelcandy.common.io.IndentWriter;
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.xml.XmlException;
+import com.steelcandy.common.xml.XmlUtilities;
+
+import com.steelcandy.common.Resources;
+
+import org.jdom.Document;
+import org.jdom.input.SAXBuilder;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.*;
+
+/**
+    An abstract base class for converters that convert all of the
+    documents in a zip or jar archive, writing the results to another
+    archive.
+    <p>
+    The entries whose names end with the input extension are read
+    directly from the archive and converted concurrently, and each is
+    written to the result archive under the same name but with the
+    output extension. All of the other entries are copied unchanged. The
+    result archive's entries are always written in the same order as
+    those of the input archive (and with the same modification times),
+    so converting the same archive twice results in identical archives.
+    Nothing is extracted to the file system, and the result archive is
+    only created if all of the entries are converted successfully.
+    <p>
+    The errors that occur in converting each entry are reported to
+    standard error (or our error writer, if one has been set), in the
+    same order as the entries themselves.
+
+    @author  James MacKay
+    @see #createAtriaToXml
+    @see #createXmlToAtria
+*/
+public abstract class AtriaArchiveConverter
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        ARCHIVE_ENTRY_CONVERSION_FAILED_MSG =
+            "ARCHIVE_ENTRY_CONVERSION_FAILED_MSG",
+        ARCHIVE_CONVERSION_FAILED_MSG =
+            "ARCHIVE_CONVERSION_FAILED_MSG",
+        ARCHIVE_IO_FAILED_MSG =
+            "ARCHIVE_IO_FAILED_MSG";
+
+
+    /** The extension of XML document entries. */
+    private static final String XML_EXTENSION = ".xml";
+
+    /**
+        The character encoding of the Atria documents in archives, and of
+        the XML documents that they're converted to.
+    */
+    protected static final String ENCODING = "UTF-8";
+
+    /**
+        The string that separates an archive's pathname from the name of
+        one of its entries in the entry's full name.
+    */
+    private static final String ENTRY_NAME_SEPARATOR = "!/";
+
+    /**
+        The maximum number of entries per thread whose conversions can be
+        in progress or waiting to be written at once.
+    */
+    private static final int ENTRIES_PER_THREAD = 4;
+
+    /** The size of the buffer used to copy unconverted entries. */
+    private static final int COPY_BUFFER_SIZE = 8192;
+
+
+    // Private fields
+
+    /** The extension of the entries that we convert. */
+    private String _inputExtension;
+
+    /** The extension of the entries that we convert them to. */
+    private String _outputExtension;
+
+    /** The maximum number of entries to convert concurrently. */
+    private int _threadCount;
+
+    /** The writer that errors in converting entries are reported to. */
+    private PrintWriter _errorWriter;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaArchiveConverter that converts entries using
+        as many threads as there are processors.
+
+        @param inputExtension the extension of the entries that the
+        converter converts
+        @param outputExtension the extension of the entries that the
+        converter converts them to
+    */
+    protected AtriaArchiveConverter(String inputExtension,
+                                    String outputExtension)
+    {
+        Assert.require(inputExtension != null);
+        Assert.require(outputExtension != null);
+
+        _inputExtension = inputExtension;
+        _outputExtension = outputExtension;
+        _threadCount = Runtime.getRuntime().availableProcessors();
+        _errorWriter = Io.err;
+    }
+
+
+    // Public static methods
+
+    /**
+        @return an archive converter that converts the Atria documents in
+        an archive to XML
+    */
+    public static AtriaArchiveConverter createAtriaToXml()
+    {
+        return new AtriaToXmlArchiveConverter();
+    }
+
+    /**
+        @return an archive converter that converts the XML documents in an
+        archive to Atria
+    */
+    public static AtriaArchiveConverter createXmlToAtria()
+    {
+        return new XmlToAtriaArchiveConverter();
+    }
+
+
+    // Public methods
+
+    /**
+        Sets the maximum number of entries that we convert concurrently.
+
+        @param numThreads the maximum number of entries to convert
+        concurrently
+    */
+    public void setThreadCount(int numThreads)
+    {
+        Assert.require(numThreads > 0);
+
+        _threadCount = numThreads;
+    }
+
+    /**
+        Sets the writer that the errors that occur in converting entries
+        are to be reported to.
+        <p>
+        By default they're reported to standard error.
+
+        @param w the writer to report entry conversion errors to
+    */
+    public void setErrorWriter(PrintWriter w)
+    {
+        Assert.require(w != null);
+
+        _errorWriter = w;
+    }
+
+    /**
+        Converts all of the documents in the specified archive, writing the
+        results - along with copies of the archive's other entries - to the
+        other specified archive.
+
+        @param in the pathname of the zip or jar archive to convert
+        @param out the pathname of the archive to write the results to
+        @return the number of entries that were converted
+        @exception AtriaConversionException thrown if the archive couldn't
+        be read or written, or if any of its entries couldn't be converted
+    */
+    public int convert(File in, File out)
+        throws AtriaConversionException
+    {
+        Assert.require(in != null);
+        Assert.require(out != null);
+
+        int result = 0;
+
+        int numFailed = 0;
+        ZipFile archive = null;
+        File tmp = null;
+        ExecutorService pool = Executors.newFixedThreadPool(_threadCount);
+        try
+        {
+            archive = new ZipFile(in);
+            File dir = out.getAbsoluteFile().getParentFile();
+            tmp = File.createTempFile("atz", ".tmp", dir);
+            ZipOutputStream zip = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+            try
+            {
+                ErrorHandler handler = new WriterErrorHandler(_errorWriter);
+                LinkedList pending = new LinkedList();
+                Enumeration entries = archive.entries();
+                while (entries.hasMoreElements() || pending.isEmpty() == false)
+                {
+                    // Start converting entries until there are enough in
+                    // progress, then write out the first one.
+                    while (entries.hasMoreElements() &&
+                           pending.size() < ENTRIES_PER_THREAD * _threadCount)
+                    {
+                        ZipEntry entry = (ZipEntry) entries.nextElement();
+                        Future f = null;
+                        if (isConverted(entry))
+                        {
+                            f = pool.submit(new EntryConversionTask(this,
+                                            in, archive, entry));
+                        }
+                        pending.add(new PendingEntry(entry, f));
+                    }
+
+                    PendingEntry p = (PendingEntry) pending.removeFirst();
+                    if (p.conversion() == null)
+                    {
+                        copyEntry(archive, p.entry(), zip);
+                    }
+                    else if (writeConvertedEntry(p, handler, zip))
+                    {
+                        result += 1;
+                    }
+                    else
+                    {
+                        numFailed += 1;
+                    }
+                }
+            }
+            finally
+            {
+                zip.close();
+            }
+
+            if (numFailed == 0)
+            {
+                Files.move(tmp.toPath(), out.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE,
+                           StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        catch (IOException ex)
+        {
+            String msg = _resources.getMessage(ARCHIVE_IO_FAILED_MSG,
+                            in.getPath(), ex.getLocalizedMessage());
+            throw new AtriaConversionException(msg, ex);
+        }
+        finally
+        {
+            pool.shutdownNow();
+            tryToClose(archive);
+            if (tmp != null)
+            {
+                Io.delete(tmp);  // does nothing if it was moved
+            }
+        }
+
+        if (numFailed > 0)
+        {
+            String msg = _resources.
+                getMessage(ARCHIVE_CONVERSION_FAILED_MSG,
+                           String.valueOf(numFailed), in.getPath());
+            throw new AtriaConversionException(msg);
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+
+    // Protected methods
+
+    /**
+        Converts the specified archive entry's document.
+        <p>
+        Note: this method will be called concurrently by several threads.
+
+        @param in the stream to read the document to convert from
+        @param fullName the entry's full name, which identifies both the
+        archive and the entry
+        @param name the entry's name
+        @param handler the error handler to use to handle any errors that
+        occur in converting the document
+        @return the bytes of the document that the entry's document was
+        converted to
+        @exception AtriaConversionException thrown if the entry's document
+        couldn't be converted
+        @exception IOException thrown if the entry couldn't be read
+    */
+    protected abstract byte[] convertEntry(InputStream in, String fullName,
+                                           String name,
+                                           ErrorHandler handler)
+        throws AtriaConversionException, IOException;
+
+    /**
+        @param name the name of an entry that we convert
+        @return the name of the entry that it's converted to
+    */
+    protected String outputEntryName(String name)
+    {
+        Assert.require(name != null);
+        Assert.require(name.endsWith(_inputExtension));
+
+        String result = name.substring(0,
+            name.length() - _inputExtension.length()) + _outputExtension;
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param entry an entry in an archive
+        @return true iff we convert 'entry', rather than just copying it
+    */
+    protected boolean isConverted(ZipEntry entry)
+    {
+        Assert.require(entry != null);
+
+        return (entry.isDirectory() == false &&
+                entry.getName().endsWith(_inputExtension));
+    }
+
+
+    // Private methods
+
+    /**
+        Waits for the specified pending entry's conversion to finish, reports
+        any errors that occurred in converting it and - if it was converted
+        successfully - writes the result to the specified archive.
+
+        @param p the pending entry whose conversion is to be written
+        @param handler the error handler to report the errors to
+        @param zip the archive to write the result to
+        @return true iff the entry was converted successfully
+        @exception IOException thrown if the result couldn't be written
+    */
+    private boolean writeConvertedEntry(PendingEntry p, ErrorHandler handler,
+                                        ZipOutputStream zip)
+        throws IOException
+    {
+        Assert.require(p != null);
+        Assert.require(p.conversion() != null);
+        Assert.require(handler != null);
+        Assert.require(zip != null);
+
+        ConversionResult r = waitForConversion(p.conversion());
+        r.errors().transferErrorsTo(handler);
+
+        boolean result = (r.contents() != null);
+        if (result)
+        {
+            ZipEntry entry = p.entry();
+            ZipEntry converted =
+                new ZipEntry(outputEntryName(entry.getName()));
+            converted.setTime(entry.getTime());
+            zip.putNextEntry(converted);
+            zip.write(r.contents());
+            zip.closeEntry();
+        }
+        else
+        {
+            String msg = _resources.
+                getMessage(ARCHIVE_ENTRY_CONVERSION_FAILED_MSG,
+                           p.entry().getName(), r.failureMessage());
+            Io.writeLine(_errorWriter, msg);
+            _errorWriter.flush();
+        }
+
+        return result;
+    }
+
+    /**
+        @param f the Future representing an entry conversion
+        @return the result of the entry conversion
+    */
+    private ConversionResult waitForConversion(Future f)
+    {
+        Assert.require(f != null);
+
+        ConversionResult result = null;
+
+        try
+        {
+            result = (ConversionResult) f.get();
+        }
+        catch (InterruptedException ex)
+        {
+            // Preserve the interrupt, and treat the conversion as having
+            // failed.
+            Thread.currentThread().interrupt();
+            result = new ConversionResult(null, new RecordingErrorHandler(),
+                                          ex.toString());
+        }
+        catch (ExecutionException ex)
+        {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            else
+            {
+                IllegalStateException newEx =
+                    new IllegalStateException(cause.getLocalizedMessage());
+                newEx.initCause(cause);
+                throw newEx;
+            }
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Copies the specified entry from the specified archive to the other
+        specified archive, unchanged.
+
+        @param archive the archive containing the entry
+        @param entry the entry to copy
+        @param zip the archive to copy the entry to
+        @exception IOException thrown if the entry couldn't be copied
+    */
+    private void copyEntry(ZipFile archive, ZipEntry entry,
+                           ZipOutputStream zip)
+        throws IOException
+    {
+        Assert.require(archive != null);
+        Assert.require(entry != null);
+        Assert.require(zip != null);
+
+        ZipEntry copy = new ZipEntry(entry.getName());
+        copy.setTime(entry.getTime());
+        zip.putNextEntry(copy);
+        if (entry.isDirectory() == false)
+        {
+            InputStream in = archive.getInputStream(entry);
+            try
+            {
+                byte[] buf = new byte[COPY_BUFFER_SIZE];
+                for (int n = in.read(buf); n >= 0; n = in.read(buf))
+                {
+                    zip.write(buf, 0, n);
+                }
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        zip.closeEntry();
+    }
+
+
+    // Private static methods
+
+    /**
+        Tries to close the specified archive, iff it isn't null, but ignores
+        any IOExceptions that occur.
+
+        @param archive the archive to try to close (iff it isn't null)
+    */
+    private static void tryToClose(ZipFile archive)
+    {
+        if (archive != null)
+        {
+            try
+            {
+                archive.close();
+            }
+            catch (IOException ex)
+            {
+                // ignore failure to close
+            }
+        }
+    }
+
+
+    // Inner classes
+
+    /**
+        An entry whose conversion may still be in progress, and which is
+        yet to be written to the result archive.
+    */
+    private static class PendingEntry
+    {
+        // Private fields
+
+        /** The entry. */
+        private ZipEntry _entry;
+
+        /**
+            The Future representing the entry's conversion, or null if the
+            entry is to be copied rather than converted.
+        */
+        private Future _conversion;
+
+
+        // Constructors
+
+        /**
+            Constructs a PendingEntry.
+
+            @param entry the entry
+            @param conversion the Future representing the entry's
+            conversion, or null if the entry is to be copied
+        */
+        public PendingEntry(ZipEntry entry, Future conversion)
+        {
+            Assert.require(entry != null);
+
+            _entry = entry;
+            _conversion = conversion;
+        }
+
+
+        // Public methods
+
+        /**
+            @return the entry
+        */
+        public ZipEntry entry()
+        {
+            return _entry;
+        }
+
+        /**
+            @return the Future representing the entry's conversion, or null
+            if the entry is to be copied rather than converted
+        */
+        public Future conversion()
+        {
+            return _conversion;
+        }
+    }
+
+    /**
+        The result of converting one entry.
+    */
+    private static class ConversionResult
+    {
+        // Private fields
+
+        /** The converted contents, or null if the conversion failed. */
+        private byte[] _contents;
+
+        /** The errors that occurred in converting the entry. */
+        private RecordingErrorHandler _errors;
+
+        /**
+            A message describing why the conversion failed, or null if it
+            didn't fail.
+        */
+        private String _failureMessage;
+
+
+        // Constructors
+
+        /**
+            Constructs a ConversionResult.
+
+            @param contents the converted contents, or null if the
+            conversion failed
+            @param errors the errors that occurred in the conversion
+            @param failureMessage a message describing why the conversion
+            failed, or null if it didn't fail
+        */
+        public ConversionResult(byte[] contents,
+                                RecordingErrorHandler errors,
+                                String failureMessage)
+        {
+            Assert.require(errors != null);
+            Assert.require((contents == null) != (failureMessage == null));
+
+            _contents = contents;
+            _errors = errors;
+            _failureMessage = failureMessage;
+        }
+
+
+        // Public methods
+
+        /**
+            @return the converted contents, or null if the conversion failed
+        */
+        public byte[] contents()
+        {
+            return _contents;
+        }
+
+        /**
+            @return the errors that occurred in the conversion
+        */
+        public RecordingErrorHandler errors()
+        {
+            return _errors;
+        }
+
+        /**
+            @return a message describing why the conversion failed, or null
+            if it didn't fail
+        */
+        public String failureMessage()
+        {
+            return _failureMessage;
+        }
+    }
+
+    /**
+        A task that converts one entry in an archive.
+    */
+    private static class EntryConversionTask
+        implements Callable
+    {
+        // Private fields
+
+        /** The converter to use to convert the entry. */
+        private AtriaArchiveConverter _converter;
+
+        /** The pathname of the archive. */
+        private File _pathname;
+
+        /** The archive. */
+        private ZipFile _archive;
+
+        /** The entry to convert. */
+        private ZipEntry _entry;
+
+
+        // Constructors
+
+        /**
+            Constructs an EntryConversionTask.
+
+            @param converter the converter to use to convert the entry
+            @param pathname the pathname of the archive
+            @param archive the archive
+            @param entry the entry to convert
+        */
+        public EntryConversionTask(AtriaArchiveConverter converter,
+                                   File pathname, ZipFile archive,
+                                   ZipEntry entry)
+        {
+            Assert.require(converter != null);
+            Assert.require(pathname != null);
+            Assert.require(archive != null);
+            Assert.require(entry != null);
+
+            _converter = converter;
+            _pathname = pathname;
+            _archive = archive;
+            _entry = entry;
+        }
+
+
+        // Public methods
+
+        /**
+            Converts our entry.
+
+            @return the ConversionResult describing the result of the
+            conversion
+        */
+        public Object call()
+        {
+            RecordingErrorHandler errors = new RecordingErrorHandler();
+            byte[] contents = null;
+            String failureMessage = null;
+
+            String name = _entry.getName();
+            String fullName = _pathname.getPath() +
+                                ENTRY_NAME_SEPARATOR + name;
+            InputStream in = null;
+            try
+            {
+                in = _archive.getInputStream(_entry);
+                contents = _converter.convertEntry(in, fullName, name,
+                                                   errors);
+            }
+            catch (AtriaConversionException ex)
+            {
+                failureMessage = ex.getLocalizedMessage();
+            }
+            catch (IOException ex)
+            {
+                failureMessage = ex.getLocalizedMessage();
+            }
+            finally
+            {
+                Io.tryToClose(in);
+            }
+            if (contents == null && failureMessage == null)
+            {
+                failureMessage = "";
+            }
+
+            return new ConversionResult(contents, errors, failureMessage);
+        }
+    }
+
+    /**
+        An archive converter that converts Atria documents to XML.
+    */
+    private static class AtriaToXmlArchiveConverter
+        extends AtriaArchiveConverter
+    {
+        // Constructors
+
+        /**
+            Constructs an AtriaToXmlArchiveConverter.
+        */
+        public AtriaToXmlArchiveConverter()
+        {
+            super(AtriaInfo.FULL_SOURCE_EXTENSION, XML_EXTENSION);
+        }
+
+
+        // Protected methods
+
+        /**
+            @see AtriaArchiveConverter#convertEntry(InputStream, String, String, ErrorHandler)
+        */
+        protected byte[] convertEntry(InputStream in, String fullName,
+                                      String name,
+                                      final ErrorHandler handler)
+            throws AtriaConversionException, IOException
+        {
+            Assert.require(in != null);
+            Assert.require(fullName != null);
+            Assert.require(name != null);
+            Assert.require(handler != null);
+
+            String source = Io.toString(new BufferedReader(
+                                new InputStreamReader(in, ENCODING)));
+
+            StringWriter w = new StringWriter();
+            AtriaToXmlConverter converter = new AtriaToXmlConverter(w)
+            {
+                protected ErrorHandler createErrorHandler()
+                {
+                    return handler;
+                }
+            };
+            converter.convert(new SourceCodeString(source, fullName, name));
+
+            byte[] result = w.toString().getBytes(ENCODING);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+    }
+
+    /**
+        An archive converter that converts XML documents to Atria.
+    */
+    private static class XmlToAtriaArchiveConverter
+        extends AtriaArchiveConverter
+    {
+        // Constructors
+
+        /**
+            Constructs an XmlToAtriaArchiveConverter.
+        */
+        public XmlToAtriaArchiveConverter()
+        {
+            super(XML_EXTENSION, AtriaInfo.FULL_SOURCE_EXTENSION);
+        }
+
+
+        // Protected methods
+
+        /**
+            @see AtriaArchiveConverter#convertEntry(InputStream, String, String, ErrorHandler)
+        */
+        protected byte[] convertEntry(InputStream in, String fullName,
+                                      String name, ErrorHandler handler)
+            throws AtriaConversionException, IOException
+        {
+            Assert.require(in != null);
+            Assert.require(fullName != null);
+            Assert.require(name != null);
+            Assert.require(handler != null);
+
+            Document doc;
+            try
+            {
+                SAXBuilder builder = new SAXBuilder(false);
+                builder.setExpandEntities(false);
+                doc = XmlUtilities.createDocument(builder, in);
+            }
+            catch (XmlException ex)
+            {
+                throw new AtriaConversionException(ex.getLocalizedMessage(),
+                                                   ex);
+            }
+
+            StringWriter w = new StringWriter();
+            IndentWriter iw = IndentWriter.createNonclosing(w);
+            new XmlToAtriaConverter().convert(doc, iw);
+            iw.flush();
+
+            byte[] result = w.toString().getBytes(ENCODING);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+    }
+}
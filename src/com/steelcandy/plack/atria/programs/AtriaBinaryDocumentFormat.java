@@ -0,0 +1,117 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+/**
+    The interface that defines the constants that describe the compact
+    binary form of validated Atria documents.
+    <p>
+    An encoded document consists of
+    <ul>
+        <li>a header: the magic number and the format version (each as a
+            4-byte big-endian int) followed by a flags byte,</li>
+        <li>the string table: the number of strings followed by each
+            string's length in bytes and its UTF-8 encoded bytes,</li>
+        <li>the location table, iff the HAS_LOCATIONS flag is set: the
+            number of locations followed by each construct's location, in
+            the same (preorder) order as the constructs themselves, and</li>
+        <li>the construct tree, encoded in preorder.</li>
+    </ul>
+    Each construct in the tree is encoded as a tag byte followed by its
+    semantic attributes and then its subconstructs (each of which is
+    encoded in the same way). A missing subconstruct is encoded as just
+    the tag NO_CONSTRUCT_TAG. Names and literal text refer to the string
+    table by index, and all counts, indices and other non-negative ints
+    are encoded as variable-length ints: seven bits per byte, least
+    significant group first, with the high bit set on all but the last
+    byte.
+    <p>
+    Optional strings and ints are encoded as one more than their index or
+    value, with zero meaning that the value isn't set. A location is
+    encoded as zero if it's missing, and otherwise as one followed by
+    <ul>
+        <li>the difference between its start line number and the start
+            line number of the previous location in the table (or zero
+            for the first location), zigzag-encoded so that small negative
+            differences are encoded as small non-negative ints,</li>
+        <li>the offset of its start position,</li>
+        <li>the number of lines between its start and past the end
+            positions, and</li>
+        <li>the offset of its past the end position.</li>
+    </ul>
+    Since constructs are encoded in preorder, most of these ints fit in a
+    single byte.
+    <p>
+    Note: any change to the encoding must be accompanied by an increment
+    of FORMAT_VERSION so that documents encoded in an older format will
+    be rejected rather than misread.
+
+    @author James MacKay
+    @see AtriaBinaryDocumentWriter
+    @see AtriaBinaryDocumentReader
+*/
+public interface AtriaBinaryDocumentFormat
+{
+    // Header constants
+
+    /** The magic number that starts every encoded document: "atdb". */
+    public static final int MAGIC_NUMBER = 0x61746462;
+
+    /** The version of the encoding described by this interface. */
+    public static final int FORMAT_VERSION = 1;
+
+    /** The flag that indicates that a location table is present. */
+    public static final int HAS_LOCATIONS_FLAG = 0x01;
+
+    /** The mask of all of the valid flags. */
+    public static final int ALL_FLAGS = HAS_LOCATIONS_FLAG;
+
+
+    // Construct tags
+
+    /** The tag used in place of a missing construct. */
+    public static final int NO_CONSTRUCT_TAG = 0;
+
+    /** The tags of each of the kinds of construct. */
+    public static final int
+        DOCUMENT_TAG = 1,
+        PROLOGUE_TAG = 2,
+        LANGUAGE_SPECIFIER_TAG = 3,
+        PROLOGUE_ITEM_TAG = 4,
+        ELEMENT_TAG = 5,
+        EXPRESSION_ITEM_TAG = 6,
+        ATTRIBUTE_TAG = 7,
+        NAME_TAG = 8,
+        COMMAND_TAG = 9,
+        TEXT_TAG = 10;
+
+    /** The largest valid construct tag. */
+    public static final int MAXIMUM_TAG = TEXT_TAG;
+
+
+    // Variable-length int constants
+
+    /** The number of bits of an int encoded in each byte. */
+    public static final int VARIABLE_INT_SHIFT = 7;
+
+    /** The mask for the part of an int encoded in each byte. */
+    public static final int VARIABLE_INT_MASK = 0x7f;
+
+    /** The bit set in every byte of an int except its last byte. */
+    public static final int VARIABLE_INT_MORE_BIT = 0x80;
+}
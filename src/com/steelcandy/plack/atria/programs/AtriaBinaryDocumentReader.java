@@ -0,0 +1,735 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.plack.atria.constructs.AtriaConstructManager;
+import com.steelcandy.plack.atria.tokens.AtriaTokenManager;
+
+import com.steelcandy.plack.common.constructs.*;
+import com.steelcandy.plack.common.source.*;
+
+import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.Resources;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+    Reads validated Atria documents back in from the compact binary form
+    described by AtriaBinaryDocumentFormat, reconstructing the same
+    construct trees - complete with their semantic attributes - that
+    tokenizing, parsing and semantically analyzing their source code
+    would have produced.
+    <p>
+    If the binary form of a document doesn't include a location table
+    then all of the constructs read from it will be located at the start
+    of the document's source code.
+    <p>
+    An instance of this class can be reused, but it isn't thread-safe.
+
+    @author James MacKay
+    @see AtriaBinaryDocumentWriter
+*/
+public class AtriaBinaryDocumentReader
+    implements AtriaBinaryDocumentFormat
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        INVALID_BINARY_DOCUMENT_MSG =
+            "INVALID_BINARY_DOCUMENT_MSG";
+
+    /** The single construct manager instance. */
+    private static final AtriaConstructManager
+        MANAGER = AtriaConstructManager.instance();
+
+    /** The single token manager instance. */
+    private static final AtriaTokenManager
+        TOKEN_MANAGER = AtriaTokenManager.instance();
+
+    /** The character encoding used to encode the strings in the table. */
+    private static final String STRING_ENCODING = "UTF-8";
+
+    /**
+        The size in bytes of the smallest file that will be memory-mapped
+        rather than read: mapping small files costs more than reading them.
+    */
+    private static final long MINIMUM_MAPPED_FILE_SIZE = 64 * 1024;
+
+    /** The sets of tags allowed in each place in the construct tree. */
+    private static final int
+        DOCUMENT_TAGS = tagSet(DOCUMENT_TAG),
+        PROLOGUE_TAGS = tagSet(PROLOGUE_TAG),
+        LANGUAGE_SPECIFIER_TAGS = tagSet(LANGUAGE_SPECIFIER_TAG),
+        PROLOGUE_ITEM_TAGS = tagSet(PROLOGUE_ITEM_TAG),
+        ELEMENT_TAGS = tagSet(ELEMENT_TAG),
+        ATTRIBUTE_TAGS = tagSet(ATTRIBUTE_TAG),
+        NAME_TAGS = tagSet(NAME_TAG),
+        COMMAND_TAGS = tagSet(COMMAND_TAG),
+        CONTENT_ITEM_TAGS = ELEMENT_TAGS | tagSet(EXPRESSION_ITEM_TAG),
+        EXPRESSION_TAGS = COMMAND_TAGS | tagSet(TEXT_TAG),
+        ARGUMENT_TAGS = ATTRIBUTE_TAGS | NAME_TAGS | EXPRESSION_TAGS;
+
+
+    // Private fields
+
+    /** The buffer containing the document currently being read. */
+    private ByteBuffer _buffer;
+
+    /** The source code that the document being read represents. */
+    private SourceCode _sourceCode;
+
+    /** The string table of the document currently being read. */
+    private String[] _strings;
+
+    /**
+        The location table of the document currently being read, or null
+        if it doesn't have one. Missing locations are represented by null.
+    */
+    private SourceLocation[] _locations;
+
+    /** The index in '_locations' of the next construct's location. */
+    private int _nextLocationIndex;
+
+    /**
+        The location given to constructs that don't have a location, or
+        null if it hasn't been created yet.
+    */
+    private SourceLocation _defaultLocation;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaBinaryDocumentReader.
+    */
+    public AtriaBinaryDocumentReader()
+    {
+        _defaultLocation = null;
+    }
+
+
+    // Public methods
+
+    /**
+        Reads the binary form of a document from the specified file.
+
+        @param f the pathname of the file to read the document from
+        @param code the source code that the document represents
+        @return the document read from 'f'
+        @exception IOException thrown if 'f' couldn't be read, or doesn't
+        contain a valid document in the current binary format
+    */
+    public AtriaConstructManager.Document read(File f, SourceCode code)
+        throws IOException
+    {
+        Assert.require(f != null);
+        Assert.require(code != null);
+
+        AtriaConstructManager.Document result = read(contents(f), code);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Reads the binary form of a document from the specified bytes.
+
+        @param bytes the bytes to read the document from
+        @param code the source code that the document represents
+        @return the document read from 'bytes'
+        @exception IOException thrown if 'bytes' isn't a valid document in
+        the current binary format
+    */
+    public AtriaConstructManager.Document read(byte[] bytes, SourceCode code)
+        throws IOException
+    {
+        Assert.require(bytes != null);
+        Assert.require(code != null);
+
+        return read(ByteBuffer.wrap(bytes), code);
+    }
+
+    /**
+        Reads the binary form of a document from the specified buffer,
+        starting at its current position.
+
+        @param buf the buffer to read the document from
+        @param code the source code that the document represents
+        @return the document read from 'buf'
+        @exception IOException thrown if 'buf' doesn't contain a valid
+        document in the current binary format
+    */
+    public AtriaConstructManager.Document
+        read(ByteBuffer buf, SourceCode code)
+        throws IOException
+    {
+        Assert.require(buf != null);
+        Assert.require(code != null);
+
+        AtriaConstructManager.Document result;
+
+        _buffer = buf;
+        _sourceCode = code;
+        _defaultLocation = null;
+        try
+        {
+            checkFormat(_buffer.getInt() == MAGIC_NUMBER);
+            checkFormat(_buffer.getInt() == FORMAT_VERSION);
+            int flags = _buffer.get();
+            checkFormat((flags & ~ALL_FLAGS) == 0);
+
+            readStringTable();
+            _locations = null;
+            _nextLocationIndex = 0;
+            if ((flags & HAS_LOCATIONS_FLAG) != 0)
+            {
+                readLocationTable();
+            }
+
+            result = (AtriaConstructManager.Document)
+                readConstruct(DOCUMENT_TAGS);
+            checkFormat(result != null);
+            checkFormat(_locations == null ||
+                        _nextLocationIndex == _locations.length);
+            checkFormat(_buffer.hasRemaining() == false);
+        }
+        catch (BufferUnderflowException ex)
+        {
+            throw invalidDocumentException();
+        }
+        finally
+        {
+            _buffer = null;
+            _sourceCode = null;
+            _strings = null;
+            _locations = null;
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        Reads the next construct in the construct tree, along with all of
+        its subconstructs.
+
+        @param allowedTags the set of the tags of the kinds of construct
+        that are allowed to be next in the tree
+        @return the construct that was read, or null if the construct is
+        missing
+        @exception IOException thrown if the next construct isn't valid
+    */
+    private Construct readConstruct(int allowedTags)
+        throws IOException
+    {
+        Construct result = null;
+
+        int tag = _buffer.get();
+        if (tag != NO_CONSTRUCT_TAG)
+        {
+            checkFormat(tag > 0 && tag <= MAXIMUM_TAG &&
+                        (allowedTags & tagSet(tag)) != 0);
+            SourceLocation loc = nextLocation();
+            if (tag == NAME_TAG)
+            {
+                result = readName(loc);
+            }
+            else if (tag == TEXT_TAG)
+            {
+                AtriaConstructManager.Text t = MANAGER.createText();
+                t.setToken(TOKEN_MANAGER.
+                    createTextToken(nonNullLocation(loc), readString()));
+                result = t;
+            }
+            else
+            {
+                result = readCompositeConstruct(tag);
+                if (loc != null)
+                {
+                    result.setLocation(loc);
+                }
+            }
+            result.setSourceCode(_sourceCode);
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Reads the rest of a construct that consists of other constructs,
+        and all of its subconstructs.
+
+        @param tag the construct's tag
+        @return the construct that was read
+        @exception IOException thrown if the construct isn't valid
+    */
+    private Construct readCompositeConstruct(int tag)
+        throws IOException
+    {
+        Assert.require(tag != NAME_TAG && tag != TEXT_TAG);
+
+        Construct result;
+
+        if (tag == ELEMENT_TAG)
+        {
+            result = readElement();
+        }
+        else if (tag == COMMAND_TAG)
+        {
+            AtriaConstructManager.Command c = MANAGER.createCommand();
+            readOptionalString(c.nameArgumentAttribute());
+            c.setName((AtriaConstructManager.Name)
+                      readConstruct(NAME_TAGS));
+            int count = readCount();
+            for (int i = 0; i < count; i++)
+            {
+                c.addArgument((AtriaConstructManager.Argument)
+                              readRequiredConstruct(ARGUMENT_TAGS));
+            }
+            result = c;
+        }
+        else if (tag == ATTRIBUTE_TAG)
+        {
+            AtriaConstructManager.Attribute a = MANAGER.createAttribute();
+            a.setName((AtriaConstructManager.Name)
+                      readConstruct(NAME_TAGS));
+            a.setExpression((AtriaConstructManager.Expression)
+                            readConstruct(EXPRESSION_TAGS));
+            result = a;
+        }
+        else if (tag == EXPRESSION_ITEM_TAG)
+        {
+            AtriaConstructManager.ExpressionItem item =
+                MANAGER.createExpressionItem();
+            item.setExpression((AtriaConstructManager.Expression)
+                               readConstruct(EXPRESSION_TAGS));
+            result = item;
+        }
+        else if (tag == PROLOGUE_ITEM_TAG)
+        {
+            AtriaConstructManager.PrologueItem item =
+                MANAGER.createPrologueItem();
+            item.setCommand((AtriaConstructManager.Command)
+                            readConstruct(COMMAND_TAGS));
+            result = item;
+        }
+        else if (tag == LANGUAGE_SPECIFIER_TAG)
+        {
+            AtriaConstructManager.LanguageSpecifier spec =
+                MANAGER.createLanguageSpecifier();
+            spec.setName((AtriaConstructManager.Name)
+                         readConstruct(NAME_TAGS));
+            spec.setLanguageName((AtriaConstructManager.Name)
+                                 readConstruct(NAME_TAGS));
+            result = spec;
+        }
+        else if (tag == PROLOGUE_TAG)
+        {
+            AtriaConstructManager.Prologue p = MANAGER.createPrologue();
+            p.setLanguageSpecifier((AtriaConstructManager.LanguageSpecifier)
+                                   readConstruct(LANGUAGE_SPECIFIER_TAGS));
+            int count = readCount();
+            for (int i = 0; i < count; i++)
+            {
+                p.addPrologueItem((AtriaConstructManager.PrologueItem)
+                                  readRequiredConstruct(PROLOGUE_ITEM_TAGS));
+            }
+            result = p;
+        }
+        else
+        {
+            Assert.check(tag == DOCUMENT_TAG);
+            AtriaConstructManager.Document doc = MANAGER.createDocument();
+            doc.setPrologue((AtriaConstructManager.Prologue)
+                            readConstruct(PROLOGUE_TAGS));
+            int count = readCount();
+            for (int i = 0; i < count; i++)
+            {
+                doc.addElement((AtriaConstructManager.Element)
+                               readRequiredConstruct(ELEMENT_TAGS));
+            }
+            result = doc;
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Reads the rest of an element and all of its subconstructs.
+
+        @return the element that was read
+        @exception IOException thrown if the element isn't valid
+    */
+    private AtriaConstructManager.Element readElement()
+        throws IOException
+    {
+        AtriaConstructManager.Element result = MANAGER.createElement();
+
+        int depth = readCount();
+        if (depth > 0)
+        {
+            result.setDepthAttributeValue(depth - 1);
+        }
+
+        result.setName((AtriaConstructManager.Name)
+                       readConstruct(NAME_TAGS));
+        int count = readCount();
+        for (int i = 0; i < count; i++)
+        {
+            result.addAttribute((AtriaConstructManager.Attribute)
+                                readRequiredConstruct(ATTRIBUTE_TAGS));
+        }
+        count = readCount();
+        for (int i = 0; i < count; i++)
+        {
+            result.addContentItem((AtriaConstructManager.ContentItem)
+                                  readRequiredConstruct(CONTENT_ITEM_TAGS));
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Reads the rest of a name.
+
+        @param loc the name's location, or null if it doesn't have one
+        @return the name that was read
+        @exception IOException thrown if the name isn't valid
+    */
+    private AtriaConstructManager.Name readName(SourceLocation loc)
+        throws IOException
+    {
+        // 'loc' may be null
+
+        AtriaConstructManager.Name result = MANAGER.createName();
+
+        result.setToken(TOKEN_MANAGER.
+            createNameToken(nonNullLocation(loc), readString()));
+        readOptionalString(result.namespacePrefixAttribute());
+        readOptionalString(result.unqualifiedNameAttribute());
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Reads the next construct in the construct tree, which must not be
+        missing.
+
+        @param allowedTags the set of the tags of the kinds of construct
+        that are allowed to be next in the tree
+        @return the construct that was read
+        @exception IOException thrown if the next construct isn't valid or
+        is missing
+    */
+    private Construct readRequiredConstruct(int allowedTags)
+        throws IOException
+    {
+        Construct result = readConstruct(allowedTags);
+        checkFormat(result != null);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @return the location of the next construct in the construct tree,
+        or null if it doesn't have one
+        @exception IOException thrown if there are more constructs than
+        locations
+    */
+    private SourceLocation nextLocation()
+        throws IOException
+    {
+        SourceLocation result = null;
+
+        if (_locations != null)
+        {
+            checkFormat(_nextLocationIndex < _locations.length);
+            result = _locations[_nextLocationIndex];
+            _nextLocationIndex += 1;
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        @param loc a location, or null
+        @return 'loc' if it isn't null, and our default location if it is
+    */
+    private SourceLocation nonNullLocation(SourceLocation loc)
+    {
+        SourceLocation result = loc;
+
+        if (result == null)
+        {
+            if (_defaultLocation == null)
+            {
+                SourcePosition start =
+                    new SourcePosition(_sourceCode.firstLineNumber(), 0);
+                _defaultLocation =
+                    TOKEN_MANAGER.locationFactory().create(start, 0);
+            }
+            result = _defaultLocation;
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Reads the string table.
+
+        @exception IOException thrown if the string table isn't valid
+    */
+    private void readStringTable()
+        throws IOException
+    {
+        int count = readCount();
+        checkFormat(count <= _buffer.remaining());
+        _strings = new String[count];
+
+        byte[] bytes = new byte[0];
+        for (int i = 0; i < count; i++)
+        {
+            int len = readCount();
+            checkFormat(len <= _buffer.remaining());
+            if (bytes.length < len)
+            {
+                bytes = new byte[len];
+            }
+            _buffer.get(bytes, 0, len);
+            _strings[i] = new String(bytes, 0, len, STRING_ENCODING);
+        }
+    }
+
+    /**
+        Reads the location table.
+
+        @exception IOException thrown if the location table isn't valid
+    */
+    private void readLocationTable()
+        throws IOException
+    {
+        SourceLocationFactory factory = TOKEN_MANAGER.locationFactory();
+
+        int count = readCount();
+        checkFormat(count <= _buffer.remaining());
+        _locations = new SourceLocation[count];
+        int previousLineNumber = 0;
+        for (int i = 0; i < count; i++)
+        {
+            int isPresent = readCount();
+            checkFormat(isPresent <= 1);
+            if (isPresent == 1)
+            {
+                int lineNumber = previousLineNumber + unzigzag(readCount());
+                int startOffset = readCount();
+                int pastEndLineNumber = lineNumber + readCount();
+                int pastEndOffset = readCount();
+                checkFormat(lineNumber >= 1 &&
+                            pastEndLineNumber >= lineNumber);
+
+                SourcePosition start =
+                    new SourcePosition(lineNumber, startOffset);
+                SourcePosition pastEnd =
+                    new SourcePosition(pastEndLineNumber, pastEndOffset);
+                checkFormat(start.compare(pastEnd) <= 0);
+                _locations[i] = factory.create(start, pastEnd);
+                previousLineNumber = lineNumber;
+            }
+        }
+    }
+
+    /**
+        Reads the index of a string in the string table.
+
+        @return the string in the string table at the index that was read
+        @exception IOException thrown if the index isn't valid
+    */
+    private String readString()
+        throws IOException
+    {
+        int index = readCount();
+        checkFormat(index < _strings.length);
+
+        String result = _strings[index];
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Reads an optional string and, if it's present, sets the value of
+        the specified attribute to it.
+
+        @param attr the attribute to set to the string that's read
+        @exception IOException thrown if the string isn't valid
+    */
+    private void readOptionalString(StringAttribute attr)
+        throws IOException
+    {
+        Assert.require(attr != null);
+
+        int index = readCount();
+        if (index > 0)
+        {
+            checkFormat(index <= _strings.length);
+            attr.setValue(_strings[index - 1]);
+        }
+    }
+
+    /**
+        Reads a variable-length non-negative int.
+
+        @return the int that was read
+        @exception IOException thrown if the int isn't valid
+    */
+    private int readCount()
+        throws IOException
+    {
+        int result = 0;
+
+        int shift = 0;
+        int b = VARIABLE_INT_MORE_BIT;
+        while ((b & VARIABLE_INT_MORE_BIT) != 0)
+        {
+            checkFormat(shift < Integer.SIZE);
+            b = _buffer.get();
+            result |= (b & VARIABLE_INT_MASK) << shift;
+            shift += VARIABLE_INT_SHIFT;
+        }
+        checkFormat(result >= 0);
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        Checks that a condition that all valid documents satisfy is
+        satisfied by the document currently being read.
+
+        @param condition the condition that must be satisfied
+        @exception IOException thrown iff 'condition' is false
+    */
+    private void checkFormat(boolean condition)
+        throws IOException
+    {
+        if (condition == false)
+        {
+            throw invalidDocumentException();
+        }
+    }
+
+    /**
+        @return the exception to throw because the document currently being
+        read isn't valid
+    */
+    private IOException invalidDocumentException()
+    {
+        String msg = _resources.getMessage(INVALID_BINARY_DOCUMENT_MSG,
+                                           _sourceCode.fullName());
+        return new IOException(msg);
+    }
+
+
+    // Package-private static methods
+
+    /**
+        Returns a buffer containing the contents of the specified file.
+        Large files are memory-mapped rather than read.
+
+        @param f the pathname of the file whose contents are to be returned
+        @return a buffer whose remaining bytes are the contents of 'f'
+        @exception IOException thrown if 'f' couldn't be read
+    */
+    static ByteBuffer contents(File f)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        ByteBuffer result;
+
+        FileInputStream in = new FileInputStream(f);
+        try
+        {
+            FileChannel ch = in.getChannel();
+            long size = ch.size();
+            if (size >= MINIMUM_MAPPED_FILE_SIZE)
+            {
+                result = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            else
+            {
+                result = ByteBuffer.allocate((int) size);
+                while (result.hasRemaining() && ch.read(result) >= 0)
+                {
+                    // empty
+                }
+                result.flip();
+            }
+        }
+        finally
+        {
+            Io.tryToClose(in);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        @param value a zigzag-encoded int
+        @return the int that 'value' is the zigzag encoding of
+        @see AtriaBinaryDocumentFormat
+    */
+    private static int unzigzag(int value)
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+        @param tag a construct tag
+        @return the set of tags containing only 'tag'
+    */
+    private static int tagSet(int tag)
+    {
+        Assert.require(tag > NO_CONSTRUCT_TAG && tag <= MAXIMUM_TAG);
+
+        return (1 << tag);
+    }
+}
@@ -0,0 +1,565 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.plack.atria.constructs.AtriaConstructManager;
+
+import com.steelcandy.plack.common.constructs.*;
+import com.steelcandy.plack.common.source.SourceLocation;
+import com.steelcandy.plack.common.source.SourcePosition;
+
+import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.containers.Containers;
+
+import java.io.*;
+import java.util.*;
+
+/**
+    Writes validated Atria documents out in the compact binary form
+    described by AtriaBinaryDocumentFormat, so that they can be read back
+    in by an AtriaBinaryDocumentReader without having to be tokenized,
+    parsed and semantically analyzed again.
+    <p>
+    An instance of this class can be reused, but it isn't thread-safe.
+
+    @author James MacKay
+    @see AtriaBinaryDocumentReader
+*/
+public class AtriaBinaryDocumentWriter
+    implements AtriaBinaryDocumentFormat
+{
+    // Constants
+
+    /** The character encoding used to encode the strings in the table. */
+    private static final String STRING_ENCODING = "UTF-8";
+
+    /** The initial capacity of the buffer that the tree is encoded in. */
+    private static final int INITIAL_TREE_BUFFER_SIZE = 8192;
+
+    /** The size of the buffer used in writing to files. */
+    private static final int FILE_BUFFER_SIZE = 8192;
+
+    /** The initial capacity of the string table. */
+    private static final int INITIAL_STRING_TABLE_SIZE = 256;
+
+
+    // Private fields
+
+    /**
+        Indicates whether we're to include a location table in the
+        documents that we write.
+    */
+    private boolean _doIncludeLocations;
+
+    /**
+        The strings in the string table of the document currently being
+        written, in the order in which they were added to the table.
+    */
+    private List _strings;
+
+    /**
+        A map from each of the strings in '_strings' to its index (as an
+        Integer) in that list.
+    */
+    private Map _stringIndices;
+
+    /**
+        The locations of the constructs in the document currently being
+        written, in preorder. Missing locations are represented by null.
+    */
+    private List _locations;
+
+    /** The stream that the construct tree is encoded into. */
+    private DataOutputStream _tree;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaBinaryDocumentWriter.
+
+        @param doIncludeLocations true if the documents that the writer
+        writes are to include the locations of their constructs, and false
+        if they aren't (in which case any errors reported about the
+        constructs read back in from them will not be located accurately)
+    */
+    public AtriaBinaryDocumentWriter(boolean doIncludeLocations)
+    {
+        _doIncludeLocations = doIncludeLocations;
+    }
+
+
+    // Public methods
+
+    /**
+        Writes out the binary form of the specified document to the
+        specified file, replacing any existing contents of the file.
+
+        @param doc the validated document to write out
+        @param f the pathname of the file to write 'doc' to
+        @exception IOException thrown if 'doc' couldn't be written to 'f'
+    */
+    public void write(AtriaConstructManager.Document doc, File f)
+        throws IOException
+    {
+        Assert.require(doc != null);
+        Assert.require(f != null);
+
+        OutputStream out = new BufferedOutputStream(
+                            new FileOutputStream(f), FILE_BUFFER_SIZE);
+        try
+        {
+            write(doc, out);
+            out.flush();
+        }
+        finally
+        {
+            Io.tryToClose(out);
+        }
+    }
+
+    /**
+        Writes out the binary form of the specified document to the
+        specified output stream. The stream is neither flushed nor closed.
+
+        @param doc the validated document to write out
+        @param out the stream to write 'doc' to
+        @exception IOException thrown if 'doc' couldn't be written to 'out'
+    */
+    public void write(AtriaConstructManager.Document doc, OutputStream out)
+        throws IOException
+    {
+        Assert.require(doc != null);
+        Assert.require(out != null);
+
+        _strings = new ArrayList(INITIAL_STRING_TABLE_SIZE);
+        _stringIndices = Containers.
+            createHashMap(INITIAL_STRING_TABLE_SIZE);
+        _locations = new ArrayList();
+        ByteArrayOutputStream tree =
+            new ByteArrayOutputStream(INITIAL_TREE_BUFFER_SIZE);
+        _tree = new DataOutputStream(tree);
+        try
+        {
+            writeConstruct(doc);
+            _tree.flush();
+
+            DataOutputStream data = new DataOutputStream(out);
+            data.writeInt(MAGIC_NUMBER);
+            data.writeInt(FORMAT_VERSION);
+            int flags = 0;
+            if (_doIncludeLocations)
+            {
+                flags |= HAS_LOCATIONS_FLAG;
+            }
+            data.writeByte(flags);
+
+            writeStringTable(data);
+            if (_doIncludeLocations)
+            {
+                writeLocationTable(data);
+            }
+            tree.writeTo(data);
+            data.flush();
+        }
+        finally
+        {
+            _strings = null;
+            _stringIndices = null;
+            _locations = null;
+            _tree = null;
+        }
+    }
+
+    /**
+        @param doc a validated document
+        @return the binary form of 'doc'
+    */
+    public byte[] toBytes(AtriaConstructManager.Document doc)
+    {
+        Assert.require(doc != null);
+
+        ByteArrayOutputStream out =
+            new ByteArrayOutputStream(INITIAL_TREE_BUFFER_SIZE);
+        try
+        {
+            write(doc, out);
+        }
+        catch (IOException ex)
+        {
+            Assert.unreachable();
+                // since writing to a ByteArrayOutputStream never fails
+        }
+
+        byte[] result = out.toByteArray();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        Encodes the specified construct and all of its subconstructs into
+        our construct tree stream.
+
+        @param c the construct to encode, or null if it's missing
+        @exception IOException thrown if 'c' couldn't be encoded
+    */
+    private void writeConstruct(Construct c)
+        throws IOException
+    {
+        // 'c' may be null
+        if (c == null)
+        {
+            _tree.writeByte(NO_CONSTRUCT_TAG);
+        }
+        else
+        {
+            _locations.add(c.location());  // which may be null
+            if (c instanceof AtriaConstructManager.Element)
+            {
+                writeElement((AtriaConstructManager.Element) c);
+            }
+            else if (c instanceof AtriaConstructManager.Name)
+            {
+                writeName((AtriaConstructManager.Name) c);
+            }
+            else if (c instanceof AtriaConstructManager.Text)
+            {
+                _tree.writeByte(TEXT_TAG);
+                writeString(c.value());
+            }
+            else if (c instanceof AtriaConstructManager.Command)
+            {
+                writeCommand((AtriaConstructManager.Command) c);
+            }
+            else if (c instanceof AtriaConstructManager.Attribute)
+            {
+                AtriaConstructManager.Attribute a =
+                    (AtriaConstructManager.Attribute) c;
+                _tree.writeByte(ATTRIBUTE_TAG);
+                writeConstruct(a.hasName() ? a.name() : null);
+                writeConstruct(a.hasExpression() ? a.expression() : null);
+            }
+            else if (c instanceof AtriaConstructManager.ExpressionItem)
+            {
+                AtriaConstructManager.ExpressionItem item =
+                    (AtriaConstructManager.ExpressionItem) c;
+                _tree.writeByte(EXPRESSION_ITEM_TAG);
+                writeConstruct(item.hasExpression() ?
+                                item.expression() : null);
+            }
+            else if (c instanceof AtriaConstructManager.PrologueItem)
+            {
+                AtriaConstructManager.PrologueItem item =
+                    (AtriaConstructManager.PrologueItem) c;
+                _tree.writeByte(PROLOGUE_ITEM_TAG);
+                writeConstruct(item.hasCommand() ? item.command() : null);
+            }
+            else if (c instanceof AtriaConstructManager.LanguageSpecifier)
+            {
+                AtriaConstructManager.LanguageSpecifier spec =
+                    (AtriaConstructManager.LanguageSpecifier) c;
+                _tree.writeByte(LANGUAGE_SPECIFIER_TAG);
+                writeConstruct(spec.hasName() ? spec.name() : null);
+                writeConstruct(spec.hasLanguageName() ?
+                                spec.languageName() : null);
+            }
+            else if (c instanceof AtriaConstructManager.Prologue)
+            {
+                AtriaConstructManager.Prologue p =
+                    (AtriaConstructManager.Prologue) c;
+                _tree.writeByte(PROLOGUE_TAG);
+                writeConstruct(p.hasLanguageSpecifier() ?
+                                p.languageSpecifier() : null);
+                writeConstructList(p.prologueItemList());
+            }
+            else
+            {
+                Assert.check(c instanceof AtriaConstructManager.Document);
+                AtriaConstructManager.Document doc =
+                    (AtriaConstructManager.Document) c;
+                _tree.writeByte(DOCUMENT_TAG);
+                writeConstruct(doc.hasPrologue() ? doc.prologue() : null);
+                writeConstructList(doc.elementList());
+            }
+        }
+    }
+
+    /**
+        Encodes the specified element and all of its subconstructs into
+        our construct tree stream.
+
+        @param e the element to encode
+        @exception IOException thrown if 'e' couldn't be encoded
+    */
+    private void writeElement(AtriaConstructManager.Element e)
+        throws IOException
+    {
+        Assert.require(e != null);
+
+        _tree.writeByte(ELEMENT_TAG);
+
+        if (e.isDepthAttributeSet())
+        {
+            Assert.check(e.depthAttributeValue() >= 0);
+            writeVariableInt(e.depthAttributeValue() + 1);
+        }
+        else
+        {
+            writeVariableInt(0);
+        }
+
+        writeConstruct(e.hasName() ? e.name() : null);
+        writeConstructList(e.attributeList());
+        writeConstructList(e.contentItemList());
+    }
+
+    /**
+        Encodes the specified name into our construct tree stream.
+
+        @param n the name to encode
+        @exception IOException thrown if 'n' couldn't be encoded
+    */
+    private void writeName(AtriaConstructManager.Name n)
+        throws IOException
+    {
+        Assert.require(n != null);
+
+        _tree.writeByte(NAME_TAG);
+        writeString(n.value());
+        writeOptionalString(n.namespacePrefixAttribute());
+        writeOptionalString(n.unqualifiedNameAttribute());
+    }
+
+    /**
+        Encodes the specified command and all of its subconstructs into
+        our construct tree stream.
+
+        @param c the command to encode
+        @exception IOException thrown if 'c' couldn't be encoded
+    */
+    private void writeCommand(AtriaConstructManager.Command c)
+        throws IOException
+    {
+        Assert.require(c != null);
+
+        _tree.writeByte(COMMAND_TAG);
+        writeOptionalString(c.nameArgumentAttribute());
+        writeConstruct(c.hasName() ? c.name() : null);
+        writeConstructList(c.argumentList());
+    }
+
+    /**
+        Encodes the number of constructs in the specified list, followed
+        by each of the constructs, into our construct tree stream.
+
+        @param list the list of constructs to encode
+        @exception IOException thrown if 'list' couldn't be encoded
+    */
+    private void writeConstructList(ConstructList list)
+        throws IOException
+    {
+        Assert.require(list != null);
+
+        writeVariableInt(list.size());
+        ConstructIterator iter = list.iterator();
+        while (iter.hasNext())
+        {
+            writeConstruct(iter.next());
+        }
+    }
+
+    /**
+        Encodes the index in our string table of the specified string into
+        our construct tree stream, adding the string to the table first if
+        it isn't already in it.
+
+        @param str the string to encode
+        @exception IOException thrown if 'str' couldn't be encoded
+    */
+    private void writeString(String str)
+        throws IOException
+    {
+        Assert.require(str != null);
+
+        writeVariableInt(stringIndex(str));
+    }
+
+    /**
+        Encodes the value of the specified attribute - if it's set - into
+        our construct tree stream.
+
+        @param attr the attribute whose value is to be encoded
+        @exception IOException thrown if the attribute's value couldn't be
+        encoded
+    */
+    private void writeOptionalString(StringAttribute attr)
+        throws IOException
+    {
+        Assert.require(attr != null);
+
+        int value = 0;
+        if (attr.isSet())
+        {
+            value = stringIndex(attr.value()) + 1;
+        }
+        writeVariableInt(value);
+    }
+
+    /**
+        @param str a string
+        @return the index of 'str' in our string table, after adding it to
+        the table if necessary
+    */
+    private int stringIndex(String str)
+    {
+        Assert.require(str != null);
+
+        int result;
+
+        Integer index = (Integer) _stringIndices.get(str);
+        if (index != null)
+        {
+            result = index.intValue();
+        }
+        else
+        {
+            result = _strings.size();
+            _strings.add(str);
+            _stringIndices.put(str, new Integer(result));
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        Encodes the specified non-negative int into our construct tree
+        stream.
+
+        @param value the int to encode
+        @exception IOException thrown if 'value' couldn't be encoded
+    */
+    private void writeVariableInt(int value)
+        throws IOException
+    {
+        Assert.require(value >= 0);
+
+        writeVariableInt(value, _tree);
+    }
+
+    /**
+        Writes our string table to the specified stream.
+
+        @param out the stream to write our string table to
+        @exception IOException thrown if the table couldn't be written
+    */
+    private void writeStringTable(DataOutputStream out)
+        throws IOException
+    {
+        Assert.require(out != null);
+
+        writeVariableInt(_strings.size(), out);
+        Iterator iter = _strings.iterator();
+        while (iter.hasNext())
+        {
+            byte[] bytes = ((String) iter.next()).getBytes(STRING_ENCODING);
+            writeVariableInt(bytes.length, out);
+            out.write(bytes);
+        }
+    }
+
+    /**
+        Writes our location table to the specified stream.
+
+        @param out the stream to write our location table to
+        @exception IOException thrown if the table couldn't be written
+    */
+    private void writeLocationTable(DataOutputStream out)
+        throws IOException
+    {
+        Assert.require(out != null);
+
+        writeVariableInt(_locations.size(), out);
+        int previousLineNumber = 0;
+        Iterator iter = _locations.iterator();
+        while (iter.hasNext())
+        {
+            SourceLocation loc = (SourceLocation) iter.next();
+            if (loc == null)
+            {
+                writeVariableInt(0, out);
+            }
+            else
+            {
+                SourcePosition start = loc.startPosition();
+                SourcePosition pastEnd = loc.pastEndPosition();
+                int lineNumber = start.lineNumber();
+
+                writeVariableInt(1, out);
+                writeVariableInt(zigzag(lineNumber - previousLineNumber),
+                                 out);
+                writeVariableInt(start.offset(), out);
+                writeVariableInt(pastEnd.lineNumber() - lineNumber, out);
+                writeVariableInt(pastEnd.offset(), out);
+                previousLineNumber = lineNumber;
+            }
+        }
+    }
+
+
+    // Private static methods
+
+    /**
+        @param value an int
+        @return the non-negative int that 'value' is zigzag-encoded as
+        @see AtriaBinaryDocumentFormat
+    */
+    private static int zigzag(int value)
+    {
+        return (value << 1) ^ (value >> (Integer.SIZE - 1));
+    }
+
+    /**
+        Writes the specified non-negative int to the specified stream as a
+        variable-length int.
+
+        @param value the int to write
+        @param out the stream to write 'value' to
+        @exception IOException thrown if 'value' couldn't be written
+    */
+    private static void writeVariableInt(int value, DataOutputStream out)
+        throws IOException
+    {
+        Assert.require(value >= 0);
+        Assert.require(out != null);
+
+        int remaining = value;
+        while (remaining > VARIABLE_INT_MASK)
+        {
+            out.writeByte((remaining & VARIABLE_INT_MASK) |
+                          VARIABLE_INT_MORE_BIT);
+            remaining >>>= VARIABLE_INT_SHIFT;
+        }
+        out.writeByte(remaining);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.atria.programs.AtriaConversionProtocol.Request;
+import com.steelcandy.plack.atria.programs.AtriaConversionProtocol.Response;
+
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.program.Program;
+import com.steelcandy.common.program.ProgramExecutor;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+
+/**
+    A thin client that has the AtriaConversionServer listening on a Unix
+    domain socket execute an Atria conversion program, and that executes
+    the program itself if there's no server listening on the socket or
+    if the server won't execute it.
+    <p>
+    Either way the client writes the same output to standard output and
+    standard error, and exits with the same exit code, as the program
+    would have if it had been run directly.
+
+    @author  James MacKay
+    @see AtriaConversionProtocol
+*/
+public class AtriaConversionClient
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        USAGE_MSG =
+            "CLIENT_USAGE_MSG";
+
+
+    /** The executor used to execute programs ourself. */
+    private static final ProgramExecutor
+        EXECUTOR = ProgramExecutor.instance();
+
+    /**
+        The option whose argument is the pathname of the Unix domain
+        socket that the server is listening on.
+    */
+    private static final String SOCKET_OPTION = "-s";
+
+    /**
+        The name of the system property whose value is the name used to
+        refer to a program in its usage message.
+    */
+    private static final String PROGRAM_NAME_PROPERTY = "program.name";
+
+    /** The exit code that we exit with if we're used incorrectly. */
+    private static final int BAD_USAGE_EXIT_CODE =
+        AtriaConversionProtocol.BAD_USAGE_STATUS;
+
+    /** The identifier of the request that we send to the server. */
+    private static final int REQUEST_ID = 1;
+
+
+    // Private fields
+
+    /** The pathname of the socket that the server is listening on. */
+    private File _socket;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaConversionClient.
+
+        @param socket the pathname of the Unix domain socket that the
+        server is listening on
+    */
+    public AtriaConversionClient(File socket)
+    {
+        Assert.require(socket != null);
+
+        _socket = socket;
+    }
+
+
+    // Public methods
+
+    /**
+        Executes the conversion program with the specified name and
+        arguments, writing its output to standard output and standard
+        error.
+
+        @param programName the name of the program to execute
+        @param args the program's command line arguments
+        @return the program's exit code
+    */
+    public int execute(String programName, String[] args)
+    {
+        Assert.require(programName != null);
+        Assert.require(args != null);
+
+        int result;
+
+        Response resp = null;
+        if (AtriaConversionProtocol.isServable(programName, args))
+        {
+            String dir = new File("").getAbsolutePath();
+            resp = send(new Request(REQUEST_ID, programName, dir, args));
+        }
+
+        // We execute the program ourself if the server used it
+        // incorrectly too, so that the usage message refers to the
+        // program rather than the server.
+        if (resp != null && resp.wasRejected() == false &&
+            resp.status() != AtriaConversionProtocol.BAD_USAGE_STATUS)
+        {
+            byte[] out = resp.output();
+            System.out.write(out, 0, out.length);
+            System.out.flush();
+
+            byte[] err = resp.errorOutput();
+            System.err.write(err, 0, err.length);
+            System.err.flush();
+
+            result = resp.status();
+        }
+        else
+        {
+            System.setProperty(PROGRAM_NAME_PROPERTY, programName);
+            Program p = AtriaConversionProtocol.
+                createProgram(programName, Io.out, Io.err, null);
+            Assert.check(p != null);
+            result = EXECUTOR.execute(p, args);
+            Io.out.flush();
+        }
+
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        Sends the specified request to the server and returns its
+        response.
+
+        @param r the request to send
+        @return the server's response to 'r', or null if there was no
+        server to send it to or it couldn't be sent
+    */
+    private Response send(Request r)
+    {
+        Assert.require(r != null);
+
+        Response result = null;
+
+        SocketChannel ch = AtriaConversionProtocol.connect(_socket);
+        if (ch != null)
+        {
+            try
+            {
+                DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Channels.newOutputStream(ch)));
+                r.write(out);
+                out.flush();
+
+                DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(Channels.newInputStream(ch)));
+                result = Response.read(in);
+            }
+            catch (IOException ex)
+            {
+                // Execute the program ourself.
+                result = null;
+            }
+            finally
+            {
+                AtriaConversionProtocol.tryToClose(ch);
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        Writes our usage message to standard error.
+    */
+    private static void writeUsageMessage()
+    {
+        String name = System.getProperty(PROGRAM_NAME_PROPERTY,
+                            "java " + AtriaConversionClient.class.getName());
+        Io.writeLine(Io.err, _resources.getMessage(USAGE_MSG, name));
+        Io.err.flush();
+    }
+
+
+    // Main method
+
+    /**
+        Main method.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        int numArgs = args.length;
+        File socket = AtriaConversionProtocol.defaultSocketPathname();
+        int argIndex = 0;
+        if (numArgs > 1 && args[0].equals(SOCKET_OPTION))
+        {
+            socket = new File(args[1]);
+            argIndex = 2;
+        }
+
+        int exitCode = BAD_USAGE_EXIT_CODE;
+        if (argIndex < numArgs &&
+            AtriaConversionProtocol.isProgramName(args[argIndex]))
+        {
+            String programName = args[argIndex];
+            String[] programArgs = new String[numArgs - argIndex - 1];
+            System.arraycopy(args, argIndex + 1,
+                             programArgs, 0, programArgs.length);
+
+            AtriaConversionClient client = new AtriaConversionClient(socket);
+            exitCode = client.execute(programName, programArgs);
+        }
+        else
+        {
+            writeUsageMessage();
+        }
+
+        System.exit(exitCode);
+    }
+}
@@ -0,0 +1,628 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.program.Program;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.SocketChannel;
+
+/**
+    Defines the protocol that AtriaConversionClients use to send
+    conversion requests to an AtriaConversionServer, and that servers use
+    to send back the results of executing them.
+    <p>
+    A request specifies the conversion program to execute, its command
+    line arguments and the client's working directory, and its response
+    consists of the program's exit code and everything that it wrote to
+    standard output and standard error. Any number of requests can be
+    sent over the same stream: each is identified by a number chosen by
+    the client, and its response is identified by the same number since
+    responses aren't necessarily sent back in the order that the requests
+    were received.
+    <p>
+    All integers are written as by DataOutputStream.writeInt(), all
+    strings as by DataOutputStream.writeUTF() and all byte arrays as
+    their length followed by their bytes.
+
+    @author  James MacKay
+    @see AtriaConversionServer
+    @see AtriaConversionClient
+*/
+public class AtriaConversionProtocol
+{
+    // Constants
+
+    /** The name of the program that converts Atria documents to XML. */
+    public static final String ATRIA_TO_XML_PROGRAM = "atria2xml";
+
+    /** The name of the program that converts XML documents to Atria. */
+    public static final String XML_TO_ATRIA_PROGRAM = "xml2atria";
+
+    /**
+        The status in a response to a request that the server didn't
+        execute, and that the client should execute itself instead.
+    */
+    public static final int REJECTED_STATUS = -1;
+
+    /**
+        The exit code of a program that was used incorrectly.
+
+        @see com.steelcandy.common.program.ProgramExecutor#execute(Program, String[])
+    */
+    public static final int BAD_USAGE_STATUS = 2;
+
+    /** The largest array of bytes that can be sent in a response. */
+    private static final int MAX_BYTES_LENGTH = Integer.MAX_VALUE - 8;
+
+    /** The largest number of arguments that a request can have. */
+    private static final int MAX_ARGUMENT_COUNT = 65535;
+
+    /**
+        The prefix of the names of the default sockets that servers listen
+        on, and that clients connect to.
+    */
+    private static final String SOCKET_NAME_PREFIX = "atria-server-";
+
+    /** The extension of the names of default sockets. */
+    private static final String SOCKET_NAME_EXTENSION = ".socket";
+
+
+    // Constructors
+
+    /**
+        This constructor is private to prevent instances of this class from
+        being created.
+    */
+    private AtriaConversionProtocol()
+    {
+        // empty
+    }
+
+
+    // Public static methods
+
+    /**
+        @return the pathname of the Unix domain socket that servers listen
+        on and that clients connect to unless another one is specified:
+        each user has their own
+    */
+    public static File defaultSocketPathname()
+    {
+        String name = SOCKET_NAME_PREFIX + System.getProperty("user.name") +
+                      SOCKET_NAME_EXTENSION;
+        File result = new File(System.getProperty("java.io.tmpdir"), name);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Connects to the server listening on the specified Unix domain
+        socket.
+
+        @param socket the pathname of the socket to connect to
+        @return a connection to the server listening on 'socket', or null
+        if no server is listening on it
+    */
+    public static SocketChannel connect(File socket)
+    {
+        Assert.require(socket != null);
+
+        SocketChannel result = null;
+
+        if (socket.exists())
+        {
+            SocketChannel ch = null;
+            try
+            {
+                ch = SocketChannel.open(StandardProtocolFamily.UNIX);
+                ch.connect(UnixDomainSocketAddress.of(socket.toPath()));
+                result = ch;
+            }
+            catch (IOException ex)
+            {
+                tryToClose(ch);
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Closes the specified connection, ignoring any errors.
+
+        @param ch the connection to close: it may be null, in which case
+        this method does nothing
+    */
+    public static void tryToClose(SocketChannel ch)
+    {
+        if (ch != null)
+        {
+            try
+            {
+                ch.close();
+            }
+            catch (IOException ex)
+            {
+                // ignore it
+            }
+        }
+    }
+
+    /**
+        @param name a name
+        @return true iff 'name' is the name of one of the programs that
+        servers can execute
+    */
+    public static boolean isProgramName(String name)
+    {
+        Assert.require(name != null);
+
+        return (name.equals(ATRIA_TO_XML_PROGRAM) ||
+                name.equals(XML_TO_ATRIA_PROGRAM));
+    }
+
+    /**
+        Indicates whether the program with the specified name can be
+        executed by a server with the specified arguments: a server can't
+        execute programs that it doesn't know about, or that would read
+        their input from standard input.
+
+        @param programName the name of the program
+        @param args the program's command line arguments
+        @return true iff a server can execute the program named
+        'programName' with the arguments 'args'
+    */
+    public static boolean isServable(String programName, String[] args)
+    {
+        Assert.require(programName != null);
+        Assert.require(args != null);
+
+        boolean result = programName.equals(ATRIA_TO_XML_PROGRAM) ||
+            (programName.equals(XML_TO_ATRIA_PROGRAM) &&
+             XmlToAtriaConverterProgram.readsStandardInput(args) == false);
+
+        return result;
+    }
+
+    /**
+        Creates the program with the specified name that writes to the
+        specified writers rather than standard output and standard error.
+
+        @param programName the name of the program to create
+        @param out the writer that the program is to write its results to
+        @param err the writer that the program is to write error
+        information to
+        @param outputCache the cache that the program is to cache the
+        results of its conversions in if its arguments don't specify
+        one, or null if it's not to cache them by default
+        @return the program named 'programName', or null if there's no
+        program with that name
+    */
+    public static Program createProgram(String programName,
+                                        PrintWriter out, PrintWriter err,
+                                        AtriaOutputCache outputCache)
+    {
+        Assert.require(programName != null);
+        Assert.require(out != null);
+        Assert.require(err != null);
+        // 'outputCache' may be null
+
+        Program result = null;
+
+        if (programName.equals(ATRIA_TO_XML_PROGRAM))
+        {
+            AtriaToXmlConverterProgram p =
+                new AtriaToXmlConverterProgram(out, err);
+            p.setOutputCache(outputCache);
+            result = p;
+        }
+        else if (programName.equals(XML_TO_ATRIA_PROGRAM))
+        {
+            XmlToAtriaConverterProgram p =
+                new XmlToAtriaConverterProgram(out, err);
+            p.setOutputCache(outputCache);
+            result = p;
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        Writes the specified array of bytes to the specified stream.
+
+        @param out the stream to write the bytes to
+        @param bytes the bytes to write
+        @exception IOException thrown if the bytes couldn't be written
+    */
+    private static void writeBytes(DataOutputStream out, byte[] bytes)
+        throws IOException
+    {
+        Assert.require(out != null);
+        Assert.require(bytes != null);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+        Reads an array of bytes from the specified stream.
+
+        @param in the stream to read the bytes from
+        @return the bytes that were read
+        @exception IOException thrown if the bytes couldn't be read, or if
+        'in' doesn't contain a valid array of bytes
+    */
+    private static byte[] readBytes(DataInputStream in)
+        throws IOException
+    {
+        Assert.require(in != null);
+
+        byte[] result = new byte[readCount(in, MAX_BYTES_LENGTH)];
+        in.readFully(result);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Reads a count from the specified stream.
+
+        @param in the stream to read the count from
+        @param max the largest valid count
+        @return the count that was read
+        @exception IOException thrown if the count couldn't be read, or
+        if it was negative or larger than 'max'
+    */
+    private static int readCount(DataInputStream in, int max)
+        throws IOException
+    {
+        Assert.require(in != null);
+        Assert.require(max >= 0);
+
+        int result = in.readInt();
+        if (result < 0 || result > max)
+        {
+            throw new StreamCorruptedException(String.valueOf(result));
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        A request to execute a conversion program.
+    */
+    public static class Request
+    {
+        // Private fields
+
+        /** Our identifier. */
+        private int _id;
+
+        /** The name of the program to execute. */
+        private String _programName;
+
+        /**
+            The pathname of the working directory of the client that sent
+            us.
+        */
+        private String _directory;
+
+        /** The program's command line arguments. */
+        private String[] _arguments;
+
+
+        // Constructors
+
+        /**
+            Constructs a Request.
+
+            @param id the request's identifier
+            @param programName the name of the program to execute
+            @param directory the pathname of the working directory of the
+            client that's sending the request
+            @param args the program's command line arguments
+        */
+        public Request(int id, String programName, String directory,
+                       String[] args)
+        {
+            Assert.require(programName != null);
+            Assert.require(directory != null);
+            Assert.require(args != null);
+
+            _id = id;
+            _programName = programName;
+            _directory = directory;
+            _arguments = args;
+        }
+
+
+        // Public static methods
+
+        /**
+            Reads a request from the specified stream.
+
+            @param in the stream to read the request from
+            @return the request that was read, or null if there are no
+            more requests in 'in'
+            @exception IOException thrown if a request couldn't be read
+        */
+        public static Request read(DataInputStream in)
+            throws IOException
+        {
+            Assert.require(in != null);
+
+            Request result = null;
+
+            int id = 0;
+            boolean isAtEnd = false;
+            try
+            {
+                id = in.readInt();
+            }
+            catch (EOFException ex)
+            {
+                isAtEnd = true;
+            }
+
+            if (isAtEnd == false)
+            {
+                String programName = in.readUTF();
+                String dir = in.readUTF();
+                String[] args =
+                    new String[readCount(in, MAX_ARGUMENT_COUNT)];
+                for (int i = 0; i < args.length; i++)
+                {
+                    args[i] = in.readUTF();
+                }
+                result = new Request(id, programName, dir, args);
+            }
+
+            // 'result' may be null
+            return result;
+        }
+
+
+        // Public methods
+
+        /**
+            Writes this request to the specified stream.
+
+            @param out the stream to write this request to
+            @exception IOException thrown if this request couldn't be
+            written
+        */
+        public void write(DataOutputStream out)
+            throws IOException
+        {
+            Assert.require(out != null);
+
+            out.writeInt(_id);
+            out.writeUTF(_programName);
+            out.writeUTF(_directory);
+            out.writeInt(_arguments.length);
+            for (int i = 0; i < _arguments.length; i++)
+            {
+                out.writeUTF(_arguments[i]);
+            }
+        }
+
+        /**
+            @return our identifier
+        */
+        public int id()
+        {
+            return _id;
+        }
+
+        /**
+            @return the name of the program that we request be executed
+        */
+        public String programName()
+        {
+            Assert.ensure(_programName != null);
+            return _programName;
+        }
+
+        /**
+            @return the pathname of the working directory of the client
+            that sent us
+        */
+        public String directory()
+        {
+            Assert.ensure(_directory != null);
+            return _directory;
+        }
+
+        /**
+            @return the command line arguments of the program that we
+            request be executed
+        */
+        public String[] arguments()
+        {
+            Assert.ensure(_arguments != null);
+            return _arguments;
+        }
+    }
+
+    /**
+        The response to a Request.
+    */
+    public static class Response
+    {
+        // Private fields
+
+        /** The identifier of the request that we're the response to. */
+        private int _id;
+
+        /**
+            The exit code of the program that was executed, or
+            REJECTED_STATUS if it wasn't executed.
+        */
+        private int _status;
+
+        /** The bytes that the program wrote to standard output. */
+        private byte[] _output;
+
+        /** The bytes that the program wrote to standard error. */
+        private byte[] _errorOutput;
+
+
+        // Constructors
+
+        /**
+            Constructs a Response.
+
+            @param id the identifier of the request that the response is
+            to
+            @param status the exit code of the program that was executed,
+            or REJECTED_STATUS if it wasn't executed
+            @param output the bytes that the program wrote to standard
+            output
+            @param errorOutput the bytes that the program wrote to standard
+            error
+        */
+        public Response(int id, int status, byte[] output,
+                        byte[] errorOutput)
+        {
+            Assert.require(output != null);
+            Assert.require(errorOutput != null);
+
+            _id = id;
+            _status = status;
+            _output = output;
+            _errorOutput = errorOutput;
+        }
+
+        /**
+            Constructs the Response to a request that wasn't executed.
+
+            @param id the identifier of the request that the response is
+            to
+        */
+        public Response(int id)
+        {
+            this(id, REJECTED_STATUS, new byte[0], new byte[0]);
+        }
+
+
+        // Public static methods
+
+        /**
+            Reads a response from the specified stream.
+
+            @param in the stream to read the response from
+            @return the response that was read
+            @exception IOException thrown if a response couldn't be read
+        */
+        public static Response read(DataInputStream in)
+            throws IOException
+        {
+            Assert.require(in != null);
+
+            int id = in.readInt();
+            int status = in.readInt();
+            byte[] output = readBytes(in);
+            byte[] errorOutput = readBytes(in);
+            Response result = new Response(id, status, output, errorOutput);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+
+        // Public methods
+
+        /**
+            Writes this response to the specified stream.
+
+            @param out the stream to write this response to
+            @exception IOException thrown if this response couldn't be
+            written
+        */
+        public void write(DataOutputStream out)
+            throws IOException
+        {
+            Assert.require(out != null);
+
+            out.writeInt(_id);
+            out.writeInt(_status);
+            writeBytes(out, _output);
+            writeBytes(out, _errorOutput);
+        }
+
+        /**
+            @return the identifier of the request that we're the response
+            to
+        */
+        public int id()
+        {
+            return _id;
+        }
+
+        /**
+            @return the exit code of the program that was executed, or
+            REJECTED_STATUS if it wasn't executed
+        */
+        public int status()
+        {
+            return _status;
+        }
+
+        /**
+            @return true iff we're the response to a request that wasn't
+            executed
+        */
+        public boolean wasRejected()
+        {
+            return (_status == REJECTED_STATUS);
+        }
+
+        /**
+            @return the bytes that the program wrote to standard output
+        */
+        public byte[] output()
+        {
+            Assert.ensure(_output != null);
+            return _output;
+        }
+
+        /**
+            @return the bytes that the program wrote to standard error
+        */
+        public byte[] errorOutput()
+        {
+            Assert.ensure(_errorOutput != null);
+            return _errorOutput;
+        }
+    }
+}
@@ -0,0 +1,715 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.atria.base.AtriaInfo;
+import com.steelcandy.plack.atria.programs.AtriaConversionProtocol.Request;
+import com.steelcandy.plack.atria.programs.AtriaConversionProtocol.Response;
+
+import com.steelcandy.plack.common.source.SourceCodeString;
+
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.io.IndentWriter;
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.program.Program;
+import com.steelcandy.common.program.ProgramException;
+import com.steelcandy.common.xml.XmlException;
+import com.steelcandy.common.xml.XmlUtilities;
+
+import org.jdom.input.SAXBuilder;
+
+import java.io.*;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+    A long-running program that executes the Atria conversion programs on
+    behalf of AtriaConversionClients, so that the cost of starting a JVM
+    and loading and warming up the Atria tokenizer, parser and semantic
+    analyzer is only paid once rather than once per conversion.
+    <p>
+    Requests are read either from a Unix domain socket (over which any
+    number of clients can connect) or from standard input, in which case
+    the responses are written to standard output. Requests are executed
+    concurrently, each with its own output and error writers and so its
+    own error handlers, and an exception thrown in executing one request
+    doesn't affect any of the others.
+    <p>
+    Since the programs resolve relative pathnames against the server's
+    working directory, requests from clients with a different working
+    directory are rejected so that the clients execute them themselves.
+
+    @author  James MacKay
+    @see AtriaConversionProtocol
+*/
+public class AtriaConversionServer
+    implements Program
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        ARGUMENTS_SUMMARY_MSG =
+            "SERVER_ARGUMENTS_SUMMARY_MSG",
+        USAGE_DESCRIPTION_MSG =
+            "SERVER_USAGE_DESCRIPTION_MSG",
+        SOCKET_IN_USE_MSG =
+            "SERVER_SOCKET_IN_USE_MSG",
+        SERVER_FAILED_MSG =
+            "SERVER_FAILED_MSG",
+        RESPONSE_FAILED_MSG =
+            "SERVER_RESPONSE_FAILED_MSG";
+
+
+    /**
+        The option whose argument is the maximum number of requests to
+        execute concurrently.
+    */
+    private static final String THREADS_OPTION = "-t";
+
+    /**
+        The option whose argument is the pathname of the Unix domain
+        socket to listen on.
+    */
+    private static final String SOCKET_OPTION = "-s";
+
+    /**
+        The option that causes requests to be read from standard input
+        and responses to be written to standard output.
+    */
+    private static final String STREAMS_OPTION = "-i";
+
+    /**
+        The option whose argument is the pathname of the directory that
+        the results of conversions are to be cached in by default.
+
+        @see AtriaOutputCache
+    */
+    private static final String OUTPUT_CACHE_OPTION = "-o";
+
+
+    /** The Atria document that's converted to warm up the server. */
+    private static final String WARM_UP_DOCUMENT =
+        "language atria\n" +
+        "\n" +
+        "[set kind \"warm-up\"]\n" +
+        "\n" +
+        "[top server kind=[get kind]]\n" +
+        "\n" +
+        "album year=\"1977\"\n" +
+        "    title\n" +
+        "        \"Nevermind the Bollocks\"\n" +
+        "    artist\n" +
+        "        \"Sex Pistols\"\n";
+
+    /** The name of the warm-up document. */
+    private static final String WARM_UP_DOCUMENT_NAME =
+        "warm-up" + AtriaInfo.FULL_SOURCE_EXTENSION;
+
+    /** The number of times the warm-up document is converted. */
+    private static final int WARM_UP_COUNT = 50;
+
+
+    // Private fields
+
+    /** The pool of threads that execute requests. */
+    private ExecutorService _pool;
+
+    /**
+        The pathname of our working directory, which is the only working
+        directory of the clients whose requests we execute.
+    */
+    private String _directory;
+
+    /**
+        The cache that the results of the conversions that we execute are
+        cached in by default, or null if they're not cached by default.
+    */
+    private AtriaOutputCache _outputCache;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaConversionServer.
+    */
+    public AtriaConversionServer()
+    {
+        _pool = null;
+        _directory = new File("").getAbsolutePath();
+        _outputCache = null;
+    }
+
+
+    // Public methods
+
+    /**
+        @see Program#execute(String[])
+    */
+    public void execute(String[] args)
+        throws ProgramException
+    {
+        Assert.require(args != null);
+
+        int numArgs = args.length;
+        int numThreads = Runtime.getRuntime().availableProcessors();
+        File socket = null;
+        boolean useStreams = false;
+        boolean isBadUsage = false;
+        int argIndex = 0;
+        while (argIndex < numArgs && isBadUsage == false)
+        {
+            String opt = args[argIndex];
+            if (opt.equals(STREAMS_OPTION) && useStreams == false &&
+                socket == null)
+            {
+                useStreams = true;
+                argIndex += 1;
+            }
+            else if (opt.equals(SOCKET_OPTION) && socket == null &&
+                     useStreams == false && argIndex < numArgs - 1)
+            {
+                socket = new File(args[argIndex + 1]);
+                argIndex += 2;
+            }
+            else if (opt.equals(OUTPUT_CACHE_OPTION) && _outputCache == null &&
+                     argIndex < numArgs - 1)
+            {
+                _outputCache =
+                    new AtriaOutputCache(new File(args[argIndex + 1]));
+                argIndex += 2;
+            }
+            else if (opt.equals(THREADS_OPTION) && argIndex < numArgs - 1)
+            {
+                numThreads = parseThreadCount(args[argIndex + 1]);
+                argIndex += 2;
+            }
+            else
+            {
+                isBadUsage = true;
+            }
+        }
+        if (isBadUsage)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+        if (socket == null)
+        {
+            socket = AtriaConversionProtocol.defaultSocketPathname();
+        }
+        if (_outputCache != null)
+        {
+            // We're usually stopped by being killed.
+            Runtime.getRuntime().
+                addShutdownHook(new StatisticsReporter(_outputCache));
+        }
+
+        _pool = Executors.newFixedThreadPool(numThreads);
+        try
+        {
+            warmUp();
+            if (useStreams)
+            {
+                serve(System.in, System.out);
+            }
+            else
+            {
+                serve(socket);
+            }
+        }
+        catch (IOException ex)
+        {
+            String msg = _resources.getMessage(SERVER_FAILED_MSG,
+                                               ex.getLocalizedMessage());
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+        finally
+        {
+            _pool.shutdownNow();
+            _pool = null;
+        }
+    }
+
+    /**
+        Executes the specified request.
+        <p>
+        Note: this method will be called concurrently by several threads.
+
+        @param r the request to execute
+        @return the response to 'r'
+    */
+    public Response execute(Request r)
+    {
+        Assert.require(r != null);
+
+        Response result;
+
+        String[] args = r.arguments();
+        if (r.directory().equals(_directory) &&
+            AtriaConversionProtocol.isServable(r.programName(), args))
+        {
+            ByteArrayOutputStream outBytes = new ByteArrayOutputStream();
+            ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+            PrintWriter out = new PrintWriter(outBytes, true);
+            PrintWriter err = new PrintWriter(errBytes, true);
+            Program p = AtriaConversionProtocol.
+                createProgram(r.programName(), out, err, _outputCache);
+            Assert.check(p != null);
+
+            int status = EXECUTOR.execute(p, args, err);
+            out.flush();
+            err.flush();
+            result = new Response(r.id(), status, outBytes.toByteArray(),
+                                  errBytes.toByteArray());
+        }
+        else
+        {
+            result = new Response(r.id());
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see Program#argumentsSummary
+    */
+    public String argumentsSummary()
+    {
+        String result = _resources.getMessage(ARGUMENTS_SUMMARY_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see Program#usageDescription
+    */
+    public String usageDescription()
+    {
+        String result = _resources.getMessage(USAGE_DESCRIPTION_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        Reads requests from the specified stream until there are no more,
+        executing them concurrently and writing their responses to the
+        other specified stream as they're completed.
+
+        @param in the stream to read requests from
+        @param out the stream to write responses to
+        @exception IOException thrown if a request couldn't be read
+    */
+    private void serve(InputStream in, OutputStream out)
+        throws IOException
+    {
+        Assert.require(in != null);
+        Assert.require(out != null);
+
+        DataInputStream reqs =
+            new DataInputStream(new BufferedInputStream(in));
+        DataOutputStream resps =
+            new DataOutputStream(new BufferedOutputStream(out));
+        try
+        {
+            boolean isDone = false;
+            while (isDone == false)
+            {
+                Request r = Request.read(reqs);
+                if (r == null)
+                {
+                    isDone = true;
+                }
+                else
+                {
+                    _pool.execute(new StreamRequestTask(this, r, resps));
+                }
+            }
+        }
+        finally
+        {
+            // Let the requests that were read finish being executed.
+            _pool.shutdown();
+            try
+            {
+                _pool.awaitTermination(Long.MAX_VALUE, TimeUnit.SECONDS);
+            }
+            catch (InterruptedException ex)
+            {
+                // Just stop waiting.
+            }
+        }
+    }
+
+    /**
+        Listens on the specified Unix domain socket for connections from
+        clients until we're stopped, servicing each connection in its own
+        thread.
+
+        @param socket the pathname of the socket to listen on
+        @exception IOException thrown if we couldn't listen on 'socket'
+        @exception ProgramException thrown if another server is already
+        listening on 'socket'
+    */
+    private void serve(File socket)
+        throws IOException, ProgramException
+    {
+        Assert.require(socket != null);
+
+        if (socket.exists())
+        {
+            SocketChannel ch = AtriaConversionProtocol.connect(socket);
+            if (ch != null)
+            {
+                AtriaConversionProtocol.tryToClose(ch);
+                String msg = _resources.
+                    getMessage(SOCKET_IN_USE_MSG, socket.getPath());
+                throw EXECUTOR.createFailureException(this, msg);
+            }
+
+            // The socket was left behind by a server that didn't stop
+            // cleanly.
+            Io.delete(socket);
+        }
+
+        ServerSocketChannel server =
+            ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        try
+        {
+            server.bind(UnixDomainSocketAddress.of(socket.toPath()));
+            socket.deleteOnExit();
+            while (true)
+            {
+                SocketChannel ch = server.accept();
+                _pool.execute(new ConnectionTask(this, ch));
+            }
+        }
+        finally
+        {
+            server.close();
+            Io.delete(socket);
+        }
+    }
+
+    /**
+        Warms up this server by repeatedly converting a small Atria
+        document to XML and the result back to Atria, so that all of the
+        classes used in doing so are loaded and the most important parts of
+        them are compiled before the first request is executed.
+    */
+    private void warmUp()
+    {
+        try
+        {
+            SAXBuilder builder = new SAXBuilder(false);
+            builder.setExpandEntities(false);
+            XmlToAtriaConverter toAtria = new XmlToAtriaConverter();
+            for (int i = 0; i < WARM_UP_COUNT; i++)
+            {
+                StringWriter xml = new StringWriter();
+                AtriaToXmlConverter toXml = new AtriaToXmlConverter(xml);
+                toXml.setErrorWriter(Io.none);
+                toXml.convert(new SourceCodeString(WARM_UP_DOCUMENT,
+                        WARM_UP_DOCUMENT_NAME, WARM_UP_DOCUMENT_NAME));
+
+                byte[] bytes = xml.toString().getBytes();
+                IndentWriter w =
+                    IndentWriter.createNonclosing(new StringWriter());
+                toAtria.convert(XmlUtilities.createDocument(builder,
+                                new ByteArrayInputStream(bytes)), w);
+            }
+        }
+        catch (AtriaConversionException ex)
+        {
+            // Warming up is just an optimization, and any problem will be
+            // reported when a request is executed.
+        }
+        catch (XmlException ex)
+        {
+            // See above.
+        }
+        catch (IOException ex)
+        {
+            // See above.
+        }
+    }
+
+    /**
+        @param value the argument of the threads option
+        @return the number of threads that 'value' represents
+        @exception ProgramException thrown if 'value' doesn't represent a
+        valid number of threads
+    */
+    private int parseThreadCount(String value)
+        throws ProgramException
+    {
+        Assert.require(value != null);
+
+        int result = 0;
+        try
+        {
+            result = Integer.parseInt(value);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw EXECUTOR.createBadUsageException(this, ex);
+        }
+        if (result <= 0)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        Assert.ensure(result > 0);
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        Reports that the response to a request couldn't be sent.
+
+        @param ex the exception that indicates why it couldn't be sent
+    */
+    private static void reportResponseFailed(IOException ex)
+    {
+        Assert.require(ex != null);
+
+        String msg = _resources.getMessage(RESPONSE_FAILED_MSG,
+                                           ex.getLocalizedMessage());
+        Io.writeLine(Io.err, msg);
+        Io.err.flush();
+    }
+
+
+    // Inner classes
+
+    /**
+        The task that executes a request read from a stream and writes its
+        response to another stream that's shared with other such tasks.
+    */
+    private static class StreamRequestTask
+        implements Runnable
+    {
+        // Private fields
+
+        /** The server that's executing the request. */
+        private AtriaConversionServer _server;
+
+        /** The request to execute. */
+        private Request _request;
+
+        /** The stream to write the request's response to. */
+        private DataOutputStream _responses;
+
+
+        // Constructors
+
+        /**
+            Constructs a StreamRequestTask.
+
+            @param server the server that's executing the request
+            @param r the request to execute
+            @param responses the stream to write the request's response
+            to
+        */
+        public StreamRequestTask(AtriaConversionServer server, Request r,
+                                 DataOutputStream responses)
+        {
+            Assert.require(server != null);
+            Assert.require(r != null);
+            Assert.require(responses != null);
+
+            _server = server;
+            _request = r;
+            _responses = responses;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Runnable#run
+        */
+        public void run()
+        {
+            Response resp = _server.execute(_request);
+            try
+            {
+                synchronized (_responses)
+                {
+                    resp.write(_responses);
+                    _responses.flush();
+                }
+            }
+            catch (IOException ex)
+            {
+                reportResponseFailed(ex);
+            }
+        }
+    }
+
+    /**
+        The task that executes all of the requests sent over a connection
+        from a client, in the order that they're sent.
+    */
+    private static class ConnectionTask
+        implements Runnable
+    {
+        // Private fields
+
+        /** The server that's executing the requests. */
+        private AtriaConversionServer _server;
+
+        /** The connection to the client. */
+        private SocketChannel _channel;
+
+
+        // Constructors
+
+        /**
+            Constructs a ConnectionTask.
+
+            @param server the server that's executing the requests
+            @param ch the connection to the client
+        */
+        public ConnectionTask(AtriaConversionServer server,
+                              SocketChannel ch)
+        {
+            Assert.require(server != null);
+            Assert.require(ch != null);
+
+            _server = server;
+            _channel = ch;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Runnable#run
+        */
+        public void run()
+        {
+            try
+            {
+                DataInputStream reqs = new DataInputStream(
+                    new BufferedInputStream(
+                        Channels.newInputStream(_channel)));
+                DataOutputStream resps = new DataOutputStream(
+                    new BufferedOutputStream(
+                        Channels.newOutputStream(_channel)));
+                boolean isDone = false;
+                while (isDone == false)
+                {
+                    Request r = Request.read(reqs);
+                    if (r == null)
+                    {
+                        isDone = true;
+                    }
+                    else
+                    {
+                        _server.execute(r).write(resps);
+                        resps.flush();
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                reportResponseFailed(ex);
+            }
+            finally
+            {
+                AtriaConversionProtocol.tryToClose(_channel);
+            }
+        }
+    }
+
+
+    /**
+        The thread that reports an output cache's statistics when the
+        server stops.
+    */
+    private static class StatisticsReporter
+        extends Thread
+    {
+        // Private fields
+
+        /** The output cache whose statistics are to be reported. */
+        private AtriaOutputCache _cache;
+
+
+        // Constructors
+
+        /**
+            Constructs a StatisticsReporter.
+
+            @param cache the output cache whose statistics are to be
+            reported
+        */
+        public StatisticsReporter(AtriaOutputCache cache)
+        {
+            Assert.require(cache != null);
+
+            _cache = cache;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Runnable#run
+        */
+        public void run()
+        {
+            Io.writeLine(Io.err, _cache.statisticsMessage());
+            Io.err.flush();
+        }
+    }
+
+
+    // Main method
+
+    /**
+        Main method.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        AtriaConversionServer p = new AtriaConversionServer();
+        EXECUTOR.executeAndExit(p, args);
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.plack.atria.base.AtriaInfo;
+import com.steelcandy.plack.atria.constructs.AtriaConstructManager;
+
+import com.steelcandy.plack.common.source.SourceCode;
+
+import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.io.ContentDigest;
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.Resources;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+/**
+    A cache of the binary forms of validated Atria documents. It allows
+    an Atria document whose source code hasn't changed since it was last
+    validated to be read back in without having to be tokenized, parsed
+    and semantically analyzed again.
+    <p>
+    A document is cached under a key that's a hash of its source code,
+    the configuration of the interpreter that validated it (since, for
+    example, the initial variables that are defined can affect the
+    result of validating it), the version of the toolkit and the version
+    of the binary document format. So changing any of them results in
+    the document being validated again rather than an out-of-date
+    document being read from the cache.
+    <p>
+    Each document is cached in its own file in the cache's directory, and
+    each file is written atomically, so a cache can safely be shared by
+    multiple threads and processes. Each file starts with a digest of the
+    rest of its contents. Cache files whose contents don't match their
+    digests or that are otherwise invalid are treated as missing, and are
+    deleted.
+    <p>
+    Note: only documents that were validated without any errors (or
+    warnings) being reported should be cached, since reading a document
+    from the cache won't report them again.
+
+    @author James MacKay
+    @see AtriaBinaryDocumentFormat
+*/
+public class AtriaDocumentCache
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        CACHE_FILE_DIGEST_MISMATCH_MSG = "CACHE_FILE_DIGEST_MISMATCH_MSG";
+
+    /** The extension of the files in which documents are cached. */
+    private static final String CACHE_FILE_EXTENSION = ".atd";
+
+    /** The prefix of the temporary files that cache files are written to. */
+    private static final String TEMPORARY_FILE_PREFIX = "atd";
+
+
+    // Private fields
+
+    /** The directory containing our cache files. */
+    private File _directory;
+
+    /**
+        Indicates whether the documents that we cache include the
+        locations of their constructs.
+    */
+    private boolean _doIncludeLocations;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaDocumentCache that caches documents - including
+        their constructs' locations - in the specified directory, which
+        will be created if it doesn't already exist.
+
+        @param dir the pathname of the directory to cache documents in
+    */
+    public AtriaDocumentCache(File dir)
+    {
+        this(dir, true);
+    }
+
+    /**
+        Constructs an AtriaDocumentCache that caches documents in the
+        specified directory, which will be created if it doesn't already
+        exist.
+
+        @param dir the pathname of the directory to cache documents in
+        @param doIncludeLocations true if the locations of the cached
+        documents' constructs are to be cached too, and false if they
+        aren't (in which case any errors reported about the constructs in
+        documents read from the cache will not be located accurately)
+    */
+    public AtriaDocumentCache(File dir, boolean doIncludeLocations)
+    {
+        Assert.require(dir != null);
+
+        _directory = dir;
+        _doIncludeLocations = doIncludeLocations;
+    }
+
+
+    // Public methods
+
+    /**
+        Returns the key under which the document in the specified source
+        file is cached when it's validated by an interpreter with the
+        specified configuration.
+
+        @param configuration a string representing everything about the
+        interpreter that can affect the result of validating a document
+        @param source the pathname of an Atria source file
+        @return the key under which the document that 'source' represents
+        is cached
+        @exception IOException thrown if 'source' couldn't be read
+    */
+    public String key(String configuration, File source)
+        throws IOException
+    {
+        Assert.require(configuration != null);
+        Assert.require(source != null);
+
+        ContentDigest digest = new ContentDigest();
+        digest.add(AtriaInfo.toolkitVersion());
+        digest.add(String.valueOf(AtriaBinaryDocumentFormat.FORMAT_VERSION));
+        digest.add(String.valueOf(_doIncludeLocations));
+        digest.add(configuration);
+        digest.add(source);
+
+        String result = digest.stringValue();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Returns the document cached under the specified key, or null if
+        there isn't one.
+
+        @param key the key under which the document is cached
+        @param code the document's source code
+        @return the document cached under 'key', or null if no valid
+        document is cached under 'key'
+        @see #key(String, File)
+    */
+    public AtriaConstructManager.Document load(String key, SourceCode code)
+    {
+        Assert.require(key != null);
+        Assert.require(code != null);
+
+        AtriaConstructManager.Document result = null;
+
+        File f = cacheFile(key);
+        if (f.isFile())
+        {
+            try
+            {
+                // The digest is checked against - and the document is
+                // read from - the (possibly memory-mapped) buffer directly.
+                ByteBuffer buf = AtriaBinaryDocumentReader.contents(f);
+                byte[] digest = new byte[ContentDigest.LENGTH];
+                boolean isValid = (buf.remaining() >= digest.length);
+                if (isValid)
+                {
+                    buf.get(digest);
+                    isValid = ContentDigest.matches(digest, buf);
+                }
+                if (isValid == false)
+                {
+                    String msg = _resources.
+                        getMessage(CACHE_FILE_DIGEST_MISMATCH_MSG,
+                                   f.getPath());
+                    throw new IOException(msg);
+                }
+                result = new AtriaBinaryDocumentReader().read(buf, code);
+            }
+            catch (IOException ex)
+            {
+                // Treat the invalid or unreadable file as a cache miss,
+                // and get rid of it so that it'll be replaced.
+                Io.delete(f);
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Caches the specified validated document under the specified key,
+        replacing any document already cached under it.
+
+        @param key the key under which to cache the document
+        @param doc the document to cache
+        @exception IOException thrown if the document couldn't be cached
+        @see #key(String, File)
+    */
+    public void store(String key, AtriaConstructManager.Document doc)
+        throws IOException
+    {
+        Assert.require(key != null);
+        Assert.require(doc != null);
+
+        if (_directory.isDirectory() == false)
+        {
+            _directory.mkdirs();  // we check whether it succeeded below
+        }
+        File tmp = File.createTempFile(TEMPORARY_FILE_PREFIX,
+                                       CACHE_FILE_EXTENSION, _directory);
+        try
+        {
+            byte[] bytes = new AtriaBinaryDocumentWriter(_doIncludeLocations).
+                toBytes(doc);
+            OutputStream out = new FileOutputStream(tmp);
+            try
+            {
+                out.write(ContentDigest.of(bytes, 0, bytes.length));
+                out.write(bytes);
+            }
+            finally
+            {
+                Io.tryToClose(out);
+            }
+            Files.move(tmp.toPath(), cacheFile(key).toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Io.delete(tmp);  // does nothing if it was moved
+        }
+    }
+
+    /**
+        Removes from this cache the document cached under the specified
+        key, if there is one.
+
+        @param key the key under which the document is cached
+    */
+    public void remove(String key)
+    {
+        Assert.require(key != null);
+
+        Io.delete(cacheFile(key));
+    }
+
+    /**
+        @return the pathname of the directory that this cache caches
+        documents in
+    */
+    public File directory()
+    {
+        Assert.ensure(_directory != null);
+        return _directory;
+    }
+
+
+    // Private methods
+
+    /**
+        @param key the key under which a document is cached
+        @return the pathname of the file that the document is (or would
+        be) cached in
+    */
+    private File cacheFile(String key)
+    {
+        Assert.require(key != null);
+
+        return new File(_directory, key + CACHE_FILE_EXTENSION);
+    }
+}
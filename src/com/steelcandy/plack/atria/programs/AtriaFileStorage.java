@@ -0,0 +1,181 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.atria.base.AtriaInfo;
+import com.steelcandy.plack.atria.constructs.AtriaConstructManager;
+
+import com.steelcandy.plack.common.base.*;
+import com.steelcandy.plack.common.errors.ErrorHandler;
+import com.steelcandy.plack.common.errors.FatalErrorException;
+import com.steelcandy.plack.common.errors.RecordingErrorHandler;
+import com.steelcandy.plack.common.errors.SilentErrorHandler;
+import com.steelcandy.plack.common.source.SourceCodeString;
+
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.io.Io;
+
+import org.jdom.Document;
+
+import java.io.*;
+
+/**
+    The class of FileStorage whose records are parsed as Atria documents.
+    <p>
+    Each record is parsed into a JDOM element by itself, so loading a
+    Storable never requires more than its own record to be parsed. Any
+    errors in parsing a record are reported to the storage's error handler
+    (rather than being output to standard error).
+
+    @author  James MacKay
+*/
+public class AtriaFileStorage
+    extends FileStorage
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        INVALID_STORED_RECORD_MSG =
+            "INVALID_STORED_RECORD_MSG";
+
+
+    /**
+        The prologue that is prepended to a record to make it a complete
+        Atria document.
+    */
+    private static final String RECORD_PROLOGUE =
+        AtriaInfo.FIRST_LANGUAGE_SPECIFIER_NAME + " " +
+        AtriaInfo.LANGUAGE_NAME + Io.NL + Io.NL;
+
+
+    // Private fields
+
+    /**
+        The error handler that any errors in parsing our records are
+        reported to.
+    */
+    private ErrorHandler _handler;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaFileStorage that stores Storables in the segment
+        file with the specified pathname, creating it if it doesn't already
+        exist. Any errors in parsing its records are ignored (except that
+        the record isn't loaded).
+
+        @param f the pathname of the segment file
+        @exception IOException thrown if the segment file or its index file
+        couldn't be opened or read
+        @exception StorageException thrown if 'f' exists but isn't a
+        segment file
+    */
+    public AtriaFileStorage(File f)
+        throws IOException, StorageException
+    {
+        this(f, SilentErrorHandler.instance());
+    }
+
+    /**
+        Constructs an AtriaFileStorage that stores Storables in the segment
+        file with the specified pathname, creating it if it doesn't already
+        exist.
+        <p>
+        Note: 'handler' will be used concurrently if the storage is.
+
+        @param f the pathname of the segment file
+        @param handler the error handler to report any errors in parsing
+        the storage's records to
+        @exception IOException thrown if the segment file or its index file
+        couldn't be opened or read
+        @exception StorageException thrown if 'f' exists but isn't a
+        segment file
+    */
+    public AtriaFileStorage(File f, ErrorHandler handler)
+        throws IOException, StorageException
+    {
+        super(f);
+        Assert.require(handler != null);
+
+        _handler = handler;
+    }
+
+
+    // Protected methods
+
+    /**
+        @see FileStorage#parseRecord(String, String)
+    */
+    protected StoredItem parseRecord(String name, String data)
+        throws IOException, StorageException
+    {
+        Assert.require(name != null);
+        Assert.require(data != null);
+
+        String path = segmentFile().getPath();
+        SourceCodeString code =
+            new SourceCodeString(RECORD_PROLOGUE + data, path);
+
+        // Note: a new converter is used each time since converters
+        // aren't thread-safe, and the errors are recorded so that each
+        // record's errors are reported together.
+        AtriaToJdomConverter conv = new AtriaToJdomConverter();
+        RecordingErrorHandler recorder = new RecordingErrorHandler();
+        Document doc = null;
+        try
+        {
+            AtriaConstructManager.Document d =
+                conv.toValidatedDocument(code, recorder);
+            if (d != null && conv.haveBeenErrors(recorder) == false)
+            {
+                doc = conv.convert(d, recorder);
+            }
+        }
+        finally
+        {
+            try
+            {
+                _handler.transferErrorsAtomically(recorder);
+            }
+            catch (FatalErrorException ex)
+            {
+                // empty - the error has been reported, and the record
+                // won't be loaded
+            }
+        }
+        if (doc == null)
+        {
+            String msg = _resources.
+                getMessage(INVALID_STORED_RECORD_MSG, name, path);
+            throw new StorageException(msg);
+        }
+
+        StoredItem result = new JdomStoredItem(doc.getRootElement());
+
+        Assert.ensure(result != null);
+        return result;
+    }
+}
@@ -0,0 +1,1349 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.atria.tokens.*;
+import com.steelcandy.plack.atria.constructs.*;
+import com.steelcandy.plack.atria.semantic.*;
+import com.steelcandy.plack.atria.source.AtriaSourceSplitter;
+
+import com.steelcandy.plack.common.source.*;
+import com.steelcandy.plack.common.errors.*;
+import com.steelcandy.plack.common.tokens.*;
+import com.steelcandy.plack.common.constructs.*;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+    Represents the source code of an Atria document that is edited one
+    localised edit at a time, along with the validated Document that it
+    represents.
+    <p>
+    After each edit the Document is validated again by tokenizing,
+    parsing and analyzing only the parts of the source code that the edit
+    could have affected. The source code is split into sections by an
+    AtriaSourceSplitter so that each line that starts a top-level Element
+    at the outermost level of indentation starts a new section (with the
+    first section containing the Prologue). The sections before and after
+    the edited text whose text is unchanged keep their Elements and the
+    errors that were found in them: only the other sections are tokenized,
+    parsed and analyzed again, and are then spliced in between them. The
+    sections after the edited text are moved to their new positions, and
+    if the edit changed the number of lines in the source code then the
+    locations of their Elements and errors are shifted by the number of
+    lines that were added or removed. All of the sections after an edit to
+    the first section are parsed again, though, since the analysis of
+    Elements depends on the Prologue. A section whose first line contains
+    tokenizing errors is parsed together with the section before it so
+    that the errors are reported in the same order.
+    <p>
+    The resulting Document and errors are the same as the ones that
+    validating all of the edited source code would produce. If any
+    section couldn't be parsed on its own in a way that is consistent with
+    that then all of the source code is validated again sequentially.
+    <p>
+    Instances are not thread-safe.
+
+    @author James MacKay
+    @see AtriaIncrementalDocumentParser
+*/
+public class AtriaIncrementalDocument
+{
+    // Constants
+
+    /** The factory to use to create sequential document parsers. */
+    private static final AtriaParserFactory
+        PARSER_FACTORY = AtriaParserFactory.instance();
+
+    /** The factory to use to create shifted source locations. */
+    private static final SourceLocationFactory
+        LOCATION_FACTORY = AtriaTokenManager.instance().locationFactory();
+
+    /**
+        The minimum size of the sections that source code is split into,
+        which is small enough that every line that can start a section
+        does.
+    */
+    private static final int MINIMUM_SECTION_SIZE = 1;
+
+
+    // Private fields
+
+    /** The full name of our source code. */
+    private String _fullName;
+
+    /** Creates the tokenizers used to tokenize our source code. */
+    private AtriaParallelDocumentParser.TokenizerCreator _creator;
+
+    /** The parser we use to parse sections of our source code. */
+    private AtriaIncrementalDocumentParser _parser;
+
+    /** The splitter we use to split our source code into sections. */
+    private AtriaSourceSplitter _splitter;
+
+    /** Our current source code. */
+    private String _text;
+
+    /**
+        The Document that our current source code represents, or null if
+        it doesn't represent one.
+    */
+    private AtriaConstructManager.Document _document;
+
+    /**
+        The sections that our current source code is split into, in order:
+        each item is a Section. It's null if our current source code was
+        validated sequentially rather than one section at a time.
+    */
+    private List _sections;
+
+    /**
+        The semantic analyzer that analyzed our current Document's
+        Prologue, and that is used to analyze its top-level Elements, or
+        null if '_sections' is null.
+    */
+    private AtriaSemanticAnalyzer _analyzer;
+
+    /**
+        The errors that occurred in analyzing our current Document itself
+        if '_sections' isn't null, and all of the errors that occurred in
+        validating our current source code otherwise.
+    */
+    private RecordingErrorHandler _documentErrors;
+
+    /**
+        The errors that occurred in checking the validity constraint
+        checklist of our current Document itself.
+    */
+    private RecordingErrorHandler _documentChecklistErrors;
+
+    /**
+        The number of our current sections that were tokenized and parsed
+        in order to validate our current source code.
+    */
+    private int _reparsedSectionCount;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaIncrementalDocument whose source code is
+        tokenized using AtriaDefaultTokenizers.
+
+        @param text the initial source code
+        @param fullName the full name of the source code
+    */
+    public AtriaIncrementalDocument(String text, String fullName)
+    {
+        this(text, fullName, new DefaultTokenizerCreator());
+    }
+
+    /**
+        Constructs an AtriaIncrementalDocument.
+
+        @param text the initial source code
+        @param fullName the full name of the source code
+        @param creator used to create the tokenizers to use to tokenize
+        the source code (or sections of it)
+    */
+    public AtriaIncrementalDocument(String text, String fullName,
+                    AtriaParallelDocumentParser.TokenizerCreator creator)
+    {
+        Assert.require(text != null);
+        Assert.require(fullName != null);
+        Assert.require(creator != null);
+
+        _fullName = fullName;
+        _creator = creator;
+        _parser = new AtriaIncrementalDocumentParser();
+        _splitter = new AtriaSourceSplitter(MINIMUM_SECTION_SIZE);
+        _text = text;
+        _sections = null;
+        update(0, 0, 0);
+    }
+
+
+    // Public methods
+
+    /**
+        @return the full name of our source code
+    */
+    public String fullName()
+    {
+        Assert.ensure(_fullName != null);
+        return _fullName;
+    }
+
+    /**
+        @return our current source code
+    */
+    public String text()
+    {
+        Assert.ensure(_text != null);
+        return _text;
+    }
+
+    /**
+        @return the validated Document that our current source code
+        represents, or null if it doesn't represent one
+    */
+    public AtriaConstructManager.Document document()
+    {
+        // 'result' may be null
+        return _document;
+    }
+
+    /**
+        Replaces the specified range of our source code with the specified
+        text, and then validates the result.
+
+        @param start the index in our current source code of the first
+        character to replace
+        @param end the index in our current source code of the character
+        after the last character to replace
+        @param replacement the text to replace the characters with
+    */
+    public void edit(int start, int end, String replacement)
+    {
+        Assert.require(start >= 0);
+        Assert.require(end >= start);
+        Assert.require(end <= text().length());
+        Assert.require(replacement != null);
+
+        _text = _text.substring(0, start) + replacement +
+                _text.substring(end);
+        update(start, end, start + replacement.length());
+    }
+
+    /**
+        Reports all of the errors that were found in validating our
+        current source code to the specified error handler, in the same
+        order in which validating it sequentially would report them.
+
+        @param handler the error handler to report the errors to
+    */
+    public void reportErrors(ErrorHandler handler)
+    {
+        Assert.require(handler != null);
+
+        if (_sections != null)
+        {
+            int numSections = _sections.size();
+            for (int i = 0; i < numSections; i++)
+            {
+                section(i).parsingErrors().copyErrorsTo(handler);
+            }
+            for (int i = 0; i < numSections; i++)
+            {
+                section(i).analysisErrors().copyErrorsTo(handler);
+            }
+            _documentErrors.copyErrorsTo(handler);
+            _documentChecklistErrors.copyErrorsTo(handler);
+            for (int i = 0; i < numSections; i++)
+            {
+                section(i).checklistErrors().copyErrorsTo(handler);
+            }
+        }
+        else
+        {
+            _documentErrors.copyErrorsTo(handler);
+        }
+    }
+
+    /**
+        @return the number of sections that our current source code is
+        split into, or 0 if it was validated sequentially
+    */
+    public int sectionCount()
+    {
+        int result = 0;
+
+        if (_sections != null)
+        {
+            result = _sections.size();
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        @return the number of the sections that our current source code is
+        split into that were tokenized and parsed in order to validate it,
+        or 0 if it was validated sequentially
+    */
+    public int reparsedSectionCount()
+    {
+        Assert.ensure(_reparsedSectionCount >= 0);
+        return _reparsedSectionCount;
+    }
+
+
+    // Private methods
+
+    /**
+        Validates our current source code after the specified range of the
+        previous version of it was replaced.
+
+        @param editStart the index of the start of the replaced range
+        @param oldEditEnd the index in the previous version of our source
+        code of the end of the replaced range
+        @param newEditEnd the index in our current source code of the end
+        of the text that the range was replaced with
+    */
+    private void update(int editStart, int oldEditEnd, int newEditEnd)
+    {
+        Assert.require(editStart >= 0);
+        Assert.require(oldEditEnd >= editStart);
+        Assert.require(newEditEnd >= editStart);
+
+        SourceCodeString code = new SourceCodeString(_text, _fullName);
+        boolean wasUpdated = false;
+        try
+        {
+            List newSections = _splitter.split(code);
+            wasUpdated = updateSections(code, newSections, editStart,
+                                        oldEditEnd, newEditEnd);
+        }
+        catch (IOException ex)
+        {
+            // The error will be reported when we validate 'code'
+            // sequentially.
+            wasUpdated = false;
+        }
+        catch (FatalErrorException ex)
+        {
+            wasUpdated = false;
+        }
+
+        if (wasUpdated == false)
+        {
+            validateSequentially(code);
+        }
+    }
+
+    /**
+        Validates our current source code one section at a time after the
+        specified range of the previous version of it was replaced, keeping
+        the previous version's sections that the edit didn't affect.
+
+        @param code our current source code
+        @param newSections the SourceCodeSections that 'code' is split into
+        @param editStart the index of the start of the replaced range
+        @param oldEditEnd the index in the previous version of our source
+        code of the end of the replaced range
+        @param newEditEnd the index in our current source code of the end
+        of the text that the range was replaced with
+        @return true iff 'code' was validated successfully one section at
+        a time, or false if it needs to be validated sequentially
+        @exception FatalErrorException thrown if a fatal error occurs in
+        analyzing the sections
+    */
+    private boolean updateSections(SourceCode code, List newSections,
+                        int editStart, int oldEditEnd, int newEditEnd)
+        throws FatalErrorException
+    {
+        Assert.require(code != null);
+        Assert.require(newSections != null);
+        Assert.require(newSections.isEmpty() == false);
+        Assert.require(editStart >= 0);
+        Assert.require(oldEditEnd >= editStart);
+        Assert.require(newEditEnd >= editStart);
+
+        // starts[i] is the index in 'code' of the start of the section
+        // with index i in 'newSections', and starts[numNew] is the length
+        // of all of 'code'.
+        int numNew = newSections.size();
+        int[] starts = new int[numNew + 1];
+        for (int i = 0; i < numNew; i++)
+        {
+            starts[i + 1] = starts[i] +
+                newSection(newSections, i).text().length();
+        }
+
+        // Keep the sections before the edit that 'code' still has a
+        // section boundary after ...
+        List sections = new ArrayList();
+        int numOld = sectionCount();
+        int first = 0;
+        while (sections.size() < numOld)
+        {
+            Section old = section(sections.size());
+            int j = Arrays.binarySearch(starts, old.end());
+            if (old.end() > editStart || j < 0)
+            {
+                break;  // while
+            }
+            sections.add(old);
+            first = j;
+        }
+
+        // ... and then - as long as the first section was kept - the
+        // sections after the edit that 'code' still has a section boundary
+        // before, which all start 'delta' characters and 'lineDelta' lines
+        // after where they did.
+        List keptAfter = new ArrayList();
+        int last = numNew;
+        int delta = newEditEnd - oldEditEnd;
+        int lineDelta = 0;
+        for (int i = numOld - 1;
+             i >= sections.size() && sections.isEmpty() == false; i--)
+        {
+            Section old = section(i);
+            int j = Arrays.binarySearch(starts, old.start() + delta);
+            if (old.start() < oldEditEnd || j < first ||
+                old.end() + delta != starts[last])
+            {
+                break;  // for
+            }
+            int lines = newSection(newSections, j).firstLineNumber() -
+                            old.firstLineNumber();
+            if (keptAfter.isEmpty())
+            {
+                lineDelta = lines;
+            }
+            else if (lines != lineDelta)
+            {
+                break;  // for
+            }
+            keptAfter.add(old);
+            last = j;
+        }
+
+        // Parse all of the other sections, joining a section onto the one
+        // before it if the result of parsing them separately may not be
+        // the same as the result of parsing them together.
+        // (A kept section that a parsed section is joined onto is parsed
+        // again too.)
+        boolean result = true;
+        int numKept = sections.size();
+        for (int j = first; j < last && result; j++)
+        {
+            Section current = parseSection(newSection(newSections, j),
+                                        starts[j], sections.isEmpty());
+            while (current != null && current.mustFollowPrevious() &&
+                   sections.isEmpty() == false)
+            {
+                Section previous =
+                    (Section) sections.remove(sections.size() - 1);
+                numKept = Math.min(numKept, sections.size());
+                SourceCodeSection joined = new SourceCodeSection(code,
+                    previous.text() + current.text(),
+                    previous.firstLineNumber());
+                current = parseSection(joined, previous.start(),
+                                       sections.isEmpty());
+            }
+            result = (current != null);
+            if (result)
+            {
+                sections.add(current);
+            }
+        }
+        int numParsed = sections.size() - numKept;
+
+        // The Elements in the sections kept from after the edit can only
+        // be kept if the Prologue that they were analyzed with was.
+        Section head = null;
+        if (result)
+        {
+            head = (Section) sections.get(0);
+            result = head.wasAnalyzed() || keptAfter.isEmpty();
+        }
+
+        // Move the sections kept from after the edit to where they are
+        // now.
+        for (int i = keptAfter.size() - 1; i >= 0 && result; i--)
+        {
+            Section sec = (Section) keptAfter.get(i);
+            result = sec.moveTo(code, sec.start() + delta, lineDelta);
+            sections.add(sec);
+        }
+
+        if (result)
+        {
+            if (head.wasAnalyzed() == false)
+            {
+                _analyzer = new AtriaSemanticAnalyzer();
+            }
+            AtriaValidityConstraintChecklistCompletionChecker checker =
+                new AtriaValidityConstraintChecklistCompletionChecker();
+            ConstructList elements = ConstructList.createArrayList();
+            Iterator iter = sections.iterator();
+            while (iter.hasNext())
+            {
+                Section sec = (Section) iter.next();
+                if (sec.wasAnalyzed() == false)
+                {
+                    sec.analyze(_analyzer, checker);
+                }
+                elements.addAll(sec.elements());
+            }
+
+            AtriaConstructManager.Document doc =
+                _parser.createDocument(head.prologue(), elements, code);
+            RecordingErrorHandler documentErrors =
+                new RecordingErrorHandler();
+            _analyzer.finishAnalysisOfWhole(doc, documentErrors);
+            RecordingErrorHandler documentChecklistErrors =
+                new RecordingErrorHandler();
+            checker.checkOwnConstraints(doc, documentChecklistErrors);
+
+            _document = doc;
+            _sections = sections;
+            _documentErrors = documentErrors;
+            _documentChecklistErrors = documentChecklistErrors;
+            _reparsedSectionCount = numParsed;
+        }
+
+        return result;
+    }
+
+    /**
+        Tokenizes and parses the specified section of our current source
+        code.
+
+        @param s the section to parse
+        @param start the index in our current source code of the start of
+        's'
+        @param isFirstSection true iff 's' is the first section of our
+        current source code
+        @return the result of parsing 's', or null if it couldn't be parsed
+        successfully on its own
+    */
+    private Section parseSection(SourceCodeSection s, int start,
+                                 boolean isFirstSection)
+    {
+        Assert.require(s != null);
+        Assert.require(start >= 0);
+
+        Section result = new Section(s, start, isFirstSection);
+
+        RecordingErrorHandler recorder = result.parsingErrors();
+        if (isFirstSection)
+        {
+            AtriaConstructManager.Document doc =
+                _parser.parseHeadSection(s, _creator, recorder);
+            if (doc != null)
+            {
+                if (doc.hasPrologue())
+                {
+                    result.setPrologue(doc.prologue());
+                }
+                if (doc.elementCount() > 0)
+                {
+                    result.elements().addAll(doc.elementList());
+                }
+            }
+            else
+            {
+                result = null;
+            }
+        }
+        else if (_parser.parseElementsSection(s, _creator,
+                                    result.elements(), recorder) == false)
+        {
+            result = null;
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Validates all of the specified source code sequentially.
+
+        @param code our current source code
+    */
+    private void validateSequentially(SourceCode code)
+    {
+        Assert.require(code != null);
+
+        RecordingErrorHandler recorder = new RecordingErrorHandler();
+        AtriaConstructManager.Document doc = null;
+        SourceCodeTokenizer t = null;
+        try
+        {
+            t = _creator.create(code, recorder);
+            AtriaDocumentParser p = PARSER_FACTORY.createDocumentParser();
+            doc = p.parseTopLevel(t, recorder);
+            if (doc != null)
+            {
+                new AtriaSemanticAnalyzer().analyze(doc, recorder);
+                new AtriaValidityConstraintChecklistCompletionChecker().
+                    check(doc, recorder);
+            }
+        }
+        catch (FatalErrorException ex)
+        {
+            // The fatal error has already been reported to 'recorder'.
+            doc = null;
+        }
+        finally
+        {
+            if (t != null)
+            {
+                t.close();
+            }
+        }
+
+        _document = doc;
+        _sections = null;
+        _analyzer = null;
+        _documentErrors = recorder;
+        _documentChecklistErrors = new RecordingErrorHandler();
+        _reparsedSectionCount = 0;
+    }
+
+    /**
+        @param index the index of one of the sections of our current
+        source code
+        @return the section with index 'index'
+    */
+    private Section section(int index)
+    {
+        Assert.require(index >= 0);
+        Assert.require(index < sectionCount());
+
+        Section result = (Section) _sections.get(index);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        @param sections a list of SourceCodeSections
+        @param index the index of one of the items in 'sections'
+        @return the item in 'sections' with index 'index'
+    */
+    private static SourceCodeSection newSection(List sections, int index)
+    {
+        Assert.require(sections != null);
+        Assert.require(index >= 0);
+        Assert.require(index < sections.size());
+
+        SourceCodeSection result = (SourceCodeSection) sections.get(index);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param loc a source location
+        @param lineDelta the number of lines to shift 'loc' by
+        @return a location that is the same as 'loc' except that it's
+        'lineDelta' lines later, or null if 'loc' isn't a continuous
+        location and so can't be shifted
+    */
+    private static SourceLocation
+        shiftedLocation(SourceLocation loc, int lineDelta)
+    {
+        Assert.require(loc != null);
+
+        SourceLocation result = null;
+
+        if (loc.basicComponents().size() == 1)
+        {
+            result = LOCATION_FACTORY.
+                create(shiftedPosition(loc.startPosition(), lineDelta),
+                       shiftedPosition(loc.pastEndPosition(), lineDelta));
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        @param pos a source position
+        @param lineDelta the number of lines to shift 'pos' by
+        @return a position that is the same as 'pos' except that it's
+        'lineDelta' lines later
+    */
+    private static SourcePosition
+        shiftedPosition(SourcePosition pos, int lineDelta)
+    {
+        Assert.require(pos != null);
+        Assert.require(pos.lineNumber() + lineDelta >= 1);
+
+        SourcePosition result =
+            new SourcePosition(pos.lineNumber() + lineDelta, pos.offset());
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        The class of TokenizerCreator that creates AtriaDefaultTokenizers.
+    */
+    private static class DefaultTokenizerCreator
+        implements AtriaParallelDocumentParser.TokenizerCreator
+    {
+        // Public methods
+
+        /**
+            @see AtriaParallelDocumentParser.TokenizerCreator#create(SourceCode, ErrorHandler)
+        */
+        public SourceCodeTokenizer
+            create(SourceCode code, ErrorHandler handler)
+        {
+            Assert.require(code != null);
+            Assert.require(handler != null);
+
+            AtriaDefaultTokenizer result = new AtriaDefaultTokenizer(handler);
+            result.initialize(code);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+    }
+
+    /**
+        The class of object that represents one section of our source code,
+        the Prologue and/or top-level Elements that it represents and the
+        errors that were found in validating them.
+    */
+    private static class Section
+    {
+        // Private fields
+
+        /** The section of source code that we represent. */
+        private SourceCodeSection _section;
+
+        /** The index in all of the source code of our section's start. */
+        private int _start;
+
+        /**
+            The Prologue that our section represents, or null if it
+            doesn't represent one.
+        */
+        private AtriaConstructManager.Prologue _prologue;
+
+        /** The top-level Elements that our section represents. */
+        private ConstructList _elements;
+
+        /** The errors that occurred in parsing our section. */
+        private ParsingErrorRecorder _parsingErrors;
+
+        /**
+            The errors that occurred in analyzing our Prologue and/or
+            Elements.
+        */
+        private RecordingErrorHandler _analysisErrors;
+
+        /**
+            The errors that occurred in checking the validity constraint
+            checklists of our Prologue and/or Elements.
+        */
+        private RecordingErrorHandler _checklistErrors;
+
+        /** Indicates whether our Prologue and Elements were analyzed. */
+        private boolean _wasAnalyzed;
+
+
+        // Constructors
+
+        /**
+            Constructs a Section.
+
+            @param section the section of source code that the Section
+            represents
+            @param start the index in all of the source code of the start
+            of 'section'
+            @param isFirstSection true iff 'section' is the first section
+            of the source code
+        */
+        public Section(SourceCodeSection section, int start,
+                       boolean isFirstSection)
+        {
+            Assert.require(section != null);
+            Assert.require(start >= 0);
+
+            _section = section;
+            _start = start;
+            _prologue = null;
+            _elements = ConstructList.createArrayList();
+            _parsingErrors = new ParsingErrorRecorder(isFirstSection ?
+                0 : section.firstLineNumber());
+            _analysisErrors = new RecordingErrorHandler();
+            _checklistErrors = new RecordingErrorHandler();
+            _wasAnalyzed = false;
+        }
+
+
+        // Public methods
+
+        /**
+            @return the index in all of the source code of the start of
+            our section
+        */
+        public int start()
+        {
+            Assert.ensure(_start >= 0);
+            return _start;
+        }
+
+        /**
+            @return the index in all of the source code of the character
+            after the end of our section
+        */
+        public int end()
+        {
+            int result = _start + _section.text().length();
+
+            Assert.ensure(result >= start());
+            return result;
+        }
+
+        /**
+            @return the text of our section
+        */
+        public String text()
+        {
+            return _section.text();
+        }
+
+        /**
+            @return the line number of the first line of our section
+        */
+        public int firstLineNumber()
+        {
+            return _section.firstLineNumber();
+        }
+
+        /**
+            @return true iff our section has to be parsed together with the
+            section before it, since the errors that occurred in parsing
+            them separately may not be reported in the same order as they
+            would be if they were parsed together
+            @see AtriaIncrementalDocument.ParsingErrorRecorder
+        */
+        public boolean mustFollowPrevious()
+        {
+            return _parsingErrors.wereFirstLineTokenizingErrors();
+        }
+
+        /**
+            @return the Prologue that our section represents, or null if it
+            doesn't represent one
+        */
+        public AtriaConstructManager.Prologue prologue()
+        {
+            // 'result' may be null
+            return _prologue;
+        }
+
+        /**
+            Sets the Prologue that our section represents.
+
+            @param p the Prologue that our section represents, or null if
+            it doesn't represent one
+        */
+        public void setPrologue(AtriaConstructManager.Prologue p)
+        {
+            // 'p' may be null
+            _prologue = p;
+        }
+
+        /**
+            @return the list of the top-level Elements that our section
+            represents
+        */
+        public ConstructList elements()
+        {
+            Assert.ensure(_elements != null);
+            return _elements;
+        }
+
+        /**
+            @return the error handler that recorded the errors that
+            occurred in parsing our section
+        */
+        public RecordingErrorHandler parsingErrors()
+        {
+            Assert.ensure(_parsingErrors != null);
+            return _parsingErrors;
+        }
+
+        /**
+            @return the error handler that recorded the errors that
+            occurred in analyzing our Prologue and/or Elements
+        */
+        public RecordingErrorHandler analysisErrors()
+        {
+            Assert.ensure(_analysisErrors != null);
+            return _analysisErrors;
+        }
+
+        /**
+            @return the error handler that recorded the errors that
+            occurred in checking the validity constraint checklists of our
+            Prologue and/or Elements
+        */
+        public RecordingErrorHandler checklistErrors()
+        {
+            Assert.ensure(_checklistErrors != null);
+            return _checklistErrors;
+        }
+
+        /**
+            @return true iff our Prologue and Elements have been analyzed
+        */
+        public boolean wasAnalyzed()
+        {
+            return _wasAnalyzed;
+        }
+
+        /**
+            Moves our section to the specified position in the specified
+            source code, where the same text as our section's now starts
+            the specified number of lines after our section's first line.
+            <p>
+            If 'lineDelta' isn't zero then the locations of our Prologue,
+            Elements and errors are shifted by that many lines, and they're
+            made to refer to the section of 'code' that we now represent.
+
+            @param code all of the source code that our section is now in
+            @param start the index in 'code' of the start of our section
+            @param lineDelta the number of lines after our section's first
+            line that its text now starts
+            @return true iff our section was moved, or false if any of the
+            locations couldn't be shifted
+        */
+        public boolean moveTo(SourceCode code, int start, int lineDelta)
+        {
+            Assert.require(code != null);
+            Assert.require(start >= 0);
+            Assert.require(firstLineNumber() + lineDelta >= 1);
+
+            boolean result = true;
+
+            _start = start;
+            if (lineDelta != 0)
+            {
+                SourceCodeSection old = _section;
+                _section = new SourceCodeSection(code, old.text(),
+                                    old.firstLineNumber() + lineDelta);
+                _parsingErrors.shiftFirstLineNumber(lineDelta);
+
+                result = shiftLines(_prologue, old, lineDelta) &&
+                    shiftLines(_elements, old, lineDelta) &&
+                    shiftErrors(_parsingErrors, old, lineDelta) &&
+                    shiftErrors(_analysisErrors, old, lineDelta) &&
+                    shiftErrors(_checklistErrors, old, lineDelta);
+            }
+
+            return result;
+        }
+
+        /**
+            Analyzes our Prologue and Elements, and then checks their
+            validity constraint checklists.
+
+            @param analyzer the analyzer to use to analyze them: it must
+            have analyzed the Document's Prologue already if it isn't ours
+            @param checker the checker to use to check their validity
+            constraint checklists
+        */
+        public void analyze(AtriaSemanticAnalyzer analyzer,
+                AtriaValidityConstraintChecklistCompletionChecker checker)
+        {
+            Assert.require(analyzer != null);
+            Assert.require(checker != null);
+            Assert.require(wasAnalyzed() == false);
+
+            if (_prologue != null)
+            {
+                analyzer.analyze(_prologue, _analysisErrors);
+            }
+            ConstructIterator iter = _elements.iterator();
+            while (iter.hasNext())
+            {
+                analyzer.analyze((AtriaConstructManager.Element)
+                                    iter.next(), 1, _analysisErrors);
+            }
+
+            if (_prologue != null)
+            {
+                checker.check(_prologue, _checklistErrors);
+            }
+            iter = _elements.iterator();
+            while (iter.hasNext())
+            {
+                checker.check((AtriaConstructManager.Element) iter.next(),
+                              _checklistErrors);
+            }
+            _wasAnalyzed = true;
+        }
+
+
+        // Private methods
+
+        /**
+            Shifts the locations of the specified construct and all of its
+            subconstructs by the specified number of lines, and makes the
+            ones that refer to the specified section of the previous
+            version of the source code - or all of it - refer to our
+            section - or all of the current source code - instead.
+
+            @param c the construct whose location is to be shifted, or null
+            @param old the section of the previous version of the source
+            code that our section was
+            @param lineDelta the number of lines to shift the locations by
+            @return true iff all of the locations were shifted, or false if
+            any of them couldn't be
+        */
+        private boolean shiftLines(Construct c, SourceCodeSection old,
+                                   int lineDelta)
+        {
+            // 'c' may be null
+            Assert.require(old != null);
+
+            boolean result = true;
+
+            if (c != null)
+            {
+                SourceLocation loc = c.location();
+                if (loc != null)
+                {
+                    loc = shiftedLocation(loc, lineDelta);
+                    if (loc == null)
+                    {
+                        result = false;
+                    }
+                    else if (c instanceof SingleTokenConstruct)
+                    {
+                        SingleTokenConstruct tc = (SingleTokenConstruct) c;
+                        tc.setToken(tc.token().cloneToken(loc));
+                    }
+                    else if (c.canSetLocation())
+                    {
+                        c.setLocation(loc);
+                    }
+                    else
+                    {
+                        result = false;
+                    }
+                }
+
+                if (result && c.hasCorrectnessData())
+                {
+                    if (c.sourceCode() == old)
+                    {
+                        c.setSourceCode(_section);
+                    }
+                    else if (c.sourceCode() == old.whole())
+                    {
+                        c.setSourceCode(_section.whole());
+                    }
+                }
+
+                if (result)
+                {
+                    result = shiftSubconstructLines(c, old, lineDelta);
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            Shifts the locations of all of the subconstructs of the
+            specified construct by the specified number of lines.
+
+            @param c the construct whose subconstructs' locations are to be
+            shifted
+            @param old the section of the previous version of the source
+            code that our section was
+            @param lineDelta the number of lines to shift the locations by
+            @return true iff all of the locations were shifted, or false if
+            any of them couldn't be
+            @see #shiftLines(Construct, SourceCodeSection, int)
+        */
+        private boolean shiftSubconstructLines(Construct c,
+                                SourceCodeSection old, int lineDelta)
+        {
+            Assert.require(c != null);
+            Assert.require(old != null);
+
+            boolean result = true;
+
+            if (c instanceof AtriaConstructManager.Element)
+            {
+                AtriaConstructManager.Element e =
+                    (AtriaConstructManager.Element) c;
+                result =
+                    shiftLines(e.hasName() ? e.name() : null,
+                               old, lineDelta) &&
+                    shiftLines(e.attributeList(), old, lineDelta) &&
+                    shiftLines(e.contentItemList(), old, lineDelta);
+            }
+            else if (c instanceof AtriaConstructManager.Command)
+            {
+                AtriaConstructManager.Command cmd =
+                    (AtriaConstructManager.Command) c;
+                result =
+                    shiftLines(cmd.hasName() ? cmd.name() : null,
+                               old, lineDelta) &&
+                    shiftLines(cmd.argumentList(), old, lineDelta);
+            }
+            else if (c instanceof AtriaConstructManager.Attribute)
+            {
+                AtriaConstructManager.Attribute a =
+                    (AtriaConstructManager.Attribute) c;
+                result =
+                    shiftLines(a.hasName() ? a.name() : null,
+                               old, lineDelta) &&
+                    shiftLines(a.hasExpression() ? a.expression() : null,
+                               old, lineDelta);
+            }
+            else if (c instanceof AtriaConstructManager.ExpressionItem)
+            {
+                AtriaConstructManager.ExpressionItem item =
+                    (AtriaConstructManager.ExpressionItem) c;
+                result =
+                    shiftLines(item.hasExpression() ?
+                               item.expression() : null, old, lineDelta);
+            }
+            else if (c instanceof AtriaConstructManager.PrologueItem)
+            {
+                AtriaConstructManager.PrologueItem item =
+                    (AtriaConstructManager.PrologueItem) c;
+                result =
+                    shiftLines(item.hasCommand() ?
+                               item.command() : null, old, lineDelta);
+            }
+            else if (c instanceof AtriaConstructManager.LanguageSpecifier)
+            {
+                AtriaConstructManager.LanguageSpecifier spec =
+                    (AtriaConstructManager.LanguageSpecifier) c;
+                result =
+                    shiftLines(spec.hasName() ? spec.name() : null,
+                               old, lineDelta) &&
+                    shiftLines(spec.hasLanguageName() ?
+                               spec.languageName() : null, old, lineDelta);
+            }
+            else if (c instanceof AtriaConstructManager.Prologue)
+            {
+                AtriaConstructManager.Prologue p =
+                    (AtriaConstructManager.Prologue) c;
+                result =
+                    shiftLines(p.hasLanguageSpecifier() ?
+                               p.languageSpecifier() : null,
+                               old, lineDelta) &&
+                    shiftLines(p.prologueItemList(), old, lineDelta);
+            }
+            // Otherwise 'c' is a Name or a Text, which has no
+            // subconstructs.
+
+            return result;
+        }
+
+        /**
+            Shifts the locations of all of the constructs in the specified
+            list - and all of their subconstructs - by the specified number
+            of lines.
+
+            @param list the list of constructs whose locations are to be
+            shifted
+            @param old the section of the previous version of the source
+            code that our section was
+            @param lineDelta the number of lines to shift the locations by
+            @return true iff all of the locations were shifted, or false if
+            any of them couldn't be
+            @see #shiftLines(Construct, SourceCodeSection, int)
+        */
+        private boolean shiftLines(ConstructList list,
+                                   SourceCodeSection old, int lineDelta)
+        {
+            Assert.require(list != null);
+            Assert.require(old != null);
+
+            boolean result = true;
+
+            ConstructIterator iter = list.iterator();
+            while (result && iter.hasNext())
+            {
+                result = shiftLines(iter.next(), old, lineDelta);
+            }
+
+            return result;
+        }
+
+        /**
+            Shifts the locations of all of the errors recorded by the
+            specified error handler by the specified number of lines, and
+            makes the ones that refer to the specified section of the
+            previous version of the source code - or all of it - refer to
+            our section - or all of the current source code - instead.
+
+            @param errors the error handler whose errors are to be shifted
+            @param old the section of the previous version of the source
+            code that our section was
+            @param lineDelta the number of lines to shift the errors'
+            locations by
+            @return true iff all of the errors were shifted, or false if
+            any of them couldn't be
+        */
+        private boolean shiftErrors(RecordingErrorHandler errors,
+                                    SourceCodeSection old, int lineDelta)
+        {
+            Assert.require(errors != null);
+            Assert.require(old != null);
+
+            boolean result = true;
+
+            Iterator iter = errors.errors().iterator();
+            while (result && iter.hasNext())
+            {
+                PlackError error = (PlackError) iter.next();
+                result = (error instanceof AbstractPlackError);
+                if (result)
+                {
+                    AbstractPlackError e = (AbstractPlackError) error;
+                    if (e.sourceCode() == old)
+                    {
+                        e.setSourceCode(_section);
+                    }
+                    else if (e.sourceCode() == old.whole())
+                    {
+                        e.setSourceCode(_section.whole());
+                    }
+
+                    SourceLocation loc = e.location();
+                    if (loc != null)
+                    {
+                        loc = shiftedLocation(loc, lineDelta);
+                        result = (loc != null);
+                        if (result)
+                        {
+                            e.setLocation(loc);
+                        }
+                    }
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+        The class of RecordingErrorHandler that records the errors that
+        occur in parsing a section of our source code, and notes whether
+        there were any tokenizing errors on the section's first line.
+        <p>
+        In parsing all of the source code at once the first line of a
+        section is tokenized before the parsing of the section before it
+        is finished, so tokenizing errors on that line would be reported
+        before some of the errors found in parsing the previous section.
+    */
+    private static class ParsingErrorRecorder
+        extends RecordingErrorHandler
+    {
+        // Private fields
+
+        /**
+            The line number of the first line of the section whose parsing
+            errors we record, or 0 if tokenizing errors on it don't need to
+            be noted.
+        */
+        private int _firstLineNumber;
+
+        /**
+            Indicates whether any tokenizing errors on the first line of
+            the section have been recorded.
+        */
+        private boolean _wereFirstLineTokenizingErrors;
+
+
+        // Constructors
+
+        /**
+            Constructs a ParsingErrorRecorder.
+
+            @param firstLineNumber the line number of the first line of the
+            section whose parsing errors the recorder is to record, or 0 if
+            tokenizing errors on it don't need to be noted
+        */
+        public ParsingErrorRecorder(int firstLineNumber)
+        {
+            Assert.require(firstLineNumber >= 0);
+
+            _firstLineNumber = firstLineNumber;
+            _wereFirstLineTokenizingErrors = false;
+        }
+
+
+        // Public methods
+
+        /**
+            @return true iff any tokenizing errors on the first line of the
+            section have been recorded by this handler
+        */
+        public boolean wereFirstLineTokenizingErrors()
+        {
+            return _wereFirstLineTokenizingErrors;
+        }
+
+        /**
+            Shifts the line number of the first line of the section whose
+            parsing errors we record by the specified number of lines, as
+            happens when the section is moved.
+
+            @param lineDelta the number of lines to shift the line number by
+        */
+        public void shiftFirstLineNumber(int lineDelta)
+        {
+            if (_firstLineNumber > 0)
+            {
+                _firstLineNumber += lineDelta;
+            }
+            Assert.check(_firstLineNumber >= 0);
+        }
+
+
+        // Protected methods
+
+        /**
+            @see RecordingErrorHandler#handleError(TokenizingError, Tokenizer)
+        */
+        protected void handleError(TokenizingError error, Tokenizer source)
+        {
+            Assert.require(error != null);
+            Assert.require(source != null);
+
+            SourceLocation loc = error.location();
+            if (loc != null && _firstLineNumber > 0 &&
+                loc.startLineNumber() == _firstLineNumber)
+            {
+                _wereFirstLineTokenizingErrors = true;
+            }
+            super.handleError(error, source);
+        }
+    }
+}
@@ -0,0 +1,743 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.program.Program;
+import com.steelcandy.common.program.ProgramException;
+
+import com.steelcandy.plack.atria.constructs.AtriaConstructManager;
+import com.steelcandy.plack.atria.source.AtriaSourceSplitter;
+
+import com.steelcandy.plack.common.errors.*;
+import com.steelcandy.plack.common.source.*;
+import com.steelcandy.plack.common.generation.java.
+    CommonJavaGenerationUtilities;
+
+import java.io.*;
+import java.util.List;
+import java.util.Random;
+
+/**
+    A program that checks that validating Atria documents incrementally
+    after localised edits to them gives the same results as validating
+    all of them again.
+    <p>
+    Random edits are made to each document one after another using an
+    AtriaIncrementalDocument, and after each edit the Document and the
+    errors that it gives are compared to the ones that validating all of
+    the edited source code gives. The edits delete text, replace text with
+    fragments of Atria source code that are likely to change the document's
+    structure (such as newlines, indentation, brackets and line continuers)
+    and copy text from one part of the document to another, though they
+    never change a document's first line. Occasionally the whole document
+    is replaced with its original contents, so that it doesn't gradually
+    turn into nonsense.
+    <p>
+    Then the document is replaced with its original contents again and
+    edits that insert or delete text within a single line after its
+    first section are made to it one after another, and after each of
+    those it's also checked that only a small number of the document's
+    sections were tokenized and parsed again.
+
+    @author James MacKay
+    @see AtriaIncrementalDocument
+*/
+public class AtriaIncrementalEditCheckerProgram
+    implements Program
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaValidatorResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        ARGUMENTS_SUMMARY_MSG =
+            "EDIT_CHECK_ARGUMENTS_SUMMARY_MSG",
+        USAGE_DESCRIPTION_MSG =
+            "EDIT_CHECK_USAGE_DESCRIPTION_MSG",
+        RESULT_MSG =
+            "EDIT_CHECK_RESULT_MSG",
+        CANNOT_READ_MSG =
+            "EDIT_CHECK_CANNOT_READ_MSG",
+        MISMATCH_MSG =
+            "EDIT_CHECK_MISMATCH_MSG",
+        DOCUMENTS_DIFFER_MSG =
+            "EDIT_CHECK_DOCUMENTS_DIFFER_MSG",
+        ERRORS_DIFFER_MSG =
+            "EDIT_CHECK_ERRORS_DIFFER_MSG",
+        TOO_MANY_REPARSED_MSG =
+            "EDIT_CHECK_TOO_MANY_REPARSED_MSG",
+        NOT_INCREMENTAL_MSG =
+            "EDIT_CHECK_NOT_INCREMENTAL_MSG";
+
+    /** The option whose argument is the number of edits to make. */
+    private static final String COUNT_OPTION = "-n";
+
+    /**
+        The option whose argument is the seed from which the edits are
+        generated.
+    */
+    private static final String SEED_OPTION = "-s";
+
+    /** The default number of edits to make to each document. */
+    private static final int DEFAULT_COUNT = 1000;
+
+    /** The default seed from which the edits are generated. */
+    private static final long DEFAULT_SEED = 1L;
+
+    /**
+        The maximum number of characters that an edit removes or copies.
+    */
+    private static final int MAXIMUM_EDIT_SIZE = 40;
+
+    /**
+        On average the whole of a document is replaced with its original
+        contents once in this many edits.
+    */
+    private static final int RESET_INTERVAL = 20;
+
+    /**
+        The fragments of Atria source code that edits replace text with.
+    */
+    private static final String[] FRAGMENTS = new String[]
+    {
+        "\n", "\n\n", " ", "    ", "x", "name", "\"text\"", "\"", "[",
+        "]", "=", "\\", "#", "\n#", "[get val]", "\nelement\n",
+        "\n    child \"value\"\n", "\nitem attr=\"1\"\n    \"text\"\n"
+    };
+
+    /**
+        The number of edits within a single line that are made to each
+        document after the random edits.
+    */
+    private static final int LINE_EDIT_COUNT = 200;
+
+    /**
+        The maximum number of sections that validating a document after an
+        edit within a single line is allowed to tokenize and parse again.
+    */
+    private static final int MAXIMUM_LINE_EDIT_REPARSED_COUNT = 2;
+
+    /**
+        The fragments of Atria source code that edits within a single line
+        insert.
+    */
+    private static final String[] LINE_FRAGMENTS = new String[]
+    {
+        " ", "x", "name", "=", "[get val]"
+    };
+
+    /**
+        The minimum size of the sections that an AtriaIncrementalDocument
+        splits its source code into.
+    */
+    private static final int MINIMUM_SECTION_SIZE = 1;
+
+    /** The size of the buffer used to read documents. */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaIncrementalEditCheckerProgram.
+    */
+    public AtriaIncrementalEditCheckerProgram()
+    {
+        // empty
+    }
+
+
+    // Public methods
+
+    /**
+        @see Program#execute(String[])
+    */
+    public void execute(String[] args)
+        throws ProgramException
+    {
+        Assert.require(args != null);
+
+        int count = DEFAULT_COUNT;
+        long seed = DEFAULT_SEED;
+        int numArgs = args.length;
+        int start = 0;
+        while (start < numArgs && args[start].startsWith("-"))
+        {
+            String opt = args[start];
+            if (opt.equals(COUNT_OPTION) && start + 1 < numArgs)
+            {
+                count = parseCount(args[start + 1]);
+                start += 2;
+            }
+            else if (opt.equals(SEED_OPTION) && start + 1 < numArgs)
+            {
+                seed = parseSeed(args[start + 1]);
+                start += 2;
+            }
+            else
+            {
+                throw EXECUTOR.createBadUsageException(this);
+            }
+        }
+        if (start >= numArgs)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        Random random = new Random(seed);
+        WholeValidator validator = new WholeValidator();
+        for (int i = start; i < numArgs; i++)
+        {
+            check(new File(args[i]), count, random, validator);
+        }
+    }
+
+    /**
+        @see Program#argumentsSummary
+    */
+    public String argumentsSummary()
+    {
+        String result = _resources.getMessage(ARGUMENTS_SUMMARY_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see Program#usageDescription
+    */
+    public String usageDescription()
+    {
+        String result = _resources.getMessage(USAGE_DESCRIPTION_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Protected methods
+
+    /**
+        Makes the specified number of random edits to the document in the
+        specified file, checking after each one that validating it
+        incrementally gives the same results as validating all of it,
+        then checks edits within a single line of the document and writes
+        a summary of the checks to standard output.
+
+        @param f the pathname of the document to edit
+        @param count the number of edits to make to the document
+        @param random the source of the random numbers used to generate
+        the edits
+        @param validator the validator to use to validate all of the
+        document after each edit
+        @exception ProgramException thrown if 'f' couldn't be read, if
+        the results of validating the document incrementally and
+        validating all of it differ, or if validating the document after
+        an edit within a single line parsed too many of its sections again
+        @see #checkLineEdits
+    */
+    protected void check(File f, int count, Random random,
+                         WholeValidator validator)
+        throws ProgramException
+    {
+        Assert.require(f != null);
+        Assert.require(count > 0);
+        Assert.require(random != null);
+        Assert.require(validator != null);
+
+        String name = f.getPath();
+        String original;
+        try
+        {
+            original = readAll(f);
+        }
+        catch (IOException ex)
+        {
+            String msg = _resources.getMessage(CANNOT_READ_MSG, name,
+                                               ex.getMessage());
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+
+        AtriaIncrementalDocument doc =
+            new AtriaIncrementalDocument(original, name);
+        compare(doc, validator, 0, 0, 0, "");
+
+        long numReparsed = 0L;
+        long numSections = 0L;
+        int numWhole = 0;
+        for (int i = 1; i <= count; i++)
+        {
+            String text = doc.text();
+            int len = text.length();
+            int first = firstEditableIndex(text);
+            int start = first + random.nextInt(len - first + 1);
+            int end = Math.min(len,
+                            start + random.nextInt(MAXIMUM_EDIT_SIZE + 1));
+            String replacement = "";
+            int kind = random.nextInt(3);
+            if (random.nextInt(RESET_INTERVAL) == 0)
+            {
+                start = 0;
+                end = len;
+                replacement = original;
+            }
+            else if (kind == 1)
+            {
+                if (random.nextBoolean())
+                {
+                    end = start;
+                }
+                replacement = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+            }
+            else if (kind == 2)
+            {
+                end = start;
+                int from = random.nextInt(len + 1);
+                int to = Math.min(len,
+                            from + random.nextInt(MAXIMUM_EDIT_SIZE + 1));
+                replacement = text.substring(from, to);
+            }
+            // Otherwise the edit just deletes the characters.
+
+            doc.edit(start, end, replacement);
+            compare(doc, validator, i, start, end, replacement);
+
+            if (doc.sectionCount() > 0)
+            {
+                numReparsed += doc.reparsedSectionCount();
+                numSections += doc.sectionCount();
+            }
+            else
+            {
+                numWhole += 1;
+            }
+        }
+        checkLineEdits(doc, original, count + 1, random, validator);
+
+        Io.out.println(_resources.getMessage(RESULT_MSG, new Object[] {
+            name, new Integer(count), new Long(numReparsed),
+            new Long(numSections), new Integer(numWhole) }));
+        Io.out.flush();
+    }
+
+    /**
+        Replaces all of the specified document with its original contents
+        and then makes LINE_EDIT_COUNT random edits to it that each insert
+        or delete text within a single line after the document's first
+        section, checking after each one that validating the document
+        incrementally gives the same results as validating all of it, and
+        that it tokenized and parsed at most
+        MAXIMUM_LINE_EDIT_REPARSED_COUNT of its sections again.
+        <p>
+        The edits never change a line's indentation, and so never change
+        which section a line is in.
+
+        @param doc the document to edit
+        @param original the original contents of 'doc'
+        @param firstEditNumber the number of the first edit to make
+        @param random the source of the random numbers used to generate
+        the edits
+        @param validator the validator to use to validate all of the
+        document after each edit
+        @exception ProgramException thrown if the results of validating
+        the document incrementally and validating all of it differ, or if
+        too many of its sections were parsed again
+    */
+    protected void checkLineEdits(AtriaIncrementalDocument doc,
+                                  String original, int firstEditNumber,
+                                  Random random, WholeValidator validator)
+        throws ProgramException
+    {
+        Assert.require(doc != null);
+        Assert.require(original != null);
+        Assert.require(firstEditNumber > 0);
+        Assert.require(random != null);
+        Assert.require(validator != null);
+
+        doc.edit(0, doc.text().length(), original);
+        for (int i = 0; i < LINE_EDIT_COUNT; i++)
+        {
+            String text = doc.text();
+            int len = text.length();
+            int first = firstSectionEnd(doc);
+            int start = first + random.nextInt(len - first + 1);
+            if (isAfterIndentation(text, start))
+            {
+                int end = start;
+                String replacement = "";
+                char ch = (start < len) ? text.charAt(start) : '\n';
+                if (random.nextBoolean() &&
+                    (ch == ' ' || Character.isLetterOrDigit(ch)))
+                {
+                    end = start + 1;
+                }
+                else
+                {
+                    replacement = LINE_FRAGMENTS[
+                                    random.nextInt(LINE_FRAGMENTS.length)];
+                }
+
+                int editNumber = firstEditNumber + i;
+                doc.edit(start, end, replacement);
+                compare(doc, validator, editNumber, start, end,
+                        replacement);
+
+                String msg = null;
+                if (doc.sectionCount() == 0)
+                {
+                    msg = _resources.getMessage(NOT_INCREMENTAL_MSG,
+                        new Object[] { doc.fullName(),
+                            new Integer(editNumber), new Integer(start),
+                            new Integer(end), quoted(replacement),
+                            new Integer(MAXIMUM_LINE_EDIT_REPARSED_COUNT) });
+                }
+                else if (doc.reparsedSectionCount() >
+                            MAXIMUM_LINE_EDIT_REPARSED_COUNT)
+                {
+                    msg = _resources.getMessage(TOO_MANY_REPARSED_MSG,
+                        new Object[] { doc.fullName(),
+                            new Integer(editNumber), new Integer(start),
+                            new Integer(end), quoted(replacement),
+                            new Integer(doc.reparsedSectionCount()),
+                            new Integer(MAXIMUM_LINE_EDIT_REPARSED_COUNT) });
+                }
+                if (msg != null)
+                {
+                    throw EXECUTOR.createFailureException(this, msg);
+                }
+            }
+            // Otherwise the edit could change the line's indentation, so
+            // we skip it.
+        }
+    }
+
+    /**
+        Compares the results of validating the specified document
+        incrementally to the results of validating all of it.
+
+        @param doc the document to check
+        @param validator the validator to use to validate all of 'doc'
+        @param editNumber the number of the edit that was last made to
+        'doc', or 0 if none have been made
+        @param start the start of the range of characters that the edit
+        replaced
+        @param end the end of the range of characters that the edit
+        replaced
+        @param replacement the text that the edit replaced the characters
+        with
+        @exception ProgramException thrown if the results differ
+    */
+    protected void compare(AtriaIncrementalDocument doc,
+                           WholeValidator validator, int editNumber,
+                           int start, int end, String replacement)
+        throws ProgramException
+    {
+        Assert.require(doc != null);
+        Assert.require(validator != null);
+        Assert.require(editNumber >= 0);
+        Assert.require(replacement != null);
+
+        SourceCode code = new SourceCodeString(doc.text(), doc.fullName());
+
+        StringWriter wholeErrors = new StringWriter();
+        AtriaConstructManager.Document wholeDoc =
+            validator.validate(code, new WriterErrorHandler(wholeErrors));
+
+        StringWriter errors = new StringWriter();
+        doc.reportErrors(new WriterErrorHandler(errors));
+
+        String difference = null;
+        if (describe(doc.document()).equals(describe(wholeDoc)) == false)
+        {
+            difference = _resources.getMessage(DOCUMENTS_DIFFER_MSG);
+        }
+        else if (errors.toString().equals(wholeErrors.toString()) == false)
+        {
+            difference = _resources.getMessage(ERRORS_DIFFER_MSG,
+                            errors.toString(), wholeErrors.toString());
+        }
+
+        if (difference != null)
+        {
+            String msg = _resources.getMessage(MISMATCH_MSG, new Object[] {
+                code.fullName(), new Integer(editNumber),
+                new Integer(start), new Integer(end), quoted(replacement),
+                difference });
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+    }
+
+    /**
+        Note: the first line of a document - which usually contains its
+        language specifier - is never edited, since the parsers assume
+        that documents start with one.
+
+        @param text a document's source code
+        @return the index in 'text' of the first character that can be
+        edited
+    */
+    protected int firstEditableIndex(String text)
+    {
+        Assert.require(text != null);
+
+        int result = text.indexOf('\n') + 1;
+
+        Assert.ensure(result >= 0);
+        Assert.ensure(result <= text.length());
+        return result;
+    }
+
+    /**
+        @param text a document's source code
+        @param index an index in 'text'
+        @return true iff there's a character other than a space between
+        the start of the line that 'index' is on and 'index'
+    */
+    protected boolean isAfterIndentation(String text, int index)
+    {
+        Assert.require(text != null);
+        Assert.require(index >= 0);
+        Assert.require(index <= text.length());
+
+        boolean result = false;
+
+        for (int i = index - 1; i >= 0 && text.charAt(i) != '\n'; i--)
+        {
+            if (text.charAt(i) != ' ')
+            {
+                result = true;
+                break;  // for
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        @param doc a document
+        @return the index in the document's source code of the end of the
+        first of the sections that it's split into
+    */
+    protected int firstSectionEnd(AtriaIncrementalDocument doc)
+    {
+        Assert.require(doc != null);
+
+        int result;
+        try
+        {
+            AtriaSourceSplitter splitter =
+                new AtriaSourceSplitter(MINIMUM_SECTION_SIZE);
+            List sections = splitter.
+                split(new SourceCodeString(doc.text(), doc.fullName()));
+            result = ((SourceCodeSection) sections.get(0)).text().length();
+        }
+        catch (IOException ex)
+        {
+            // This shouldn't happen since the source code is already in
+            // memory.
+            throw new IllegalStateException(ex.getLocalizedMessage());
+        }
+
+        Assert.ensure(result >= 0);
+        Assert.ensure(result <= doc.text().length());
+        return result;
+    }
+
+    /**
+        @param replacement the text that an edit replaced characters with
+        @return 'replacement' quoted as a string literal, as it's to appear
+        in messages
+    */
+    protected String quoted(String replacement)
+    {
+        Assert.require(replacement != null);
+
+        String result =
+            CommonJavaGenerationUtilities.stringLiteral(replacement);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param doc a validated document, or null
+        @return a description of 'doc' - including the locations of all
+        of its subconstructs - or an empty string if 'doc' is null
+    */
+    protected String describe(AtriaConstructManager.Document doc)
+    {
+        String result = "";
+
+        if (doc != null)
+        {
+            result = doc.toString();
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param f the pathname of a file
+        @return all of the contents of 'f'
+        @exception IOException thrown if 'f' couldn't be read
+    */
+    protected String readAll(File f)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        StringBuffer result = new StringBuffer();
+        char[] buf = new char[READ_BUFFER_SIZE];
+        Reader r = new SourceCodeFile(f).reader();
+        try
+        {
+            while (true)
+            {
+                int numRead = r.read(buf);
+                if (numRead < 0)
+                {
+                    break;  // while
+                }
+                result.append(buf, 0, numRead);
+            }
+        }
+        finally
+        {
+            r.close();
+        }
+
+        Assert.ensure(result != null);
+        return result.toString();
+    }
+
+    /**
+        Parses the argument to the option that specifies the number of
+        edits to make.
+
+        @param arg the option argument to parse
+        @return the number of edits that 'arg' represents
+        @exception ProgramException thrown if 'arg' doesn't represent a
+        positive integer
+    */
+    protected int parseCount(String arg)
+        throws ProgramException
+    {
+        Assert.require(arg != null);
+
+        int result;
+
+        try
+        {
+            result = Integer.parseInt(arg);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+        if (result <= 0)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        Assert.ensure(result > 0);
+        return result;
+    }
+
+    /**
+        Parses the argument to the option that specifies the seed from
+        which the edits are generated.
+
+        @param arg the option argument to parse
+        @return the seed that 'arg' represents
+        @exception ProgramException thrown if 'arg' doesn't represent an
+        integer
+    */
+    protected long parseSeed(String arg)
+        throws ProgramException
+    {
+        Assert.require(arg != null);
+
+        long result;
+
+        try
+        {
+            result = Long.parseLong(arg);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        The class of interpreter used to validate all of a document's
+        source code in the usual way.
+    */
+    protected static class WholeValidator
+        extends AtriaAbstractInterpreter
+    {
+        // Public methods
+
+        /**
+            Validates all of the specified source code.
+
+            @param code the source code to validate
+            @param handler the error handler to use to handle any errors
+            that occur in validating 'code'
+            @return the Document that 'code' represents, or null if it
+            doesn't represent one
+        */
+        public AtriaConstructManager.Document
+            validate(SourceCode code, ErrorHandler handler)
+        {
+            Assert.require(code != null);
+            Assert.require(handler != null);
+
+            return toValidatedDocument(code, handler);
+                // may be null
+        }
+    }
+
+
+    // Main method
+
+    /**
+        Main method.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        AtriaIncrementalEditCheckerProgram p =
+            new AtriaIncrementalEditCheckerProgram();
+        EXECUTOR.executeAndExit(p, args);
+    }
+}
@@ -0,0 +1,903 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.plack.atria.base.AtriaInfo;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.io.ContentDigest;
+import com.steelcandy.common.io.Io;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+/**
+    A content-addressed cache of the results of converting documents. It
+    allows a document that has already been converted - by any process
+    using the same cache directory, from any pathname - to be 'converted'
+    again by just reading the result from the cache.
+    <p>
+    Each result is cached under a key that's the hash of the toolkit's
+    version, the kind of conversion, the options that affect its result
+    and the contents of the document that was converted. A result
+    consists of everything the conversion wrote to its output, everything
+    that it reported as error information and - if it failed - the message
+    describing why, so that replaying a cached result is
+    indistinguishable from doing the conversion again.
+    <p>
+    Each result is cached in its own file in the cache's directory, and
+    each file is written atomically, so a cache can safely be shared by
+    multiple threads and processes. Each file contains a digest of the
+    result it caches, and files whose results don't match their digests,
+    that are otherwise invalid or that were written in an older format
+    are treated as missing, and are deleted. Once the total size of the
+    cache files exceeds the cache's maximum size the least recently used
+    ones are deleted until the total is comfortably below it again.
+    Temporary files left behind by processes that died while adding
+    results to the cache are deleted too.
+    <p>
+    Note: the toolkit's version is the implementation version of the jar
+    file that this class was loaded from, so a cache should be cleared
+    (by deleting its directory) after running unreleased versions of the
+    toolkit that convert documents differently.
+
+    @author James MacKay
+    @see AtriaDocumentCache
+*/
+public class AtriaOutputCache
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        STATISTICS_MSG =
+            "OUTPUT_CACHE_STATISTICS_MSG";
+
+
+    /** The default maximum total size of a cache's files, in bytes. */
+    public static final long DEFAULT_MAXIMUM_SIZE = 256L * 1024 * 1024;
+
+    /**
+        The percentage of its maximum size that a cache's total size is
+        reduced to when files are evicted from it.
+    */
+    private static final int EVICTION_TARGET_PERCENTAGE = 90;
+
+    /** The extension of the files in which results are cached. */
+    private static final String CACHE_FILE_EXTENSION = ".ato";
+
+    /** The prefix of the temporary files that cache files are written to. */
+    private static final String TEMPORARY_FILE_PREFIX = "ato";
+
+    /**
+        The number of milliseconds after it was last modified that a
+        temporary file is assumed to have been left behind by a process
+        that died before it could be renamed to a cache file.
+    */
+    private static final long ORPHANED_TEMPORARY_FILE_AGE = 60L * 60 * 1000;
+
+    /** The number that every cache file starts with: "atoc" in ASCII. */
+    private static final int MAGIC_NUMBER = 0x61746f63;
+
+    /**
+        The version of the format of cache files. It must be incremented
+        whenever the format changes.
+    */
+    private static final int FORMAT_VERSION = 2;
+
+    /** The size of a cache file's header, in bytes. */
+    private static final int HEADER_SIZE = 8 + ContentDigest.LENGTH;
+
+    /** The character encoding of the strings in cache files. */
+    private static final String ENCODING = "UTF-8";
+
+    /** The version of the toolkit, as included in every key. */
+    private static final String TOOLKIT_VERSION =
+        AtriaInfo.toolkitVersion() + " " + FORMAT_VERSION;
+
+
+    // Private fields
+
+    /** The directory containing our cache files. */
+    private File _directory;
+
+    /** The maximum total size of our cache files, in bytes. */
+    private long _maximumSize;
+
+    /**
+        An estimate of the total size of our cache files, in bytes, or -1
+        if it hasn't been estimated yet.
+    */
+    private long _sizeEstimate;
+
+    /** The number of times a result was found in this cache. */
+    private long _hitCount;
+
+    /** The number of times a result wasn't found in this cache. */
+    private long _missCount;
+
+    /** The number of results that have been added to this cache. */
+    private long _storeCount;
+
+    /** The number of results that have been evicted from this cache. */
+    private long _evictionCount;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaOutputCache that caches results in the
+        specified directory - which will be created if it doesn't already
+        exist - and whose files' total size is limited to
+        DEFAULT_MAXIMUM_SIZE.
+
+        @param dir the pathname of the directory to cache results in
+    */
+    public AtriaOutputCache(File dir)
+    {
+        this(dir, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+        Constructs an AtriaOutputCache that caches results in the
+        specified directory, which will be created if it doesn't already
+        exist.
+
+        @param dir the pathname of the directory to cache results in
+        @param maxSize the maximum total size of the cache's files, in
+        bytes
+    */
+    public AtriaOutputCache(File dir, long maxSize)
+    {
+        Assert.require(dir != null);
+        Assert.require(maxSize > 0);
+
+        _directory = dir;
+        _maximumSize = maxSize;
+        _sizeEstimate = -1;
+        _hitCount = 0;
+        _missCount = 0;
+        _storeCount = 0;
+        _evictionCount = 0;
+    }
+
+
+    // Public methods
+
+    /**
+        Returns the key under which the result of the specified kind of
+        conversion with the specified options of a document with the
+        specified contents is cached.
+
+        @param kind the kind of conversion
+        @param options a string representing all of the conversion options
+        that affect its result, including the document's name if it
+        appears in the result
+        @param content the contents of the document to be converted
+        @return the key under which the conversion's result is cached
+    */
+    public String key(String kind, String options, byte[] content)
+    {
+        Assert.require(kind != null);
+        Assert.require(options != null);
+        Assert.require(content != null);
+
+        ContentDigest digest = new ContentDigest();
+        digest.add(TOOLKIT_VERSION);
+        digest.add(kind);
+        digest.add(options);
+        digest.add(content, 0, content.length);
+
+        String result = digest.stringValue();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Returns the result cached under the specified key, or null if
+        there isn't one.
+
+        @param key the key that the result is cached under
+        @return the result cached under 'key', or null if no valid result
+        is cached under it
+        @see #key(String, String, byte[])
+    */
+    public Entry load(String key)
+    {
+        Assert.require(key != null);
+
+        Entry result = null;
+
+        File f = cacheFile(key);
+        try
+        {
+            result = readEntry(Files.readAllBytes(f.toPath()));
+            if (result == null)
+            {
+                // Get rid of the invalid file so that it'll be replaced.
+                Io.delete(f);
+            }
+            else
+            {
+                // Our eviction policy uses the modification time as the
+                // time a file was last used.
+                f.setLastModified(System.currentTimeMillis());
+            }
+        }
+        catch (IOException ex)
+        {
+            // Treat the missing or unreadable file as a cache miss.
+            result = null;
+        }
+
+        recordLoad(result != null);
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Caches the specified result under the specified key, replacing
+        any result already cached under it, and then evicts the least
+        recently used results if the cache has grown too large.
+
+        @param key the key to cache the result under
+        @param e the result to cache
+        @exception IOException thrown if the result couldn't be cached
+        @see #key(String, String, byte[])
+    */
+    public void store(String key, Entry e)
+        throws IOException
+    {
+        Assert.require(key != null);
+        Assert.require(e != null);
+
+        if (_directory.isDirectory() == false)
+        {
+            _directory.mkdirs();  // we check whether it succeeded below
+        }
+        byte[] bytes = writeEntry(e);
+        File tmp = File.createTempFile(TEMPORARY_FILE_PREFIX,
+                                       CACHE_FILE_EXTENSION, _directory);
+        try
+        {
+            OutputStream out = new FileOutputStream(tmp);
+            try
+            {
+                out.write(bytes);
+            }
+            finally
+            {
+                out.close();
+            }
+            Files.move(tmp.toPath(), cacheFile(key).toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Io.delete(tmp);  // does nothing if it was moved
+        }
+
+        if (recordStore(bytes.length))
+        {
+            try
+            {
+                evict();
+            }
+            catch (RuntimeException ex)
+            {
+                // Ignore it, since the result was cached and failing to
+                // evict results (because another process deleted a file
+                // or a security manager forbids it, say) only means that
+                // the cache will stay too large until the next time.
+            }
+        }
+    }
+
+    /**
+        Tries to cache the specified result under the specified key,
+        ignoring any failure to do so since caching results is just an
+        optimization.
+
+        @param key the key to cache the result under
+        @param e the result to cache
+        @return true iff the result was cached
+        @see #store(String, AtriaOutputCache.Entry)
+    */
+    public boolean tryToStore(String key, Entry e)
+    {
+        Assert.require(key != null);
+        Assert.require(e != null);
+
+        boolean result = true;
+
+        try
+        {
+            store(key, e);
+        }
+        catch (IOException ex)
+        {
+            result = false;
+        }
+
+        return result;
+    }
+
+    /**
+        @return the pathname of the directory that this cache caches
+        results in
+    */
+    public File directory()
+    {
+        Assert.ensure(_directory != null);
+        return _directory;
+    }
+
+    /**
+        @return the number of times that a result was found in this cache
+    */
+    public synchronized long hitCount()
+    {
+        Assert.ensure(_hitCount >= 0);
+        return _hitCount;
+    }
+
+    /**
+        @return the number of times that a result wasn't found in this
+        cache
+    */
+    public synchronized long missCount()
+    {
+        Assert.ensure(_missCount >= 0);
+        return _missCount;
+    }
+
+    /**
+        @return the number of results that have been added to this cache
+    */
+    public synchronized long storeCount()
+    {
+        Assert.ensure(_storeCount >= 0);
+        return _storeCount;
+    }
+
+    /**
+        @return the number of results that have been evicted from this
+        cache
+    */
+    public synchronized long evictionCount()
+    {
+        Assert.ensure(_evictionCount >= 0);
+        return _evictionCount;
+    }
+
+    /**
+        @return a message summarizing this cache's hit and miss statistics
+    */
+    public synchronized String statisticsMessage()
+    {
+        long numLoads = _hitCount + _missCount;
+        long hitPercentage = 0;
+        if (numLoads > 0)
+        {
+            hitPercentage = (100 * _hitCount) / numLoads;
+        }
+
+        String result = _resources.getMessage(STATISTICS_MSG,
+            new Object[] { _directory.getPath(),
+                           String.valueOf(_hitCount),
+                           String.valueOf(_missCount),
+                           String.valueOf(hitPercentage),
+                           String.valueOf(_storeCount),
+                           String.valueOf(_evictionCount) });
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        @param key the key that a result is cached under
+        @return the pathname of the file that the result is (or would be)
+        cached in
+    */
+    private File cacheFile(String key)
+    {
+        Assert.require(key != null);
+
+        return new File(_directory, key + CACHE_FILE_EXTENSION);
+    }
+
+    /**
+        Records that a result was looked up in this cache.
+
+        @param wasFound true iff the result was found
+    */
+    private synchronized void recordLoad(boolean wasFound)
+    {
+        if (wasFound)
+        {
+            _hitCount += 1;
+        }
+        else
+        {
+            _missCount += 1;
+        }
+    }
+
+    /**
+        Records that a result of the specified size was added to this
+        cache.
+
+        @param size the size of the file that the result was cached in
+        @return true iff results should now be evicted from this cache
+    */
+    private synchronized boolean recordStore(long size)
+    {
+        Assert.require(size >= 0);
+
+        _storeCount += 1;
+        if (_sizeEstimate < 0)
+        {
+            _sizeEstimate = totalSize(cacheFiles());
+            deleteOrphanedTemporaryFiles();
+        }
+        else
+        {
+            _sizeEstimate += size;
+        }
+
+        return (_sizeEstimate > _maximumSize);
+    }
+
+    /**
+        Evicts the least recently used results from this cache until the
+        total size of its files is comfortably below its maximum size.
+        <p>
+        Since other processes may be adding results to and evicting them
+        from the same directory, the size is recomputed from the files
+        themselves rather than our estimate. For the same reason the files'
+        sizes and modification times are read once, before the files are
+        sorted, since they can change (or the files can disappear) while
+        we're sorting them.
+    */
+    private synchronized void evict()
+    {
+        File[] files = cacheFiles();
+        FileUse[] uses = new FileUse[files.length];
+        long size = 0;
+        for (int i = 0; i < files.length; i++)
+        {
+            uses[i] = new FileUse(files[i]);
+            size += uses[i].size();
+        }
+
+        long target = (_maximumSize / 100) * EVICTION_TARGET_PERCENTAGE;
+        if (size > _maximumSize)
+        {
+            Arrays.sort(uses);
+            for (int i = 0; i < uses.length && size > target; i++)
+            {
+                if (Io.delete(uses[i].file()))
+                {
+                    size -= uses[i].size();
+                    _evictionCount += 1;
+                }
+            }
+        }
+        _sizeEstimate = size;
+
+        deleteOrphanedTemporaryFiles();
+    }
+
+    /**
+        Deletes the temporary files in our directory that were last
+        modified long enough ago that they must have been left behind by
+        processes that died while adding results to a cache.
+
+        @see #ORPHANED_TEMPORARY_FILE_AGE
+    */
+    private void deleteOrphanedTemporaryFiles()
+    {
+        final long cutoff =
+            System.currentTimeMillis() - ORPHANED_TEMPORARY_FILE_AGE;
+        File[] files = _directory.listFiles(new FileFilter()
+        {
+            public boolean accept(File f)
+            {
+                return f.getName().endsWith(CACHE_FILE_EXTENSION) &&
+                    f.getName().startsWith(TEMPORARY_FILE_PREFIX) &&
+                    f.lastModified() < cutoff;
+            }
+        });
+        if (files != null)
+        {
+            for (int i = 0; i < files.length; i++)
+            {
+                Io.delete(files[i]);
+            }
+        }
+    }
+
+    /**
+        @return all of our cache files
+    */
+    private File[] cacheFiles()
+    {
+        File[] result = _directory.listFiles(new FileFilter()
+        {
+            public boolean accept(File f)
+            {
+                return f.getName().endsWith(CACHE_FILE_EXTENSION) &&
+                    f.getName().startsWith(TEMPORARY_FILE_PREFIX) == false;
+            }
+        });
+        if (result == null)
+        {
+            result = new File[0];
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        @param files files
+        @return the total size of all of the files in 'files'
+    */
+    private static long totalSize(File[] files)
+    {
+        Assert.require(files != null);
+
+        long result = 0;
+
+        for (int i = 0; i < files.length; i++)
+        {
+            result += files[i].length();
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        @param e a result
+        @return the contents of the cache file that 'e' is to be cached in
+        @exception IOException thrown if 'e' couldn't be encoded
+    */
+    private static byte[] writeEntry(Entry e)
+        throws IOException
+    {
+        Assert.require(e != null);
+
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        writeString(out, e.output());
+        writeString(out, e.diagnostics());
+        out.writeBoolean(e.hasFailed());
+        if (e.hasFailed())
+        {
+            writeString(out, e.failureMessage());
+        }
+        out.flush();
+        byte[] data = payload.toByteArray();
+
+        ByteArrayOutputStream bytes =
+            new ByteArrayOutputStream(HEADER_SIZE + data.length);
+        out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC_NUMBER);
+        out.writeInt(FORMAT_VERSION);
+        out.write(ContentDigest.of(data, 0, data.length));
+        out.write(data);
+        out.flush();
+
+        byte[] result = bytes.toByteArray();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param contents the contents of a cache file
+        @return the result cached in the file, or null if 'contents'
+        aren't valid (including if the cached result doesn't match its
+        digest)
+    */
+    private static Entry readEntry(byte[] contents)
+    {
+        Assert.require(contents != null);
+
+        Entry result = null;
+
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(contents));
+        try
+        {
+            byte[] digest = new byte[ContentDigest.LENGTH];
+            if (in.readInt() == MAGIC_NUMBER &&
+                in.readInt() == FORMAT_VERSION &&
+                in.read(digest) == digest.length &&
+                ContentDigest.matches(digest, contents, HEADER_SIZE,
+                                      contents.length - HEADER_SIZE))
+            {
+                String output = readString(in);
+                String diagnostics = readString(in);
+                String failureMessage = null;
+                if (in.readBoolean())
+                {
+                    failureMessage = readString(in);
+                }
+                if (in.read() < 0)
+                {
+                    result = new Entry(output, diagnostics, failureMessage);
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            // The file's truncated or otherwise invalid.
+            result = null;
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Writes the specified string as its length in bytes followed by its
+        bytes, since it may be too long to write using writeUTF().
+
+        @param out the stream to write the string to
+        @param str the string to write
+        @exception IOException thrown if the string couldn't be written
+    */
+    private static void writeString(DataOutputStream out, String str)
+        throws IOException
+    {
+        Assert.require(out != null);
+        Assert.require(str != null);
+
+        byte[] bytes = str.getBytes(ENCODING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+        @param in the stream to read a string from
+        @return the string read from 'in'
+        @exception IOException thrown if a string couldn't be read
+        @see #writeString(DataOutputStream, String)
+    */
+    private static String readString(DataInputStream in)
+        throws IOException
+    {
+        Assert.require(in != null);
+
+        int length = in.readInt();
+        if (length < 0 || length > in.available())
+        {
+            throw new StreamCorruptedException(String.valueOf(length));
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+
+        String result = new String(bytes, ENCODING);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        Records when a cache file was last used - that is, last modified -
+        and its size at the time that an instance was constructed. Instances
+        are ordered from the least to the most recently used.
+    */
+    private static class FileUse
+        implements Comparable
+    {
+        // Private fields
+
+        /** The cache file. */
+        private File _file;
+
+        /** The time that the file was last modified. */
+        private long _lastModified;
+
+        /** The size of the file, in bytes. */
+        private long _size;
+
+
+        // Constructors
+
+        /**
+            Constructs a FileUse.
+
+            @param f the cache file
+        */
+        public FileUse(File f)
+        {
+            Assert.require(f != null);
+
+            _file = f;
+            _lastModified = f.lastModified();
+            _size = f.length();
+        }
+
+
+        // Public methods
+
+        /**
+            @return the cache file
+        */
+        public File file()
+        {
+            Assert.ensure(_file != null);
+            return _file;
+        }
+
+        /**
+            @return the size of the file, in bytes
+        */
+        public long size()
+        {
+            Assert.ensure(_size >= 0);
+            return _size;
+        }
+
+        /**
+            @see Comparable#compareTo(Object)
+        */
+        public int compareTo(Object obj)
+        {
+            long other = ((FileUse) obj)._lastModified;
+
+            return (_lastModified < other) ? -1 :
+                        ((_lastModified > other) ? 1 : 0);
+        }
+    }
+
+    /**
+        The cached result of a conversion.
+    */
+    public static class Entry
+    {
+        // Private fields
+
+        /** Everything that the conversion wrote to its output. */
+        private String _output;
+
+        /**
+            Everything that the conversion reported as error information.
+        */
+        private String _diagnostics;
+
+        /**
+            The message describing why the conversion failed, or null if
+            it didn't fail.
+        */
+        private String _failureMessage;
+
+
+        // Constructors
+
+        /**
+            Constructs an Entry.
+
+            @param output everything that the conversion wrote to its
+            output
+            @param diagnostics everything that the conversion reported as
+            error information
+            @param failureMessage the message describing why the
+            conversion failed, or null if it didn't fail
+        */
+        public Entry(String output, String diagnostics,
+                     String failureMessage)
+        {
+            Assert.require(output != null);
+            Assert.require(diagnostics != null);
+            // 'failureMessage' may be null
+
+            _output = output;
+            _diagnostics = diagnostics;
+            _failureMessage = failureMessage;
+        }
+
+
+        // Public methods
+
+        /**
+            Replays the conversion by writing everything that it wrote to
+            its output and reported as error information to the specified
+            writers.
+            <p>
+            Note: the caller is responsible for reporting the failure, if
+            the conversion failed.
+
+            @param out the writer to write the conversion's output to
+            @param err the writer to write the conversion's error
+            information to
+            @see #failureMessage
+        */
+        public void replay(PrintWriter out, PrintWriter err)
+        {
+            Assert.require(out != null);
+            Assert.require(err != null);
+
+            err.write(_diagnostics);
+            err.flush();
+            out.write(_output);
+            out.flush();
+        }
+
+        /**
+            @return everything that the conversion wrote to its output
+        */
+        public String output()
+        {
+            Assert.ensure(_output != null);
+            return _output;
+        }
+
+        /**
+            @return everything that the conversion reported as error
+            information
+        */
+        public String diagnostics()
+        {
+            Assert.ensure(_diagnostics != null);
+            return _diagnostics;
+        }
+
+        /**
+            @return true iff the conversion failed
+        */
+        public boolean hasFailed()
+        {
+            return (_failureMessage != null);
+        }
+
+        /**
+            @return the message describing why the conversion failed
+        */
+        public String failureMessage()
+        {
+            Assert.require(hasFailed());
+
+            Assert.ensure(_failureMessage != null);
+            return _failureMessage;
+        }
+    }
+}
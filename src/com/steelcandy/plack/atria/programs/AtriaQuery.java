@@ -0,0 +1,759 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.Resources;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+    A compiled path expression that selects elements, attribute values or
+    text from a validated Atria document.
+    <p>
+    A query's syntax is a small subset of XPath's abbreviated syntax:
+    <pre>
+        query      := ('/' | '//')? step (('/' | '//') step)*
+        step       := nametest predicate* | '.' | '..'
+                    | '@' name | 'text()'
+        nametest   := name | '*'
+        predicate  := '[' integer ']'
+                    | '[' '@' name ('=' literal)? ']'
+                    | '[' name ('=' literal)? ']'
+                    | '[' 'text()' '=' literal ']'
+        literal    := '"' chars '"' | "'" chars "'"
+    </pre>
+    An '@' name or 'text()' step can only be a query's last step: it makes
+    the query select the values of the named attribute or the text of the
+    elements selected by the rest of the query. An element's text is the
+    concatenation of the values of its expression items (but not those of
+    its subelements), and a '[name="value"]' predicate is true of an
+    element iff it has a child element named 'name' whose text is 'value'.
+    An integer predicate selects the element at that (one-based) position
+    in the elements that its step selects from one context element, so
+    '//' steps with integer predicates behave as they do in XPath.
+    <p>
+    Queries are immutable, and so can be compiled once and then evaluated
+    any number of times, by any number of threads.
+
+    @author  James MacKay
+    @see AtriaQueryEngine
+*/
+public class AtriaQuery
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        QUERY_SYNTAX_ERROR_MSG = "QUERY_SYNTAX_ERROR_MSG";
+
+
+    /** The axes that a step can select elements along. */
+    static final int
+        CHILD_AXIS = 0,
+        DESCENDANT_AXIS = 1,
+        SELF_AXIS = 2,
+        PARENT_AXIS = 3;
+
+    /** The kinds of value that a query can select. */
+    static final int
+        ELEMENT_VALUE = 0,
+        ATTRIBUTE_VALUE = 1,
+        TEXT_VALUE = 2;
+
+    /** The kinds of predicate. */
+    static final int
+        POSITION_PREDICATE = 0,
+        ATTRIBUTE_PREDICATE = 1,
+        CHILD_PREDICATE = 2,
+        TEXT_PREDICATE = 3;
+
+
+    /** The name test that matches elements with any name. */
+    private static final String WILDCARD = "*";
+
+    /** The step that selects an element's text. */
+    private static final String TEXT_STEP = "text()";
+
+    /** The characters that can't appear in names. */
+    private static final String NON_NAME_CHARACTERS = "/[]@=*\"'() \t";
+
+
+    // Private fields
+
+    /** The text of this query. */
+    private String _text;
+
+    /**
+        Indicates whether this query is evaluated from the document rather
+        than from a context element.
+    */
+    private boolean _isAbsolute;
+
+    /** The steps that select this query's elements. */
+    private Step[] _steps;
+
+    /** The kind of value that this query selects. */
+    private int _valueKind;
+
+    /**
+        The name of the attribute whose values this query selects, or null
+        if it doesn't select attribute values.
+    */
+    private String _valueAttributeName;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaQuery.
+
+        @param text the query's text
+        @param isAbsolute true iff the query is evaluated from the document
+        @param steps the steps that select the query's elements
+        @param valueKind the kind of value that the query selects
+        @param valueAttributeName the name of the attribute whose values the
+        query selects, or null if it doesn't select attribute values
+        @see #compile(String)
+    */
+    private AtriaQuery(String text, boolean isAbsolute, Step[] steps,
+                       int valueKind, String valueAttributeName)
+    {
+        Assert.require(text != null);
+        Assert.require(steps != null);
+        Assert.require((valueKind == ATTRIBUTE_VALUE) ==
+                       (valueAttributeName != null));
+
+        _text = text;
+        _isAbsolute = isAbsolute;
+        _steps = steps;
+        _valueKind = valueKind;
+        _valueAttributeName = valueAttributeName;
+    }
+
+
+    // Public static methods
+
+    /**
+        Compiles the specified query text into a query.
+
+        @param text the text of the query to compile
+        @return the compiled query
+        @exception AtriaQueryException thrown if 'text' isn't a valid query
+    */
+    public static AtriaQuery compile(String text)
+        throws AtriaQueryException
+    {
+        Assert.require(text != null);
+
+        AtriaQuery result = new Parser(text).parse();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Public methods
+
+    /**
+        @return true iff this query is evaluated from the document rather
+        than from a context element
+    */
+    public boolean isAbsolute()
+    {
+        return _isAbsolute;
+    }
+
+    /**
+        @return true iff this query selects attribute values or text rather
+        than elements
+    */
+    public boolean selectsValues()
+    {
+        return (_valueKind != ELEMENT_VALUE);
+    }
+
+    /**
+        @return this query's text
+    */
+    public String toString()
+    {
+        Assert.ensure(_text != null);
+        return _text;
+    }
+
+
+    // Package-private methods
+
+    /**
+        @return the steps that select this query's elements: the array
+        must not be modified
+    */
+    Step[] steps()
+    {
+        Assert.ensure(_steps != null);
+        return _steps;
+    }
+
+    /**
+        @return the kind of value that this query selects: one of the
+        ELEMENT_VALUE, ATTRIBUTE_VALUE and TEXT_VALUE constants
+    */
+    int valueKind()
+    {
+        return _valueKind;
+    }
+
+    /**
+        @return the name of the attribute whose values this query selects,
+        or null if it doesn't select attribute values
+    */
+    String valueAttributeName()
+    {
+        // '_valueAttributeName' may be null
+        return _valueAttributeName;
+    }
+
+
+    // Inner classes
+
+    /**
+        A single step in a query, which selects elements along an axis from
+        each context element.
+    */
+    static class Step
+    {
+        // Private fields
+
+        /** The axis that this step selects elements along. */
+        private int _axis;
+
+        /**
+            The name of the elements that this step selects, or null if it
+            selects elements with any name.
+        */
+        private String _name;
+
+        /** The predicates that the elements this step selects satisfy. */
+        private Predicate[] _predicates;
+
+
+        // Constructors
+
+        /**
+            Constructs a Step.
+
+            @param axis the axis that the step selects elements along
+            @param name the name of the elements that the step selects, or
+            null if it selects elements with any name
+            @param predicates the predicates that the elements that the
+            step selects satisfy
+        */
+        Step(int axis, String name, Predicate[] predicates)
+        {
+            Assert.require(axis >= CHILD_AXIS && axis <= PARENT_AXIS);
+            // 'name' may be null
+            Assert.require(predicates != null);
+
+            _axis = axis;
+            _name = name;
+            _predicates = predicates;
+        }
+
+
+        // Public methods
+
+        /**
+            @return the axis that this step selects elements along
+        */
+        public int axis()
+        {
+            return _axis;
+        }
+
+        /**
+            @return the name of the elements that this step selects, or
+            null if it selects elements with any name
+        */
+        public String name()
+        {
+            // '_name' may be null
+            return _name;
+        }
+
+        /**
+            @return this step's predicates, in the order in which they're
+            to be applied: the array must not be modified
+        */
+        public Predicate[] predicates()
+        {
+            Assert.ensure(_predicates != null);
+            return _predicates;
+        }
+
+        /**
+            @return true iff any of this step's predicates depend on the
+            positions of the elements that it selects
+        */
+        public boolean isPositional()
+        {
+            boolean result = false;
+
+            for (int i = 0; i < _predicates.length && result == false; i++)
+            {
+                result = (_predicates[i].kind() == POSITION_PREDICATE);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+        A predicate in a step of a query.
+    */
+    static class Predicate
+    {
+        // Private fields
+
+        /** The kind of predicate that this is. */
+        private int _kind;
+
+        /**
+            The name of the attribute or child element that this predicate
+            tests, or null if it doesn't test one.
+        */
+        private String _name;
+
+        /**
+            The value that this predicate compares the attribute value or
+            text to, or null if it doesn't compare anything.
+        */
+        private String _value;
+
+        /**
+            The (one-based) position that this predicate selects, if it's
+            a position predicate.
+        */
+        private int _position;
+
+
+        // Constructors
+
+        /**
+            Constructs a Predicate.
+
+            @param kind the kind of predicate
+            @param name the name of the attribute or child element that the
+            predicate tests, or null if it doesn't test one
+            @param value the value that the predicate compares to, or null
+            if it doesn't compare anything
+            @param position the position that the predicate selects, if it's
+            a position predicate
+        */
+        Predicate(int kind, String name, String value, int position)
+        {
+            Assert.require(kind >= POSITION_PREDICATE &&
+                           kind <= TEXT_PREDICATE);
+            Assert.require(kind != POSITION_PREDICATE || position > 0);
+
+            _kind = kind;
+            _name = name;
+            _value = value;
+            _position = position;
+        }
+
+
+        // Public methods
+
+        /**
+            @return the kind of predicate that this is
+        */
+        public int kind()
+        {
+            return _kind;
+        }
+
+        /**
+            @return the name of the attribute or child element that this
+            predicate tests, or null if it doesn't test one
+        */
+        public String name()
+        {
+            // '_name' may be null
+            return _name;
+        }
+
+        /**
+            @return the value that this predicate compares to, or null if it
+            only tests for the existence of an attribute or child element
+        */
+        public String value()
+        {
+            // '_value' may be null
+            return _value;
+        }
+
+        /**
+            @return the (one-based) position that this predicate selects
+        */
+        public int position()
+        {
+            Assert.require(kind() == POSITION_PREDICATE);
+
+            return _position;
+        }
+    }
+
+    /**
+        The parser that compiles the text of a query.
+    */
+    private static class Parser
+    {
+        // Private fields
+
+        /** The text being parsed. */
+        private String _text;
+
+        /** The position in '_text' of the next character to parse. */
+        private int _pos;
+
+
+        // Constructors
+
+        /**
+            Constructs a Parser.
+
+            @param text the text to parse
+        */
+        Parser(String text)
+        {
+            Assert.require(text != null);
+
+            _text = text;
+            _pos = 0;
+        }
+
+
+        // Public methods
+
+        /**
+            @return the query that our text represents
+            @exception AtriaQueryException thrown if our text isn't a valid
+            query
+        */
+        public AtriaQuery parse()
+            throws AtriaQueryException
+        {
+            List steps = new ArrayList();
+            int valueKind = ELEMENT_VALUE;
+            String valueName = null;
+
+            boolean isAbsolute = false;
+            int axis = CHILD_AXIS;
+            if (lookingAt("//"))
+            {
+                isAbsolute = true;
+                axis = DESCENDANT_AXIS;
+                _pos += 2;
+            }
+            else if (lookingAt("/"))
+            {
+                isAbsolute = true;
+                _pos += 1;
+            }
+
+            while (true)
+            {
+                skipSpaces();
+                if (lookingAt("@"))
+                {
+                    check(axis == CHILD_AXIS);
+                    _pos += 1;
+                    valueKind = ATTRIBUTE_VALUE;
+                    valueName = parseName();
+                }
+                else if (lookingAt(TEXT_STEP))
+                {
+                    check(axis == CHILD_AXIS);
+                    _pos += TEXT_STEP.length();
+                    valueKind = TEXT_VALUE;
+                }
+                else
+                {
+                    steps.add(parseStep(axis));
+                }
+
+                skipSpaces();
+                if (_pos == _text.length())
+                {
+                    break;  // while
+                }
+                check(valueKind == ELEMENT_VALUE);
+                if (lookingAt("//"))
+                {
+                    axis = DESCENDANT_AXIS;
+                    _pos += 2;
+                }
+                else
+                {
+                    check(lookingAt("/"));
+                    axis = CHILD_AXIS;
+                    _pos += 1;
+                }
+            }
+            check(isAbsolute == false || steps.isEmpty() == false);
+
+            Step[] stepArray = new Step[steps.size()];
+            steps.toArray(stepArray);
+
+            AtriaQuery result = new AtriaQuery(_text, isAbsolute,
+                                    stepArray, valueKind, valueName);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+
+        // Private methods
+
+        /**
+            Parses a step that selects elements.
+
+            @param axis the axis that the step selects elements along
+            @return the step
+            @exception AtriaQueryException thrown if a valid step can't be
+            parsed from our text at the current position
+        */
+        private Step parseStep(int axis)
+            throws AtriaQueryException
+        {
+            Step result;
+
+            if (lookingAt(".."))
+            {
+                check(axis == CHILD_AXIS);
+                _pos += 2;
+                result = new Step(PARENT_AXIS, null, new Predicate[0]);
+            }
+            else if (lookingAt("."))
+            {
+                check(axis == CHILD_AXIS);
+                _pos += 1;
+                result = new Step(SELF_AXIS, null, new Predicate[0]);
+            }
+            else
+            {
+                String name = null;
+                if (lookingAt(WILDCARD))
+                {
+                    _pos += WILDCARD.length();
+                }
+                else
+                {
+                    name = parseName();
+                }
+
+                List predicates = new ArrayList();
+                skipSpaces();
+                while (lookingAt("["))
+                {
+                    _pos += 1;
+                    skipSpaces();
+                    predicates.add(parsePredicate());
+                    skipSpaces();
+                    check(lookingAt("]"));
+                    _pos += 1;
+                    skipSpaces();
+                }
+                Predicate[] predicateArray =
+                    new Predicate[predicates.size()];
+                predicates.toArray(predicateArray);
+
+                result = new Step(axis, name, predicateArray);
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            Parses the part of a predicate between its brackets.
+
+            @return the predicate
+            @exception AtriaQueryException thrown if a valid predicate can't
+            be parsed from our text at the current position
+        */
+        private Predicate parsePredicate()
+            throws AtriaQueryException
+        {
+            Predicate result;
+
+            if (_pos < _text.length() &&
+                Character.isDigit(_text.charAt(_pos)))
+            {
+                int start = _pos;
+                while (_pos < _text.length() &&
+                       Character.isDigit(_text.charAt(_pos)))
+                {
+                    _pos += 1;
+                }
+                int position = 0;
+                try
+                {
+                    position = Integer.parseInt(_text.substring(start, _pos));
+                }
+                catch (NumberFormatException ex)
+                {
+                    _pos = start;  // so the error is reported at the start
+                }
+                check(position > 0);
+                result = new Predicate(POSITION_PREDICATE, null, null,
+                                       position);
+            }
+            else
+            {
+                int kind;
+                String name = null;
+                if (lookingAt(TEXT_STEP))
+                {
+                    _pos += TEXT_STEP.length();
+                    kind = TEXT_PREDICATE;
+                }
+                else if (lookingAt("@"))
+                {
+                    _pos += 1;
+                    kind = ATTRIBUTE_PREDICATE;
+                    name = parseName();
+                }
+                else
+                {
+                    kind = CHILD_PREDICATE;
+                    name = parseName();
+                }
+
+                String value = null;
+                skipSpaces();
+                if (lookingAt("="))
+                {
+                    _pos += 1;
+                    skipSpaces();
+                    value = parseLiteral();
+                }
+                check(kind != TEXT_PREDICATE || value != null);
+                result = new Predicate(kind, name, value, 0);
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @return the name that starts at the current position in our
+            text
+            @exception AtriaQueryException thrown if there isn't a name at
+            the current position
+        */
+        private String parseName()
+            throws AtriaQueryException
+        {
+            int start = _pos;
+            while (_pos < _text.length() &&
+                   NON_NAME_CHARACTERS.indexOf(_text.charAt(_pos)) < 0)
+            {
+                _pos += 1;
+            }
+            check(_pos > start);
+
+            String result = _text.substring(start, _pos);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @return the value of the quoted literal that starts at the
+            current position in our text
+            @exception AtriaQueryException thrown if there isn't a quoted
+            literal at the current position
+        */
+        private String parseLiteral()
+            throws AtriaQueryException
+        {
+            check(lookingAt("\"") || lookingAt("'"));
+            char quote = _text.charAt(_pos);
+            int start = _pos + 1;
+            int end = _text.indexOf(quote, start);
+            check(end >= 0);
+            _pos = end + 1;
+
+            String result = _text.substring(start, end);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            Skips any spaces or tabs at the current position in our text.
+        */
+        private void skipSpaces()
+        {
+            while (_pos < _text.length() &&
+                   (_text.charAt(_pos) == ' ' || _text.charAt(_pos) == '\t'))
+            {
+                _pos += 1;
+            }
+        }
+
+        /**
+            @param str a string
+            @return true iff our text at the current position starts with
+            'str'
+        */
+        private boolean lookingAt(String str)
+        {
+            Assert.require(str != null);
+
+            return _text.startsWith(str, _pos);
+        }
+
+        /**
+            Checks that the specified condition is true, and throws an
+            exception that reports a syntax error at the current position
+            in our text if it isn't.
+
+            @param condition the condition to check
+            @exception AtriaQueryException thrown iff 'condition' is false
+        */
+        private void check(boolean condition)
+            throws AtriaQueryException
+        {
+            if (condition == false)
+            {
+                String msg = _resources.getMessage(QUERY_SYNTAX_ERROR_MSG,
+                                    _text, String.valueOf(_pos + 1));
+                throw new AtriaQueryException(msg);
+            }
+        }
+    }
+}
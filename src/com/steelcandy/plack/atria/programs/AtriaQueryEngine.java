@@ -0,0 +1,2196 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.atria.constructs.*;
+
+import com.steelcandy.plack.common.source.*;
+import com.steelcandy.plack.common.errors.*;
+import com.steelcandy.plack.common.constructs.*;
+
+import com.steelcandy.common.containers.Containers;
+import com.steelcandy.common.ints.IntIterator;
+import com.steelcandy.common.io.ContentDigest;
+import com.steelcandy.common.NoSuchItemException;
+import com.steelcandy.common.Resources;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+    Evaluates AtriaQueries directly against a validated Atria document,
+    without first converting it to XML or JDOM.
+    <p>
+    Loading a document numbers its elements in preorder and records each
+    one's name, parent, extent and attribute and content constructs in
+    parallel arrays, and queries are evaluated over those arrays. Element
+    positions are those preorder numbers: the document itself is the node
+    at position DOCUMENT_NODE, and its root element is the node right
+    after it. Attribute values and element text are only evaluated when a
+    query or caller needs them, and are then remembered, and queries'
+    results are computed lazily, so that a caller that only wants the
+    first result of a query doesn't pay for the rest of them.
+    <p>
+    An engine can also be given an index directory, in which case an
+    AtriaQueryIndex of each document it loads is read from (or built and
+    written to) that directory, and is used to find the candidates for
+    '//' steps. The index file is keyed on the hash of the document's
+    source code, just as the document cache is.
+    <p>
+    An engine can only load one document, but once it's loaded any number
+    of threads can query it at once. The elements that a query selects
+    are always in document order, and no element is selected more than
+    once.
+
+    @author  James MacKay
+    @see AtriaQuery
+    @see AtriaQueryIndex
+*/
+public class AtriaQueryEngine
+    extends AtriaAbstractInterpreter
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaProgramResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        UNKNOWN_NON_PREDEFINED_COMMAND_MSG =
+            "UNKNOWN_NON_PREDEFINED_COMMAND_MSG",
+        QUERY_DOCUMENT_LOAD_FAILED_MSG =
+            "QUERY_DOCUMENT_LOAD_FAILED_MSG";
+
+
+    /** The position of the document node. */
+    public static final int DOCUMENT_NODE = 0;
+
+    /** The position used to indicate that there is no node. */
+    public static final int NO_NODE = -1;
+
+
+    /** The extension of index files. */
+    private static final String INDEX_FILE_EXTENSION = ".atx";
+
+    /** The initial capacity of the node arrays. */
+    private static final int INITIAL_NODE_CAPACITY = 256;
+
+    /** The text output by the 'newline' command. */
+    private static final String NEWLINE = "\n";
+
+    /** The text output by the 'quote' command. */
+    private static final String QUOTE = "\"";
+
+
+    // Private fields
+
+    /**
+        The directory that index files are read from and written to, or
+        null if documents aren't to be indexed.
+    */
+    private File _indexDirectory;
+
+    /**
+        The index of our document, or null if our document hasn't been
+        indexed.
+    */
+    private AtriaQueryIndex _index;
+
+    /**
+        The error handler that we use to handle errors that occur in
+        loading our document and evaluating its values, or null if we
+        haven't loaded a document.
+    */
+    private ErrorHandler _handler;
+
+    /**
+        The 'top' command in the prologue of our document, or null if there
+        isn't one.
+    */
+    private AtriaConstructManager.Command _topCommand;
+
+    /**
+        The buffer that we're currently evaluating a value into, or null if
+        we aren't evaluating a value.
+    */
+    private StringBuffer _buffer;
+
+
+    /** The number of nodes in our document, including the document node. */
+    private int _nodeCount;
+
+    /**
+        The name ids of each of our nodes, or NO_NODE for the document
+        node.
+    */
+    private int[] _nameIds;
+
+    /**
+        The position of each node's parent, or NO_NODE for the document
+        node.
+    */
+    private int[] _parents;
+
+    /**
+        The position just past the last node in each node's subtree: the
+        descendants of node 'n' are exactly the nodes between n + 1 and
+        _ends[n] - 1.
+    */
+    private int[] _ends;
+
+    /**
+        The Element construct that each node was created from, or the 'top'
+        command for a root element that was created from one, or null for
+        the document node.
+    */
+    private Construct[] _constructs;
+
+    /**
+        The memoized text of each node, or null if a node's text hasn't
+        been evaluated yet.
+    */
+    private String[] _texts;
+
+    /**
+        The index into the attribute arrays of each node's first attribute:
+        the attributes of node 'n' are those from _firstAttributes[n] to
+        _firstAttributes[n + 1] - 1.
+    */
+    private int[] _firstAttributes;
+
+    /** The name id of each attribute. */
+    private int[] _attributeNameIds;
+
+    /** The Expression construct that gives each attribute's value. */
+    private Construct[] _attributeExpressions;
+
+    /**
+        The memoized value of each attribute, or null if an attribute's
+        value hasn't been evaluated yet.
+    */
+    private String[] _attributeValues;
+
+    /** The number of attributes in our document. */
+    private int _attributeCount;
+
+
+    /** The element and attribute names in our document, by name id. */
+    private List _names;
+
+    /**
+        A map from each of the element and attribute names in our document
+        to its name id (as an Integer).
+    */
+    private Map _nameIdsByName;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaQueryEngine.
+    */
+    public AtriaQueryEngine()
+    {
+        _indexDirectory = null;
+        _index = null;
+        _handler = null;
+        _topCommand = null;
+        _buffer = null;
+
+        _nodeCount = 0;
+        _attributeCount = 0;
+        _names = new ArrayList();
+        _nameIdsByName = Containers.createHashMap(64);
+    }
+
+
+    // Public methods
+
+    /**
+        Sets the directory that indexes of the documents that we load are
+        to be read from and written to. Documents aren't indexed unless
+        this method is called.
+
+        @param dir the pathname of the directory that index files are to be
+        read from and written to, or null if documents aren't to be indexed
+    */
+    public void setIndexDirectory(File dir)
+    {
+        Assert.require(isLoaded() == false);
+        // 'dir' may be null
+
+        _indexDirectory = dir;
+    }
+
+    /**
+        Loads the Atria document in the specified file so that it can be
+        queried. If we have an index directory then the document's index
+        is read from it if it's there, and is built and written to it
+        otherwise. Any error information will be output to standard error.
+
+        @param f the pathname of the Atria document file to load
+        @exception AtriaQueryException thrown if the document couldn't be
+        loaded
+        @see #setIndexDirectory(File)
+    */
+    public void load(File f)
+        throws AtriaQueryException
+    {
+        Assert.require(f != null);
+        Assert.require(isLoaded() == false);
+
+        _handler = createErrorHandler();
+        build(toValidatedDocument(f, _handler));
+
+        if (_indexDirectory != null)
+        {
+            loadIndex(f);
+        }
+
+        Assert.ensure(isLoaded());
+    }
+
+    /**
+        Loads the specified Atria source code so that it can be queried.
+        Any error information will be output to standard error.
+        <p>
+        Note: source code loaded by this method is never indexed unless
+        buildIndex() is called explicitly.
+
+        @param code the Atria source code to load
+        @exception AtriaQueryException thrown if the document couldn't be
+        loaded
+        @see #buildIndex
+    */
+    public void load(SourceCode code)
+        throws AtriaQueryException
+    {
+        Assert.require(code != null);
+        Assert.require(isLoaded() == false);
+
+        _handler = createErrorHandler();
+        build(toValidatedDocument(code, _handler));
+
+        Assert.ensure(isLoaded());
+    }
+
+    /**
+        @return true iff we've loaded a document
+    */
+    public boolean isLoaded()
+    {
+        return (_nodeCount > 0);
+    }
+
+    /**
+        Builds an index of our document, if it hasn't already been indexed.
+        Our document will then stay indexed for as long as we exist.
+    */
+    public synchronized void buildIndex()
+    {
+        Assert.require(isLoaded());
+
+        if (_index == null)
+        {
+            _index = AtriaQueryIndex.build(this);
+        }
+
+        Assert.ensure(index() != null);
+    }
+
+    /**
+        @return the index of our document, or null if it hasn't been
+        indexed
+    */
+    public synchronized AtriaQueryIndex index()
+    {
+        // '_index' may be null
+        return _index;
+    }
+
+
+    /**
+        Returns an iterator over the positions of the elements that the
+        specified query selects from our document. If the query selects
+        attribute values then the positions of the elements that have the
+        attribute are returned.
+
+        @param q the query to evaluate
+        @return an iterator over the positions of the elements that 'q'
+        selects, in document order
+    */
+    public IntIterator select(AtriaQuery q)
+    {
+        Assert.require(q != null);
+        Assert.require(isLoaded());
+
+        IntIterator result = select(q, DOCUMENT_NODE);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Returns an iterator over the positions of the elements that the
+        specified query selects from the specified context node. If the
+        query selects attribute values then the positions of the elements
+        that have the attribute are returned.
+
+        @param q the query to evaluate
+        @param context the position of the node that 'q' is to be evaluated
+        from if it isn't an absolute query
+        @return an iterator over the positions of the elements that 'q'
+        selects, in document order
+    */
+    public IntIterator select(AtriaQuery q, int context)
+    {
+        Assert.require(q != null);
+        Assert.require(isLoaded());
+        Assert.require(isNode(context));
+
+        if (q.isAbsolute())
+        {
+            context = DOCUMENT_NODE;
+        }
+        IntIterator result = new SingleNodeIterator(context);
+
+        AtriaQuery.Step[] steps = q.steps();
+        for (int i = 0; i < steps.length; i++)
+        {
+            result = stepIterator(steps[i], result);
+        }
+
+        if (q.valueKind() == AtriaQuery.ATTRIBUTE_VALUE)
+        {
+            final int nameId = nameId(q.valueAttributeName());
+            result = new FilteringIterator(result)
+            {
+                protected boolean accepts(int node)
+                {
+                    return (attributeIndex(node, nameId) >= 0);
+                }
+            };
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param q the query to evaluate
+        @return the position of the first element that 'q' selects from our
+        document, or NO_NODE if it doesn't select any
+        @see #select(AtriaQuery)
+    */
+    public int selectFirst(AtriaQuery q)
+    {
+        Assert.require(q != null);
+        Assert.require(isLoaded());
+
+        return selectFirst(q, DOCUMENT_NODE);
+    }
+
+    /**
+        @param q the query to evaluate
+        @param context the position of the node that 'q' is to be evaluated
+        from if it isn't an absolute query
+        @return the position of the first element that 'q' selects from
+        'context', or NO_NODE if it doesn't select any
+        @see #select(AtriaQuery, int)
+    */
+    public int selectFirst(AtriaQuery q, int context)
+    {
+        Assert.require(q != null);
+        Assert.require(isLoaded());
+        Assert.require(isNode(context));
+
+        int result = NO_NODE;
+
+        IntIterator iter = select(q, context);
+        if (iter.hasNext())
+        {
+            result = iter.next();
+        }
+
+        return result;
+    }
+
+    /**
+        Returns an iterator over the values that the specified query
+        selects from our document: the values of the attribute it selects,
+        if it selects one, and otherwise the text of the elements that it
+        selects.
+
+        @param q the query to evaluate
+        @return an iterator over the values (as Strings) that 'q' selects
+    */
+    public Iterator values(AtriaQuery q)
+    {
+        Assert.require(q != null);
+        Assert.require(isLoaded());
+
+        Iterator result = values(q, DOCUMENT_NODE);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Returns an iterator over the values that the specified query
+        selects from the specified context node: the values of the
+        attribute it selects, if it selects one, and otherwise the text of
+        the elements that it selects.
+
+        @param q the query to evaluate
+        @param context the position of the node that 'q' is to be evaluated
+        from if it isn't an absolute query
+        @return an iterator over the values (as Strings) that 'q' selects
+    */
+    public Iterator values(AtriaQuery q, int context)
+    {
+        Assert.require(q != null);
+        Assert.require(isLoaded());
+        Assert.require(isNode(context));
+
+        final IntIterator nodes = select(q, context);
+        final String attributeName = q.valueAttributeName();
+
+        Iterator result = new Iterator()
+        {
+            public boolean hasNext()
+            {
+                return nodes.hasNext();
+            }
+
+            public Object next()
+            {
+                if (hasNext() == false)
+                {
+                    throw new NoSuchElementException();
+                }
+
+                int node = nodes.next();
+                String result;
+                if (attributeName != null)
+                {
+                    result = attribute(node, attributeName);
+                }
+                else
+                {
+                    result = text(node);
+                }
+
+                Assert.ensure(result != null);
+                return result;
+            }
+
+            public void remove()
+            {
+                throw new UnsupportedOperationException();
+            }
+        };
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param q the query to evaluate
+        @return the first value that 'q' selects from our document, or null
+        if it doesn't select any
+        @see #values(AtriaQuery)
+    */
+    public String value(AtriaQuery q)
+    {
+        Assert.require(q != null);
+        Assert.require(isLoaded());
+
+        return value(q, DOCUMENT_NODE);
+    }
+
+    /**
+        @param q the query to evaluate
+        @param context the position of the node that 'q' is to be evaluated
+        from if it isn't an absolute query
+        @return the first value that 'q' selects from 'context', or null if
+        it doesn't select any
+        @see #values(AtriaQuery, int)
+    */
+    public String value(AtriaQuery q, int context)
+    {
+        Assert.require(q != null);
+        Assert.require(isLoaded());
+        Assert.require(isNode(context));
+
+        String result = null;
+
+        Iterator iter = values(q, context);
+        if (iter.hasNext())
+        {
+            result = (String) iter.next();
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+
+    /**
+        @return the number of nodes in our document, including the document
+        node: all nodes' positions are less than this
+    */
+    public int nodeCount()
+    {
+        Assert.require(isLoaded());
+
+        return _nodeCount;
+    }
+
+    /**
+        @param node a position
+        @return true iff 'node' is the position of one of our nodes
+    */
+    public boolean isNode(int node)
+    {
+        return (node >= DOCUMENT_NODE && node < _nodeCount);
+    }
+
+    /**
+        @return the position of our document's root element
+    */
+    public int rootElement()
+    {
+        Assert.require(isLoaded());
+
+        return DOCUMENT_NODE + 1;
+    }
+
+    /**
+        @param node the position of one of our elements
+        @return the name of the element at 'node'
+    */
+    public String name(int node)
+    {
+        Assert.require(isNode(node) && node != DOCUMENT_NODE);
+
+        String result = (String) _names.get(_nameIds[node]);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param node the position of one of our nodes
+        @return the position of the parent of the node at 'node', or
+        NO_NODE if it's the document node
+    */
+    public int parent(int node)
+    {
+        Assert.require(isNode(node));
+
+        return _parents[node];
+    }
+
+    /**
+        @param node the position of one of our nodes
+        @return the number of elements that are descendants of the node at
+        'node'
+    */
+    public int descendantCount(int node)
+    {
+        Assert.require(isNode(node));
+
+        return _ends[node] - node - 1;
+    }
+
+    /**
+        @param node the position of one of our elements
+        @return the text of the element at 'node': the concatenation of the
+        values of its expression items (but not of its subelements)
+    */
+    public String text(int node)
+    {
+        Assert.require(isNode(node) && node != DOCUMENT_NODE);
+
+        String result = _texts[node];
+        if (result == null)
+        {
+            result = evaluateText(node);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param node the position of one of our elements
+        @param name an attribute name
+        @return the value of the attribute named 'name' of the element at
+        'node', or null if it doesn't have such an attribute
+    */
+    public String attribute(int node, String name)
+    {
+        Assert.require(isNode(node) && node != DOCUMENT_NODE);
+        Assert.require(name != null);
+
+        String result = null;
+
+        int i = attributeIndex(node, nameId(name));
+        if (i >= 0)
+        {
+            result = attributeValue(node, i - _firstAttributes[node]);
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        @param node the position of one of our nodes
+        @return the number of attributes that the node at 'node' has
+    */
+    public int attributeCount(int node)
+    {
+        Assert.require(isNode(node));
+
+        return _firstAttributes[node + 1] - _firstAttributes[node];
+    }
+
+    /**
+        @param node the position of one of our elements
+        @param index the index of one of the element's attributes
+        @return the name of the index'th attribute of the element at 'node'
+    */
+    public String attributeName(int node, int index)
+    {
+        Assert.require(isNode(node));
+        Assert.require(index >= 0 && index < attributeCount(node));
+
+        int i = _firstAttributes[node] + index;
+        String result = (String) _names.get(_attributeNameIds[i]);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param node the position of one of our elements
+        @param index the index of one of the element's attributes
+        @return the value of the index'th attribute of the element at
+        'node'
+    */
+    public String attributeValue(int node, int index)
+    {
+        Assert.require(isNode(node));
+        Assert.require(index >= 0 && index < attributeCount(node));
+
+        int i = _firstAttributes[node] + index;
+        String result = _attributeValues[i];
+        if (result == null)
+        {
+            result = evaluateAttribute(i);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Visitor methods
+
+    /**
+        @see AtriaConstructVisitor#visitDocument(AtriaConstructManagerBase.Document, ErrorHandler)
+    */
+    public void visitDocument(AtriaConstructManager.
+        Document c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        Assert.unreachable();
+            // since we build our nodes from documents ourselves
+    }
+
+    /**
+        @see AtriaConstructVisitor#visitPrologue(AtriaConstructManagerBase.Prologue, ErrorHandler)
+    */
+    public void visitPrologue(AtriaConstructManager.
+        Prologue c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        visitPrologueSubconstructs(c, handler);
+    }
+
+    /**
+        @see AtriaConstructVisitor#visitPrologueItem(AtriaConstructManagerBase.PrologueItem, ErrorHandler)
+    */
+    public void visitPrologueItem(AtriaConstructManager.
+        PrologueItem c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        visitPrologueItemSubconstructs(c, handler);
+    }
+
+    /**
+        @see AtriaConstructVisitor#visitElement(AtriaConstructManagerBase.Element, ErrorHandler)
+    */
+    public void visitElement(AtriaConstructManager.
+        Element c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        Assert.unreachable();
+            // since we build our nodes from elements ourselves
+    }
+
+    /**
+        @see AtriaConstructVisitor#visitExpressionItem(AtriaConstructManagerBase.ExpressionItem, ErrorHandler)
+    */
+    public void visitExpressionItem(AtriaConstructManager.
+        ExpressionItem c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        visitExpressionItemSubconstructs(c, handler);
+    }
+
+    /**
+        @see AtriaConstructVisitor#visitAttribute(AtriaConstructManagerBase.Attribute, ErrorHandler)
+    */
+    public void visitAttribute(AtriaConstructManager.
+        Attribute c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        Assert.unreachable();
+            // since we record attributes' expressions ourselves
+    }
+
+    /**
+        @see AtriaConstructVisitor#visitText(AtriaConstructManagerBase.Text, ErrorHandler)
+    */
+    public void visitText(AtriaConstructManager.
+        Text c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        outputText(MANAGER.contents(c));
+    }
+
+    /**
+        @see AtriaConstructVisitor#visitName(AtriaConstructManagerBase.Name, ErrorHandler)
+    */
+    public void visitName(AtriaConstructManager.Name c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        Assert.unreachable();
+            // since names should never get visited by this visitor
+    }
+
+
+    /**
+        @see AtriaCommandConstructVisitor#visitGetCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitGetCommand(AtriaConstructManager.Command c,
+                                ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        outputText(getVariable(c, handler));
+    }
+
+    /**
+        @see AtriaCommandConstructVisitor#visitJoinCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitJoinCommand(AtriaConstructManager.Command c,
+                                 ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        visitAll(c.argumentList(), handler);
+    }
+
+    /**
+        @see AtriaCommandConstructVisitor#visitNamespaceCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitNamespaceCommand(AtriaConstructManager.Command c,
+                                      ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        // Namespace declarations aren't queryable, so we ignore them.
+    }
+
+    /**
+        @see AtriaCommandConstructVisitor#visitNewlineCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitNewlineCommand(AtriaConstructManager.Command c,
+                                    ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        outputText(NEWLINE);
+    }
+
+    /**
+        @see AtriaCommandConstructVisitor#visitQuoteCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitQuoteCommand(AtriaConstructManager.Command c,
+                                  ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        outputText(QUOTE);
+    }
+
+    /**
+        @see AtriaCommandConstructVisitor#visitQuotedCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitQuotedCommand(AtriaConstructManager.Command c,
+                                   ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        outputText(QUOTE);
+        visitAll(c.argumentList(), handler);  // should just be one
+        outputText(QUOTE);
+    }
+
+    /**
+        @see AtriaCommandConstructVisitor#visitSetCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitSetCommand(AtriaConstructManager.Command c,
+                                ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        String value = evaluate(c.argumentList().get(1));
+        setVariable(c, value, handler);
+    }
+
+    /**
+        @see AtriaCommandConstructVisitor#visitTopCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitTopCommand(AtriaConstructManager.Command c,
+                                ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        Assert.check(_topCommand == null);
+            // since there should be at most one 'top' command
+        _topCommand = c;
+    }
+
+    /**
+        @see AtriaCommandConstructVisitor#visitNonPredefinedCommand(AtriaConstructManagerBase.Command, ErrorHandler)
+    */
+    public void visitNonPredefinedCommand(AtriaConstructManager.Command c,
+                                          ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        // We don't define any non-predefined commands.
+        String msg = _resources.
+            getMessage(UNKNOWN_NON_PREDEFINED_COMMAND_MSG,
+                       MANAGER.commandName(c));
+        handleRuntimeError(FATAL_ERROR_LEVEL, msg, c.name(), handler);
+    }
+
+
+    // Private methods
+
+    /**
+        Builds our nodes from the specified validated document.
+
+        @param doc the validated document to build our nodes from, or null
+        if the document couldn't be validated
+        @exception AtriaQueryException thrown if our nodes couldn't be
+        built
+    */
+    private void build(AtriaConstructManager.Document doc)
+        throws AtriaQueryException
+    {
+        Assert.require(_handler != null);
+
+        if (doc != null && haveBeenErrors(_handler) == false)
+        {
+            // Process the prologue to set all of the variables.
+            doc.prologue().accept(this, _handler);
+        }
+        if (doc == null || haveBeenErrors(_handler))
+        {
+            String msg = _resources.
+                getMessage(QUERY_DOCUMENT_LOAD_FAILED_MSG);
+            throw new AtriaQueryException(msg);
+        }
+
+        _nameIds = new int[INITIAL_NODE_CAPACITY];
+        _parents = new int[INITIAL_NODE_CAPACITY];
+        _ends = new int[INITIAL_NODE_CAPACITY];
+        _constructs = new Construct[INITIAL_NODE_CAPACITY];
+        _firstAttributes = new int[INITIAL_NODE_CAPACITY];
+        _attributeNameIds = new int[INITIAL_NODE_CAPACITY];
+        _attributeExpressions = new Construct[INITIAL_NODE_CAPACITY];
+
+        int parent = addNode(null, NO_NODE, null, null);
+        Assert.check(parent == DOCUMENT_NODE);
+        if (_topCommand != null)
+        {
+            // The root element is specified by the 'top' command, and its
+            // arguments after the first should be Attributes.
+            String name = _topCommand.nameArgumentAttribute().value();
+            ConstructList attributes = null;
+            if (_topCommand.argumentCount() > 1)
+            {
+                attributes = _topCommand.argumentList().subList(1);
+                    // 'subList()' skips the element name argument
+            }
+            parent = addNode(name, DOCUMENT_NODE, _topCommand, attributes);
+        }
+        ConstructList elements = doc.elementList();
+        int size = elements.size();
+        for (int i = 0; i < size; i++)
+        {
+            addElement((AtriaConstructManager.Element) elements.get(i),
+                       parent);
+        }
+        _ends[parent] = _nodeCount;
+        _ends[DOCUMENT_NODE] = _nodeCount;
+        _firstAttributes[_nodeCount] = _attributeCount;
+
+        _texts = new String[_nodeCount];
+        _attributeValues = new String[_attributeCount];
+    }
+
+    /**
+        Adds a node for the specified element and for each of its
+        subelements.
+
+        @param e the element to add nodes for
+        @param parent the position of the node's parent
+    */
+    private void addElement(AtriaConstructManager.Element e, int parent)
+    {
+        Assert.require(e != null);
+        Assert.require(parent >= DOCUMENT_NODE && parent < _nodeCount);
+
+        int node = addNode(MANAGER.toText(e.name()), parent, e,
+                           e.attributeList());
+
+        ConstructList items = e.contentItemList();
+        int size = items.size();
+        for (int i = 0; i < size; i++)
+        {
+            Construct item = items.get(i);
+            if (item instanceof AtriaConstructManager.Element)
+            {
+                addElement((AtriaConstructManager.Element) item, node);
+            }
+        }
+        _ends[node] = _nodeCount;
+    }
+
+    /**
+        Adds a node with the specified information.
+
+        @param name the node's name, or null if it's the document node
+        @param parent the position of the node's parent, or NO_NODE if
+        it's the document node
+        @param c the construct that the node was created from, or null if
+        it's the document node
+        @param attributes the node's Attributes, or null if it's the
+        document node
+        @return the node's position
+    */
+    private int addNode(String name, int parent, Construct c,
+                        ConstructList attributes)
+    {
+        int result = _nodeCount;
+
+        if (result + 1 >= _parents.length)
+        {
+            int capacity = 2 * _parents.length;
+            _nameIds = grow(_nameIds, capacity);
+            _parents = grow(_parents, capacity);
+            _ends = grow(_ends, capacity);
+            _firstAttributes = grow(_firstAttributes, capacity);
+
+            Construct[] constructs = new Construct[capacity];
+            System.arraycopy(_constructs, 0, constructs, 0, result);
+            _constructs = constructs;
+        }
+        _nameIds[result] = (name != null) ? internName(name) : NO_NODE;
+        _parents[result] = parent;
+        _ends[result] = result + 1;
+        _constructs[result] = c;
+        _firstAttributes[result] = _attributeCount;
+
+        int size = (attributes != null) ? attributes.size() : 0;
+        if (_attributeCount + size > _attributeNameIds.length)
+        {
+            int capacity = Math.max(2 * _attributeNameIds.length,
+                                    _attributeCount + size);
+            _attributeNameIds = grow(_attributeNameIds, capacity);
+
+            Construct[] exprs = new Construct[capacity];
+            System.arraycopy(_attributeExpressions, 0, exprs, 0,
+                             _attributeCount);
+            _attributeExpressions = exprs;
+        }
+        for (int i = 0; i < size; i++)
+        {
+            AtriaConstructManager.Attribute attr =
+                (AtriaConstructManager.Attribute) attributes.get(i);
+            _attributeNameIds[_attributeCount] =
+                internName(MANAGER.toText(attr.name()));
+            _attributeExpressions[_attributeCount] = attr.expression();
+            _attributeCount += 1;
+        }
+
+        _nodeCount += 1;
+
+        return result;
+    }
+
+    /**
+        @param name an element or attribute name
+        @return the name id of 'name', after giving it one if it doesn't
+        already have one
+    */
+    private int internName(String name)
+    {
+        Assert.require(name != null);
+
+        int result;
+
+        Integer id = (Integer) _nameIdsByName.get(name);
+        if (id == null)
+        {
+            result = _names.size();
+            _names.add(name);
+            _nameIdsByName.put(name, new Integer(result));
+        }
+        else
+        {
+            result = id.intValue();
+        }
+
+        return result;
+    }
+
+    /**
+        @param name an element or attribute name, or null
+        @return the name id of 'name', or NO_NODE if 'name' is null or no
+        element or attribute in our document has that name
+    */
+    private int nameId(String name)
+    {
+        int result = NO_NODE;
+
+        if (name != null)
+        {
+            Integer id = (Integer) _nameIdsByName.get(name);
+            if (id != null)
+            {
+                result = id.intValue();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        @param node the position of one of our nodes
+        @param nameId the name id of an attribute name
+        @return the index in the attribute arrays of the attribute of the
+        node at 'node' whose name has the name id 'nameId', or -1 if there
+        is no such attribute
+    */
+    private int attributeIndex(int node, int nameId)
+    {
+        int result = -1;
+
+        int end = _firstAttributes[node + 1];
+        for (int i = _firstAttributes[node]; i < end && result < 0; i++)
+        {
+            if (_attributeNameIds[i] == nameId)
+            {
+                result = i;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        Evaluates, remembers and returns the value of the attribute with
+        the specified index in the attribute arrays.
+
+        @param i the index of the attribute in the attribute arrays
+        @return the attribute's value
+    */
+    private String evaluateAttribute(int i)
+    {
+        Assert.require(i >= 0 && i < _attributeCount);
+
+        String result = evaluate(_attributeExpressions[i]);
+        _attributeValues[i] = result;
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Evaluates, remembers and returns the text of the element at the
+        specified position.
+
+        @param node the position of one of our elements
+        @return the element's text
+    */
+    private String evaluateText(int node)
+    {
+        Assert.require(isNode(node) && node != DOCUMENT_NODE);
+
+        String result = "";
+
+        Construct c = _constructs[node];
+        if (c instanceof AtriaConstructManager.Element)
+        {
+            ConstructList items =
+                ((AtriaConstructManager.Element) c).contentItemList();
+            StringBuffer buf = new StringBuffer();
+            int size = items.size();
+            for (int i = 0; i < size; i++)
+            {
+                Construct item = items.get(i);
+                if (item instanceof AtriaConstructManager.Element == false)
+                {
+                    buf.append(evaluate(item));
+                }
+            }
+            result = buf.toString();
+        }
+        _texts[node] = result;
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Evaluates the specified construct, which represents all or part of
+        the value of an attribute, variable or element's text.
+        <p>
+        Note: this is the only method that uses our '_buffer', so it is
+        synchronized so that we can evaluate values for several threads.
+
+        @param c the construct to evaluate
+        @return the value of 'c'
+    */
+    private synchronized String evaluate(Construct c)
+    {
+        Assert.require(c != null);
+
+        String result;
+
+        StringBuffer oldBuffer = _buffer;
+        try
+        {
+            _buffer = new StringBuffer();
+            c.accept(this, _handler);
+            result = _buffer.toString();
+        }
+        finally
+        {
+            _buffer = oldBuffer;
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Outputs the specified text by appending it to the current buffer.
+
+        @param text the text to output
+    */
+    private void outputText(String text)
+    {
+        Assert.require(text != null);
+        Assert.require(_buffer != null);
+
+        _buffer.append(text);
+    }
+
+    /**
+        Reads the index of the document in the specified file from our
+        index directory, or builds it and writes it there if it isn't
+        there. Failing to write the index isn't considered to be an error,
+        since it only means that it will have to be built again the next
+        time the document is loaded.
+
+        @param f the pathname of the Atria document file that we've loaded
+    */
+    private void loadIndex(File f)
+    {
+        Assert.require(f != null);
+        Assert.require(_indexDirectory != null);
+        Assert.require(isLoaded());
+
+        File indexFile = null;
+        try
+        {
+            String hash = ContentDigest.of(f);
+            indexFile = new File(_indexDirectory,
+                                 hash + INDEX_FILE_EXTENSION);
+        }
+        catch (IOException ex)
+        {
+            indexFile = null;  // so we won't try to write the index
+        }
+
+        AtriaQueryIndex index = null;
+        if (indexFile != null)
+        {
+            index = AtriaQueryIndex.read(indexFile, _nodeCount);
+        }
+        if (index == null)
+        {
+            index = AtriaQueryIndex.build(this);
+            if (indexFile != null)
+            {
+                try
+                {
+                    index.write(indexFile);
+                }
+                catch (IOException ex)
+                {
+                    // Ignore it: see the comment above.
+                }
+            }
+        }
+
+        synchronized (this)
+        {
+            _index = index;
+        }
+    }
+
+
+    // Query evaluation methods
+
+    /**
+        Returns an iterator over the elements that the specified step
+        selects from the specified context nodes.
+
+        @param step the step
+        @param contexts an iterator over the context nodes, which must be
+        in document order and unique
+        @return an iterator over the elements that 'step' selects from the
+        context nodes in 'contexts', in document order
+    */
+    private IntIterator stepIterator(AtriaQuery.Step step,
+                                     IntIterator contexts)
+    {
+        Assert.require(step != null);
+        Assert.require(contexts != null);
+
+        IntIterator result;
+
+        switch (step.axis())
+        {
+        case AtriaQuery.SELF_AXIS:
+            result = contexts;
+            break;
+
+        case AtriaQuery.PARENT_AXIS:
+            result = parentIterator(contexts);
+            break;
+
+        case AtriaQuery.CHILD_AXIS:
+            result = new ChildStepIterator(step, contexts);
+            break;
+
+        case AtriaQuery.DESCENDANT_AXIS:
+            if (step.isPositional())
+            {
+                // Positions are relative to each descendant-or-self node
+                // of the context nodes, as they are for '//' in XPath.
+                result = new ChildStepIterator(step,
+                            new DescendantStepIterator(null, contexts));
+            }
+            else
+            {
+                result = new DescendantStepIterator(step, contexts);
+            }
+            break;
+
+        default:
+            Assert.unreachable();
+            result = null;  // keeps the compiler happy
+            break;
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Note: this method consumes all of the context nodes, since the
+        parents of nodes in document order aren't necessarily in document
+        order, but nothing else is evaluated until it's needed.
+
+        @param contexts an iterator over the context nodes
+        @return an iterator over the parents of the context nodes, in
+        document order
+    */
+    private IntIterator parentIterator(IntIterator contexts)
+    {
+        Assert.require(contexts != null);
+
+        final BitSet parents = new BitSet(_nodeCount);
+        while (contexts.hasNext())
+        {
+            int parent = _parents[contexts.next()];
+            if (parent != NO_NODE)
+            {
+                parents.set(parent);
+            }
+        }
+
+        IntIterator result = new LookaheadIntIterator()
+        {
+            private int _last = -1;
+
+            protected int computeNext()
+            {
+                _last = parents.nextSetBit(_last + 1);
+                return (_last >= 0) ? _last : NO_NODE;
+            }
+        };
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Returns an iterator over the elements in the range of positions
+        from 'start' to 'end' - 1 that are named 'nameId', and (if we have
+        an index and 'step' is non-null) that satisfy the first of the
+        step's predicates that our index can be used to evaluate.
+
+        @param step the step that the candidates are for, or null if the
+        candidates are all descendants named 'nameId'
+        @param nameId the name id of the candidates' names, or NO_NODE if
+        they can have any name
+        @param start the first position in the range
+        @param end the position just past the last position in the range
+        @return an iterator over the candidates, in document order
+    */
+    private IntIterator descendantCandidates(AtriaQuery.Step step,
+                                             int nameId, int start, int end)
+    {
+        Assert.require(start <= end);
+
+        IntIterator result;
+
+        AtriaQueryIndex index = index();
+        int[] postings = null;
+        if (index != null && nameId != NO_NODE)
+        {
+            postings = index.elementsNamed((String) _names.get(nameId));
+            AtriaQuery.Predicate[] preds =
+                (step != null) ? step.predicates() : null;
+            for (int i = 0; preds != null && i < preds.length; i++)
+            {
+                AtriaQuery.Predicate p = preds[i];
+                if (p.kind() == AtriaQuery.ATTRIBUTE_PREDICATE &&
+                    p.value() != null)
+                {
+                    int[] attrPostings =
+                        index.elementsWithAttribute(p.name(), p.value());
+                    if (attrPostings.length < postings.length)
+                    {
+                        postings = attrPostings;
+                    }
+                    break;  // for
+                }
+            }
+        }
+
+        if (postings != null)
+        {
+            result = new PostingsIterator(postings, start, end);
+        }
+        else
+        {
+            result = new RangeIterator(start, end);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param node the position of one of our elements
+        @param step a step
+        @param nameId the name id of the name of the elements that 'step'
+        selects, or NO_NODE if it selects elements with any name
+        @param counts the number of elements that have passed each of
+        'step''s position predicates so far, which is updated by this
+        method
+        @return true iff the element at 'node' satisfies 'step''s name test
+        and predicates
+    */
+    private boolean matches(int node, AtriaQuery.Step step, int nameId,
+                            int[] counts)
+    {
+        Assert.require(isNode(node) && node != DOCUMENT_NODE);
+        Assert.require(step != null);
+        Assert.require(counts != null);
+
+        boolean result = (step.name() == null || _nameIds[node] == nameId);
+
+        AtriaQuery.Predicate[] preds = step.predicates();
+        for (int i = 0; i < preds.length && result; i++)
+        {
+            result = matches(node, preds[i], i, counts);
+        }
+
+        return result;
+    }
+
+    /**
+        @param node the position of one of our elements
+        @param p a predicate
+        @param i the index of 'p' in its step's predicates
+        @param counts the number of elements that have passed each of the
+        step's position predicates so far
+        @return true iff the element at 'node' satisfies 'p'
+    */
+    private boolean matches(int node, AtriaQuery.Predicate p, int i,
+                            int[] counts)
+    {
+        boolean result = false;
+
+        String value = p.value();
+        switch (p.kind())
+        {
+        case AtriaQuery.POSITION_PREDICATE:
+            counts[i] += 1;
+            result = (counts[i] == p.position());
+            break;
+
+        case AtriaQuery.ATTRIBUTE_PREDICATE:
+            int attr = attributeIndex(node, nameId(p.name()));
+            if (attr >= 0)
+            {
+                result = (value == null ||
+                    value.equals(attributeValue(node,
+                                    attr - _firstAttributes[node])));
+            }
+            break;
+
+        case AtriaQuery.CHILD_PREDICATE:
+            int childNameId = nameId(p.name());
+            int end = _ends[node];
+            for (int child = node + 1; child < end && result == false;
+                 child = _ends[child])
+            {
+                result = (_nameIds[child] == childNameId &&
+                          (value == null || value.equals(text(child))));
+            }
+            break;
+
+        case AtriaQuery.TEXT_PREDICATE:
+            result = value.equals(text(node));
+            break;
+
+        default:
+            Assert.unreachable();
+            break;
+        }
+
+        return result;
+    }
+
+    /**
+        @param step a step
+        @param counts the number of elements that have passed each of
+        'step''s position predicates so far
+        @return true iff no more elements can satisfy 'step''s predicates,
+        because one of its position predicates has already been passed
+    */
+    private static boolean isExhausted(AtriaQuery.Step step, int[] counts)
+    {
+        Assert.require(step != null);
+        Assert.require(counts != null);
+
+        boolean result = false;
+
+        AtriaQuery.Predicate[] preds = step.predicates();
+        for (int i = 0; i < preds.length && result == false; i++)
+        {
+            result = (preds[i].kind() == AtriaQuery.POSITION_PREDICATE &&
+                      counts[i] >= preds[i].position());
+        }
+
+        return result;
+    }
+
+    /**
+        @param a an int array
+        @param capacity the length of the array to return
+        @return an array of length 'capacity' that starts with the items in
+        'a'
+    */
+    private static int[] grow(int[] a, int capacity)
+    {
+        Assert.require(a != null);
+        Assert.require(capacity >= a.length);
+
+        int[] result = new int[capacity];
+        System.arraycopy(a, 0, result, 0, a.length);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        An abstract base class for IntIterators that compute each item just
+        before it's needed.
+    */
+    private static abstract class LookaheadIntIterator
+        implements IntIterator
+    {
+        // Private fields
+
+        /** The next item, or NO_NODE if it hasn't been computed yet. */
+        private int _next = NO_NODE;
+
+        /** Indicates whether there are no more items. */
+        private boolean _isDone = false;
+
+
+        // Public methods
+
+        /**
+            @see IntIterator#hasNext
+        */
+        public boolean hasNext()
+        {
+            if (_next == NO_NODE && _isDone == false)
+            {
+                _next = computeNext();
+                _isDone = (_next == NO_NODE);
+            }
+
+            return (_isDone == false);
+        }
+
+        /**
+            @see IntIterator#next
+        */
+        public int next()
+        {
+            int result = peek();
+            _next = NO_NODE;
+
+            return result;
+        }
+
+        /**
+            @see IntIterator#peek
+        */
+        public int peek()
+        {
+            if (hasNext() == false)
+            {
+                throw new NoSuchItemException();
+            }
+
+            return _next;
+        }
+
+
+        // Protected methods
+
+        /**
+            @return the next item, or NO_NODE if there are no more items
+        */
+        protected abstract int computeNext();
+    }
+
+    /**
+        An iterator over a single node.
+    */
+    private static class SingleNodeIterator
+        extends LookaheadIntIterator
+    {
+        // Private fields
+
+        /** Our node, or NO_NODE once it's been returned. */
+        private int _node;
+
+
+        // Constructors
+
+        /**
+            Constructs a SingleNodeIterator.
+
+            @param node the node to iterate over
+        */
+        public SingleNodeIterator(int node)
+        {
+            _node = node;
+        }
+
+
+        // Protected methods
+
+        /**
+            @see LookaheadIntIterator#computeNext
+        */
+        protected int computeNext()
+        {
+            int result = _node;
+            _node = NO_NODE;
+
+            return result;
+        }
+    }
+
+    /**
+        An iterator over the positions in a range.
+    */
+    private static class RangeIterator
+        extends LookaheadIntIterator
+    {
+        // Private fields
+
+        /** The next position in the range. */
+        private int _position;
+
+        /** The position just past the end of the range. */
+        private int _end;
+
+
+        // Constructors
+
+        /**
+            Constructs a RangeIterator.
+
+            @param start the first position in the range
+            @param end the position just past the end of the range
+        */
+        public RangeIterator(int start, int end)
+        {
+            _position = start;
+            _end = end;
+        }
+
+
+        // Protected methods
+
+        /**
+            @see LookaheadIntIterator#computeNext
+        */
+        protected int computeNext()
+        {
+            int result = NO_NODE;
+
+            if (_position < _end)
+            {
+                result = _position;
+                _position += 1;
+            }
+
+            return result;
+        }
+    }
+
+    /**
+        An iterator over the positions in a range that are also in a
+        posting list.
+    */
+    private static class PostingsIterator
+        extends LookaheadIntIterator
+    {
+        // Private fields
+
+        /** The posting list. */
+        private int[] _postings;
+
+        /** The index in '_postings' of the next position. */
+        private int _index;
+
+        /** The position just past the end of the range. */
+        private int _end;
+
+
+        // Constructors
+
+        /**
+            Constructs a PostingsIterator.
+
+            @param postings the posting list, which must be in increasing
+            order
+            @param start the first position in the range
+            @param end the position just past the end of the range
+        */
+        public PostingsIterator(int[] postings, int start, int end)
+        {
+            Assert.require(postings != null);
+
+            _postings = postings;
+            _end = end;
+
+            int i = Arrays.binarySearch(postings, start);
+            _index = (i >= 0) ? i : -(i + 1);
+        }
+
+
+        // Protected methods
+
+        /**
+            @see LookaheadIntIterator#computeNext
+        */
+        protected int computeNext()
+        {
+            int result = NO_NODE;
+
+            if (_index < _postings.length && _postings[_index] < _end)
+            {
+                result = _postings[_index];
+                _index += 1;
+            }
+
+            return result;
+        }
+    }
+
+    /**
+        An iterator over the nodes in another iterator that are accepted by
+        this one.
+    */
+    private abstract static class FilteringIterator
+        extends LookaheadIntIterator
+    {
+        // Private fields
+
+        /** The iterator over the nodes that we filter. */
+        private IntIterator _iter;
+
+
+        // Constructors
+
+        /**
+            Constructs a FilteringIterator.
+
+            @param iter the iterator over the nodes to filter
+        */
+        public FilteringIterator(IntIterator iter)
+        {
+            Assert.require(iter != null);
+
+            _iter = iter;
+        }
+
+
+        // Protected methods
+
+        /**
+            @see LookaheadIntIterator#computeNext
+        */
+        protected int computeNext()
+        {
+            int result = NO_NODE;
+
+            while (result == NO_NODE && _iter.hasNext())
+            {
+                int node = _iter.next();
+                if (accepts(node))
+                {
+                    result = node;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            @param node a node
+            @return true iff this iterator accepts 'node'
+        */
+        protected abstract boolean accepts(int node);
+    }
+
+    /**
+        An iterator over the elements that a step selects from a single
+        context node's candidates, whose predicates are only evaluated as
+        each element is needed and which stops as soon as one of its
+        step's position predicates has been passed.
+    */
+    private class StepMatchIterator
+        extends LookaheadIntIterator
+    {
+        // Private fields
+
+        /** The step. */
+        private AtriaQuery.Step _step;
+
+        /** The name id of the step's name test. */
+        private int _nameId;
+
+        /** The candidates. */
+        private IntIterator _candidates;
+
+        /**
+            The number of candidates that have passed each of the step's
+            position predicates.
+        */
+        private int[] _counts;
+
+
+        // Constructors
+
+        /**
+            Constructs a StepMatchIterator.
+
+            @param step the step
+            @param nameId the name id of the step's name test
+            @param candidates an iterator over the candidates
+        */
+        public StepMatchIterator(AtriaQuery.Step step, int nameId,
+                                 IntIterator candidates)
+        {
+            Assert.require(step != null);
+            Assert.require(candidates != null);
+
+            _step = step;
+            _nameId = nameId;
+            _candidates = candidates;
+            _counts = new int[step.predicates().length];
+        }
+
+
+        // Protected methods
+
+        /**
+            @see LookaheadIntIterator#computeNext
+        */
+        protected int computeNext()
+        {
+            int result = NO_NODE;
+
+            while (result == NO_NODE && _candidates.hasNext() &&
+                   isExhausted(_step, _counts) == false)
+            {
+                int node = _candidates.next();
+                if (matches(node, _step, _nameId, _counts))
+                {
+                    result = node;
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+        An iterator over the children of a node.
+    */
+    private class ChildIterator
+        extends LookaheadIntIterator
+    {
+        // Private fields
+
+        /** The next child. */
+        private int _child;
+
+        /** The position just past the end of the parent's subtree. */
+        private int _end;
+
+
+        // Constructors
+
+        /**
+            Constructs a ChildIterator.
+
+            @param parent the node whose children are to be iterated over
+        */
+        public ChildIterator(int parent)
+        {
+            _child = parent + 1;
+            _end = _ends[parent];
+        }
+
+
+        // Protected methods
+
+        /**
+            @see LookaheadIntIterator#computeNext
+        */
+        protected int computeNext()
+        {
+            int result = NO_NODE;
+
+            if (_child < _end)
+            {
+                result = _child;
+                _child = _ends[_child];
+            }
+
+            return result;
+        }
+    }
+
+    /**
+        An iterator over the elements that a child step selects from each
+        of a sequence of context nodes.
+        <p>
+        If no context node is a descendant of another then their children
+        are just selected one context node after another. But if they are
+        (for example, because they were selected by a '//' step) then the
+        children of a later context node can come before some of those of
+        an earlier one, so we keep a stack of the context nodes whose
+        children we're selecting from: each context node on the stack is a
+        descendant of the one below it, and so all of its remaining
+        children come before those of the ones below it.
+    */
+    private class ChildStepIterator
+        extends LookaheadIntIterator
+    {
+        // Private fields
+
+        /** The step. */
+        private AtriaQuery.Step _step;
+
+        /** The name id of the step's name test. */
+        private int _nameId;
+
+        /** The context nodes. */
+        private IntIterator _contexts;
+
+        /**
+            The stack of the StepMatchIterators over the rest of the
+            children of the context nodes that we've started selecting
+            children from: each of them has at least one more child.
+        */
+        private List _stack;
+
+
+        // Constructors
+
+        /**
+            Constructs a ChildStepIterator.
+
+            @param step the step
+            @param contexts the context nodes, in document order
+        */
+        public ChildStepIterator(AtriaQuery.Step step, IntIterator contexts)
+        {
+            Assert.require(step != null);
+            Assert.require(contexts != null);
+
+            _step = step;
+            _nameId = nameId(step.name());
+            _contexts = contexts;
+            _stack = new ArrayList();
+        }
+
+
+        // Protected methods
+
+        /**
+            @see LookaheadIntIterator#computeNext
+        */
+        protected int computeNext()
+        {
+            int result = NO_NODE;
+
+            // Note: if no element has the step's name then there's
+            // nothing to select.
+            boolean canMatch = (_step.name() == null || _nameId != NO_NODE);
+            while (result == NO_NODE && canMatch &&
+                   (_contexts.hasNext() || _stack.isEmpty() == false))
+            {
+                IntIterator top = null;
+                if (_stack.isEmpty() == false)
+                {
+                    top = (IntIterator) _stack.get(_stack.size() - 1);
+                }
+
+                if (_contexts.hasNext() &&
+                    (top == null || _contexts.peek() < top.peek()))
+                {
+                    IntIterator iter = new StepMatchIterator(_step,
+                            _nameId, new ChildIterator(_contexts.next()));
+                    if (iter.hasNext())
+                    {
+                        _stack.add(iter);
+                    }
+                }
+                else
+                {
+                    result = top.next();
+                    if (top.hasNext() == false)
+                    {
+                        _stack.remove(_stack.size() - 1);
+                    }
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+        An iterator over the elements that a descendant step without any
+        position predicates selects from each of a sequence of context
+        nodes, or over the descendant-or-self nodes of each of them.
+        <p>
+        A context node that's a descendant of the last one we selected
+        descendants of is skipped, since we've already selected all of its
+        descendants.
+    */
+    private class DescendantStepIterator
+        extends LookaheadIntIterator
+    {
+        // Private fields
+
+        /**
+            The step, or null if we're to select descendant-or-self nodes.
+        */
+        private AtriaQuery.Step _step;
+
+        /** The name id of the step's name test. */
+        private int _nameId;
+
+        /** The context nodes. */
+        private IntIterator _contexts;
+
+        /**
+            The position just past the end of the subtree of the last
+            context node whose descendants we selected.
+        */
+        private int _end;
+
+        /**
+            An iterator over the rest of the elements that we're to
+            select from the last context node whose descendants we
+            selected.
+        */
+        private IntIterator _current;
+
+
+        // Constructors
+
+        /**
+            Constructs a DescendantStepIterator.
+
+            @param step the step, or null if we're to select the
+            descendant-or-self nodes of the context nodes
+            @param contexts the context nodes, in document order
+        */
+        public DescendantStepIterator(AtriaQuery.Step step,
+                                      IntIterator contexts)
+        {
+            Assert.require(step == null || step.isPositional() == false);
+            Assert.require(contexts != null);
+
+            _step = step;
+            _nameId = (step != null) ? nameId(step.name()) : NO_NODE;
+            _contexts = contexts;
+            _end = DOCUMENT_NODE;
+            _current = null;
+        }
+
+
+        // Protected methods
+
+        /**
+            @see LookaheadIntIterator#computeNext
+        */
+        protected int computeNext()
+        {
+            int result = NO_NODE;
+
+            // Note: if no element has the step's name then there's
+            // nothing to select.
+            boolean canMatch = (_step == null || _step.name() == null ||
+                                _nameId != NO_NODE);
+            while (result == NO_NODE && canMatch)
+            {
+                if (_current != null && _current.hasNext())
+                {
+                    result = _current.next();
+                }
+                else if (_contexts.hasNext())
+                {
+                    int context = _contexts.next();
+                    if (context >= _end)
+                    {
+                        _end = _ends[context];
+                        if (_step == null)
+                        {
+                            _current = new RangeIterator(context, _end);
+                        }
+                        else
+                        {
+                            _current = new StepMatchIterator(_step,
+                                _nameId, descendantCandidates(_step,
+                                            _nameId, context + 1, _end));
+                        }
+                    }
+                }
+                else
+                {
+                    break;  // while
+                }
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,534 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.containers.Containers;
+import com.steelcandy.common.io.Io;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+    An index from the element names and attribute values in an Atria
+    document to the positions of the elements in the document that have
+    them. The positions are those used by the AtriaQueryEngine that the
+    index was built from: each element's preorder position in the
+    document.
+    <p>
+    Building an index requires the values of all of the document's
+    attributes to be evaluated, so an index can be written to a file and
+    read back in the next time the same document is loaded.
+    <p>
+    An index file consists of a 4-byte magic number, the format version
+    and the number of nodes in the indexed document (as 4-byte ints),
+    followed by the element name postings and then the attribute value
+    postings. Each posting list is a count followed by the (strictly
+    increasing) positions in it, and each string is its length in bytes
+    followed by its UTF-8 encoded bytes.
+    <p>
+    Indexes are immutable once they've been built or read.
+
+    @author  James MacKay
+    @see AtriaQueryEngine
+*/
+public class AtriaQueryIndex
+{
+    // Constants
+
+    /** The magic number that starts every index file: "atxi". */
+    private static final int MAGIC_NUMBER = 0x61747869;
+
+    /** The version of the index file format. */
+    private static final int FORMAT_VERSION = 1;
+
+    /** The encoding used for the strings in index files. */
+    private static final String ENCODING = "UTF-8";
+
+    /** The empty posting list. */
+    private static final int[] NO_POSITIONS = new int[0];
+
+
+    // Private fields
+
+    /**
+        The number of nodes (including the document node) in the document
+        that this index indexes.
+    */
+    private int _nodeCount;
+
+    /**
+        A map from each element name to the int array of the positions of
+        the elements with that name.
+    */
+    private Map _elementPositions;
+
+    /**
+        A map from each attribute name to a map from each of that
+        attribute's values to the int array of the positions of the
+        elements that have that value for that attribute.
+    */
+    private Map _attributePositions;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaQueryIndex.
+
+        @param nodeCount the number of nodes in the indexed document
+        @param elementPositions the index's element name postings
+        @param attributePositions the index's attribute value postings
+    */
+    private AtriaQueryIndex(int nodeCount, Map elementPositions,
+                            Map attributePositions)
+    {
+        Assert.require(nodeCount > 0);
+        Assert.require(elementPositions != null);
+        Assert.require(attributePositions != null);
+
+        _nodeCount = nodeCount;
+        _elementPositions = elementPositions;
+        _attributePositions = attributePositions;
+    }
+
+
+    // Public static methods
+
+    /**
+        Builds an index of the document loaded into the specified engine.
+
+        @param engine the query engine whose document is to be indexed
+        @return an index of 'engine''s document
+    */
+    public static AtriaQueryIndex build(AtriaQueryEngine engine)
+    {
+        Assert.require(engine != null);
+        Assert.require(engine.isLoaded());
+
+        int nodeCount = engine.nodeCount();
+        Map names = Containers.createHashMap(64);
+        Map attributes = Containers.createHashMap(64);
+        for (int node = AtriaQueryEngine.DOCUMENT_NODE + 1;
+             node < nodeCount; node++)
+        {
+            addPosition(names, engine.name(node), node);
+
+            int numAttributes = engine.attributeCount(node);
+            for (int i = 0; i < numAttributes; i++)
+            {
+                String name = engine.attributeName(node, i);
+                Map values = (Map) attributes.get(name);
+                if (values == null)
+                {
+                    values = Containers.createHashMap(16);
+                    attributes.put(name, values);
+                }
+                addPosition(values, engine.attributeValue(node, i), node);
+            }
+        }
+
+        // Replace each posting list by an int array.
+        toPostingArrays(names);
+        Iterator iter = attributes.values().iterator();
+        while (iter.hasNext())
+        {
+            toPostingArrays((Map) iter.next());
+        }
+
+        AtriaQueryIndex result =
+            new AtriaQueryIndex(nodeCount, names, attributes);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Reads the index in the specified file.
+
+        @param f the pathname of the index file to read
+        @param nodeCount the number of nodes in the document that the index
+        is expected to index
+        @return the index in 'f', or null if 'f' doesn't exist or doesn't
+        contain a valid index of a document with 'nodeCount' nodes
+    */
+    public static AtriaQueryIndex read(File f, int nodeCount)
+    {
+        Assert.require(f != null);
+        Assert.require(nodeCount > 0);
+
+        AtriaQueryIndex result = null;
+
+        if (f.isFile())
+        {
+            DataInputStream in = null;
+            try
+            {
+                in = new DataInputStream(new BufferedInputStream(
+                                            new FileInputStream(f)));
+                if (in.readInt() == MAGIC_NUMBER &&
+                    in.readInt() == FORMAT_VERSION &&
+                    in.readInt() == nodeCount)
+                {
+                    Map names = readPostings(in, nodeCount);
+                    int numAttributes = readCount(in);
+                    Map attributes = Containers.createHashMap(numAttributes);
+                    for (int i = 0; i < numAttributes; i++)
+                    {
+                        String name = readString(in);
+                        attributes.put(name, readPostings(in, nodeCount));
+                    }
+                    result = new AtriaQueryIndex(nodeCount, names,
+                                                 attributes);
+                }
+            }
+            catch (IOException ex)
+            {
+                result = null;  // the index file is invalid or unreadable
+            }
+            finally
+            {
+                Io.tryToClose(in);
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+
+    // Public methods
+
+    /**
+        Writes this index to the specified file, replacing it atomically if
+        it already exists.
+
+        @param f the pathname of the file to write this index to
+        @exception IOException thrown if this index couldn't be written
+    */
+    public void write(File f)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        File dir = f.getAbsoluteFile().getParentFile();
+        if (dir.isDirectory() == false)
+        {
+            dir.mkdirs();  // we find out whether it succeeded below
+        }
+        File tmp = File.createTempFile("atx", ".tmp", dir);
+        try
+        {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tmp)));
+            try
+            {
+                out.writeInt(MAGIC_NUMBER);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(_nodeCount);
+                writePostings(_elementPositions, out);
+                out.writeInt(_attributePositions.size());
+                Iterator iter = _attributePositions.entrySet().iterator();
+                while (iter.hasNext())
+                {
+                    Map.Entry e = (Map.Entry) iter.next();
+                    writeString((String) e.getKey(), out);
+                    writePostings((Map) e.getValue(), out);
+                }
+            }
+            finally
+            {
+                out.close();
+            }
+            Files.move(tmp.toPath(), f.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+        }
+        finally
+        {
+            Io.delete(tmp);  // does nothing if it was moved
+        }
+    }
+
+    /**
+        @param name an element name
+        @return the positions, in increasing order, of all of the elements
+        named 'name': the array must not be modified
+    */
+    public int[] elementsNamed(String name)
+    {
+        Assert.require(name != null);
+
+        int[] result = (int[]) _elementPositions.get(name);
+        if (result == null)
+        {
+            result = NO_POSITIONS;
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param name an attribute name
+        @param value an attribute value
+        @return the positions, in increasing order, of all of the elements
+        whose attribute named 'name' has the value 'value': the array must
+        not be modified
+    */
+    public int[] elementsWithAttribute(String name, String value)
+    {
+        Assert.require(name != null);
+        Assert.require(value != null);
+
+        int[] result = null;
+
+        Map values = (Map) _attributePositions.get(name);
+        if (values != null)
+        {
+            result = (int[]) values.get(value);
+        }
+        if (result == null)
+        {
+            result = NO_POSITIONS;
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        Adds the specified position to the posting list under the
+        specified key in the specified map.
+
+        @param postings the map from keys to posting lists
+        @param key the key of the posting list to add the position to
+        @param position the position to add
+    */
+    private static void addPosition(Map postings, String key, int position)
+    {
+        Assert.require(postings != null);
+        Assert.require(key != null);
+
+        PostingList list = (PostingList) postings.get(key);
+        if (list == null)
+        {
+            list = new PostingList();
+            postings.put(key, list);
+        }
+        list.add(position);
+    }
+
+    /**
+        Replaces each of the PostingLists in the specified map by an int
+        array of its positions.
+
+        @param postings the map whose values are to be replaced
+    */
+    private static void toPostingArrays(Map postings)
+    {
+        Assert.require(postings != null);
+
+        Iterator iter = postings.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            Map.Entry e = (Map.Entry) iter.next();
+            e.setValue(((PostingList) e.getValue()).toArray());
+        }
+    }
+
+    /**
+        Writes the specified posting lists to the specified stream.
+
+        @param postings a map from strings to the int arrays of their
+        postings
+        @param out the stream to write the posting lists to
+        @exception IOException thrown if the posting lists couldn't be
+        written
+    */
+    private static void writePostings(Map postings, DataOutputStream out)
+        throws IOException
+    {
+        Assert.require(postings != null);
+        Assert.require(out != null);
+
+        out.writeInt(postings.size());
+        Iterator iter = postings.entrySet().iterator();
+        while (iter.hasNext())
+        {
+            Map.Entry e = (Map.Entry) iter.next();
+            writeString((String) e.getKey(), out);
+
+            int[] positions = (int[]) e.getValue();
+            out.writeInt(positions.length);
+            for (int i = 0; i < positions.length; i++)
+            {
+                out.writeInt(positions[i]);
+            }
+        }
+    }
+
+    /**
+        Reads posting lists from the specified stream.
+
+        @param in the stream to read the posting lists from
+        @param nodeCount the number of nodes in the indexed document
+        @return a map from strings to the int arrays of their postings
+        @exception IOException thrown if the posting lists couldn't be
+        read or are invalid
+    */
+    private static Map readPostings(DataInputStream in, int nodeCount)
+        throws IOException
+    {
+        Assert.require(in != null);
+
+        int size = readCount(in);
+        Map result = Containers.createHashMap(size);
+        for (int i = 0; i < size; i++)
+        {
+            String key = readString(in);
+            int[] positions = new int[readCount(in)];
+            int previous = AtriaQueryEngine.DOCUMENT_NODE;
+            for (int j = 0; j < positions.length; j++)
+            {
+                int position = in.readInt();
+                if (position <= previous || position >= nodeCount)
+                {
+                    throw new IOException();
+                }
+                positions[j] = position;
+                previous = position;
+            }
+            result.put(key, positions);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Writes the specified string to the specified stream.
+
+        @param str the string to write
+        @param out the stream to write 'str' to
+        @exception IOException thrown if 'str' couldn't be written
+    */
+    private static void writeString(String str, DataOutputStream out)
+        throws IOException
+    {
+        Assert.require(str != null);
+        Assert.require(out != null);
+
+        byte[] bytes = str.getBytes(ENCODING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+        @param in the stream to read a string from
+        @return the string read from 'in'
+        @exception IOException thrown if a string couldn't be read
+    */
+    private static String readString(DataInputStream in)
+        throws IOException
+    {
+        Assert.require(in != null);
+
+        byte[] bytes = new byte[readCount(in)];
+        in.readFully(bytes);
+
+        return new String(bytes, ENCODING);
+    }
+
+    /**
+        @param in the stream to read a count from
+        @return the non-negative count read from 'in'
+        @exception IOException thrown if a count couldn't be read or is
+        negative
+    */
+    private static int readCount(DataInputStream in)
+        throws IOException
+    {
+        Assert.require(in != null);
+
+        int result = in.readInt();
+        if (result < 0)
+        {
+            throw new IOException();
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        A growable list of the positions in a posting list that's being
+        built.
+    */
+    private static class PostingList
+    {
+        // Private fields
+
+        /** The positions in this list. */
+        private int[] _positions = new int[4];
+
+        /** The number of positions in this list. */
+        private int _size = 0;
+
+
+        // Public methods
+
+        /**
+            Adds the specified position to the end of this list.
+
+            @param position the position to add
+        */
+        public void add(int position)
+        {
+            if (_size == _positions.length)
+            {
+                int[] positions = new int[2 * _size];
+                System.arraycopy(_positions, 0, positions, 0, _size);
+                _positions = positions;
+            }
+            _positions[_size] = position;
+            _size += 1;
+        }
+
+        /**
+            @return an array of the positions in this list
+        */
+        public int[] toArray()
+        {
+            int[] result = new int[_size];
+            System.arraycopy(_positions, 0, result, 0, _size);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+    }
+}
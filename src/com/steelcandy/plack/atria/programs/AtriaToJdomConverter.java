@@ -142,12 +142,33 @@ public class AtriaToJdomConverter
     public Document convert(File f)
         throws AtriaConversionException
     {
+        Assert.require(f != null);
+
+        Document result = convert(new SourceCodeFile(f));
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Converts the specified Atria source code to a JDOM Document. Any
+        error information will be output to standard error.
+
+        @param code the Atria source code to convert
+        @return the JDOM document that 'code' was converted to
+        @exception AtriaConversionException if the the conversion failed
+    */
+    public Document convert(SourceCode code)
+        throws AtriaConversionException
+    {
+        Assert.require(code != null);
+
         Document result;
 
         try
         {
             _handler = createErrorHandler();
-            _document = toValidatedDocument(f, _handler);
+            _document = toValidatedDocument(code, _handler);
             if (_document != null && haveBeenErrors(_handler) == false)
             {
                 _result = new Document();
@@ -289,7 +310,7 @@ public class AtriaToJdomConverter
         Element c, ErrorHandler handler)
     {
         Assert.require(c != null);
-        Assert.require(c.depthAttribute().isSet());
+        Assert.require(c.isDepthAttributeSet());
         Assert.require(handler != null);
 
         Element parent = _currentElement;
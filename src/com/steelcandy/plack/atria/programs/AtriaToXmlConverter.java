@@ -100,10 +100,11 @@ public class AtriaToXmlConverter
     private AtriaConstructManager.Document _document;
 
     /**
-        The pathname of the Atria file that we're currently converting, or
-        null if we're not currently converting one.
+        The full name of the Atria source code that we're currently
+        converting - which is its pathname if it's in a file - or null if
+        we're not currently converting any.
     */
-    private File _pathname;
+    private String _sourceName;
 
     /**
         The error handler that we use to handle errors that occur during the
@@ -131,7 +132,7 @@ public class AtriaToXmlConverter
         _isNextAnElement = true;
 
         _document = null;
-        _pathname = null;
+        _sourceName = null;
         _handler = null;
     }
 
@@ -158,34 +159,31 @@ public class AtriaToXmlConverter
     public void convert(File f)
         throws AtriaConversionException
     {
-        try
-        {
-            _pathname = f;
-            _handler = createErrorHandler();
-            _document = toValidatedDocument(_pathname, _handler);
-            if (_document != null && haveBeenErrors(_handler) == false)
-            {
-                _document.accept(this, _handler);
-            }
+        Assert.require(f != null);
 
-            if (haveBeenErrors(_handler))
-            {
-// TODO: include ALL error messages in the exception ???!!!!???
-// - for now they're always written to standard error
-// - add '_handler' to the AtriaConversionException?
-                String msg = _resources.
-                    getMessage(CONVERSION_TO_XML_FAILED_MSG);
-                throw new AtriaConversionException(msg);
-            }
-        }
-        finally
-        {
-            _document = null;
-            _handler = null;
-            _pathname = null;
+        convert(f, null);
+    }
 
-            tryToCloseBaseWriter();
-        }
+    /**
+        Converts the specified Atria source code to XML and outputs it (to
+        the destination specified when we were constructed). Any error
+        information will be handled by the error handler returned by
+        createErrorHandler().
+        <p>
+        Unlike convert(File) this method never reads the document from
+        or adds it to our document cache, since it may not have come from
+        a file.
+
+        @param code the Atria source code to convert
+        @exception AtriaConversionException if the the conversion failed
+        @see #convert(File)
+    */
+    public void convert(SourceCode code)
+        throws AtriaConversionException
+    {
+        Assert.require(code != null);
+
+        convert(null, code);
     }
 
 
@@ -205,7 +203,7 @@ public class AtriaToXmlConverter
 
         // Write the document header.
         writeLine(XML_DECLARATION);
-        //writeDocumentHeaderComment(_pathname);
+        //writeDocumentHeaderComment();
             // commented out since I don't think it's applicable in all
             // situations where we're converting an Atria document to XML
             // FUTURE: add a command-line option that causes the header
@@ -278,7 +276,7 @@ public class AtriaToXmlConverter
         Element c, ErrorHandler handler)
     {
         Assert.require(c != null);
-        Assert.require(c.depthAttribute().isSet());
+        Assert.require(c.isDepthAttributeSet());
         Assert.require(handler != null);
 
         boolean isNextAnElement = _isNextAnElement;
@@ -570,7 +568,7 @@ public class AtriaToXmlConverter
         try
         {
             String msg = _resources.
-                getMessage(TO_XML_HEADER_COMMENT_MSG, _pathname.getPath());
+                getMessage(TO_XML_HEADER_COMMENT_MSG, _sourceName);
             writeLine(msg);
         }
         finally
@@ -683,4 +681,60 @@ public class AtriaToXmlConverter
         // 'result' may be null
         return _handler;
     }
+
+
+    // Private methods
+
+    /**
+        Converts the Atria document in the specified file or source code to
+        XML and outputs it.
+
+        @param f the pathname of the Atria document file to convert, or
+        null if 'code' is to be converted instead
+        @param code the Atria source code to convert, or null if 'f' is to
+        be converted instead
+        @exception AtriaConversionException if the the conversion failed
+    */
+    private void convert(File f, SourceCode code)
+        throws AtriaConversionException
+    {
+        Assert.require((f == null) != (code == null));
+
+        try
+        {
+            _handler = createErrorHandler();
+            if (f != null)
+            {
+                _sourceName = f.getPath();
+                _document = toValidatedDocument(f, _handler);
+            }
+            else
+            {
+                _sourceName = code.fullName();
+                _document = toValidatedDocument(code, _handler);
+            }
+            if (_document != null && haveBeenErrors(_handler) == false)
+            {
+                _document.accept(this, _handler);
+            }
+
+            if (haveBeenErrors(_handler))
+            {
+// TODO: include ALL error messages in the exception ???!!!!???
+// - for now they're always written to standard error
+// - add '_handler' to the AtriaConversionException?
+                String msg = _resources.
+                    getMessage(CONVERSION_TO_XML_FAILED_MSG);
+                throw new AtriaConversionException(msg);
+            }
+        }
+        finally
+        {
+            _document = null;
+            _handler = null;
+            _sourceName = null;
+
+            tryToCloseBaseWriter();
+        }
+    }
 }
@@ -20,10 +20,15 @@ package com.steelcandy.plack.atria.programs;
 import com.steelcandy.common.debug.Assert;
 
 import com.steelcandy.common.Resources;
+import com.steelcandy.common.io.Io;
 import com.steelcandy.common.program.Program;
 import com.steelcandy.common.program.ProgramException;
 
+import com.steelcandy.plack.common.source.SourceCode;
+import com.steelcandy.plack.common.source.SourceCodeString;
+
 import java.io.*;
+import java.nio.file.Files;
 
 /**
     A program that converts Atria document to XML.
@@ -48,15 +53,86 @@ public class AtriaToXmlConverterProgram
         CONVERSION_FAILED_MSG =
             "CONVERSION_FAILED_MSG";
 
+    /**
+        The option that causes the document to be parsed and analyzed in
+        parallel.
+    */
+    private static final String PARALLEL_OPTION = "-p";
+
+    /**
+        The option whose argument is the pathname of the directory that
+        validated documents are to be cached in.
+
+        @see AtriaDocumentCache
+    */
+    private static final String CACHE_OPTION = "-c";
+
+    /**
+        The option whose argument is the pathname of the archive that the
+        results of converting all of the Atria documents in the archive
+        specified by the last argument are to be written to.
+
+        @see AtriaArchiveConverter
+    */
+    private static final String ARCHIVE_OPTION = "-a";
+
+    /**
+        The option whose argument is the pathname of the directory that
+        the results of conversions are to be cached in.
+
+        @see AtriaOutputCache
+    */
+    private static final String OUTPUT_CACHE_OPTION = "-o";
+
+    /** The kind of conversion whose results we cache. */
+    private static final String OUTPUT_CACHE_KIND = "atria2xml";
+
+
+    // Private fields
+
+    /** The writer that we write the XML that documents convert to to. */
+    private PrintWriter _out;
+
+    /** The writer that we write error information to. */
+    private PrintWriter _err;
+
+    /**
+        The cache that the results of conversions are to be cached in if
+        none is specified by our arguments, or null if they're not to be
+        cached by default.
+    */
+    private AtriaOutputCache _outputCache;
+
 
     // Constructors
 
     /**
-        Constructs an AtriaToXmlConverterProgram.
+        Constructs an AtriaToXmlConverterProgram that writes to standard
+        output and standard error.
     */
     public AtriaToXmlConverterProgram()
     {
-        // empty
+        this(Io.out, Io.err);
+    }
+
+    /**
+        Constructs an AtriaToXmlConverterProgram that writes to the
+        specified writers rather than standard output and standard error.
+        <p>
+        Note: failures are still reported by throwing ProgramExceptions.
+
+        @param out the writer to write the results of conversions to
+        @param err the writer to write error information to
+        @see AtriaConversionServer
+    */
+    AtriaToXmlConverterProgram(PrintWriter out, PrintWriter err)
+    {
+        Assert.require(out != null);
+        Assert.require(err != null);
+
+        _out = out;
+        _err = err;
+        _outputCache = null;
     }
 
 
@@ -71,18 +147,96 @@ public class AtriaToXmlConverterProgram
         Assert.require(args != null);
 
         int numArgs = args.length;
-        if (numArgs == 1)
+        boolean doInParallel = false;
+        AtriaDocumentCache cache = null;
+        AtriaOutputCache outputCache = null;
+        File outArchive = null;
+        boolean isBadUsage = false;
+        int argIndex = 0;
+        while (argIndex < numArgs - 1 && isBadUsage == false)
         {
-            File f = new File(args[0]);
-            AtriaToXmlConverter converter = new AtriaToXmlConverter();
+            String opt = args[argIndex];
+            if (opt.equals(PARALLEL_OPTION) && doInParallel == false)
+            {
+                doInParallel = true;
+                argIndex += 1;
+            }
+            else if (opt.equals(CACHE_OPTION) && cache == null &&
+                     argIndex < numArgs - 2)
+            {
+                cache = new AtriaDocumentCache(new File(args[argIndex + 1]));
+                argIndex += 2;
+            }
+            else if (opt.equals(ARCHIVE_OPTION) && outArchive == null &&
+                     argIndex < numArgs - 2)
+            {
+                outArchive = new File(args[argIndex + 1]);
+                argIndex += 2;
+            }
+            else if (opt.equals(OUTPUT_CACHE_OPTION) && outputCache == null &&
+                     argIndex < numArgs - 2)
+            {
+                outputCache =
+                    new AtriaOutputCache(new File(args[argIndex + 1]));
+                argIndex += 2;
+            }
+            else
+            {
+                isBadUsage = true;
+            }
+        }
+        if (outArchive != null &&
+            (doInParallel || cache != null || outputCache != null))
+        {
+            // Archive entries are always converted in parallel, and
+            // aren't files that can be cached.
+            isBadUsage = true;
+        }
+        if (cache != null && outputCache != null)
+        {
+            // Documents whose conversions are cached aren't validated
+            // often enough for it to be worth caching them too.
+            isBadUsage = true;
+        }
+        if (outputCache == null && cache == null)
+        {
+            outputCache = _outputCache;
+        }
+
+        if (isBadUsage == false && argIndex == numArgs - 1 &&
+            outArchive != null)
+        {
+            File in = new File(args[argIndex]);
             try
             {
-                converter.convert(f);
+                AtriaArchiveConverter converter =
+                    AtriaArchiveConverter.createAtriaToXml();
+                converter.setErrorWriter(_err);
+                converter.convert(in, outArchive);
             }
             catch (AtriaConversionException ex)
             {
-                String msg = _resources.
-                    getMessage(CONVERSION_FAILED_MSG);
+                throw EXECUTOR.createFailureException(this,
+                                            ex.getLocalizedMessage());
+            }
+        }
+        else if (isBadUsage == false && argIndex == numArgs - 1)
+        {
+            File f = new File(args[argIndex]);
+            String msg;
+            if (outputCache != null)
+            {
+                msg = convert(f, outputCache, doInParallel);
+            }
+            else
+            {
+                AtriaToXmlConverter converter =
+                    createConverter(_out, _err, doInParallel);
+                converter.setDocumentCache(cache);
+                msg = convert(converter, f, null);
+            }
+            if (msg != null)
+            {
                 throw EXECUTOR.createFailureException(this, msg);
             }
         }
@@ -115,6 +269,160 @@ public class AtriaToXmlConverterProgram
     }
 
 
+    // Package-private methods
+
+    /**
+        Sets the cache that the results of conversions are to be cached
+        in if our arguments don't specify one (or a document cache).
+
+        @param cache the output cache to use by default, or null if
+        results aren't to be cached by default
+    */
+    void setOutputCache(AtriaOutputCache cache)
+    {
+        // 'cache' may be null
+        _outputCache = cache;
+    }
+
+
+    // Private methods
+
+    /**
+        Converts the Atria document in the specified file to XML, or
+        replays the conversion's result if it's already cached in the
+        specified output cache.
+
+        @param f the pathname of the Atria document to convert
+        @param outputCache the cache that the result of the conversion
+        is to be cached in
+        @param doInParallel true iff the document is to be parsed and
+        analyzed in parallel
+        @return a message describing why the conversion failed, or null
+        if it succeeded
+    */
+    private String convert(File f, AtriaOutputCache outputCache,
+                           boolean doInParallel)
+    {
+        Assert.require(f != null);
+        Assert.require(outputCache != null);
+
+        String result = null;
+
+        byte[] content = null;
+        try
+        {
+            content = Files.readAllBytes(f.toPath());
+        }
+        catch (IOException ex)
+        {
+            // Let the converter report that the file couldn't be read.
+            content = null;
+        }
+
+        if (content == null)
+        {
+            result = convert(createConverter(_out, _err, doInParallel),
+                             f, null);
+        }
+        else
+        {
+            // The file's pathname is part of the result of converting it.
+            String key = outputCache.key(OUTPUT_CACHE_KIND, f.getPath(),
+                                         content);
+            AtriaOutputCache.Entry e = outputCache.load(key);
+            if (e == null)
+            {
+                // We convert the contents we read rather than the file
+                // itself in case it has changed since, so that the result
+                // cached under 'key' really is the result of converting
+                // the contents that 'key' is the hash of.
+                StringWriter out = new StringWriter();
+                StringWriter err = new StringWriter();
+                SourceCode code = new SourceCodeString(new String(content),
+                                        f.getPath(), f.getName());
+                String msg = convert(createConverter(out, err,
+                                        doInParallel), null, code);
+                e = new AtriaOutputCache.Entry(out.toString(),
+                                               err.toString(), msg);
+                outputCache.tryToStore(key, e);
+            }
+            e.replay(_out, _err);
+            if (e.hasFailed())
+            {
+                result = e.failureMessage();
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Converts either the Atria document in the specified file or the
+        specified Atria source code to XML using the specified converter.
+
+        @param converter the converter to use to do the conversion
+        @param f the pathname of the Atria document to convert, or null if
+        'code' is to be converted instead
+        @param code the Atria source code to convert, or null if the
+        document in 'f' is to be converted instead
+        @return a message describing why the conversion failed, or null
+        if it succeeded
+    */
+    private String convert(AtriaToXmlConverter converter, File f,
+                           SourceCode code)
+    {
+        Assert.require(converter != null);
+        Assert.require((f == null) != (code == null));
+
+        String result = null;
+
+        try
+        {
+            if (f != null)
+            {
+                converter.convert(f);
+            }
+            else
+            {
+                converter.convert(code);
+            }
+        }
+        catch (AtriaConversionException ex)
+        {
+            result = _resources.getMessage(CONVERSION_FAILED_MSG);
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Creates a converter that converts Atria documents to XML.
+
+        @param out the writer that the converter is to write the XML to
+        @param err the writer that the converter is to write error
+        information to
+        @param doInParallel true iff the converter is to parse and analyze
+        documents in parallel
+        @return the converter
+    */
+    private AtriaToXmlConverter createConverter(Writer out, Writer err,
+                                                boolean doInParallel)
+    {
+        Assert.require(out != null);
+        Assert.require(err != null);
+
+        AtriaToXmlConverter result = new AtriaToXmlConverter(out);
+        result.setErrorWriter(err);
+        result.setDoParseInParallel(doInParallel);
+        result.setDoAnalyzeInParallel(doInParallel);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
     // Main method
 
     /**
@@ -0,0 +1,220 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.atria.constructs.*;
+import com.steelcandy.plack.atria.semantic.*;
+
+import com.steelcandy.plack.common.errors.*;
+import com.steelcandy.plack.common.source.SourceCodeFile;
+import com.steelcandy.plack.common.tokens.*;
+
+import java.io.File;
+
+/**
+    A validator that checks whether Atria documents are valid without
+    ever building the constructs that represent a whole document.
+    <p>
+    A document is parsed, semantically analyzed and checked one top-level
+    Element at a time, and each Element is discarded once it has been
+    checked. So the amount of memory used is proportional to the size of
+    the largest top-level Element rather than the size of the document.
+    The same parser, semantic analyzer and checks are used as in
+    toValidatedDocument(), and the errors that are found are reported in
+    the same order in which toValidatedDocument() reports them.
+
+    @author James MacKay
+*/
+public class AtriaValidator
+    extends AtriaAbstractInterpreter
+{
+    // Constructors
+
+    /**
+        Constructs an AtriaValidator.
+    */
+    public AtriaValidator()
+    {
+        // empty
+    }
+
+
+    // Public methods
+
+    /**
+        Validates the Atria document in the specified file, outputting
+        information about any errors in it to standard error.
+
+        @param f the pathname of the Atria document file to validate
+        @return true iff the document is valid
+    */
+    public boolean validate(File f)
+    {
+        Assert.require(f != null);
+
+        return validate(f, createErrorHandler());
+    }
+
+    /**
+        Validates the Atria document in the specified file.
+
+        @param f the pathname of the Atria document file to validate
+        @param handler the error handler to use to handle any errors in the
+        document: it should not have handled any errors yet
+        @return true iff the document is valid
+    */
+    public boolean validate(File f, ErrorHandler handler)
+    {
+        Assert.require(f != null);
+        Assert.require(handler != null);
+
+        SourceCodeTokenizer t = null;
+        try
+        {
+            checkNotCancelled(new SourceCodeFile(f), handler);
+            t = createTokenizer(f, handler);
+
+            AtriaSemanticAnalyzer a = createSemanticAnalyzer();
+            AtriaValidityConstraintChecklistCompletionChecker checker =
+                createChecklistCompletionChecker();
+
+            // The semantic analysis and checklist checking errors are
+            // recorded as they occur, then handled in the order in which
+            // toValidatedDocument() would handle them.
+            RecordingErrorHandler analysisErrors =
+                new RecordingErrorHandler();
+            RecordingErrorHandler checkingErrors =
+                new RecordingErrorHandler();
+            ValidatingConsumer consumer = new ValidatingConsumer(a,
+                                    analysisErrors, checker, checkingErrors);
+
+            AtriaStreamingDocumentParser p =
+                new AtriaStreamingDocumentParser(consumer);
+            AtriaConstructManager.Document doc = p.parseTopLevel(t, handler);
+            if (doc != null)
+            {
+                a.finishAnalysis(doc, analysisErrors);
+                analysisErrors.transferErrorsTo(handler);
+
+                checker.check(doc, handler);
+                checkingErrors.transferErrorsTo(handler);
+            }
+        }
+        catch (FatalErrorException ex)
+        {
+            // The fatal error has already been reported to 'handler'.
+        }
+        finally
+        {
+            if (t != null)
+            {
+                t.close();
+            }
+        }
+
+        return (haveBeenErrors(handler) == false);
+    }
+
+
+    // Inner classes
+
+    /**
+        The class of consumer that semantically analyzes and checks each
+        top-level Element (and the Prologue) of a Document as it's parsed.
+    */
+    private static class ValidatingConsumer
+        implements AtriaStreamingDocumentParser.SubconstructConsumer
+    {
+        // Private fields
+
+        /** The analyzer that we use to analyze each subconstruct. */
+        private AtriaSemanticAnalyzer _analyzer;
+
+        /** The handler of any errors that occur in analyzing. */
+        private ErrorHandler _analysisHandler;
+
+        /** The checker that we use to check each Element's checklists. */
+        private AtriaValidityConstraintChecklistCompletionChecker _checker;
+
+        /** The handler of any errors that occur in checking. */
+        private ErrorHandler _checkingHandler;
+
+
+        // Constructors
+
+        /**
+            Constructs a ValidatingConsumer.
+
+            @param analyzer the semantic analyzer to use to analyze each
+            subconstruct
+            @param analysisHandler the error handler to use to handle any
+            errors that occur in analyzing the subconstructs
+            @param checker the checker to use to check each Element's
+            validity constraint checklists
+            @param checkingHandler the error handler to use to handle any
+            errors that occur in checking the Elements' checklists
+        */
+        public ValidatingConsumer(AtriaSemanticAnalyzer analyzer,
+            ErrorHandler analysisHandler,
+            AtriaValidityConstraintChecklistCompletionChecker checker,
+            ErrorHandler checkingHandler)
+        {
+            Assert.require(analyzer != null);
+            Assert.require(analysisHandler != null);
+            Assert.require(checker != null);
+            Assert.require(checkingHandler != null);
+
+            _analyzer = analyzer;
+            _analysisHandler = analysisHandler;
+            _checker = checker;
+            _checkingHandler = checkingHandler;
+        }
+
+
+        // Public methods
+
+        /**
+            @see AtriaStreamingDocumentParser.SubconstructConsumer#consumePrologue(AtriaConstructManagerBase.Prologue, ErrorHandler)
+        */
+        public void consumePrologue(AtriaConstructManager.Prologue p,
+                                    ErrorHandler handler)
+        {
+            Assert.require(p != null);
+            Assert.require(handler != null);
+
+            // Note: the Prologue's checklists are checked as part of
+            // checking its Document.
+            _analyzer.analyze(p, _analysisHandler);
+        }
+
+        /**
+            @see AtriaStreamingDocumentParser.SubconstructConsumer#consumeElement(AtriaConstructManagerBase.Element, ErrorHandler)
+        */
+        public void consumeElement(AtriaConstructManager.Element e,
+                                   ErrorHandler handler)
+        {
+            Assert.require(e != null);
+            Assert.require(handler != null);
+
+            _analyzer.analyze(e, 1, _analysisHandler);
+            _checker.check(e, _checkingHandler);
+        }
+    }
+}
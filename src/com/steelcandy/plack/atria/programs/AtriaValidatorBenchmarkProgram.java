@@ -0,0 +1,398 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.debug.ContractTier;
+
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.program.Program;
+import com.steelcandy.common.program.ProgramException;
+
+import com.steelcandy.plack.common.errors.RecordingErrorHandler;
+
+import java.io.*;
+import java.util.*;
+
+/**
+    A program that measures how quickly the Atria front end - that is,
+    the tokenizer, parser, semantic analyzer and validity checks used by
+    an AtriaValidator - validates a set of documents at each contract
+    level.
+    <p>
+    Since contract levels are selected when a JVM starts, the documents
+    are validated in a separate JVM for each level, which is started
+    with the same classpath as the one running this program.
+
+    @author James MacKay
+    @see ContractTier
+*/
+public class AtriaValidatorBenchmarkProgram
+    implements Program
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaValidatorResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        ARGUMENTS_SUMMARY_MSG =
+            "BENCHMARK_ARGUMENTS_SUMMARY_MSG",
+        USAGE_DESCRIPTION_MSG =
+            "BENCHMARK_USAGE_DESCRIPTION_MSG",
+        RESULT_MSG =
+            "BENCHMARK_RESULT_MSG",
+        CANNOT_RUN_MSG =
+            "CANNOT_RUN_BENCHMARK_MSG",
+        RUN_FAILED_MSG =
+            "BENCHMARK_RUN_FAILED_MSG";
+
+    /**
+        The option whose argument is the number of times that the
+        documents are validated before they're timed.
+    */
+    private static final String WARM_UPS_OPTION = "-w";
+
+    /**
+        The option whose argument is the number of times that the
+        documents are validated while they're timed.
+    */
+    private static final String PASSES_OPTION = "-n";
+
+    /**
+        The option that causes the documents to be validated and timed in
+        this JVM, at the contract levels that it was started with. It's
+        used to start the JVM for each contract level.
+    */
+    private static final String RUN_OPTION = "-r";
+
+    /** The default number of warm-up passes. */
+    private static final int DEFAULT_WARM_UPS = 3;
+
+    /** The default number of timed passes. */
+    private static final int DEFAULT_PASSES = 5;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaValidatorBenchmarkProgram.
+    */
+    public AtriaValidatorBenchmarkProgram()
+    {
+        // empty
+    }
+
+
+    // Public methods
+
+    /**
+        @see Program#execute(String[])
+    */
+    public void execute(String[] args)
+        throws ProgramException
+    {
+        Assert.require(args != null);
+
+        boolean doRun = false;
+        int warmUps = DEFAULT_WARM_UPS;
+        int passes = DEFAULT_PASSES;
+        int numArgs = args.length;
+        int start = 0;
+        while (start < numArgs && args[start].startsWith("-"))
+        {
+            String opt = args[start];
+            if (opt.equals(RUN_OPTION))
+            {
+                doRun = true;
+                start += 1;
+            }
+            else if (opt.equals(WARM_UPS_OPTION) && start + 1 < numArgs)
+            {
+                warmUps = parseCount(args[start + 1]);
+                start += 2;
+            }
+            else if (opt.equals(PASSES_OPTION) && start + 1 < numArgs)
+            {
+                passes = parseCount(args[start + 1]);
+                start += 2;
+            }
+            else
+            {
+                throw EXECUTOR.createBadUsageException(this);
+            }
+        }
+        if (start >= numArgs)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        if (doRun)
+        {
+            File[] files = new File[numArgs - start];
+            for (int i = 0; i < files.length; i++)
+            {
+                files[i] = new File(args[start + i]);
+            }
+            run(files, warmUps, passes);
+        }
+        else
+        {
+            List childArgs = new ArrayList();
+            childArgs.add(RUN_OPTION);
+            childArgs.add(WARM_UPS_OPTION);
+            childArgs.add(Integer.toString(warmUps));
+            childArgs.add(PASSES_OPTION);
+            childArgs.add(Integer.toString(passes));
+            for (int i = start; i < numArgs; i++)
+            {
+                childArgs.add(args[i]);
+            }
+
+            for (int level = ContractTier.NONE;
+                 level <= ContractTier.EXPENSIVE; level++)
+            {
+                runAtLevel(level, childArgs);
+            }
+        }
+    }
+
+    /**
+        @see Program#argumentsSummary
+    */
+    public String argumentsSummary()
+    {
+        String result = _resources.getMessage(ARGUMENTS_SUMMARY_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see Program#usageDescription
+    */
+    public String usageDescription()
+    {
+        String result = _resources.getMessage(USAGE_DESCRIPTION_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Protected methods
+
+    /**
+        Validates the specified documents the specified numbers of times
+        in this JVM, and writes how long the timed passes took to standard
+        output.
+
+        @param files the pathnames of the documents to validate
+        @param warmUps the number of times to validate the documents
+        before timing them
+        @param passes the number of times to validate the documents while
+        timing them
+    */
+    protected void run(File[] files, int warmUps, int passes)
+    {
+        Assert.require(files != null);
+        Assert.require(warmUps > 0);
+        Assert.require(passes > 0);
+
+        AtriaValidator validator = new AtriaValidator();
+        for (int i = 0; i < warmUps; i++)
+        {
+            validateAll(validator, files);
+        }
+
+        long startTime = System.nanoTime();
+        int numInvalid = 0;
+        for (int i = 0; i < passes; i++)
+        {
+            numInvalid += validateAll(validator, files);
+        }
+        long elapsedMillis = (System.nanoTime() - startTime) / 1000000L;
+
+        long numBytes = 0L;
+        for (int i = 0; i < files.length; i++)
+        {
+            numBytes += files[i].length();
+        }
+        long numDocs = (long) files.length * passes;
+        numBytes *= passes;
+        long millis = Math.max(elapsedMillis, 1L);
+
+        String level = ContractTier.levelName(ContractTier.defaultLevel());
+        Io.out.println(_resources.getMessage(RESULT_MSG, new Object[] {
+            level, new Long(numDocs), new Long(numInvalid),
+            new Long(elapsedMillis), new Long(numDocs * 1000L / millis),
+            new Long(numBytes / millis) }));
+        Io.out.flush();
+    }
+
+    /**
+        Validates each of the specified documents once, discarding any
+        errors found in them.
+
+        @param validator the validator to use to validate the documents
+        @param files the pathnames of the documents to validate
+        @return the number of the documents that are invalid
+    */
+    protected int validateAll(AtriaValidator validator, File[] files)
+    {
+        Assert.require(validator != null);
+        Assert.require(files != null);
+
+        int result = 0;
+
+        for (int i = 0; i < files.length; i++)
+        {
+            if (validator.validate(files[i],
+                                   new RecordingErrorHandler()) == false)
+            {
+                result += 1;
+            }
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        Runs this program in another JVM in which all of the contract
+        levels are set to the specified level, with its standard output
+        and standard error going to ours.
+
+        @param level the contract level
+        @param args the arguments to run this program with
+        @exception ProgramException thrown if the JVM couldn't be started,
+        or if the program failed
+    */
+    protected void runAtLevel(int level, List args)
+        throws ProgramException
+    {
+        Assert.require(args != null);
+
+        String levelName = ContractTier.levelName(level);
+        File java = new File(new File(System.getProperty("java.home"),
+                                      "bin"), "java");
+        List command = new ArrayList();
+        command.add(java.getPath());
+        command.add("-D" + ContractTier.LEVELS_PROPERTY + "=" + levelName);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(getClass().getName());
+        command.addAll(args);
+
+        int status;
+        try
+        {
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            Process p = builder.start();
+            p.getOutputStream().close();
+
+            BufferedReader r = new BufferedReader(
+                new InputStreamReader(p.getInputStream()));
+            try
+            {
+                String line;
+                while ((line = r.readLine()) != null)
+                {
+                    Io.out.println(line);
+                }
+                Io.out.flush();
+            }
+            finally
+            {
+                r.close();
+            }
+            status = p.waitFor();
+        }
+        catch (IOException ex)
+        {
+            String msg = _resources.getMessage(CANNOT_RUN_MSG, levelName,
+                                               ex.getMessage());
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+        catch (InterruptedException ex)
+        {
+            String msg = _resources.getMessage(CANNOT_RUN_MSG, levelName,
+                                               ex.toString());
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+
+        if (status != 0)
+        {
+            String msg = _resources.getMessage(RUN_FAILED_MSG, levelName,
+                                               new Integer(status));
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+    }
+
+    /**
+        Parses the argument to an option that specifies a number of
+        passes.
+
+        @param arg the option argument to parse
+        @return the number of passes that 'arg' represents
+        @exception ProgramException thrown if 'arg' doesn't represent a
+        positive integer
+    */
+    protected int parseCount(String arg)
+        throws ProgramException
+    {
+        Assert.require(arg != null);
+
+        int result;
+
+        try
+        {
+            result = Integer.parseInt(arg);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+        if (result <= 0)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        Assert.ensure(result > 0);
+        return result;
+    }
+
+
+    // Main method
+
+    /**
+        Main method.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        AtriaValidatorBenchmarkProgram p =
+            new AtriaValidatorBenchmarkProgram();
+        EXECUTOR.executeAndExit(p, args);
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.program.Program;
+import com.steelcandy.common.program.ProgramException;
+
+import com.steelcandy.plack.common.errors.ErrorBudget;
+
+import java.io.*;
+import java.util.*;
+
+/**
+    A program that checks whether one or more Atria documents are valid,
+    without converting them to anything.
+
+    @author James MacKay
+*/
+public class AtriaValidatorProgram
+    implements Program
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        AtriaValidatorResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        ARGUMENTS_SUMMARY_MSG =
+            "ARGUMENTS_SUMMARY_MSG",
+        USAGE_DESCRIPTION_MSG =
+            "USAGE_DESCRIPTION_MSG",
+        CANNOT_READ_PATHNAMES_MSG =
+            "CANNOT_READ_PATHNAMES_MSG",
+        INVALID_DOCUMENTS_MSG =
+            "INVALID_DOCUMENTS_MSG",
+        UNCHECKED_DOCUMENTS_MSG =
+            "UNCHECKED_DOCUMENTS_MSG";
+
+    /**
+        The option that causes the pathnames of the documents to validate
+        to also be read from standard input.
+    */
+    private static final String BATCH_OPTION = "-b";
+
+    /**
+        The option whose argument is the maximum number of errors that can
+        occur in a document before its validation is stopped.
+    */
+    private static final String MAX_DOCUMENT_ERRORS_OPTION = "-m";
+
+    /**
+        The option whose argument is the maximum number of errors that can
+        occur in all of the documents before validation is stopped.
+    */
+    private static final String MAX_ERRORS_OPTION = "-M";
+
+    /**
+        The option whose argument is the maximum number of fatal errors
+        that can occur in all of the documents before validation is
+        stopped.
+    */
+    private static final String MAX_FATAL_ERRORS_OPTION = "-F";
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaValidatorProgram.
+    */
+    public AtriaValidatorProgram()
+    {
+        // empty
+    }
+
+
+    // Public methods
+
+    /**
+        @see Program#execute(String[])
+    */
+    public void execute(String[] args)
+        throws ProgramException
+    {
+        Assert.require(args != null);
+
+        List pathnames = new ArrayList();
+        int numArgs = args.length;
+        boolean doReadPathnames = false;
+        int maxDocumentErrors = ErrorBudget.UNLIMITED;
+        int maxErrors = ErrorBudget.UNLIMITED;
+        int maxFatalErrors = ErrorBudget.UNLIMITED;
+        int start = 0;
+        while (start < numArgs && args[start].startsWith("-"))
+        {
+            String opt = args[start];
+            if (opt.equals(BATCH_OPTION))
+            {
+                doReadPathnames = true;
+                start += 1;
+            }
+            else if (start + 1 < numArgs)
+            {
+                int max = parseMaximum(args[start + 1]);
+                if (opt.equals(MAX_DOCUMENT_ERRORS_OPTION))
+                {
+                    maxDocumentErrors = max;
+                }
+                else if (opt.equals(MAX_ERRORS_OPTION))
+                {
+                    maxErrors = max;
+                }
+                else if (opt.equals(MAX_FATAL_ERRORS_OPTION))
+                {
+                    maxFatalErrors = max;
+                }
+                else
+                {
+                    throw EXECUTOR.createBadUsageException(this);
+                }
+                start += 2;
+            }
+            else
+            {
+                throw EXECUTOR.createBadUsageException(this);
+            }
+        }
+        if (doReadPathnames)
+        {
+            readPathnames(pathnames);
+        }
+        for (int i = start; i < numArgs; i++)
+        {
+            pathnames.add(args[i]);
+        }
+
+        int numDocs = pathnames.size();
+        if (numDocs == 0)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        AtriaValidator validator = new AtriaValidator();
+        validator.setMaximumDocumentErrorCount(maxDocumentErrors);
+        ErrorBudget batchBudget = null;
+        if (maxErrors != ErrorBudget.UNLIMITED ||
+            maxFatalErrors != ErrorBudget.UNLIMITED)
+        {
+            batchBudget = new ErrorBudget(maxErrors, maxFatalErrors);
+            validator.setBatchErrorBudget(batchBudget);
+        }
+
+        int numInvalid = 0;
+        int numChecked = 0;
+        Iterator iter = pathnames.iterator();
+        while (iter.hasNext() &&
+               (batchBudget == null || batchBudget.isExhausted() == false))
+        {
+            File f = new File((String) iter.next());
+            numChecked += 1;
+            if (validator.validate(f) == false)
+            {
+                numInvalid += 1;
+            }
+        }
+
+        if (numChecked < numDocs)
+        {
+            String msg = _resources.
+                getMessage(UNCHECKED_DOCUMENTS_MSG,
+                           new Integer(numDocs - numChecked),
+                           new Integer(numDocs));
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+        else if (numInvalid > 0)
+        {
+            String msg = _resources.
+                getMessage(INVALID_DOCUMENTS_MSG,
+                           new Integer(numInvalid), new Integer(numDocs));
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+    }
+
+    /**
+        @see Program#argumentsSummary
+    */
+    public String argumentsSummary()
+    {
+        String result = _resources.getMessage(ARGUMENTS_SUMMARY_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see Program#usageDescription
+    */
+    public String usageDescription()
+    {
+        String result = _resources.getMessage(USAGE_DESCRIPTION_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Protected methods
+
+    /**
+        Parses the specified argument to an option that specifies a
+        maximum number of errors.
+
+        @param arg the option argument to parse
+        @return the maximum number of errors that 'arg' represents
+        @exception ProgramException thrown if 'arg' doesn't represent a
+        positive integer
+    */
+    protected int parseMaximum(String arg)
+        throws ProgramException
+    {
+        Assert.require(arg != null);
+
+        int result;
+
+        try
+        {
+            result = Integer.parseInt(arg);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+        if (result <= 0)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        Assert.ensure(result > 0);
+        return result;
+    }
+
+    /**
+        Reads the pathnames of documents to validate from standard input,
+        one per line, and adds them to the specified list. Blank lines are
+        ignored.
+
+        @param pathnames the list to add the pathnames to
+        @exception ProgramException thrown if the pathnames couldn't be
+        read
+    */
+    protected void readPathnames(List pathnames)
+        throws ProgramException
+    {
+        Assert.require(pathnames != null);
+
+        BufferedReader r = new BufferedReader(Io.in);
+        try
+        {
+            String line;
+            while ((line = r.readLine()) != null)
+            {
+                line = line.trim();
+                if (line.length() > 0)
+                {
+                    pathnames.add(line);
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            String msg = _resources.
+                getMessage(CANNOT_READ_PATHNAMES_MSG, ex.getMessage());
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+    }
+
+
+    // Main method
+
+    /**
+        Main method.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        AtriaValidatorProgram p = new AtriaValidatorProgram();
+        EXECUTOR.executeAndExit(p, args);
+    }
+}
@@ -37,6 +37,16 @@ import java.util.*;
 /**
     Builds Java message catalog classes from specially formatted Atria
     documents.
+    <p>
+    All of the constant parts of a message - including the values of
+    catalog variables obtained using 'get' commands, and the results of
+    'join', 'quote' and 'newline' commands - are folded together when the
+    message catalog class is generated. So a message that takes no
+    arguments is generated as a String constant, and one that does take
+    arguments is built by appending its constant parts and arguments to
+    a buffer whose initial capacity is exactly the length of the message.
+    No variables are looked up and no intermediate objects are created
+    when a message is built.
 
     @author  James MacKay
 */
@@ -45,6 +55,14 @@ public class JavaMessageCatalogBuilder
 {
     // Constants
 
+    /**
+        The version of the code that this builder generates, which must be
+        changed whenever what it generates changes.
+
+        @see #builderVersion
+    */
+    private static final String BUILDER_VERSION = "2";
+
     /** The file extension for the Java source files we generate. */
     private static final String
         JAVA_SOURCE_EXTENSION = "java";
@@ -71,6 +89,8 @@ public class JavaMessageCatalogBuilder
     */
     private static final String[] CATALOG_IMPORTS = {
         BASE_CLASS_PACKAGE_NAME + "." + BASE_CLASS_NAME,
+        "java.io.IOException",
+        "java.io.Writer",
         "java.util.Locale",
     };
 
@@ -89,6 +109,13 @@ public class JavaMessageCatalogBuilder
     private static final String
         WRITER_ARGUMENT_NAME = "w";
 
+    /**
+        The name of the local variable in message-building methods that
+        refers to the buffer that the message is built in.
+    */
+    private static final String
+        BUFFER_VARIABLE_NAME = "b";
+
     /** The name of the Locale argument. */
     private static final String
         LOCALE_ARGUMENT_NAME = "loc";
@@ -104,50 +131,73 @@ public class JavaMessageCatalogBuilder
     private static final String
         MESSAGE_ARGUMENT_NAME_PREFIX = "arg";
 
-// TODO: is there a different prefix to use for 32-bit Unicode chars ???!!!???
     /**
-        The Unicode character escape prefix for use in Java String
-        constants. (The prefix must be followed by the hexadecimal
-        representation of the character's (16-bit?) codepoint.
+        The suffix - after the message name - of the name of the constant
+        that a message that takes no arguments is generated as.
     */
     private static final String
-        UNICODE_ESCAPE_PREFIX = "\\u";
+        MESSAGE_CONSTANT_NAME_SUFFIX = "Text";
 
     /**
-        The name of the method in the generated Java code that maps an
-        Atria variable name to its value.
-        <p>
-        The method is assumed to be defined in the base message catalog
-        class.
+        The Unicode character escape prefix for use in Java String
+        constants. (The prefix must be followed by the four digit
+        hexadecimal representation of the character's UTF-16 code unit.)
     */
     private static final String
-        ADD_VARIABLE_METHOD_NAME = "addVariable";
+        UNICODE_ESCAPE_PREFIX = "\\u";
 
     /**
-        The name of the method in the generated Java code that returns the
-        values of Atria variables given their names.
-        <p>
-        The method is assumed to be defined in the base message catalog
-        class.
+        The number of hexadecimal digits that must follow a
+        UNICODE_ESCAPE_PREFIX.
     */
-    private static final String
-        VARIABLE_VALUE_METHOD_NAME = "variableValue";
+    private static final int UNICODE_ESCAPE_DIGITS = 4;
 
 
     /** Java standard library class names. */
     private static final String
         LOCALE_CLASS_NAME = "Locale",
-        STRING_CLASS_NAME = "String";
+        STRING_CLASS_NAME = "String",
+        BUFFER_CLASS_NAME = "StringBuffer";
 
-    /** Java character/String constants. */
+    /**
+        The name of the (platform-dependent) newline constant defined in
+        the base message catalog class.
+    */
     private static final String
-        JAVA_QUOTE_VAR = "QUOTE",
         JAVA_NEWLINE_VAR = "NEWLINE";
 
-    /** The Java doouble quotation mark character (as a String). */
+    /** The Java double quotation mark character (as a String). */
     private static final String
         JAVA_LITERAL_QUOTE = "\"";
 
+    /**
+        The text that an Atria 'quote' command is folded into. It must have
+        the same value as the QUOTE constant in the base message catalog
+        class.
+    */
+    private static final String
+        QUOTE_TEXT = "\"";
+
+    /**
+        The message part that represents a newline, whose value isn't known
+        until the message catalog is used.
+
+        @see #_messageParts
+    */
+    private static final Object NEWLINE_PART = new Object();
+
+
+    // Private fields
+
+    /**
+        The parts of the message that we're currently generating the
+        methods for, or null if we're not currently generating them. Each
+        part is a String containing (unescaped) constant text, NEWLINE_PART
+        or an Integer containing the (0-based) index of a message argument.
+        Adjacent constant texts are always combined into a single part.
+    */
+    private List _messageParts;
+
 
     // Constructors
 
@@ -156,7 +206,7 @@ public class JavaMessageCatalogBuilder
     */
     public JavaMessageCatalogBuilder()
     {
-        // empty
+        _messageParts = null;
     }
 
 
@@ -175,6 +225,29 @@ public class JavaMessageCatalogBuilder
 
     // Protected methods
 
+    /**
+        @see AtriaAbstractMessageCatalogBuilder#createBuilder
+    */
+    protected AtriaAbstractMessageCatalogBuilder createBuilder()
+    {
+        AtriaAbstractMessageCatalogBuilder result =
+            new JavaMessageCatalogBuilder();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see AtriaAbstractMessageCatalogBuilder#builderVersion
+    */
+    protected String builderVersion()
+    {
+        String result = super.builderVersion() + " " + BUILDER_VERSION;
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
     /**
         Writes the start of the Java class file that contains the class
         that represents the message catalog.
@@ -251,7 +324,7 @@ public class JavaMessageCatalogBuilder
         writeLine("");
         writeLine("/**");
         indent();
-        writeLine("Constructs our single instance,");
+        writeLine("Constructs our single instance.");
         unindent();
         writeLine("*/");
         write("private ");
@@ -259,7 +332,7 @@ public class JavaMessageCatalogBuilder
         writeLine("()");
         writeLine("{");
         indent();
-        writeLine("addAllVariables();");
+        writeLine("// empty");
         unindent();
         writeLine("}");
         writeLine("");
@@ -290,112 +363,97 @@ public class JavaMessageCatalogBuilder
     }
 
     /**
-        Writes out the Java source code that stores the values of all of the
-        variables set in the source Atria message catalog.
+        Writes out the definitions of all of the message building methods
+        for all of the messages defined in 'doc'.
 
         @param doc the source Atria message catalog document
         @param handler the error handler to use to handle any and all errors
     */
-    protected void writeAllVariableSettingMethods(AtriaConstructManager.
-                                        Document doc, ErrorHandler handler)
+    protected void writeAllMessageBuildingMethods(AtriaConstructManager.
+                                    Document doc, ErrorHandler handler)
     {
         Assert.require(doc != null);
         Assert.require(handler != null);
 
-        writeLine("");
-        writeLine("// Private methods");
-        writeLine("");
+        if (doc.elementCount() > 0)
+        {
+            visitAll(doc.elementList(), handler);
+        }
+    }
+
+
+    /**
+        Writes the definition of the Java constant that a message that takes
+        no arguments and consists of the specified parts is generated as.
+
+        @param methodName the name of the message's methods
+        @param parts the parts of the message
+        @see #_messageParts
+    */
+    protected void writeMessageConstantDefinition(String methodName,
+                                                  List parts)
+    {
+        Assert.require(methodName != null);
+        Assert.require(parts != null);
+
         writeLine("/**");
         indent();
-        writeLine("Adds all of the variables defined in the source Atria " +
-                  "message catalog.");
+        write("The \"");
+        write(methodName);
+        writeLine("\" message.");
         unindent();
         writeLine("*/");
-        writeLine("private void addAllVariables()");
-        writeLine("{");
+        write("private static final ");
+        writeLine(STRING_CLASS_NAME);
         indent();
-        StringIterator iter = variableNamesIterator();
-        if (iter.hasNext() == false)
+        write(messageConstantName(methodName));
+        write(" = ");
+        if (parts.isEmpty())
         {
-            writeLine("// empty");
+            write(JAVA_LITERAL_QUOTE);
+            write(JAVA_LITERAL_QUOTE);
         }
         else
         {
-            write("StringWriter ");
-            write(WRITER_ARGUMENT_NAME);
-            writeLine(";");
-            writeLine("");
-            while (iter.hasNext())
+            int sz = parts.size();
+            for (int i = 0; i < sz; i++)
             {
-                String varName = iter.next();
-                AtriaConstructManager.Expression expr =
-                                                findVariableValue(varName);
-                write(WRITER_ARGUMENT_NAME);
-                writeLine(" = new StringWriter();");
-                expr.accept(this, handler);
-                write(ADD_VARIABLE_METHOD_NAME);
-                write("(");
-                write(JAVA_LITERAL_QUOTE);
-                write(varName);
-                write(JAVA_LITERAL_QUOTE);
-                write(", ");
-                write(WRITER_ARGUMENT_NAME);
-                writeLine(".toString());");
-                if (iter.hasNext())
+                if (i > 0)
                 {
-                    writeLine("");
+                    write(" + ");
                 }
+                writePartExpression(parts.get(i));
             }
-        }  // else
-        unindent();
-        writeLine("}");
-    }
-
-    /**
-        Writes out the definitions of all of the message building methods
-        for all of the messages defined in 'doc'.
-
-        @param doc the source Atria message catalog document
-        @param handler the error handler to use to handle any and all errors
-    */
-    protected void writeAllMessageBuildingMethods(AtriaConstructManager.
-                                    Document doc, ErrorHandler handler)
-    {
-        Assert.require(doc != null);
-        Assert.require(handler != null);
-
-        if (doc.elementCount() > 0)
-        {
-            visitAll(doc.elementList(), handler);
         }
+        writeLine(";");
+        unindent();
+        writeLine("");
     }
 
-
     /**
         Writes the definition of the Java method that builds a String
-        message corresponding to the specified Atria message element.
+        message consisting of the specified parts.
 
-        @param c the Atria message element
-        @param handler the error handler to use to handle any and all errors
+        @param methodName the name of the method
+        @param numArgs the number of arguments that the message takes
+        @param parts the parts of the message
+        @see #_messageParts
     */
-    protected void
-        writeMessageStringBuildingMethodDefinition(AtriaConstructManager.
-                                             Element c, ErrorHandler handler)
+    protected void writeMessageStringBuildingMethodDefinition(
+                                String methodName, int numArgs, List parts)
     {
-        Assert.require(c != null);
-        Assert.require(handler != null);
+        Assert.require(methodName != null);
+        Assert.require(numArgs >= 0);
+        Assert.require(parts != null);
 
-        int numArgs = numberOfMessageArguments(c);
         writeMessageStringBuildingMethodDocumentation(numArgs);
-
-        String methodName = MANAGER.elementName(c);
-        Assert.check(methodName != null);
         writeMessageStringBuildingMethodSignature(methodName, numArgs);
         writeLine("{");
         indent();
         try
         {
-            writeMessageStringBuildingMethodBody(c, methodName, handler);
+            writeMessageStringBuildingMethodBody(methodName, numArgs,
+                                                 parts);
         }
         finally
         {
@@ -447,7 +505,7 @@ public class JavaMessageCatalogBuilder
 
         @param methodName the name of the method
         @param numArgs the number of arguments the method takes (not
-        counting the 'Style' argument)
+        counting the Locale argument)
     */
     protected void
         writeMessageStringBuildingMethodSignature(String methodName,
@@ -456,105 +514,150 @@ public class JavaMessageCatalogBuilder
         Assert.require(methodName != null);
         Assert.require(numArgs >= 0);
 
-        boolean isLocalizable = isCatalogLocalizable();
-
         write("public ");
         write(STRING_CLASS_NAME);
         write(" ");
         write(methodName);
         write("(");
-        if (isLocalizable)
-        {
-            write(LOCALE_CLASS_NAME);
-            write(" ");
-            write(LOCALE_ARGUMENT_NAME);
-        }
-        if (numArgs > 0)
-        {
-            if (isLocalizable)
-            {
-                writeLine(",");
-                indent();
-            }
-            try
-            {
-                for (int i = 0; i < numArgs; i++)
-                {
-                    write(STRING_CLASS_NAME);
-                    write(" ");
-                    writeArgumentName(i);
-                    if (i < numArgs - 1)
-                    {
-                        write(ARG_SEP);
-                    }
-                }
-            }
-            finally
-            {
-                if (isLocalizable)
-                {
-                    unindent();
-                }
-            }
-        }
+        writeParameters(false, numArgs);
         writeLine(")");
     }
 
     /**
         Writes the body of the definition of the Java String message-building
-        method corresponding to the specified element construct.
+        method with the specified name that builds a message consisting of
+        the specified parts.
         <p>
         Note: this method assumes that the caller has indented our writer to
         the level to which the first line of the method body is to be
         indented.
 
-        @param c the Atria message element
         @param methodName the name of the method whose body we're building
-        @param handler the error handler to use to handle any and all errors
+        @param numArgs the number of arguments that the message takes
+        @param parts the parts of the message
+        @see #_messageParts
     */
-    protected void
-        writeMessageStringBuildingMethodBody(AtriaConstructManager.
-                        Element c, String methodName, ErrorHandler handler)
+    protected void writeMessageStringBuildingMethodBody(String methodName,
+                                                int numArgs, List parts)
     {
-        Assert.require(c != null);
         Assert.require(methodName != null);
-        Assert.require(handler != null);
+        Assert.require(numArgs >= 0);
+        Assert.require(parts != null);
 
-        writeLine("StringWriter w = new StringWriter();");
-        write(methodName);
-        write("(w, ");
-        writeNakedMessageMethodCallArguments(c, handler);
-        writeLine(");");
-        writeLine("");
-        writeLine("// Assert.ensure(result != null);");
-        writeLine("return toStringMessage(w);");
+        if (numArgs == 0)
+        {
+            writeLine("// Assert.ensure(result != null);");
+            write("return ");
+            write(messageConstantName(methodName));
+            writeLine(";");
+        }
+        else
+        {
+            write(BUFFER_CLASS_NAME);
+            write(" ");
+            write(BUFFER_VARIABLE_NAME);
+            write(" = new ");
+            write(BUFFER_CLASS_NAME);
+            write("(");
+            writeMessageLengthExpression(parts);
+            writeLine(");");
+
+            Iterator iter = parts.iterator();
+            while (iter.hasNext())
+            {
+                write(BUFFER_VARIABLE_NAME);
+                write(".append(");
+                writePartExpression(iter.next());
+                writeLine(");");
+            }
+            writeLine("");
+            writeLine("// Assert.ensure(result != null);");
+            write("return ");
+            write(BUFFER_VARIABLE_NAME);
+            writeLine(".toString();");
+        }
+    }
+
+    /**
+        Writes out a Java expression whose value is the length of a message
+        consisting of the specified parts.
+
+        @param parts the parts of a message
+        @see #_messageParts
+    */
+    protected void writeMessageLengthExpression(List parts)
+    {
+        Assert.require(parts != null);
+
+        int constantLength = 0;
+        int numNewlines = 0;
+        StringList argLengths = StringList.createArrayList();
+        Iterator iter = parts.iterator();
+        while (iter.hasNext())
+        {
+            Object part = iter.next();
+            if (part instanceof String)
+            {
+                constantLength += ((String) part).length();
+            }
+            else if (part == NEWLINE_PART)
+            {
+                numNewlines += 1;
+            }
+            else
+            {
+                int index = ((Integer) part).intValue();
+                argLengths.add(argumentName(index) + ".length()");
+            }
+        }
+
+        write(String.valueOf(constantLength));
+        if (numNewlines > 0)
+        {
+            write(" + ");
+            if (numNewlines > 1)
+            {
+                write(String.valueOf(numNewlines));
+                write(" * ");
+            }
+            write(JAVA_NEWLINE_VAR);
+            write(".length()");
+        }
+        StringIterator lenIter = argLengths.iterator();
+        while (lenIter.hasNext())
+        {
+            write(" +");
+            writeLine("");
+            indent();
+            write(lenIter.next());
+            unindent();
+        }
     }
 
 
     /**
         Writes the definition of the Java method that writes to a Java Writer
-        the message corresponding to the specified Atria message element.
+        the message consisting of the specified parts.
 
-        @param c the Atria message element
-        @param handler the error handler to use to handle any and all errors
+        @param methodName the name of the method
+        @param numArgs the number of arguments that the message takes
+        @param parts the parts of the message
+        @see #_messageParts
     */
-    protected void writeWriteMessageMethodDefinition(AtriaConstructManager.
-                                             Element c, ErrorHandler handler)
+    protected void writeWriteMessageMethodDefinition(String methodName,
+                                                int numArgs, List parts)
     {
-        Assert.require(c != null);
-        Assert.require(handler != null);
+        Assert.require(methodName != null);
+        Assert.require(numArgs >= 0);
+        Assert.require(parts != null);
 
-        int numArgs = numberOfMessageArguments(c);
         writeWriteMessageMethodDocumentation(numArgs);
-
-        String methodName = MANAGER.elementName(c);
-        Assert.check(methodName != null);
         writeWriteMessageMethodSignature(methodName, numArgs);
         writeLine("{");
         indent();
         try
         {
-            writeWriteMessageMethodBody(c, handler);
+            writeWriteMessageMethodBody(methodName, numArgs, parts);
         }
         finally
         {
@@ -585,7 +688,7 @@ public class JavaMessageCatalogBuilder
         {
             write("@param ");
             write(LOCALE_ARGUMENT_NAME);
-            writeLine(" the locate to use in building the message");
+            writeLine(" the locale to use in building the message");
         }
 
         for (int i = 0; i < numArgs; i++)
@@ -595,6 +698,10 @@ public class JavaMessageCatalogBuilder
             write(" argument #");
             writeLine(String.valueOf(i + 1));
         }
+        write("@exception IOException thrown if an error occurs in " +
+              "using '");
+        write(WRITER_ARGUMENT_NAME);
+        writeLine("'");
         unindent();
         writeLine("*/");
     }
@@ -613,27 +720,100 @@ public class JavaMessageCatalogBuilder
         Assert.require(methodName != null);
         Assert.require(numArgs >= 0);
 
-        boolean isLocalizable = isCatalogLocalizable();
-
         write("public void ");
         write(methodName);
-        write("(Writer ");
-        write(WRITER_ARGUMENT_NAME);
-        write(ARG_SEP);
+        write("(");
+        writeParameters(true, numArgs);
+        writeLine(")");
+        indent();
+        writeLine("throws IOException");
+        unindent();
+    }
+
+    /**
+        Writes the body of the definition of the Java message writing method
+        that writes out the message consisting of the specified parts.
+        <p>
+        Note: this method assumes that the caller has indented our writer to
+        the level to which the first line of the method body is to be
+        indented.
 
+        @param methodName the name of the method whose body we're building
+        @param numArgs the number of arguments that the message takes
+        @param parts the parts of the message
+        @see #_messageParts
+    */
+    protected void writeWriteMessageMethodBody(String methodName,
+                                               int numArgs, List parts)
+    {
+        Assert.require(methodName != null);
+        Assert.require(numArgs >= 0);
+        Assert.require(parts != null);
+
+        if (parts.isEmpty())
+        {
+            writeLine("// empty");
+        }
+        else if (numArgs == 0)
+        {
+            write(WRITER_ARGUMENT_NAME);
+            write(".write(");
+            write(messageConstantName(methodName));
+            writeLine(");");
+        }
+        else
+        {
+            Iterator iter = parts.iterator();
+            while (iter.hasNext())
+            {
+                write(WRITER_ARGUMENT_NAME);
+                write(".write(");
+                writePartExpression(iter.next());
+                writeLine(");");
+            }
+        }
+    }
+
+
+    /**
+        Writes out the parameters - without the surrounding parentheses -
+        of a message-building method.
+
+        @param hasWriter true iff the method's first parameter is the Writer
+        that it writes the message to
+        @param numArgs the number of message arguments the method takes
+    */
+    protected void writeParameters(boolean hasWriter, int numArgs)
+    {
+        Assert.require(numArgs >= 0);
+
+        boolean isLocalizable = isCatalogLocalizable();
+        boolean needsSep = false;
+
+        if (hasWriter)
+        {
+            write("Writer ");
+            write(WRITER_ARGUMENT_NAME);
+            needsSep = true;
+        }
         if (isLocalizable)
         {
+            if (needsSep)
+            {
+                write(ARG_SEP);
+            }
             write(LOCALE_CLASS_NAME);
             write(" ");
             write(LOCALE_ARGUMENT_NAME);
+            needsSep = true;
         }
         if (numArgs > 0)
         {
-            if (isLocalizable)
+            if (needsSep)
             {
                 writeLine(",");
-                indent();
             }
+            indent();
             try
             {
                 for (int i = 0; i < numArgs; i++)
@@ -649,126 +829,123 @@ public class JavaMessageCatalogBuilder
             }
             finally
             {
-                if (isLocalizable)
-                {
-                    unindent();
-                }
+                unindent();
             }
         }
-        writeLine(")");
     }
 
     /**
-        Writes the body of the definition of the Java message writing method
-        corresponding to the specified element construct.
-        <p>
-        Note: this method assumes that the caller has indented our writer to
-        the level to which the first line of the method body is to be
-        indented.
+        Writes out the Java expression whose value is the specified message
+        part.
 
-        @param c the Atria message element
-        @param handler the error handler to use to handle any and all errors
+        @param part a message part
+        @see #_messageParts
     */
-    protected void writeWriteMessageMethodBody(AtriaConstructManager.
-                                            Element c, ErrorHandler handler)
+    protected void writePartExpression(Object part)
     {
-        Assert.require(c != null);
-        Assert.require(handler != null);
-        ConstructList items = c.contentItemList();
-        if (items.isEmpty())
+        Assert.require(part != null);
+
+        if (part instanceof String)
         {
-            writeLine("// empty");
+            write(JAVA_LITERAL_QUOTE);
+            write(toJavaStringContents((String) part));
+            write(JAVA_LITERAL_QUOTE);
+        }
+        else if (part == NEWLINE_PART)
+        {
+            write(JAVA_NEWLINE_VAR);
         }
         else
         {
-            visitAll(items, handler);
+            writeArgumentName(((Integer) part).intValue());
         }
     }
 
-
     /**
-        Writes out the arguments for a call to a message String builder (or -
-        except for the Writer argument a message writing) method
-        <em>without</em> the parentheses that usually surround method
-        arguments.
+        Returns the specified text with all of the characters that can't
+        appear directly in a Java String literal escaped.
 
-        @param c the element that represents the message that the method
-        builds (or writes)
-        @param handler the error handler to use to handle any errors
+        @param txt the text to escape
+        @return 'txt' escaped so that it can appear between the quotes of a
+        Java String literal
     */
-    protected void
-        writeNakedMessageMethodCallArguments(AtriaConstructManager.Element c,
-                                             ErrorHandler handler)
+    protected String toJavaStringContents(String txt)
     {
-        Assert.require(c != null);
-        Assert.require(handler != null);
+        Assert.require(txt != null);
 
-        int numArgs = numberOfMessageArguments(c);
-        if (isCatalogLocalizable())
+        int sz = txt.length();
+        StringBuffer buf = new StringBuffer(sz * 2);
+            // allow room for escapes
+
+        final int firstNonAsciiCode =
+            AtriaInfo.FIRST_NON_ASCII_UNICODE_CODEPOINT;
+        for (int i = 0; i < sz; i++)
         {
-            write(LOCALE_ARGUMENT_NAME);
-            if (numArgs > 0)
+            char ch = txt.charAt(i);
+            int charCode = (int) ch;
+            if (ch == '"' || ch == '\\')
             {
-                write(ARG_SEP);
+                buf.append('\\').append(ch);
             }
-        }
-        for (int i = 0; i < numArgs; i++)
-        {
-            if (i > 0)
+            else if (ch == '\n')
             {
-                write(ARG_SEP);
+                buf.append("\\n");
+            }
+            else if (ch == '\r')
+            {
+                buf.append("\\r");
+            }
+            else if (ch == '\t')
+            {
+                buf.append("\\t");
+            }
+            else if (charCode < firstNonAsciiCode &&
+                     Character.isISOControl(ch) == false)
+            {
+                buf.append(ch);
+            }
+            else
+            {
+                // Note: we can't use a Unicode escape for other control
+                // characters since they're translated before the Java
+                // source code is tokenized, so we use an octal escape.
+                if (charCode < firstNonAsciiCode)
+                {
+                    buf.append('\\').append(Integer.toOctalString(charCode));
+                }
+                else
+                {
+                    String hex = Integer.toHexString(charCode);
+                    buf.append(UNICODE_ESCAPE_PREFIX);
+                    for (int j = hex.length(); j < UNICODE_ESCAPE_DIGITS;
+                         j++)
+                    {
+                        buf.append('0');
+                    }
+                    buf.append(hex);
+                }
             }
-            writeArgumentName(i);
         }
-    }
 
-    /**
-        Writes out the Java source code that writes out a double quotation
-        mark using the Writer argument.
-    */
-    protected void writeWriteQuote()
-    {
-        writeWriteCallStart();
-        write(JAVA_QUOTE_VAR);
-        writeWriteCallEnd();
-    }
+        String result = buf.toString();
 
-    /**
-        Writes out the Java source code that writes out a newline using the
-        Writer argument.
-    */
-    protected void writeWriteNewline()
-    {
-        writeWriteCallStart();
-        write(JAVA_NEWLINE_VAR);
-        writeWriteCallEnd();
+        Assert.ensure(result != null);
+        return result;
     }
 
     /**
-        Writes out the start of a call of a write() method on the Java
-        Writer argument.
-        <p>
-        Note: the next this written after this method is called should be the
-        value that the call is to write out, which should then be followed by
-        a call to writeWriteCallEnd().
-
-        @see #writeWriteCallEnd
+        @param methodName the name of the methods that build a message that
+        takes no arguments
+        @return the name of the constant that the message is generated as
     */
-    protected void writeWriteCallStart()
+    protected String messageConstantName(String methodName)
     {
-        write(WRITER_ARGUMENT_NAME);
-        write(".write(");  // closing parenthesis in writeWriteCallEnd()
-    }
+        Assert.require(methodName != null);
 
-    /**
-        Writes out the end of a call of a write() method on the Java
-        Writer argument.
+        String result = methodName + MESSAGE_CONSTANT_NAME_SUFFIX;
 
-        @see #writeWriteCallStart
-    */
-    protected void writeWriteCallEnd()
-    {
-        writeLine(");");  // opening parenthesis in writeWriteCallStart()
+        Assert.ensure(result != null);
+        return result;
     }
 
     /**
@@ -802,7 +979,57 @@ public class JavaMessageCatalogBuilder
     }
 
 
-    // Protected methods
+    /**
+        Adds the specified constant text to the end of the parts of the
+        message that we're currently generating.
+
+        @param txt the text to add
+    */
+    protected void addTextPart(String txt)
+    {
+        Assert.require(txt != null);
+        Assert.require(_messageParts != null);
+
+        if (txt.length() > 0)
+        {
+            int last = _messageParts.size() - 1;
+            if (last >= 0 && _messageParts.get(last) instanceof String)
+            {
+                String prev = (String) _messageParts.get(last);
+                _messageParts.set(last, prev + txt);
+            }
+            else
+            {
+                _messageParts.add(txt);
+            }
+        }
+    }
+
+    /**
+        Adds a newline to the end of the parts of the message that we're
+        currently generating.
+    */
+    protected void addNewlinePart()
+    {
+        Assert.require(_messageParts != null);
+
+        _messageParts.add(NEWLINE_PART);
+    }
+
+    /**
+        Adds the message argument with the specified index to the end of
+        the parts of the message that we're currently generating.
+
+        @param index the 0-based index of the message argument
+    */
+    protected void addArgumentPart(int index)
+    {
+        Assert.require(index >= 0);
+        Assert.require(_messageParts != null);
+
+        _messageParts.add(new Integer(index));
+    }
+
 
     /**
         @see AtriaAbstractMessageCatalogBuilder#writeOutputFile(AtriaConstructManagerBase.Document, AtriaMessageCatalogData, ErrorHandler)
@@ -821,7 +1048,6 @@ public class JavaMessageCatalogBuilder
         // subconstructs to be visited.
         writeClassFileStart(moduleName, className);
         writeAllMessageBuildingMethods(c, handler);
-        writeAllVariableSettingMethods(c, handler);
         writeClassFileEnd(moduleName, className);
     }
 
@@ -834,8 +1060,27 @@ public class JavaMessageCatalogBuilder
         Assert.require(c != null);
         Assert.require(handler != null);
 
-        writeMessageStringBuildingMethodDefinition(c, handler);
-        writeWriteMessageMethodDefinition(c, handler);
+        List parts = new ArrayList();
+        _messageParts = parts;
+        try
+        {
+            visitAll(c.contentItemList(), handler);
+        }
+        finally
+        {
+            _messageParts = null;
+        }
+
+        String methodName = MANAGER.elementName(c);
+        Assert.check(methodName != null);
+        int numArgs = numberOfMessageArguments(c);
+        if (numArgs == 0)
+        {
+            writeMessageConstantDefinition(methodName, parts);
+        }
+        writeMessageStringBuildingMethodDefinition(methodName, numArgs,
+                                                   parts);
+        writeWriteMessageMethodDefinition(methodName, numArgs, parts);
     }
 
     /**
@@ -853,14 +1098,12 @@ public class JavaMessageCatalogBuilder
 
         if (isQuoted)
         {
-            writeWriteQuote();
+            addTextPart(QUOTE_TEXT);
         }
-        writeWriteCallStart();
-        write(argumentName(index));
-        writeWriteCallEnd();
+        addArgumentPart(index);
         if (isQuoted)
         {
-            writeWriteQuote();
+            addTextPart(QUOTE_TEXT);
         }
     }
 
@@ -872,35 +1115,13 @@ public class JavaMessageCatalogBuilder
         Assert.require(txt != null);
         Assert.require(handler != null);
 
-        int sz = txt.length();
-        StringBuffer buf = new StringBuffer(sz * 2);
-            // allow room for Unicode escapes
-
-        final int firstNonAsciiCode =
-            AtriaInfo.FIRST_NON_ASCII_UNICODE_CODEPOINT;
-        for (int i = 0; i < sz; i++)
-        {
-            char ch = txt.charAt(i);
-            int charCode = (int) ch;
-            if (charCode < firstNonAsciiCode)
-            {
-                buf.append(ch);
-            }
-            else
-            {
-                buf.append(UNICODE_ESCAPE_PREFIX);
-                buf.append(Integer.toHexString(charCode));
-            }
-        }
-
-        writeWriteCallStart();
-        write(JAVA_LITERAL_QUOTE);
-        write(buf.toString());
-        write(JAVA_LITERAL_QUOTE);
-        writeWriteCallEnd();
+        addTextPart(txt);
     }
 
     /**
+        Note: this implementation folds the variable's value into the
+        message, rather than looking it up when the message is built.
+
         @see AtriaAbstractMessageCatalogBuilder#writeGetCommand(String, ErrorHandler)
     */
     protected void writeGetCommand(String varName, ErrorHandler handler)
@@ -909,14 +1130,11 @@ public class JavaMessageCatalogBuilder
         Assert.require(varName.length() > 0);
         Assert.require(handler != null);
 
-        writeWriteCallStart();
-        write(VARIABLE_VALUE_METHOD_NAME);
-        write("(");
-        write(JAVA_LITERAL_QUOTE);
-        write(varName);
-        write(JAVA_LITERAL_QUOTE);
-        write(")");
-        writeWriteCallEnd();
+        AtriaConstructManager.Expression expr = findVariableValue(varName);
+        Assert.check(expr != null);
+            // since our semantic analyzer checks that all of the variables
+            // that are used are set
+        expr.accept(this, handler);
     }
 
     /**
@@ -928,7 +1146,7 @@ public class JavaMessageCatalogBuilder
         Assert.require(c != null);
         Assert.require(handler != null);
 
-        // Write out each argument.
+        // Add each argument.
         visitAll(c.argumentList(), handler);
     }
 
@@ -941,7 +1159,7 @@ public class JavaMessageCatalogBuilder
         Assert.require(c != null);
         Assert.require(handler != null);
 
-        writeWriteNewline();
+        addNewlinePart();
     }
 
     /**
@@ -953,7 +1171,7 @@ public class JavaMessageCatalogBuilder
         Assert.require(c != null);
         Assert.require(handler != null);
 
-        writeWriteQuote();
+        addTextPart(QUOTE_TEXT);
     }
 
     /**
@@ -965,9 +1183,9 @@ public class JavaMessageCatalogBuilder
         Assert.require(c != null);
         Assert.require(handler != null);
 
-        writeWriteQuote();
+        addTextPart(QUOTE_TEXT);
         visitAll(c.argumentList(), handler);  // the one Expression argument
-        writeWriteQuote();
+        addTextPart(QUOTE_TEXT);
     }
 
     /**
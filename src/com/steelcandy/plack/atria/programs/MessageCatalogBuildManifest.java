@@ -0,0 +1,387 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.programs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.io.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+    Records, for each message catalog that has been successfully built,
+    the hash of the catalog's source file and the version of the builder
+    that built it, so that catalogs that haven't changed since they were
+    last built don't have to be built again.
+    <p>
+    A manifest is stored in a text file with one line per catalog. Each
+    line consists of the catalog source file's hash, the builder version
+    and the catalog source file's absolute pathname, separated by tabs.
+    <p>
+    Instances of this class are thread-safe.
+
+    @author  James MacKay
+*/
+public class MessageCatalogBuildManifest
+{
+    // Constants
+
+    /** The separator between the fields in a line of a manifest file. */
+    private static final String FIELD_SEPARATOR = "\t";
+
+    /** The number of fields in each line of a manifest file. */
+    private static final int NUMBER_OF_FIELDS = 3;
+
+
+    // Private fields
+
+    /** The pathname of the file this manifest is stored in. */
+    private File _file;
+
+    /**
+        A map from the absolute pathname of each catalog source file in
+        this manifest to its Entry.
+    */
+    private Map _entries;
+
+    /** True iff this manifest has changed since it was last saved. */
+    private boolean _isModified;
+
+
+    // Constructors
+
+    /**
+        Loads the manifest stored in the specified file.
+        <p>
+        If the file doesn't exist, can't be read or isn't a valid manifest
+        then the manifest that's returned will be empty, and so every
+        catalog will be considered to be out of date.
+
+        @param f the pathname of the file the manifest is stored in
+        @return the manifest stored in 'f'
+    */
+    public static MessageCatalogBuildManifest load(File f)
+    {
+        Assert.require(f != null);
+
+        MessageCatalogBuildManifest result =
+            new MessageCatalogBuildManifest(f);
+
+        if (f.isFile())
+        {
+            BufferedReader r = null;
+            try
+            {
+                r = new BufferedReader(new FileReader(f));
+                String line;
+                while ((line = r.readLine()) != null)
+                {
+                    result.addLine(line);
+                }
+            }
+            catch (IOException ex)
+            {
+                result._entries.clear();
+                result._isModified = true;
+            }
+            finally
+            {
+                Io.tryToClose(r);
+            }
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Constructs an empty MessageCatalogBuildManifest.
+
+        @param f the pathname of the file the manifest is stored in
+    */
+    private MessageCatalogBuildManifest(File f)
+    {
+        Assert.require(f != null);
+
+        _file = f;
+        _entries = new HashMap();
+        _isModified = false;
+    }
+
+
+    // Public static methods
+
+    /**
+        @param f the pathname of a catalog source file
+        @return the hash of the contents of 'f'
+        @exception IOException thrown if 'f' couldn't be read
+        @see ContentDigest#of(File)
+    */
+    public static String sourceHash(File f)
+        throws IOException
+    {
+        Assert.require(f != null);
+
+        String result = ContentDigest.of(f);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Public methods
+
+    /**
+        Indicates whether the output file built from the specified catalog
+        source file is up to date: that is, whether the catalog was last
+        built from source with the specified hash by the builder with the
+        specified version, and the output file still exists.
+
+        @param source the pathname of the catalog source file
+        @param hash the hash of the current contents of 'source'
+        @param builderVersion the version of the builder that would build
+        'source'
+        @param output the pathname of the output file built from 'source'
+        @return true iff 'output' doesn't need to be built again
+        @see #sourceHash(File)
+    */
+    public synchronized boolean isUpToDate(File source, String hash,
+                                    String builderVersion, File output)
+    {
+        Assert.require(source != null);
+        Assert.require(hash != null);
+        Assert.require(builderVersion != null);
+        Assert.require(output != null);
+
+        boolean result = false;
+
+        Entry e = (Entry) _entries.get(key(source));
+        if (e != null && e.hash().equals(hash) &&
+            e.builderVersion().equals(builderVersion))
+        {
+            result = output.isFile();
+        }
+
+        return result;
+    }
+
+    /**
+        Records that the specified catalog source file with the specified
+        hash was successfully built by the builder with the specified
+        version.
+
+        @param source the pathname of the catalog source file
+        @param hash the hash of the contents of 'source' that was built
+        @param builderVersion the version of the builder that built 'source'
+    */
+    public synchronized void recordBuilt(File source, String hash,
+                                         String builderVersion)
+    {
+        Assert.require(source != null);
+        Assert.require(hash != null);
+        Assert.require(builderVersion != null);
+
+        String key = key(source);
+        Entry e = new Entry(hash, builderVersion);
+        if (e.equals(_entries.get(key)) == false)
+        {
+            _entries.put(key, e);
+            _isModified = true;
+        }
+    }
+
+    /**
+        Removes any record of the specified catalog source file having been
+        built, so that it's considered to be out of date.
+
+        @param source the pathname of the catalog source file
+    */
+    public synchronized void forget(File source)
+    {
+        Assert.require(source != null);
+
+        if (_entries.remove(key(source)) != null)
+        {
+            _isModified = true;
+        }
+    }
+
+    /**
+        Saves this manifest to its file iff it has changed since it was
+        loaded or last saved. The file is updated atomically, so it will
+        never be left partially written.
+
+        @exception IOException thrown if the manifest couldn't be saved
+    */
+    public synchronized void save()
+        throws IOException
+    {
+        if (_isModified)
+        {
+            FileUpdatingIndentWriter w =
+                FileUpdatingIndentWriter.create(_file, true);
+            try
+            {
+                // Sort the entries so that the file's contents don't
+                // depend on the order in which the catalogs were built.
+                List keys = new ArrayList(_entries.keySet());
+                Collections.sort(keys);
+                Iterator iter = keys.iterator();
+                while (iter.hasNext())
+                {
+                    String key = (String) iter.next();
+                    Entry e = (Entry) _entries.get(key);
+                    Io.writeLine(w, e.hash() + FIELD_SEPARATOR +
+                                 e.builderVersion() + FIELD_SEPARATOR + key);
+                }
+                w.close();
+            }
+            finally
+            {
+                w.abandon();  // does nothing if 'w' was closed
+            }
+            _isModified = false;
+        }
+    }
+
+
+    // Private methods
+
+    /**
+        Adds the entry represented by the specified line from a manifest
+        file to this manifest. Blank and invalid lines are ignored (though
+        the latter will cause this manifest to be saved).
+
+        @param line the line from the manifest file
+    */
+    private void addLine(String line)
+    {
+        Assert.require(line != null);
+
+        if (line.trim().length() > 0)
+        {
+            String[] fields = line.split(FIELD_SEPARATOR, NUMBER_OF_FIELDS);
+            if (fields.length == NUMBER_OF_FIELDS)
+            {
+                _entries.put(fields[2], new Entry(fields[0], fields[1]));
+            }
+            else
+            {
+                _isModified = true;
+            }
+        }
+    }
+
+    /**
+        @param source the pathname of a catalog source file
+        @return the key in '_entries' of the entry for 'source'
+    */
+    private String key(File source)
+    {
+        Assert.require(source != null);
+
+        String result = source.getAbsolutePath();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        Represents the information recorded in a manifest about one catalog
+        source file.
+    */
+    private static class Entry
+    {
+        // Private fields
+
+        /** The hash of the source file's contents. */
+        private String _hash;
+
+        /** The version of the builder that built the source file. */
+        private String _builderVersion;
+
+
+        // Constructors
+
+        /**
+            Constructs an Entry.
+
+            @param hash the hash of the source file's contents
+            @param builderVersion the version of the builder that built
+            the source file
+        */
+        public Entry(String hash, String builderVersion)
+        {
+            Assert.require(hash != null);
+            Assert.require(builderVersion != null);
+
+            _hash = hash;
+            _builderVersion = builderVersion;
+        }
+
+
+        // Public methods
+
+        /**
+            @return the hash of the source file's contents
+        */
+        public String hash()
+        {
+            Assert.ensure(_hash != null);
+            return _hash;
+        }
+
+        /**
+            @return the version of the builder that built the source file
+        */
+        public String builderVersion()
+        {
+            Assert.ensure(_builderVersion != null);
+            return _builderVersion;
+        }
+
+        /**
+            @see Object#equals(Object)
+        */
+        public boolean equals(Object obj)
+        {
+            boolean result = false;
+
+            if (obj instanceof Entry)
+            {
+                Entry e = (Entry) obj;
+                result = _hash.equals(e._hash) &&
+                         _builderVersion.equals(e._builderVersion);
+            }
+
+            return result;
+        }
+
+        /**
+            @see Object#hashCode
+        */
+        public int hashCode()
+        {
+            return _hash.hashCode();
+        }
+    }
+}
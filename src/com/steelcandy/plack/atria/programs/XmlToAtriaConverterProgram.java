@@ -30,10 +30,13 @@ import com.steelcandy.common.xml.XmlUtilities;
 import org.jdom.Document;
 import org.jdom.input.SAXBuilder;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 
 /**
     A program that converts XML documents to Atria documents.
@@ -58,14 +61,91 @@ public class XmlToAtriaConverterProgram
             "USAGE_DESCRIPTION_MSG";
 
 
+    /**
+        The option whose argument is the pathname of the archive that the
+        results of converting all of the XML documents in the archive
+        specified by the last argument are to be written to.
+
+        @see AtriaArchiveConverter
+    */
+    private static final String ARCHIVE_OPTION = "-a";
+
+    /**
+        The option whose argument is the pathname of the directory that
+        the results of conversions are to be cached in.
+
+        @see AtriaOutputCache
+    */
+    private static final String OUTPUT_CACHE_OPTION = "-o";
+
+    /** The kind of conversion whose results we cache. */
+    private static final String OUTPUT_CACHE_KIND = "xml2atria";
+
+    /** The options that affect the results of conversions. */
+    private static final String OUTPUT_CACHE_OPTIONS = "";
+
+
+    // Private fields
+
+    /** The writer that we write the Atria that documents convert to to. */
+    private PrintWriter _out;
+
+    /** The writer that we write error information to. */
+    private PrintWriter _err;
+
+    /**
+        The cache that the results of conversions are to be cached in if
+        none is specified by our arguments, or null if they're not to be
+        cached by default.
+    */
+    private AtriaOutputCache _outputCache;
+
+
     // Constructors
 
     /**
-        Constructs an XmlToAtriaConverterProgram.
+        Constructs an XmlToAtriaConverterProgram that writes to standard
+        output and standard error.
     */
     public XmlToAtriaConverterProgram()
     {
-        // empty
+        this(Io.out, Io.err);
+    }
+
+    /**
+        Constructs an XmlToAtriaConverterProgram that writes to the
+        specified writers rather than standard output and standard error.
+        <p>
+        Note: failures are still reported by throwing ProgramExceptions.
+
+        @param out the writer to write the results of conversions to
+        @param err the writer to write error information to
+        @see AtriaConversionServer
+    */
+    XmlToAtriaConverterProgram(PrintWriter out, PrintWriter err)
+    {
+        Assert.require(out != null);
+        Assert.require(err != null);
+
+        _out = out;
+        _err = err;
+        _outputCache = null;
+    }
+
+
+    // Package-private static methods
+
+    /**
+        @param args an XmlToAtriaConverterProgram's command line arguments
+        @return true iff the program would read the XML document to convert
+        from standard input if it were executed with the arguments 'args'
+    */
+    static boolean readsStandardInput(String[] args)
+    {
+        Assert.require(args != null);
+
+        return (args.length == 0 ||
+                (args.length == 2 && args[0].equals(OUTPUT_CACHE_OPTION)));
     }
 
 
@@ -80,12 +160,117 @@ public class XmlToAtriaConverterProgram
         Assert.require(args != null);
 
         int numArgs = args.length;
+        if (numArgs == 3 && args[0].equals(ARCHIVE_OPTION))
+        {
+            convertArchive(new File(args[2]), new File(args[1]));
+        }
+        else
+        {
+            convertDocument(args);
+        }
+    }
+
+    /**
+        @see Program#argumentsSummary
+    */
+    public String argumentsSummary()
+    {
+        String result = _resources.getMessage(ARGUMENTS_SUMMARY_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see Program#usageDescription
+    */
+    public String usageDescription()
+    {
+        String result = _resources.getMessage(USAGE_DESCRIPTION_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Package-private methods
+
+    /**
+        Sets the cache that the results of conversions are to be cached
+        in if our arguments don't specify one.
+
+        @param cache the output cache to use by default, or null if
+        results aren't to be cached by default
+    */
+    void setOutputCache(AtriaOutputCache cache)
+    {
+        // 'cache' may be null
+        _outputCache = cache;
+    }
+
+
+    // Private methods
+
+    /**
+        Converts all of the XML documents in the specified archive to
+        Atria, writing the results to the other specified archive.
+
+        @param in the pathname of the zip or jar archive to convert
+        @param out the pathname of the archive to write the results to
+        @exception ProgramException thrown if the archive couldn't be
+        converted
+        @see AtriaArchiveConverter
+    */
+    private void convertArchive(File in, File out)
+        throws ProgramException
+    {
+        Assert.require(in != null);
+        Assert.require(out != null);
+
+        try
+        {
+            AtriaArchiveConverter converter =
+                AtriaArchiveConverter.createXmlToAtria();
+            converter.setErrorWriter(_err);
+            converter.convert(in, out);
+        }
+        catch (AtriaConversionException ex)
+        {
+            throw EXECUTOR.createFailureException(this,
+                                            ex.getLocalizedMessage());
+        }
+    }
+
+    /**
+        Converts the XML document in the file specified by the arguments -
+        or read from standard input if there aren't any - to Atria,
+        writing the result to our output writer (which is standard output
+        by default).
+
+        @param args the command line arguments
+        @exception ProgramException thrown if the arguments are invalid or
+        the document couldn't be converted
+    */
+    private void convertDocument(String[] args)
+        throws ProgramException
+    {
+        Assert.require(args != null);
+
+        int numArgs = args.length;
+        AtriaOutputCache outputCache = _outputCache;
+        int argIndex = 0;
+        if (numArgs >= 2 && args[0].equals(OUTPUT_CACHE_OPTION))
+        {
+            outputCache = new AtriaOutputCache(new File(args[1]));
+            argIndex = 2;
+        }
+
         InputStream in = System.in;
-        if (numArgs == 1)
+        if (numArgs - argIndex == 1)
         {
             try
             {
-                File f = new File(args[0]);
+                File f = new File(args[argIndex]);
                 in = new FileInputStream(f);
             }
             catch (IOException ex)
@@ -94,11 +279,97 @@ public class XmlToAtriaConverterProgram
                                             ex.getLocalizedMessage());
             }
         }
-        else if (numArgs > 1)
+        else if (numArgs - argIndex > 1)
         {
             throw EXECUTOR.createBadUsageException(this);
         }
 
+        String msg;
+        if (outputCache != null)
+        {
+            msg = convert(in, outputCache);
+        }
+        else
+        {
+            msg = convert(in, _out);
+        }
+        if (msg != null)
+        {
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+    }
+
+    /**
+        Converts the XML document read from the specified stream to Atria,
+        or replays the conversion's result if it's already cached in the
+        specified output cache.
+
+        @param in the stream to read the XML document from
+        @param outputCache the cache that the result of the conversion
+        is to be cached in
+        @return a message describing why the conversion failed, or null
+        if it succeeded
+    */
+    private String convert(InputStream in, AtriaOutputCache outputCache)
+    {
+        Assert.require(in != null);
+        Assert.require(outputCache != null);
+
+        String result = null;
+
+        byte[] content = null;
+        try
+        {
+            content = in.readAllBytes();
+        }
+        catch (IOException ex)
+        {
+            result = ex.getLocalizedMessage();
+        }
+
+        if (content != null)
+        {
+            String key = outputCache.key(OUTPUT_CACHE_KIND,
+                                         OUTPUT_CACHE_OPTIONS, content);
+            AtriaOutputCache.Entry e = outputCache.load(key);
+            if (e == null)
+            {
+                StringWriter out = new StringWriter();
+                String msg = convert(new ByteArrayInputStream(content),
+                                     new PrintWriter(out));
+
+                // Converting XML documents doesn't report any errors
+                // other than the one that causes it to fail.
+                e = new AtriaOutputCache.Entry(out.toString(), "", msg);
+                outputCache.tryToStore(key, e);
+            }
+            e.replay(_out, _err);
+            if (e.hasFailed())
+            {
+                result = e.failureMessage();
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Converts the XML document read from the specified stream to Atria,
+        writing the result to the specified writer.
+
+        @param in the stream to read the XML document from
+        @param out the writer to write the Atria document to
+        @return a message describing why the conversion failed, or null
+        if it succeeded
+    */
+    private String convert(InputStream in, PrintWriter out)
+    {
+        Assert.require(in != null);
+        Assert.require(out != null);
+
+        String result = null;
+
         IndentWriter w = null;
         try
         {
@@ -108,44 +379,23 @@ public class XmlToAtriaConverterProgram
 
             XmlToAtriaConverter converter = new XmlToAtriaConverter();
 
-            w = IndentWriter.createForStandardOutput();
+            w = IndentWriter.createNonclosing(out);
             converter.convert(doc, w);
         }
         catch (XmlException ex)
         {
-            throw EXECUTOR.createFailureException(this,
-                                            ex.getLocalizedMessage());
+            result = ex.getLocalizedMessage();
         }
         catch (IOException ex)
         {
-            throw EXECUTOR.createFailureException(this,
-                                            ex.getLocalizedMessage());
+            result = ex.getLocalizedMessage();
         }
         finally
         {
             Io.tryToClose(w);
         }
-    }
-
-    /**
-        @see Program#argumentsSummary
-    */
-    public String argumentsSummary()
-    {
-        String result = _resources.getMessage(ARGUMENTS_SUMMARY_MSG);
-
-        Assert.ensure(result != null);
-        return result;
-    }
-
-    /**
-        @see Program#usageDescription
-    */
-    public String usageDescription()
-    {
-        String result = _resources.getMessage(USAGE_DESCRIPTION_MSG);
 
-        Assert.ensure(result != null);
+        // 'result' may be null
         return result;
     }
 
@@ -158,12 +158,37 @@ public class AtriaConstraintChecks
         Assert.require(c.elementCount() > 1);
         Assert.require(handler != null);
 
-        int topElementCount = c.elementCount();
+        reportMoreThanOneTopElement(c, c.elementCount(),
+                                    c.elementList().get(1), handler);
+    }
+
+    /**
+        Reports that a document has more than one top element (and so also
+        cannot have had a top element specified by a 'top' command).
+        <p>
+        This version of this method can be used when the document's top
+        elements aren't subconstructs of the document construct.
+
+        @param c the document with more than one top element
+        @param topElementCount the number of top elements in the document
+        @param secondElement the document's second top element
+        @param handler the error handler to use to report the constraint
+        violation
+    */
+    public void reportMoreThanOneTopElement(AtriaConstructManager.
+        Document c, int topElementCount, Construct secondElement,
+        ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(topElementCount > 1);
+        Assert.require(secondElement != null);
+        Assert.require(handler != null);
+
         String msg = _resources.
             getMessage(TOO_MANY_TOP_ELEMENTS_MSG,
                        new Integer(topElementCount),
                        AtriaInfo.TOP_COMMAND_NAME);
-        violatedDocumentIsTopElement(msg, c.elementList().get(1), handler);
+        violatedDocumentIsTopElement(msg, secondElement, handler);
     }
 
     /**
@@ -0,0 +1,115 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.semantic;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.atria.constructs.*;
+
+import com.steelcandy.plack.common.errors.ErrorHandler;
+import com.steelcandy.plack.common.constructs.*;
+
+/**
+    The class of semantic analyzer that analyzes an Atria Document's
+    top-level Elements concurrently.
+    <p>
+    A Document's Prologue is analyzed first, since the analysis of its
+    Elements depends on it (for example, on the namespace prefixes that
+    it defines). Then each chunk of its top-level Elements is analyzed
+    concurrently by a separate analyzer created by
+    createElementAnalyzer(), and finally the Document-level checks are
+    performed. The errors that occur in analyzing the Elements
+    are handled in the same order in which they would have been handled
+    if the Elements had been analyzed sequentially.
+
+    @author James MacKay
+    @see AtriaSemanticAnalyzer#createElementAnalyzer
+*/
+public class AtriaParallelSemanticAnalyzer
+    extends AtriaSemanticAnalyzer
+{
+    // Constructors
+
+    /**
+        Constructs an AtriaParallelSemanticAnalyzer.
+    */
+    public AtriaParallelSemanticAnalyzer()
+    {
+        // empty
+    }
+
+
+    // Protected methods
+
+    /**
+        Note: this implementation analyzes the Document's Prologue and then
+        analyzes its top-level Elements concurrently.
+
+        @see AtriaAbstractConstructVisitor#visitDocumentSubconstructs(AtriaConstructManagerBase.Document, ErrorHandler)
+    */
+    protected void visitDocumentSubconstructs(AtriaConstructManager.
+        Document c, ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        if (c.hasPrologue())
+        {
+            c.prologue().accept(this, handler);
+        }
+        if (c.elementCount() > 0)
+        {
+            new ElementsAnalyzer().process(c.elementList(), handler);
+        }
+    }
+
+
+    // Inner classes
+
+    /**
+        The class of object that analyzes a list of top-level Elements
+        concurrently.
+    */
+    private class ElementsAnalyzer
+        extends ConcurrentConstructListProcessor
+    {
+        // Protected methods
+
+        /**
+            @see ConcurrentConstructListProcessor#processChunk(ConstructList, int, int, ErrorHandler)
+        */
+        protected void processChunk(ConstructList constructs,
+                                int start, int end, ErrorHandler handler)
+        {
+            Assert.require(constructs != null);
+            Assert.require(start >= 0);
+            Assert.require(end > start);
+            Assert.require(end <= constructs.size());
+            Assert.require(handler != null);
+
+            AtriaSemanticAnalyzer a = createElementAnalyzer();
+            for (int i = start;
+                 i < end && handler.isCancelled() == false; i++)
+            {
+                AtriaConstructManager.Element e =
+                    (AtriaConstructManager.Element) constructs.get(i);
+                e.accept(a, handler);
+            }
+        }
+    }
+}
@@ -66,6 +66,18 @@ public class AtriaSemanticAnalyzer
     */
     private int _elementDepth;
 
+    /**
+        The number of top-level Elements that have been analyzed separately
+        from their Document using analyze(Element, int, ErrorHandler).
+    */
+    private int _separateElementCount;
+
+    /**
+        The second of the top-level Elements that have been analyzed
+        separately from their Document, or null if fewer than two have been.
+    */
+    private AtriaConstructManager.Element _secondSeparateElement;
+
 
     // Constructors
 
@@ -78,6 +90,34 @@ public class AtriaSemanticAnalyzer
         _isPrologueItem = false;
         _topCommandPrologueItems = ConstructList.createArrayList();
         _elementDepth = 0;
+        _separateElementCount = 0;
+        _secondSeparateElement = null;
+    }
+
+    /**
+        Constructs an AtriaSemanticAnalyzer that is to analyze some or all
+        of the top-level Elements in the Document whose Prologue has been
+        analyzed by the specified analyzer.
+        <p>
+        The new analyzer shares no modifiable state with 'prologueAnalyzer',
+        and so the two analyzers can be used concurrently.
+
+        @param prologueAnalyzer the analyzer that analyzed the Prologue
+        of the Document containing the Elements that the new analyzer is
+        to analyze
+        @see #createElementAnalyzer
+    */
+    protected AtriaSemanticAnalyzer(AtriaSemanticAnalyzer prologueAnalyzer)
+    {
+        Assert.require(prologueAnalyzer != null);
+
+        _namespacePrefixes = Collections.
+            unmodifiableSet(new HashSet(prologueAnalyzer._namespacePrefixes));
+        _isPrologueItem = false;
+        _topCommandPrologueItems = ConstructList.createArrayList();
+        _elementDepth = prologueAnalyzer._elementDepth;
+        _separateElementCount = 0;
+        _secondSeparateElement = null;
     }
 
 
@@ -99,6 +139,28 @@ public class AtriaSemanticAnalyzer
         doc.accept(this, handler);
     }
 
+    /**
+        Performs semantic analysis on the specified document prologue.
+        <p>
+        This method, along with analyze(Element, int, ErrorHandler) and
+        finishAnalysis(), allows a Document to be analyzed one top-level
+        Element at a time. The Document's Prologue must be analyzed before
+        any of its Elements are.
+
+        @param p the prologue to analyze
+        @param handler the error handler to use to handle any errors that
+        occur in analyzing 'p'
+        @see #finishAnalysis(AtriaConstructManagerBase.Document, ErrorHandler)
+    */
+    public void analyze(AtriaConstructManager.Prologue p,
+                        ErrorHandler handler)
+    {
+        Assert.require(p != null);
+        Assert.require(handler != null);
+
+        p.accept(this, handler);
+    }
+
     /**
         Performs semantic analysis on the specified element.
         <p>
@@ -107,7 +169,8 @@ public class AtriaSemanticAnalyzer
         that do not add all of the Element subconstructs to a Document (in
         order to avoid putting representations of large documents in memory
         all at once). All of a Document's Element subconstructs should be
-        analyzed by the same instance of this class, however.
+        analyzed by the same instance of this class, however, and then
+        finishAnalysis() should be called on the Document.
 
         @param e the element to analyze
         @param depth the depth of 'e' in its document: 1 if it is the
@@ -124,6 +187,72 @@ public class AtriaSemanticAnalyzer
         Assert.require(handler != null);
 
         e.accept(this, handler);
+
+        if (depth == 1)
+        {
+            _separateElementCount += 1;
+            if (_separateElementCount == 2)
+            {
+                _secondSeparateElement = e;
+            }
+        }
+    }
+
+    /**
+        Performs the semantic analysis of the specified document that is
+        done after its Prologue and all of its top-level Elements have been
+        analyzed separately.
+        <p>
+        The document's top-level Elements shouldn't be subconstructs of it.
+
+        @param doc the document to finish analyzing
+        @param handler the error handler to use to handle any errors that
+        occur in analyzing 'doc'
+        @see #analyze(AtriaConstructManagerBase.Prologue, ErrorHandler)
+        @see #analyze(AtriaConstructManagerBase.Element, int, ErrorHandler)
+    */
+    public void finishAnalysis(AtriaConstructManager.Document doc,
+                               ErrorHandler handler)
+    {
+        Assert.require(doc != null);
+        Assert.require(doc.elementCount() == 0);
+        Assert.require(handler != null);
+
+        checkDocument(doc, _separateElementCount, _secondSeparateElement,
+                      handler);
+        _secondSeparateElement = null;
+    }
+
+    /**
+        Performs the semantic analysis of the specified document that is
+        done after its Prologue and all of its top-level Elements have been
+        analyzed separately, where its top-level Elements are all
+        subconstructs of it.
+        <p>
+        This allows a Document whose Prologue and Elements are kept from one
+        version of it to the next to be analyzed again without analyzing
+        them again: for example, after some of its Elements have been
+        replaced.
+
+        @param doc the document to finish analyzing
+        @param handler the error handler to use to handle any errors that
+        occur in analyzing 'doc'
+        @see #analyze(AtriaConstructManagerBase.Prologue, ErrorHandler)
+        @see #analyze(AtriaConstructManagerBase.Element, int, ErrorHandler)
+    */
+    public void finishAnalysisOfWhole(AtriaConstructManager.Document doc,
+                                      ErrorHandler handler)
+    {
+        Assert.require(doc != null);
+        Assert.require(handler != null);
+
+        int numElements = doc.elementCount();
+        Construct secondElement = null;
+        if (numElements > 1)
+        {
+            secondElement = doc.elementList().get(1);
+        }
+        checkDocument(doc, numElements, secondElement, handler);
     }
 
 
@@ -139,31 +268,7 @@ public class AtriaSemanticAnalyzer
         Assert.require(handler != null);
 
         visitDocumentSubconstructs(c, handler);
-
-// TODO: do we have to change this to handle the case where Elements are
-// analyzed separately ???!!!???
-// - see analyze(Element, ...)'s 'depth' argument
-        int numElements = c.elementCount();
-        if (_topCommandPrologueItems.isEmpty() && numElements != 1)
-        {
-            if (numElements > 1)
-            {
-                CHECKER.reportMoreThanOneTopElement(c, handler);
-            }
-            else
-            {
-                Assert.check(numElements == 0);
-                CHECKER.reportNoTopElement(c, handler);
-            }
-        }
-        CHECKER.checkedDocumentIsTopElement(c);
-
-        // Note: for plain Atria documents there's nothing to do to check
-        // a Document's Application constraint, so we just mark it checked
-        // here. Application-specific subclasses may have to do some checks,
-        // though, in which case they should override the appropriate visitor
-        // methods to perform the checks.
-        CHECKER.checkedDocumentApplication(c);
+        finishAnalysisOfWhole(c, handler);
     }
 
     /**
@@ -237,9 +342,8 @@ public class AtriaSemanticAnalyzer
         Assert.require(c != null);
         Assert.require(handler != null);
 
-        IntAttribute attr = c.depthAttribute();
-        Assert.check(attr.isSet() == false);
-        attr.setValue(_elementDepth);
+        Assert.check(c.isDepthAttributeSet() == false);
+        c.setDepthAttributeValue(_elementDepth);
 
         _elementDepth += 1;
         try
@@ -254,8 +358,8 @@ public class AtriaSemanticAnalyzer
         CHECKER.checkAttributeNamesUnique(c, handler);
         CHECKER.checkedElementUniqueAttributeNames(c);
 
-        Assert.ensure(c.depthAttribute().isSet());
-        Assert.ensure(c.depthAttribute().value() >= 0);
+        Assert.ensure(c.isDepthAttributeSet());
+        Assert.ensure(c.depthAttributeValue() >= 0);
     }
 
     /**
@@ -520,6 +624,69 @@ public class AtriaSemanticAnalyzer
 
     // Protected methods
 
+    /**
+        Performs the checks on the specified Document that can only be done
+        after all of its subconstructs have been analyzed.
+
+        @param c the Document to check
+        @param numElements the number of top-level Elements in 'c'
+        @param secondElement the second of the top-level Elements in 'c', or
+        null if 'numElements' is less than 2
+        @param handler the error handler to use to handle any errors that
+        occur in checking 'c'
+    */
+    protected void checkDocument(AtriaConstructManager.Document c,
+                                 int numElements, Construct secondElement,
+                                 ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(numElements >= 0);
+        Assert.require((numElements > 1) == (secondElement != null));
+        Assert.require(handler != null);
+
+        if (_topCommandPrologueItems.isEmpty() && numElements != 1)
+        {
+            if (numElements > 1)
+            {
+                CHECKER.reportMoreThanOneTopElement(c, numElements,
+                                                    secondElement, handler);
+            }
+            else
+            {
+                Assert.check(numElements == 0);
+                CHECKER.reportNoTopElement(c, handler);
+            }
+        }
+        CHECKER.checkedDocumentIsTopElement(c);
+
+        // Note: for plain Atria documents there's nothing to do to check
+        // a Document's Application constraint, so we just mark it checked
+        // here. Application-specific subclasses may have to do some checks,
+        // though, in which case they should override the appropriate visitor
+        // methods to perform the checks.
+        CHECKER.checkedDocumentApplication(c);
+    }
+
+    /**
+        Creates and returns a new analyzer that can be used - possibly
+        concurrently with this one and other analyzers created by this
+        method - to analyze some or all of the top-level Elements in the
+        Document whose Prologue this analyzer has analyzed.
+        <p>
+        Subclasses should override this method to return an instance of
+        their class.
+
+        @return a new analyzer to use to analyze top-level Elements
+        @see #AtriaSemanticAnalyzer(AtriaSemanticAnalyzer)
+    */
+    protected AtriaSemanticAnalyzer createElementAnalyzer()
+    {
+        AtriaSemanticAnalyzer result = new AtriaSemanticAnalyzer(this);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
     /**
         Analyzes each command, regardless of which specific command it
         represents.
@@ -0,0 +1,253 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.atria.source;
+
+import com.steelcandy.plack.atria.base.AtriaInfo;
+
+import com.steelcandy.plack.common.source.SourceCode;
+import com.steelcandy.plack.common.source.SourceCodeSection;
+
+import com.steelcandy.common.debug.Assert;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+    Splits a piece of Atria source code into sections that each start
+    with a line that (almost certainly) starts a top-level construct, so
+    that the sections can be tokenized and parsed independently.
+    <p>
+    A line is only used to start a section if it isn't the first line in
+    the source code that contains something other than spaces and/or a
+    comment, its first character is an ASCII Name character and the last
+    line before it that contains something other than spaces and/or a
+    comment doesn't contain an explicit line continuer character anywhere
+    in it. (The last condition is overly conservative since it will be
+    met by line continuer characters in comments and text literals, but
+    it means that we don't have to tokenize a line to determine whether
+    it's continued.)
+    <p>
+    Instances are immutable, and so can safely be shared between threads.
+
+    @author James MacKay
+*/
+public class AtriaSourceSplitter
+{
+    // Constants
+
+    /**
+        The default minimum number of characters in each section (except
+        possibly the last one).
+    */
+    public static final int DEFAULT_MINIMUM_SECTION_SIZE = 32 * 1024;
+
+    /** The explicit line continuer character. */
+    private static final char LINE_CONTINUER_CHAR = '\\';
+
+    /** The size of the buffer used to read source code. */
+    private static final int READ_BUFFER_SIZE = 8192;
+
+
+    // Private fields
+
+    /**
+        The minimum number of characters in each section (except possibly
+        the last one).
+    */
+    private int _minimumSectionSize;
+
+
+    // Constructors
+
+    /**
+        Constructs an AtriaSourceSplitter that creates sections of at least
+        the default minimum size.
+
+        @see #DEFAULT_MINIMUM_SECTION_SIZE
+    */
+    public AtriaSourceSplitter()
+    {
+        this(DEFAULT_MINIMUM_SECTION_SIZE);
+    }
+
+    /**
+        Constructs an AtriaSourceSplitter.
+
+        @param minimumSectionSize the minimum number of characters in each
+        section that the splitter creates (except possibly the last one)
+    */
+    public AtriaSourceSplitter(int minimumSectionSize)
+    {
+        Assert.require(minimumSectionSize > 0);
+
+        _minimumSectionSize = minimumSectionSize;
+    }
+
+
+    // Public methods
+
+    /**
+        Splits the specified source code into sections.
+
+        @param code the source code to split
+        @return a list of the SourceCodeSections that 'code' was split into,
+        in the order in which they appear in 'code'. The list will contain
+        at least one section
+        @exception IOException thrown if the source code couldn't be read
+    */
+    public List split(SourceCode code)
+        throws IOException
+    {
+        Assert.require(code != null);
+
+        String text = readAll(code);
+        int len = text.length();
+
+        List result = new ArrayList();
+        int sectionStart = 0;
+        int sectionFirstLineNumber = code.firstLineNumber();
+
+        int lineNumber = sectionFirstLineNumber;
+        int lineStart = 0;
+        boolean hasSeenCode = false;
+        boolean isContinued = false;
+        while (lineStart < len)
+        {
+            int lineEnd = lineStart;
+            boolean hasContinuer = false;
+            while (lineEnd < len)
+            {
+                char ch = text.charAt(lineEnd);
+                if (AtriaInfo.isNewlineStart(ch))
+                {
+                    break;  // while
+                }
+                else if (ch == LINE_CONTINUER_CHAR)
+                {
+                    hasContinuer = true;
+                }
+                lineEnd += 1;
+            }
+
+            int codeStart = AtriaInfo.SPACE_CHARS_TABLE.skip(text, lineStart);
+            if (codeStart < lineEnd &&
+                text.charAt(codeStart) != AtriaInfo.COMMENT_START_CHAR)
+            {
+                if (hasSeenCode && isContinued == false &&
+                    codeStart == lineStart &&
+                    isSectionStartCharacter(text.charAt(codeStart)) &&
+                    lineStart - sectionStart >= _minimumSectionSize)
+                {
+                    result.add(new SourceCodeSection(code,
+                        text.substring(sectionStart, lineStart),
+                        sectionFirstLineNumber));
+                    sectionStart = lineStart;
+                    sectionFirstLineNumber = lineNumber;
+                }
+                hasSeenCode = true;
+                isContinued = hasContinuer;
+            }
+
+            lineStart = skipNewline(text, lineEnd);
+            lineNumber += 1;
+        }
+        result.add(new SourceCodeSection(code, text.substring(sectionStart),
+                                         sectionFirstLineNumber));
+
+        Assert.ensure(result.isEmpty() == false);
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        @param ch a character
+        @return true iff a section can start with 'ch'
+    */
+    private boolean isSectionStartCharacter(char ch)
+    {
+        return (ch < AtriaInfo.FIRST_NON_ASCII_UNICODE_CODEPOINT) &&
+                AtriaInfo.isNameCharacter(ch);
+    }
+
+    /**
+        @param text the text containing the newline to skip
+        @param index the index in 'text' of the start of the newline to
+        skip, or the length of 'text' if there's no newline to skip
+        @return the index in 'text' of the first character after the
+        newline that starts at index 'index' in it
+    */
+    private int skipNewline(String text, int index)
+    {
+        Assert.require(text != null);
+        Assert.require(index >= 0);
+        Assert.require(index <= text.length());
+
+        int len = text.length();
+        int result = index;
+        if (result < len)
+        {
+            char ch = text.charAt(result);
+            result += 1;
+            if (ch == '\r' && result < len && text.charAt(result) == '\n')
+            {
+                result += 1;
+            }
+        }
+
+        Assert.ensure(result >= index);
+        return result;
+    }
+
+    /**
+        @param code a piece of source code
+        @return all of the text of 'code'
+        @exception IOException thrown if 'code' couldn't be read
+    */
+    private String readAll(SourceCode code)
+        throws IOException
+    {
+        Assert.require(code != null);
+
+        StringBuffer result = new StringBuffer();
+        char[] buf = new char[READ_BUFFER_SIZE];
+        Reader r = code.reader();
+        try
+        {
+            while (true)
+            {
+                int numRead = r.read(buf);
+                if (numRead < 0)
+                {
+                    break;  // while
+                }
+                result.append(buf, 0, numRead);
+            }
+        }
+        finally
+        {
+            r.close();
+        }
+
+        Assert.ensure(result != null);
+        return result.toString();
+    }
+}
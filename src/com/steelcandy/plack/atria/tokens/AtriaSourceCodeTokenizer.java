@@ -312,13 +312,8 @@ public class AtriaSourceCodeTokenizer
                 // The space is not the start of leading whitespace, so
                 // we discard it and any following spaces. No token is
                 // created.
-                iter.discard();
-                int nextOffset = startPos.offset() + 1;
-                while (iter.hasNext() && iter.peek() == ' ')
-                {
-                    iter.discard();
-                    nextOffset += 1;
-                }
+                int nextOffset = startPos.offset() +
+                    iter.discardWhile(AtriaInfo.SPACE_CHARS_TABLE);
                 result = createZeroTokenResult(startPos.lineNumber(),
                                                nextOffset);
             }
@@ -430,6 +425,14 @@ public class AtriaSourceCodeTokenizer
             StringBuffer buf = new StringBuffer();
             while (foundClosingQuote == false && iter.hasNext())
             {
+                // Consume the run of valid text characters (if any) that
+                // starts at the iterator's current position all at once.
+                length += iter.appendWhile(AtriaInfo.TEXT_CHARS_TABLE, buf);
+                if (iter.hasNext() == false)
+                {
+                    break;  // while
+                }
+
                 char ch = iter.peek();
                 if (AtriaInfo.isNewlineStart(ch))
                 {
@@ -446,10 +449,8 @@ public class AtriaSourceCodeTokenizer
                 }
                 else
                 {
-                    if (AtriaInfo.isTextCharacter(ch) == false)
-                    {
-                        reportInvalidChar(ch, handler, t, startPos, length);
-                    }
+                    Assert.check(AtriaInfo.isTextCharacter(ch) == false);
+                    reportInvalidChar(ch, handler, t, startPos, length);
                     buf.append(ch);
                     iter.discard();
                     length += 1;
@@ -511,10 +512,10 @@ public class AtriaSourceCodeTokenizer
                               Tokenizer t, SourcePosition startPos,
                               int charPos)
         {
-            String msg = _resources.
-                getMessage(INVALID_TEXT_LITERAL_CHAR_MSG,
-                            String.valueOf(invalidChar),
-                            Integer.toString((int) invalidChar));
+            DeferredMessage msg = _resources.
+                getDeferredMessage(INVALID_TEXT_LITERAL_CHAR_MSG,
+                                   String.valueOf(invalidChar),
+                                   Integer.toString((int) invalidChar));
             reportInvalidChar(msg, handler, t, startPos, charPos);
         }
 
@@ -530,8 +531,9 @@ public class AtriaSourceCodeTokenizer
             @param the charPos the position of the invalid character in the
             text literal, relative to startPos
         */
-        protected void reportInvalidChar(String msg, ErrorHandler handler,
-                                         Tokenizer t, SourcePosition startPos,
+        protected void reportInvalidChar(DeferredMessage msg,
+                                         ErrorHandler handler, Tokenizer t,
+                                         SourcePosition startPos,
                                          int charPos)
         {
             int charStartOffset = startPos.offset() + charPos;
@@ -564,20 +566,9 @@ public class AtriaSourceCodeTokenizer
         {
             StringBuffer buf = new StringBuffer();
             buf.append(iter.next());
-            while (iter.hasNext())
-            {
-                char ch = iter.peek();
-                if (AtriaInfo.isNameCharacter(ch))
-                {
-                    buf.append(iter.next());
-                }
-                else
-                {
-                    // ch is not a valid name character, so we've reached the
-                    // name's end.
-                    break;
-                }
-            }
+            iter.appendWhile(AtriaInfo.NAME_CHARS_TABLE, buf);
+                // the rest of the name: it ends at the first character
+                // that isn't a valid name character
             String name = buf.toString();
 
             Token tok = tokenManager().
@@ -607,11 +598,7 @@ public class AtriaSourceCodeTokenizer
             // (or up to the end of the source code).
             iter.discard();    // the COMMENT_START_CHAR
             StringBuffer buf = new StringBuffer();
-            while (iter.hasNext() &&
-                   AtriaInfo.isNewlineStart(iter.peek()) == false)
-            {
-                buf.append(iter.next());
-            }
+            iter.appendUntil(AtriaInfo.NEWLINE_START_CHARS_TABLE, buf);
 
             Token tok = tokenManager().
                     createCommentToken(startPos, buf.length() + 1,
@@ -638,13 +625,8 @@ public class AtriaSourceCodeTokenizer
             Assert.require(iter.peek() == AtriaInfo.COMMENT_START_CHAR);
 
             iter.discard();  // the COMMENT_START_CHAR
-            int commentLength = 1;  // including the COMMENT_START_CHAR
-            while (iter.hasNext() &&
-                   AtriaInfo.isNewlineStart(iter.peek()) == false)
-            {
-                iter.discard();
-                commentLength += 1;
-            }
+            int commentLength = 1 +  // including the COMMENT_START_CHAR
+                iter.discardUntil(AtriaInfo.NEWLINE_START_CHARS_TABLE);
 
             return createZeroTokenResult(startPos.lineNumber(),
                                          startPos.offset() + commentLength);
@@ -289,7 +289,7 @@ public abstract class AbstractStorage
 
         writeElementStart(w, TEXT_TYPE_NAME, name);
         writeLine(w);
-        if (txt.length() > 0);
+        if (txt.length() > 0)
         {
             w.incrementIndentLevel();
             try
@@ -337,6 +337,7 @@ public abstract class AbstractStorage
         Assert.require(storables != null);
 
         writeElementStart(w, STORABLES_LIST_TYPE_NAME, listName);
+        writeLine(w);
         w.incrementIndentLevel();
         try
         {
@@ -395,6 +396,7 @@ public abstract class AbstractStorage
         Assert.require(m != null);
 
         writeElementStart(w, STRING_TO_STORABLE_MAP_TYPE_NAME, mapName);
+        writeLine(w);
         w.incrementIndentLevel();
         try
         {
@@ -0,0 +1,1347 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.base;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.io.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+    An abstract base class for Storage classes that store Storables in a
+    file.
+    <p>
+    Each Storable that's saved is appended as a record to the end of a
+    segment file, and the location in the segment file of the latest
+    record saved under each name is kept in an index. Loading a Storable
+    only reads and parses the one record that it was saved as: how a
+    record is parsed is left to subclasses.
+    <p>
+    The segment file starts with a header line that identifies it, and
+    each record in it consists of a header line containing the lengths (in
+    bytes) of the name that the Storable was saved under and of its saved
+    representation and a CRC-32 checksum of the two, followed by the name,
+    a newline and the saved representation, all encoded in UTF-8. A
+    record's checksum is checked every time that the record is loaded, so
+    a record that has been corrupted is never parsed.
+    <p>
+    The index is saved to an index file by flush() and close(). The index
+    file is replaced atomically, and only after all of the records that it
+    refers to have been forced out to the segment file. It records the
+    identifier of the segment file that it's an index of and how much of
+    that file it covers, so any records that were appended after the index
+    was last saved - including just before a crash - are recovered by
+    scanning the rest of the segment file when it's opened again. (And a
+    partially appended record at the end of the segment file - or one
+    whose checksum doesn't match its contents - is removed, along with
+    everything after it.)
+    <p>
+    Records that are superseded by records saved later under the same name
+    remain in the segment file until it's compacted.
+    <p>
+    Note: any number of threads can load Storables from a FileStorage
+    concurrently, and any number of threads can save Storables to it.
+    Saves are serialized with each other and with loads only while a
+    record is being appended to the segment file (since a Storable's
+    record is built before anything is locked), and a load only excludes
+    saves while its record is being read (since a record is parsed after
+    it has been read). All StorableLoaders must be registered with a
+    FileStorage before it's used concurrently.
+
+    @author  James MacKay
+*/
+public abstract class FileStorage
+    extends AbstractStorage
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources
+        _resources = CommonStorageResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        NOT_A_STORAGE_SEGMENT_FILE_MSG =
+            "NOT_A_STORAGE_SEGMENT_FILE_MSG",
+        CORRUPT_STORAGE_RECORD_MSG =
+            "CORRUPT_STORAGE_RECORD_MSG",
+        STORAGE_CLOSED_MSG =
+            "STORAGE_CLOSED_MSG";
+
+
+    /** The name of the character encoding used in segment files. */
+    private static final String CHARACTER_ENCODING = "UTF-8";
+
+    /**
+        The first part of the header line of every segment file. (It
+        includes the version of the format of the segment file's records.)
+    */
+    private static final String SEGMENT_FILE_MAGIC = "plack-storage-2";
+
+    /** The separator between the fields in header lines. */
+    private static final String HEADER_FIELD_SEPARATOR = " ";
+
+    /** The byte that ends header lines (and names) in segment files. */
+    private static final byte HEADER_TERMINATOR = (byte) '\n';
+
+    /**
+        The maximum length (in bytes) of a header line in a segment file,
+        including its terminator.
+    */
+    private static final int MAX_HEADER_LENGTH = 64;
+
+    /**
+        The suffix appended to a segment file's pathname to get its index
+        file's pathname.
+    */
+    private static final String INDEX_FILE_SUFFIX = ".index";
+
+    /**
+        The suffix appended to a file's pathname to get the pathname of the
+        temporary file that is written and then renamed to replace it.
+    */
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    /** The number that every index file starts with. */
+    private static final int INDEX_FILE_MAGIC = 0x706c7869;
+
+    /** The version of the format of the index files that we write. */
+    private static final int INDEX_FILE_VERSION = 2;
+
+    /** The radix in which records' checksums are written. */
+    private static final int CHECKSUM_RADIX = 16;
+
+    /**
+        The initial capacity of the writers that Storables write their
+        representations to when they're saved.
+    */
+    private static final int INITIAL_RECORD_CAPACITY = 512;
+
+
+    // Private fields
+
+    /** The pathname of our segment file. */
+    private File _segmentFile;
+
+    /** The pathname of our index file. */
+    private File _indexFile;
+
+    /** Our open segment file, or null if we've been closed. */
+    private RandomAccessFile _segment;
+
+    /** The channel used to read from and append to our segment file. */
+    private FileChannel _channel;
+
+    /** The identifier of our segment file. */
+    private String _segmentId;
+
+    /**
+        The length of our segment file up to the end of its last (complete)
+        record.
+    */
+    private long _segmentLength;
+
+    /**
+        Our index: a map from the name that each Storable was saved under
+        to the Location of the last record that was saved under that name.
+        The keys are Strings and the values are Locations.
+    */
+    private Map _index;
+
+    /**
+        The total length of all of the records in our segment file that have
+        been superseded by later ones.
+    */
+    private long _supersededLength;
+
+    /** True iff our index has changed since it was last saved. */
+    private boolean _isIndexModified;
+
+    /**
+        The lock that allows records to be read concurrently, but only one
+        record to be appended (or our segment file to be compacted) at a
+        time, and then only when no records are being read.
+    */
+    private ReadWriteLock _lock;
+
+
+    // Constructors
+
+    /**
+        Constructs a FileStorage that stores Storables in the segment file
+        with the specified pathname, creating it if it doesn't already
+        exist.
+
+        @param f the pathname of our segment file
+        @exception IOException thrown if the segment file or its index file
+        couldn't be opened or read
+        @exception StorageException thrown if 'f' exists but isn't a
+        segment file
+    */
+    public FileStorage(File f)
+        throws IOException, StorageException
+    {
+        Assert.require(f != null);
+
+        _segmentFile = f;
+        _indexFile = new File(f.getPath() + INDEX_FILE_SUFFIX);
+        _index = new HashMap();
+        _supersededLength = 0L;
+        _isIndexModified = false;
+        _lock = new ReentrantReadWriteLock();
+
+        boolean isNew = (f.isFile() == false || f.length() == 0L);
+        _segment = new RandomAccessFile(f, "rw");
+        _channel = _segment.getChannel();
+        try
+        {
+            long start;
+            if (isNew)
+            {
+                _segmentId = createSegmentId();
+                start = writeSegmentHeader(_channel, _segmentId);
+                _isIndexModified = true;
+            }
+            else
+            {
+                _segmentId = readSegmentHeader();
+                start = headerLength(_segmentId);
+            }
+            start = loadIndex(start);
+            recoverRecords(start);
+        }
+        catch (IOException ex)
+        {
+            tryToClose(_segment);
+            throw ex;
+        }
+        catch (StorageException ex)
+        {
+            tryToClose(_segment);
+            throw ex;
+        }
+    }
+
+
+    // Public methods
+
+    /**
+        @see Storage#save(String, Storable)
+    */
+    public boolean save(String name, Storable s)
+        throws IOException
+    {
+        Assert.require(name != null);
+        Assert.require(s != null);
+
+        // Build the whole record before we lock anything.
+        StringIndentWriter w =
+            new StringIndentWriter(INITIAL_RECORD_CAPACITY);
+        s.save(this, w, name);
+        w.close();
+
+        byte[] nameBytes = name.getBytes(CHARACTER_ENCODING);
+        byte[] data = w.contents().getBytes(CHARACTER_ENCODING);
+        long checksum = checksum(nameBytes, data, 0, data.length);
+        byte[] header = (String.valueOf(nameBytes.length) +
+                         HEADER_FIELD_SEPARATOR +
+                         String.valueOf(data.length) +
+                         HEADER_FIELD_SEPARATOR +
+                         Long.toString(checksum, CHECKSUM_RADIX)).
+                            getBytes(CHARACTER_ENCODING);
+        int headerLength = header.length + 1;
+        ByteBuffer buf = ByteBuffer.allocate(headerLength +
+                                    nameBytes.length + 1 + data.length);
+        buf.put(header).put(HEADER_TERMINATOR);
+        buf.put(nameBytes).put(HEADER_TERMINATOR);
+        buf.put(data);
+        buf.flip();
+
+        boolean result;
+
+        _lock.writeLock().lock();
+        try
+        {
+            checkIsOpen();
+
+            long start = _segmentLength;
+            writeFully(_channel, buf, start);
+
+            Location loc = new Location(start,
+                start + headerLength + nameBytes.length + 1, data.length,
+                checksum);
+            result = addToIndex(name, loc);
+            _segmentLength = loc.end();
+            _isIndexModified = true;
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+        @see Storage#load(String)
+    */
+    public Storable load(String name)
+        throws IOException, StorageException
+    {
+        Assert.require(name != null);
+
+        Storable result = null;
+
+        StoredItem item = item(name);
+        if (item != null)
+        {
+            result = load(item);
+        }
+
+        // 'result' can be null
+        return result;
+    }
+
+    /**
+        Returns the StoredItem that the Storable that was last saved under
+        the specified name was saved as. Only the record for that Storable
+        is read and parsed, and it's only parsed if its checksum matches
+        its contents.
+
+        @param name the name under which a Storable may have been saved in
+        this storage
+        @return the StoredItem for the Storable last saved under 'name', or
+        null if no Storable has been saved under that name
+        @exception IOException if an I/O error occurs in reading the
+        Storable's record
+        @exception StorageException if the Storable's record is corrupt or
+        couldn't be parsed
+    */
+    public StoredItem item(String name)
+        throws IOException, StorageException
+    {
+        Assert.require(name != null);
+
+        StoredItem result = null;
+
+        byte[] data = null;
+        Location loc;
+        _lock.readLock().lock();
+        try
+        {
+            checkIsOpen();
+
+            loc = (Location) _index.get(name);
+            if (loc != null)
+            {
+                data = new byte[loc.dataLength()];
+                readFully(_channel, ByteBuffer.wrap(data), loc.dataStart());
+            }
+        }
+        finally
+        {
+            _lock.readLock().unlock();
+        }
+
+        if (data != null)
+        {
+            byte[] nameBytes = name.getBytes(CHARACTER_ENCODING);
+            if (checksum(nameBytes, data, 0, data.length) != loc.checksum())
+            {
+                String msg = _resources.
+                    getMessage(CORRUPT_STORAGE_RECORD_MSG, name,
+                               _segmentFile.getPath());
+                throw new StorageException(msg);
+            }
+            result = parseRecord(name, new String(data, CHARACTER_ENCODING));
+        }
+
+        // 'result' can be null
+        return result;
+    }
+
+    /**
+        @param name a name
+        @return true iff a Storable has been saved under 'name' in this
+        storage
+    */
+    public boolean contains(String name)
+    {
+        Assert.require(name != null);
+
+        boolean result;
+
+        _lock.readLock().lock();
+        try
+        {
+            result = _index.containsKey(name);
+        }
+        finally
+        {
+            _lock.readLock().unlock();
+        }
+
+        return result;
+    }
+
+    /**
+        @return the number of distinct names that Storables have been
+        saved under in this storage
+    */
+    public int size()
+    {
+        int result;
+
+        _lock.readLock().lock();
+        try
+        {
+            result = _index.size();
+        }
+        finally
+        {
+            _lock.readLock().unlock();
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        @return the total length in bytes of the records in our segment file
+        that have been superseded by later records, and so would be removed
+        if we were compacted
+        @see #compact
+    */
+    public long supersededLength()
+    {
+        long result;
+
+        _lock.readLock().lock();
+        try
+        {
+            result = _supersededLength;
+        }
+        finally
+        {
+            _lock.readLock().unlock();
+        }
+
+        Assert.ensure(result >= 0L);
+        return result;
+    }
+
+    /**
+        Compacts our segment file by replacing it with one that contains
+        only the latest record saved under each name, and then saves our
+        index.
+        <p>
+        The new segment file is completely written before it atomically
+        replaces the old one, and it has a new identifier so that our old
+        index file will be ignored if a crash occurs before our new one is
+        saved.
+
+        @exception IOException if an I/O error occurs in compacting our
+        segment file, in which case it's left unchanged
+    */
+    public void compact()
+        throws IOException
+    {
+        _lock.writeLock().lock();
+        try
+        {
+            checkIsOpen();
+
+            File tempFile =
+                new File(_segmentFile.getPath() + TEMPORARY_FILE_SUFFIX);
+            RandomAccessFile newSegment =
+                new RandomAccessFile(tempFile, "rw");
+            boolean isReplaced = false;
+            try
+            {
+                newSegment.setLength(0L);
+                FileChannel newChannel = newSegment.getChannel();
+                String newId = createSegmentId();
+                long pos = writeSegmentHeader(newChannel, newId);
+
+                // Copy the records in the order in which they appear in
+                // the old segment file.
+                List entries = new ArrayList(_index.entrySet());
+                Collections.sort(entries, new LocationComparator());
+                Map newIndex = new HashMap(_index.size() * 2);
+                Iterator iter = entries.iterator();
+                while (iter.hasNext())
+                {
+                    Map.Entry e = (Map.Entry) iter.next();
+                    Location loc = (Location) e.getValue();
+                    transferFully(_channel, loc.start(), loc.length(),
+                                  newChannel, pos);
+                    Location newLoc = loc.movedTo(pos);
+                    newIndex.put(e.getKey(), newLoc);
+                    pos = newLoc.end();
+                }
+                newChannel.force(true);
+
+                Files.move(tempFile.toPath(), _segmentFile.toPath(),
+                           StandardCopyOption.REPLACE_EXISTING,
+                           StandardCopyOption.ATOMIC_MOVE);
+                isReplaced = true;
+
+                tryToClose(_segment);
+                _segment = newSegment;
+                _channel = newChannel;
+                _segmentId = newId;
+                _segmentLength = pos;
+                _index = newIndex;
+                _supersededLength = 0L;
+                _isIndexModified = true;
+            }
+            finally
+            {
+                if (isReplaced == false)
+                {
+                    tryToClose(newSegment);
+                    Io.tryToDelete(tempFile);
+                }
+            }
+
+            saveIndex();
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+        Saves our index to our index file iff it has changed since it was
+        last saved, after forcing all of the records that it refers to out
+        to our segment file.
+
+        @exception IOException if an I/O error occurs in saving our index
+    */
+    public void flush()
+        throws IOException
+    {
+        _lock.writeLock().lock();
+        try
+        {
+            checkIsOpen();
+            saveIndex();
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /**
+        Flushes this storage and then closes it. Closing a storage that has
+        already been closed has no effect.
+
+        @exception IOException if an I/O error occurs in flushing or closing
+        this storage
+        @see #flush
+    */
+    public void close()
+        throws IOException
+    {
+        _lock.writeLock().lock();
+        try
+        {
+            if (_segment != null)
+            {
+                try
+                {
+                    saveIndex();
+                }
+                finally
+                {
+                    RandomAccessFile segment = _segment;
+                    _segment = null;
+                    _channel = null;
+                    segment.close();
+                }
+            }
+        }
+        finally
+        {
+            _lock.writeLock().unlock();
+        }
+    }
+
+
+    // Protected methods
+
+    /**
+        @return the pathname of our segment file
+    */
+    protected File segmentFile()
+    {
+        Assert.ensure(_segmentFile != null);
+        return _segmentFile;
+    }
+
+
+    // Abstract methods
+
+    /**
+        Parses the specified representation of a Storable into the
+        StoredItem that it represents.
+        <p>
+        Note: this method can be called concurrently from multiple threads.
+
+        @param name the name that the Storable was saved under
+        @param data the representation of the Storable that was written
+        when it was saved
+        @return the StoredItem that 'data' represents
+        @exception IOException if an I/O error occurs in parsing 'data'
+        @exception StorageException if 'data' couldn't be parsed
+        @see Storable#save(Storage, IndentWriter, String)
+    */
+    protected abstract StoredItem parseRecord(String name, String data)
+        throws IOException, StorageException;
+        // Assert.require(name != null);
+        // Assert.require(data != null);
+        // Assert.ensure(result != null);
+
+
+    // Private methods
+
+    /**
+        Adds the specified location of a record to our index under the
+        specified name, replacing any location already in it under that
+        name.
+
+        @param name the name the record was saved under
+        @param loc the location of the record in our segment file
+        @return true iff 'loc' replaced another location
+    */
+    private boolean addToIndex(String name, Location loc)
+    {
+        Assert.require(name != null);
+        Assert.require(loc != null);
+
+        Location old = (Location) _index.put(name, loc);
+        if (old != null)
+        {
+            _supersededLength += old.length();
+        }
+
+        return (old != null);
+    }
+
+    /**
+        Reads the header line from the start of our segment file.
+
+        @return our segment file's identifier
+        @exception IOException if the header couldn't be read
+        @exception StorageException if our segment file doesn't start with
+        a valid header
+    */
+    private String readSegmentHeader()
+        throws IOException, StorageException
+    {
+        String result = null;
+
+        String header = readHeader(0L);
+        if (header != null)
+        {
+            String prefix = SEGMENT_FILE_MAGIC + HEADER_FIELD_SEPARATOR;
+            if (header.startsWith(prefix) &&
+                header.length() > prefix.length())
+            {
+                result = header.substring(prefix.length());
+            }
+        }
+        if (result == null)
+        {
+            String msg = _resources.
+                getMessage(NOT_A_STORAGE_SEGMENT_FILE_MSG,
+                           _segmentFile.getPath());
+            throw new StorageException(msg);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Loads our index from our index file iff it exists and is a valid
+        index of our segment file: otherwise our index is left empty.
+
+        @param start the position in our segment file immediately after its
+        header
+        @return the position in our segment file immediately after the last
+        record covered by our index file, or 'start' if our index file
+        wasn't loaded
+    */
+    private long loadIndex(long start)
+    {
+        Assert.require(start > 0L);
+
+        long result = start;
+
+        if (_indexFile.isFile())
+        {
+            DataInputStream in = null;
+            try
+            {
+                in = new DataInputStream(new BufferedInputStream(
+                                    new FileInputStream(_indexFile)));
+                long maxLength = _indexFile.length();
+                if (in.readInt() == INDEX_FILE_MAGIC &&
+                    in.readInt() == INDEX_FILE_VERSION &&
+                    readString(in, maxLength).equals(_segmentId))
+                {
+                    long covered = in.readLong();
+                    long superseded = in.readLong();
+                    int numEntries = in.readInt();
+                    if (covered >= start && covered <= _channel.size() &&
+                        numEntries >= 0)
+                    {
+                        Map m = new HashMap(numEntries * 2);
+                        for (int i = 0; i < numEntries; i++)
+                        {
+                            String name = readString(in, maxLength);
+                            long recordStart = in.readLong();
+                            long dataStart = in.readLong();
+                            int dataLength = in.readInt();
+                            long checksum = in.readLong();
+                            m.put(name, new Location(recordStart,
+                                        dataStart, dataLength, checksum));
+                        }
+                        _index = m;
+                        _supersededLength = superseded;
+                        result = covered;
+                    }
+                }
+            }
+            catch (IOException ex)
+            {
+                // Ignore the index file, and so recover all of the records
+                // by scanning the whole segment file instead.
+                _index = new HashMap();
+                _supersededLength = 0L;
+                result = start;
+            }
+            finally
+            {
+                Io.tryToClose(in);
+            }
+        }
+        if (result == start)
+        {
+            _isIndexModified = true;
+        }
+
+        Assert.ensure(result >= start);
+        return result;
+    }
+
+    /**
+        Adds to our index all of the complete records in our segment file
+        from the specified position onwards, and then removes anything that
+        follows the last complete record. A record whose checksum doesn't
+        match its contents is treated as being incomplete.
+
+        @param start the position of the first record to recover
+        @exception IOException if an I/O error occurs in reading or
+        truncating our segment file
+    */
+    private void recoverRecords(long start)
+        throws IOException
+    {
+        Assert.require(start >= 0L);
+
+        long size = _channel.size();
+        long pos = start;
+        boolean isDone = false;
+        while (isDone == false && pos < size)
+        {
+            Location loc = null;
+            String name = null;
+
+            String header = readHeader(pos);
+            if (header != null)
+            {
+                int sepIndex = header.indexOf(HEADER_FIELD_SEPARATOR);
+                int sepIndex2 =
+                    header.indexOf(HEADER_FIELD_SEPARATOR, sepIndex + 1);
+                try
+                {
+                    int nameLength =
+                        Integer.parseInt(header.substring(0, sepIndex));
+                    int dataLength = Integer.
+                        parseInt(header.substring(sepIndex + 1, sepIndex2));
+                    long checksum = Long.parseLong(
+                        header.substring(sepIndex2 + 1), CHECKSUM_RADIX);
+                    long nameStart = pos + header.length() + 1;
+                    long dataStart = nameStart + nameLength + 1;
+                    if (nameLength >= 0 && dataLength >= 0 &&
+                        dataStart + dataLength <= size)
+                    {
+                        // Read the name, its terminator and the data.
+                        byte[] bytes = new byte[nameLength + 1 + dataLength];
+                        readFully(_channel, ByteBuffer.wrap(bytes),
+                                  nameStart);
+                        byte[] nameBytes = new byte[nameLength];
+                        System.arraycopy(bytes, 0, nameBytes, 0, nameLength);
+                        if (checksum(nameBytes, bytes, nameLength + 1,
+                                     dataLength) == checksum)
+                        {
+                            name = new String(nameBytes, CHARACTER_ENCODING);
+                            loc = new Location(pos, dataStart, dataLength,
+                                               checksum);
+                        }
+                    }
+                }
+                catch (IndexOutOfBoundsException ex)
+                {
+                    // empty - 'loc' will still be null
+                }
+                catch (NumberFormatException ex)
+                {
+                    // empty - 'loc' will still be null
+                }
+            }
+
+            if (loc != null)
+            {
+                addToIndex(name, loc);
+                _isIndexModified = true;
+                pos = loc.end();
+            }
+            else
+            {
+                isDone = true;
+            }
+        }
+
+        if (pos < size)
+        {
+            // Remove the incomplete record at the end of the segment file.
+            _channel.truncate(pos);
+        }
+        _segmentLength = pos;
+    }
+
+    /**
+        Saves our index to our index file iff it has been modified since it
+        was last saved, after forcing everything that has been written to
+        our segment file out to it.
+
+        @exception IOException if an I/O error occurs in saving our index
+    */
+    private void saveIndex()
+        throws IOException
+    {
+        if (_isIndexModified)
+        {
+            _channel.force(false);
+
+            File tempFile =
+                new File(_indexFile.getPath() + TEMPORARY_FILE_SUFFIX);
+            FileOutputStream fout = new FileOutputStream(tempFile);
+            try
+            {
+                DataOutputStream out = new DataOutputStream(
+                                    new BufferedOutputStream(fout));
+                out.writeInt(INDEX_FILE_MAGIC);
+                out.writeInt(INDEX_FILE_VERSION);
+                writeString(out, _segmentId);
+                out.writeLong(_segmentLength);
+                out.writeLong(_supersededLength);
+                out.writeInt(_index.size());
+                Iterator iter = _index.entrySet().iterator();
+                while (iter.hasNext())
+                {
+                    Map.Entry e = (Map.Entry) iter.next();
+                    Location loc = (Location) e.getValue();
+                    writeString(out, (String) e.getKey());
+                    out.writeLong(loc.start());
+                    out.writeLong(loc.dataStart());
+                    out.writeInt(loc.dataLength());
+                    out.writeLong(loc.checksum());
+                }
+                out.flush();
+                fout.getFD().sync();
+            }
+            finally
+            {
+                Io.tryToClose(fout);
+            }
+
+            Files.move(tempFile.toPath(), _indexFile.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            _isIndexModified = false;
+        }
+    }
+
+    /**
+        Reads the header line that starts at the specified position in our
+        segment file.
+
+        @param pos the position in our segment file of the start of a header
+        @return the header (without its terminator), or null if there isn't
+        a complete header at 'pos'
+        @exception IOException if an I/O error occurs in reading the header
+    */
+    private String readHeader(long pos)
+        throws IOException
+    {
+        Assert.require(pos >= 0L);
+
+        String result = null;
+
+        ByteBuffer buf = ByteBuffer.allocate(MAX_HEADER_LENGTH);
+        boolean isEof = false;
+        while (isEof == false && buf.hasRemaining())
+        {
+            isEof = (_channel.read(buf, pos + buf.position()) < 0);
+        }
+
+        byte[] bytes = buf.array();
+        int len = buf.position();
+        for (int i = 0; result == null && i < len; i++)
+        {
+            if (bytes[i] == HEADER_TERMINATOR)
+            {
+                result = new String(bytes, 0, i, CHARACTER_ENCODING);
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        @exception IllegalStateException thrown if we've been closed
+    */
+    private void checkIsOpen()
+    {
+        if (_segment == null)
+        {
+            String msg = _resources.
+                getMessage(STORAGE_CLOSED_MSG, _segmentFile.getPath());
+            throw new IllegalStateException(msg);
+        }
+    }
+
+
+    // Private static methods
+
+    /**
+        @return a new, almost certainly unique, segment file identifier
+    */
+    private static String createSegmentId()
+    {
+        Random r = new Random();
+        String result = Long.toHexString(System.currentTimeMillis()) +
+                        Long.toHexString(r.nextLong());
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @param id a segment file identifier
+        @return the length of the header of a segment file with identifier
+        'id'
+    */
+    private static long headerLength(String id)
+    {
+        Assert.require(id != null);
+
+        long result = SEGMENT_FILE_MAGIC.length() +
+            HEADER_FIELD_SEPARATOR.length() + id.length() + 1;
+
+        Assert.ensure(result > 0L);
+        return result;
+    }
+
+    /**
+        Returns the checksum of a record with the specified name and data.
+
+        @param nameBytes the UTF-8 encoding of the name that the record was
+        saved under
+        @param data a buffer containing the record's data
+        @param dataStart the index in 'data' of the start of the record's
+        data
+        @param dataLength the length of the record's data
+        @return the record's checksum
+    */
+    private static long checksum(byte[] nameBytes, byte[] data,
+                                 int dataStart, int dataLength)
+    {
+        Assert.require(nameBytes != null);
+        Assert.require(data != null);
+        Assert.require(dataStart >= 0);
+        Assert.require(dataLength >= 0);
+        Assert.require(dataStart + dataLength <= data.length);
+
+        CRC32 crc = new CRC32();
+        crc.update(nameBytes, 0, nameBytes.length);
+        crc.update(data, dataStart, dataLength);
+
+        long result = crc.getValue();
+
+        Assert.ensure(result >= 0L);
+        return result;
+    }
+
+    /**
+        Writes the specified string to the specified stream as its length
+        (in bytes) followed by its UTF-8 encoding. (Unlike writeUTF(), this
+        works for strings of any length.)
+
+        @param out the stream to write the string to
+        @param str the string to write
+        @exception IOException if an I/O error occurs in writing the string
+        @see #readString(DataInputStream, long)
+    */
+    private static void writeString(DataOutputStream out, String str)
+        throws IOException
+    {
+        Assert.require(out != null);
+        Assert.require(str != null);
+
+        byte[] bytes = str.getBytes(CHARACTER_ENCODING);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+        Reads a string written by writeString() from the specified stream.
+
+        @param in the stream to read the string from
+        @param maxLength the maximum valid length of the string in bytes
+        @return the string that was read
+        @exception IOException if an I/O error occurs in reading the
+        string, or if its length is invalid
+        @see #writeString(DataOutputStream, String)
+    */
+    private static String readString(DataInputStream in, long maxLength)
+        throws IOException
+    {
+        Assert.require(in != null);
+        Assert.require(maxLength >= 0L);
+
+        int len = in.readInt();
+        if (len < 0 || len > maxLength)
+        {
+            throw new EOFException();
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+
+        String result = new String(bytes, CHARACTER_ENCODING);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Writes the header of a segment file with the specified identifier
+        to the start of the specified (empty) segment file.
+
+        @param ch the channel to use to write to the segment file
+        @param id the segment file's identifier
+        @return the length of the header
+        @exception IOException if an I/O error occurs in writing the header
+    */
+    private static long writeSegmentHeader(FileChannel ch, String id)
+        throws IOException
+    {
+        Assert.require(ch != null);
+        Assert.require(id != null);
+
+        String header = SEGMENT_FILE_MAGIC + HEADER_FIELD_SEPARATOR + id;
+        byte[] bytes = header.getBytes(CHARACTER_ENCODING);
+        ByteBuffer buf = ByteBuffer.allocate(bytes.length + 1);
+        buf.put(bytes).put(HEADER_TERMINATOR);
+        buf.flip();
+        writeFully(ch, buf, 0L);
+
+        long result = buf.limit();
+
+        Assert.ensure(result == headerLength(id));
+        return result;
+    }
+
+    /**
+        Writes all of the remaining bytes in the specified buffer to the
+        specified channel, starting at the specified position.
+
+        @param ch the channel to write to
+        @param buf the buffer containing the bytes to write
+        @param pos the position in 'ch' to start writing at
+        @exception IOException if an I/O error occurs in writing
+    */
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos)
+        throws IOException
+    {
+        Assert.require(ch != null);
+        Assert.require(buf != null);
+        Assert.require(pos >= 0L);
+
+        long p = pos;
+        while (buf.hasRemaining())
+        {
+            p += ch.write(buf, p);
+        }
+    }
+
+    /**
+        Fills the specified buffer with bytes read from the specified
+        channel, starting at the specified position.
+
+        @param ch the channel to read from
+        @param buf the buffer to fill
+        @param pos the position in 'ch' to start reading at
+        @exception IOException if an I/O error occurs in reading, or if the
+        end of 'ch' is reached before 'buf' is full
+    */
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos)
+        throws IOException
+    {
+        Assert.require(ch != null);
+        Assert.require(buf != null);
+        Assert.require(pos >= 0L);
+
+        long p = pos;
+        while (buf.hasRemaining())
+        {
+            int numRead = ch.read(buf, p);
+            if (numRead < 0)
+            {
+                throw new EOFException();
+            }
+            p += numRead;
+        }
+    }
+
+    /**
+        Copies the specified number of bytes from one channel to another.
+
+        @param from the channel to copy the bytes from
+        @param fromPos the position in 'from' of the first byte to copy
+        @param count the number of bytes to copy
+        @param to the channel to copy the bytes to
+        @param toPos the position in 'to' to copy the first byte to
+        @exception IOException if an I/O error occurs in copying the bytes
+    */
+    private static void transferFully(FileChannel from, long fromPos,
+                        long count, FileChannel to, long toPos)
+        throws IOException
+    {
+        Assert.require(from != null);
+        Assert.require(fromPos >= 0L);
+        Assert.require(count >= 0L);
+        Assert.require(to != null);
+        Assert.require(toPos >= 0L);
+
+        to.position(toPos);
+        long numCopied = 0L;
+        while (numCopied < count)
+        {
+            long n = from.transferTo(fromPos + numCopied,
+                                     count - numCopied, to);
+            if (n <= 0L)
+            {
+                throw new EOFException();
+            }
+            numCopied += n;
+        }
+    }
+
+    /**
+        Tries to close the specified file, ignoring any errors.
+
+        @param f the file to close
+    */
+    private static void tryToClose(RandomAccessFile f)
+    {
+        Assert.require(f != null);
+
+        try
+        {
+            f.close();
+        }
+        catch (IOException ex)
+        {
+            // empty - ignore it
+        }
+    }
+
+
+    // Inner classes
+
+    /**
+        Represents the location of a record in a segment file.
+    */
+    private static class Location
+    {
+        // Private fields
+
+        /** The position of the start of the record's header. */
+        private long _start;
+
+        /** The position of the start of the record's data. */
+        private long _dataStart;
+
+        /** The length of the record's data. */
+        private int _dataLength;
+
+        /** The checksum of the record's name and data. */
+        private long _checksum;
+
+
+        // Constructors
+
+        /**
+            Constructs a Location.
+
+            @param start the position of the start of the record's header
+            @param dataStart the position of the start of the record's data
+            @param dataLength the length of the record's data
+            @param checksum the checksum of the record's name and data
+        */
+        public Location(long start, long dataStart, int dataLength,
+                        long checksum)
+        {
+            Assert.require(start >= 0L);
+            Assert.require(dataStart > start);
+            Assert.require(dataLength >= 0);
+
+            _start = start;
+            _dataStart = dataStart;
+            _dataLength = dataLength;
+            _checksum = checksum;
+        }
+
+
+        // Public methods
+
+        /**
+            @param newStart the new position of the start of the record
+            @return a Location for the same record after it has been moved
+            to start at 'newStart'
+        */
+        public Location movedTo(long newStart)
+        {
+            Assert.require(newStart >= 0L);
+
+            Location result = new Location(newStart,
+                newStart + (_dataStart - _start), _dataLength, _checksum);
+
+            Assert.ensure(result != null);
+            Assert.ensure(result.length() == length());
+            return result;
+        }
+
+        /**
+            @return the position of the start of the record's header
+        */
+        public long start()
+        {
+            return _start;
+        }
+
+        /**
+            @return the position of the start of the record's data
+        */
+        public long dataStart()
+        {
+            return _dataStart;
+        }
+
+        /**
+            @return the length of the record's data
+        */
+        public int dataLength()
+        {
+            return _dataLength;
+        }
+
+        /**
+            @return the checksum of the record's name and data
+        */
+        public long checksum()
+        {
+            return _checksum;
+        }
+
+        /**
+            @return the position immediately after the end of the record
+        */
+        public long end()
+        {
+            return _dataStart + _dataLength;
+        }
+
+        /**
+            @return the length of the whole record
+        */
+        public long length()
+        {
+            return end() - _start;
+        }
+    }
+
+    /**
+        The class of comparator that orders index entries by the positions
+        of the records they refer to.
+    */
+    private static class LocationComparator
+        implements Comparator
+    {
+        // Public methods
+
+        /**
+            @see Comparator#compare(Object, Object)
+        */
+        public int compare(Object obj1, Object obj2)
+        {
+            long start1 = ((Location) ((Map.Entry) obj1).getValue()).start();
+            long start2 = ((Location) ((Map.Entry) obj2).getValue()).start();
+
+            int result = 0;
+            if (start1 < start2)
+            {
+                result = -1;
+            }
+            else if (start1 > start2)
+            {
+                result = 1;
+            }
+
+            return result;
+        }
+    }
+}
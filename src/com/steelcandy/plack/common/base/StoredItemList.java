@@ -79,7 +79,7 @@ public abstract class StoredItemList
     */
     public static StoredItemList createArrayList(int initialCapacity)
     {
-        return new ArrayTypedList(initialCapacity);
+        return new DirectArrayTypedList(initialCapacity);
     }
 
     /**
@@ -490,6 +490,39 @@ public abstract class StoredItemList
         return (StoredItem[]) toObjectArray(array);
     }
 
+    /**
+        Returns an unmodifiable copy of this list whose items are stored
+        directly in an array, which makes indexing into and iterating over
+        it as cheap as possible. Since a frozen list can't be modified it
+        can safely be shared, and freezing one just returns it.
+        <p>
+        Changes made to this list after this method returns will not be
+        reflected in the returned list.
+
+        @return a frozen copy of this list
+        @see #isFrozen
+    */
+    public StoredItemList freeze()
+    {
+        StoredItemList result = new FrozenTypedList(toArray());
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.isFrozen());
+        Assert.ensure(result.size() == size());
+        return result;
+    }
+
+    /**
+        @return true iff this list is a frozen list: that is, iff it was
+        returned by a call to freeze()
+        @see #freeze
+    */
+    public boolean isFrozen()
+    {
+        return false;
+    }
+
+
 
     // Private static methods
 
@@ -556,6 +589,112 @@ public abstract class StoredItemList
 
     // Inner classes
 
+    /**
+        A cursor over the StoredItem items in a(n)
+        StoredItemList.
+        <p>
+        A cursor can be reset to the start of the same list or of another
+        one, so a single cursor can be used to iterate over any number of
+        lists without any further objects being allocated. It accesses items
+        by their indices, which is cheapest for lists created by
+        createArrayList() or freeze().
+    */
+    public static class Cursor
+        implements StoredItemIterator
+    {
+        // Private fields
+
+        /** The list whose items we iterate over. */
+        private StoredItemList _list;
+
+        /** The index in '_list' of the item that next() will return. */
+        private int _nextIndex;
+
+
+        // Constructors
+
+        /**
+            Constructs a Cursor that is positioned at the start of the
+            specified list.
+
+            @param list the list whose items the cursor is to iterate over
+        */
+        public Cursor(StoredItemList list)
+        {
+            reset(list);
+        }
+
+
+        // Public methods
+
+        /**
+            Repositions this cursor at the start of the specified list.
+
+            @param list the list whose items this cursor is to iterate over
+            @return this cursor
+        */
+        public Cursor reset(StoredItemList list)
+        {
+            Assert.require(list != null);
+
+            _list = list;
+            _nextIndex = 0;
+
+            return this;
+        }
+
+        /**
+            Repositions this cursor at the start of the list that it
+            iterates over.
+
+            @return this cursor
+        */
+        public Cursor reset()
+        {
+            _nextIndex = 0;
+
+            return this;
+        }
+
+        /**
+            @return the index in our list of the item that the next call to
+            our next() method will return
+        */
+        public int index()
+        {
+            return _nextIndex;
+        }
+
+        /**
+            @see StoredItemIterator#hasNext
+        */
+        public boolean hasNext()
+        {
+            return (_nextIndex < _list.size());
+        }
+
+        /**
+            @see StoredItemIterator#next
+        */
+        public StoredItem next()
+            throws NoSuchItemException
+        {
+            StoredItem result = _list.get(_nextIndex);
+
+            _nextIndex += 1;
+            return result;
+        }
+
+        /**
+            @see StoredItemIterator#peek
+        */
+        public StoredItem peek()
+            throws NoSuchItemException
+        {
+            return _list.get(_nextIndex);
+        }
+    }
+
     /**
         An array-backed StoredItemList.
     */
@@ -631,6 +770,443 @@ public abstract class StoredItemList
         }
     }
 
+    /**
+        A(n) StoredItemList whose items are stored directly in an
+        array of StoredItem items rather than in a general-purpose
+        backing list, so that the operations that are performed on it most
+        often needn't go through a List or cast their results.
+    */
+    private static class DirectArrayTypedList
+        extends StoredItemList
+    {
+        // Private fields
+
+        /** The store that holds our items: it's also our backing list. */
+        private final ArrayStore _store;
+
+
+        // Constructors
+
+        /**
+            Constructs a DirectArrayTypedList.
+
+            @param initialCapacity the list's initial capacity
+        */
+        public DirectArrayTypedList(int initialCapacity)
+        {
+            super(initialCapacity);
+
+            _store = (ArrayStore) asUntypedList();
+        }
+
+
+        // Public methods
+        /**
+            @see StoredItemList#iterator
+        */
+        public StoredItemIterator iterator()
+        {
+            return new Cursor(this);
+        }
+        /**
+            @see StoredItemList#contains(StoredItem)
+        */
+        public boolean contains(StoredItem item)
+        {
+            // 'item' can be null
+
+            return (_store.indexOf(item) >= 0);
+        }
+
+        /**
+            @see StoredItemList#get(int)
+        */
+        public StoredItem get(int index)
+            throws NoSuchItemException
+        {
+            return _store.item(index);
+        }
+
+        /**
+            @see StoredItemList#getLast
+        */
+        public StoredItem getLast()
+            throws NoSuchItemException
+        {
+            return _store.item(_store.size() - 1);
+        }
+
+        /**
+            @see StoredItemList#add(StoredItem)
+        */
+        public void add(StoredItem newItem)
+        {
+            _store.append(newItem);
+        }
+
+        /**
+            Adds all of the items in the specified list in order to the end
+            of this list. The items are copied directly from the other
+            list's array if it has one.
+
+            @see StoredItemList#addAll(StoredItemList)
+        */
+        public void addAll(StoredItemList list)
+        {
+            Assert.require(list != null);
+
+            if (list instanceof DirectArrayTypedList)
+            {
+                ArrayStore src = ((DirectArrayTypedList) list)._store;
+                _store.append(src.items(), src.size());
+            }
+            else if (list instanceof FrozenTypedList)
+            {
+                StoredItem[] items = ((FrozenTypedList) list)._items;
+                _store.append(items, items.length);
+            }
+            else
+            {
+                // Note: 'list' may be a sublist of this list, so we don't
+                // add its items while iterating over them.
+                StoredItem[] items = list.toArray();
+                _store.append(items, items.length);
+            }
+        }
+
+        /**
+            @see StoredItemList#toArray
+        */
+        public StoredItem[] toArray()
+        {
+            return _store.toTypedArray();
+        }
+
+        /**
+            @see TypedList#trimToSize
+        */
+        public void trimToSize()
+        {
+            _store.trimToSize();
+        }
+
+        /**
+            @see StoredItemList#cloneList
+        */
+        public StoredItemList cloneList()
+        {
+            StoredItemList result = new DirectArrayTypedList(size());
+
+            result.addAll(this);
+
+            Assert.ensure(result != null);
+            Assert.ensure(result.size() == size());
+            return result;
+        }
+
+        /**
+            @see StoredItemList#subList(int)
+        */
+        public StoredItemList subList(int startIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex));
+        }
+
+        /**
+            @see StoredItemList#subList(int, int)
+        */
+        public StoredItemList
+            subList(int startIndex, int pastEndIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex,
+                                                     pastEndIndex));
+        }
+
+
+        // Protected methods
+
+        /**
+            @see TypedList#createBackingList(int)
+        */
+        protected List createBackingList(int initialCapacity)
+        {
+            return new ArrayStore(initialCapacity);
+        }
+    }
+
+    /**
+        The backing list of a DirectArrayTypedList, which stores its
+        StoredItem items directly in an array.
+        <p>
+        It provides typed versions of the operations that a
+        DirectArrayTypedList performs most often: the rest of the TypedList
+        methods access it through the List interface.
+    */
+    private static class ArrayStore
+        extends AbstractList
+        implements RandomAccess
+    {
+        // Private fields
+
+        /**
+            The array containing our items: only its first '_size' elements
+            are items.
+        */
+        private StoredItem[] _items;
+
+        /** The number of items in this list. */
+        private int _size;
+
+
+        // Constructors
+
+        /**
+            Constructs an empty ArrayStore.
+
+            @param initialCapacity the store's initial capacity
+        */
+        public ArrayStore(int initialCapacity)
+        {
+            Assert.require(initialCapacity >= 0);
+
+            _items = new StoredItem[initialCapacity];
+            _size = 0;
+        }
+
+
+        // Public methods
+
+        /**
+            @param index the index of the item to return
+            @return the item in this list at index 'index'
+            @exception NoSuchItemException thrown if this list doesn't have
+            an item at index 'index'
+        */
+        public StoredItem item(int index)
+            throws NoSuchItemException
+        {
+            if (index >= 0 && index < _size)
+            {
+                return _items[index];
+            }
+            else
+            {
+                throw new NoSuchItemException();
+            }
+        }
+
+        /**
+            Note: only the first size() elements of the returned array are
+            items in this list, and the array mustn't be modified.
+
+            @return the array that contains our items
+        */
+        public StoredItem[] items()
+        {
+            return _items;
+        }
+
+        /**
+            Adds the specified item to the end of this list.
+
+            @param newItem the item to add
+        */
+        public void append(StoredItem newItem)
+        {
+            ensureCapacity(_size + 1);
+            _items[_size] = newItem;
+            _size += 1;
+            modCount += 1;
+        }
+
+        /**
+            Adds the first 'count' items in the specified array to the end
+            of this list.
+
+            @param items the array containing the items to add
+            @param count the number of items in 'items' to add
+        */
+        public void append(StoredItem[] items, int count)
+        {
+            Assert.require(items != null);
+            Assert.require(count >= 0);
+            Assert.require(count <= items.length);
+
+            ensureCapacity(_size + count);
+            System.arraycopy(items, 0, _items, _size, count);
+            _size += count;
+            modCount += 1;
+        }
+
+        /**
+            Ensures that this list can hold at least the specified number of
+            items without having to grow its array.
+
+            @param minCapacity the minimum capacity
+        */
+        public void ensureCapacity(int minCapacity)
+        {
+            if (minCapacity > _items.length)
+            {
+                int newCapacity =
+                    Math.max(minCapacity, (_items.length * 3) / 2 + 1);
+                StoredItem[] newItems =
+                    new StoredItem[newCapacity];
+                System.arraycopy(_items, 0, newItems, 0, _size);
+                _items = newItems;
+            }
+        }
+
+        /**
+            Reduces this list's capacity to its size.
+        */
+        public void trimToSize()
+        {
+            if (_size < _items.length)
+            {
+                _items = toTypedArray();
+            }
+            modCount += 1;
+        }
+
+        /**
+            @return a new array containing all of our items in order
+        */
+        public StoredItem[] toTypedArray()
+        {
+            StoredItem[] result = new StoredItem[_size];
+
+            System.arraycopy(_items, 0, result, 0, _size);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see List#size
+        */
+        public int size()
+        {
+            return _size;
+        }
+
+        /**
+            @see List#get(int)
+        */
+        public Object get(int index)
+        {
+            checkIndex(index, _size);
+
+            return _items[index];
+        }
+
+        /**
+            @see List#set(int, Object)
+        */
+        public Object set(int index, Object newItem)
+        {
+            checkIndex(index, _size);
+
+            Object result = _items[index];
+            _items[index] = (StoredItem) newItem;
+
+            return result;
+        }
+
+        /**
+            @see List#add(int, Object)
+        */
+        public void add(int index, Object newItem)
+        {
+            checkIndex(index, _size + 1);
+
+            ensureCapacity(_size + 1);
+            System.arraycopy(_items, index, _items, index + 1,
+                             _size - index);
+            _items[index] = (StoredItem) newItem;
+            _size += 1;
+            modCount += 1;
+        }
+
+        /**
+            @see List#remove(int)
+        */
+        public Object remove(int index)
+        {
+            checkIndex(index, _size);
+
+            Object result = _items[index];
+            System.arraycopy(_items, index + 1, _items, index,
+                             _size - index - 1);
+            _size -= 1;
+            _items[_size] = null;
+            modCount += 1;
+
+            return result;
+        }
+
+        /**
+            @see List#clear
+        */
+        public void clear()
+        {
+            Arrays.fill(_items, 0, _size, null);
+            _size = 0;
+            modCount += 1;
+        }
+
+        /**
+            @see List#indexOf(Object)
+        */
+        public int indexOf(Object obj)
+        {
+            // 'obj' can be null
+
+            int result = -1;
+
+            for (int i = 0; result < 0 && i < _size; i++)
+            {
+                Object item = _items[i];
+                if (obj == null ? item == null : obj.equals(item))
+                {
+                    result = i;
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            @see List#contains(Object)
+        */
+        public boolean contains(Object obj)
+        {
+            return (indexOf(obj) >= 0);
+        }
+
+
+        // Private static methods
+
+        /**
+            Checks that the specified index is at least zero and less than
+            the specified limit.
+
+            @param index the index to check
+            @param limit the index's upper bound (exclusive)
+            @exception IndexOutOfBoundsException thrown if 'index' isn't in
+            range
+        */
+        private static void checkIndex(int index, int limit)
+            throws IndexOutOfBoundsException
+        {
+            if (index < 0 || index >= limit)
+            {
+                throw new IndexOutOfBoundsException("index = " + index +
+                    ", limit = " + limit);
+            }
+        }
+    }
+
     /**
         An unmodifiable single-item list-backed StoredItemList.
     */
@@ -770,6 +1346,157 @@ public abstract class StoredItemList
         }
     }
 
+    /**
+        An unmodifiable StoredItemList whose items are stored directly
+        in an array. Instances of this class are returned by freeze().
+    */
+    private static class FrozenTypedList
+        extends StoredItemList
+    {
+        // Private fields
+
+        /** The items in this list, in order. */
+        private final StoredItem[] _items;
+
+
+        // Constructors
+
+        /**
+            Constructs a FrozenTypedList.
+            <p>
+            Note: the list takes ownership of 'items', which mustn't be
+            modified after this constructor is called.
+
+            @param items the list's items, in order
+        */
+        public FrozenTypedList(StoredItem[] items)
+        {
+            super(Collections.unmodifiableList(Arrays.asList(items)));
+
+            _items = items;
+        }
+
+
+        // Public methods
+        /**
+            @see StoredItemList#iterator
+        */
+        public StoredItemIterator iterator()
+        {
+            return new StoredItemArrayIterator(_items);
+        }
+        /**
+            @see StoredItemList#get(int)
+        */
+        public StoredItem get(int index)
+            throws NoSuchItemException
+        {
+            if (index >= 0 && index < _items.length)
+            {
+                return _items[index];
+            }
+            else
+            {
+                throw new NoSuchItemException();
+            }
+        }
+
+        /**
+            @see StoredItemList#getLast
+        */
+        public StoredItem getLast()
+            throws NoSuchItemException
+        {
+            return get(_items.length - 1);
+        }
+
+        /**
+            @see TypedList#size
+        */
+        public int size()
+        {
+            return _items.length;
+        }
+
+        /**
+            @see TypedList#isEmpty
+        */
+        public boolean isEmpty()
+        {
+            return (_items.length == 0);
+        }
+
+        /**
+            @see StoredItemList#toArray
+        */
+        public StoredItem[] toArray()
+        {
+            StoredItem[] result =
+                new StoredItem[_items.length];
+
+            System.arraycopy(_items, 0, result, 0, _items.length);
+
+            Assert.ensure(result != null);
+            return result;
+        }
+
+        /**
+            @see StoredItemList#freeze
+        */
+        public StoredItemList freeze()
+        {
+            return this;
+        }
+
+        /**
+            @see StoredItemList#isFrozen
+        */
+        public boolean isFrozen()
+        {
+            return true;
+        }
+
+        /**
+            Since a frozen list can't be modified, it is its own clone.
+
+            @see StoredItemList#cloneList
+        */
+        public StoredItemList cloneList()
+        {
+            return this;
+        }
+
+        /**
+            @see StoredItemList#subList(int)
+        */
+        public StoredItemList subList(int startIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex));
+        }
+
+        /**
+            @see StoredItemList#subList(int, int)
+        */
+        public StoredItemList
+            subList(int startIndex, int pastEndIndex)
+        {
+            return new ArrayTypedList(subBackingList(startIndex,
+                                                     pastEndIndex));
+        }
+
+
+        // Protected methods
+
+        /**
+            @see TypedList#createBackingList(int)
+        */
+        protected List createBackingList(int initialCapacity)
+        {
+            // This method should never get called.
+            throw new UnsupportedOperationException();
+        }
+    }
+
 
     // Built-in iterator inner class
 
@@ -24,7 +24,9 @@ import com.steelcandy.plack.common.source.SourceLocation;
 
 import com.steelcandy.common.Resources;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
     An abstract base class for classes that check that the main constructs
@@ -68,25 +70,66 @@ public abstract class AbstractValidityConstraintChecklistCompletionChecker
 
         if (v.areUncheckedConstraints())
         {
-            Iterator iter = v.uncheckedConstraintsInformation().iterator();
-            while (iter.hasNext())
-            {
-                UncheckedValidityConstraint uncheckedConstraint =
-                    (UncheckedValidityConstraint) iter.next();
-                Construct c = uncheckedConstraint.construct();
-
-                String msg = _resources.
-                    getMessage(UNCHECKED_CONSTRAINT_MSG,
-                               uncheckedConstraint.constraintName(),
-                               constructDescription(c));
-
-                // Note: we use 'null' as the class and object where the
-                // internal error occurred since there's no way in general
-                // to determine where a constraint should have been checked.
-                handler.handle(new PlackInternalError(ErrorSeverityLevels.
-                    NON_FATAL_ERROR_LEVEL, msg, c.sourceCode(),
-                    errorConstructLocation(c), (Class) null, (Object) null));
-            }
+            reportUncheckedConstraints(v.uncheckedConstraintsInformation(),
+                                       handler);
+        }
+    }
+
+    /**
+        Reports any unchecked validity constraints of the specified
+        construct itself: its subconstructs' unchecked validity constraints
+        (if any) are NOT reported.
+
+        @param c the construct whose unchecked validity constraints are to
+        be reported
+        @param handler the error handler to use to report the unchecked
+        validity constraints
+    */
+    protected void reportOwnUncheckedConstraints(Construct c,
+                                                 ErrorHandler handler)
+    {
+        Assert.require(c != null);
+        Assert.require(handler != null);
+
+        List uncheckedInfo = new ArrayList();
+        AbstractValidityConstraintChecklistFactory.
+            addUncheckedConstraints(c, uncheckedInfo);
+        reportUncheckedConstraints(uncheckedInfo, handler);
+    }
+
+    /**
+        Reports all of the unchecked validity constraints in the specified
+        list.
+
+        @param uncheckedInfo the list of the UncheckedValidityConstraints
+        to report
+        @param handler the error handler to use to report the unchecked
+        validity constraints
+    */
+    protected void reportUncheckedConstraints(List uncheckedInfo,
+                                              ErrorHandler handler)
+    {
+        Assert.require(uncheckedInfo != null);
+        Assert.require(handler != null);
+
+        Iterator iter = uncheckedInfo.iterator();
+        while (iter.hasNext())
+        {
+            UncheckedValidityConstraint uncheckedConstraint =
+                (UncheckedValidityConstraint) iter.next();
+            Construct c = uncheckedConstraint.construct();
+
+            String msg = _resources.
+                getMessage(UNCHECKED_CONSTRAINT_MSG,
+                           uncheckedConstraint.constraintName(),
+                           constructDescription(c));
+
+            // Note: we use 'null' as the class and object where the
+            // internal error occurred since there's no way in general
+            // to determine where a constraint should have been checked.
+            handler.handle(new PlackInternalError(ErrorSeverityLevels.
+                NON_FATAL_ERROR_LEVEL, msg, c.sourceCode(),
+                errorConstructLocation(c), (Class) null, (Object) null));
         }
     }
 
@@ -32,66 +32,30 @@ import com.steelcandy.common.debug.Assert;
     whether the <em>attribute</em> is set, not whether its value is set:
     however, setting an attribute's value is how an attribute is set.
     <p>
-    This class provides implementations of those methods that do not depend
-    on the element type, and also manages the backing object. Subclasses that
-    represent an attribute with a value of type <code>XXX</code> are usually
-    named <code>XXXAttribute</code>, and should implement the following
-    methods:
+    This class doesn't store the attribute's value: subclasses whose values
+    are objects usually extend ObjectAttribute, while those whose values
+    are of primitive types store their values as primitives. Subclasses
+    that represent an attribute with a value of type <code>XXX</code> are
+    usually named <code>XXXAttribute</code>, and should implement the
+    following methods:
     <ul>
-        <li><code>public XXX value()</code>, implemented using the
-            <code>valueObject()</code> method defined in this class, and</li>
-        <li><code>public void setValue(XXX newValue)</code>, implemented
-            using the <code>setValueObject()</code> method defined in this
-            class.</li>
+        <li><code>public XXX value()</code>, and</li>
+        <li><code>public void setValue(XXX newValue)</code>.</li>
     </ul>
 
     @author James MacKay
+    @see ObjectAttribute
 */
 public abstract class Attribute
 {
-    // Private fields
-
-    /** The attribute's value. */
-    private Object _value;
-
-
     // Constructors
 
     /**
-        Constructs an Attribute that has not been set yet.
+        Constructs an Attribute.
     */
     protected Attribute()
     {
-        _value = null;
-
-        Assert.ensure(isSet() == false);
-    }
-
-    /**
-        Constructs an Attribute that has been set, and has the
-        specified value.
-
-        @param value the attribute's value
-    */
-    protected Attribute(Object value)
-    {
-        Assert.require(value != null);
-
-        _value = value;
-
-        Assert.ensure(isSet());
-    }
-
-    /**
-        Copy constructor.
-
-        @param a the attribute that the attribute being constructed is to be
-        a copy of
-    */
-    protected Attribute(Attribute a)
-    {
-        // Assert.require(a != null);
-        this(a.valueObject());
+        // empty
     }
 
 
@@ -103,36 +67,5 @@ public abstract class Attribute
 
         @return true if this attribute's value is set, and false if it isn't
     */
-    public boolean isSet()
-    {
-        return (_value != null);
-    }
-
-
-    // Protected methods
-
-    /**
-        @return this attribute's value
-    */
-    protected Object valueObject()
-    {
-        Assert.require(isSet());
-
-        Assert.ensure(_value != null);
-        return _value;
-    }
-
-    /**
-        Sets this attribute's value to be the specified value.
-
-        @param newValue this attribute's new value
-    */
-    protected void setValueObject(Object newValue)
-    {
-        Assert.require(newValue != null);
-
-        _value = newValue;
-
-        Assert.ensure(isSet());
-    }
+    public abstract boolean isSet();
 }
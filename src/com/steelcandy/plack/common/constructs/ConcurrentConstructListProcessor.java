@@ -0,0 +1,240 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.constructs;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.errors.ErrorHandler;
+import com.steelcandy.plack.common.errors.RecordingErrorHandler;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+    An abstract base class for objects that process the constructs in a
+    list concurrently.
+    <p>
+    The list is divided into chunks of consecutive constructs, and each
+    chunk is processed sequentially by a separate task. The errors that
+    occur in processing a chunk are recorded, and then all of the recorded
+    errors are passed on - chunk by chunk, in the order in which the chunks
+    appear in the list - to the error handler passed to process(). Thus
+    the errors are handled in the same order in which they would have been
+    if the constructs had all been processed sequentially.
+    <p>
+    Subclasses' processChunk() methods will be called concurrently from
+    multiple threads, and so must only modify the constructs in the chunk
+    that they process and objects that aren't shared with other chunks.
+    The error handler passed to processChunk() is cancelled whenever the
+    one passed to process() is, so processChunk() methods should stop
+    processing their chunks' constructs once it has been cancelled.
+
+    @author James MacKay
+*/
+public abstract class ConcurrentConstructListProcessor
+{
+    // Constants
+
+    /**
+        The number of chunks per thread in the fork/join pool that a list
+        of constructs is divided into, so that the chunks that take longer
+        to process than others can be balanced out.
+    */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+
+    // Public methods
+
+    /**
+        Processes all of the constructs in the specified list.
+
+        @param constructs the constructs to process
+        @param handler the error handler to use to handle any errors that
+        occur in processing the constructs
+    */
+    public void process(ConstructList constructs, ErrorHandler handler)
+    {
+        Assert.require(constructs != null);
+        Assert.require(handler != null);
+
+        int size = constructs.size();
+        int numChunks = chunkCount(size);
+        if (numChunks <= 1)
+        {
+            if (size > 0)
+            {
+                processChunk(constructs, 0, size, handler);
+            }
+        }
+        else
+        {
+            ForkJoinPool pool = ForkJoinPool.commonPool();
+            ChunkProcessingTask[] tasks =
+                new ChunkProcessingTask[numChunks];
+            for (int i = 0; i < numChunks; i++)
+            {
+                int start = (int) (((long) i * size) / numChunks);
+                int end = (int) (((long) (i + 1) * size) / numChunks);
+                tasks[i] = new ChunkProcessingTask(constructs, start, end,
+                                                   handler);
+                pool.execute(tasks[i]);
+            }
+
+            for (int i = 0; i < numChunks; i++)
+            {
+                tasks[i].join();
+            }
+            for (int i = 0; i < numChunks; i++)
+            {
+                tasks[i].errorRecorder().transferErrorsTo(handler);
+            }
+        }
+    }
+
+
+    // Protected methods
+
+    /**
+        Returns the number of chunks to divide a list of constructs of the
+        specified size into. If it returns 1 (or 0) then the list will be
+        processed entirely by the current thread.
+
+        @param size the number of constructs in the list
+        @return the number of chunks to divide the list into
+    */
+    protected int chunkCount(int size)
+    {
+        Assert.require(size >= 0);
+
+        int result = ForkJoinPool.commonPool().getParallelism() *
+                        CHUNKS_PER_THREAD;
+        if (result > size)
+        {
+            result = size;
+        }
+
+        Assert.ensure(result >= 0);
+        Assert.ensure(result <= size);
+        return result;
+    }
+
+
+    // Abstract methods
+
+    /**
+        Processes the constructs in the specified part of the specified
+        list.
+        <p>
+        Note: this method can be called concurrently from multiple threads
+        (though never for overlapping parts of the same list).
+
+        @param constructs the list of constructs
+        @param start the index in 'constructs' of the first construct to
+        process
+        @param end the index in 'constructs' immediately after the last
+        construct to process
+        @param handler the error handler to use to handle any errors that
+        occur in processing the constructs
+    */
+    protected abstract void processChunk(ConstructList constructs,
+                                int start, int end, ErrorHandler handler);
+        // Assert.require(constructs != null);
+        // Assert.require(start >= 0);
+        // Assert.require(end > start);
+        // Assert.require(end <= constructs.size());
+        // Assert.require(handler != null);
+
+
+    // Inner classes
+
+    /**
+        The class of task that processes one chunk of a list of constructs,
+        recording any errors that occur in doing so.
+    */
+    private class ChunkProcessingTask
+        extends RecursiveAction
+    {
+        // Private fields
+
+        /** The list containing the chunk of constructs we process. */
+        private ConstructList _constructs;
+
+        /** The index in '_constructs' of the start of our chunk. */
+        private int _start;
+
+        /** The index in '_constructs' immediately after our chunk. */
+        private int _end;
+
+        /** Records the errors that occur in processing our chunk. */
+        private RecordingErrorHandler _recorder;
+
+
+        // Constructors
+
+        /**
+            Constructs a ChunkProcessingTask.
+
+            @param constructs the list containing the chunk of constructs
+            to process
+            @param start the index in 'constructs' of the first construct
+            in the chunk
+            @param end the index in 'constructs' immediately after the last
+            construct in the chunk
+            @param handler the error handler that the errors that occur in
+            processing the chunk will be transferred to
+        */
+        public ChunkProcessingTask(ConstructList constructs,
+                                   int start, int end, ErrorHandler handler)
+        {
+            Assert.require(constructs != null);
+            Assert.require(start >= 0);
+            Assert.require(end > start);
+            Assert.require(end <= constructs.size());
+            Assert.require(handler != null);
+
+            _constructs = constructs;
+            _start = start;
+            _end = end;
+            _recorder = new RecordingErrorHandler(handler);
+        }
+
+
+        // Public methods
+
+        /**
+            @return the error handler that recorded all of the errors that
+            occurred in processing our chunk
+        */
+        public RecordingErrorHandler errorRecorder()
+        {
+            Assert.ensure(_recorder != null);
+            return _recorder;
+        }
+
+
+        // Protected methods
+
+        /**
+            @see RecursiveAction#compute
+        */
+        protected void compute()
+        {
+            processChunk(_constructs, _start, _end, _recorder);
+        }
+    }
+}
@@ -222,6 +222,21 @@ public interface Construct
     */
     public void removeCorrectnessData();
 
+    /**
+        Reduces the amount of memory used by this construct and all of its
+        subconstructs by removing their correctness data and replacing
+        their lists of subconstructs with frozen lists, whose subconstructs
+        are stored in arrays of exactly the right size.
+        <p>
+        Note: since the correctness data is used in checking constructs
+        and in reporting errors in them, and frozen lists can't be
+        modified, this method should only be called on a construct once it
+        has been validated, and if no errors will be reported in it and it
+        won't be modified afterwards: for example, on a construct that is
+        only going to be kept in memory to be read.
+    */
+    public void trim();
+
     /**
         @return this construct's validity constraint checklist
         @exception MissingConstructCorrectnessDataException thrown if this
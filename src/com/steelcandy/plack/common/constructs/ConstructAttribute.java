@@ -26,7 +26,7 @@ import com.steelcandy.common.debug.Assert;
     @see Construct
 */
 public class ConstructAttribute
-    extends Attribute
+    extends ObjectAttribute
 {
     // Constructors
 
@@ -71,7 +71,7 @@ public class ConstructAttribute
 
     /**
         @return this attribute's value
-        @see Attribute#valueObject
+        @see ObjectAttribute#valueObject
     */
     public Construct value()
     {
@@ -85,7 +85,7 @@ public class ConstructAttribute
         Sets this attribute's value to be the specified value.
 
         @param newValue this attribute's new value
-        @see Attribute#setValueObject
+        @see ObjectAttribute#setValueObject
     */
     public void setValue(Construct newValue)
     {
@@ -24,13 +24,49 @@ import com.steelcandy.plack.common.source.SourceCode;
 /**
     A class that represents all of the data related to a construct's
     correctness.
+    <p>
+    Constructs whose validity constraint checklists are the
+    CompleteValidityConstraintChecklist share their correctness data with
+    all of the other such constructs from the same piece of source code,
+    since the data contains nothing specific to any one construct. Shared
+    instances are never modified: the withSourceCode() method should be used
+    to change a construct's source code.
 
     @author James MacKay
+    @see #create(ValidityConstraintChecklist)
+    @see #withSourceCode(SourceCode)
 */
 public class ConstructCorrectnessData
 {
+    // Constants
+
+    /** The shared data that has a completed checklist and no source code. */
+    private static final ConstructCorrectnessData
+        COMPLETED_WITHOUT_SOURCE =
+            new ConstructCorrectnessData(null, true);
+
+
+    // Private static fields
+
+    /**
+        The shared data with a completed checklist that was most recently
+        created. Since constructs are usually created one piece of source
+        code at a time this is almost always the data that is needed next.
+        It's replaced without synchronization since creating an extra
+        instance is harmless.
+    */
+    private static volatile ConstructCorrectnessData
+        _lastCompletedData = COMPLETED_WITHOUT_SOURCE;
+
+
     // Private fields
 
+    /**
+        Indicates whether this data is shared between constructs, in which
+        case it is never modified.
+    */
+    private final boolean _isShared;
+
     /** The construct's validity constraint checklist. */
     private ValidityConstraintChecklist _validityChecklist;
 
@@ -52,6 +88,7 @@ public class ConstructCorrectnessData
 
         _validityChecklist = checklist;
         _sourceCode = null;
+        _isShared = false;
     }
 
     /**
@@ -72,11 +109,121 @@ public class ConstructCorrectnessData
 
         _sourceCode = data.sourceCode();
         _validityChecklist = checklist;
+        _isShared = false;
+    }
+
+    /**
+        Constructs a ConstructCorrectnessData object with a completed
+        validity constraint checklist.
+
+        @param code the piece of source code that contains the constructs
+        that the data is for (which may be null)
+        @param isShared true iff the data is to be shared between constructs
+    */
+    private ConstructCorrectnessData(SourceCode code, boolean isShared)
+    {
+        // 'code' may be null
+
+        _validityChecklist = CompleteValidityConstraintChecklist.instance();
+        _sourceCode = code;
+        _isShared = isShared;
+    }
+
+
+    // Public static methods
+
+    /**
+        Returns correctness data for a construct with the specified validity
+        constraint checklist. The data will be shared with other constructs
+        iff the checklist is the CompleteValidityConstraintChecklist.
+
+        @param checklist the construct's validity constraint checklist
+        @return correctness data for the construct
+    */
+    public static ConstructCorrectnessData
+        create(ValidityConstraintChecklist checklist)
+    {
+        Assert.require(checklist != null);
+
+        ConstructCorrectnessData result;
+
+        if (isCompleted(checklist))
+        {
+            result = COMPLETED_WITHOUT_SOURCE;
+        }
+        else
+        {
+            result = new ConstructCorrectnessData(checklist);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Returns correctness data for a construct with the specified validity
+        constraint checklist whose other information is the same as that in
+        the specified data.
+
+        @param data the data from which to get all of the information
+        except the validity constraint checklist
+        @param checklist the construct's validity constraint checklist
+        @return correctness data for the construct
+        @see #ConstructCorrectnessData(ConstructCorrectnessData, ValidityConstraintChecklist)
+    */
+    public static ConstructCorrectnessData
+        create(ConstructCorrectnessData data,
+               ValidityConstraintChecklist checklist)
+    {
+        Assert.require(data != null);
+        Assert.require(checklist != null);
+
+        ConstructCorrectnessData result;
+
+        if (isCompleted(checklist))
+        {
+            result = completedData(data.sourceCode());
+        }
+        else
+        {
+            result = new ConstructCorrectnessData(data, checklist);
+        }
+
+        Assert.ensure(result != null);
+        return result;
     }
 
 
     // Public methods
 
+    /**
+        Returns correctness data that's the same as this data except that
+        its source code is the specified piece of source code. The result is
+        this data itself unless this data is shared.
+
+        @param code the piece of source code that contains our construct
+        @return the data to use in place of this data
+    */
+    public ConstructCorrectnessData withSourceCode(SourceCode code)
+    {
+        Assert.require(code != null);
+
+        ConstructCorrectnessData result = this;
+
+        if (_isShared)
+        {
+            result = completedData(code);
+        }
+        else
+        {
+            setSourceCode(code);
+        }
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.sourceCode() == code);
+        return result;
+    }
+
     /**
         Sets the piece of source code that contains our construct to the
         specified piece of source code.
@@ -86,10 +233,20 @@ public class ConstructCorrectnessData
     public void setSourceCode(SourceCode code)
     {
         Assert.require(code != null);
+        Assert.require(isShared() == false);
 
         _sourceCode = code;
     }
 
+    /**
+        @return true iff this data is shared between constructs, and so
+        cannot be modified
+    */
+    public boolean isShared()
+    {
+        return _isShared;
+    }
+
     /**
         @return the piece of source code that contains our construct
     */
@@ -106,4 +263,50 @@ public class ConstructCorrectnessData
         Assert.ensure(_validityChecklist != null);
         return _validityChecklist;
     }
+
+
+    // Private static methods
+
+    /**
+        @param checklist a validity constraint checklist
+        @return true iff 'checklist' is the completed checklist whose
+        correctness data can be shared
+    */
+    private static boolean isCompleted(ValidityConstraintChecklist checklist)
+    {
+        Assert.require(checklist != null);
+
+        return (checklist == CompleteValidityConstraintChecklist.instance());
+    }
+
+    /**
+        @param code the piece of source code that contains a construct
+        (which may be null)
+        @return shared correctness data with a completed checklist and
+        the specified source code
+    */
+    private static ConstructCorrectnessData completedData(SourceCode code)
+    {
+        // 'code' may be null
+
+        ConstructCorrectnessData result = _lastCompletedData;
+
+        if (result.sourceCode() != code)
+        {
+            if (code == null)
+            {
+                result = COMPLETED_WITHOUT_SOURCE;
+            }
+            else
+            {
+                result = new ConstructCorrectnessData(code, true);
+                _lastCompletedData = result;
+            }
+        }
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.isShared());
+        Assert.ensure(result.sourceCode() == code);
+        return result;
+    }
 }
@@ -217,6 +217,14 @@ public class DefaultDelegatingConstruct
         delegate().removeCorrectnessData();
     }
 
+    /**
+        @see Construct#trim
+    */
+    public void trim()
+    {
+        delegate().trim();
+    }
+
     /**
         @see Construct#validityChecklist
     */
@@ -25,7 +25,7 @@ import com.steelcandy.common.debug.Assert;
     @author James MacKay
 */
 public class IntArrayAttribute
-    extends Attribute
+    extends ObjectAttribute
 {
     // Constructors
 
@@ -70,7 +70,7 @@ public class IntArrayAttribute
 
     /**
         @return this attribute's value
-        @see Attribute#valueObject
+        @see ObjectAttribute#valueObject
     */
     public int[] value()
     {
@@ -84,7 +84,7 @@ public class IntArrayAttribute
         Sets this attribute's value to be the specified value.
 
         @param newValue this attribute's new value
-        @see Attribute#setValueObject
+        @see ObjectAttribute#setValueObject
     */
     public void setValue(int[] newValue)
     {
@@ -21,12 +21,28 @@ import com.steelcandy.common.debug.Assert;
 
 /**
     Represents a construct attribute whose value is of type int.
+    <p>
+    The value is stored as an int rather than being boxed in an object,
+    since constructs can have a great many such attributes.
+    <p>
+    Subclasses can store the value elsewhere by overriding value(),
+    setValue() and isSet(): compact construct classes use such subclasses
+    as views of the attributes that they store in their own fields.
 
     @author James MacKay
 */
 public class IntAttribute
     extends Attribute
 {
+    // Private fields
+
+    /** This attribute's value, if it's set. */
+    private int _value;
+
+    /** Indicates whether this attribute has been set. */
+    private boolean _isSet;
+
+
     // Constructors
 
     /**
@@ -36,7 +52,9 @@ public class IntAttribute
     {
         super();
 
-        Assert.ensure(isSet() == false);
+        // We check our field rather than calling isSet() since a subclass
+        // that stores its value elsewhere can already be set here.
+        Assert.ensure(_isSet == false);
     }
 
     /**
@@ -47,7 +65,8 @@ public class IntAttribute
     */
     public IntAttribute(int value)
     {
-        super(new Integer(value));
+        super();
+        setValue(value);
 
         Assert.ensure(isSet());
     }
@@ -61,7 +80,15 @@ public class IntAttribute
     protected IntAttribute(IntAttribute a)
     {
         // Assert.require(a != null);
-        super(a);
+        super();
+
+        // We use the methods of 'a' rather than its fields since it may
+        // be an instance of a subclass that stores its value elsewhere.
+        _isSet = a.isSet();
+        if (_isSet)
+        {
+            _value = a.value();
+        }
     }
 
 
@@ -69,26 +96,23 @@ public class IntAttribute
 
     /**
         @return this attribute's value
-        @see Attribute#valueObject
     */
     public int value()
     {
         Assert.require(isSet());
 
-        Integer result = (Integer) valueObject();
-
-        return result.intValue();
+        return _value;
     }
 
     /**
         Sets this attribute's value to be the specified value.
 
         @param newValue this attribute's new value
-        @see Attribute#setValueObject
     */
     public void setValue(int newValue)
     {
-        setValueObject(new Integer(newValue));
+        _value = newValue;
+        _isSet = true;
 
         Assert.ensure(isSet());
     }
@@ -101,4 +125,12 @@ public class IntAttribute
         // Assert.ensure(result != null);
         return new IntAttribute(this);
     }
+
+    /**
+        @see Attribute#isSet
+    */
+    public boolean isSet()
+    {
+        return _isSet;
+    }
 }
@@ -59,7 +59,7 @@ public abstract class MinimalAbstractConstruct
     {
         Assert.require(checklist != null);
 
-        _correctnessData = new ConstructCorrectnessData(checklist);
+        _correctnessData = ConstructCorrectnessData.create(checklist);
     }
 
     /**
@@ -75,7 +75,7 @@ public abstract class MinimalAbstractConstruct
         Assert.require(checklist != null);
 
         _correctnessData =
-            new ConstructCorrectnessData(c.correctnessData(), checklist);
+            ConstructCorrectnessData.create(c.correctnessData(), checklist);
     }
 
 
@@ -245,6 +245,18 @@ public abstract class MinimalAbstractConstruct
         _correctnessData = null;
     }
 
+    /**
+        Removes this construct's correctness data. Subclasses that have
+        subconstructs should override this method to also trim those
+        subconstructs.
+
+        @see Construct#trim
+    */
+    public void trim()
+    {
+        removeCorrectnessData();
+    }
+
     /**
         @see Construct#validityChecklist
     */
@@ -269,7 +281,7 @@ public abstract class MinimalAbstractConstruct
         Assert.require(code != null);
 
         handleMissingCorrectnessData();
-        _correctnessData.setSourceCode(code);
+        _correctnessData = _correctnessData.withSourceCode(code);
     }
 
     /**
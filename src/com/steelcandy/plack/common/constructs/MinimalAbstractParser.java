@@ -36,6 +36,7 @@ import com.steelcandy.plack.common.tokens.Tokenizer;
 import com.steelcandy.plack.common.tokens.TrackedTokenList;
 import com.steelcandy.plack.common.tokens.UnaryTokenPredicate;
 
+import com.steelcandy.common.DeferredMessage;
 import com.steelcandy.common.NoSuchItemException;
 import com.steelcandy.common.Resources;
 
@@ -594,8 +595,8 @@ public abstract class MinimalAbstractParser
         Assert.require(firstTok != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(SOURCE_CODE_AFTER_TOP_LEVEL_CONSTRUCT_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(SOURCE_CODE_AFTER_TOP_LEVEL_CONSTRUCT_MSG,
                        parseableConstructDescription());
         SourceLocation loc = firstTok.location();
 
@@ -670,8 +671,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(INVALID_TOP_LEVEL_CONSTRUCT_START_MSG, description);
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_TOP_LEVEL_CONSTRUCT_START_MSG, description);
 
         SourceLocation loc = tok.location();
 
@@ -709,8 +710,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(MISSING_CONSTRUCT_MSG, description);
+        DeferredMessage msg = _resources.
+            getDeferredMessage(MISSING_CONSTRUCT_MSG, description);
 
         SourceLocation loc = null;
         Token previousToken = line.lastAdvancedOver();
@@ -741,8 +742,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(MISSING_COMPOUND_SUBCONSTRUCT_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(MISSING_COMPOUND_SUBCONSTRUCT_MSG,
                        subconstructDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg,
                     data.previousLocation(), t, handler);
@@ -770,8 +771,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(INVALID_TOKEN_MSG, constructDescription,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_TOKEN_MSG, constructDescription,
                        invalidTokDesc);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -797,8 +798,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(SUBCONSTRUCTS_UNDER_SINGLE_LINE_CONSTRUCT_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(SUBCONSTRUCTS_UNDER_SINGLE_LINE_CONSTRUCT_MSG,
                        constructDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -826,8 +827,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(SUBCONSTRUCTS_INDENTED_TOO_FAR_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(SUBCONSTRUCTS_INDENTED_TOO_FAR_MSG,
                        String.valueOf(indentedLevels),
                        constructDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
@@ -874,8 +875,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(INVALID_START_TERMINAL_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_START_TERMINAL_MSG,
                        constructDescription, terminalDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -901,8 +902,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(INVALID_END_TERMINAL_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_END_TERMINAL_MSG,
                        constructDescription, terminalDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -928,8 +929,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(MISSING_END_TERMINAL_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(MISSING_END_TERMINAL_MSG,
                        constructDescription, terminalDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -956,8 +957,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(MISSING_FIRST_REPEATED_SUBCONSTRUCT_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(MISSING_FIRST_REPEATED_SUBCONSTRUCT_MSG,
                        constructDescription, subconstructDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -985,8 +986,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(MISSING_SUBSEQUENT_REPEATED_SUBCONSTRUCT_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(MISSING_SUBSEQUENT_REPEATED_SUBCONSTRUCT_MSG,
                        constructDescription, subconstructDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -1007,8 +1008,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(INVALID_TERMINAL_MSG, description);
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_TERMINAL_MSG, description);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
 
@@ -1031,8 +1032,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(MISSING_TERMINAL_MSG, description);
+        DeferredMessage msg = _resources.
+            getDeferredMessage(MISSING_TERMINAL_MSG, description);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
 
@@ -1053,8 +1054,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(INVALID_CONSTRUCT_FLAG_MSG, description);
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_CONSTRUCT_FLAG_MSG, description);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
 
@@ -1077,8 +1078,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(MISSING_CONSTRUCT_FLAG_MSG, description);
+        DeferredMessage msg = _resources.
+            getDeferredMessage(MISSING_CONSTRUCT_FLAG_MSG, description);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
 
@@ -1101,8 +1102,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(MISSING_SUBCONSTRUCT_MSG, description);
+        DeferredMessage msg = _resources.
+            getDeferredMessage(MISSING_SUBCONSTRUCT_MSG, description);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
 
@@ -1131,8 +1132,8 @@ public abstract class MinimalAbstractParser
 
         // Note: 'tok' represents the indentation at the start of the
         // subconstruct.
-        String msg = _resources.
-            getMessage(INVALID_FIRST_INDENTED_SUBCONSTRUCT_TOKEN_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_FIRST_INDENTED_SUBCONSTRUCT_TOKEN_MSG,
                        constructDescription);
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -1157,8 +1158,8 @@ public abstract class MinimalAbstractParser
         Assert.require(t != null);
         Assert.require(handler != null);
 
-        String msg = _resources.
-            getMessage(INVALID_FIRST_CHOICE_TOKEN_MSG,
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_FIRST_CHOICE_TOKEN_MSG,
                        constructDescription, tokenDescription(tok));
         handleError(NON_FATAL_ERROR_LEVEL, msg, loc, t, handler);
     }
@@ -1191,6 +1192,35 @@ public abstract class MinimalAbstractParser
         handler.handle(error, p);
     }
 
+    /**
+        Handles the parsing error described by the specified information
+        on behalf of the specified parser using the specified error handler,
+        where the error's description is a DeferredMessage.
+
+        @param level the error's severity level
+        @param description the error's description
+        @param loc the location in the source code where the error occurred,
+        if it's available
+        @param p the parser on whose behalf we are handling the error
+        @param t the tokenizer in whose tokens the error was found
+        @param handler the error handler to use to handle the parsing error
+        @see ParsingError#ParsingError(int, DeferredMessage, SourceCode, SourceLocation)
+    */
+    public static void handleError(int level, DeferredMessage description,
+                                   SourceLocation loc, Parser p,
+                                   Tokenizer t, ErrorHandler handler)
+    {
+        Assert.require(description != null);
+        // 'loc' can be null
+        Assert.require(p != null);
+        Assert.require(t != null);
+        Assert.require(handler != null);
+
+        ParsingError error = new ParsingError(level, description,
+                                              t.sourceCode(), loc);
+        handler.handle(error, p);
+    }
+
     /**
         Handles the parsing error described by the specified information
         using the specified error handler.
@@ -1213,6 +1243,29 @@ public abstract class MinimalAbstractParser
         handleError(level, description, loc, this, t, handler);
     }
 
+    /**
+        Handles the parsing error described by the specified information
+        using the specified error handler, where the error's description is
+        a DeferredMessage.
+
+        @param level the error's severity level
+        @param description the error's description
+        @param loc the location in the source code where the error occurred
+        @param t the tokenizer in whose tokens the error was found
+        @param handler the error handler to use to handle the parsing error
+    */
+    protected void handleError(int level, DeferredMessage description,
+                               SourceLocation loc, Tokenizer t,
+                               ErrorHandler handler)
+    {
+        Assert.require(description != null);
+        // 'loc' can be null
+        Assert.require(t != null);
+        Assert.require(handler != null);
+
+        handleError(level, description, loc, this, t, handler);
+    }
+
 
     // Other utility methods
 
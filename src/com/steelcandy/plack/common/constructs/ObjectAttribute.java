@@ -0,0 +1,120 @@
+/*
+ Copyright (C) 2004-2012 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.constructs;
+
+import com.steelcandy.common.debug.Assert;
+
+/**
+    An abstract base class for construct attributes whose values are
+    objects, which it stores.
+    <p>
+    Subclasses that represent an attribute with a value of type
+    <code>XXX</code> should implement <code>public XXX value()</code>
+    using the <code>valueObject()</code> method defined in this class,
+    and <code>public void setValue(XXX newValue)</code> using the
+    <code>setValueObject()</code> method defined in this class.
+
+    @author James MacKay
+*/
+public abstract class ObjectAttribute
+    extends Attribute
+{
+    // Private fields
+
+    /** The attribute's value. */
+    private Object _value;
+
+
+    // Constructors
+
+    /**
+        Constructs an ObjectAttribute that has not been set yet.
+    */
+    protected ObjectAttribute()
+    {
+        _value = null;
+
+        Assert.ensure(isSet() == false);
+    }
+
+    /**
+        Constructs an ObjectAttribute that has been set, and has the
+        specified value.
+
+        @param value the attribute's value
+    */
+    protected ObjectAttribute(Object value)
+    {
+        Assert.require(value != null);
+
+        _value = value;
+
+        Assert.ensure(isSet());
+    }
+
+    /**
+        Copy constructor.
+
+        @param a the attribute that the attribute being constructed is to be
+        a copy of
+    */
+    protected ObjectAttribute(ObjectAttribute a)
+    {
+        // Assert.require(a != null);
+        this(a.valueObject());
+    }
+
+
+    // Public methods
+
+    /**
+        @see Attribute#isSet
+    */
+    public boolean isSet()
+    {
+        return (_value != null);
+    }
+
+
+    // Protected methods
+
+    /**
+        @return this attribute's value
+    */
+    protected Object valueObject()
+    {
+        Assert.require(isSet());
+
+        Assert.ensure(_value != null);
+        return _value;
+    }
+
+    /**
+        Sets this attribute's value to be the specified value.
+
+        @param newValue this attribute's new value
+    */
+    protected void setValueObject(Object newValue)
+    {
+        Assert.require(newValue != null);
+
+        _value = newValue;
+
+        Assert.ensure(isSet());
+    }
+}
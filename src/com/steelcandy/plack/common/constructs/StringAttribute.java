@@ -25,7 +25,7 @@ import com.steelcandy.common.debug.Assert;
     @author James MacKay
 */
 public class StringAttribute
-    extends Attribute
+    extends ObjectAttribute
 {
     // Constructors
 
@@ -70,7 +70,7 @@ public class StringAttribute
 
     /**
         @return this attribute's value
-        @see Attribute#valueObject
+        @see ObjectAttribute#valueObject
     */
     public String value()
     {
@@ -84,7 +84,7 @@ public class StringAttribute
         Sets this attribute's value to be the specified value.
 
         @param newValue this attribute's new value
-        @see Attribute#setValueObject
+        @see ObjectAttribute#setValueObject
     */
     public void setValue(String newValue)
     {
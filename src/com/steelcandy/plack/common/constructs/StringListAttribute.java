@@ -27,7 +27,7 @@ import com.steelcandy.common.text.StringList;
     @author James MacKay
 */
 public class StringListAttribute
-    extends Attribute
+    extends ObjectAttribute
 {
     // Constructors
 
@@ -72,7 +72,7 @@ public class StringListAttribute
 
     /**
         @return this attribute's value
-        @see Attribute#valueObject
+        @see ObjectAttribute#valueObject
     */
     public StringList value()
     {
@@ -86,7 +86,7 @@ public class StringListAttribute
         Sets this attribute's value to be the specified value.
 
         @param newValue this attribute's new value
-        @see Attribute#setValueObject
+        @see ObjectAttribute#setValueObject
     */
     public void setValue(StringList newValue)
     {
@@ -28,7 +28,7 @@ import com.steelcandy.plack.common.semantic.SymbolTableEntry;
     @see SymbolTableEntry
 */
 public class SymbolTableEntryAttribute
-    extends Attribute
+    extends ObjectAttribute
 {
     // Constructors
 
@@ -73,7 +73,7 @@ public class SymbolTableEntryAttribute
 
     /**
         @return this attribute's value
-        @see Attribute#valueObject
+        @see ObjectAttribute#valueObject
     */
     public SymbolTableEntry value()
     {
@@ -87,7 +87,7 @@ public class SymbolTableEntryAttribute
         Sets this attribute's value to be the specified value.
 
         @param newValue this attribute's new value
-        @see Attribute#setValueObject
+        @see ObjectAttribute#setValueObject
     */
     public void setValue(SymbolTableEntry newValue)
     {
@@ -29,7 +29,7 @@ import com.steelcandy.plack.common.semantic.SymbolTableEntryList;
     @see SymbolTableEntryList
 */
 public class SymbolTableEntryListAttribute
-    extends Attribute
+    extends ObjectAttribute
 {
     // Constructors
 
@@ -74,7 +74,7 @@ public class SymbolTableEntryListAttribute
 
     /**
         @return this attribute's value
-        @see Attribute#valueObject
+        @see ObjectAttribute#valueObject
     */
     public SymbolTableEntryList value()
     {
@@ -88,7 +88,7 @@ public class SymbolTableEntryListAttribute
         Sets this attribute's value to be the specified value.
 
         @param newValue this attribute's new value
-        @see Attribute#setValueObject
+        @see ObjectAttribute#setValueObject
     */
     public void setValue(SymbolTableEntryList newValue)
     {
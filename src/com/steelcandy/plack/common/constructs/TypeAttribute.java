@@ -28,7 +28,7 @@ import com.steelcandy.plack.common.semantic.Type;
     @see Type
 */
 public class TypeAttribute
-    extends Attribute
+    extends ObjectAttribute
 {
     // Constructors
 
@@ -73,7 +73,7 @@ public class TypeAttribute
 
     /**
         @return this attribute's value
-        @see Attribute#valueObject
+        @see ObjectAttribute#valueObject
     */
     public Type value()
     {
@@ -87,7 +87,7 @@ public class TypeAttribute
         Sets this attribute's value to be the specified value.
 
         @param newValue this attribute's new value
-        @see Attribute#setValueObject
+        @see ObjectAttribute#setValueObject
     */
     public void setValue(Type newValue)
     {
@@ -22,10 +22,15 @@ import com.steelcandy.common.debug.Assert;
 import com.steelcandy.plack.common.tokens.Tokenizer;
 import com.steelcandy.plack.common.constructs.Parser;
 
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
 /**
     An abstract base class for error handlers that maintains counts of the
     number of errors of each severity level that have been handled by a
     subclass instance.
+    <p>
+    The counts are maintained atomically, so they're always up to date
+    even when errors are handled by several threads at once.
 
     @author James MacKay
     @see ErrorHandler#fatalErrorCount
@@ -38,7 +43,7 @@ public abstract class AbstractCountingErrorHandler
     // Private fields
 
     /** An array of error counts, indexed by error severity level. */
-    private int[] _counts;
+    private AtomicIntegerArray _counts;
 
 
     // Constructors
@@ -49,7 +54,7 @@ public abstract class AbstractCountingErrorHandler
     public AbstractCountingErrorHandler()
     {
         // All of _count's elements are initialized to zero.
-        _counts = new int[NUMBER_OF_ERROR_SEVERITY_LEVELS];
+        _counts = new AtomicIntegerArray(NUMBER_OF_ERROR_SEVERITY_LEVELS);
     }
 
 
@@ -61,7 +66,7 @@ public abstract class AbstractCountingErrorHandler
     public int fatalErrorCount()
     {
         // Assert.ensure(result >= 0);
-        return _counts[FATAL_ERROR_LEVEL];
+        return _counts.get(FATAL_ERROR_LEVEL);
     }
 
     /**
@@ -70,7 +75,7 @@ public abstract class AbstractCountingErrorHandler
     public int nonFatalErrorCount()
     {
         // Assert.ensure(result >= 0);
-        return _counts[NON_FATAL_ERROR_LEVEL];
+        return _counts.get(NON_FATAL_ERROR_LEVEL);
     }
 
     /**
@@ -79,7 +84,7 @@ public abstract class AbstractCountingErrorHandler
     public int warningErrorCount()
     {
         // Assert.ensure(result >= 0);
-        return _counts[WARNING_LEVEL];
+        return _counts.get(WARNING_LEVEL);
     }
 
     /**
@@ -88,7 +93,7 @@ public abstract class AbstractCountingErrorHandler
     public int informationErrorCount()
     {
         // Assert.ensure(result >= 0);
-        return _counts[INFO_LEVEL];
+        return _counts.get(INFO_LEVEL);
     }
 
     /**
@@ -97,7 +102,7 @@ public abstract class AbstractCountingErrorHandler
     public int debugErrorCount()
     {
         // Assert.ensure(result >= 0);
-        return _counts[DEBUG_LEVEL];
+        return _counts.get(DEBUG_LEVEL);
     }
 
 
@@ -121,6 +126,6 @@ public abstract class AbstractCountingErrorHandler
     */
     protected void incrementCount(PlackError error)
     {
-        _counts[error.level()] += 1;
+        _counts.incrementAndGet(error.level());
     }
 }
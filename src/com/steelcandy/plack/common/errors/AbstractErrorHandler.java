@@ -227,6 +227,16 @@ public abstract class AbstractErrorHandler
         recorder.transferErrorsTo(this);
     }
 
+    /**
+        This implementation always returns false.
+
+        @see ErrorHandler#isCancelled
+    */
+    public boolean isCancelled()
+    {
+        return false;
+    }
+
 
     /**
         @see ErrorHandler#errorCount
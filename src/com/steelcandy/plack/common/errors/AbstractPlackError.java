@@ -19,11 +19,16 @@ package com.steelcandy.plack.common.errors;
 
 import com.steelcandy.common.debug.Assert;
 
+import com.steelcandy.common.DeferredMessage;
+
 import com.steelcandy.plack.common.source.SourceCode;
 import com.steelcandy.plack.common.source.SourceLocation;
 
 /**
     An abstract base class for PlackErrors. By default they have no keys.
+    <p>
+    An error's description can be a DeferredMessage, in which case the
+    description's text is only constructed if and when it's needed.
 
     @author James MacKay
     @see AbstractKeyedPlackError
@@ -39,9 +44,18 @@ public abstract class AbstractPlackError
     */
     private int _level;
 
-    /** A description of this error. */
+    /**
+        A description of this error, or null if its description is a
+        DeferredMessage whose text hasn't been needed yet.
+    */
     private String _description;
 
+    /**
+        The deferred description of this error, or null if its description
+        isn't (or is no longer) deferred.
+    */
+    private DeferredMessage _deferredDescription;
+
     /**
         The piece of source code containing the error, or null if the piece
         of source code containing the error is not known.
@@ -77,6 +91,27 @@ public abstract class AbstractPlackError
         setLocation(loc);
     }
 
+    /**
+        Constructs an AbstractPlackError whose description is a
+        DeferredMessage.
+
+        @param level the error's severity level
+        @param description a description of the error
+        @param code the piece of source code containing the error
+        @param loc the location in the source code where the error occurred
+    */
+    public AbstractPlackError(int level, DeferredMessage description,
+                              SourceCode code, SourceLocation loc)
+    {
+        Assert.require(description != null);
+        // 'code' and/or 'loc' can be null
+
+        setLevel(level);
+        setDescription(description);
+        setSourceCode(code);
+        setLocation(loc);
+    }
+
 
     // Public methods
 
@@ -93,8 +128,15 @@ public abstract class AbstractPlackError
     */
     public String description()
     {
-        Assert.ensure(_description != null);
-        return _description;
+        String result = _description;
+        if (result == null)
+        {
+            result = _deferredDescription.text();
+            _description = result;
+        }
+
+        Assert.ensure(result != null);
+        return result;
     }
 
     /**
@@ -139,6 +181,21 @@ public abstract class AbstractPlackError
         Assert.require(newDescription != null);
 
         _description = newDescription;
+        _deferredDescription = null;
+    }
+
+    /**
+        Sets this error's description to the specified DeferredMessage. Its
+        text won't be constructed until it's needed.
+
+        @param newDescription this error's new description
+    */
+    public void setDescription(DeferredMessage newDescription)
+    {
+        Assert.require(newDescription != null);
+
+        _deferredDescription = newDescription;
+        _description = null;
     }
 
     /**
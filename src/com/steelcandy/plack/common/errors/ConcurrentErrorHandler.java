@@ -0,0 +1,379 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.errors;
+
+import com.steelcandy.common.compare.AbstractComparator;
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.source.DefaultSourceLocationComparator;
+import com.steelcandy.plack.common.source.SourceCode;
+
+import com.steelcandy.plack.common.tokens.Tokenizer;
+import com.steelcandy.plack.common.constructs.Parser;
+
+import java.util.*;
+
+/**
+    An ErrorHandler that can be used to handle errors from many threads at
+    once, and that later flushes all of the errors it has handled to
+    another error handler in a deterministic order.
+    <p>
+    Each thread's errors are recorded in a separate buffer that belongs to
+    that thread, so threads never contend with each other in handling
+    errors. The error counts are maintained atomically (by our superclass)
+    as the errors are handled, so they're always up to date and are cheap
+    to obtain.
+    <p>
+    When the errors are flushed to another handler they're sorted by the
+    full names of their source code, then by their locations (as ordered by
+    a DefaultSourceLocationComparator), then by their severity levels and
+    finally by their descriptions. So the order in which they're flushed
+    doesn't depend on how the threads that handled them were scheduled.
+    An error is not flushed if it has the same key as an error that has
+    already been flushed, in the same way that a WriterErrorHandler doesn't
+    report such an error. (Note that the error counts include such
+    duplicate errors, though.)
+    <p>
+    Like a RecordingErrorHandler, this handler doesn't throw a
+    FatalErrorException when it handles a fatal error: that will happen
+    (if it does) when the error is flushed to another handler.
+
+    @author James MacKay
+    @see #flushTo(ErrorHandler)
+*/
+public class ConcurrentErrorHandler
+    extends AbstractCountingErrorHandler
+{
+    // Constants
+
+    /** The comparator used to sort error records before flushing them. */
+    private static final Comparator
+        RECORD_COMPARATOR = new ErrorRecordComparator();
+
+
+    // Private fields
+
+    /**
+        The buffer that belongs to the current thread: each value is a
+        RecordingErrorHandler.
+    */
+    private ThreadLocal _buffer;
+
+    /**
+        A list of the buffers that belong to all of the threads that have
+        handled errors using this handler. Each item is a
+        RecordingErrorHandler.
+    */
+    private List _allBuffers;
+
+    /**
+        All of the distinct keys from all of the errors that this handler
+        has flushed so far: each item is an ErrorKey.
+    */
+    private Set _flushedErrorKeys;
+
+
+    // Constructors
+
+    /**
+        Constructs a ConcurrentErrorHandler that hasn't handled any errors
+        yet.
+    */
+    public ConcurrentErrorHandler()
+    {
+        _allBuffers = new ArrayList();
+        _buffer = new ThreadLocal()
+        {
+            protected Object initialValue()
+            {
+                return createBuffer();
+            }
+        };
+        _flushedErrorKeys = new HashSet();
+    }
+
+
+    // Public methods
+
+    /**
+        Flushes all of the errors handled by this handler since they were
+        last flushed (or cleared) to the specified handler, sorted in the
+        order described in this class' comment. An error is removed from
+        this handler as it's flushed, and errors with the same keys as
+        errors that have already been flushed are discarded.
+        <p>
+        Note: only errors that have been handled before this method is
+        called are guaranteed to be flushed. Errors that are handled by
+        other threads while this method is running will be flushed either
+        now or by the next call to this method.
+
+        @param handler the error handler to flush this handler's errors to
+    */
+    public synchronized void flushTo(ErrorHandler handler)
+    {
+        Assert.require(handler != null);
+
+        List records = removeAllRecords();
+        Collections.sort(records, RECORD_COMPARATOR);
+
+        Iterator iter = records.iterator();
+        while (iter.hasNext())
+        {
+            RecordingErrorHandler.ErrorRecord r =
+                (RecordingErrorHandler.ErrorRecord) iter.next();
+            ErrorKey key = r.error().key();
+            if (key == null || _flushedErrorKeys.add(key))
+            {
+                r.addErrorTo(handler);
+            }
+        }
+    }
+
+    /**
+        Discards all of the errors handled by this handler since they were
+        last flushed (or cleared).
+        <p>
+        Note: the error counts are not affected.
+    */
+    public synchronized void clear()
+    {
+        removeAllRecords();
+    }
+
+
+    // Error handling methods
+
+    /**
+        @see ErrorHandler#handle(PlackInternalError)
+    */
+    protected void handleError(PlackInternalError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(ReadError)
+    */
+    protected void handleError(ReadError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(ExternalDataError)
+    */
+    protected void handleError(ExternalDataError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(TokenizingError, Tokenizer)
+    */
+    protected void handleError(TokenizingError error, Tokenizer source)
+    {
+        Assert.require(error != null);
+        Assert.require(source != null);
+
+        buffer().handle(error, source);
+    }
+
+    /**
+        @see ErrorHandler#handle(ParsingError, Parser)
+    */
+    protected void handleError(ParsingError error, Parser parser)
+    {
+        Assert.require(error != null);
+        Assert.require(parser != null);
+
+        buffer().handle(error, parser);
+    }
+
+    /**
+        @see ErrorHandler#handle(DocumentationError)
+    */
+    protected void handleError(DocumentationError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(ValidationError)
+    */
+    protected void handleError(ValidationError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(SemanticError)
+    */
+    protected void handleError(SemanticError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(CodeGenerationError)
+    */
+    protected void handleError(CodeGenerationError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(CompilerError)
+    */
+    protected void handleError(CompilerError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(RuntimeError)
+    */
+    protected void handleError(RuntimeError error)
+    {
+        Assert.require(error != null);
+
+        buffer().handle(error);
+    }
+
+
+    // Private methods
+
+    /**
+        @return the buffer that belongs to the current thread
+    */
+    private RecordingErrorHandler buffer()
+    {
+        RecordingErrorHandler result = (RecordingErrorHandler) _buffer.get();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Creates a new, empty buffer for the current thread and registers it
+        so that its errors will be flushed.
+
+        @return the new buffer
+    */
+    private RecordingErrorHandler createBuffer()
+    {
+        RecordingErrorHandler result = new RecordingErrorHandler();
+
+        synchronized (_allBuffers)
+        {
+            _allBuffers.add(result);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Removes all of the records of errors from all of our buffers.
+
+        @return a list of all of the ErrorRecords that were removed
+    */
+    private List removeAllRecords()
+    {
+        List result = new ArrayList();
+
+        synchronized (_allBuffers)
+        {
+            Iterator iter = _allBuffers.iterator();
+            while (iter.hasNext())
+            {
+                RecordingErrorHandler b = (RecordingErrorHandler) iter.next();
+                b.removeRecordsTo(result);
+            }
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        The class of comparator that orders RecordingErrorHandler
+        ErrorRecords in the order in which a ConcurrentErrorHandler flushes
+        them.
+    */
+    private static class ErrorRecordComparator
+        extends AbstractComparator
+    {
+        // Private fields
+
+        /** The comparator that we use to compare errors' locations. */
+        private Comparator _locationComparator =
+            DefaultSourceLocationComparator.create();
+
+
+        // Protected methods
+
+        /**
+            @see AbstractComparator#compareNonNull(Object, Object)
+        */
+        protected int compareNonNull(Object obj1, Object obj2)
+        {
+            Assert.require(obj1 != null);
+            Assert.require(obj2 != null);
+
+            PlackError e1 = ((RecordingErrorHandler.ErrorRecord) obj1).error();
+            PlackError e2 = ((RecordingErrorHandler.ErrorRecord) obj2).error();
+
+            int result = compareStrings(SourceCode.fullName(e1.sourceCode()),
+                                        SourceCode.fullName(e2.sourceCode()));
+            if (result == 0)
+            {
+                result = _locationComparator.compare(e1.location(),
+                                                     e2.location());
+            }
+            if (result == 0)
+            {
+                result = compareInts(e1.level(), e2.level());
+            }
+            if (result == 0)
+            {
+                result = compareStrings(e1.description(), e2.description());
+            }
+
+            return result;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ Copyright (C) 2002-2008 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.errors;
+
+import com.steelcandy.common.debug.Assert;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+    Represents a limit on the number of errors and fatal errors that can
+    occur in processing something - such as a document, or a batch of
+    documents - before the processing should be stopped.
+    <p>
+    Only non-fatal and fatal errors are counted against a budget: warnings
+    and lesser 'errors' aren't. A budget can have a parent budget - for
+    example, a document's budget can have the budget for the batch of
+    documents that it's part of as its parent - in which case every error
+    spent from the budget is also spent from its parent, and the budget is
+    exhausted whenever its parent is.
+    <p>
+    Instances of this class are thread-safe.
+
+    @author James MacKay
+    @see ErrorBudgetErrorHandler
+*/
+public class ErrorBudget
+    implements ErrorSeverityLevels
+{
+    // Constants
+
+    /** The maximum number of errors that indicates there's no limit. */
+    public static final int UNLIMITED = -1;
+
+
+    // Private fields
+
+    /**
+        The maximum number of (non-fatal and fatal) errors that can be
+        spent from this budget before it's exhausted, or UNLIMITED.
+    */
+    private int _maxErrors;
+
+    /**
+        The maximum number of fatal errors that can be spent from this
+        budget before it's exhausted, or UNLIMITED.
+    */
+    private int _maxFatalErrors;
+
+    /** This budget's parent budget, or null if it doesn't have one. */
+    private ErrorBudget _parent;
+
+    /** The number of errors spent from this budget so far. */
+    private AtomicInteger _errorCount;
+
+    /** The number of fatal errors spent from this budget so far. */
+    private AtomicInteger _fatalErrorCount;
+
+    /** Indicates whether this budget itself has been exhausted. */
+    private volatile boolean _isExhausted;
+
+
+    // Constructors
+
+    /**
+        Constructs an ErrorBudget that doesn't have a parent budget.
+
+        @param maxErrors the maximum number of non-fatal and fatal errors
+        that can be spent from the budget before it's exhausted, or
+        UNLIMITED
+        @param maxFatalErrors the maximum number of fatal errors that can be
+        spent from the budget before it's exhausted, or UNLIMITED
+    */
+    public ErrorBudget(int maxErrors, int maxFatalErrors)
+    {
+        this(maxErrors, maxFatalErrors, null);
+    }
+
+    /**
+        Constructs an ErrorBudget.
+
+        @param maxErrors the maximum number of non-fatal and fatal errors
+        that can be spent from the budget before it's exhausted, or
+        UNLIMITED
+        @param maxFatalErrors the maximum number of fatal errors that can be
+        spent from the budget before it's exhausted, or UNLIMITED
+        @param parent the budget's parent budget, or null if it isn't to
+        have one
+    */
+    public ErrorBudget(int maxErrors, int maxFatalErrors, ErrorBudget parent)
+    {
+        Assert.require(maxErrors > 0 || maxErrors == UNLIMITED);
+        Assert.require(maxFatalErrors > 0 || maxFatalErrors == UNLIMITED);
+        // 'parent' may be null
+
+        _maxErrors = maxErrors;
+        _maxFatalErrors = maxFatalErrors;
+        _parent = parent;
+        _errorCount = new AtomicInteger();
+        _fatalErrorCount = new AtomicInteger();
+        _isExhausted = false;
+    }
+
+
+    // Public methods
+
+    /**
+        Spends the specified error from this budget (and from its parent,
+        if it has one) if it's a non-fatal or fatal error.
+
+        @param error the error to spend from this budget
+        @return true iff this budget is exhausted after spending 'error'
+    */
+    public boolean spend(PlackError error)
+    {
+        Assert.require(error != null);
+
+        int level = error.level();
+        if (level >= NON_FATAL_ERROR_LEVEL)
+        {
+            if (_parent != null)
+            {
+                _parent.spend(error);
+            }
+
+            int count = _errorCount.incrementAndGet();
+            if (isLimitReached(count, _maxErrors))
+            {
+                _isExhausted = true;
+            }
+            if (level >= FATAL_ERROR_LEVEL)
+            {
+                count = _fatalErrorCount.incrementAndGet();
+                if (isLimitReached(count, _maxFatalErrors))
+                {
+                    _isExhausted = true;
+                }
+            }
+        }
+
+        return isExhausted();
+    }
+
+    /**
+        @return true iff this budget or one of its ancestors has been
+        exhausted
+    */
+    public boolean isExhausted()
+    {
+        return (_isExhausted ||
+                (_parent != null && _parent.isExhausted()));
+    }
+
+    /**
+        @return the budget that was exhausted in order for this one to be
+        exhausted: this budget if it was exhausted itself, and otherwise
+        the nearest of its ancestors that was exhausted
+    */
+    public ErrorBudget exhaustedBudget()
+    {
+        Assert.require(isExhausted());
+
+        ErrorBudget result = this;
+
+        while (result._isExhausted == false)
+        {
+            result = result._parent;
+            Assert.check(result != null);
+        }
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.isExhausted());
+        return result;
+    }
+
+    /**
+        @return true iff this budget has been exhausted because too many
+        fatal errors were spent from it (rather than too many errors in
+        general)
+    */
+    public boolean isFatalErrorLimitReached()
+    {
+        return isLimitReached(fatalErrorCount(), _maxFatalErrors);
+    }
+
+    /**
+        @return the number of non-fatal and fatal errors that have been
+        spent from this budget so far
+    */
+    public int errorCount()
+    {
+        int result = _errorCount.get();
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        @return the number of fatal errors that have been spent from this
+        budget so far
+    */
+    public int fatalErrorCount()
+    {
+        int result = _fatalErrorCount.get();
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        @return the maximum number of non-fatal and fatal errors that can
+        be spent from this budget before it's exhausted, or UNLIMITED
+    */
+    public int maximumErrorCount()
+    {
+        return _maxErrors;
+    }
+
+    /**
+        @return the maximum number of fatal errors that can be spent from
+        this budget before it's exhausted, or UNLIMITED
+    */
+    public int maximumFatalErrorCount()
+    {
+        return _maxFatalErrors;
+    }
+
+
+    // Private methods
+
+    /**
+        @param count a number of errors
+        @param max the maximum number of errors, or UNLIMITED
+        @return true iff 'count' has reached the limit 'max'
+    */
+    private boolean isLimitReached(int count, int max)
+    {
+        return (max != UNLIMITED && count >= max);
+    }
+}
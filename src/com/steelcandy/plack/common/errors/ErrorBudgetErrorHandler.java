@@ -0,0 +1,385 @@
+/*
+ Copyright (C) 2002-2008 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.errors;
+
+import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.Resources;
+
+import com.steelcandy.plack.common.tokens.Tokenizer;
+import com.steelcandy.plack.common.constructs.Parser;
+
+/**
+    An error handler that passes all of the errors it handles on to
+    another error handler, and that spends them from an ErrorBudget.
+    <p>
+    Once the budget is exhausted this handler passes a TooManyErrorsError
+    on to the other handler (once), and then throws a FatalErrorException
+    to stop the processing that reported the error. Any errors that are
+    reported to this handler after that are discarded and result in a
+    FatalErrorException being thrown again, and this handler is
+    cancelled, so that processing that rarely reports errors will also be
+    stopped at its next construct boundary.
+    <p>
+    Since an ErrorBudget can be shared, so can the limits it enforces: for
+    example, if each document in a batch is processed using a different
+    ErrorBudgetErrorHandler whose budget's parent is the budget for the
+    whole batch, then processing will stop once either too many errors
+    have occurred in a document or too many have occurred in the batch.
+    <p>
+    This handler's error counts are those of the handler that it passes
+    errors on to.
+
+    @author James MacKay
+    @see ErrorHandler#isCancelled
+*/
+public class ErrorBudgetErrorHandler
+    extends AbstractErrorHandler
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        CommonErrorResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        TOO_MANY_ERRORS_MSG =
+            "TOO_MANY_ERRORS_MSG";
+    private static final String
+        TOO_MANY_FATAL_ERRORS_MSG =
+            "TOO_MANY_FATAL_ERRORS_MSG";
+
+
+    // Private fields
+
+    /** The error handler that we pass errors on to. */
+    private ErrorHandler _handler;
+
+    /** The budget that we spend errors from. */
+    private ErrorBudget _budget;
+
+    /**
+        Indicates whether we've passed a TooManyErrorsError on to
+        '_handler' yet.
+    */
+    private boolean _haveReportedExhaustion;
+
+
+    // Constructors
+
+    /**
+        Constructs an ErrorBudgetErrorHandler.
+
+        @param handler the error handler that the ErrorBudgetErrorHandler
+        is to pass all errors on to
+        @param budget the budget that the ErrorBudgetErrorHandler is to
+        spend all errors from
+    */
+    public ErrorBudgetErrorHandler(ErrorHandler handler, ErrorBudget budget)
+    {
+        Assert.require(handler != null);
+        Assert.require(budget != null);
+
+        _handler = handler;
+        _budget = budget;
+        _haveReportedExhaustion = false;
+    }
+
+
+    // Public methods
+
+    /**
+        @return the budget that this handler spends errors from
+    */
+    public ErrorBudget budget()
+    {
+        Assert.ensure(_budget != null);
+        return _budget;
+    }
+
+    /**
+        Note: this implementation returns true iff our budget has been
+        exhausted or the handler we pass errors on to has been cancelled.
+
+        @see ErrorHandler#isCancelled
+    */
+    public boolean isCancelled()
+    {
+        return (_budget.isExhausted() || _handler.isCancelled());
+    }
+
+
+    // Error count methods
+
+    /**
+        @see ErrorHandler#fatalErrorCount
+    */
+    public int fatalErrorCount()
+    {
+        // Assert.ensure(result >= 0);
+        return _handler.fatalErrorCount();
+    }
+
+    /**
+        @see ErrorHandler#nonFatalErrorCount
+    */
+    public int nonFatalErrorCount()
+    {
+        // Assert.ensure(result >= 0);
+        return _handler.nonFatalErrorCount();
+    }
+
+    /**
+        @see ErrorHandler#warningErrorCount
+    */
+    public int warningErrorCount()
+    {
+        // Assert.ensure(result >= 0);
+        return _handler.warningErrorCount();
+    }
+
+    /**
+        @see ErrorHandler#informationErrorCount
+    */
+    public int informationErrorCount()
+    {
+        // Assert.ensure(result >= 0);
+        return _handler.informationErrorCount();
+    }
+
+    /**
+        @see ErrorHandler#debugErrorCount
+    */
+    public int debugErrorCount()
+    {
+        // Assert.ensure(result >= 0);
+        return _handler.debugErrorCount();
+    }
+
+
+    // Error handling methods
+
+    /**
+        @see ErrorHandler#handle(PlackInternalError)
+    */
+    protected void handleError(PlackInternalError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(ReadError)
+    */
+    protected void handleError(ReadError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(ExternalDataError)
+    */
+    protected void handleError(ExternalDataError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(TokenizingError, Tokenizer)
+    */
+    protected void handleError(TokenizingError error, Tokenizer source)
+    {
+        Assert.require(error != null);
+        Assert.require(source != null);
+
+        _handler.handle(error, source);
+    }
+
+    /**
+        @see ErrorHandler#handle(ParsingError, Parser)
+    */
+    protected void handleError(ParsingError error, Parser parser)
+    {
+        Assert.require(error != null);
+        Assert.require(parser != null);
+
+        _handler.handle(error, parser);
+    }
+
+    /**
+        @see ErrorHandler#handle(DocumentationError)
+    */
+    protected void handleError(DocumentationError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(ValidationError)
+    */
+    protected void handleError(ValidationError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(SemanticError)
+    */
+    protected void handleError(SemanticError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(CodeGenerationError)
+    */
+    protected void handleError(CodeGenerationError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(CompilerError)
+    */
+    protected void handleError(CompilerError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+    /**
+        @see ErrorHandler#handle(RuntimeError)
+    */
+    protected void handleError(RuntimeError error)
+    {
+        Assert.require(error != null);
+
+        _handler.handle(error);
+    }
+
+
+    // Protected methods
+
+    /**
+        Note: this implementation stops the processing (by throwing a
+        FatalErrorException) if our budget has already been exhausted,
+        and otherwise spends 'error' from our budget before it's passed on.
+        (So fatal errors, whose handling usually throws a
+        FatalErrorException, are always spent.)
+
+        @see AbstractErrorHandler#beforeHandlingError(PlackError)
+    */
+    protected void beforeHandlingError(PlackError error)
+    {
+        Assert.require(error != null);
+
+        if (_budget.isExhausted())
+        {
+            stop(error);
+        }
+        super.beforeHandlingError(error);
+        _budget.spend(error);
+    }
+
+    /**
+        Note: this implementation stops the processing (by throwing a
+        FatalErrorException) if 'error' exhausted our budget.
+
+        @see AbstractErrorHandler#afterHandlingError(PlackError)
+    */
+    protected void afterHandlingError(PlackError error)
+    {
+        Assert.require(error != null);
+
+        super.afterHandlingError(error);
+        if (_budget.isExhausted())
+        {
+            stop(error);
+        }
+    }
+
+    /**
+        Stops the processing that reported the specified error because our
+        budget has been exhausted, passing a TooManyErrorsError on to the
+        handler we pass errors on to first if we haven't already done so.
+
+        @param error the error that was being handled when our budget was
+        found to be exhausted
+        @exception FatalErrorException always thrown
+    */
+    protected void stop(PlackError error)
+        throws FatalErrorException
+    {
+        Assert.require(error != null);
+        Assert.require(_budget.isExhausted());
+
+        boolean doReport;
+        synchronized (this)
+        {
+            doReport = (_haveReportedExhaustion == false);
+            _haveReportedExhaustion = true;
+        }
+        if (doReport)
+        {
+            _handler.handle(new TooManyErrorsError(exhaustionDescription(),
+                                                   error.sourceCode()));
+        }
+
+        throw FatalErrorException.instance();
+    }
+
+    /**
+        @return the description of the TooManyErrorsError that we pass on
+        once our budget is exhausted
+    */
+    protected String exhaustionDescription()
+    {
+        Assert.require(_budget.isExhausted());
+
+        String result;
+
+        ErrorBudget b = _budget.exhaustedBudget();
+        if (b.isFatalErrorLimitReached())
+        {
+            result = _resources.getMessage(TOO_MANY_FATAL_ERRORS_MSG,
+                        String.valueOf(b.maximumFatalErrorCount()));
+        }
+        else
+        {
+            result = _resources.getMessage(TOO_MANY_ERRORS_MSG,
+                        String.valueOf(b.maximumErrorCount()));
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+}
@@ -158,6 +158,22 @@ public interface ErrorHandler
     public void transferErrorsAtomically(RecordingErrorHandler recorder);
         // Assert.require(recorder != null);
 
+    /**
+        Indicates whether the processing that this error handler is
+        handling the errors from should stop as soon as possible: for
+        example, because too many errors have occurred.
+        <p>
+        Processing that can be long-running and that doesn't report errors
+        often (or at all) - such as processing constructs concurrently -
+        should check this at construct boundaries and stop if it returns
+        true.
+
+        @return true iff the processing that uses this error handler has
+        been cancelled
+        @see ErrorBudgetErrorHandler
+    */
+    public boolean isCancelled();
+
 
     // Error count methods
 
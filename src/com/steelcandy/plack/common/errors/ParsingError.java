@@ -19,6 +19,8 @@ package com.steelcandy.plack.common.errors;
 
 import com.steelcandy.common.debug.Assert;
 
+import com.steelcandy.common.DeferredMessage;
+
 import com.steelcandy.plack.common.source.SourceCode;
 import com.steelcandy.plack.common.source.SourceLocation;
 
@@ -52,4 +54,21 @@ public class ParsingError
         // 'code' and/or 'loc' can be null
         super(level, description, code, loc);
     }
+
+    /**
+        Constructs a ParsingError whose description is a
+        DeferredMessage.
+
+        @param level the error's severity level
+        @param description the error's description
+        @param code the piece of source code that the error occurred in
+        @param loc the location in the source code where the error occurred
+    */
+    public ParsingError(int level, DeferredMessage description,
+                        SourceCode code, SourceLocation loc)
+    {
+        // Assert.require(description != null);
+        // 'code' and/or 'loc' can be null
+        super(level, description, code, loc);
+    }
 }
@@ -29,6 +29,10 @@ import java.util.List;
 /**
     An ErrorHandler that handles errors by recording them, usually so that
     they can be transferred to another error handler later.
+    <p>
+    Errors can be handled by (and transferred from) several threads at
+    once: all access to the recorded errors is synchronized on the
+    handler.
 
     @author James MacKay
 */
@@ -44,6 +48,13 @@ public class RecordingErrorHandler
     */
     private List _errorRecords;
 
+    /**
+        The error handler that our errors are to be transferred to, and
+        that we're cancelled whenever it is, or null if there's no such
+        handler.
+    */
+    private ErrorHandler _target;
+
 
     // Constructors
 
@@ -53,6 +64,25 @@ public class RecordingErrorHandler
     public RecordingErrorHandler()
     {
         _errorRecords = new ArrayList();
+        _target = null;
+    }
+
+    /**
+        Constructs a RecordingErrorHandler that has no errors recorded yet
+        and whose errors are to be transferred to the specified handler
+        later. The RecordingErrorHandler will be cancelled whenever
+        'target' is.
+
+        @param target the error handler that the errors recorded by the
+        RecordingErrorHandler will be transferred to
+        @see ErrorHandler#isCancelled
+    */
+    public RecordingErrorHandler(ErrorHandler target)
+    {
+        Assert.require(target != null);
+
+        _errorRecords = new ArrayList();
+        _target = target;
     }
 
 
@@ -61,7 +91,7 @@ public class RecordingErrorHandler
     /**
         Clears all of the errors from this handler's record of errors.
     */
-    public void clear()
+    public synchronized void clear()
     {
         _errorRecords.clear();
     }
@@ -74,7 +104,7 @@ public class RecordingErrorHandler
         @param handler the error handler to which to transfer all of this
         handler's recorded errors
     */
-    public void transferErrorsTo(ErrorHandler handler)
+    public synchronized void transferErrorsTo(ErrorHandler handler)
     {
         Assert.require(handler != null);
 
@@ -88,6 +118,77 @@ public class RecordingErrorHandler
         Assert.check(_errorRecords.isEmpty());
     }
 
+    /**
+        Adds all of the errors recorded by this handler to the specified
+        handler without removing them from this handler's record, so that
+        they can be added to other handlers later.
+
+        @param handler the error handler to which to add all of this
+        handler's recorded errors
+    */
+    public synchronized void copyErrorsTo(ErrorHandler handler)
+    {
+        Assert.require(handler != null);
+
+        Iterator iter = _errorRecords.iterator();
+        while (iter.hasNext())
+        {
+            ErrorRecord r = (ErrorRecord) iter.next();
+            r.addErrorTo(handler);
+        }
+    }
+
+    /**
+        @return a list of all of the errors recorded by this handler, in
+        the order that they were received: each item in the list is a
+        PlackError
+    */
+    public synchronized List errors()
+    {
+        List result = new ArrayList(_errorRecords.size());
+
+        Iterator iter = _errorRecords.iterator();
+        while (iter.hasNext())
+        {
+            ErrorRecord r = (ErrorRecord) iter.next();
+            result.add(r.error());
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        Note: this implementation returns true iff this handler was
+        constructed with a target handler that has been cancelled.
+
+        @see ErrorHandler#isCancelled
+    */
+    public boolean isCancelled()
+    {
+        return (_target != null && _target.isCancelled());
+    }
+
+
+    // Package-private methods
+
+    /**
+        Removes all of the records of the errors recorded by this handler
+        and adds them, in the order in which they were recorded, to the end
+        of the specified list. Each item added to the list is an
+        ErrorRecord.
+
+        @param records the list to add the removed error records to
+        @see RecordingErrorHandler.ErrorRecord
+    */
+    synchronized void removeRecordsTo(List records)
+    {
+        Assert.require(records != null);
+
+        records.addAll(_errorRecords);
+        _errorRecords.clear();
+    }
+
 
     // Error handling methods
 
@@ -210,7 +311,7 @@ public class RecordingErrorHandler
         Adds the specified error record to the end of this error handler's
         list of error records.
     */
-    protected void addRecord(ErrorRecord record)
+    protected synchronized void addRecord(ErrorRecord record)
     {
         Assert.require(record != null);
 
@@ -224,7 +325,7 @@ public class RecordingErrorHandler
         The interface implemented by all classes that are a record of an
         error received by a RecordingErrorHandler.
     */
-    private static interface ErrorRecord
+    static interface ErrorRecord
     {
         /**
             Adds the error that this is a record of to the specified error
@@ -234,6 +335,12 @@ public class RecordingErrorHandler
         */
         public void addErrorTo(ErrorHandler handler);
             // Assert.require(handler != null);
+
+        /**
+            @return the error that this is a record of
+        */
+        public PlackError error();
+            // Assert.ensure(result != null);
     }
 
     /**
@@ -273,6 +380,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -311,6 +426,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -350,6 +473,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -396,6 +527,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error, _tokenizer);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -441,6 +580,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error, _parser);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -480,6 +627,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -519,6 +674,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -558,6 +721,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -597,6 +768,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -636,6 +815,14 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 
     /**
@@ -675,5 +862,13 @@ public class RecordingErrorHandler
         {
             handler.handle(_error);
         }
+
+        /**
+            @see RecordingErrorHandler.ErrorRecord#error
+        */
+        public PlackError error()
+        {
+            return _error;
+        }
     }
 }
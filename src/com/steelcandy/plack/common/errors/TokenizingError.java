@@ -19,6 +19,8 @@ package com.steelcandy.plack.common.errors;
 
 import com.steelcandy.common.debug.Assert;
 
+import com.steelcandy.common.DeferredMessage;
+
 import com.steelcandy.plack.common.source.SourceCode;
 import com.steelcandy.plack.common.source.SourceLocation;
 
@@ -47,4 +49,21 @@ public class TokenizingError
         // 'code' and/or 'loc' can be null
         super(level, description, code, loc);
     }
+
+    /**
+        Constructs a TokenizingError whose description is a
+        DeferredMessage.
+
+        @param level the error's severity level
+        @param description the error's description
+        @param code the piece of source code containing the error
+        @param loc the location in the source code where the error occurred
+    */
+    public TokenizingError(int level, DeferredMessage description,
+                           SourceCode code, SourceLocation loc)
+    {
+        // Assert.require(description != null);
+        // 'code' and/or 'loc' can be null
+        super(level, description, code, loc);
+    }
 }
@@ -0,0 +1,53 @@
+/*
+ Copyright (C) 2002-2008 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.errors;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.source.SourceCode;
+
+/**
+    Represents the fatal error that stops the processing of a piece of
+    source code once the budget for the number of errors that can occur in
+    processing it has been exhausted.
+    <p>
+    It's a kind of ReadError since it's the reading of the rest of the
+    source code that's abandoned: all error handlers handle it as one.
+
+    @author James MacKay
+    @see ErrorBudget
+*/
+public class TooManyErrorsError
+    extends ReadError
+{
+    // Constructors
+
+    /**
+        Constructs a TooManyErrorsError.
+
+        @param description the error's description
+        @param code the source code whose processing is being stopped, or
+        null if the source code isn't known
+    */
+    public TooManyErrorsError(String description, SourceCode code)
+    {
+        // Assert.require(description != null);
+        // 'code' can be null
+        super(FATAL_ERROR_LEVEL, description, code);
+    }
+}
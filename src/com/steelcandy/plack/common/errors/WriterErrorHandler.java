@@ -39,6 +39,11 @@ import java.util.Set;
 
 /**
     An error handler that reports all errors using a Writer.
+    <p>
+    Errors can be handled by several threads at once: each error is
+    reported in its entirety before the next one is, and an error is
+    reported at most once however many threads handle errors with the
+    same key.
 
     @author James MacKay
 */
@@ -79,7 +84,8 @@ public class WriterErrorHandler
 
     /**
         All of the distinct keys from all of the errors that this handler
-        has handled so far: each item is an ErrorKey.
+        has handled so far: each item is an ErrorKey. All access to it is
+        synchronized on the set.
     */
     private Set _errorKeys;
 
@@ -118,7 +124,7 @@ public class WriterErrorHandler
 
         @param newWriter this error handler's new writer
     */
-    public void setWriter(Writer newWriter)
+    public synchronized void setWriter(Writer newWriter)
     {
         Assert.require(newWriter != null);
 
@@ -244,6 +250,11 @@ public class WriterErrorHandler
     // Protected methods
 
     /**
+        Note: this implementation adds the error's key (if it has one) to
+        the set of keys of the errors that we've handled at the same time
+        as it checks whether the set already contains it, so that two
+        threads can't both handle errors with the same key.
+
         @see AbstractErrorHandler#isDuplicate(PlackError)
     */
     protected boolean isDuplicate(PlackError error)
@@ -253,31 +264,19 @@ public class WriterErrorHandler
         boolean result = false;
 
         ErrorKey key = error.key();
-        if (key != null && _errorKeys.contains(key))
+        if (key != null)
         {
-            // We've already seen an error with the same key.
-            result = true;
+            synchronized (_errorKeys)
+            {
+                // If the key was already in the set then we've already
+                // seen an error with the same key.
+                result = (_errorKeys.add(key) == false);
+            }
         }
 
         return result;
     }
 
-    /**
-        @see AbstractErrorHandler#beforeHandlingError(PlackError)
-    */
-    protected void beforeHandlingError(PlackError error)
-    {
-        Assert.require(error != null);
-
-        super.beforeHandlingError(error);
-
-        ErrorKey key = error.key();
-        if (key != null)
-        {
-            _errorKeys.add(key);
-        }
-    }
-
     /**
         @see AbstractErrorHandler#afterHandlingError(PlackError)
     */
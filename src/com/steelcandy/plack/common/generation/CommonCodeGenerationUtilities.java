@@ -256,7 +256,7 @@ public class CommonCodeGenerationUtilities
         File f = new File(dir, baseFilename + extension);
         try
         {
-            result = FileUpdatingIndentWriter.create(f);
+            result = FileUpdatingIndentWriter.create(f, true);
         }
         catch (IOException ex)
         {
@@ -0,0 +1,654 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.generation;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.text.*;
+
+import java.util.*;
+
+/**
+    A minimal perfect hash function over a fixed set of strings, computed
+    using the "hash and displace" method, that code generators can use to
+    generate lookup tables that find a string using one hash table probe
+    and a single final string comparison.
+    <p>
+    A key's slot in the table - which is in the range 0 to size() - 1 and
+    is different for each key - is found as follows:
+    <ol>
+        <li>the key is hashed,</li>
+        <li>the key's bucket is found by mixing its hash with seed 0: each
+            of the hash table's slots has a bucket,</li>
+        <li>the bucket's displacement is looked up,</li>
+        <li>if the displacement is negative then the key's slot is
+            -(displacement + 1), and otherwise</li>
+        <li>the key's slot is found by mixing its hash again, using the
+            displacement as the seed.</li>
+    </ol>
+    A string that isn't one of the keys will also be assigned a slot, so
+    whether it's a key is determined by comparing it with the key in its
+    slot.
+    <p>
+    A string's hash is the 32-bit FNV-1a hash of its (16-bit) characters,
+    with an initial value of FNV_OFFSET_BASIS. A hash is mixed with a seed
+    by XORing it with the seed times SEED_MULTIPLIER and then applying
+    MurmurHash3's 32-bit finalizer, which makes every bit of the result
+    depend on every bit of the hash and the seed: for example, the
+    following mixes 'h':
+    <pre>
+        h ^= h >>> MIX_SHIFT_1;
+        h *= MIX_MULTIPLIER_1;
+        h ^= h >>> MIX_SHIFT_2;
+        h *= MIX_MULTIPLIER_2;
+        h ^= h >>> MIX_SHIFT_3;
+    </pre>
+    (FNV-1a's lower bits only depend on the lower bits of its initial
+    value, so seeding it directly gives the same buckets for every seed
+    when the table's size is a power of two.) A mixed hash is reduced to
+    a slot or bucket index by taking the remainder of its lower 31 bits
+    divided by the table size. Generated code must compute all of this in
+    exactly the same way.
+    <p>
+    Since mixing is one-to-one for each seed, two keys with the same hash
+    can never be put in different slots, so a MinimalPerfectHash can't be
+    constructed for such keys. A displacement search is also abandoned
+    after MAXIMUM_DISPLACEMENT seeds, though that should never happen for
+    keys with different hashes.
+
+    @author James MacKay
+*/
+public class MinimalPerfectHash
+{
+    // Constants
+
+    /** The FNV-1a offset basis, which is the initial value of a hash. */
+    public static final int FNV_OFFSET_BASIS = 0x811c9dc5;
+
+    /** The FNV-1a prime that a hash is multiplied by for each character. */
+    public static final int FNV_PRIME = 0x01000193;
+
+    /** The multiplier used to spread a seed over all of a hash's bits. */
+    public static final int SEED_MULTIPLIER = 0x9e3779b9;
+
+    /** The multipliers used in mixing a hash with a seed. */
+    public static final int
+        MIX_MULTIPLIER_1 = 0x85ebca6b,
+        MIX_MULTIPLIER_2 = 0xc2b2ae35;
+
+    /** The numbers of bits shifted in mixing a hash with a seed. */
+    public static final int
+        MIX_SHIFT_1 = 16,
+        MIX_SHIFT_2 = 13,
+        MIX_SHIFT_3 = 16;
+
+    /** The mask used to get the part of a hash used to find an index. */
+    public static final int INDEX_MASK = 0x7fffffff;
+
+    /** The largest displacement that will be tried for a bucket. */
+    public static final int MAXIMUM_DISPLACEMENT = 1 << 20;
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        CommonGenerationResourcesLocator.resources;
+
+    /** Resource keys. */
+    private static final String
+        SAME_HASH_KEYS_MSG = "SAME_HASH_KEYS_MSG",
+        NO_DISPLACEMENT_FOUND_MSG = "NO_DISPLACEMENT_FOUND_MSG";
+
+
+    // Private fields
+
+    /** The keys in the order in which they were given to us. */
+    private StringList _keys;
+
+    /** The hash of each key, indexed by the key's index in '_keys'. */
+    private int[] _hashes;
+
+    /** Our buckets' displacements, indexed by bucket. */
+    private int[] _displacements;
+
+    /** The index in '_keys' of the key in each slot, indexed by slot. */
+    private int[] _slotKeyIndices;
+
+    /** The slot of each key, indexed by the key's index in '_keys'. */
+    private int[] _keySlots;
+
+
+    // Constructors
+
+    /**
+        Constructs the MinimalPerfectHash for the specified keys.
+
+        @param keys the keys to construct the minimal perfect hash for:
+        they must all be different
+        @exception IllegalArgumentException thrown if two of the keys
+        have the same hash, or a minimal perfect hash couldn't otherwise
+        be found for the keys
+    */
+    public MinimalPerfectHash(StringList keys)
+        throws IllegalArgumentException
+    {
+        Assert.require(keys != null);
+        Assert.require(areAllDifferent(keys));
+
+        _keys = StringList.createArrayList(keys);
+
+        int sz = keys.size();
+        _hashes = new int[sz];
+        for (int i = 0; i < sz; i++)
+        {
+            _hashes[i] = hash(keys.get(i));
+        }
+        checkHashesAreDifferent();
+
+        _displacements = new int[sz];
+        _slotKeyIndices = new int[sz];
+        _keySlots = new int[sz];
+        Arrays.fill(_slotKeyIndices, -1);
+        computeDisplacements();
+    }
+
+
+    // Public static methods
+
+    /**
+        @param str the string to hash
+        @return the hash of 'str'
+    */
+    public static int hash(String str)
+    {
+        Assert.require(str != null);
+
+        int result = FNV_OFFSET_BASIS;
+
+        int len = str.length();
+        for (int i = 0; i < len; i++)
+        {
+            result = (result ^ str.charAt(i)) * FNV_PRIME;
+        }
+
+        return result;
+    }
+
+    /**
+        @param hash the hash of a string
+        @param seed the seed to mix into 'hash'
+        @return the result of mixing 'hash' with the seed 'seed'
+    */
+    public static int mix(int hash, int seed)
+    {
+        int result = hash ^ (seed * SEED_MULTIPLIER);
+
+        result ^= result >>> MIX_SHIFT_1;
+        result *= MIX_MULTIPLIER_1;
+        result ^= result >>> MIX_SHIFT_2;
+        result *= MIX_MULTIPLIER_2;
+        result ^= result >>> MIX_SHIFT_3;
+
+        return result;
+    }
+
+    /**
+        @param hash a mixed hash
+        @param size the size of a hash table
+        @return the index of the slot or bucket in the hash table that
+        'hash' corresponds to
+    */
+    public static int index(int hash, int size)
+    {
+        Assert.require(size > 0);
+
+        int result = (hash & INDEX_MASK) % size;
+
+        Assert.ensure(result >= 0 && result < size);
+        return result;
+    }
+
+
+    // Public methods
+
+    /**
+        @return the number of keys, which is also the number of slots and
+        the number of buckets
+    */
+    public int size()
+    {
+        return _keys.size();
+    }
+
+    /**
+        @param bucket the index of a bucket
+        @return the displacement of the bucket with index 'bucket'
+    */
+    public int displacement(int bucket)
+    {
+        Assert.require(bucket >= 0 && bucket < size());
+
+        return _displacements[bucket];
+    }
+
+    /**
+        @param keyIndex the index of one of our keys in the list of keys
+        that we were constructed from
+        @return the slot of the key with index 'keyIndex'
+    */
+    public int slotOf(int keyIndex)
+    {
+        Assert.require(keyIndex >= 0 && keyIndex < size());
+
+        int result = _keySlots[keyIndex];
+
+        Assert.ensure(result >= 0 && result < size());
+        return result;
+    }
+
+    /**
+        @param slot the index of a slot
+        @return the index in the list of keys that we were constructed from
+        of the key in slot 'slot'
+    */
+    public int keyIndexAt(int slot)
+    {
+        Assert.require(slot >= 0 && slot < size());
+
+        int result = _slotKeyIndices[slot];
+
+        Assert.ensure(result >= 0 && result < size());
+        return result;
+    }
+
+    /**
+        @return a list of our keys ordered by slot
+    */
+    public StringList keysInSlotOrder()
+    {
+        int sz = size();
+        StringList result = StringList.createArrayList(sz);
+        for (int slot = 0; slot < sz; slot++)
+        {
+            result.add(_keys.get(_slotKeyIndices[slot]));
+        }
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.size() == size());
+        return result;
+    }
+
+    /**
+        @param str a string
+        @return the slot that 'str' would be in if it were one of our keys,
+        or -1 if we don't have any keys
+    */
+    public int findSlot(String str)
+    {
+        Assert.require(str != null);
+
+        int result = -1;
+
+        int sz = size();
+        if (sz > 0)
+        {
+            int h = hash(str);
+            int d = _displacements[index(mix(h, 0), sz)];
+            if (d < 0)
+            {
+                result = -d - 1;
+            }
+            else
+            {
+                result = index(mix(h, d), sz);
+            }
+        }
+
+        Assert.ensure(result >= -1 && result < size());
+        return result;
+    }
+
+    /**
+        @param str a string
+        @return the slot containing 'str' if it's one of our keys, and -1
+        otherwise
+    */
+    public int indexOf(String str)
+    {
+        Assert.require(str != null);
+
+        int result = findSlot(str);
+        if (result >= 0 &&
+            str.equals(_keys.get(_slotKeyIndices[result])) == false)
+        {
+            result = -1;
+        }
+
+        Assert.ensure(result >= -1 && result < size());
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        Checks that no two of our keys have the same hash.
+
+        @exception IllegalArgumentException thrown if two of our keys have
+        the same hash
+    */
+    private void checkHashesAreDifferent()
+        throws IllegalArgumentException
+    {
+        int sz = size();
+        Map seen = new HashMap(2 * sz);
+        for (int i = 0; i < sz; i++)
+        {
+            Integer prev = (Integer) seen.put(new Integer(_hashes[i]),
+                                              new Integer(i));
+            if (prev != null)
+            {
+                String msg = _resources.getMessage(SAME_HASH_KEYS_MSG,
+                                _keys.get(prev.intValue()), _keys.get(i));
+                throw new IllegalArgumentException(msg);
+            }
+        }
+    }
+
+    /**
+        Computes our buckets' displacements and our keys' slots.
+
+        @exception IllegalArgumentException thrown if a displacement
+        couldn't be found for one of our buckets
+    */
+    private void computeDisplacements()
+        throws IllegalArgumentException
+    {
+        int sz = size();
+
+        // Put the indices of the keys into buckets.
+        IntList[] buckets = new IntList[sz];
+        for (int i = 0; i < sz; i++)
+        {
+            int b = index(mix(_hashes[i], 0), sz);
+            if (buckets[b] == null)
+            {
+                buckets[b] = new IntList();
+            }
+            buckets[b].add(i);
+        }
+
+        // Place the keys in the largest buckets first, since they're the
+        // hardest to place.
+        Integer[] order = new Integer[sz];
+        for (int b = 0; b < sz; b++)
+        {
+            order[b] = new Integer(b);
+        }
+        Arrays.sort(order, new BucketSizeComparator(buckets));
+
+        int next = 0;
+        while (next < sz && bucketSize(buckets, order[next]) > 1)
+        {
+            int b = order[next].intValue();
+            _displacements[b] = findDisplacement(buckets[b]);
+            next += 1;
+        }
+
+        // Place the keys in the buckets containing only one key in the
+        // remaining free slots, and point empty buckets at slot 0 (so that
+        // the key there will fail to match anything else).
+        int freeSlot = 0;
+        while (next < sz)
+        {
+            int b = order[next].intValue();
+            if (buckets[b] == null)
+            {
+                _displacements[b] = -1;
+            }
+            else
+            {
+                while (_slotKeyIndices[freeSlot] >= 0)
+                {
+                    freeSlot += 1;
+                }
+                place(buckets[b].get(0), freeSlot);
+                _displacements[b] = -freeSlot - 1;
+            }
+            next += 1;
+        }
+    }
+
+    /**
+        Finds the smallest positive displacement that puts all of the keys
+        in the specified bucket in different free slots, and then puts them
+        there.
+
+        @param bucket the indices of the keys in the bucket
+        @return the bucket's displacement
+        @exception IllegalArgumentException thrown if no displacement up
+        to MAXIMUM_DISPLACEMENT puts the keys in different free slots
+    */
+    private int findDisplacement(IntList bucket)
+        throws IllegalArgumentException
+    {
+        Assert.require(bucket != null);
+        Assert.require(bucket.size() > 1);
+
+        int result = 0;
+
+        int sz = size();
+        int count = bucket.size();
+        int[] slots = new int[count];
+        boolean isFound = false;
+        while (isFound == false)
+        {
+            if (result == MAXIMUM_DISPLACEMENT)
+            {
+                StringList keys = StringList.createArrayList(count);
+                for (int i = 0; i < count; i++)
+                {
+                    keys.add(_keys.get(bucket.get(i)));
+                }
+                String msg = _resources.getMessage(NO_DISPLACEMENT_FOUND_MSG,
+                    TextUtilities.localizedList(keys),
+                    String.valueOf(MAXIMUM_DISPLACEMENT));
+                throw new IllegalArgumentException(msg);
+            }
+
+            result += 1;
+            isFound = true;
+            for (int i = 0; isFound && i < count; i++)
+            {
+                int slot = index(mix(_hashes[bucket.get(i)], result), sz);
+                if (_slotKeyIndices[slot] >= 0)
+                {
+                    isFound = false;
+                }
+                else
+                {
+                    for (int j = 0; isFound && j < i; j++)
+                    {
+                        isFound = (slots[j] != slot);
+                    }
+                }
+                slots[i] = slot;
+            }
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            place(bucket.get(i), slots[i]);
+        }
+
+        Assert.ensure(result > 0);
+        return result;
+    }
+
+    /**
+        Puts the key with the specified index in the specified slot.
+
+        @param keyIndex the index of the key in '_keys'
+        @param slot the free slot to put the key in
+    */
+    private void place(int keyIndex, int slot)
+    {
+        Assert.require(_slotKeyIndices[slot] < 0);
+
+        _slotKeyIndices[slot] = keyIndex;
+        _keySlots[keyIndex] = slot;
+    }
+
+
+    // Private static methods
+
+    /**
+        @param buckets buckets of key indices, where null represents an
+        empty bucket
+        @param b the index of a bucket in 'buckets'
+        @return the number of keys in the bucket with index 'b'
+    */
+    private static int bucketSize(IntList[] buckets, Integer b)
+    {
+        Assert.require(buckets != null);
+        Assert.require(b != null);
+
+        IntList bucket = buckets[b.intValue()];
+        return (bucket == null) ? 0 : bucket.size();
+    }
+
+    /**
+        @param keys a list of strings
+        @return true iff no two of the strings in 'keys' are the same
+    */
+    private static boolean areAllDifferent(StringList keys)
+    {
+        Assert.require(keys != null);
+
+        Set seen = new HashSet();
+        StringIterator iter = keys.iterator();
+        while (iter.hasNext())
+        {
+            seen.add(iter.next());
+        }
+
+        return (seen.size() == keys.size());
+    }
+
+
+    // Inner classes
+
+    /**
+        A simple growable list of ints.
+    */
+    private static class IntList
+    {
+        // Private fields
+
+        /** The list's items. */
+        private int[] _items = new int[2];
+
+        /** The number of items in the list. */
+        private int _size = 0;
+
+
+        // Public methods
+
+        /**
+            @param item the item to add to the end of this list
+        */
+        public void add(int item)
+        {
+            if (_size == _items.length)
+            {
+                int[] items = new int[_size * 2];
+                System.arraycopy(_items, 0, items, 0, _size);
+                _items = items;
+            }
+            _items[_size] = item;
+            _size += 1;
+        }
+
+        /**
+            @param index the index of one of this list's items
+            @return the item in this list at index 'index'
+        */
+        public int get(int index)
+        {
+            Assert.require(index >= 0 && index < size());
+
+            return _items[index];
+        }
+
+        /**
+            @return the number of items in this list
+        */
+        public int size()
+        {
+            return _size;
+        }
+    }
+
+    /**
+        The Comparator that orders bucket indices (as Integers) so that
+        larger buckets come before smaller ones, and buckets of the same
+        size are in increasing order of index.
+    */
+    private static class BucketSizeComparator
+        implements Comparator
+    {
+        // Private fields
+
+        /** The buckets whose indices we compare. */
+        private IntList[] _buckets;
+
+
+        // Constructors
+
+        /**
+            Constructs a BucketSizeComparator.
+
+            @param buckets the buckets whose indices are to be compared
+        */
+        public BucketSizeComparator(IntList[] buckets)
+        {
+            Assert.require(buckets != null);
+
+            _buckets = buckets;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Comparator#compare(Object, Object)
+        */
+        public int compare(Object obj1, Object obj2)
+        {
+            Integer b1 = (Integer) obj1;
+            Integer b2 = (Integer) obj2;
+
+            int result = bucketSize(_buckets, b2) - bucketSize(_buckets, b1);
+            if (result == 0)
+            {
+                result = b1.compareTo(b2);
+            }
+
+            return result;
+        }
+    }
+}
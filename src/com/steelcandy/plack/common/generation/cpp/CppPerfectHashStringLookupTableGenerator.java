@@ -0,0 +1,584 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.generation.cpp;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.generation.MinimalPerfectHash;
+
+import com.steelcandy.common.io.IndentWriter;
+import com.steelcandy.common.text.*;
+
+import java.util.Map;
+
+/**
+    Generates C++ StringLookupTables that find a key using a minimal
+    perfect hash computed when the table is generated, rather than by
+    partitioning the keys by length and by the characters at various
+    positions. A lookup hashes the key once, mixes the hash with a seed
+    (twice at most) and then compares the key with the one key in the
+    slot that the mixed hash selects, so every lookup takes the same
+    small number of steps and branches.
+    <p>
+    Unlike those generated by a CppStringLookupTableGenerator, the keys
+    and values in the generated C++ arrays are in the order of their
+    slots in the hash table, not the order in which they're obtained from
+    the map that the table is generated from.
+    <p>
+    Note: the keys of tables that use narrow characters must consist
+    entirely of ASCII characters.
+
+    @author James MacKay
+    @see MinimalPerfectHash
+*/
+public class CppPerfectHashStringLookupTableGenerator
+    extends CppStringLookupTableGenerator
+{
+    // Constants
+
+    /** An instance of the code generation utilities class. */
+    private static final CommonCppGenerationUtilities
+        UTILITIES = new CommonCppGenerationUtilities();
+
+    /**
+        Various C++ identifiers from the non-generated C++ lookup table code
+        (in lookup.h).
+    */
+    private static final String
+        LOOKUP_TABLE_INDEX_TYPE_NAME = "int",
+        LOOKUP_KEY_SIZE_METHOD_NAME = "size",
+        LOOKUP_KEY_IS_EQUAL_TO_METHOD_NAME = "isEqualTo",
+        LOOKUP_KEY_CHARACTER_AT_METHOD_NAME = "characterAt";
+
+    /** The number of array items written on each line of generated code. */
+    private static final int ARRAY_ITEMS_PER_LINE = 10;
+
+    /** The largest value of a narrow character in a key. */
+    private static final char MAXIMUM_NARROW_CHARACTER = 0x7f;
+
+    /** The C++ type of a hash. */
+    private static final String HASH_TYPE_NAME = "unsigned long";
+
+    /**
+        The C++ literals representing the masks and constants used in
+        computing a hash.
+
+        @see MinimalPerfectHash
+    */
+    private static final String
+        HASH_MASK_LITERAL = "0xffffffffUL",
+        INDEX_MASK_LITERAL = "0x7fffffffUL",
+        WIDE_CHARACTER_MASK_LITERAL = "0xffffUL",
+        FNV_OFFSET_BASIS_LITERAL = unsignedLiteral(
+            MinimalPerfectHash.FNV_OFFSET_BASIS),
+        FNV_PRIME_LITERAL = unsignedLiteral(MinimalPerfectHash.FNV_PRIME),
+        SEED_MULTIPLIER_LITERAL = unsignedLiteral(
+            MinimalPerfectHash.SEED_MULTIPLIER),
+        MIX_MULTIPLIER_1_LITERAL = unsignedLiteral(
+            MinimalPerfectHash.MIX_MULTIPLIER_1),
+        MIX_MULTIPLIER_2_LITERAL = unsignedLiteral(
+            MinimalPerfectHash.MIX_MULTIPLIER_2);
+
+    /** Local C++ variable names. */
+    private static final String
+        DISPLACEMENTS_VARIABLE_NAME = "displacements",
+        KEY_LENGTHS_VARIABLE_NAME = "keyLengths",
+        HASH_VARIABLE_NAME = "hash",
+        MIXED_HASH_VARIABLE_NAME = "mixed",
+        SIZE_VARIABLE_NAME = "size",
+        DISPLACEMENT_VARIABLE_NAME = "displacement",
+        SLOT_VARIABLE_NAME = "slot",
+        CHARACTER_INDEX_VARIABLE_NAME = "i",
+        RESULT_VARIABLE_NAME = "result",
+        KEY_VARIABLE_NAME = "key";
+
+    /** The instances of this class. */
+    private static final CppPerfectHashStringLookupTableGenerator
+        _narrowHidingInstance = new CppPerfectHashStringLookupTableGenerator(
+                                    true, CPP_NARROW_CHAR_TYPE_INDEX),
+        _narrowNonhidingInstance =
+            new CppPerfectHashStringLookupTableGenerator(
+                                    false, CPP_NARROW_CHAR_TYPE_INDEX),
+        _wideHidingInstance = new CppPerfectHashStringLookupTableGenerator(
+                                    true, CPP_WIDE_CHAR_TYPE_INDEX),
+        _wideNonhidingInstance = new CppPerfectHashStringLookupTableGenerator(
+                                    false, CPP_WIDE_CHAR_TYPE_INDEX);
+
+
+    // Constructors
+
+    /**
+        @return an instance that uses narrow characters in the C++ strings
+        it generates, and that hides some of the lookup table's
+        implementation in the C++ code it generates
+        @see CppStringLookupTableGenerator#createNarrow
+    */
+    public static CppStringLookupTableGenerator createNarrow()
+    {
+        Assert.ensure(_narrowHidingInstance != null);
+        return _narrowHidingInstance;
+    }
+
+    /**
+        @return an instance that uses narrow characters in the C++ strings
+        it generates, and that doesn't hide any of the lookup table's
+        implementation in the C++ code it generates
+        @see CppStringLookupTableGenerator#createNarrowUnhidden
+    */
+    public static CppStringLookupTableGenerator createNarrowUnhidden()
+    {
+        Assert.ensure(_narrowNonhidingInstance != null);
+        return _narrowNonhidingInstance;
+    }
+
+    /**
+        @return an instance that uses wide characters in the C++ strings it
+        generates, and that hides some of the lookup table's implementation
+        in the C++ code it generates
+        @see CppStringLookupTableGenerator#createWide
+    */
+    public static CppStringLookupTableGenerator createWide()
+    {
+        Assert.ensure(_wideHidingInstance != null);
+        return _wideHidingInstance;
+    }
+
+    /**
+        @return an instance that uses wide characters in the C++ strings it
+        generates, and that doesn't hide any of the lookup table's
+        implementation in the C++ code it generates
+        @see CppStringLookupTableGenerator#createWideUnhidden
+    */
+    public static CppStringLookupTableGenerator createWideUnhidden()
+    {
+        Assert.ensure(_wideNonhidingInstance != null);
+        return _wideNonhidingInstance;
+    }
+
+    /**
+        Constructs a CppPerfectHashStringLookupTableGenerator.
+
+        @param doHideParts true iff the generated C++ code should hide some
+        parts of the lookup table's implementation inside an anonymous C++
+        namespace
+        @param charTypeIndex the 0-based index of the C++ character type to
+        use in generated code
+    */
+    protected CppPerfectHashStringLookupTableGenerator(boolean doHideParts,
+                                                       int charTypeIndex)
+    {
+        super(doHideParts, charTypeIndex);
+    }
+
+
+    // Protected methods
+
+    /**
+        Note: this implementation returns the keys in the order of their
+        slots in the hash table, which is a fixed point: building the
+        minimal perfect hash for the returned list puts each key in the
+        slot with the same index as the key's index in the list.
+
+        @see CppStringLookupTableGenerator#buildKeysList(Map)
+    */
+    protected StringList buildKeysList(Map m)
+    {
+        Assert.require(m != null);
+
+        StringList keys = super.buildKeysList(m);
+        checkKeyCharacters(keys);
+        StringList result = new MinimalPerfectHash(keys).keysInSlotOrder();
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.size() == m.size());
+        return result;
+    }
+
+    /**
+        @see CppStringLookupTableGenerator#writeSetFindIndexResultCode
+    */
+    protected void writeSetFindIndexResultCode(IndentWriter w,
+                                StringList keysList, String keysArrayName)
+    {
+        Assert.require(w != null);
+        Assert.require(keysList != null);
+        Assert.require(keysList.isEmpty() == false);
+        Assert.require(keysArrayName != null);
+
+        MinimalPerfectHash mph = new MinimalPerfectHash(keysList);
+        int sz = mph.size();
+        int[] displacements = new int[sz];
+        int[] keyLengths = new int[sz];
+        for (int i = 0; i < sz; i++)
+        {
+            Assert.check(mph.slotOf(i) == i);
+                // since 'keysList' was built by our buildKeysList()
+            displacements[i] = mph.displacement(i);
+            keyLengths[i] = keysList.get(i).length();
+        }
+
+        writeIntArray(w, DISPLACEMENTS_VARIABLE_NAME, displacements);
+        writeIntArray(w, KEY_LENGTHS_VARIABLE_NAME, keyLengths);
+        writeLine(w, "");
+
+        final String hashVar = HASH_VARIABLE_NAME;
+        final String mixedVar = MIXED_HASH_VARIABLE_NAME;
+        final String sizeVar = SIZE_VARIABLE_NAME;
+        final String dispVar = DISPLACEMENT_VARIABLE_NAME;
+        final String slotVar = SLOT_VARIABLE_NAME;
+        final String resultVar = RESULT_VARIABLE_NAME;
+        final String keyArg = KEY_VARIABLE_NAME;
+
+        write(w, CPP_CONSTANT_START);
+        write(w, "int ");
+        write(w, sizeVar);
+        write(w, " = ");
+        write(w, keyArg);
+        write(w, ".");
+        write(w, LOOKUP_KEY_SIZE_METHOD_NAME);
+        write(w, EMPTY_ARGUMENTS);
+        writeLine(w, ";");
+        write(w, HASH_TYPE_NAME);
+        write(w, " ");
+        write(w, hashVar);
+        write(w, " = ");
+        write(w, FNV_OFFSET_BASIS_LITERAL);
+        writeLine(w, ";");
+        writeHashLoop(w);
+        write(w, HASH_TYPE_NAME);
+        write(w, " ");
+        write(w, mixedVar);
+        write(w, " = ");
+        write(w, hashVar);
+        writeLine(w, ";");
+        writeMixStatements(w);
+
+        write(w, CPP_CONSTANT_START);
+        write(w, "int ");
+        write(w, dispVar);
+        write(w, " = ");
+        write(w, DISPLACEMENTS_VARIABLE_NAME);
+        write(w, "[");
+        writeIndexExpression(w, sz);
+        writeLine(w, "];");
+        write(w, "int ");
+        write(w, slotVar);
+        write(w, " = -");
+        write(w, dispVar);
+        writeLine(w, " - 1;");
+        write(w, CPP_IF_START);
+        write(w, "(");
+        write(w, dispVar);
+        writeLine(w, " > 0)");
+        UTILITIES.writeBlockStart(w);
+        try
+        {
+            write(w, mixedVar);
+            write(w, " = ");
+            write(w, hashVar);
+            write(w, " ^ ((static_cast<");
+            write(w, HASH_TYPE_NAME);
+            write(w, ">(");
+            write(w, dispVar);
+            write(w, ") * ");
+            write(w, SEED_MULTIPLIER_LITERAL);
+            write(w, ") & ");
+            write(w, HASH_MASK_LITERAL);
+            writeLine(w, ");");
+            writeMixStatements(w);
+            write(w, slotVar);
+            write(w, " = ");
+            writeIndexExpression(w, sz);
+            writeLine(w, ";");
+        }
+        finally
+        {
+            UTILITIES.writeBlockEnd(w);
+        }
+        writeLine(w, "");
+
+        write(w, LOOKUP_TABLE_INDEX_TYPE_NAME);
+        write(w, " ");
+        write(w, resultVar);
+        writeLine(w, " = -1;");
+        write(w, CPP_IF_START);
+        write(w, "(");
+        write(w, sizeVar);
+        write(w, " == ");
+        write(w, KEY_LENGTHS_VARIABLE_NAME);
+        write(w, "[");
+        write(w, slotVar);
+        write(w, "] && ");
+        write(w, keyArg);
+        write(w, ".");
+        write(w, LOOKUP_KEY_IS_EQUAL_TO_METHOD_NAME);
+        write(w, "(");
+        write(w, keysArrayName);
+        write(w, "[");
+        write(w, slotVar);
+        write(w, "], ");
+        write(w, sizeVar);
+        writeLine(w, "))");
+        UTILITIES.writeBlockStart(w);
+        try
+        {
+            write(w, resultVar);
+            write(w, " = ");
+            write(w, slotVar);
+            writeLine(w, ";");
+        }
+        finally
+        {
+            UTILITIES.writeBlockEnd(w);
+        }
+    }
+
+
+    // Private methods
+
+    /**
+        Writes out the loop that hashes all of the lookup key's characters
+        into the hash variable, which must already be set to the hash's
+        initial value.
+
+        @param w the writer to use
+    */
+    private void writeHashLoop(IndentWriter w)
+    {
+        Assert.require(w != null);
+
+        final String hashVar = HASH_VARIABLE_NAME;
+        final String indexVar = CHARACTER_INDEX_VARIABLE_NAME;
+
+        write(w, "for (int ");
+        write(w, indexVar);
+        write(w, " = 0; ");
+        write(w, indexVar);
+        write(w, " < ");
+        write(w, SIZE_VARIABLE_NAME);
+        write(w, "; ++");
+        write(w, indexVar);
+        writeLine(w, ")");
+        UTILITIES.writeBlockStart(w);
+        try
+        {
+            write(w, hashVar);
+            write(w, " = ((");
+            write(w, hashVar);
+            write(w, " ^ ");
+            String ch = KEY_VARIABLE_NAME + "." +
+                LOOKUP_KEY_CHARACTER_AT_METHOD_NAME + "(" + indexVar + ")";
+            if (usesWideCharacters())
+            {
+                write(w, "(static_cast<");
+                write(w, HASH_TYPE_NAME);
+                write(w, ">(");
+                write(w, ch);
+                write(w, ") & ");
+                write(w, WIDE_CHARACTER_MASK_LITERAL);
+                write(w, ")");
+            }
+            else
+            {
+                write(w, "static_cast<unsigned char>(");
+                write(w, ch);
+                write(w, ")");
+            }
+            write(w, ") * ");
+            write(w, FNV_PRIME_LITERAL);
+            write(w, ") & ");
+            write(w, HASH_MASK_LITERAL);
+            writeLine(w, ";");
+        }
+        finally
+        {
+            UTILITIES.writeBlockEnd(w);
+        }
+    }
+
+    /**
+        Writes out the statements that finish mixing the mixed hash
+        variable's value, which must already be set to the hash XORed with
+        the seed times the seed multiplier (with both kept to 32 bits).
+
+        @param w the writer to use
+        @see MinimalPerfectHash#mix(int, int)
+    */
+    private void writeMixStatements(IndentWriter w)
+    {
+        Assert.require(w != null);
+
+        writeShiftStatement(w, MinimalPerfectHash.MIX_SHIFT_1);
+        writeMultiplyStatement(w, MIX_MULTIPLIER_1_LITERAL);
+        writeShiftStatement(w, MinimalPerfectHash.MIX_SHIFT_2);
+        writeMultiplyStatement(w, MIX_MULTIPLIER_2_LITERAL);
+        writeShiftStatement(w, MinimalPerfectHash.MIX_SHIFT_3);
+    }
+
+    /**
+        Writes out the statement that XORs the mixed hash variable with
+        itself shifted right by the specified number of bits.
+
+        @param w the writer to use
+        @param shift the number of bits to shift by
+    */
+    private void writeShiftStatement(IndentWriter w, int shift)
+    {
+        Assert.require(w != null);
+        Assert.require(shift > 0);
+
+        final String mixedVar = MIXED_HASH_VARIABLE_NAME;
+
+        write(w, mixedVar);
+        write(w, " ^= ");
+        write(w, mixedVar);
+        write(w, " >> ");
+        write(w, shift);
+        writeLine(w, ";");
+    }
+
+    /**
+        Writes out the statement that multiplies the mixed hash variable by
+        the multiplier represented by the specified literal, keeping only
+        the product's lower 32 bits.
+
+        @param w the writer to use
+        @param multiplier the C++ literal representing the multiplier
+    */
+    private void writeMultiplyStatement(IndentWriter w, String multiplier)
+    {
+        Assert.require(w != null);
+        Assert.require(multiplier != null);
+
+        final String mixedVar = MIXED_HASH_VARIABLE_NAME;
+
+        write(w, mixedVar);
+        write(w, " = (");
+        write(w, mixedVar);
+        write(w, " * ");
+        write(w, multiplier);
+        write(w, ") & ");
+        write(w, HASH_MASK_LITERAL);
+        writeLine(w, ";");
+    }
+
+    /**
+        Writes out the expression that reduces the mixed hash variable's
+        value to an index into the hash table.
+
+        @param w the writer to use
+        @param size the number of slots in the hash table
+    */
+    private void writeIndexExpression(IndentWriter w, int size)
+    {
+        Assert.require(w != null);
+        Assert.require(size > 0);
+
+        write(w, "static_cast<int>((");
+        write(w, MIXED_HASH_VARIABLE_NAME);
+        write(w, " & ");
+        write(w, INDEX_MASK_LITERAL);
+        write(w, ") % ");
+        write(w, size);
+        write(w, "UL)");
+    }
+
+    /**
+        Writes out the definition of a local static constant C++ array of
+        ints.
+
+        @param w the writer to use
+        @param name the name of the array
+        @param items the array's items
+    */
+    private void writeIntArray(IndentWriter w, String name, int[] items)
+    {
+        Assert.require(w != null);
+        Assert.require(name != null);
+        Assert.require(items != null);
+        Assert.require(items.length > 0);
+
+        write(w, CPP_STATIC_CONSTANT_START);
+        write(w, "int ");
+        write(w, name);
+        writeLine(w, "[] = {");
+        w.incrementIndentLevel();
+        try
+        {
+            for (int i = 0; i < items.length; i++)
+            {
+                write(w, items[i]);
+                if (i + 1 < items.length)
+                {
+                    if ((i + 1) % ARRAY_ITEMS_PER_LINE == 0)
+                    {
+                        writeLine(w, ",");
+                    }
+                    else
+                    {
+                        write(w, ", ");
+                    }
+                }
+            }
+            writeLine(w, "");
+        }
+        finally
+        {
+            w.decrementIndentLevel();
+            writeLine(w, "};");
+        }
+    }
+
+    /**
+        Checks that all of the specified keys can be represented in the
+        generated C++ code in a way that'll hash the same as they do in
+        Java.
+
+        @param keys the lookup table's keys
+    */
+    private void checkKeyCharacters(StringList keys)
+    {
+        Assert.require(keys != null);
+
+        if (usesWideCharacters() == false)
+        {
+            StringIterator iter = keys.iterator();
+            while (iter.hasNext())
+            {
+                String key = iter.next();
+                for (int i = 0; i < key.length(); i++)
+                {
+                    Assert.require(key.charAt(i) <= MAXIMUM_NARROW_CHARACTER);
+                }
+            }
+        }
+    }
+
+
+    // Private static methods
+
+    /**
+        @param value a 32-bit value
+        @return the C++ unsigned long literal whose value is 'value' as an
+        unsigned 32-bit value
+    */
+    private static String unsignedLiteral(int value)
+    {
+        return Long.toString(value & 0xffffffffL) + "UL";
+    }
+}
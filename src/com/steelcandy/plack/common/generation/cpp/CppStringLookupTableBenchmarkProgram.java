@@ -0,0 +1,505 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.generation.cpp;
+
+import com.steelcandy.plack.common.generation.CommonGenerationResourcesLocator;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.common.io.IndentWriter;
+import com.steelcandy.common.io.Io;
+import com.steelcandy.common.Resources;
+import com.steelcandy.common.program.Program;
+import com.steelcandy.common.program.ProgramException;
+
+import java.io.*;
+import java.util.*;
+
+/**
+    A program that writes to standard output a self-contained C++ program
+    that benchmarks the lookup tables generated by a
+    CppStringLookupTableGenerator against those generated by a
+    CppPerfectHashStringLookupTableGenerator.
+    <p>
+    The tables map the keys read from a file (one per line) to their
+    0-based indices in the file. The benchmark looks up every key, and a
+    key that isn't in the tables for every key that is, the specified
+    number of times using each table, checks that both tables give the
+    same results, and then outputs the time that each table took.
+    <p>
+    Since the lookup.h header that generated C++ lookup tables are
+    usually compiled against isn't part of this tree, the generated
+    benchmark contains a minimal definition of the StringLookupTable
+    class template that it declares.
+
+    @author James MacKay
+*/
+public class CppStringLookupTableBenchmarkProgram
+    implements Program
+{
+    // Constants
+
+    /** The resources used by this class. */
+    private static final Resources _resources =
+        CommonGenerationResourcesLocator.resources;
+
+    /** Resource identifiers. */
+    private static final String
+        ARGUMENTS_SUMMARY_MSG =
+            "BENCHMARK_ARGUMENTS_SUMMARY_MSG",
+        USAGE_DESCRIPTION_MSG =
+            "BENCHMARK_USAGE_DESCRIPTION_MSG",
+        CANNOT_READ_KEYS_MSG =
+            "CANNOT_READ_BENCHMARK_KEYS_MSG",
+        NO_KEYS_MSG =
+            "NO_BENCHMARK_KEYS_MSG";
+
+    /** The option that causes wide character tables to be benchmarked. */
+    private static final String WIDE_OPTION = "-w";
+
+    /**
+        The option whose argument is the number of times that every key is
+        looked up in each table.
+    */
+    private static final String ITERATIONS_OPTION = "-n";
+
+    /** The default number of times that every key is looked up. */
+    private static final int DEFAULT_ITERATIONS = 1000;
+
+    /** The encoding of the file that the keys are read from. */
+    private static final String KEYS_ENCODING = "UTF-8";
+
+    /** The prefixes of the names of the generated lookup tables. */
+    private static final String
+        PARTITIONED_PREFIX = "Partitioned",
+        PERFECT_HASH_PREFIX = "PerfectHash";
+
+    /**
+        The C++ code that precedes the generated lookup tables, and that
+        defines a minimal StringLookupTable class template.
+    */
+    private static final String[] PROLOGUE_LINES =
+    {
+        "#include <cassert>",
+        "#include <chrono>",
+        "#include <cstdio>",
+        "#include <string>",
+        "#include <vector>",
+        "",
+        "template<typename C, typename V>",
+        "class StringLookupTable",
+        "{",
+        "public:",
+        "    typedef C CharType;",
+        "    typedef V Value;",
+        "",
+        "    class Key",
+        "    {",
+        "    public:",
+        "        Key(const CharType *chars, int size) throw ()",
+        "            : _chars(chars), _size(size)",
+        "        {",
+        "        }",
+        "",
+        "        int size() const throw ()",
+        "        {",
+        "            return _size;",
+        "        }",
+        "",
+        "        CharType characterAt(int i) const throw ()",
+        "        {",
+        "            return _chars[i];",
+        "        }",
+        "",
+        "        bool isEqualTo(const CharType *str, int size) const throw ()",
+        "        {",
+        "            bool result = (size == _size);",
+        "            for (int i = 0; result && i < size; ++i)",
+        "            {",
+        "                result = (_chars[i] == str[i]);",
+        "            }",
+        "            return result;",
+        "        }",
+        "",
+        "    private:",
+        "        const CharType *_chars;",
+        "        int _size;",
+        "    };",
+        "};",
+        ""
+    };
+
+    /**
+        The C++ code that follows the generated lookup tables and the
+        definitions of the benchmark's constants, and that defines the
+        functions that run the benchmark.
+    */
+    private static final String[] EPILOGUE_LINES =
+    {
+        "",
+        "typedef std::basic_string<CharType> String;",
+        "",
+        "template<typename Table>",
+        "long lookUpAll(const Table &table, const std::vector<String> &keys,",
+        "                double &seconds)",
+        "{",
+        "    std::chrono::steady_clock::time_point start =",
+        "        std::chrono::steady_clock::now();",
+        "    long result = 0;",
+        "    for (int n = 0; n < ITERATIONS; ++n)",
+        "    {",
+        "        for (size_t i = 0; i < keys.size(); ++i)",
+        "        {",
+        "            const String &s = keys[i];",
+        "            typename Table::Key key(s.data(),",
+        "                                    static_cast<int>(s.size()));",
+        "            int index = table.findIndex(key);",
+        "            result += (index >= 0) ? table.valueAtIndex(index) : -1;",
+        "        }",
+        "    }",
+        "    seconds = std::chrono::duration<double>(",
+        "        std::chrono::steady_clock::now() - start).count();",
+        "    return result;",
+        "}",
+        "",
+        "int main()",
+        "{",
+        "    PartitionedLookupTable partitioned;",
+        "    PerfectHashLookupTable perfectHash;",
+        "",
+        "    std::vector<String> keys;",
+        "    int failures = 0;",
+        "    for (int i = 0; i < KEY_COUNT; ++i)",
+        "    {",
+        "        String hit(PartitionedLookupTableKeys[i]);",
+        "        String miss(hit);",
+        "        miss += static_cast<CharType>('#');",
+        "        keys.push_back(hit);",
+        "        keys.push_back(miss);",
+        "",
+        "        PartitionedLookupTable::Key hitKey(hit.data(),",
+        "            static_cast<int>(hit.size()));",
+        "        PartitionedLookupTable::Key missKey(miss.data(),",
+        "            static_cast<int>(miss.size()));",
+        "        int p = partitioned.findIndex(hitKey);",
+        "        int h = perfectHash.findIndex(hitKey);",
+        "        if (p < 0 || h < 0 ||",
+        "            partitioned.valueAtIndex(p) != i ||",
+        "            perfectHash.valueAtIndex(h) != i ||",
+        "            (partitioned.findIndex(missKey) >= 0) !=",
+        "                (perfectHash.findIndex(missKey) >= 0))",
+        "        {",
+        "            ++failures;",
+        "        }",
+        "    }",
+        "",
+        "    double partitionedSeconds = 0.0;",
+        "    double perfectHashSeconds = 0.0;",
+        "    long p = lookUpAll(partitioned, keys, partitionedSeconds);",
+        "    long h = lookUpAll(perfectHash, keys, perfectHashSeconds);",
+        "    if (p != h)",
+        "    {",
+        "        ++failures;",
+        "    }",
+        "",
+        "    double lookups = static_cast<double>(keys.size()) * ITERATIONS;",
+        "    std::printf(\"keys: %d, lookups per table: %.0f\\n\",",
+        "                KEY_COUNT, lookups);",
+        "    std::printf(\"partitioned:  %8.2f ns/lookup\\n\",",
+        "                partitionedSeconds * 1e9 / lookups);",
+        "    std::printf(\"perfect hash: %8.2f ns/lookup\\n\",",
+        "                perfectHashSeconds * 1e9 / lookups);",
+        "    std::printf(\"mismatches: %d\\n\", failures);",
+        "    return (failures == 0) ? 0 : 1;",
+        "}"
+    };
+
+
+    // Constructors
+
+    /**
+        Constructs a CppStringLookupTableBenchmarkProgram.
+    */
+    public CppStringLookupTableBenchmarkProgram()
+    {
+        // empty
+    }
+
+
+    // Public methods
+
+    /**
+        @see Program#execute(String[])
+    */
+    public void execute(String[] args)
+        throws ProgramException
+    {
+        Assert.require(args != null);
+
+        boolean isWide = false;
+        int iterations = DEFAULT_ITERATIONS;
+        int numArgs = args.length;
+        int start = 0;
+        while (start < numArgs && args[start].startsWith("-"))
+        {
+            String opt = args[start];
+            if (opt.equals(WIDE_OPTION))
+            {
+                isWide = true;
+                start += 1;
+            }
+            else if (opt.equals(ITERATIONS_OPTION) && start + 1 < numArgs)
+            {
+                iterations = parseIterations(args[start + 1]);
+                start += 2;
+            }
+            else
+            {
+                throw EXECUTOR.createBadUsageException(this);
+            }
+        }
+        if (start + 1 != numArgs)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        Map m = readKeys(new File(args[start]));
+
+        CppStringLookupTableGenerator partitioned;
+        CppStringLookupTableGenerator perfectHash;
+        if (isWide)
+        {
+            partitioned = CppStringLookupTableGenerator.createWideUnhidden();
+            perfectHash = CppPerfectHashStringLookupTableGenerator.
+                                                    createWideUnhidden();
+        }
+        else
+        {
+            partitioned =
+                CppStringLookupTableGenerator.createNarrowUnhidden();
+            perfectHash = CppPerfectHashStringLookupTableGenerator.
+                                                    createNarrowUnhidden();
+        }
+
+        IndentWriter w = IndentWriter.createForStandardOutput();
+        try
+        {
+            writeLines(w, PROLOGUE_LINES);
+            partitioned.generate(w, m, PARTITIONED_PREFIX, "int");
+            w.write(Io.NL);
+            perfectHash.generate(w, m, PERFECT_HASH_PREFIX, "int");
+            w.write(Io.NL);
+            writeConstant(w, "ITERATIONS", iterations);
+            writeConstant(w, "KEY_COUNT", m.size());
+            w.write("typedef " + partitioned.characterType() +
+                    " CharType;" + Io.NL);
+            writeLines(w, EPILOGUE_LINES);
+        }
+        catch (IOException ex)
+        {
+            throw EXECUTOR.createFailureException(this, ex.getMessage());
+        }
+        finally
+        {
+            try
+            {
+                w.close();
+            }
+            catch (IOException ex)
+            {
+                // ignore it
+            }
+        }
+    }
+
+    /**
+        @see Program#argumentsSummary
+    */
+    public String argumentsSummary()
+    {
+        String result = _resources.getMessage(ARGUMENTS_SUMMARY_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @see Program#usageDescription
+    */
+    public String usageDescription()
+    {
+        String result = _resources.getMessage(USAGE_DESCRIPTION_MSG);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Protected methods
+
+    /**
+        Parses the argument to the option that specifies the number of
+        times that every key is to be looked up.
+
+        @param arg the option argument to parse
+        @return the number of times that 'arg' represents
+        @exception ProgramException thrown if 'arg' doesn't represent a
+        positive integer
+    */
+    protected int parseIterations(String arg)
+        throws ProgramException
+    {
+        Assert.require(arg != null);
+
+        int result;
+
+        try
+        {
+            result = Integer.parseInt(arg);
+        }
+        catch (NumberFormatException ex)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+        if (result <= 0)
+        {
+            throw EXECUTOR.createBadUsageException(this);
+        }
+
+        Assert.ensure(result > 0);
+        return result;
+    }
+
+    /**
+        Reads the keys of the lookup tables to benchmark from the specified
+        file, one per line. Empty lines and repeated keys are ignored.
+
+        @param f the file to read the keys from
+        @return a map from each key to the C++ code for its 0-based index,
+        in the order that the keys were read
+        @exception ProgramException thrown if the keys couldn't be read or
+        there weren't any
+    */
+    protected Map readKeys(File f)
+        throws ProgramException
+    {
+        Assert.require(f != null);
+
+        Map result = new LinkedHashMap();
+
+        BufferedReader r = null;
+        try
+        {
+            r = new BufferedReader(new InputStreamReader(
+                            new FileInputStream(f), KEYS_ENCODING));
+            String line;
+            while ((line = r.readLine()) != null)
+            {
+                if (line.length() > 0 && result.containsKey(line) == false)
+                {
+                    result.put(line, Integer.toString(result.size()));
+                }
+            }
+        }
+        catch (IOException ex)
+        {
+            String msg = _resources.getMessage(CANNOT_READ_KEYS_MSG,
+                                               f.getPath(), ex.getMessage());
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+        finally
+        {
+            if (r != null)
+            {
+                try
+                {
+                    r.close();
+                }
+                catch (IOException ex)
+                {
+                    // ignore it
+                }
+            }
+        }
+        if (result.isEmpty())
+        {
+            String msg = _resources.getMessage(NO_KEYS_MSG, f.getPath());
+            throw EXECUTOR.createFailureException(this, msg);
+        }
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.isEmpty() == false);
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        Writes out each of the specified lines.
+
+        @param w the writer to use to write the lines
+        @param lines the lines to write
+        @exception IOException thrown if the lines couldn't be written
+    */
+    private static void writeLines(IndentWriter w, String[] lines)
+        throws IOException
+    {
+        Assert.require(w != null);
+        Assert.require(lines != null);
+
+        for (int i = 0; i < lines.length; i++)
+        {
+            w.write(lines[i]);
+            w.write(Io.NL);
+        }
+    }
+
+    /**
+        Writes out the definition of a C++ int constant.
+
+        @param w the writer to use to write the definition
+        @param name the constant's name
+        @param value the constant's value
+        @exception IOException thrown if the definition couldn't be written
+    */
+    private static void writeConstant(IndentWriter w, String name,
+                                      int value)
+        throws IOException
+    {
+        Assert.require(w != null);
+        Assert.require(name != null);
+
+        w.write("const int " + name + " = " + value + ";" + Io.NL);
+    }
+
+
+    // Main method
+
+    /**
+        Main method.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        CppStringLookupTableBenchmarkProgram p =
+            new CppStringLookupTableBenchmarkProgram();
+        EXECUTOR.executeAndExit(p, args);
+    }
+}
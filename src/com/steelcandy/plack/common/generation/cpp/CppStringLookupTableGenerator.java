@@ -56,7 +56,7 @@ public class CppStringLookupTableGenerator
         UTILITIES = new CommonCppGenerationUtilities();
 
     /** 0-based indices for the various types of C++ characters. */
-    private static final int
+    protected static final int
         CPP_NARROW_CHAR_TYPE_INDEX = 0,
         CPP_WIDE_CHAR_TYPE_INDEX = CPP_NARROW_CHAR_TYPE_INDEX + 1,
         NUM_CHAR_TYPES = CPP_WIDE_CHAR_TYPE_INDEX + 1;
@@ -225,8 +225,8 @@ public class CppStringLookupTableGenerator
         @param charTypeIndex the 0-based index of the C++ character type to
         use in generated code
     */
-    private CppStringLookupTableGenerator(boolean doHideParts,
-                                          int charTypeIndex)
+    protected CppStringLookupTableGenerator(boolean doHideParts,
+                                            int charTypeIndex)
     {
         Assert.require(charTypeIndex >= 0);
         Assert.require(charTypeIndex < NUM_CHAR_TYPES);
@@ -516,6 +516,14 @@ public class CppStringLookupTableGenerator
         return result;
     }
 
+    /**
+        @return true iff the generated C++ uses wide characters
+    */
+    protected boolean usesWideCharacters()
+    {
+        return (_charTypeIndex == CPP_WIDE_CHAR_TYPE_INDEX);
+    }
+
     /**
         @return the prefix to use on string literals in the generated C++
     */
@@ -77,6 +77,62 @@ public class CommonJavaGenerationUtilities
         return result;
     }
 
+    /**
+        @param str the Java string's contents: it may contain characters
+        that need to be escaped
+        @return the Java string literal that represents a string consisting
+        of the characters in 'str'
+    */
+    public static String stringLiteral(String str)
+    {
+        Assert.require(str != null);
+
+        int sz = str.length();
+        StringBuffer buf = new StringBuffer(sz + 2);
+        buf.append('"');
+        for (int i = 0; i < sz; i++)
+        {
+            char ch = str.charAt(i);
+            if (ch == '"' || ch == '\\')
+            {
+                buf.append('\\').append(ch);
+            }
+            else if (ch >= ' ' && ch <= '~')
+            {
+                buf.append(ch);
+            }
+            else if (ch <= 0xff)
+            {
+                // Unicode escapes are translated before a Java source file
+                // is tokenized, so the one for a newline (for example)
+                // can't be used inside a string literal.
+                String octal = Integer.toOctalString(ch);
+                buf.append('\\');
+                for (int j = octal.length(); j < 3; j++)
+                {
+                    buf.append('0');
+                }
+                buf.append(octal);
+            }
+            else
+            {
+                String hex = Integer.toHexString(ch);
+                buf.append("\\u");
+                for (int j = hex.length(); j < 4; j++)
+                {
+                    buf.append('0');
+                }
+                buf.append(hex);
+            }
+        }
+        buf.append('"');
+
+        String result = buf.toString();
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
 
     // Private static methods
 
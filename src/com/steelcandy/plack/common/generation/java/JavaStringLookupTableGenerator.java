@@ -0,0 +1,702 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.generation.java;
+
+import com.steelcandy.common.debug.Assert;
+
+import com.steelcandy.plack.common.generation.MinimalPerfectHash;
+
+import com.steelcandy.common.io.IndentWriter;
+import com.steelcandy.common.text.*;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+    Generates Java string lookup tables from a Java map whose keys are
+    Strings.
+    <p>
+    A generated lookup table is a nested class with static findIndex() and
+    valueAtIndex() methods. The table's keys are placed in the slots of a
+    minimal perfect hash computed when the table is generated, so finding
+    a key's index hashes the key once, mixes the hash with a seed (twice
+    at most) and then compares the key with the one key in the slot that
+    the mixed hash selects.
+    <p>
+    Note: since a generated class' arrays are initialized in its static
+    initializer, which is limited to 64K bytes of bytecode, tables with
+    more than about a thousand keys can't be compiled.
+
+    @author James MacKay
+    @see MinimalPerfectHash
+*/
+public class JavaStringLookupTableGenerator
+    implements CommonJavaGeneratorBase
+{
+    // Constants
+
+    /** An instance of the code generation utilities class. */
+    private static final CommonJavaGenerationUtilities
+        UTILITIES = new CommonJavaGenerationUtilities();
+
+    /** The number of array items written on each line of generated code. */
+    private static final int ARRAY_ITEMS_PER_LINE = 10;
+
+    /** The single instance of this class. */
+    private static final JavaStringLookupTableGenerator
+        _instance = new JavaStringLookupTableGenerator();
+
+    /** The suffix of the name of a generated lookup table class. */
+    private static final String
+        LOOKUP_TABLE_CLASS_NAME_SUFFIX = "LookupTable";
+
+    /** The names of the generated class' constants and methods. */
+    private static final String
+        KEYS_ARRAY_NAME = "KEYS",
+        VALUES_ARRAY_NAME = "VALUES",
+        DISPLACEMENTS_ARRAY_NAME = "DISPLACEMENTS",
+        FIND_INDEX_METHOD_NAME = "findIndex",
+        VALUE_AT_INDEX_METHOD_NAME = "valueAtIndex";
+
+    /** The names of the generated methods' arguments and variables. */
+    private static final String
+        KEY_VARIABLE_NAME = "key",
+        INDEX_VARIABLE_NAME = "index",
+        SIZE_VARIABLE_NAME = "size",
+        HASH_VARIABLE_NAME = "hash",
+        MIXED_HASH_VARIABLE_NAME = "mixed",
+        DISPLACEMENT_VARIABLE_NAME = "displacement",
+        SLOT_VARIABLE_NAME = "slot",
+        CHARACTER_INDEX_VARIABLE_NAME = "i",
+        RESULT_VARIABLE_NAME = "result";
+
+
+    // Constructors
+
+    /**
+        @return an instance of this class
+    */
+    public static JavaStringLookupTableGenerator create()
+    {
+        Assert.ensure(_instance != null);
+        return _instance;
+    }
+
+    /**
+        Constructs a JavaStringLookupTableGenerator.
+    */
+    protected JavaStringLookupTableGenerator()
+    {
+        // empty
+    }
+
+
+    // Public methods
+
+    /**
+        Generates the Java lookup table class that maps 'm''s keys to its
+        values. 'm''s keys and values are all assumed to be Strings, but
+        the keys will be converted by this generator into valid Java string
+        literals, whereas the values are assumed to consist of the Java
+        source code that evaluates to the values that the keys are to map
+        to.
+        <p>
+        The generated class is a private static nested class, so it must be
+        written inside the definition of another class.
+
+        @param w the writer to use to write out the generated Java source
+        code
+        @param m the map from each of the strings that the generated lookup
+        table is to map to a value, to the Java code that will evaluate to
+        that value in the generated code
+        @param prefix the prefix that is to start the name of the generated
+        lookup table class
+        @param javaValueType a string representation of the Java type of
+        the values in the generated lookup table
+    */
+    public void generate(IndentWriter w, Map m, String prefix,
+                         String javaValueType)
+    {
+        Assert.require(w != null);
+        Assert.require(m != null);
+        Assert.require(prefix != null);
+        Assert.require(javaValueType != null);
+
+        StringList keysList = buildKeysList(m);
+        MinimalPerfectHash mph = null;
+        if (keysList.isEmpty() == false)
+        {
+            mph = new MinimalPerfectHash(keysList);
+            keysList = mph.keysInSlotOrder();
+        }
+
+        final String className = lookupTableClassName(prefix);
+        writeLine(w, "/**");
+        write(w, "    The lookup table for ");
+        write(w, prefix);
+        writeLine(w, " keys.");
+        writeLine(w, "*/");
+        write(w, "private static final class ");
+        writeLine(w, className);
+        writeBlockStart(w);
+        try
+        {
+            writeKeysArray(w, keysList);
+            writeLine(w, "");
+            writeValuesArray(w, keysList, m, javaValueType);
+            writeLine(w, "");
+            writeDisplacementsArray(w, mph);
+            writeLine(w, "");
+            writeFindIndexMethod(w, keysList.size());
+            writeLine(w, "");
+            writeValueAtIndexMethod(w, javaValueType);
+        }
+        finally
+        {
+            writeBlockEnd(w);
+        }
+    }
+
+    /**
+        @param prefix the prefix that the class name is to start with
+        @return the name of the lookup table class with prefix 'prefix'
+        that our generate() method generates
+    */
+    public String lookupTableClassName(String prefix)
+    {
+        Assert.require(prefix != null);
+
+        //Assert.ensure(result != null);
+        return prefix + LOOKUP_TABLE_CLASS_NAME_SUFFIX;
+    }
+
+
+    // Protected methods
+
+    /**
+        Builds and returns a list of all of the keys in 'm' in the order
+        that they're returned by the map's keySet()'s iterator.
+
+        @param m the map whose keys are used to build the list
+        @return a list of 'm''s keys
+    */
+    protected StringList buildKeysList(Map m)
+    {
+        Assert.require(m != null);
+
+        StringList result = StringList.createArrayList(m.size());
+        Iterator iter = m.keySet().iterator();
+        while (iter.hasNext())
+        {
+            result.add((String) iter.next());
+        }
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.size() == m.size());
+        return result;
+    }
+
+    /**
+        Writes out the definition of the generated class' keys array.
+
+        @param w the writer to use
+        @param keysList the table's keys, in slot order
+    */
+    protected void writeKeysArray(IndentWriter w, StringList keysList)
+    {
+        Assert.require(w != null);
+        Assert.require(keysList != null);  // but it may be empty
+
+        write(w, "private static final String[] ");
+        write(w, KEYS_ARRAY_NAME);
+        writeLine(w, " =");
+        writeLine(w, "{");
+        w.incrementIndentLevel();
+        try
+        {
+            StringIterator iter = keysList.iterator();
+            while (iter.hasNext())
+            {
+                write(w, UTILITIES.stringLiteral(iter.next()));
+                if (iter.hasNext())
+                {
+                    write(w, ",");
+                }
+                writeLine(w, "");
+            }
+        }
+        finally
+        {
+            w.decrementIndentLevel();
+            writeLine(w, "};");
+        }
+    }
+
+    /**
+        Writes out the definition of the generated class' values array.
+
+        @param w the writer to use
+        @param keysList the table's keys, in slot order
+        @param m the map from the table's keys to the Java code that
+        evaluates to their values
+        @param javaValueType the Java type of the table's values
+    */
+    protected void writeValuesArray(IndentWriter w, StringList keysList,
+                                    Map m, String javaValueType)
+    {
+        Assert.require(w != null);
+        Assert.require(keysList != null);  // but it may be empty
+        Assert.require(m != null);
+        Assert.require(javaValueType != null);
+
+        write(w, "private static final ");
+        write(w, javaValueType);
+        write(w, "[] ");
+        write(w, VALUES_ARRAY_NAME);
+        writeLine(w, " =");
+        writeLine(w, "{");
+        w.incrementIndentLevel();
+        try
+        {
+            StringIterator iter = keysList.iterator();
+            while (iter.hasNext())
+            {
+                String value = (String) m.get(iter.next());
+                Assert.check(value != null);
+                write(w, value);
+                if (iter.hasNext())
+                {
+                    write(w, ",");
+                }
+                writeLine(w, "");
+            }
+        }
+        finally
+        {
+            w.decrementIndentLevel();
+            writeLine(w, "};");
+        }
+    }
+
+    /**
+        Writes out the definition of the generated class' displacements
+        array.
+
+        @param w the writer to use
+        @param mph the minimal perfect hash of the table's keys, or null if
+        the table doesn't have any keys
+    */
+    protected void writeDisplacementsArray(IndentWriter w,
+                                           MinimalPerfectHash mph)
+    {
+        Assert.require(w != null);
+        // 'mph' may be null
+
+        write(w, "private static final int[] ");
+        write(w, DISPLACEMENTS_ARRAY_NAME);
+        writeLine(w, " =");
+        writeLine(w, "{");
+        w.incrementIndentLevel();
+        try
+        {
+            int sz = (mph != null) ? mph.size() : 0;
+            for (int i = 0; i < sz; i++)
+            {
+                write(w, mph.displacement(i));
+                if (i + 1 < sz)
+                {
+                    if ((i + 1) % ARRAY_ITEMS_PER_LINE == 0)
+                    {
+                        writeLine(w, ",");
+                    }
+                    else
+                    {
+                        write(w, ", ");
+                    }
+                }
+                else
+                {
+                    writeLine(w, "");
+                }
+            }
+        }
+        finally
+        {
+            w.decrementIndentLevel();
+            writeLine(w, "};");
+        }
+    }
+
+    /**
+        Writes out the definition of the generated class' findIndex()
+        method.
+
+        @param w the writer to use
+        @param size the number of keys in the table
+    */
+    protected void writeFindIndexMethod(IndentWriter w, int size)
+    {
+        Assert.require(w != null);
+        Assert.require(size >= 0);
+
+        final String keyArg = KEY_VARIABLE_NAME;
+        final String hashVar = HASH_VARIABLE_NAME;
+        final String mixedVar = MIXED_HASH_VARIABLE_NAME;
+        final String dispVar = DISPLACEMENT_VARIABLE_NAME;
+        final String slotVar = SLOT_VARIABLE_NAME;
+        final String resultVar = RESULT_VARIABLE_NAME;
+
+        writeLine(w, "/**");
+        write(w, "    @param ");
+        write(w, keyArg);
+        writeLine(w, " a key");
+        write(w, "    @return the index of '");
+        write(w, keyArg);
+        writeLine(w, "' in this table, or -1 if");
+        writeLine(w, "    it isn't one of this table's keys");
+        writeLine(w, "*/");
+        write(w, "public static int ");
+        write(w, FIND_INDEX_METHOD_NAME);
+        write(w, "(String ");
+        write(w, keyArg);
+        writeLine(w, ")");
+        writeBlockStart(w);
+        try
+        {
+            write(w, "int ");
+            write(w, resultVar);
+            writeLine(w, " = -1;");
+            if (size > 0)
+            {
+                writeLine(w, "");
+                write(w, "int ");
+                write(w, hashVar);
+                write(w, " = ");
+                write(w, MinimalPerfectHash.FNV_OFFSET_BASIS);
+                writeLine(w, ";");
+                writeHashLoop(w);
+                write(w, "int ");
+                write(w, mixedVar);
+                write(w, " = ");
+                write(w, hashVar);
+                writeLine(w, ";");
+                writeMixStatements(w);
+                write(w, "int ");
+                write(w, dispVar);
+                write(w, " = ");
+                write(w, DISPLACEMENTS_ARRAY_NAME);
+                write(w, "[");
+                writeIndexExpression(w, size);
+                writeLine(w, "];");
+                write(w, "int ");
+                write(w, slotVar);
+                write(w, " = -");
+                write(w, dispVar);
+                writeLine(w, " - 1;");
+                write(w, "if (");
+                write(w, dispVar);
+                writeLine(w, " > 0)");
+                writeBlockStart(w);
+                try
+                {
+                    write(w, mixedVar);
+                    write(w, " = ");
+                    write(w, hashVar);
+                    write(w, " ^ (");
+                    write(w, dispVar);
+                    write(w, " * ");
+                    write(w, MinimalPerfectHash.SEED_MULTIPLIER);
+                    writeLine(w, ");");
+                    writeMixStatements(w);
+                    write(w, slotVar);
+                    write(w, " = ");
+                    writeIndexExpression(w, size);
+                    writeLine(w, ";");
+                }
+                finally
+                {
+                    writeBlockEnd(w);
+                }
+                write(w, "if (");
+                write(w, KEYS_ARRAY_NAME);
+                write(w, "[");
+                write(w, slotVar);
+                write(w, "].equals(");
+                write(w, keyArg);
+                writeLine(w, "))");
+                writeBlockStart(w);
+                try
+                {
+                    write(w, resultVar);
+                    write(w, " = ");
+                    write(w, slotVar);
+                    writeLine(w, ";");
+                }
+                finally
+                {
+                    writeBlockEnd(w);
+                }
+                writeLine(w, "");
+            }
+            write(w, "return ");
+            write(w, resultVar);
+            writeLine(w, ";");
+        }
+        finally
+        {
+            writeBlockEnd(w);
+        }
+    }
+
+    /**
+        Writes out the definition of the generated class' valueAtIndex()
+        method.
+
+        @param w the writer to use
+        @param javaValueType the Java type of the table's values
+    */
+    protected void writeValueAtIndexMethod(IndentWriter w,
+                                           String javaValueType)
+    {
+        Assert.require(w != null);
+        Assert.require(javaValueType != null);
+
+        final String indexArg = INDEX_VARIABLE_NAME;
+
+        writeLine(w, "/**");
+        write(w, "    @param ");
+        write(w, indexArg);
+        write(w, " an index returned by ");
+        write(w, FIND_INDEX_METHOD_NAME);
+        writeLine(w, "()");
+        write(w, "    @return the value at index '");
+        write(w, indexArg);
+        writeLine(w, "' in this table");
+        writeLine(w, "*/");
+        write(w, "public static ");
+        write(w, javaValueType);
+        write(w, " ");
+        write(w, VALUE_AT_INDEX_METHOD_NAME);
+        write(w, "(int ");
+        write(w, indexArg);
+        writeLine(w, ")");
+        writeBlockStart(w);
+        try
+        {
+            write(w, "return ");
+            write(w, VALUES_ARRAY_NAME);
+            write(w, "[");
+            write(w, indexArg);
+            writeLine(w, "];");
+        }
+        finally
+        {
+            writeBlockEnd(w);
+        }
+    }
+
+
+    // Private methods
+
+    /**
+        Writes out the loop that hashes all of the key's characters into
+        the hash variable, which must already be set to the hash's initial
+        value.
+
+        @param w the writer to use
+    */
+    private void writeHashLoop(IndentWriter w)
+    {
+        Assert.require(w != null);
+
+        final String hashVar = HASH_VARIABLE_NAME;
+        final String indexVar = CHARACTER_INDEX_VARIABLE_NAME;
+        final String sizeVar = SIZE_VARIABLE_NAME;
+
+        write(w, "for (int ");
+        write(w, indexVar);
+        write(w, " = 0, ");
+        write(w, sizeVar);
+        write(w, " = ");
+        write(w, KEY_VARIABLE_NAME);
+        write(w, ".length(); ");
+        write(w, indexVar);
+        write(w, " < ");
+        write(w, sizeVar);
+        write(w, "; ");
+        write(w, indexVar);
+        writeLine(w, "++)");
+        writeBlockStart(w);
+        try
+        {
+            write(w, hashVar);
+            write(w, " = (");
+            write(w, hashVar);
+            write(w, " ^ ");
+            write(w, KEY_VARIABLE_NAME);
+            write(w, ".charAt(");
+            write(w, indexVar);
+            write(w, ")) * ");
+            write(w, MinimalPerfectHash.FNV_PRIME);
+            writeLine(w, ";");
+        }
+        finally
+        {
+            writeBlockEnd(w);
+        }
+    }
+
+    /**
+        Writes out the statements that finish mixing the mixed hash
+        variable's value, which must already be set to the hash XORed with
+        the seed times the seed multiplier.
+
+        @param w the writer to use
+        @see MinimalPerfectHash#mix(int, int)
+    */
+    private void writeMixStatements(IndentWriter w)
+    {
+        Assert.require(w != null);
+
+        writeShiftStatement(w, MinimalPerfectHash.MIX_SHIFT_1);
+        writeMultiplyStatement(w, MinimalPerfectHash.MIX_MULTIPLIER_1);
+        writeShiftStatement(w, MinimalPerfectHash.MIX_SHIFT_2);
+        writeMultiplyStatement(w, MinimalPerfectHash.MIX_MULTIPLIER_2);
+        writeShiftStatement(w, MinimalPerfectHash.MIX_SHIFT_3);
+    }
+
+    /**
+        Writes out the statement that XORs the mixed hash variable with
+        itself shifted right by the specified number of bits.
+
+        @param w the writer to use
+        @param shift the number of bits to shift by
+    */
+    private void writeShiftStatement(IndentWriter w, int shift)
+    {
+        Assert.require(w != null);
+        Assert.require(shift > 0);
+
+        final String mixedVar = MIXED_HASH_VARIABLE_NAME;
+
+        write(w, mixedVar);
+        write(w, " ^= ");
+        write(w, mixedVar);
+        write(w, " >>> ");
+        write(w, shift);
+        writeLine(w, ";");
+    }
+
+    /**
+        Writes out the statement that multiplies the mixed hash variable by
+        the specified multiplier.
+
+        @param w the writer to use
+        @param multiplier the multiplier
+    */
+    private void writeMultiplyStatement(IndentWriter w, int multiplier)
+    {
+        Assert.require(w != null);
+
+        write(w, MIXED_HASH_VARIABLE_NAME);
+        write(w, " *= ");
+        write(w, multiplier);
+        writeLine(w, ";");
+    }
+
+    /**
+        Writes out the expression that reduces the mixed hash variable's
+        value to an index into the hash table.
+
+        @param w the writer to use
+        @param size the number of slots in the hash table
+    */
+    private void writeIndexExpression(IndentWriter w, int size)
+    {
+        Assert.require(w != null);
+        Assert.require(size > 0);
+
+        write(w, "(");
+        write(w, MIXED_HASH_VARIABLE_NAME);
+        write(w, " & ");
+        write(w, MinimalPerfectHash.INDEX_MASK);
+        write(w, ") % ");
+        write(w, size);
+    }
+
+    /**
+        Writes out the start of a block of Java code.
+
+        @param w the writer to use
+    */
+    private void writeBlockStart(IndentWriter w)
+    {
+        Assert.require(w != null);
+
+        writeLine(w, "{");
+        w.incrementIndentLevel();
+    }
+
+    /**
+        Writes out the end of a block of Java code.
+
+        @param w the writer to use
+    */
+    private void writeBlockEnd(IndentWriter w)
+    {
+        Assert.require(w != null);
+
+        w.decrementIndentLevel();
+        writeLine(w, "}");
+    }
+
+
+    // Protected static methods
+
+    /**
+        @see CommonCodeGenerationUtilities#write(IndentWriter, String)
+    */
+    protected static void write(IndentWriter w, String str)
+    {
+        Assert.require(w != null);
+        Assert.require(str != null);
+
+        UTILITIES.write(w, str);
+    }
+
+    /**
+        @see CommonCodeGenerationUtilities#write(IndentWriter, int)
+    */
+    protected static void write(IndentWriter w, int val)
+    {
+        Assert.require(w != null);
+
+        UTILITIES.write(w, val);
+    }
+
+    /**
+        @see CommonCodeGenerationUtilities#writeLine(IndentWriter, String)
+    */
+    protected static void writeLine(IndentWriter w, String str)
+    {
+        Assert.require(w != null);
+        Assert.require(str != null);
+
+        UTILITIES.writeLine(w, str);
+    }
+}
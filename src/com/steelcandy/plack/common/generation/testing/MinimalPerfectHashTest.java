@@ -0,0 +1,240 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.generation.testing;
+
+import com.steelcandy.plack.common.generation.MinimalPerfectHash;
+
+import com.steelcandy.testing.*;
+
+import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.text.*;
+
+import java.util.*;
+
+/**
+    Tests that a MinimalPerfectHash can be constructed for various sets of
+    keys - including ones whose table sizes are powers of two, and ones
+    made up of short keys that differ only in a few bits - and that it
+    puts each key in its own slot and finds it there.
+
+    @author James MacKay
+    @see MinimalPerfectHash
+*/
+public class MinimalPerfectHashTest
+    extends SingleTest
+{
+    // Constants
+
+    /** The largest number of keys in a randomly generated set of keys. */
+    private static final int MAXIMUM_RANDOM_KEY_COUNT = 64;
+
+    /** The number of random sets of keys generated for each key count. */
+    private static final int RANDOM_SETS_PER_KEY_COUNT = 20;
+
+    /** The longest randomly generated key. */
+    private static final int MAXIMUM_RANDOM_KEY_LENGTH = 3;
+
+    /** The characters that randomly generated keys consist of. */
+    private static final String RANDOM_KEY_CHARACTERS =
+        "abcdefghijklmnopqrstuvwxyz";
+
+    /**
+        The seed used to generate random sets of keys, so that any failure
+        can be reproduced.
+    */
+    private static final long RANDOM_SEED = 20230401L;
+
+
+    // Overridden methods
+
+    /**
+        @see Test#description
+    */
+    public String description()
+    {
+        return "tests that minimal perfect hashes can be constructed for " +
+               "and find all of the keys in various sets of keys";
+    }
+
+    /**
+        @see AbstractTest#runTest
+    */
+    protected void runTest()
+        throws Throwable
+    {
+        boolean ok = true;
+
+        ok &= check(new String[] { "a", "c" });
+        ok &= check(new String[] { "if", "do" });
+        ok &= check(new String[] {
+            "a", "b", "c", "d", "e", "f", "g", "h",
+            "i", "j", "k", "l", "m", "n", "o", "q" });
+        ok &= check(new String[] { "" });
+        ok &= check(new String[] { "", "a" });
+
+        Random random = new Random(RANDOM_SEED);
+        for (int count = 1; count <= MAXIMUM_RANDOM_KEY_COUNT; count++)
+        {
+            for (int i = 0; i < RANDOM_SETS_PER_KEY_COUNT; i++)
+            {
+                ok &= check(randomKeys(random, count));
+            }
+        }
+
+        setSucceeded(ok);
+    }
+
+
+    // Private methods
+
+    /**
+        Checks that a MinimalPerfectHash can be constructed for the
+        specified keys, and that it puts each of them in a different slot
+        and finds them there.
+
+        @param keys the keys to check: they must all be different
+        @return true iff the check succeeded
+    */
+    private boolean check(String[] keys)
+    {
+        Assert.require(keys != null);
+
+        boolean result = true;
+
+        StringList keysList = StringList.createArrayList(keys.length);
+        for (int i = 0; i < keys.length; i++)
+        {
+            keysList.add(keys[i]);
+        }
+
+        MinimalPerfectHash mph;
+        try
+        {
+            mph = new MinimalPerfectHash(keysList);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // This is only allowed if two of the keys have the same hash.
+            mph = null;
+            if (haveDifferentHashes(keys))
+            {
+                writer().writeLine(TestWriter.DEBUG, "no minimal perfect " +
+                    "hash could be constructed for the keys " +
+                    TextUtilities.toString(keysList) + ": " +
+                    ex.getLocalizedMessage());
+                result = false;
+            }
+        }
+
+        if (mph != null)
+        {
+            int sz = keys.length;
+            boolean[] isUsed = new boolean[sz];
+            for (int i = 0; result && i < sz; i++)
+            {
+                int slot = mph.slotOf(i);
+                if (isUsed[slot] || mph.keyIndexAt(slot) != i ||
+                    mph.indexOf(keys[i]) != slot)
+                {
+                    writer().writeLine(TestWriter.DEBUG, "the key '" +
+                        keys[i] + "' wasn't found in its own slot in " +
+                        "the minimal perfect hash for the keys " +
+                        TextUtilities.toString(keysList));
+                    result = false;
+                }
+                isUsed[slot] = true;
+            }
+
+            String missing = "?" + keys[0];
+            if (result && mph.indexOf(missing) >= 0)
+            {
+                writer().writeLine(TestWriter.DEBUG, "the non-key '" +
+                    missing + "' was found in the minimal perfect hash " +
+                    "for the keys " + TextUtilities.toString(keysList));
+                result = false;
+            }
+        }
+
+        return result;
+    }
+
+
+    // Private static methods
+
+    /**
+        @param random the random number generator to use
+        @param count the number of keys to generate
+        @return an array of 'count' different random keys
+    */
+    private static String[] randomKeys(Random random, int count)
+    {
+        Assert.require(random != null);
+        Assert.require(count >= 0);
+
+        Set keys = new LinkedHashSet();
+        StringBuffer buf = new StringBuffer(MAXIMUM_RANDOM_KEY_LENGTH);
+        while (keys.size() < count)
+        {
+            buf.setLength(0);
+            int len = 1 + random.nextInt(MAXIMUM_RANDOM_KEY_LENGTH);
+            for (int i = 0; i < len; i++)
+            {
+                buf.append(RANDOM_KEY_CHARACTERS.
+                    charAt(random.nextInt(RANDOM_KEY_CHARACTERS.length())));
+            }
+            keys.add(buf.toString());
+        }
+
+        String[] result = (String[]) keys.toArray(new String[count]);
+
+        Assert.ensure(result != null);
+        Assert.ensure(result.length == count);
+        return result;
+    }
+
+    /**
+        @param keys a set of keys
+        @return true iff no two of the keys in 'keys' have the same hash
+    */
+    private static boolean haveDifferentHashes(String[] keys)
+    {
+        Assert.require(keys != null);
+
+        Set hashes = new HashSet();
+        for (int i = 0; i < keys.length; i++)
+        {
+            hashes.add(new Integer(MinimalPerfectHash.hash(keys[i])));
+        }
+
+        return (hashes.size() == keys.length);
+    }
+
+
+    // Main method
+
+    /**
+        Runs this test.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        MinimalPerfectHashTest t = new MinimalPerfectHashTest();
+        EXECUTOR.executeAndExit(t, args);
+    }
+}
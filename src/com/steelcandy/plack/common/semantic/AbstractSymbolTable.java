@@ -27,6 +27,11 @@ import java.util.Map;
 
 /**
     An abstract base class for SymbolTable classes.
+    <p>
+    Instances are versioned, and so cache the results of their
+    findRecursively(String, int) method. Subclasses whose find(String, int)
+    method's results can change other than by entries being added or
+    removed should override isVersioned() to return false.
 
     @author James MacKay
 */
@@ -51,11 +56,17 @@ public abstract class AbstractSymbolTable
     // Private fields
 
     /**
-        A map whose values are lists of symbol table entries that
-        all share the same name and arity, and whose keys consist
-        of that name and arity. The keys are all SymbolTableEntryKey
-        objects and the values are all SymbolTableEntryList objects
-        (whose elements are all SymbolTableEntry objects).
+        A map from the names of the entries in this table to the entries
+        with those names. The keys are Strings and each value is an array
+        of SymbolTableEntryLists indexed by arity, so that the list of
+        entries with a given name and arity can be found without having to
+        create a key that combines them.
+        <p>
+        Any of an array's items may be null, but none of them will be an
+        empty list, and every array will contain at least one non-null
+        item. The arrays are never modified once they're in the map:
+        they're replaced by modified copies instead, so that every change
+        goes through the map (which may be unmodifiable).
     */
     private Map _entries;
 
@@ -134,23 +145,18 @@ public abstract class AbstractSymbolTable
         checkValidEntry(entry);
         checkForDuplicate(entry);
 
-        SymbolTableEntryKey key = createKey(entry);
-        SymbolTableEntryList values = getEntryList(key);
+        String name = entry.name();
+        int arity = entry.arity();
+        SymbolTableEntryList values = getEntryList(name, arity);
         if (values == null)
         {
             values = createEntryList();
-            try
-            {
-                _entries.put(key, values);
-            }
-            catch (UnsupportedOperationException ex)
-            {
-                throw new ImmutableSymbolTableException(ex);
-            }
+            putEntryList(name, arity, values);
         }
 
         Assert.check(values != null);
         values.add(entry);
+        incrementVersion();
     }
 
 
@@ -177,9 +183,15 @@ public abstract class AbstractSymbolTable
     {
         Assert.require(isEmpty() == false);
 
-        Object key = _entries.keySet().iterator().next();
-        SymbolTableEntryList list =
-            (SymbolTableEntryList) _entries.get(key);
+        String name = (String) _entries.keySet().iterator().next();
+        SymbolTableEntryList[] lists =
+            (SymbolTableEntryList[]) _entries.get(name);
+        int arity = 0;
+        while (lists[arity] == null)
+        {
+            arity += 1;
+        }
+        SymbolTableEntryList list = lists[arity];
         Assert.check(list.isEmpty() == false);
 
         SymbolTableEntry result = list.getLast();
@@ -187,8 +199,9 @@ public abstract class AbstractSymbolTable
 
         if (list.isEmpty())
         {
-            _entries.remove(key);
+            removeEntryList(name, arity);
         }
+        incrementVersion();
 
         Assert.ensure(result != null);
         return result;
@@ -203,13 +216,10 @@ public abstract class AbstractSymbolTable
         Assert.require(name != null);
         Assert.require(arity >= 0);
 
-        SymbolTableEntryKey key =
-            new SymbolTableEntryKey(name, arity);
-        SymbolTableEntryList result = getEntryList(key);
+        SymbolTableEntryList result = getEntryList(name, arity);
         if (result == null)
         {
-            // Return an empty list.
-            result = createEntryList();
+            result = SymbolTableEntryList.createEmptyList();
         }
 
         Assert.ensure(result != null);
@@ -225,13 +235,14 @@ public abstract class AbstractSymbolTable
         Assert.require(name != null);
         Assert.require(arity >= 0);
 
-        SymbolTableEntryKey key =
-            new SymbolTableEntryKey(name, arity);
-        SymbolTableEntryList result = removeEntryList(key);
+        SymbolTableEntryList result = removeEntryList(name, arity);
         if (result == null)
         {
-            // Return an empty list.
-            result = createEntryList();
+            result = SymbolTableEntryList.createEmptyList();
+        }
+        else
+        {
+            incrementVersion();
         }
 
         Assert.ensure(result != null);
@@ -307,6 +318,16 @@ public abstract class AbstractSymbolTable
 
     // Protected methods
 
+    /**
+        This implementation always returns true.
+
+        @see MinimalAbstractSymbolTable#isVersioned
+    */
+    protected boolean isVersioned()
+    {
+        return true;
+    }
+
     /**
         Creates and returns a SymbolTableEntryKey that corresponds to
         the specified SymbolTableEntry.
@@ -323,7 +344,7 @@ public abstract class AbstractSymbolTable
     }
 
     /**
-        @return an empty SymbolTableEntryList
+        @return a new empty SymbolTableEntryList
     */
     protected SymbolTableEntryList createEntryList()
     {
@@ -338,18 +359,78 @@ public abstract class AbstractSymbolTable
         @param key the key
         @return a list of the entries in this table that correspond
         to 'key', or null if there are no such entries
+        @see #getEntryList(String, int)
     */
     protected SymbolTableEntryList getEntryList(SymbolTableEntryKey key)
     {
         Assert.require(key != null);
 
-        SymbolTableEntryList result =
-            (SymbolTableEntryList) _entries.get(key);
+        // Note: the result may be null.
+        return getEntryList(key.name(), key.arity());
+    }
+
+    /**
+        Returns the list of entries in this table with the specified name
+        and arity, or null if there are no such entries in this table.
+
+        @param name the name of the entries
+        @param arity the arity of the entries
+        @return a list of the entries in this table with name 'name' and
+        arity 'arity', or null if there are no such entries
+    */
+    protected SymbolTableEntryList getEntryList(String name, int arity)
+    {
+        Assert.require(name != null);
+        Assert.require(arity >= 0);
+
+        SymbolTableEntryList result = null;
+
+        SymbolTableEntryList[] lists =
+            (SymbolTableEntryList[]) _entries.get(name);
+        if (lists != null && arity < lists.length)
+        {
+            result = lists[arity];
+        }
 
         // Note: 'result' may be null.
         return result;
     }
 
+    /**
+        Sets the list of entries in this table with the specified name and
+        arity to the specified list, replacing any existing list.
+
+        @param name the name of the entries
+        @param arity the arity of the entries
+        @param list the list of entries with name 'name' and arity 'arity'
+        @exception ImmutableSymbolTableException thrown if this method is
+        called on an immutable symbol table
+    */
+    protected void putEntryList(String name, int arity,
+                                SymbolTableEntryList list)
+        throws ImmutableSymbolTableException
+    {
+        Assert.require(name != null);
+        Assert.require(arity >= 0);
+        Assert.require(list != null);
+
+        SymbolTableEntryList[] lists =
+            (SymbolTableEntryList[]) _entries.get(name);
+        int len = arity + 1;
+        if (lists != null)
+        {
+            len = Math.max(len, lists.length);
+        }
+        SymbolTableEntryList[] newLists = new SymbolTableEntryList[len];
+        if (lists != null)
+        {
+            System.arraycopy(lists, 0, newLists, 0, lists.length);
+        }
+        newLists[arity] = list;
+
+        putEntryLists(name, newLists);
+    }
+
     /**
         Removes and returns the list of entries in this table that
         correspond to the specified key, or null if there are no such
@@ -360,24 +441,119 @@ public abstract class AbstractSymbolTable
         to 'key', or null if there are no such entries
         @exception ImmutableSymbolTableException thrown if this method is
         called on an immutable symbol table
+        @see #removeEntryList(String, int)
     */
     protected SymbolTableEntryList removeEntryList(SymbolTableEntryKey key)
         throws ImmutableSymbolTableException
     {
         Assert.require(key != null);
 
-        SymbolTableEntryList result;
+        // Note: the result may be null.
+        return removeEntryList(key.name(), key.arity());
+    }
+
+    /**
+        Removes and returns the list of entries in this table with the
+        specified name and arity, or null if there are no such entries in
+        this table.
+
+        @param name the name of the entries
+        @param arity the arity of the entries
+        @return a list of the entries in this table with name 'name' and
+        arity 'arity', or null if there are no such entries
+        @exception ImmutableSymbolTableException thrown if this method is
+        called on an immutable symbol table
+    */
+    protected SymbolTableEntryList removeEntryList(String name, int arity)
+        throws ImmutableSymbolTableException
+    {
+        Assert.require(name != null);
+        Assert.require(arity >= 0);
+
+        SymbolTableEntryList result = null;
+
+        SymbolTableEntryList[] lists =
+            (SymbolTableEntryList[]) _entries.get(name);
+        if (lists != null && arity < lists.length)
+        {
+            result = lists[arity];
+            if (result != null)
+            {
+                SymbolTableEntryList[] newLists =
+                    (SymbolTableEntryList[]) lists.clone();
+                newLists[arity] = null;
+                if (isEmpty(newLists))
+                {
+                    try
+                    {
+                        _entries.remove(name);
+                    }
+                    catch (UnsupportedOperationException ex)
+                    {
+                        throw new ImmutableSymbolTableException(ex);
+                    }
+                }
+                else
+                {
+                    putEntryLists(name, newLists);
+                }
+            }
+        }
+
+        // Note: 'result' may be null.
+        return result;
+    }
+
+
+    // Private methods
+
+    /**
+        Sets the array of the lists of entries in this table with the
+        specified name to the specified array, replacing any existing
+        array.
+
+        @param name the name of the entries
+        @param lists the array of the lists of entries with name 'name',
+        indexed by arity
+        @exception ImmutableSymbolTableException thrown if this method is
+        called on an immutable symbol table
+    */
+    private void putEntryLists(String name, SymbolTableEntryList[] lists)
+        throws ImmutableSymbolTableException
+    {
+        Assert.require(name != null);
+        Assert.require(lists != null);
+        Assert.require(isEmpty(lists) == false);
 
         try
         {
-            result = (SymbolTableEntryList) _entries.remove(key);
+            _entries.put(name, lists);
         }
         catch (UnsupportedOperationException ex)
         {
             throw new ImmutableSymbolTableException(ex);
         }
+    }
+
+    /**
+        @param lists an array of lists of entries
+        @return true iff all of the items in 'lists' are null
+    */
+    private boolean isEmpty(SymbolTableEntryList[] lists)
+    {
+        Assert.require(lists != null);
+
+        boolean result = true;
+
+        for (int i = 0; i < lists.length; i++)
+        {
+            if (lists[i] != null)
+            {
+                result = false;
+                break;
+            }
+        }
 
-        // Note: 'result' may be null.
         return result;
     }
 
@@ -395,8 +571,8 @@ public abstract class AbstractSymbolTable
 
         /**
             An iterator over our AbstractSymbolTable's _entries Map's
-            values. Each item returned by the iterator is a
-            SymbolTableEntryList.
+            values. Each item returned by the iterator is an array of
+            SymbolTableEntryLists.
             <p>
             This field should never be null once an instance's
             constructor has finished.
@@ -404,8 +580,20 @@ public abstract class AbstractSymbolTable
         private Iterator _mapValuesIter;
 
         /**
-            An iterator over the SymbolTableEntryList returned from
-            _mapValuesIter that contains this iterator's current item.
+            The array of SymbolTableEntryLists most recently returned from
+            _mapValuesIter, or null if no arrays have been returned from it
+            yet.
+        */
+        private SymbolTableEntryList[] _lists;
+
+        /**
+            The index in _lists of the list that _listIter iterates over.
+        */
+        private int _listIndex;
+
+        /**
+            An iterator over the SymbolTableEntryList in _lists that
+            contains this iterator's current item.
             <p>
             This field should never be null once an instance's
             constructor has finished.
@@ -438,6 +626,8 @@ public abstract class AbstractSymbolTable
         public EntryIterator()
         {
             _mapValuesIter = _entries.values().iterator();
+            _lists = null;
+            _listIndex = 0;
             _listIter = EMPTY_ITERATOR;
 
             getNewCurrent();
@@ -513,14 +703,25 @@ public abstract class AbstractSymbolTable
 
             while (_listIter.hasNext() == false)
             {
-                if (_mapValuesIter.hasNext() == false)
+                if (_lists != null && _listIndex + 1 < _lists.length)
+                {
+                    _listIndex += 1;
+                }
+                else if (_mapValuesIter.hasNext())
+                {
+                    _lists = (SymbolTableEntryList[]) _mapValuesIter.next();
+                    _listIndex = 0;
+                }
+                else
                 {
                     break;  // while
                 }
 
-                SymbolTableEntryList entryList =
-                    (SymbolTableEntryList) _mapValuesIter.next();
-                _listIter = entryList.iterator();
+                SymbolTableEntryList entryList = _lists[_listIndex];
+                if (entryList != null)
+                {
+                    _listIter = entryList.iterator();
+                }
             }
 
             if (_listIter.hasNext())
@@ -21,11 +21,23 @@ import com.steelcandy.common.debug.Assert;
 
 import com.steelcandy.common.NoSuchItemException;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
     An abstract base class for classes of immutable symbol table that
     delegate to another symbol table, except that any and all types
     associated with the other symbol table and its entries are resolved using
     a type resolver.
+    <p>
+    While the other symbol table is versioned and its contents (and those
+    of its ancestors) don't change, the resolving entry created from each
+    of its entries is reused every time that that entry is found, so that
+    the same entries are found every time. (This also allows any
+    resolution of types that a resolving entry caches to be reused.) All
+    of the resolving entries are discarded as soon as the other table's
+    contents change, and a new resolving entry is always created for an
+    entry whose first result type can still be set, since its types can
+    change without the table's contents changing.
 
     @author James MacKay
     @see TypeResolver
@@ -45,6 +57,12 @@ public abstract class AbstractTypeResolvingSymbolTable
     */
     private TypeResolver _resolver;
 
+    /**
+        The resolving entries created from the entries of '_table' since
+        its contents last changed, or null if none have been created yet.
+    */
+    private volatile ResolvingEntries _resolvingEntries;
+
 
     // Constructors
 
@@ -63,6 +81,7 @@ public abstract class AbstractTypeResolvingSymbolTable
 
         _table = table;
         _resolver = resolver;
+        _resolvingEntries = null;
     }
 
 
@@ -215,19 +234,45 @@ public abstract class AbstractTypeResolvingSymbolTable
     }
 
     /**
+        Note: this implementation reuses the resolving entry created from
+        'entry' if there is one and it's still valid.
+
         @see AbstractTransformingSymbolTable#transform(SymbolTableEntry)
     */
     protected SymbolTableEntry transform(SymbolTableEntry entry)
     {
         Assert.require(entry != null);
 
-        SymbolTableEntry result = createResolvingEntry(entry);
+        SymbolTableEntry result = null;
+
+        long version = contentsVersion(_table);
+        if (version >= 0 && entry.canSetFirstResultType() == false)
+        {
+            ResolvingEntries entries = _resolvingEntries;
+            if (entries == null || entries.version() != version)
+            {
+                // Note: another thread may replace 'entries' at the same
+                // time, in which case some resolving entries are just
+                // created again.
+                entries = new ResolvingEntries(version);
+                _resolvingEntries = entries;
+            }
+
+            result = entries.get(entry);
+            if (result == null)
+            {
+                result = entries.add(entry, createResolvingEntry(entry));
+            }
+        }
+        else
+        {
+            result = createResolvingEntry(entry);
+        }
 
         Assert.ensure(result != null);
         return result;
     }
 
-
     /**
         @param t a type
         @return the result of resolving 't' using our type resolver
@@ -266,4 +311,145 @@ public abstract class AbstractTypeResolvingSymbolTable
         createResolvingEntry(SymbolTableEntry entry);
         // Assert.require(entry != null);
         // Assert.ensure(result != null);
+
+
+    // Inner classes
+
+    /**
+        The class of object that maps entries of the symbol table that an
+        AbstractTypeResolvingSymbolTable delegates to to the resolving
+        entries created from them, while that table has a given version.
+        Entries are compared by identity since different entries can be
+        equal.
+    */
+    private static class ResolvingEntries
+    {
+        // Private fields
+
+        /**
+            The version of the symbol table (and its ancestors) whose
+            entries we map.
+        */
+        private final long _version;
+
+        /**
+            A map from an EntryKey for each entry to the resolving entry
+            created from it.
+        */
+        private final ConcurrentHashMap _entries;
+
+
+        // Constructors
+
+        /**
+            Constructs an empty ResolvingEntries.
+
+            @param version the version of the symbol table and its
+            ancestors whose entries the ResolvingEntries is to map
+        */
+        public ResolvingEntries(long version)
+        {
+            Assert.require(version >= 0);
+
+            _version = version;
+            _entries = new ConcurrentHashMap();
+        }
+
+
+        // Public methods
+
+        /**
+            @return the version of the symbol table and its ancestors
+            whose entries we map
+        */
+        public long version()
+        {
+            return _version;
+        }
+
+        /**
+            @param entry an entry of the symbol table
+            @return the resolving entry created from 'entry', or null if
+            there isn't one
+        */
+        public SymbolTableEntry get(SymbolTableEntry entry)
+        {
+            Assert.require(entry != null);
+
+            // 'result' may be null
+            return (SymbolTableEntry) _entries.get(new EntryKey(entry));
+        }
+
+        /**
+            Maps the specified entry to the specified resolving entry
+            unless it's already mapped to one.
+
+            @param entry an entry of the symbol table
+            @param resolvingEntry the resolving entry created from 'entry'
+            @return the resolving entry that 'entry' is mapped to
+        */
+        public SymbolTableEntry add(SymbolTableEntry entry,
+                                    SymbolTableEntry resolvingEntry)
+        {
+            Assert.require(entry != null);
+            Assert.require(resolvingEntry != null);
+
+            SymbolTableEntry result = (SymbolTableEntry)
+                _entries.putIfAbsent(new EntryKey(entry), resolvingEntry);
+            if (result == null)
+            {
+                result = resolvingEntry;
+            }
+
+            Assert.ensure(result != null);
+            return result;
+        }
+    }
+
+    /**
+        The class of map key that compares symbol table entries by
+        identity.
+    */
+    private static class EntryKey
+    {
+        // Private fields
+
+        /** The entry that we represent. */
+        private final SymbolTableEntry _entry;
+
+
+        // Constructors
+
+        /**
+            Constructs an EntryKey.
+
+            @param entry the entry that the key represents
+        */
+        public EntryKey(SymbolTableEntry entry)
+        {
+            Assert.require(entry != null);
+
+            _entry = entry;
+        }
+
+
+        // Public methods
+
+        /**
+            @see Object#equals(Object)
+        */
+        public boolean equals(Object obj)
+        {
+            return (obj instanceof EntryKey) &&
+                   ((EntryKey) obj)._entry == _entry;
+        }
+
+        /**
+            @see Object#hashCode
+        */
+        public int hashCode()
+        {
+            return System.identityHashCode(_entry);
+        }
+    }
 }
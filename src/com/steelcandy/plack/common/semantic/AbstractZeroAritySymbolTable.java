@@ -141,6 +141,7 @@ public abstract class AbstractZeroAritySymbolTable
         Object old = _entries.put(entry.name(), entry);
         Assert.check(old == null);
             // i.e. that there wasn't already an entry with the same name
+        incrementVersion();
     }
 
     /**
@@ -179,6 +180,7 @@ public abstract class AbstractZeroAritySymbolTable
 
         SymbolTableEntry result =
             (SymbolTableEntry) _entries.remove(key);
+        incrementVersion();
 
         Assert.ensure(result != null);
         return result;
@@ -226,6 +228,7 @@ public abstract class AbstractZeroAritySymbolTable
             if (entry != null)
             {
                 result = createList(entry);
+                incrementVersion();
             }
         }
 
@@ -266,6 +269,16 @@ public abstract class AbstractZeroAritySymbolTable
 
     // Protected methods
 
+    /**
+        This implementation always returns true.
+
+        @see MinimalAbstractSymbolTable#isVersioned
+    */
+    protected boolean isVersioned()
+    {
+        return true;
+    }
+
     /**
         This implementation considers an entry to be valid iff it is a zero-
         arity entry and is considered valid by our superclass' implementation
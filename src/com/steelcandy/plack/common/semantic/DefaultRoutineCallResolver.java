@@ -20,11 +20,25 @@ package com.steelcandy.plack.common.semantic;
 import com.steelcandy.common.debug.Assert;
 
 import com.steelcandy.common.Resources;
+import com.steelcandy.common.containers.ConcurrentCache;
 
 import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
     The default implementation of the RoutineCallResolver interface.
+    <p>
+    Instances created using createCaching() cache the results of resolving
+    routine calls, keyed on the routine's name, the call's argument types
+    and the identities of the candidates. A cached result is only used if
+    the candidates are the same entries - in the same order - as those
+    that the result was computed from, and if the argument types are equal
+    to those that the result was computed from, so the results are always
+    the same as those of an instance that doesn't cache results. (In
+    particular, a change in the contents of the symbol table that the
+    candidates came from causes different candidates to be passed to
+    resolve(), and so invalidates any results computed from the old
+    candidates.)
 
     @author  James MacKay
 */
@@ -38,6 +52,24 @@ public class DefaultRoutineCallResolver
         _instance = new DefaultRoutineCallResolver();
 
 
+    // Private fields
+
+    /**
+        The cache that maps ResolutionKeys to the CachedResolutions
+        containing the results of the routine call resolutions with those
+        keys, or null if we don't cache resolutions.
+    */
+    private ConcurrentCache _cache;
+
+    /** The number of resolutions whose results were found in our cache. */
+    private AtomicLong _hitCount;
+
+    /**
+        The number of resolutions whose results weren't found in our cache.
+    */
+    private AtomicLong _missCount;
+
+
     // Constructors
 
     /**
@@ -49,16 +81,176 @@ public class DefaultRoutineCallResolver
     }
 
     /**
-        Constructs a DefaultRoutineCallResolver.
+        Creates and returns a new instance of this class that caches the
+        results of at most the specified number of routine call
+        resolutions, discarding the least recently used ones as needed.
+        <p>
+        Since the cached results refer to symbol table entries a caching
+        resolver usually shouldn't outlive the symbol tables whose entries
+        it resolves calls to.
+
+        @param maximumCacheSize the maximum number of resolutions whose
+        results are to be cached
+        @return a new caching instance of this class
+    */
+    public static DefaultRoutineCallResolver
+        createCaching(int maximumCacheSize)
+    {
+        Assert.require(maximumCacheSize > 0);
+
+        return new DefaultRoutineCallResolver(maximumCacheSize);
+    }
+
+    /**
+        Constructs a DefaultRoutineCallResolver that doesn't cache the
+        results of resolving routine calls.
     */
     protected DefaultRoutineCallResolver()
     {
-        // empty
+        _cache = null;
+        _hitCount = new AtomicLong();
+        _missCount = new AtomicLong();
+    }
+
+    /**
+        Constructs a DefaultRoutineCallResolver that caches the results of
+        at most the specified number of routine call resolutions.
+
+        @param maximumCacheSize the maximum number of resolutions whose
+        results are to be cached
+    */
+    protected DefaultRoutineCallResolver(int maximumCacheSize)
+    {
+        Assert.require(maximumCacheSize > 0);
+
+        _cache = new ConcurrentCache(maximumCacheSize);
+        _hitCount = new AtomicLong();
+        _missCount = new AtomicLong();
+    }
+
+
+    // Public methods
+
+    /**
+        Note: if we cache resolutions then this implementation uses the
+        cached result of resolving an identical call with the same
+        candidates, if there is one.
+
+        @see RoutineCallResolver#resolve(SymbolTableEntryList, String, TypeList)
+    */
+    public SymbolTableEntryList
+        resolve(SymbolTableEntryList candidates,
+                String routineName, TypeList argumentTypes)
+    {
+        Assert.require(candidates != null);
+        Assert.require(routineName != null);
+        Assert.require(argumentTypes != null);
+
+        SymbolTableEntryList result;
+
+        if (_cache != null && isCacheable(argumentTypes))
+        {
+            ResolutionKey key = new ResolutionKey(candidates,
+                                            routineName, argumentTypes);
+            CachedResolution cached = (CachedResolution) _cache.get(key);
+
+            result = null;
+            if (cached != null)
+            {
+                result = cached.resultFor(candidates, argumentTypes);
+            }
+
+            if (result == null)
+            {
+                result = super.resolve(candidates, routineName,
+                                       argumentTypes);
+                cached = CachedResolution.
+                    tryToCreate(candidates, argumentTypes, result);
+                _missCount.incrementAndGet();
+                if (cached != null)
+                {
+                    _cache.put(key, cached);
+                }
+            }
+            else
+            {
+                _hitCount.incrementAndGet();
+            }
+        }
+        else
+        {
+            result = super.resolve(candidates, routineName, argumentTypes);
+        }
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+    /**
+        @return true iff we cache the results of resolving routine calls
+    */
+    public boolean isCaching()
+    {
+        return (_cache != null);
+    }
+
+    /**
+        @return the number of routine call resolutions whose results have
+        been found in our cache
+    */
+    public long hitCount()
+    {
+        Assert.require(isCaching());
+
+        return _hitCount.get();
+    }
+
+    /**
+        @return the number of cacheable routine call resolutions whose
+        results weren't found in our cache
+    */
+    public long missCount()
+    {
+        Assert.require(isCaching());
+
+        return _missCount.get();
     }
 
 
     // Protected methods
 
+    /**
+        Indicates whether the result of resolving a call with arguments of
+        the specified types can be cached.
+        <p>
+        This implementation returns false iff any of the types is invalid,
+        since an invalid type is usually considered to be equal to every
+        other type.
+
+        @param argumentTypes the types of the arguments that a routine was
+        called with, in order
+        @return true iff the result of resolving the call can be cached
+    */
+    protected boolean isCacheable(TypeList argumentTypes)
+    {
+        Assert.require(argumentTypes != null);
+
+        boolean result = true;
+
+        int numArgs = argumentTypes.size();
+        for (int i = 0; i < numArgs; i++)
+        {
+            Type t = argumentTypes.get(i);
+            if (t == null || t.isInvalidType())
+            {
+                result = false;
+                break;
+            }
+        }
+
+        return result;
+    }
+
     /**
         @see AbstractRoutineCallResolver#findBestMatches(SymbolTableEntryList, String, TypeList)
     */
@@ -315,4 +507,313 @@ public class DefaultRoutineCallResolver
         Assert.ensure(result.size() <= matches.size());
         return result;
     }
+
+
+    // Inner classes
+
+    /**
+        The class of key used to look up the cached results of resolving
+        routine calls.
+    */
+    private static class ResolutionKey
+    {
+        // Private fields
+
+        /**
+            A hash code computed from the identities of the candidates that
+            the routine call is resolved against.
+        */
+        private int _candidatesHashCode;
+
+        /** The name of the routine that was called. */
+        private String _routineName;
+
+        /** The types of the arguments that the routine was called with. */
+        private TypeListAsKey _argumentTypes;
+
+
+        // Constructors
+
+        /**
+            Constructs a ResolutionKey.
+
+            @param candidates the candidates that the routine call is
+            resolved against
+            @param routineName the name of the routine that was called
+            @param argumentTypes the types of the arguments that the
+            routine was called with, in order
+        */
+        public ResolutionKey(SymbolTableEntryList candidates,
+                             String routineName, TypeList argumentTypes)
+        {
+            Assert.require(candidates != null);
+            Assert.require(routineName != null);
+            Assert.require(argumentTypes != null);
+
+            int hashCode = candidates.size();
+            SymbolTableEntryIterator iter = candidates.iterator();
+            while (iter.hasNext())
+            {
+                hashCode = 31 * hashCode +
+                                System.identityHashCode(iter.next());
+            }
+            _candidatesHashCode = hashCode;
+            _routineName = routineName;
+            _argumentTypes = new TypeListAsKey(argumentTypes);
+        }
+
+
+        // Public methods
+
+        /**
+            @see Object#equals(Object)
+        */
+        public boolean equals(Object obj)
+        {
+            boolean result = false;
+
+            if (obj != null && obj instanceof ResolutionKey)
+            {
+                ResolutionKey key = (ResolutionKey) obj;
+                result =
+                    (_candidatesHashCode == key._candidatesHashCode) &&
+                    _routineName.equals(key._routineName) &&
+                    _argumentTypes.equals(key._argumentTypes);
+            }
+
+            return result;
+        }
+
+        /**
+            @see Object#hashCode
+            @see #equals(Object)
+        */
+        public int hashCode()
+        {
+            return _candidatesHashCode + _routineName.hashCode() +
+                        _argumentTypes.hashCode();
+        }
+    }
+
+    /**
+        The class of object that contains the result of resolving a routine
+        call, along with the candidates and argument types that it was
+        computed from.
+        <p>
+        The result is stored as the indices of the entries in it in the
+        list of candidates, so that a result for a given list of candidates
+        always consists of items from that list. (So a result can be one
+        with no matches, with one match or with several ambiguous matches.)
+        <p>
+        Instances are immutable.
+    */
+    private static class CachedResolution
+    {
+        // Private fields
+
+        /** The candidates that the result was computed from. */
+        private SymbolTableEntry[] _candidates;
+
+        /** The argument types that the result was computed from. */
+        private Type[] _argumentTypes;
+
+        /**
+            The indices in '_candidates' of the entries in the result, in
+            the order in which they appear in the result.
+        */
+        private int[] _resultIndices;
+
+
+        // Constructors
+
+        /**
+            Creates and returns a CachedResolution containing the specified
+            result of resolving a routine call, or returns null if the
+            result can't be cached (because some of its entries aren't
+            candidates).
+
+            @param candidates the candidates that 'result' was computed
+            from
+            @param argumentTypes the argument types that 'result' was
+            computed from
+            @param result the result of resolving the routine call
+            @return a CachedResolution containing 'result', or null if
+            'result' can't be cached
+        */
+        public static CachedResolution
+            tryToCreate(SymbolTableEntryList candidates,
+                        TypeList argumentTypes, SymbolTableEntryList result)
+        {
+            Assert.require(candidates != null);
+            Assert.require(argumentTypes != null);
+            Assert.require(result != null);
+
+            int numCandidates = candidates.size();
+            SymbolTableEntry[] cands = new SymbolTableEntry[numCandidates];
+            for (int i = 0; i < numCandidates; i++)
+            {
+                cands[i] = candidates.get(i);
+            }
+
+            boolean isCacheable = true;
+            int numResults = result.size();
+            int[] indices = new int[numResults];
+            for (int i = 0; i < numResults; i++)
+            {
+                indices[i] = indexOf(cands, result.get(i));
+                if (indices[i] < 0)
+                {
+                    isCacheable = false;
+                    break;
+                }
+            }
+
+            CachedResolution res = null;
+            if (isCacheable)
+            {
+                int numArgs = argumentTypes.size();
+                Type[] args = new Type[numArgs];
+                for (int i = 0; i < numArgs; i++)
+                {
+                    args[i] = argumentTypes.get(i);
+                }
+                res = new CachedResolution(cands, args, indices);
+            }
+
+            // 'res' may be null
+            return res;
+        }
+
+        /**
+            Constructs a CachedResolution.
+
+            @param candidates the candidates that the result was computed
+            from
+            @param argumentTypes the argument types that the result was
+            computed from
+            @param resultIndices the indices in 'candidates' of the entries
+            in the result
+        */
+        private CachedResolution(SymbolTableEntry[] candidates,
+                            Type[] argumentTypes, int[] resultIndices)
+        {
+            Assert.require(candidates != null);
+            Assert.require(argumentTypes != null);
+            Assert.require(resultIndices != null);
+
+            _candidates = candidates;
+            _argumentTypes = argumentTypes;
+            _resultIndices = resultIndices;
+        }
+
+
+        // Public methods
+
+        /**
+            Returns the result of resolving a routine call with the
+            specified candidates and argument types if it's the same as
+            the result that we contain, and returns null otherwise.
+
+            @param candidates the candidates that the routine call is to be
+            resolved against
+            @param argumentTypes the types of the routine call's arguments
+            @return the result of the resolution, or null if we don't know
+            it
+        */
+        public SymbolTableEntryList
+            resultFor(SymbolTableEntryList candidates,
+                      TypeList argumentTypes)
+        {
+            Assert.require(candidates != null);
+            Assert.require(argumentTypes != null);
+
+            SymbolTableEntryList result = null;
+
+            if (isFor(candidates, argumentTypes))
+            {
+                int numResults = _resultIndices.length;
+                result = SymbolTableEntryList.createArrayList(numResults);
+                for (int i = 0; i < numResults; i++)
+                {
+                    result.add(candidates.get(_resultIndices[i]));
+                }
+            }
+
+            // 'result' may be null
+            return result;
+        }
+
+
+        // Private methods
+
+        /**
+            @param candidates the candidates that a routine call is to be
+            resolved against
+            @param argumentTypes the types of the routine call's arguments
+            @return true iff 'candidates' are the same entries as the ones
+            that our result was computed from and 'argumentTypes' are equal
+            to the types that it was computed from
+        */
+        private boolean isFor(SymbolTableEntryList candidates,
+                              TypeList argumentTypes)
+        {
+            Assert.require(candidates != null);
+            Assert.require(argumentTypes != null);
+
+            boolean result = false;
+
+            int numCandidates = _candidates.length;
+            int numArgs = _argumentTypes.length;
+            if (candidates.size() == numCandidates &&
+                argumentTypes.size() == numArgs)
+            {
+                result = true;
+                for (int i = 0; i < numCandidates; i++)
+                {
+                    if (candidates.get(i) != _candidates[i])
+                    {
+                        result = false;
+                        break;
+                    }
+                }
+                for (int i = 0; result && i < numArgs; i++)
+                {
+                    Type t = argumentTypes.get(i);
+                    if (t != _argumentTypes[i] &&
+                        t.equals(_argumentTypes[i]) == false)
+                    {
+                        result = false;
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        /**
+            @param entries an array of entries
+            @param entry an entry
+            @return the index of the first item in 'entries' that is the
+            same object as 'entry', or -1 if there's no such item
+        */
+        private static int indexOf(SymbolTableEntry[] entries,
+                                   SymbolTableEntry entry)
+        {
+            Assert.require(entries != null);
+
+            int result = -1;
+
+            for (int i = 0; i < entries.length; i++)
+            {
+                if (entries[i] == entry)
+                {
+                    result = i;
+                    break;
+                }
+            }
+
+            Assert.ensure(result >= -1);
+            return result;
+        }
+    }
 }
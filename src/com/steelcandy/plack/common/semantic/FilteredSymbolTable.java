@@ -329,16 +329,24 @@ public class FilteredSymbolTable
     {
         Assert.require(list != null);
 
-        SymbolTableEntryList result =
-            SymbolTableEntryList.createArrayList(list.size());
-
-        SymbolTableEntryIterator iter = list.iterator();
-        while (iter.hasNext())
+        SymbolTableEntryList result;
+        if (list.isEmpty())
+        {
+            // Nothing to filter, so use the shared empty list.
+            result = SymbolTableEntryList.createEmptyList();
+        }
+        else
         {
-            SymbolTableEntry entry = iter.next();
-            if (_filter.isSatisfied(entry))
+            result = SymbolTableEntryList.createArrayList(list.size());
+
+            SymbolTableEntryIterator iter = list.iterator();
+            while (iter.hasNext())
             {
-                result.add(entry);
+                SymbolTableEntry entry = iter.next();
+                if (_filter.isSatisfied(entry))
+                {
+                    result.add(entry);
+                }
             }
         }
 
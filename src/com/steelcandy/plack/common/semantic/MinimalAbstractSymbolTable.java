@@ -18,6 +18,7 @@
 package com.steelcandy.plack.common.semantic;
 
 import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.debug.ContractTier;
 
 import com.steelcandy.common.Resources;
 import com.steelcandy.common.UnexpectedException;
@@ -25,10 +26,19 @@ import com.steelcandy.common.containers.Containers;
 import com.steelcandy.common.io.Io;
 
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
     A minimal abstract base class for most (if not all) SymbolTable
     classes.
+    <p>
+    Versioned symbol tables - that is, those whose isVersioned() method
+    returns true - cache the results of findRecursively(String, int) when
+    they have a parent table. Each versioned table has a version that is
+    incremented every time an entry is added to it or removed from it, and
+    a cached result is only used while none of the versions of the table
+    and its ancestors have changed since the result was cached.
 
     @author James MacKay
 */
@@ -41,6 +51,10 @@ public abstract class MinimalAbstractSymbolTable
     private static final Resources _resources =
         CommonSemanticResourcesLocator.resources;
 
+    /** The tier of expensive contract checks used by this class. */
+    private static final ContractTier EXPENSIVE =
+        ContractTier.expensive(MinimalAbstractSymbolTable.class);
+
     /** Resource identifiers. */
     private static final String
         INVALID_SYMBOL_TABLE_ENTRY_KIND_MSG =
@@ -73,6 +87,24 @@ public abstract class MinimalAbstractSymbolTable
     /** Our parent symbol table, or null if we don't have one. */
     private SymbolTable _parent;
 
+    /**
+        Our version, which is incremented every time our contents change.
+
+        @see #incrementVersion
+    */
+    private long _version;
+
+    /**
+        A map from the names of the entries that have been found
+        recursively in this table to information about the results of
+        finding them. Each key is a String and each value is an array of
+        CachedLookups, indexed by arity, any of whose items may be null.
+        <p>
+        The map is concurrent so that lookups can still safely be done
+        concurrently, as long as the table isn't also being modified.
+    */
+    private Map _lookupCache;
+
 
     // Constructors
 
@@ -84,6 +116,8 @@ public abstract class MinimalAbstractSymbolTable
     public MinimalAbstractSymbolTable()
     {
         _parent = null;
+        _version = 0L;
+        _lookupCache = new ConcurrentHashMap();
     }
 
     /**
@@ -97,23 +131,52 @@ public abstract class MinimalAbstractSymbolTable
         Assert.require(parent != null);
 
         setParent(parent);
+        _version = 0L;
+        _lookupCache = new ConcurrentHashMap();
     }
 
 
     // Public methods
 
     /**
+        Note: if this table is versioned and has a parent then this
+        implementation caches its results.
+
         @see SymbolTable#findRecursively(String, int)
+        @see #isVersioned
     */
     public SymbolTableEntryList findRecursively(String name, int arity)
     {
         Assert.require(name != null);
         Assert.require(arity >= 0);
 
-        SymbolTableEntryList result = find(name, arity);
-        if (result.isEmpty() && hasParent())
+        SymbolTableEntryList result;
+        if (hasParent())
         {
-            result = parent().findRecursively(name, arity);
+            long version = ancestryVersion();
+            result = null;
+            if (version >= 0)
+            {
+                result = cachedLookup(name, arity, version);
+            }
+
+            if (result == null)
+            {
+                result = find(name, arity);
+                if (result.isEmpty())
+                {
+                    result = parent().findRecursively(name, arity);
+                }
+
+                if (version >= 0)
+                {
+                    cacheLookup(name, arity, version, result);
+                }
+            }
+        }
+        else
+        {
+            result = find(name, arity);
         }
 
         Assert.ensure(result != null);
@@ -258,6 +321,32 @@ public abstract class MinimalAbstractSymbolTable
         return NO_INVALID_ARG_TYPES_PREDICATE;
     }
 
+    /**
+        Returns a value that changes every time that the contents of the
+        specified symbol table or any of its ancestors change, or returns
+        -1 if there's no such value for it (for example because it or one
+        of its ancestors isn't versioned).
+
+        @param table a symbol table
+        @return the sum of the versions of 'table' and all of its
+        ancestors, or -1 if there's no such value
+        @see #isVersioned
+    */
+    public static long contentsVersion(SymbolTable table)
+    {
+        Assert.require(table != null);
+
+        long result = -1L;
+
+        if (table instanceof MinimalAbstractSymbolTable)
+        {
+            result = ((MinimalAbstractSymbolTable) table).ancestryVersion();
+        }
+
+        Assert.ensure(result >= -1L);
+        return result;
+    }
+
 
     // Protected methods
 
@@ -272,13 +361,27 @@ public abstract class MinimalAbstractSymbolTable
         'argumentTypes' according to 'matcher'
     */
     protected SymbolTableEntryList
-        findMatches(SymbolTableEntryList candidates, TypeList argumentTypes,
+        findMatches(final SymbolTableEntryList candidates,
+                    final TypeList argumentTypes,
                     ArgumentTypeMatcher matcher)
     {
         Assert.require(candidates != null);
-        // Assert.require("for each item 'c' in 'candidates' " +
-        //                  "c.arity() == argumentTypes.size()");
         Assert.require(argumentTypes != null);
+        EXPENSIVE.require(new Assert.Condition()
+        {
+            public boolean holds()
+            {
+                // Is c.arity() == argumentTypes.size() for each item 'c'
+                // in 'candidates'?
+                boolean result = true;
+                SymbolTableEntryIterator iter = candidates.iterator();
+                while (result && iter.hasNext())
+                {
+                    result = (iter.next().arity() == argumentTypes.size());
+                }
+                return result;
+            }
+        });
         Assert.require(matcher != null);
 
         SymbolTableEntryList result =
@@ -434,6 +537,37 @@ public abstract class MinimalAbstractSymbolTable
         return Containers.createHashMap(initialCapacity);
     }
 
+    /**
+        Indicates whether this table is versioned: that is, whether its
+        version is incremented every time its contents change. A table
+        whose find(String, int) method's results can change without its
+        version changing - for example because it delegates to another
+        table - must not be versioned.
+        <p>
+        This implementation always returns false. Subclasses that call
+        incrementVersion() whenever their contents change should override
+        it to return true.
+
+        @return true iff this table is versioned
+        @see #incrementVersion
+    */
+    protected boolean isVersioned()
+    {
+        return false;
+    }
+
+    /**
+        Increments this table's version. Versioned subclasses must call
+        this method every time that entries are added to or removed from
+        this table.
+
+        @see #isVersioned
+    */
+    protected void incrementVersion()
+    {
+        _version += 1;
+    }
+
     /**
         Removes constructs from all of our entries, though not the ones in
         our parent table.
@@ -582,6 +716,117 @@ public abstract class MinimalAbstractSymbolTable
 
     // Private methods
 
+    /**
+        Returns a value that changes every time that the contents of this
+        table or any of its ancestors change, or returns -1 if this table
+        or one of its ancestors isn't versioned.
+        <p>
+        Since each table's version only ever increases the sum of the
+        versions of this table and its ancestors is such a value.
+
+        @return the sum of our version and those of all of our ancestors,
+        or -1 if we or any of our ancestors aren't versioned
+    */
+    private long ancestryVersion()
+    {
+        long result = 0L;
+
+        MinimalAbstractSymbolTable t = this;
+        while (true)
+        {
+            if (t.isVersioned() == false)
+            {
+                result = -1L;
+                break;  // while
+            }
+            result += t._version;
+
+            if (t.hasParent() == false)
+            {
+                break;  // while
+            }
+            SymbolTable p = t.parent();
+            if (p instanceof MinimalAbstractSymbolTable)
+            {
+                t = (MinimalAbstractSymbolTable) p;
+            }
+            else
+            {
+                result = -1L;
+                break;  // while
+            }
+        }
+
+        return result;
+    }
+
+    /**
+        Returns the cached result of recursively finding the entries with
+        the specified name and arity, provided that it was cached when the
+        sum of our and our ancestors' versions was the specified version.
+
+        @param name the name of the entries to find
+        @param arity the arity of the entries to find
+        @param version the current sum of our and our ancestors' versions
+        @return the cached result, or null if there isn't a valid one
+        @see #ancestryVersion
+    */
+    private SymbolTableEntryList
+        cachedLookup(String name, int arity, long version)
+    {
+        Assert.require(name != null);
+        Assert.require(arity >= 0);
+        Assert.require(version >= 0);
+
+        SymbolTableEntryList result = null;
+
+        CachedLookup[] lookups = (CachedLookup[]) _lookupCache.get(name);
+        if (lookups != null && arity < lookups.length)
+        {
+            CachedLookup lookup = lookups[arity];
+            if (lookup != null && lookup.version() == version)
+            {
+                result = lookup.entries();
+            }
+        }
+
+        // 'result' may be null
+        return result;
+    }
+
+    /**
+        Caches the specified result of recursively finding the entries with
+        the specified name and arity.
+
+        @param name the name of the entries that were found
+        @param arity the arity of the entries that were found
+        @param version the sum of our and our ancestors' versions when the
+        entries were found
+        @param entries the entries that were found
+    */
+    private void cacheLookup(String name, int arity, long version,
+                             SymbolTableEntryList entries)
+    {
+        Assert.require(name != null);
+        Assert.require(arity >= 0);
+        Assert.require(version >= 0);
+        Assert.require(entries != null);
+
+        CachedLookup[] lookups = (CachedLookup[]) _lookupCache.get(name);
+        if (lookups == null || arity >= lookups.length)
+        {
+            CachedLookup[] newLookups = new CachedLookup[arity + 1];
+            if (lookups != null)
+            {
+                System.arraycopy(lookups, 0, newLookups, 0,
+                                 lookups.length);
+            }
+            lookups = newLookups;
+        }
+        lookups[arity] = new CachedLookup(version, entries);
+        _lookupCache.put(name, lookups);
+    }
+
     /**
         Sets the specified symbol table to be this symbol table's parent,
         replacing any existing parent.
@@ -623,6 +868,66 @@ public abstract class MinimalAbstractSymbolTable
 
     // Inner classes
 
+    /**
+        The class of object that represents the cached result of
+        recursively finding the entries with a given name and arity.
+        <p>
+        Instances are immutable.
+    */
+    private static class CachedLookup
+    {
+        // Private fields
+
+        /**
+            The sum of the versions of the table and its ancestors when the
+            entries were found.
+        */
+        private final long _version;
+
+        /** The entries that were found. */
+        private final SymbolTableEntryList _entries;
+
+
+        // Constructors
+
+        /**
+            Constructs a CachedLookup.
+
+            @param version the sum of the versions of the table and its
+            ancestors when the entries were found
+            @param entries the entries that were found
+        */
+        public CachedLookup(long version, SymbolTableEntryList entries)
+        {
+            Assert.require(version >= 0);
+            Assert.require(entries != null);
+
+            _version = version;
+            _entries = entries;
+        }
+
+
+        // Public methods
+
+        /**
+            @return the sum of the versions of the table and its ancestors
+            when the entries were found
+        */
+        public long version()
+        {
+            return _version;
+        }
+
+        /**
+            @return the entries that were found
+        */
+        public SymbolTableEntryList entries()
+        {
+            Assert.ensure(_entries != null);
+            return _entries;
+        }
+    }
+
     /**
         A predicate satisfied only by those symbol table entries that have
         no arguments with invalid types.
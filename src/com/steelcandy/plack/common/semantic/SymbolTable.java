@@ -88,6 +88,9 @@ public interface SymbolTable
         Returns a (possibly empty) list of the entries in this table with
         the specified name and arity. This table's parent table, if any,
         is not searched.
+        <p>
+        The returned list may be shared and/or unmodifiable, so it
+        shouldn't be modified.
 
         @param name the name of the entries to find
         @param arity the arity of the entries to find
@@ -104,6 +107,9 @@ public interface SymbolTable
         name and arity, or if there are no such entries in this table
         then returns the results of finding matching entries recursively
         in this table's parent table, if it has one.
+        <p>
+        The returned list may be shared and/or unmodifiable, so it
+        shouldn't be modified.
 
         @param name the name of the entries to find
         @param arity the arity of the entries to find
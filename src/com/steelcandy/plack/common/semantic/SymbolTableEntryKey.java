@@ -77,6 +77,24 @@ public class SymbolTableEntryKey
 
     // Public methods
 
+    /**
+        @return the name of the entries that this key is the key for
+    */
+    public String name()
+    {
+        Assert.ensure(_name != null);
+        return _name;
+    }
+
+    /**
+        @return the arity of the entries that this key is the key for
+    */
+    public int arity()
+    {
+        Assert.ensure(_arity >= 0);
+        return _arity;
+    }
+
     /**
         @see Object#equals(Object)
     */
@@ -0,0 +1,560 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.semantic.testing;
+
+import com.steelcandy.plack.common.constructs.Construct;
+import com.steelcandy.plack.common.source.SourceCode;
+import com.steelcandy.plack.common.source.SourceLocation;
+import com.steelcandy.plack.common.semantic.*;
+
+import com.steelcandy.testing.*;
+
+import com.steelcandy.common.debug.Assert;
+
+/**
+    Tests that an AbstractTypeResolvingSymbolTable reuses the resolving
+    entries it creates only while the contents of the symbol table that it
+    delegates to don't change, so that an entry that has been removed or
+    redefined is never found through a stale resolving entry.
+
+    @author James MacKay
+    @see AbstractTypeResolvingSymbolTable
+*/
+public class TypeResolvingSymbolTableTest
+    extends SingleTest
+{
+    // Constants
+
+    /** The name of the entries that the test adds and removes. */
+    private static final String NAME = "x";
+
+
+    // Overridden methods
+
+    /**
+        @see Test#description
+    */
+    public String description()
+    {
+        return "tests that a type resolving symbol table doesn't find " +
+               "stale resolving entries after the contents of the table " +
+               "that it delegates to change";
+    }
+
+    /**
+        @see AbstractTest#runTest
+    */
+    protected void runTest()
+        throws Throwable
+    {
+        boolean ok = true;
+
+        TestSymbolTable table = new TestSymbolTable();
+        ResolvingTable resolving = new ResolvingTable(table);
+
+        SymbolTableEntry original = new TestEntry(NAME, 1);
+        table.add(original);
+
+        SymbolTableEntry first = findOne(resolving);
+        SymbolTableEntry second = findOne(resolving);
+        if (first != second)
+        {
+            writer().writeLine(TestWriter.DEBUG, "the resolving entry " +
+                "for an unchanged table wasn't reused");
+            ok = false;
+        }
+
+        // Redefine the entry.
+        table.remove(NAME, 0);
+        table.add(new TestEntry(NAME, 2));
+
+        SymbolTableEntry redefined = findOne(resolving);
+        if (redefined == first || redefined.modifiers() != 2)
+        {
+            writer().writeLine(TestWriter.DEBUG, "the stale resolving " +
+                "entry was found after the entry was redefined");
+            ok = false;
+        }
+
+        // Remove the entry, then add the original entry back.
+        table.remove(NAME, 0);
+        if (resolving.find(NAME, 0).isEmpty() == false)
+        {
+            writer().writeLine(TestWriter.DEBUG, "an entry was found " +
+                "after it was removed");
+            ok = false;
+        }
+        table.add(original);
+
+        SymbolTableEntry readded = findOne(resolving);
+        if (readded == first || readded == redefined ||
+            readded.modifiers() != 1)
+        {
+            writer().writeLine(TestWriter.DEBUG, "a stale resolving " +
+                "entry was found after the entry was re-added");
+            ok = false;
+        }
+
+        // Entries whose first result type can still be set are never
+        // reused, since their types can change without the table's
+        // contents changing.
+        table.remove(NAME, 0);
+        TestEntry settable = new TestEntry(NAME, 3);
+        settable.setCanSetFirstResultType(true);
+        table.add(settable);
+        if (findOne(resolving) == findOne(resolving))
+        {
+            writer().writeLine(TestWriter.DEBUG, "the resolving entry " +
+                "for an entry with a settable result type was reused");
+            ok = false;
+        }
+
+        setSucceeded(ok);
+    }
+
+
+    // Private methods
+
+    /**
+        @param table the symbol table to search
+        @return the only entry in 'table' named NAME with arity 0
+    */
+    private SymbolTableEntry findOne(SymbolTable table)
+    {
+        Assert.require(table != null);
+
+        SymbolTableEntryList entries = table.find(NAME, 0);
+        Assert.check(entries.size() == 1);
+
+        SymbolTableEntry result = entries.get(0);
+
+        Assert.ensure(result != null);
+        return result;
+    }
+
+
+    // Inner classes
+
+    /**
+        The class of symbol table that the test's entries are added to.
+    */
+    private static class TestSymbolTable
+        extends AbstractSymbolTable
+    {
+        // Public methods
+
+        /**
+            @see SymbolTable#removeConstructs
+        */
+        public void removeConstructs()
+        {
+            // empty
+        }
+
+
+        // Protected methods
+
+        /**
+            @see MinimalAbstractSymbolTable#isValidEntryKind(int)
+        */
+        protected boolean isValidEntryKind(int kind)
+        {
+            return true;
+        }
+
+        /**
+            @see MinimalAbstractSymbolTable#checkForDuplicate(SymbolTableEntry)
+        */
+        protected void checkForDuplicate(SymbolTableEntry entry)
+            throws DuplicateSymbolTableEntryException
+        {
+            Assert.require(entry != null);
+
+            // empty: the test never adds duplicates
+        }
+    }
+
+    /**
+        The class of type resolving symbol table that the test checks.
+    */
+    private static class ResolvingTable
+        extends AbstractTypeResolvingSymbolTable
+    {
+        // Constructors
+
+        /**
+            Constructs a ResolvingTable.
+
+            @param table the symbol table that the ResolvingTable is to
+            delegate to
+        */
+        public ResolvingTable(SymbolTable table)
+        {
+            super(table, IdentityTypeResolver.instance());
+        }
+
+
+        // Protected methods
+
+        /**
+            @see AbstractTypeResolvingSymbolTable#createResolvingEntry(SymbolTableEntry)
+        */
+        protected SymbolTableEntry
+            createResolvingEntry(SymbolTableEntry entry)
+        {
+            Assert.require(entry != null);
+
+            return new ResolvingEntry(entry, typeResolver());
+        }
+    }
+
+    /**
+        The class of resolving entry that a ResolvingTable creates.
+    */
+    private static class ResolvingEntry
+        extends AbstractCachingTypeResolvingSymbolTableEntry
+    {
+        // Constructors
+
+        /**
+            Constructs a ResolvingEntry.
+
+            @param entry the original symbol table entry
+            @param resolver the type resolver to use
+        */
+        public ResolvingEntry(SymbolTableEntry entry, TypeResolver resolver)
+        {
+            super(entry, resolver);
+        }
+
+
+        // Public methods
+
+        /**
+            @see SymbolTableEntry#removeConstructs
+        */
+        public void removeConstructs()
+        {
+            // empty
+        }
+
+
+        // Protected methods
+
+        /**
+            @see AbstractTypeResolvingSymbolTableEntry#createResolvingEntry(SymbolTableEntry)
+        */
+        protected SymbolTableEntry
+            createResolvingEntry(SymbolTableEntry entry)
+        {
+            Assert.require(entry != null);
+
+            return new ResolvingEntry(entry, typeResolver());
+        }
+    }
+
+    /**
+        The class of symbol table entry that the test adds to its symbol
+        table. Entries have no arguments and no results, and are
+        distinguished by their modifiers.
+    */
+    private static class TestEntry
+        extends AbstractSymbolTableEntry
+    {
+        // Private fields
+
+        /** The entry's name. */
+        private String _name;
+
+        /** The entry's modifiers. */
+        private int _modifiers;
+
+        /**
+            Indicates whether the entry's first result type can be set.
+        */
+        private boolean _canSetFirstResultType;
+
+
+        // Constructors
+
+        /**
+            Constructs a TestEntry.
+
+            @param name the entry's name
+            @param modifiers the entry's modifiers
+        */
+        public TestEntry(String name, int modifiers)
+        {
+            Assert.require(name != null);
+
+            _name = name;
+            _modifiers = modifiers;
+            _canSetFirstResultType = false;
+        }
+
+
+        // Public methods
+
+        /**
+            Sets whether this entry's first result type can be set.
+
+            @param value true iff the entry's first result type is to be
+            settable
+        */
+        public void setCanSetFirstResultType(boolean value)
+        {
+            _canSetFirstResultType = value;
+        }
+
+        /**
+            @see SymbolTableEntry#canSetFirstResultType
+        */
+        public boolean canSetFirstResultType()
+        {
+            return _canSetFirstResultType;
+        }
+
+        /**
+            @see SymbolTableEntry#name
+        */
+        public String name()
+        {
+            return _name;
+        }
+
+        /**
+            @see SymbolTableEntry#modifiers
+        */
+        public int modifiers()
+        {
+            return _modifiers;
+        }
+
+        /**
+            @see SymbolTableEntry#isDeclaration
+        */
+        public boolean isDeclaration()
+        {
+            return false;
+        }
+
+        /**
+            @see SymbolTableEntry#definition
+        */
+        public Construct definition()
+            throws EntryConstructRemovedException
+        {
+            throw new EntryConstructRemovedException();
+        }
+
+        /**
+            @see SymbolTableEntry#sourceCode
+        */
+        public SourceCode sourceCode()
+            throws EntryConstructRemovedException
+        {
+            throw new EntryConstructRemovedException();
+        }
+
+        /**
+            @see SymbolTableEntry#location
+        */
+        public SourceLocation location()
+            throws EntryConstructRemovedException
+        {
+            throw new EntryConstructRemovedException();
+        }
+
+        /**
+            @see SymbolTableEntry#kind
+        */
+        public int kind()
+        {
+            return 0;
+        }
+
+        /**
+            @see SymbolTableEntry#kindDescription
+        */
+        public String kindDescription()
+        {
+            return "test entry";
+        }
+
+        /**
+            @see SymbolTableEntry#accessibility
+        */
+        public int accessibility()
+        {
+            return 0;
+        }
+
+        /**
+            @see SymbolTableEntry#accessibilityDescription
+        */
+        public String accessibilityDescription()
+        {
+            return "public";
+        }
+
+        /**
+            @see SymbolTableEntry#isAtLeastAsAccessibleAs(SymbolTableEntry)
+        */
+        public boolean isAtLeastAsAccessibleAs(SymbolTableEntry entry)
+        {
+            Assert.require(entry != null);
+
+            return true;
+        }
+
+        /**
+            @see SymbolTableEntry#arity
+        */
+        public int arity()
+        {
+            return 0;
+        }
+
+        /**
+            @see SymbolTableEntry#argumentConstruct(int)
+        */
+        public Construct argumentConstruct(int index)
+            throws EntryConstructRemovedException
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < arity());
+
+            throw new EntryConstructRemovedException();
+        }
+
+        /**
+            @see SymbolTableEntry#argumentType(int)
+        */
+        public Type argumentType(int index)
+            throws MissingTypeException
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < arity());
+
+            throw new MissingTypeException();
+        }
+
+        /**
+            @see SymbolTableEntry#argumentModifiers(int)
+        */
+        public int argumentModifiers(int index)
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < arity());
+
+            return 0;
+        }
+
+        /**
+            @see SymbolTableEntry#numberOfResults
+        */
+        public int numberOfResults()
+        {
+            return 0;
+        }
+
+        /**
+            @see SymbolTableEntry#resultConstruct(int)
+        */
+        public Construct resultConstruct(int index)
+            throws EntryConstructRemovedException
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < numberOfResults());
+
+            throw new EntryConstructRemovedException();
+        }
+
+        /**
+            @see SymbolTableEntry#resultType(int)
+        */
+        public Type resultType(int index)
+            throws MissingTypeException
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < numberOfResults());
+
+            throw new MissingTypeException();
+        }
+
+        /**
+            @see SymbolTableEntry#firstResultType
+        */
+        public Type firstResultType()
+            throws MissingTypeException
+        {
+            Assert.require(numberOfResults() > 0);
+
+            throw new MissingTypeException();
+        }
+
+        /**
+            @see SymbolTableEntry#resultModifiers(int)
+        */
+        public int resultModifiers(int index)
+        {
+            Assert.require(index >= 0);
+            Assert.require(index < numberOfResults());
+
+            return 0;
+        }
+
+        /**
+            @see SymbolTableEntry#removeConstructs
+        */
+        public void removeConstructs()
+        {
+            // empty
+        }
+
+        /**
+            @see SymbolTableEntry#displaySignature
+        */
+        public String displaySignature()
+        {
+            return _name;
+        }
+
+        /**
+            @see SymbolTableEntry#displayFull
+        */
+        public String displayFull()
+        {
+            return _name + " [" + _modifiers + "]";
+        }
+    }
+
+
+    // Main method
+
+    /**
+        Runs this test.
+
+        @param args the command line arguments
+    */
+    public static void main(String[] args)
+    {
+        TypeResolvingSymbolTableTest t = new TypeResolvingSymbolTableTest();
+        EXECUTOR.executeAndExit(t, args);
+    }
+}
@@ -26,6 +26,7 @@ import com.steelcandy.plack.common.source.SourceCode;
 import com.steelcandy.common.NoSuchItemException;
 import com.steelcandy.common.Resources;
 import com.steelcandy.common.Utilities;
+import com.steelcandy.common.chars.CharacterClassTable;
 import com.steelcandy.common.io.Io;
 
 import java.io.*;
@@ -37,6 +38,11 @@ import java.io.*;
     <p>
     Note: unlike regular Java iterators a CharacterIterator must be close()d
     once it is no longer being used.
+    <p>
+    An iterator reads characters from its Reader a buffer at a time, which
+    also allows it to consume whole runs of characters in the same class at
+    once: see the appendWhile(), appendUntil(), discardWhile() and
+    discardUntil() methods.
 
     @author James MacKay
     @see #close
@@ -52,6 +58,9 @@ public class CharacterIterator
     /** Resource identifiers. */
     private static final String NO_MORE_CHARS_MSG = "NO_MORE_CHARS_MSG";
 
+    /** The maximum number of characters we read from our Reader at once. */
+    private static final int BUFFER_SIZE = 4096;
+
 
     // Private fields
 
@@ -70,21 +79,22 @@ public class CharacterIterator
     */
     private char _errorChar;
 
-
     /**
-        The next character to be returned by this iterator, iff _useNextChar
-        is true. Otherwise this variable does NOT hold the next character to
-        be returned by this iterator.
-
-        @see #_useNextChar
+        The buffer containing the characters that we've read from our
+        Reader: the ones from index _bufferStart up to but not including
+        index _bufferEnd are the next characters to be returned by this
+        iterator.
     */
-    private char _nextChar;
+    private char[] _buffer = new char[BUFFER_SIZE];
+
+    /** The index in _buffer of the next character to be returned. */
+    private int _bufferStart;
 
     /**
-        Indicates whether _nextChar is the next character to be returned by
-        this iterator.
+        The index in _buffer immediately after the last character in it
+        that's still to be returned.
     */
-    private boolean _useNextChar;
+    private int _bufferEnd;
 
 
     // Constructors
@@ -116,32 +126,7 @@ public class CharacterIterator
     */
     public boolean hasNext()
     {
-        boolean result = false;
-        if (_useNextChar)
-        {
-            result = true;
-        }
-        else
-        {
-            try
-            {
-                int ch = _reader.read();
-                if (ch != -1)
-                {
-                    _nextChar = (char) ch;
-                    _useNextChar = true;
-                    result = true;
-                }
-            }
-            catch (IOException ex)
-            {
-                handleReadException(ex);
-                _useNextChar = false;
-                result = false;
-            }
-        }
-
-        return result;
+        return (_bufferStart < _bufferEnd) || fillBuffer();
     }
 
     /**
@@ -157,13 +142,13 @@ public class CharacterIterator
     */
     public char peek()
     {
-        if (_useNextChar == false)
+        if (_bufferStart == _bufferEnd && fillBuffer() == false)
         {
-            _nextChar = getCharFromSource();
-            _useNextChar = true;
+            String msg = _resources.getMessage(NO_MORE_CHARS_MSG);
+            throw new NoSuchItemException(msg);
         }
 
-        return _nextChar;
+        return _buffer[_bufferStart];
     }
 
     /**
@@ -175,10 +160,11 @@ public class CharacterIterator
     public char next()
     {
         char result;
-        if (_useNextChar)
+
+        if (_bufferStart < _bufferEnd)
         {
-            _useNextChar = false;
-            result = _nextChar;
+            result = _buffer[_bufferStart];
+            _bufferStart += 1;
         }
         else
         {
@@ -204,6 +190,74 @@ public class CharacterIterator
         next();
     }
 
+    /**
+        Consumes all of the characters from this iterator up to but not
+        including the first one that isn't in the specified class of
+        characters, appending them to the specified buffer.
+
+        @param table the table representing the class of characters to
+        consume
+        @param buf the buffer to append the consumed characters to
+        @return the number of characters consumed
+    */
+    public int appendWhile(CharacterClassTable table, StringBuffer buf)
+    {
+        Assert.require(table != null);
+        Assert.require(buf != null);
+
+        return consume(table, true, buf);
+    }
+
+    /**
+        Consumes all of the characters from this iterator up to but not
+        including the first one that is in the specified class of
+        characters, appending them to the specified buffer.
+
+        @param table the table representing the class of the first
+        character that isn't to be consumed
+        @param buf the buffer to append the consumed characters to
+        @return the number of characters consumed
+    */
+    public int appendUntil(CharacterClassTable table, StringBuffer buf)
+    {
+        Assert.require(table != null);
+        Assert.require(buf != null);
+
+        return consume(table, false, buf);
+    }
+
+    /**
+        Consumes all of the characters from this iterator up to but not
+        including the first one that isn't in the specified class of
+        characters.
+
+        @param table the table representing the class of characters to
+        consume
+        @return the number of characters consumed
+    */
+    public int discardWhile(CharacterClassTable table)
+    {
+        Assert.require(table != null);
+
+        return consume(table, true, null);
+    }
+
+    /**
+        Consumes all of the characters from this iterator up to but not
+        including the first one that is in the specified class of
+        characters.
+
+        @param table the table representing the class of the first
+        character that isn't to be consumed
+        @return the number of characters consumed
+    */
+    public int discardUntil(CharacterClassTable table)
+    {
+        Assert.require(table != null);
+
+        return consume(table, false, null);
+    }
+
     /**
         Resets this iterator to return characters read from (the start of)
         the specified Reader.
@@ -215,7 +269,8 @@ public class CharacterIterator
     {
         Io.tryToClose(_reader);
         _reader = newReader;
-        _useNextChar = false;
+        _bufferStart = 0;
+        _bufferEnd = 0;
     }
 
     /**
@@ -230,30 +285,33 @@ public class CharacterIterator
     // Protected methods
 
     /**
+        Note: this method should only be called when our buffer is empty.
+
         @return the next character from our Reader
         @exception NoSuchItemException thrown if our Reader has no more
         characters to return
     */
     protected char getCharFromSource()
     {
+        Assert.require(_bufferStart == _bufferEnd);
+
         try
         {
-            int ch = _reader.read();
-            if (ch == -1)
+            if (readIntoBuffer() == false)
             {
                 String msg = _resources.getMessage(NO_MORE_CHARS_MSG);
                 throw new NoSuchItemException(msg);
             }
-            else
-            {
-                return (char) ch;
-            }
         }
         catch (IOException ex)
         {
             handleReadException(ex);
             return _errorChar;
         }
+
+        char result = _buffer[_bufferStart];
+        _bufferStart += 1;
+        return result;
     }
 
     /**
@@ -269,6 +327,110 @@ public class CharacterIterator
 
     // Private methods
 
+    /**
+        Consumes characters from this iterator for as long as whether they're
+        in the specified class of characters is the same as 'isMember',
+        appending them to the specified buffer if it isn't null.
+
+        @param table the table representing the class of characters
+        @param isMember true if the characters in the class are to be
+        consumed, and false if the characters not in the class are to be
+        consumed
+        @param buf the buffer to append the consumed characters to, or null
+        if they're to be discarded
+        @return the number of characters consumed
+    */
+    private int consume(CharacterClassTable table, boolean isMember,
+                        StringBuffer buf)
+    {
+        Assert.require(table != null);
+        // 'buf' may be null
+
+        int result = 0;
+        while (hasNext())
+        {
+            int end;
+            if (isMember)
+            {
+                end = table.skip(_buffer, _bufferStart, _bufferEnd);
+            }
+            else
+            {
+                end = table.skipNonMembers(_buffer, _bufferStart, _bufferEnd);
+            }
+
+            int numConsumed = end - _bufferStart;
+            if (buf != null)
+            {
+                buf.append(_buffer, _bufferStart, numConsumed);
+            }
+            result += numConsumed;
+            _bufferStart = end;
+            if (end < _bufferEnd)
+            {
+                break;  // while
+            }
+        }
+
+        Assert.ensure(result >= 0);
+        return result;
+    }
+
+    /**
+        Tries to fill our buffer with more characters from our Reader,
+        handling any read errors that occur.
+        <p>
+        Note: this method should only be called when our buffer is empty.
+
+        @return true iff our buffer contains more characters
+    */
+    private boolean fillBuffer()
+    {
+        Assert.require(_bufferStart == _bufferEnd);
+
+        boolean result;
+        try
+        {
+            result = readIntoBuffer();
+        }
+        catch (IOException ex)
+        {
+            handleReadException(ex);
+            result = false;
+        }
+
+        return result;
+    }
+
+    /**
+        Reads as many characters as possible (up to our buffer's size) from
+        our Reader into our buffer.
+        <p>
+        Note: this method should only be called when our buffer is empty.
+
+        @return false iff our Reader has no more characters
+        @exception IOException thrown if an error occurs in reading from our
+        Reader
+    */
+    private boolean readIntoBuffer()
+        throws IOException
+    {
+        Assert.require(_bufferStart == _bufferEnd);
+
+        int numRead;
+        do
+        {
+            numRead = _reader.read(_buffer, 0, _buffer.length);
+        }
+        while (numRead == 0);
+
+        _bufferStart = 0;
+        _bufferEnd = Math.max(numRead, 0);
+
+        return (numRead > 0);
+    }
+
+
     /**
         Handles the specified IOException that occurred whil trying to read
         from our Reader.
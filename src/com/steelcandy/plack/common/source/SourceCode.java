@@ -191,6 +191,34 @@ public abstract class SourceCode
         // Assert.require(maxSize >= 0);
         // Assert.ensure(result != null);
 
+    /**
+        Returns the line number of the first line of this piece of source
+        code. It is 1 unless this piece of source code is only a section of
+        a larger piece of source code.
+
+        @return the line number of our first line
+        @see SourceCodeSection
+    */
+    public int firstLineNumber()
+    {
+        // Assert.ensure(result >= 1);
+        return 1;
+    }
+
+    /**
+        Returns the piece of source code that this piece of source code is
+        a section of, or this piece of source code itself if it isn't a
+        section of a larger piece of source code.
+
+        @return the whole piece of source code that we're (part of)
+        @see SourceCodeSection
+    */
+    public SourceCode whole()
+    {
+        // Assert.ensure(result != null);
+        return this;
+    }
+
 
     // Source fragment retrieval methods
 
@@ -0,0 +1,199 @@
+/*
+ Copyright (C) 2023 by James MacKay.
+
+ This program is free software: you can redistribute it and/or modify
+ it under the terms of the GNU General Public License as published by
+ the Free Software Foundation, either version 3 of the License, or
+ (at your option) any later version.
+
+ This program is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ GNU General Public License for more details.
+
+ You should have received a copy of the GNU General Public License
+ along with this program.  If not, see <https://www.gnu.org/licenses/>.
+*/
+
+package com.steelcandy.plack.common.source;
+
+import com.steelcandy.common.debug.Assert;
+
+import java.io.*;
+
+/**
+    Represents a section of a larger piece of source code that consists of
+    one or more consecutive whole lines of it.
+    <p>
+    Reading a section only reads the lines in the section, but a section
+    otherwise behaves like the piece of source code that it is a section
+    of: it has the same names, and its line numbers (and thus the line
+    numbers of the locations of fragments in it) are the same as the line
+    numbers of the corresponding lines in the whole piece of source code.
+    This allows sections of a piece of source code to be processed
+    independently (and possibly concurrently) while still producing the
+    same results - including errors - as processing the whole piece of
+    source code would.
+
+    @author James MacKay
+*/
+public class SourceCodeSection
+    extends SourceCode
+{
+    // Private fields
+
+    /** The piece of source code that we're a section of. */
+    private SourceCode _whole;
+
+    /** The text of this section. */
+    private String _text;
+
+    /** The line number in '_whole' of our first line. */
+    private int _firstLineNumber;
+
+
+    // Constructors
+
+    /**
+        Constructs a SourceCodeSection.
+
+        @param whole the piece of source code that the section is a section
+        of
+        @param text the text of the section
+        @param firstLineNumber the line number in 'whole' of the first line
+        in the section
+    */
+    public SourceCodeSection(SourceCode whole, String text,
+                             int firstLineNumber)
+    {
+        Assert.require(whole != null);
+        Assert.require(text != null);
+        Assert.require(firstLineNumber >= 1);
+
+        _whole = whole;
+        _text = text;
+        _firstLineNumber = firstLineNumber;
+    }
+
+
+    // Public methods
+
+    /**
+        @return the text of this section
+    */
+    public String text()
+    {
+        Assert.ensure(_text != null);
+        return _text;
+    }
+
+
+    // Overridden methods
+
+    /**
+        @see SourceCode#fullName
+    */
+    public String fullName()
+    {
+        return _whole.fullName();
+    }
+
+    /**
+        @see SourceCode#name
+    */
+    public String name()
+    {
+        return _whole.name();
+    }
+
+    /**
+        Note: the returned reader reads only the text of this section.
+
+        @see SourceCode#reader
+    */
+    public Reader reader()
+        throws IOException
+    {
+        return new SourceCodeReader(_text);
+    }
+
+    /**
+        Note: the SourceCodeString that is returned represents the whole
+        piece of source code that we're a section of.
+
+        @see SourceCode#toSourceCodeString
+    */
+    public SourceCodeString toSourceCodeString()
+        throws IOException
+    {
+        return _whole.toSourceCodeString();
+    }
+
+    /**
+        Note: the SourceCode object that is returned represents the whole
+        piece of source code that we're a section of.
+
+        @see SourceCode#toSourceCodeString(long)
+    */
+    public SourceCode toSourceCodeString(long maxSize)
+        throws IOException
+    {
+        Assert.require(maxSize >= 0);
+
+        return _whole.toSourceCodeString(maxSize);
+    }
+
+    /**
+        @see SourceCode#whole
+    */
+    public SourceCode whole()
+    {
+        Assert.ensure(_whole != null);
+        return _whole;
+    }
+
+    /**
+        @see SourceCode#firstLineNumber
+    */
+    public int firstLineNumber()
+    {
+        Assert.ensure(_firstLineNumber >= 1);
+        return _firstLineNumber;
+    }
+
+    /**
+        Note: the line numbers are the line numbers of lines in the whole
+        piece of source code that we're a section of, and so the lines
+        don't have to be in this section.
+
+        @see SourceCode#lines(int, int)
+    */
+    public String lines(int startLineNumber, int endLineNumber)
+        throws IOException, IndexOutOfBoundsException
+    {
+        Assert.require(startLineNumber >= 0);
+        Assert.require(endLineNumber >= startLineNumber);
+
+        return _whole.lines(startLineNumber, endLineNumber);
+    }
+
+    /**
+        Note: the line numbers are the line numbers of lines in the whole
+        piece of source code that we're a section of, and so the lines
+        don't have to be in this section.
+
+        @see SourceCode#lines(int, int, int, int)
+    */
+    public String lines(int startLineNumber, int startOffset,
+                        int endLineNumber, int pastEndOffset)
+        throws IOException, IndexOutOfBoundsException
+    {
+        Assert.require(startLineNumber >= 0);
+        Assert.require(endLineNumber >= startLineNumber);
+        Assert.require(startOffset >= 0);
+        Assert.require(pastEndOffset >= startOffset);
+
+        return _whole.lines(startLineNumber, startOffset,
+                            endLineNumber, pastEndOffset);
+    }
+}
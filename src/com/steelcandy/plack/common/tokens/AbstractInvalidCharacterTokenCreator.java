@@ -87,8 +87,8 @@ public abstract class AbstractInvalidCharacterTokenCreator
     protected TokenizingError createError(char invalidChar,
                                           SourcePosition charPosition)
     {
-        String msg = _resources.getMessage(INVALID_CHAR_MSG,
-                                           String.valueOf(invalidChar));
+        DeferredMessage msg = _resources.
+            getDeferredMessage(INVALID_CHAR_MSG, String.valueOf(invalidChar));
         SourceLocation loc = createSingleCharacterLocation(charPosition);
         return new TokenizingError(invalidCharacterErrorSeverityLevel(),
                                    msg, tokenizingSourceCode(), loc);
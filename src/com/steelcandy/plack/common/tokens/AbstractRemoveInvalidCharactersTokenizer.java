@@ -136,21 +136,21 @@ public abstract class AbstractRemoveInvalidCharactersTokenizer
             // Report the invalid tokens.
             int numInvalidChars = tokList.size();
             Assert.check(numInvalidChars > 0);
-            String msg;
+            DeferredMessage msg;
             SourceLocation loc;
             if (numInvalidChars > 1)
             {
                 msg = _resources.
-                    getMessage(MULTIPLE_INVALID_CHARACTERS_MSG,
-                               invalidChars.toString(),
-                               String.valueOf(numInvalidChars));
+                    getDeferredMessage(MULTIPLE_INVALID_CHARACTERS_MSG,
+                                       invalidChars.toString(),
+                                       String.valueOf(numInvalidChars));
                 loc = location(tokList);
             }
             else
             {
                 msg = _resources.
-                    getMessage(SINGLE_INVALID_CHARACTER_MSG,
-                               invalidChars.toString());
+                    getDeferredMessage(SINGLE_INVALID_CHARACTER_MSG,
+                                       invalidChars.toString());
                 loc = tokList.get(0).location();
             }
             handleError(NON_FATAL_ERROR_LEVEL, msg, loc);
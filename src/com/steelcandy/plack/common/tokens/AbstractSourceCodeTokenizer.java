@@ -100,18 +100,25 @@ public abstract class AbstractSourceCodeTokenizer
     // Public methods
 
     /**
+        Note: if 'sourceCode' is a section of a larger piece of source code
+        then only the section will be tokenized, but our sourceCode() will
+        be the whole piece of source code (so that the tokens and constructs
+        created from the section are indistinguishable from those created
+        from the same part of the whole piece of source code).
+
         @see SourceCodeTokenizer#initialize(SourceCode)
+        @see SourceCode#whole
     */
     public void initialize(SourceCode sourceCode)
     {
         Assert.require(sourceCode != null);
 
-        _sourceCode = sourceCode;
+        _sourceCode = sourceCode.whole();
         _charIterator = null;
         try
         {
             _charIterator =
-                new SourceCodeCharacterIterator(_sourceCode,
+                new SourceCodeCharacterIterator(sourceCode,
                         charToReturnOnReadError(), errorHandler());
         }
         catch (FileNotFoundException ex)
@@ -458,6 +458,26 @@ public abstract class AbstractTokenizer
         errorHandler().handle(error, this);
     }
 
+    /**
+        Handles the tokenizing error with the specified severity level,
+        deferred description and location in the source code.
+
+        @param level the error's severity level: it should be one of the
+        *_LEVEL constants defined in the class ErrorSeverityLevels
+        @param description the error's description, which won't be
+        constructed unless it's needed
+        @param loc the location in the source code where the error occurred
+
+        @see #handleError(int, String, SourceLocation)
+    */
+    protected void handleError(int level, DeferredMessage description,
+                               SourceLocation loc)
+    {
+        TokenizingError error =
+            new TokenizingError(level, description, sourceCode(), loc);
+        errorHandler().handle(error, this);
+    }
+
 
     // Abstract methods
 
@@ -18,12 +18,15 @@
 package com.steelcandy.plack.common.tokens;
 
 import com.steelcandy.common.debug.Assert;
+import com.steelcandy.common.debug.ContractTier;
 
 import com.steelcandy.plack.common.source.*;
 import com.steelcandy.plack.common.errors.ErrorHandler;
 
 import com.steelcandy.common.*;
 
+import java.util.Arrays;
+
 /**
     An abstract base class for tokenizers that tokenize a piece of source
     code using an array of TokenCreator objects. The TokenCreators are
@@ -35,6 +38,13 @@ import com.steelcandy.common.*;
 public abstract class TokenCreatorSourceCodeTokenizer
     extends AbstractSourceCodeTokenizer
 {
+    // Constants
+
+    /** The tier of expensive contract checks used by this class. */
+    private static final ContractTier EXPENSIVE =
+        ContractTier.expensive(TokenCreatorSourceCodeTokenizer.class);
+
+
     // Private fields
 
     /**
@@ -93,6 +103,24 @@ public abstract class TokenCreatorSourceCodeTokenizer
     }
 
 
+    // Public methods
+
+    /**
+        Note: the first token will start at the beginning of the specified
+        source code's first line, which is not necessarily line 1.
+
+        @see SourceCodeTokenizer#initialize(SourceCode)
+        @see SourceCode#firstLineNumber
+    */
+    public void initialize(SourceCode sourceCode)
+    {
+        Assert.require(sourceCode != null);
+
+        super.initialize(sourceCode);
+        _nextTokenStart = new SourcePosition(sourceCode.firstLineNumber(), 0);
+    }
+
+
     // Abstract methods
 
     /**
@@ -150,7 +178,7 @@ public abstract class TokenCreatorSourceCodeTokenizer
     protected TokenCreator[] createTokenCreators()
     {
         int size = creatorArraySize();
-        TokenCreator[] result = new TokenCreator[size];
+        final TokenCreator[] result = new TokenCreator[size];
 
         // Set each element to the default creator initially.
         Assert.check(_defaultCreator != null);
@@ -164,7 +192,14 @@ public abstract class TokenCreatorSourceCodeTokenizer
         setTokenCreators(result);
 
         Assert.ensure(result != null);
-        // Assert.ensure("no elements of 'result' are null");
+        EXPENSIVE.ensure(new Assert.Condition()
+        {
+            public boolean holds()
+            {
+                // Are no elements of 'result' null?
+                return (Arrays.asList(result).contains(null) == false);
+            }
+        });
         return result;
     }
 